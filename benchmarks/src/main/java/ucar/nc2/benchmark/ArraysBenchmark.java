@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ucar.array.Array;
+import ucar.array.Arrays;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+
+/** Creating, subsetting, iterating and copying a float ucar.array.Array of shape 16 x size x size. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ArraysBenchmark {
+  private static final int NZ = 16;
+
+  @Param({"128", "512"})
+  public int size;
+
+  private int[] shape;
+  private float[] values;
+  private Array<Float> array;
+  private List<Range> strided;
+  private List<Array<Float>> levels;
+
+  @Setup
+  public void setup() throws InvalidRangeException {
+    shape = new int[] {NZ, size, size};
+    values = Fixtures.makeData(shape);
+    array = Arrays.factory(DataType.FLOAT, shape, values);
+
+    strided = new ArrayList<>();
+    strided.add(new Range(0, NZ - 1, 2));
+    strided.add(new Range(0, size - 1, 4));
+    strided.add(new Range(0, size - 1, 4));
+
+    int[] levelShape = {1, size, size};
+    levels = new ArrayList<>();
+    for (int z = 0; z < NZ; z++)
+      levels.add(Arrays.factory(DataType.FLOAT, levelShape, Fixtures.makeData(levelShape)));
+  }
+
+  private static double sum(Array<Float> a) {
+    double sum = 0;
+    for (float f : a)
+      sum += f;
+    return sum;
+  }
+
+  @Benchmark
+  public Object factory() {
+    return Arrays.factory(DataType.FLOAT, shape, values.clone());
+  }
+
+  @Benchmark
+  public double iterate() {
+    return sum(array);
+  }
+
+  @Benchmark
+  public double iterateStridedSection() throws InvalidRangeException {
+    return sum(Arrays.section(array, strided));
+  }
+
+  @Benchmark
+  public double iterateTranspose() {
+    return sum(Arrays.transpose(array, 1, 2));
+  }
+
+  @Benchmark
+  public double iterateSlice() throws InvalidRangeException {
+    return sum(Arrays.slice(array, 0, NZ / 2));
+  }
+
+  @Benchmark
+  public double getByIndex() {
+    double sum = 0;
+    for (int z = 0; z < NZ; z++)
+      for (int y = 0; y < size; y++)
+        for (int x = 0; x < size; x++)
+          sum += array.get(z, y, x);
+    return sum;
+  }
+
+  @Benchmark
+  public Object copyStridedSection() throws InvalidRangeException {
+    return Arrays.copyPrimitiveArray(Arrays.section(array, strided));
+  }
+
+  @Benchmark
+  public Object factoryCopy() {
+    return Arrays.factoryCopy(DataType.FLOAT, shape, levels);
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.benchmark;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Formatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compare two JMH result files written with "-rf json", for example from two commits.
+ * A benchmark has regressed when its time per operation grew by more than the threshold,
+ * and by more than the sum of the two score errors.
+ *
+ * <pre>
+ * java ucar.nc2.benchmark.CompareResults baseline.json results.json [threshold percent, default 10]
+ * </pre>
+ *
+ * Exits with status 1 if any benchmark regressed.
+ */
+public class CompareResults {
+
+  private static class Score {
+    final double score, error;
+    final String unit;
+
+    Score(double score, double error, String unit) {
+      this.score = score;
+      this.error = error;
+      this.unit = unit;
+    }
+  }
+
+  /** Read a JMH json result file into a map of benchmark name and parameters to its score. */
+  static Map<String, Score> read(String filename) throws IOException {
+    Map<String, Score> result = new LinkedHashMap<>();
+    try (Reader reader = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8)) {
+      for (JsonElement elem : JsonParser.parseReader(reader).getAsJsonArray()) {
+        JsonObject run = elem.getAsJsonObject();
+        StringBuilder name = new StringBuilder(run.get("benchmark").getAsString());
+        if (run.has("params")) {
+          // sorted, so that the key does not depend on the order JMH wrote them
+          Map<String, String> params = new TreeMap<>();
+          for (Map.Entry<String, JsonElement> param : run.getAsJsonObject("params").entrySet())
+            params.put(param.getKey(), param.getValue().getAsString());
+          name.append(params);
+        }
+        JsonObject metric = run.getAsJsonObject("primaryMetric");
+        double error = metric.get("scoreError").isJsonPrimitive() ? metric.get("scoreError").getAsDouble() : 0;
+        if (Double.isNaN(error))
+          error = 0;
+        result.put(name.toString(),
+            new Score(metric.get("score").getAsDouble(), error, metric.get("scoreUnit").getAsString()));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Compare the scores, and write a report.
+   *
+   * @return number of regressions
+   */
+  static int compare(Map<String, Score> baseline, Map<String, Score> current, double threshold, Formatter f) {
+    int nregressions = 0;
+    f.format("%-100s %14s %14s %9s%n", "benchmark", "baseline", "current", "change");
+    for (Map.Entry<String, Score> entry : current.entrySet()) {
+      Score cur = entry.getValue();
+      Score base = baseline.get(entry.getKey());
+      if (base == null) {
+        f.format("%-100s %14s %14.3f %9s%n", entry.getKey(), "-", cur.score, "new");
+        continue;
+      }
+      if (!base.unit.equals(cur.unit)) {
+        f.format("%-100s units differ: %s and %s%n", entry.getKey(), base.unit, cur.unit);
+        continue;
+      }
+      // time per op for AverageTime and SampleTime; ops per time for Throughput
+      boolean isThroughput = cur.unit.startsWith("ops/");
+      double change = (cur.score - base.score) / base.score;
+      double slower = isThroughput ? -change : change;
+      boolean regressed = slower > threshold && Math.abs(cur.score - base.score) > base.error + cur.error;
+      if (regressed)
+        nregressions++;
+      f.format("%-100s %14.3f %14.3f %+8.1f%% %s%n", entry.getKey(), base.score, cur.score, 100 * change,
+          regressed ? "REGRESSED" : "");
+    }
+    return nregressions;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.out.printf("usage: CompareResults baseline.json results.json [threshold percent]%n");
+      System.exit(2);
+    }
+    double threshold = (args.length > 2) ? Double.parseDouble(args[2]) / 100 : 0.10;
+
+    Formatter f = new Formatter();
+    int nregressions = compare(read(args[0]), read(args[1]), threshold, f);
+    System.out.printf("%s%n%d regressions%n", f, nregressions);
+    System.exit(nregressions > 0 ? 1 : 0);
+  }
+}
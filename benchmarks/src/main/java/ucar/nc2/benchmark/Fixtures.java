@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Attribute;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+/**
+ * Synthetic files for the benchmarks, written locally so that no test data server is needed.
+ * All of them hold the same smooth float field (see value()), so that compressed chunks compress the way real
+ * model output does.
+ */
+public final class Fixtures {
+  /** The name of the variable in the netCDF-3 and netCDF-4 fixtures. */
+  public static final String DATA = "data";
+  /** The name of the record variable in the netCDF-3 fixture. */
+  public static final String RECORD = "rec";
+
+  private Fixtures() {}
+
+  /** The value of the field at the given index. */
+  public static float value(int[] index) {
+    double sum = 0;
+    for (int d = 0; d < index.length; d++) {
+      sum += Math.sin(index[d] * 0.01 * (d + 1));
+    }
+    return (float) sum;
+  }
+
+  /** The field of the given shape, in row-major order. */
+  public static float[] makeData(int[] shape) {
+    int size = 1;
+    for (int len : shape)
+      size *= len;
+    float[] data = new float[size];
+    int[] index = new int[shape.length];
+    for (int i = 0; i < size; i++) {
+      data[i] = value(index);
+      incr(index, shape);
+    }
+    return data;
+  }
+
+  // increment a row-major index
+  static void incr(int[] index, int[] shape) {
+    for (int d = index.length - 1; d >= 0; d--) {
+      if (++index[d] < shape[d])
+        return;
+      index[d] = 0;
+    }
+  }
+
+  /** Create a temporary directory for the fixtures of one benchmark. */
+  public static Path createTempDir() throws IOException {
+    return Files.createTempDirectory("netcdf-java-bench");
+  }
+
+  /** Delete a directory made by createTempDir(), and everything in it. */
+  public static void deleteDir(Path dir) throws IOException {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  /**
+   * Write a netCDF-3 file, with a float variable DATA(y, x) and a float record variable RECORD(time, x).
+   *
+   * @param location write to this file
+   * @param ny length of y
+   * @param nx length of x
+   * @param ntimes number of records
+   */
+  public static void writeNetcdf3(String location, int ny, int nx, int ntimes) throws IOException {
+    NetcdfFormatWriter.Builder writerb = NetcdfFormatWriter.createNewNetcdf3(location).setFill(false);
+    writerb.addAttribute(new Attribute("title", "netCDF-Java benchmark fixture"));
+    writerb.addUnlimitedDimension("time");
+    writerb.addDimension("y", ny);
+    writerb.addDimension("x", nx);
+    writerb.addVariable(DATA, DataType.FLOAT, "y x");
+    writerb.addVariable(RECORD, DataType.FLOAT, "time x");
+
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      writer.write(DATA, Array.factory(DataType.FLOAT, new int[] {ny, nx}, makeData(new int[] {ny, nx})));
+      float[] records = makeData(new int[] {ntimes, nx});
+      writer.write(RECORD, new int[2], Array.factory(DataType.FLOAT, new int[] {ntimes, nx}, records));
+    } catch (InvalidRangeException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Write a netCDF-4 (HDF5) file, with a chunked float variable DATA.
+   *
+   * @param location write to this file
+   * @param shape shape of the variable
+   * @param chunk shape of its chunks
+   * @param deflate deflate the chunks, or store them uncompressed
+   */
+  public static void writeNetcdf4(String location, int[] shape, int[] chunk, boolean deflate) throws IOException {
+    new Hdf5FixtureWriter(shape, chunk, deflate).write(location);
+  }
+
+  /**
+   * Write a GRIB2 file of nrecords lat/lon temperature fields, the n-th being the field at forecast hour n.
+   *
+   * @param location write to this file
+   * @param ny number of latitudes
+   * @param nx number of longitudes
+   * @param nrecords number of GRIB messages
+   * @param dataTemplate GRIB2 data representation template: 0 (simple packing), 2 (complex packing), 3 (complex
+   *        packing and spatial differencing) or 41 (PNG)
+   */
+  public static void writeGrib2(String location, int ny, int nx, int nrecords, int dataTemplate) throws IOException {
+    new Grib2FixtureWriter(ny, nx, dataTemplate).write(location, nrecords);
+  }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import javax.imageio.ImageIO;
+
+/**
+ * Writes GRIB2 messages of a global lat/lon temperature field, using grid definition template 3.0,
+ * product definition template 4.0, and data representation template 5.0 (simple packing), 5.2 (complex packing),
+ * 5.3 (complex packing with second order spatial differencing) or 5.41 (PNG).
+ */
+class Grib2FixtureWriter {
+  private static final int DECIMAL_SCALE = 3;
+  private static final int GROUP_LENGTH = 16; // complex packing: values per group, except the last
+
+  private final int ny, nx;
+  private final int dataTemplate;
+  private final byte[] section3, section5, section7;
+
+  Grib2FixtureWriter(int ny, int nx, int dataTemplate) throws IOException {
+    if (dataTemplate != 0 && dataTemplate != 2 && dataTemplate != 3 && dataTemplate != 41)
+      throw new IllegalArgumentException("Unsupported data template " + dataTemplate);
+    this.ny = ny;
+    this.nx = nx;
+    this.dataTemplate = dataTemplate;
+
+    // Y * 10^D = R + X, with binary scale factor 0
+    int[] scaled = new int[ny * nx];
+    int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+    float[] data = Fixtures.makeData(new int[] {ny, nx});
+    for (int i = 0; i < data.length; i++) {
+      scaled[i] = Math.round(data[i] * (float) Math.pow(10, DECIMAL_SCALE));
+      min = Math.min(min, scaled[i]);
+      max = Math.max(max, scaled[i]);
+    }
+    for (int i = 0; i < scaled.length; i++)
+      scaled[i] -= min;
+    int nbits = (dataTemplate == 41) ? 16 : 32 - Integer.numberOfLeadingZeros(max - min);
+    if (max - min >= (1 << nbits))
+      throw new IllegalStateException("field does not fit in " + nbits + " bits");
+
+    this.section3 = section3();
+    if (dataTemplate == 2 || dataTemplate == 3) {
+      ComplexPacking packing = new ComplexPacking(scaled, dataTemplate == 3);
+      this.section5 = packing.section5(min);
+      this.section7 = packing.section7();
+    } else {
+      this.section5 = section5(min, nbits);
+      this.section7 = (dataTemplate == 41) ? section7Png(scaled) : section7Simple(scaled, nbits);
+    }
+  }
+
+  void write(String location, int nrecords) throws IOException {
+    try (OutputStream out = new FileOutputStream(location)) {
+      for (int i = 0; i < nrecords; i++)
+        out.write(message(i));
+    }
+  }
+
+  private byte[] message(int forecastHour) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bos);
+    byte[] section1 = section1();
+    byte[] section4 = section4(forecastHour);
+    byte[] section6 = {0, 0, 0, 6, 6, (byte) 255}; // no bitmap
+    long length = 16 + section1.length + section3.length + section4.length + section5.length + section6.length
+        + section7.length + 4;
+
+    // section 0
+    out.write("GRIB".getBytes(StandardCharsets.US_ASCII));
+    out.writeShort(0);
+    out.writeByte(0); // discipline: meteorological
+    out.writeByte(2); // edition
+    out.writeLong(length);
+
+    out.write(section1);
+    out.write(section3);
+    out.write(section4);
+    out.write(section5);
+    out.write(section6);
+    out.write(section7);
+    out.write("7777".getBytes(StandardCharsets.US_ASCII));
+    return bos.toByteArray();
+  }
+
+  private static byte[] section1() throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bos);
+    out.writeInt(21);
+    out.writeByte(1);
+    out.writeShort(7); // NCEP
+    out.writeShort(0);
+    out.writeByte(2); // master table version
+    out.writeByte(1); // local table version
+    out.writeByte(1); // reference time is the start of forecast
+    out.writeShort(2020);
+    out.write(new byte[] {1, 1, 0, 0, 0}); // month, day, hour, minute, second
+    out.writeByte(0); // operational product
+    out.writeByte(1); // forecast product
+    return bos.toByteArray();
+  }
+
+  private byte[] section3() throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bos);
+    out.writeInt(72);
+    out.writeByte(3);
+    out.writeByte(0); // grid definition template follows
+    out.writeInt(nx * ny);
+    out.writeByte(0); // no list of points per row
+    out.writeByte(0);
+    out.writeShort(0); // template 3.0, lat/lon
+    out.writeByte(6); // spherical earth, radius 6371229 m
+    out.write(new byte[15]); // earth radius and axes, not used for shape 6
+    out.writeInt(nx);
+    out.writeInt(ny);
+    out.writeInt(0); // basic angle
+    out.writeInt(-1); // subdivisions of the basic angle: missing
+    int dlat = 180_000_000 / Math.max(1, ny - 1);
+    int dlon = 360_000_000 / nx;
+    out.writeInt(90_000_000); // first latitude, in microdegrees
+    out.writeInt(0); // first longitude
+    out.writeByte(0x30); // both increments are given
+    out.writeInt(sign(90_000_000 - (ny - 1) * dlat)); // last latitude
+    out.writeInt((nx - 1) * dlon); // last longitude
+    out.writeInt(dlon);
+    out.writeInt(dlat);
+    out.writeByte(0); // scan +i, -j, rows consecutive
+    return bos.toByteArray();
+  }
+
+  private static byte[] section4(int forecastHour) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bos);
+    out.writeInt(34);
+    out.writeByte(4);
+    out.writeShort(0); // no coordinate values
+    out.writeShort(0); // template 4.0, analysis or forecast at a point in time
+    out.writeByte(0); // category: temperature
+    out.writeByte(0); // parameter: temperature
+    out.writeByte(2); // forecast
+    out.writeByte(0);
+    out.writeByte(96); // GFS
+    out.writeShort(0);
+    out.writeByte(0);
+    out.writeByte(1); // time unit: hour
+    out.writeInt(forecastHour);
+    out.writeByte(103); // height above ground
+    out.writeByte(0);
+    out.writeInt(2);
+    out.writeByte(255); // no second surface
+    out.writeByte(255);
+    out.writeInt(-1);
+    return bos.toByteArray();
+  }
+
+  private byte[] section5(int reference, int nbits) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bos);
+    out.writeInt(21);
+    out.writeByte(5);
+    out.writeInt(nx * ny);
+    out.writeShort(dataTemplate);
+    out.writeFloat(reference);
+    out.writeShort(0); // binary scale factor
+    out.writeShort(DECIMAL_SCALE);
+    out.writeByte(nbits);
+    out.writeByte(0); // original values were floating point
+    return bos.toByteArray();
+  }
+
+  // simple packing: nbits per value, most significant bit first
+  private static byte[] section7Simple(int[] scaled, int nbits) {
+    BitWriter out = new BitWriter();
+    for (int value : scaled)
+      out.write(value, nbits);
+    return out.section(7);
+  }
+
+  /**
+   * Complex packing, optionally of the second order spatial differences, as NCEP writes it: groups of GROUP_LENGTH
+   * values, each with its own reference value (the group minimum) and bit width.
+   */
+  private class ComplexPacking {
+    private final boolean spatial;
+    private final int[] values; // the values that are grouped: the scaled values, or their differences
+    private int first, second, minDiff; // spatial differencing: the first two values, and the minimum difference
+    private final int ngroups;
+    private final int[] groupRef, groupWidth;
+    private final int refBits, minWidth, widthBits, diffBytes;
+
+    ComplexPacking(int[] scaled, boolean spatial) {
+      this.spatial = spatial;
+      int n = scaled.length;
+      if (spatial) {
+        // h(i) = f(i) - 2 f(i-1) + f(i-2), for i >= 2, less the minimum; the first two are not used
+        values = new int[n];
+        minDiff = Integer.MAX_VALUE;
+        for (int i = 2; i < n; i++) {
+          values[i] = scaled[i] - 2 * scaled[i - 1] + scaled[i - 2];
+          minDiff = Math.min(minDiff, values[i]);
+        }
+        for (int i = 2; i < n; i++)
+          values[i] -= minDiff;
+        first = scaled[0];
+        second = scaled[1];
+        int maxAbs = Math.max(Math.max(Math.abs(first), Math.abs(second)), Math.abs(minDiff));
+        diffBytes = (bits(maxAbs) + 1 + 7) / 8; // with a sign bit
+      } else {
+        values = scaled;
+        diffBytes = 0;
+      }
+
+      ngroups = (n + GROUP_LENGTH - 1) / GROUP_LENGTH;
+      groupRef = new int[ngroups];
+      groupWidth = new int[ngroups];
+      int maxRef = 0, maxWidth = 0, minw = Integer.MAX_VALUE;
+      for (int g = 0; g < ngroups; g++) {
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int i = g * GROUP_LENGTH; i < Math.min(n, (g + 1) * GROUP_LENGTH); i++) {
+          min = Math.min(min, values[i]);
+          max = Math.max(max, values[i]);
+        }
+        groupRef[g] = min;
+        groupWidth[g] = bits(max - min);
+        maxRef = Math.max(maxRef, min);
+        maxWidth = Math.max(maxWidth, groupWidth[g]);
+        minw = Math.min(minw, groupWidth[g]);
+      }
+      refBits = bits(maxRef);
+      minWidth = minw;
+      widthBits = bits(maxWidth - minWidth);
+    }
+
+    byte[] section5(int reference) throws IOException {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bos);
+      out.writeInt(spatial ? 49 : 47);
+      out.writeByte(5);
+      out.writeInt(nx * ny);
+      out.writeShort(dataTemplate);
+      out.writeFloat(reference);
+      out.writeShort(0); // binary scale factor
+      out.writeShort(DECIMAL_SCALE);
+      out.writeByte(refBits); // bits of the group reference values
+      out.writeByte(0); // original values were floating point
+      out.writeByte(1); // general group splitting
+      out.writeByte(0); // no missing values
+      out.writeInt(0); // primary and secondary missing values
+      out.writeInt(0);
+      out.writeInt(ngroups);
+      out.writeByte(minWidth); // reference for group widths
+      out.writeByte(widthBits);
+      out.writeInt(GROUP_LENGTH); // reference for group lengths
+      out.writeByte(1); // length increment
+      out.writeInt(values.length - (ngroups - 1) * GROUP_LENGTH); // true length of the last group
+      out.writeByte(0); // all the scaled group lengths are 0, so are not stored
+      if (spatial) {
+        out.writeByte(2); // second order
+        out.writeByte(diffBytes);
+      }
+      return bos.toByteArray();
+    }
+
+    byte[] section7() {
+      BitWriter out = new BitWriter();
+      if (spatial) {
+        int nbits = 8 * diffBytes;
+        out.write(signed(first, nbits), nbits);
+        out.write(signed(second, nbits), nbits);
+        out.write(signed(minDiff, nbits), nbits);
+        out.align();
+      }
+      for (int g = 0; g < ngroups; g++)
+        out.write(groupRef[g], refBits);
+      out.align();
+      for (int g = 0; g < ngroups; g++)
+        out.write(groupWidth[g] - minWidth, widthBits);
+      out.align();
+      for (int i = 0; i < values.length; i++) {
+        int g = i / GROUP_LENGTH;
+        out.write(values[i] - groupRef[g], groupWidth[g]);
+      }
+      return out.section(7);
+    }
+  }
+
+  // number of bits needed to hold a non negative value
+  private static int bits(int value) {
+    return 32 - Integer.numberOfLeadingZeros(value);
+  }
+
+  // sign and magnitude in nbits
+  private static int signed(int value, int nbits) {
+    return (value >= 0) ? value : ((1 << (nbits - 1)) | -value);
+  }
+
+  /** Bit packing, most significant bit first, after the 5 byte section header. */
+  private static class BitWriter {
+    private final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    private long buffer;
+    private int nbuffered;
+
+    BitWriter() {
+      bos.write(new byte[5], 0, 5);
+    }
+
+    void write(int value, int nbits) {
+      if (nbits == 0)
+        return;
+      buffer = (buffer << nbits) | (value & (0xFFFFFFFFL >>> (32 - nbits)));
+      nbuffered += nbits;
+      while (nbuffered >= 8) {
+        nbuffered -= 8;
+        bos.write((int) (buffer >>> nbuffered));
+      }
+    }
+
+    // pad with zero bits to a byte boundary
+    void align() {
+      if (nbuffered > 0)
+        write(0, 8 - nbuffered);
+    }
+
+    byte[] section(int number) {
+      align();
+      byte[] section = bos.toByteArray();
+      writeHeader(section, number);
+      return section;
+    }
+  }
+
+  // PNG: a 16 bit grayscale image, nx wide and ny high
+  private byte[] section7Png(int[] scaled) throws IOException {
+    BufferedImage image = new BufferedImage(nx, ny, BufferedImage.TYPE_USHORT_GRAY);
+    WritableRaster raster = image.getRaster();
+    raster.setPixels(0, 0, nx, ny, scaled);
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    bos.write(new byte[5]);
+    if (!ImageIO.write(image, "png", bos))
+      throw new IllegalStateException("no PNG writer");
+    byte[] section = bos.toByteArray();
+    writeHeader(section, 7);
+    return section;
+  }
+
+  private static void writeHeader(byte[] section, int number) {
+    int len = section.length;
+    section[0] = (byte) (len >>> 24);
+    section[1] = (byte) (len >>> 16);
+    section[2] = (byte) (len >>> 8);
+    section[3] = (byte) len;
+    section[4] = (byte) number;
+  }
+
+  // GRIB2 signed integers are sign and magnitude
+  private static int sign(int value) {
+    return (value >= 0) ? value : (0x80000000 | -value);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ucar.nc2.grib.grib2.Grib2Record;
+import ucar.nc2.grib.grib2.Grib2RecordScanner;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * Scanning a GRIB2 file for its records, and decoding their data with Grib2DataReader.
+ * The file has 20 records of a 0.5 degree global grid (361 x 720).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class Grib2ReadBenchmark {
+  private static final int NRECORDS = 20;
+  private static final int NY = 361, NX = 720;
+
+  /**
+   * GRIB2 data representation template: 0 is simple packing, 2 is complex packing, 3 is complex packing with spatial
+   * differencing, 41 is PNG.
+   */
+  @Param({"0", "2", "3", "41"})
+  public int dataTemplate;
+
+  private Path dir;
+  private String location;
+  private RandomAccessFile raf;
+  private List<Grib2Record> records;
+  private float[] buffer;
+
+  @Setup
+  public void setup() throws IOException {
+    dir = Fixtures.createTempDir();
+    location = dir.resolve("fixture.grib2").toString();
+    Fixtures.writeGrib2(location, NY, NX, NRECORDS, dataTemplate);
+
+    raf = new RandomAccessFile(location, "r");
+    records = scan(raf);
+    buffer = new float[NY * NX];
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    raf.close();
+    Fixtures.deleteDir(dir);
+  }
+
+  private static List<Grib2Record> scan(RandomAccessFile raf) throws IOException {
+    List<Grib2Record> result = new ArrayList<>();
+    Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+    while (scanner.hasNext())
+      result.add(scanner.next());
+    return result;
+  }
+
+  @Benchmark
+  public Object scan() throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(location, "r")) {
+      return scan(file);
+    }
+  }
+
+  @Benchmark
+  public void decode(Blackhole bh) throws IOException {
+    for (Grib2Record gr : records)
+      bh.consume(gr.readData(raf));
+  }
+
+  @Benchmark
+  public void decodeIntoBuffer(Blackhole bh) throws IOException {
+    for (Grib2Record gr : records)
+      bh.consume(gr.readData(raf, buffer));
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.benchmark;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ucar.nc2.grib.GribBitUnpacker;
+import ucar.nc2.iosp.BitReader;
+
+/**
+ * Unpacking the bit packed values of a GRIB2 data section, one 0.25 degree global grid (721 x 1440) of them.
+ * GribBitUnpacker, as used by Grib2DataReader for simple and complex packing, is compared with the
+ * BitReader.bits2UInt() call per value that it replaced.
+ * The bit widths are those of typical fields: 12 and 16 bit simple packing (eg NCEP GFS and ECMWF), and the small
+ * group widths of complex packing with spatial differencing, where groups are unpacked a few values at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class Grib2UnpackBenchmark {
+  private static final int NPOINTS = 721 * 1440;
+
+  /** Bits per value. */
+  @Param({"5", "12", "16", "21"})
+  public int nbits;
+
+  /** Values per call, as in a group of complex packing; simple packing unpacks the whole field in one call. */
+  @Param({"16", "1038240"})
+  public int groupLength;
+
+  private byte[] packed;
+  private float[] data;
+
+  @Setup
+  public void setup() {
+    packed = new byte[(int) (((long) NPOINTS * nbits + 7) / 8)];
+    new Random(12345).nextBytes(packed);
+    data = new float[NPOINTS];
+  }
+
+  @Benchmark
+  public float[] bitReader() throws IOException {
+    BitReader reader = new BitReader(packed);
+    for (int i = 0; i < NPOINTS; i++)
+      data[i] = (int) reader.bits2UInt(nbits) + 17;
+    return data;
+  }
+
+  @Benchmark
+  public float[] unpacker() {
+    GribBitUnpacker unpacker = new GribBitUnpacker(packed);
+    for (int start = 0; start < NPOINTS; start += groupLength)
+      unpacker.unpack(nbits, Math.min(groupLength, NPOINTS - start), 17, data, start);
+    return data;
+  }
+}
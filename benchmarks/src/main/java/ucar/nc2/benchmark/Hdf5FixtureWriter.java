@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the smallest HDF5 file that holds one chunked float dataset, optionally deflated, in the root group.
+ * Uses the version 0 superblock and version 1 object headers and B-trees, which is what the netCDF-4 library
+ * writes by default. The HDF5 C library is not needed.
+ */
+class Hdf5FixtureWriter {
+  private static final long UNDEFINED = -1L;
+  private static final int BTREE_K = 32; // entries per chunk B-tree node; the default for a version 0 superblock
+  private static final int DEFLATE_LEVEL = 5;
+
+  // the fixed part of the file, before the dataset object header
+  private static final int ROOT_HEADER = 96;
+  private static final int LOCAL_HEAP = ROOT_HEADER + 40;
+  private static final int HEAP_DATA = LOCAL_HEAP + 32;
+  private static final int HEAP_DATA_SIZE = 16;
+  private static final int GROUP_BTREE = HEAP_DATA + HEAP_DATA_SIZE;
+  private static final int SYMBOL_NODE = GROUP_BTREE + 48;
+  private static final int DATASET_HEADER = SYMBOL_NODE + 48;
+
+  private final int[] shape;
+  private final int[] chunk;
+  private final boolean deflate;
+  private final int rank;
+
+  Hdf5FixtureWriter(int[] shape, int[] chunk, boolean deflate) {
+    if (shape.length != chunk.length)
+      throw new IllegalArgumentException("chunk rank must equal variable rank");
+    this.shape = shape.clone();
+    this.chunk = chunk.clone();
+    this.deflate = deflate;
+    this.rank = shape.length;
+  }
+
+  // a chunk and its index in the B-tree
+  private static class ChunkKey {
+    final int size;
+    final long[] offset; // rank + 1, the last being 0
+    final long address;
+
+    ChunkKey(int size, long[] offset, long address) {
+      this.size = size;
+      this.offset = offset;
+      this.address = address;
+    }
+  }
+
+  void write(String location) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(location), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      int headerSize = datasetHeaderSize();
+      long pos = DATASET_HEADER + 16 + headerSize;
+
+      // the chunks, in row-major order of their origins
+      List<ChunkKey> keys = new ArrayList<>();
+      int[] nchunks = new int[rank];
+      for (int d = 0; d < rank; d++)
+        nchunks[d] = (shape[d] + chunk[d] - 1) / chunk[d];
+      int[] chunkIndex = new int[rank];
+      int total = 1;
+      for (int n : nchunks)
+        total *= n;
+      for (int c = 0; c < total; c++) {
+        long[] offset = new long[rank + 1];
+        for (int d = 0; d < rank; d++)
+          offset[d] = (long) chunkIndex[d] * chunk[d];
+        byte[] bytes = chunkBytes(offset);
+        channel.write(ByteBuffer.wrap(bytes), pos);
+        keys.add(new ChunkKey(bytes.length, offset, pos));
+        pos += bytes.length;
+        Fixtures.incr(chunkIndex, nchunks);
+      }
+
+      // the B-tree over the chunks, one level at a time, up to a single root node
+      long[] end = new long[rank + 1];
+      for (int d = 0; d < rank; d++)
+        end[d] = shape[d];
+      ChunkKey last = new ChunkKey(0, end, UNDEFINED);
+      int level = 0;
+      while (true) {
+        List<ChunkKey> parents = new ArrayList<>();
+        for (int start = 0; start < keys.size(); start += 2 * BTREE_K) {
+          int stop = Math.min(keys.size(), start + 2 * BTREE_K);
+          ByteBuffer node = btreeNode(level, keys.subList(start, stop), stop < keys.size() ? keys.get(stop) : last);
+          parents.add(new ChunkKey(0, keys.get(start).offset, pos));
+          channel.write(node, pos);
+          pos += node.capacity();
+        }
+        keys = parents;
+        if (keys.size() == 1)
+          break;
+        level++;
+      }
+      channel.write(metadata(keys.get(0).address, pos, headerSize), 0);
+    }
+  }
+
+  // the bytes of the chunk at this origin, filled with zeros past the end of the variable, like the HDF5 library
+  private byte[] chunkBytes(long[] origin) {
+    ByteBuffer bb = ByteBuffer.allocate(4 * size(chunk)).order(ByteOrder.LITTLE_ENDIAN);
+    int[] inChunk = new int[rank];
+    int[] index = new int[rank];
+    for (int i = 0; i < size(chunk); i++) {
+      boolean inside = true;
+      for (int d = 0; d < rank; d++) {
+        index[d] = (int) origin[d] + inChunk[d];
+        inside &= index[d] < shape[d];
+      }
+      bb.putFloat(inside ? Fixtures.value(index) : 0.0f);
+      Fixtures.incr(inChunk, chunk);
+    }
+    if (!deflate)
+      return bb.array();
+
+    Deflater deflater = new Deflater(DEFLATE_LEVEL);
+    deflater.setInput(bb.array());
+    deflater.finish();
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bb.capacity() / 2);
+    byte[] buf = new byte[8192];
+    while (!deflater.finished()) {
+      int n = deflater.deflate(buf);
+      out.write(buf, 0, n);
+    }
+    deflater.end();
+    return out.toByteArray();
+  }
+
+  private int btreeNodeSize(int nentries) {
+    int keySize = 8 + 8 * (rank + 1);
+    return 24 + (nentries + 1) * keySize + nentries * 8;
+  }
+
+  // a version 1 B-tree node of type 1 (raw data chunks)
+  private ByteBuffer btreeNode(int level, List<ChunkKey> entries, ChunkKey next) {
+    ByteBuffer bb = ByteBuffer.allocate(btreeNodeSize(entries.size())).order(ByteOrder.LITTLE_ENDIAN);
+    bb.put("TREE".getBytes(StandardCharsets.US_ASCII));
+    bb.put((byte) 1); // node type
+    bb.put((byte) level);
+    bb.putShort((short) entries.size());
+    bb.putLong(UNDEFINED); // left sibling
+    bb.putLong(UNDEFINED); // right sibling
+    for (ChunkKey key : entries) {
+      putKey(bb, key);
+      bb.putLong(key.address);
+    }
+    putKey(bb, next);
+    bb.flip();
+    return bb;
+  }
+
+  private void putKey(ByteBuffer bb, ChunkKey key) {
+    bb.putInt(key.size);
+    bb.putInt(0); // filter mask
+    for (long off : key.offset)
+      bb.putLong(off);
+  }
+
+  private int datasetHeaderSize() {
+    int size = 8 + dataspaceSize() + 8 + 24 + 8 + layoutSize();
+    if (deflate)
+      size += 8 + 24;
+    return size;
+  }
+
+  private int dataspaceSize() {
+    return 8 + 8 * rank;
+  }
+
+  private int layoutSize() {
+    return pad8(3 + 8 + 4 * (rank + 1));
+  }
+
+  private static int pad8(int n) {
+    return (n + 7) & ~7;
+  }
+
+  // superblock, root group, and the object header of the dataset
+  private ByteBuffer metadata(long btreeAddress, long eof, int headerSize) {
+    ByteBuffer bb = ByteBuffer.allocate(DATASET_HEADER + 16 + headerSize).order(ByteOrder.LITTLE_ENDIAN);
+
+    // superblock version 0
+    bb.put(new byte[] {(byte) 0x89, 'H', 'D', 'F', '\r', '\n', 0x1a, '\n'});
+    bb.put(new byte[] {0, 0, 0, 0, 0, 8, 8, 0}); // versions, size of offsets and lengths
+    bb.putShort((short) 4); // group leaf node K
+    bb.putShort((short) 16); // group internal node K
+    bb.putInt(0); // file consistency flags
+    bb.putLong(0); // base address
+    bb.putLong(UNDEFINED); // free space info
+    bb.putLong(eof);
+    bb.putLong(UNDEFINED); // driver info
+    putSymbolTableEntry(bb, 0, ROOT_HEADER, GROUP_BTREE, LOCAL_HEAP);
+
+    // root group object header, with its symbol table message
+    bb.position(ROOT_HEADER);
+    putObjectHeader(bb, 1, 24);
+    putMessageHeader(bb, 0x11, 16);
+    bb.putLong(GROUP_BTREE);
+    bb.putLong(LOCAL_HEAP);
+
+    // local heap of link names: "" at 0, DATA at 8
+    bb.position(LOCAL_HEAP);
+    bb.put("HEAP".getBytes(StandardCharsets.US_ASCII));
+    bb.putInt(0); // version and reserved
+    bb.putLong(HEAP_DATA_SIZE);
+    bb.putLong(UNDEFINED); // no free list
+    bb.putLong(HEAP_DATA);
+    bb.position(HEAP_DATA + 8);
+    bb.put(Fixtures.DATA.getBytes(StandardCharsets.US_ASCII));
+
+    // group B-tree with one symbol table node
+    bb.position(GROUP_BTREE);
+    bb.put("TREE".getBytes(StandardCharsets.US_ASCII));
+    bb.put((byte) 0); // node type
+    bb.put((byte) 0); // level
+    bb.putShort((short) 1);
+    bb.putLong(UNDEFINED);
+    bb.putLong(UNDEFINED);
+    bb.putLong(0); // key: heap offset of ""
+    bb.putLong(SYMBOL_NODE);
+    bb.putLong(8); // key: heap offset of the last name in the node
+
+    bb.position(SYMBOL_NODE);
+    bb.put("SNOD".getBytes(StandardCharsets.US_ASCII));
+    bb.put((byte) 1); // version
+    bb.put((byte) 0);
+    bb.putShort((short) 1);
+    putSymbolTableEntry(bb, 8, DATASET_HEADER, 0, 0);
+
+    // dataset object header
+    bb.position(DATASET_HEADER);
+    putObjectHeader(bb, deflate ? 4 : 3, headerSize);
+
+    putMessageHeader(bb, 0x1, dataspaceSize()); // simple dataspace, version 1
+    bb.put((byte) 1);
+    bb.put((byte) rank);
+    bb.put((byte) 0); // no max dimensions
+    bb.put(new byte[5]);
+    for (int len : shape)
+      bb.putLong(len);
+
+    putMessageHeader(bb, 0x3, 24); // IEEE little endian 32 bit float
+    bb.put((byte) 0x11); // version 1, class 1
+    bb.put(new byte[] {0x20, 31, 0}); // implied mantissa msb, sign bit 31
+    bb.putInt(4);
+    bb.putShort((short) 0); // bit offset
+    bb.putShort((short) 32); // bit precision
+    bb.put(new byte[] {23, 8, 0, 23}); // exponent location and size, mantissa location and size
+    bb.putInt(127); // exponent bias
+    bb.putInt(0);
+
+    putMessageHeader(bb, 0x8, layoutSize()); // chunked layout, version 3
+    int start = bb.position();
+    bb.put((byte) 3);
+    bb.put((byte) 2);
+    bb.put((byte) (rank + 1));
+    bb.putLong(btreeAddress);
+    for (int len : chunk)
+      bb.putInt(len);
+    bb.putInt(4); // element size
+    bb.position(start + layoutSize());
+
+    if (deflate) {
+      putMessageHeader(bb, 0xB, 24); // filter pipeline, version 1
+      bb.put((byte) 1);
+      bb.put((byte) 1);
+      bb.put(new byte[6]);
+      bb.putShort((short) 1); // deflate
+      bb.putShort((short) 0); // no name
+      bb.putShort((short) 0); // flags
+      bb.putShort((short) 1); // one client value
+      bb.putInt(DEFLATE_LEVEL);
+      bb.putInt(0); // pad an odd number of client values
+    }
+
+    bb.rewind();
+    return bb;
+  }
+
+  private static void putSymbolTableEntry(ByteBuffer bb, long nameOffset, long headerAddress, long btreeAddress,
+      long heapAddress) {
+    bb.putLong(nameOffset);
+    bb.putLong(headerAddress);
+    bb.putInt(btreeAddress == 0 ? 0 : 1); // cache type
+    bb.putInt(0);
+    bb.putLong(btreeAddress);
+    bb.putLong(heapAddress);
+  }
+
+  // version 1 object header prefix, padded to 16 bytes
+  private static void putObjectHeader(ByteBuffer bb, int nmessages, int size) {
+    bb.put((byte) 1);
+    bb.put((byte) 0);
+    bb.putShort((short) nmessages);
+    bb.putInt(1); // reference count
+    bb.putInt(size);
+    bb.putInt(0);
+  }
+
+  private static void putMessageHeader(ByteBuffer bb, int type, int size) {
+    bb.putShort((short) type);
+    bb.putShort((short) size);
+    bb.put((byte) 0); // flags
+    bb.put(new byte[3]);
+  }
+
+  private static int size(int[] shape) {
+    int size = 1;
+    for (int len : shape)
+      size *= len;
+    return size;
+  }
+}
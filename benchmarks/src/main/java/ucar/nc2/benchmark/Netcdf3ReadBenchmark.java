@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+/**
+ * Opening and reading a netCDF-3 file, through N3iosp.readArrayData (readArray) and N3iosp.readData (read).
+ * The file has a float variable of size x size, and a record variable of 1000 records of size floats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class Netcdf3ReadBenchmark {
+  private static final int NRECORDS = 1000;
+
+  @Param({"1024", "4096"})
+  public int size;
+
+  private Path dir;
+  private String location;
+  private NetcdfFile ncfile;
+  private Variable data, records;
+  private Section strided, recordSubset;
+
+  @Setup
+  public void setup() throws IOException, InvalidRangeException {
+    dir = Fixtures.createTempDir();
+    location = dir.resolve("fixture.nc").toString();
+    Fixtures.writeNetcdf3(location, size, size, NRECORDS);
+
+    ncfile = NetcdfFiles.open(location);
+    data = ncfile.findVariable(Fixtures.DATA);
+    records = ncfile.findVariable(Fixtures.RECORD);
+    // measure reading the file, not the Variable cache
+    data.setCaching(false);
+    records.setCaching(false);
+
+    strided = new Section(String.format("0:%d:4,0:%d:4", size - 1, size - 1));
+    recordSubset = new Section(String.format("0:%d,%d:%d", NRECORDS - 1, size / 4, size / 2));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    ncfile.close();
+    Fixtures.deleteDir(dir);
+  }
+
+  @Benchmark
+  public Object open() throws IOException {
+    try (NetcdfFile nc = NetcdfFiles.open(location)) {
+      return nc.getRootGroup();
+    }
+  }
+
+  @Benchmark
+  public Object readArrayFull() throws IOException {
+    return data.readArray();
+  }
+
+  @Benchmark
+  public Object readArrayStrided() throws IOException, InvalidRangeException {
+    return data.readArray(strided);
+  }
+
+  @Benchmark
+  public Object readArrayRecords() throws IOException {
+    return records.readArray();
+  }
+
+  @Benchmark
+  public Object readArrayRecordSubset() throws IOException, InvalidRangeException {
+    return records.readArray(recordSubset);
+  }
+
+  @Benchmark
+  public Object readFull() throws IOException {
+    return data.read();
+  }
+
+  @Benchmark
+  public Object readStrided() throws IOException, InvalidRangeException {
+    return data.read(strided);
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+/**
+ * Writing a netCDF-3 file with NetcdfFormatWriter: a float variable of size x size written in one call,
+ * or a float record variable of size floats per record written one record at a time.
+ * Each operation writes 4 * size * size bytes of data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class Netcdf3WriteBenchmark {
+
+  @Param({"1024", "2048"})
+  public int size;
+
+  /** Prefill the variables with the fill value before writing them. */
+  @Param({"false", "true"})
+  public boolean fill;
+
+  private Path dir;
+  private String location;
+  private Array data;
+  private Array record;
+
+  @Setup
+  public void setup() throws IOException {
+    dir = Fixtures.createTempDir();
+    location = dir.resolve("write.nc").toString();
+    data = Array.factory(DataType.FLOAT, new int[] {size, size}, Fixtures.makeData(new int[] {size, size}));
+    record = Array.factory(DataType.FLOAT, new int[] {1, size}, Fixtures.makeData(new int[] {1, size}));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Fixtures.deleteDir(dir);
+  }
+
+  @Benchmark
+  public void writeFixed() throws IOException, InvalidRangeException {
+    NetcdfFormatWriter.Builder writerb = NetcdfFormatWriter.createNewNetcdf3(location).setFill(fill);
+    writerb.addDimension("y", size);
+    writerb.addDimension("x", size);
+    writerb.addVariable(Fixtures.DATA, DataType.FLOAT, "y x");
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      writer.write(Fixtures.DATA, data);
+    }
+  }
+
+  @Benchmark
+  public void writeRecords() throws IOException, InvalidRangeException {
+    NetcdfFormatWriter.Builder writerb = NetcdfFormatWriter.createNewNetcdf3(location).setFill(fill);
+    writerb.addUnlimitedDimension("time");
+    writerb.addDimension("x", size);
+    writerb.addVariable(Fixtures.RECORD, DataType.FLOAT, "time x");
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      int[] origin = new int[2];
+      for (int t = 0; t < size; t++) {
+        origin[0] = t;
+        writer.write(Fixtures.RECORD, origin, record);
+      }
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.internal.iosp.hdf5.H5tiledLayoutBB;
+
+/**
+ * Opening and reading a chunked float variable of shape 32 x 512 x 512 in a netCDF-4 file.
+ * Deflated chunks are read by H5tiledLayoutBB, uncompressed chunks by H5tiledLayout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class Netcdf4ReadBenchmark {
+  private static final int[] SHAPE = {32, 512, 512};
+
+  /** Chunk shape, as "z x y x x". */
+  @Param({"1x128x128", "8x256x256"})
+  public String chunk;
+
+  @Param({"true", "false"})
+  public boolean deflate;
+
+  /** Number of threads that decode deflated chunks; 1 decodes on the reading thread. */
+  @Param({"1", "4"})
+  public int decodeThreads;
+
+  private Path dir;
+  private String location;
+  private NetcdfFile ncfile;
+  private Variable data;
+  private Section slab, column, strided;
+  private ExecutorService decodePool;
+
+  @Setup
+  public void setup() throws IOException, InvalidRangeException {
+    String[] tokens = chunk.split("x");
+    int[] chunkShape = new int[tokens.length];
+    for (int i = 0; i < tokens.length; i++)
+      chunkShape[i] = Integer.parseInt(tokens[i]);
+
+    dir = Fixtures.createTempDir();
+    location = dir.resolve("fixture.nc4").toString();
+    Fixtures.writeNetcdf4(location, SHAPE, chunkShape, deflate);
+
+    if (decodeThreads > 1) {
+      decodePool = Executors.newFixedThreadPool(decodeThreads);
+      H5tiledLayoutBB.setDecodeExecutor(decodePool, 2 * decodeThreads);
+    } else {
+      H5tiledLayoutBB.setDecodeExecutor(null, 1);
+    }
+
+    ncfile = NetcdfFiles.open(location);
+    data = ncfile.findVariable(Fixtures.DATA);
+    data.setCaching(false);
+
+    // one level, which cuts across the chunks of every shape
+    slab = new Section("5,0:511,0:511");
+    // a time series at one point
+    column = new Section("0:31,300,200");
+    strided = new Section("0:31:2,0:511:8,0:511:8");
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    ncfile.close();
+    if (decodePool != null)
+      decodePool.shutdown();
+    Fixtures.deleteDir(dir);
+  }
+
+  @Benchmark
+  public Object open() throws IOException {
+    try (NetcdfFile nc = NetcdfFiles.open(location)) {
+      return nc.getRootGroup();
+    }
+  }
+
+  @Benchmark
+  public Object readArrayFull() throws IOException {
+    return data.readArray();
+  }
+
+  @Benchmark
+  public Object readArraySlab() throws IOException, InvalidRangeException {
+    return data.readArray(slab);
+  }
+
+  @Benchmark
+  public Object readArrayColumn() throws IOException, InvalidRangeException {
+    return data.readArray(column);
+  }
+
+  @Benchmark
+  public Object readArrayStrided() throws IOException, InvalidRangeException {
+    return data.readArray(strided);
+  }
+
+  @Benchmark
+  public Object readFull() throws IOException {
+    return data.read();
+  }
+}
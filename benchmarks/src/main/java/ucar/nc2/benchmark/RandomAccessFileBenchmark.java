@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ucar.unidata.io.ByteRange;
+import ucar.unidata.io.MappedRandomAccessFile;
+import ucar.unidata.io.RandomAccessFile;
+
+/** Sequential, random and vectored reads of a local file through RandomAccessFile. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RandomAccessFileBenchmark {
+  private static final int FILE_SIZE = 64 * 1024 * 1024;
+  private static final int NREADS = 1000;
+  private static final int READ_SIZE = 4096;
+
+  /** "file" for RandomAccessFile, "mmap" for MappedRandomAccessFile. */
+  @Param({"file", "mmap"})
+  public String impl;
+
+  @Param({"8192", "65536"})
+  public int bufferSize;
+
+  private Path dir;
+  private String location;
+  private RandomAccessFile raf;
+  private long[] positions;
+  private List<ByteRange> ranges;
+
+  @Setup
+  public void setup() throws IOException {
+    dir = Fixtures.createTempDir();
+    location = dir.resolve("random.bin").toString();
+    Random random = new Random(42);
+    byte[] block = new byte[1024 * 1024];
+    try (OutputStream out = Files.newOutputStream(dir.resolve("random.bin"))) {
+      for (int i = 0; i < FILE_SIZE / block.length; i++) {
+        random.nextBytes(block);
+        out.write(block);
+      }
+    }
+
+    positions = new long[NREADS];
+    for (int i = 0; i < NREADS; i++)
+      positions[i] = random.nextInt(FILE_SIZE - READ_SIZE);
+
+    // every 8th block, like reading one chunk per row of a tiled variable
+    ranges = new ArrayList<>();
+    for (long pos = 0; pos + READ_SIZE <= FILE_SIZE && ranges.size() < NREADS; pos += 8 * READ_SIZE)
+      ranges.add(new ByteRange(pos, READ_SIZE));
+
+    raf = open();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    raf.close();
+    Fixtures.deleteDir(dir);
+  }
+
+  private RandomAccessFile open() throws IOException {
+    return impl.equals("mmap") ? new MappedRandomAccessFile(location, true, bufferSize)
+        : new RandomAccessFile(location, "r", bufferSize);
+  }
+
+  @Benchmark
+  public long sequentialRead() throws IOException {
+    long sum = 0;
+    try (RandomAccessFile file = open()) {
+      byte[] buf = new byte[READ_SIZE];
+      for (long pos = 0; pos < FILE_SIZE; pos += READ_SIZE) {
+        file.readFully(buf);
+        sum += buf[0];
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long sequentialReadInt() throws IOException {
+    long sum = 0;
+    try (RandomAccessFile file = open()) {
+      for (int i = 0; i < FILE_SIZE / 4; i++)
+        sum += file.readInt();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long randomRead() throws IOException {
+    long sum = 0;
+    byte[] buf = new byte[READ_SIZE];
+    for (long pos : positions) {
+      raf.seek(pos);
+      raf.readFully(buf);
+      sum += buf[0];
+    }
+    return sum;
+  }
+
+  // the thread safe reads of a MappedRandomAccessFile, that do not use the file pointer
+  @Benchmark
+  public long positionalRead() throws IOException {
+    if (!(raf instanceof MappedRandomAccessFile))
+      return randomRead();
+    MappedRandomAccessFile mapped = (MappedRandomAccessFile) raf;
+    long sum = 0;
+    byte[] buf = new byte[READ_SIZE];
+    for (long pos : positions) {
+      mapped.readFully(pos, buf, 0, READ_SIZE);
+      sum += buf[0];
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public byte[] vectoredRead() throws IOException {
+    return raf.readVectored(ranges);
+  }
+}
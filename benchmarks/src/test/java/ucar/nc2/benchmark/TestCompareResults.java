@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.benchmark;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Formatter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Test comparing JMH json results. */
+public class TestCompareResults {
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static String run(String benchmark, String params, double score, double error, String unit) {
+    return String.format("{\"benchmark\": \"%s\", \"params\": {%s}, \"primaryMetric\": "
+        + "{\"score\": %f, \"scoreError\": %f, \"scoreUnit\": \"%s\"}}", benchmark, params, score, error, unit);
+  }
+
+  private String write(String... runs) throws IOException {
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), ("[" + String.join(",", runs) + "]").getBytes(StandardCharsets.UTF_8));
+    return file.getPath();
+  }
+
+  @Test
+  public void testCompare() throws IOException {
+    String baseline = write(run("a.Read.full", "\"size\": \"1\", \"deflate\": \"true\"", 10.0, 0.5, "ms/op"),
+        run("a.Read.full", "\"size\": \"2\", \"deflate\": \"true\"", 10.0, 0.5, "ms/op"),
+        run("a.Read.open", "", 1.0, 0.5, "ms/op"), run("a.Write.ops", "", 100.0, 1.0, "ops/s"));
+    // parameters in another order, to check they are matched by name
+    String current = write(run("a.Read.full", "\"deflate\": \"true\", \"size\": \"1\"", 12.0, 0.5, "ms/op"),
+        run("a.Read.full", "\"deflate\": \"true\", \"size\": \"2\"", 10.5, 0.5, "ms/op"),
+        run("a.Read.open", "", 1.5, 0.5, "ms/op"), run("a.Write.ops", "", 80.0, 1.0, "ops/s"),
+        run("a.Read.strided", "", 1.0, 0.1, "ms/op"));
+
+    Formatter f = new Formatter();
+    int nregressions = CompareResults.compare(CompareResults.read(baseline), CompareResults.read(current), 0.10, f);
+    // 20% slower full read of size 1, and 20% fewer writes per second
+    // not the 5% slower size 2, and not the open, which is 50% slower but within the errors
+    assertThat(nregressions).isEqualTo(2);
+    assertThat(f.toString()).contains("new");
+  }
+}
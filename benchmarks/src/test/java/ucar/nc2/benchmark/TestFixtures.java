@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.benchmark;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.array.Array;
+import ucar.array.Arrays;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.grib.grib2.Grib2Record;
+import ucar.nc2.grib.grib2.Grib2RecordScanner;
+import ucar.unidata.io.RandomAccessFile;
+
+/** Test that the benchmark fixtures are read back with the values that were written. */
+public class TestFixtures {
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static void checkValues(float[] data, int[] shape) {
+    float[] want = Fixtures.makeData(shape);
+    assertThat(data.length).isEqualTo(want.length);
+    for (int i = 0; i < want.length; i++) {
+      assertThat(data[i]).isWithin(1.0e-3f).of(want[i]);
+    }
+  }
+
+  private static float[] readFloats(NetcdfFile ncfile, String name) throws Exception {
+    Variable v = ncfile.findVariable(name);
+    assertThat(v).isNotNull();
+    Array<?> data = v.readArray();
+    return (float[]) Arrays.copyPrimitiveArray(data);
+  }
+
+  @Test
+  public void testNetcdf3() throws Exception {
+    File file = new File(tempFolder.getRoot(), "fixture.nc");
+    Fixtures.writeNetcdf3(file.getPath(), 30, 40, 7);
+
+    try (NetcdfFile ncfile = NetcdfFiles.open(file.getPath())) {
+      checkValues(readFloats(ncfile, Fixtures.DATA), new int[] {30, 40});
+      checkValues(readFloats(ncfile, Fixtures.RECORD), new int[] {7, 40});
+    }
+  }
+
+  @Test
+  public void testNetcdf4() throws Exception {
+    int[] shape = {3, 50, 70};
+    // partial chunks at the end of every dimension, and more chunks than fit in one B-tree node
+    int[][] chunks = {{1, 10, 10}, {2, 16, 32}, {3, 50, 70}};
+    for (int[] chunk : chunks) {
+      for (boolean deflate : new boolean[] {true, false}) {
+        File file = tempFolder.newFile();
+        Fixtures.writeNetcdf4(file.getPath(), shape, chunk, deflate);
+
+        try (NetcdfFile ncfile = NetcdfFiles.open(file.getPath())) {
+          assertThat(ncfile.getFileTypeId()).isAnyOf("HDF5", "NetCDF-4");
+          checkValues(readFloats(ncfile, Fixtures.DATA), shape);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testGrib2() throws Exception {
+    for (int template : new int[] {0, 2, 3, 41}) {
+      File file = tempFolder.newFile();
+      Fixtures.writeGrib2(file.getPath(), 45, 90, 3, template);
+
+      try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+        assertThat(Grib2RecordScanner.isValidFile(raf)).isTrue();
+        Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+        int count = 0;
+        while (scanner.hasNext()) {
+          Grib2Record gr = scanner.next();
+          assertThat(gr.getPDS().getForecastTime()).isEqualTo(count);
+          assertThat(gr.getGDS().getNx()).isEqualTo(90);
+          checkValues(gr.readData(raf), new int[] {45, 90});
+          count++;
+        }
+        assertThat(count).isEqualTo(3);
+      }
+    }
+  }
+}
@@ -4,30 +4,110 @@
  */
 package ucar.nc2.iosp.bufr;
 
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.Formatter;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import ucar.array.StructureData;
 import ucar.array.StructureDataArray;
 import ucar.nc2.Sequence;
+import ucar.nc2.iosp.BitReader;
 
 /** IOSP for BUFR data - using the preprocessor. */
 public class BufrIospArrays extends BufrIosp {
 
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(BufrIospArrays.class);
 
+  private static int defaultParallelism = 1;
+  private static ThreadPoolExecutor decodeExecutor; // shared by all files, created when first needed
+
+  /**
+   * Set the number of messages that are decoded at the same time when iterating over the observations.
+   * The observations are still returned in the order they are in the file.
+   *
+   * @param nthreads maximum number of messages decoded concurrently; 1 decodes them one at a time, as they are
+   *        iterated over.
+   */
+  public static synchronized void setDefaultParallelism(int nthreads) {
+    Preconditions.checkArgument(nthreads > 0, "parallelism must be > 0");
+    defaultParallelism = nthreads;
+    // remade with the new number of threads. Iterations already started keep using the old one, which is not shut
+    // down: its threads go away once they are idle.
+    decodeExecutor = null;
+  }
+
+  private static synchronized int getDefaultParallelism() {
+    return defaultParallelism;
+  }
+
+  private static synchronized ExecutorService getDecodeExecutor() {
+    if (decodeExecutor == null) {
+      ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("BufrDecode-%d").setDaemon(true).build();
+      decodeExecutor = new ThreadPoolExecutor(defaultParallelism, defaultParallelism, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(), threadFactory);
+      decodeExecutor.allowCoreThreadTimeOut(true);
+    }
+    return decodeExecutor;
+  }
+
+  // one for each distinct DataDescriptor tree, reused for all the messages that have it
+  private final Map<MessageArrayReaderPlan.Key, MessageArrayReaderPlan> plans = new ConcurrentHashMap<>();
+  private SeqIterArray seqIter; // the last iteration started, the only one that can still use the scanner
+
   @Override
   public Iterator<ucar.array.StructureData> getStructureDataArrayIterator(Sequence s, int bufferSize) {
     findRootSequence();
-    return isSingle ? new SeqIterSingleArray() : new SeqIterArray();
+    if (isSingle) {
+      return new SeqIterSingleArray();
+    }
+    // starting again resets the scanner, so the previous iteration is over
+    cancelIteration();
+    seqIter = new SeqIterArray();
+    return seqIter;
+  }
+
+  @Override
+  public void close() throws IOException {
+    cancelIteration();
+    super.close();
+  }
+
+  private void cancelIteration() {
+    if (seqIter != null) {
+      seqIter.cancel();
+      seqIter = null;
+    }
   }
 
   private void findRootSequence() {
     this.obsStructure = (Sequence) this.ncfile.findVariable(BufrIospArrays.obsRecordName);
   }
 
-  private class SeqIterArray implements Iterator<ucar.array.StructureData> {
+  private MessageArrayReaderPlan getPlan(Message m) {
+    return plans.computeIfAbsent(new MessageArrayReaderPlan.Key(m),
+        key -> MessageArrayReaderPlan.compile(obsStructure, protoMessage, m));
+  }
+
+  class SeqIterArray implements Iterator<ucar.array.StructureData> {
+    private final int parallelism = getDefaultParallelism();
+    @Nullable
+    private final ExecutorService executor = (parallelism > 1) ? getDecodeExecutor() : null;
+    // messages being decoded, in the order they are in the file
+    final ArrayDeque<Future<StructureDataArray>> decoding = new ArrayDeque<>();
     Iterator<StructureData> currIter;
     int recnum;
 
@@ -45,6 +125,7 @@ public class BufrIospArrays extends BufrIosp {
         }
         if (currIter == null) {
           nelems = recnum;
+          cancel(); // in case a message could not be read
           return false;
         }
       }
@@ -68,53 +149,107 @@ public class BufrIospArrays extends BufrIosp {
     }
 
     private Iterator<StructureData> readNextMessage() throws IOException {
-      if (!scanner.hasNext()) {
-        return null;
-      }
-      Message m = scanner.next();
-      if (m == null) {
-        log.warn("BUFR scanner hasNext() true but next() null!");
-        return null;
+      if (parallelism <= 1) {
+        Message m = nextDataMessage();
+        return (m == null) ? null : readMessage(m, null).iterator();
       }
-      if (m.containsBufrTable()) { // data messages only
-        return readNextMessage();
+
+      // keep the decoders busy while the current message is being iterated over
+      while (decoding.size() < 2 * parallelism) {
+        Message m = nextDataMessage();
+        if (m == null) {
+          break;
+        }
+        decoding.add(submitMessage(m));
       }
+      Future<StructureDataArray> next = decoding.poll();
+      return (next == null) ? null : getDecoded(next).iterator();
+    }
 
-      // mixed messages
-      if (!protoMessage.equals(m)) {
-        if (messHash == null) {
-          messHash = new HashSet<>(20);
+    @Nullable
+    private Message nextDataMessage() throws IOException {
+      while (scanner.hasNext()) {
+        Message m = scanner.next();
+        if (m == null) {
+          log.warn("BUFR scanner hasNext() true but next() null!");
+          return null;
         }
-        if (!messHash.contains(m.hashCode())) {
-          log.warn("File " + raf.getLocation() + " has different BUFR message types hash=" + protoMessage.hashCode()
-              + "; skipping");
-          messHash.add(m.hashCode());
+        if (m.containsBufrTable()) { // data messages only
+          continue;
+        }
+
+        // mixed messages
+        if (!protoMessage.equals(m)) {
+          if (messHash == null) {
+            messHash = new HashSet<>(20);
+          }
+          if (!messHash.contains(m.hashCode())) {
+            log.warn("File " + raf.getLocation() + " has different BUFR message types hash=" + protoMessage.hashCode()
+                + "; skipping");
+            messHash.add(m.hashCode());
+          }
+          continue;
         }
-        return readNextMessage();
+        return m;
       }
+      return null;
+    }
 
-      StructureDataArray as = readMessage(m);
-      return as.iterator();
+    private Future<StructureDataArray> submitMessage(Message m) throws IOException {
+      MessageArrayReaderPlan plan = getPlan(m);
+      // read the data section here, so the decoders dont share the RandomAccessFile.
+      // it includes the end section, which is what reading past the data would get from the file.
+      byte[] data = new byte[m.dataSection.getDataLength()];
+      raf.seek(m.dataSection.getDataPos() + 4);
+      raf.readFully(data);
+      return executor.submit(() -> readMessage(plan, m, new BitReader(data)));
     }
 
-    private StructureDataArray readMessage(Message m) throws IOException {
-      Formatter f = new Formatter();
-      StructureDataArray as;
+    // the messages not yet iterated over are not wanted
+    private void cancel() {
+      Future<StructureDataArray> future;
+      while ((future = decoding.poll()) != null) {
+        future.cancel(false);
+      }
+    }
+
+    private StructureDataArray getDecoded(Future<StructureDataArray> future) throws IOException {
+      try {
+        return future.get();
+
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted reading " + raf.getLocation());
+
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException)
+          throw (IOException) cause;
+        if (cause instanceof RuntimeException)
+          throw (RuntimeException) cause;
+        throw new IOException(cause.getMessage(), cause);
+      }
+    }
+
+    private StructureDataArray readMessage(Message m, @Nullable BitReader reader) throws IOException {
+      return readMessage(getPlan(m), m, reader);
+    }
+
+    // if reader is null, read from the raf
+    private StructureDataArray readMessage(MessageArrayReaderPlan plan, Message m, @Nullable BitReader reader)
+        throws IOException {
       try {
         if (m.dds.isCompressed()) {
-          MessageArrayCompressedReader comp = new MessageArrayCompressedReader(obsStructure, protoMessage, m, raf, f);
-          as = comp.readEntireMessage();
+          MessageArrayCompressedReader comp = new MessageArrayCompressedReader(plan, m, raf, null);
+          return (reader == null) ? comp.readEntireMessage() : comp.readEntireMessage(reader);
         } else {
-          MessageArrayUncompressedReader uncomp =
-              new MessageArrayUncompressedReader(obsStructure, protoMessage, m, raf, f);
-          as = uncomp.readEntireMessage();
+          MessageArrayUncompressedReader uncomp = new MessageArrayUncompressedReader(plan, m, raf, null);
+          return (reader == null) ? uncomp.readEntireMessage() : uncomp.readEntireMessage(reader);
         }
       } catch (Throwable t) {
-        System.out.printf("FAIL %s%n", f);
+        log.warn("Failed to read BUFR message at pos {} in {}", m.getStartPos(), raf.getLocation());
         throw t;
       }
-      // System.out.printf("SUCCEED %s%n", f);
-      return as;
     }
   }
 
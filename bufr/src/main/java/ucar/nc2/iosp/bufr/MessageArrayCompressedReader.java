@@ -13,8 +13,8 @@ import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Formatter;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nullable;
 import ucar.array.Arrays;
 import ucar.array.StructureDataArray;
@@ -23,7 +23,6 @@ import ucar.array.StructureMembers;
 import ucar.array.StructureMembers.Member;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Range;
-import ucar.nc2.Sequence;
 import ucar.nc2.Structure;
 import ucar.nc2.iosp.BitReader;
 import ucar.unidata.io.RandomAccessFile;
@@ -76,11 +75,10 @@ import ucar.unidata.io.RandomAccessFile;
  * message.
  */
 public class MessageArrayCompressedReader {
-  private static final boolean structuresOnHeap = false;
+  private final MessageArrayReaderPlan plan;
   private final Message message; // LOOK gets modified I think
   private final RandomAccessFile raf;
   private final Formatter f;
-  private final HashMap<DataDescriptor, Member> topmap = new HashMap<>(100); // map dkey to Member recursively
 
   // top level sequence
   private final int ndatasets;
@@ -96,28 +94,32 @@ public class MessageArrayCompressedReader {
    * @param f output bit count debugging info (may be null)
    */
   public MessageArrayCompressedReader(Structure s, Message proto, Message message, RandomAccessFile raf, Formatter f) {
+    this(MessageArrayReaderPlan.compile(s, proto, message), message, raf, f);
+  }
+
+  /**
+   * Read all datasets from a single message, using a plan made from a message with the same DataDescriptor tree.
+   *
+   * @param plan the plan for reading messages like this one
+   * @param message read this message
+   * @param raf from this file; may be null if reading from bytes, see {@link #readEntireMessage(BitReader)}
+   * @param f output bit count debugging info (may be null)
+   */
+  MessageArrayCompressedReader(MessageArrayReaderPlan plan, Message message, @Nullable RandomAccessFile raf,
+      @Nullable Formatter f) {
+    this.plan = plan;
     this.message = message;
     this.raf = raf;
     this.f = f;
 
-    // transfer info (refersTo, name) from the proto message
-    DataDescriptor.transferInfo(proto.getRootDataDescriptor().getSubKeys(),
-        message.getRootDataDescriptor().getSubKeys());
-
     // allocate ArrayStructureBB for outer structure
-    StructureMembers.Builder membersb = StructureMembers.makeStructureMembers(s);
-    membersb.setStandardOffsets(structuresOnHeap); // LOOK ??
-    StructureMembers members = membersb.build();
-
+    StructureMembers members = plan.getStructureMembers();
     this.ndatasets = message.getNumberDatasets();
     ByteBuffer bbuffer = ByteBuffer.allocate(this.ndatasets * members.getStorageSizeBytes());
     bbuffer.order(ByteOrder.BIG_ENDIAN);
 
     StructureDataStorageBB storageBB = new StructureDataStorageBB(members, bbuffer, this.ndatasets);
-
-    // map dkey to Member recursively
-    MessageArrayReaderUtils.associateMessage2Members(members, message.getRootDataDescriptor(), topmap);
-    this.topreq = new Request(storageBB, bbuffer, members, members.getStorageSizeBytes(), topmap);
+    this.topreq = new Request(storageBB, bbuffer, members, members.getStorageSizeBytes(), plan.getMemberMap());
   }
 
   // manage the request
@@ -126,14 +128,14 @@ public class MessageArrayCompressedReader {
     final ByteBuffer bb;
     final StructureMembers members;
     final int datasetSize;
-    final HashMap<DataDescriptor, Member> memberMap;
+    final Map<DataDescriptor, Member> memberMap;
 
     @Nullable
     DpiTracker dpiTracker; // may be null
     int dpiRow; // dont understand this, but used for dpi
 
     Request(StructureDataStorageBB storageBB, ByteBuffer bb, StructureMembers members, int datasetSize,
-        HashMap<DataDescriptor, Member> memberMap) {
+        Map<DataDescriptor, Member> memberMap) {
       this.storageBB = storageBB;
       this.bb = bb;
       this.members = members;
@@ -148,8 +150,16 @@ public class MessageArrayCompressedReader {
 
   // read / count the bits in a compressed message
   public StructureDataArray readEntireMessage() throws IOException {
-    BitReader reader = new BitReader(raf, message.dataSection.getDataPos() + 4);
-    DataDescriptor root = message.getRootDataDescriptor();
+    return readEntireMessage(new BitReader(raf, message.dataSection.getDataPos() + 4));
+  }
+
+  /**
+   * Read / count the bits in a compressed message
+   *
+   * @param reader positioned at the start of the data in the data section
+   */
+  StructureDataArray readEntireMessage(BitReader reader) throws IOException {
+    DataDescriptor root = plan.getRootDataDescriptor();
     if (!root.isBad) {
       DebugOut out = (f == null) ? null : new DebugOut(f);
       // one for each field LOOK why not m.counterFlds ?
@@ -418,10 +428,8 @@ public class MessageArrayCompressedReader {
   private int makeNestedSequence(BitReader reader, Member member, DataDescriptor seqdd, int bitOffset, int nestedNrows,
       Request req, BitCounterCompressed bitCounterNested, DebugOut out) throws IOException {
 
-    Sequence seq = seqdd.refersTo;
-    StructureMembers.Builder membersb = StructureMembers.makeStructureMembers(seq);
-    membersb.setStandardOffsets(structuresOnHeap);
-    StructureMembers nestedMembers = membersb.build();
+    MessageArrayReaderPlan nestedPlan = plan.getSequencePlan(seqdd);
+    StructureMembers nestedMembers = nestedPlan.getStructureMembers();
 
     // same number of rows in each dataset
     int nestedElements = this.ndatasets * nestedNrows;
@@ -429,10 +437,9 @@ public class MessageArrayCompressedReader {
     nestedBB.order(ByteOrder.BIG_ENDIAN);
 
     StructureDataStorageBB nestedStorage = new StructureDataStorageBB(nestedMembers, nestedBB, nestedElements);
-    nestedStorage.setStructuresOnHeap(structuresOnHeap);
+    nestedStorage.setStructuresOnHeap(MessageArrayReaderPlan.structuresOnHeap);
 
-    HashMap<DataDescriptor, Member> nestedMap = new HashMap<>();
-    MessageArrayReaderUtils.associateMessage2Members(nestedMembers, seqdd, nestedMap);
+    Map<DataDescriptor, Member> nestedMap = nestedPlan.getMemberMap();
     Request nreq =
         new Request(nestedStorage, nestedBB, nestedMembers, member.getStructureSize() * nestedNrows, nestedMap);
 
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.bufr;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import ucar.array.StructureMembers;
+import ucar.array.StructureMembers.Member;
+import ucar.nc2.Structure;
+
+/**
+ * The part of reading a message into a ucar.array.StructureDataArray that depends only on its DataDescriptor tree:
+ * the tree itself, the StructureMembers, and the mapping from DataDescriptor to Member, for the top level and for each
+ * nested Sequence. Made once for each distinct tree (see {@link Key}), and shared by all messages that have it.
+ * The readers do not modify any of it, so a plan may be used to read several messages at the same time.
+ */
+@Immutable
+class MessageArrayReaderPlan {
+  static final boolean structuresOnHeap = false;
+
+  private final DataDescriptor root;
+  private final StructureMembers members;
+  private final ImmutableMap<DataDescriptor, Member> memberMap; // map dkey to Member recursively
+  private final ImmutableMap<DataDescriptor, MessageArrayReaderPlan> sequences; // nested Sequences at any depth
+
+  /**
+   * Make the plan for reading messages like m.
+   *
+   * @param s outer variables
+   * @param proto prototype message, has been processed
+   * @param m a message with the DataDescriptor tree to use. Gets the info (refersTo, name) from the proto message.
+   */
+  static MessageArrayReaderPlan compile(Structure s, Message proto, Message m) {
+    DataDescriptor root = m.getRootDataDescriptor();
+    DataDescriptor.transferInfo(proto.getRootDataDescriptor().getSubKeys(), root.getSubKeys());
+    HashMap<DataDescriptor, MessageArrayReaderPlan> seqs = new HashMap<>();
+    findSequences(root, root.getSubKeys(), seqs);
+    return new MessageArrayReaderPlan(root, s, root, ImmutableMap.copyOf(seqs));
+  }
+
+  private MessageArrayReaderPlan(DataDescriptor root, Structure s, DataDescriptor parent,
+      ImmutableMap<DataDescriptor, MessageArrayReaderPlan> sequences) {
+    this.root = root;
+    StructureMembers.Builder membersb = StructureMembers.makeStructureMembers(s);
+    membersb.setStandardOffsets(structuresOnHeap);
+    this.members = membersb.build();
+
+    HashMap<DataDescriptor, Member> map = new HashMap<>(100);
+    MessageArrayReaderUtils.associateMessage2Members(this.members, parent, map);
+    this.memberMap = ImmutableMap.copyOf(map);
+    this.sequences = sequences;
+  }
+
+  private static void findSequences(DataDescriptor root, @Nullable List<DataDescriptor> dkeys,
+      HashMap<DataDescriptor, MessageArrayReaderPlan> seqs) {
+    if (dkeys == null) {
+      return;
+    }
+    for (DataDescriptor dkey : dkeys) {
+      if (dkey.replication == 0 && dkey.refersTo != null) {
+        seqs.put(dkey, new MessageArrayReaderPlan(root, dkey.refersTo, dkey, ImmutableMap.of()));
+      }
+      findSequences(root, dkey.getSubKeys(), seqs);
+    }
+  }
+
+  DataDescriptor getRootDataDescriptor() {
+    return root;
+  }
+
+  StructureMembers getStructureMembers() {
+    return members;
+  }
+
+  ImmutableMap<DataDescriptor, Member> getMemberMap() {
+    return memberMap;
+  }
+
+  /** The plan for reading the nested Sequence seqdd. Only the plan made by compile() has them. */
+  MessageArrayReaderPlan getSequencePlan(DataDescriptor seqdd) {
+    MessageArrayReaderPlan plan = sequences.get(seqdd);
+    if (plan == null) {
+      throw new IllegalStateException("DataDescriptor " + seqdd.getFxyName() + " is not a nested Sequence");
+    }
+    return plan;
+  }
+
+  /**
+   * Messages with the same Key have the same DataDescriptor tree: the same data description section, and the same
+   * tables.
+   */
+  @Immutable
+  static class Key {
+    private final ImmutableList<Short> descriptors;
+    private final int edition, center, subCenter, masterId, masterVersion, localVersion;
+    private final int category, subCategory, localSubCategory;
+    private final int hashCode;
+
+    Key(Message m) {
+      this.descriptors = ImmutableList.copyOf(m.dds.getDataDescriptors());
+      this.edition = m.is.getBufrEdition();
+      this.center = m.ids.getCenterId();
+      this.subCenter = m.ids.getSubCenterId();
+      this.masterId = m.ids.getMasterTableId();
+      this.masterVersion = m.ids.getMasterTableVersion();
+      this.localVersion = m.ids.getLocalTableVersion();
+      this.category = m.ids.getCategory();
+      this.subCategory = m.ids.getSubCategory();
+      this.localSubCategory = m.ids.getLocalSubCategory();
+      this.hashCode = Objects.hash(descriptors, edition, center, subCenter, masterId, masterVersion, localVersion,
+          category, subCategory, localSubCategory);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return edition == key.edition && center == key.center && subCenter == key.subCenter
+          && masterId == key.masterId && masterVersion == key.masterVersion && localVersion == key.localVersion
+          && category == key.category && subCategory == key.subCategory && localSubCategory == key.localSubCategory
+          && descriptors.equals(key.descriptors);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
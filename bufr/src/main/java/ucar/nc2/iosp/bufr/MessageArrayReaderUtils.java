@@ -5,7 +5,7 @@
 package ucar.nc2.iosp.bufr;
 
 import java.nio.ByteBuffer;
-import java.util.HashMap;
+import java.util.Map;
 import ucar.array.StructureMembers;
 import ucar.array.StructureMembers.Member;
 import ucar.ma2.DataType;
@@ -14,7 +14,7 @@ import ucar.ma2.DataType;
 public class MessageArrayReaderUtils {
 
   static void associateMessage2Members(StructureMembers members, DataDescriptor parent,
-      HashMap<DataDescriptor, Member> map) {
+      Map<DataDescriptor, Member> map) {
     for (DataDescriptor dkey : parent.getSubKeys()) {
       if (dkey.name == null) {
         if (dkey.getSubKeys() != null) {
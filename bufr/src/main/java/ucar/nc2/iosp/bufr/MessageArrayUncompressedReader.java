@@ -5,20 +5,18 @@
 
 package ucar.nc2.iosp.bufr;
 
-import com.google.common.base.Preconditions;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.Formatter;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nullable;
 import ucar.array.StructureDataArray;
 import ucar.array.StructureDataStorageBB;
 import ucar.array.StructureMembers;
 import ucar.array.StructureMembers.Member;
-import ucar.nc2.Sequence;
 import ucar.nc2.Structure;
 import ucar.nc2.iosp.BitReader;
 import ucar.unidata.io.RandomAccessFile;
@@ -61,7 +59,7 @@ import ucar.unidata.io.RandomAccessFile;
  * Variable length objects (Sequences) are added to the heap.
  */
 class MessageArrayUncompressedReader {
-  private static final boolean structuresOnHeap = false;
+  private final MessageArrayReaderPlan plan;
   private final Message message; // LOOK gets modified I think
   private final RandomAccessFile raf;
   private final Formatter f;
@@ -73,9 +71,6 @@ class MessageArrayUncompressedReader {
   private final StructureDataStorageBB storageBB;
   private final boolean addTime = false;
 
-  // map dkey to Member recursively
-  private final HashMap<DataDescriptor, Member> topmap = new HashMap<>(100);
-
   /**
    * Uncompressed message reader, results to ucar.array.Array
    *
@@ -86,25 +81,31 @@ class MessageArrayUncompressedReader {
    * @param f output bit count debugging info (may be null)
    */
   MessageArrayUncompressedReader(Structure s, Message proto, Message m, RandomAccessFile raf, @Nullable Formatter f) {
-    // transfer info from proto message LOOK is message modified here?
-    DataDescriptor.transferInfo(proto.getRootDataDescriptor().getSubKeys(), m.getRootDataDescriptor().getSubKeys());
+    this(MessageArrayReaderPlan.compile(s, proto, m), m, raf, f);
+  }
+
+  /**
+   * Uncompressed message reader, using a plan made from a message with the same DataDescriptor tree.
+   *
+   * @param plan the plan for reading messages like m
+   * @param m read this message
+   * @param raf from this file; may be null if reading from bytes, see {@link #readEntireMessage(BitReader)}
+   * @param f output bit count debugging info (may be null)
+   */
+  MessageArrayUncompressedReader(MessageArrayReaderPlan plan, Message m, @Nullable RandomAccessFile raf,
+      @Nullable Formatter f) {
+    this.plan = plan;
     this.message = m;
     this.raf = raf;
     this.f = f;
 
     // allocate ArrayStructureBB for outer structure
-    StructureMembers.Builder membersb = StructureMembers.makeStructureMembers(s);
-    membersb.setStandardOffsets(structuresOnHeap);
-    this.members = membersb.build();
-
+    this.members = plan.getStructureMembers();
     this.nelems = m.getNumberDatasets();
     this.bbuffer = ByteBuffer.allocate(nelems * members.getStorageSizeBytes()).order(ByteOrder.BIG_ENDIAN);
 
     storageBB = new StructureDataStorageBB(members, this.bbuffer, this.nelems);
-    storageBB.setStructuresOnHeap(structuresOnHeap);
-
-    // map dkey to Member recursively
-    MessageArrayReaderUtils.associateMessage2Members(this.members, message.getRootDataDescriptor(), topmap);
+    storageBB.setStructuresOnHeap(MessageArrayReaderPlan.structuresOnHeap);
   }
 
   /**
@@ -114,10 +115,20 @@ class MessageArrayUncompressedReader {
    * @throws IOException on read error
    */
   StructureDataArray readEntireMessage() throws IOException {
-    BitReader reader = new BitReader(raf, message.dataSection.getDataPos() + 4);
-    DataDescriptor root = message.getRootDataDescriptor();
+    return readEntireMessage(new BitReader(raf, message.dataSection.getDataPos() + 4));
+  }
+
+  /**
+   * Read all datasets from a single message
+   *
+   * @param reader positioned at the start of the data in the data section
+   * @return StructureDataArray with all the data from the message in it.
+   * @throws IOException on read error
+   */
+  StructureDataArray readEntireMessage(BitReader reader) throws IOException {
+    DataDescriptor root = plan.getRootDataDescriptor();
     if (!root.isBad) {
-      Request req = new Request(this.storageBB, this.bbuffer, topmap);
+      Request req = new Request(this.storageBB, this.bbuffer, plan.getMemberMap());
       // LOOK why are we changing fields in the message. Could this be in req??
       // Or is this the way we send the info back?
       message.counterDatasets = new BitCounterUncompressed[this.nelems]; // one for each dataset
@@ -147,10 +158,10 @@ class MessageArrayUncompressedReader {
   private static class Request {
     final StructureDataStorageBB storageBB;
     final ByteBuffer bb;
-    final HashMap<DataDescriptor, Member> memberMap;
+    final Map<DataDescriptor, Member> memberMap;
     int row = 0;
 
-    Request(StructureDataStorageBB storageBB, ByteBuffer bb, HashMap<DataDescriptor, Member> memberMap) {
+    Request(StructureDataStorageBB storageBB, ByteBuffer bb, Map<DataDescriptor, Member> memberMap) {
       this.storageBB = storageBB;
       this.bb = bb;
       this.memberMap = memberMap;
@@ -272,22 +283,15 @@ class MessageArrayUncompressedReader {
       DataDescriptor seqdd, DebugOut out) throws IOException {
 
     int nestedNrows = bitCounterNested.getNumberRows(); // the actual number of rows in this sequence
-    Sequence seq = seqdd.refersTo;
-    Preconditions.checkNotNull(seq);
-
     // Create nested StructureDataArray
-    StructureMembers.Builder membersb = StructureMembers.makeStructureMembers(seq);
-    membersb.setStandardOffsets(structuresOnHeap);
-    StructureMembers nestedMembers = membersb.build();
+    MessageArrayReaderPlan nestedPlan = plan.getSequencePlan(seqdd);
+    StructureMembers nestedMembers = nestedPlan.getStructureMembers();
 
     ByteBuffer nestedBB =
         ByteBuffer.allocate(nestedNrows * nestedMembers.getStorageSizeBytes()).order(ByteOrder.BIG_ENDIAN);
     StructureDataStorageBB nestedStorage = new StructureDataStorageBB(nestedMembers, nestedBB, nestedNrows);
-    nestedStorage.setStructuresOnHeap(structuresOnHeap);
-
-    HashMap<DataDescriptor, Member> nestedMap = new HashMap<>();
-    MessageArrayReaderUtils.associateMessage2Members(nestedMembers, seqdd, nestedMap);
-    Request reqNested = new Request(nestedStorage, nestedBB, nestedMap);
+    nestedStorage.setStructuresOnHeap(MessageArrayReaderPlan.structuresOnHeap);
+    Request reqNested = new Request(nestedStorage, nestedBB, nestedPlan.getMemberMap());
 
     // loop through nested obs
     for (int i = 0; i < nestedNrows; i++) {
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.bufr;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.array.Array;
+import ucar.array.StructureData;
+import ucar.array.StructureMembers;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Sequence;
+import ucar.unidata.io.RandomAccessFile;
+
+/** Test reading the observations of a multi-message BUFR file with {@link BufrIospArrays#setDefaultParallelism}. */
+public class TestBufrParallelRead {
+  private static final String unitDir = "../bufr/src/test/data/";
+  private static final int nmessages = 50;
+
+  @ClassRule
+  public static final TemporaryFolder tempFolder = new TemporaryFolder();
+  private static String filename;
+
+  // copies of test1.bufr, each with a different WMO_station_number, with a different type of message mixed in
+  @BeforeClass
+  public static void makeFile() throws IOException {
+    byte[] message = Files.readAllBytes(Paths.get(unitDir + "test1.bufr"));
+    byte[] other = Files.readAllBytes(Paths.get(unitDir + "RadiosondeStationData.bufr"));
+    int dataStart;
+    try (RandomAccessFile raf = new RandomAccessFile(unitDir + "test1.bufr", "r")) {
+      Message m = new MessageScanner(raf).getFirstDataMessage();
+      dataStart = (int) m.dataSection.getDataPos() + 4;
+    }
+
+    File file = tempFolder.newFile("parallel.bufr");
+    try (OutputStream out = new FileOutputStream(file)) {
+      for (int i = 0; i < nmessages; i++) {
+        setStationNumber(message, dataStart, 100 + i);
+        out.write(message);
+        if (i % 10 == 3) {
+          out.write(other); // skipped
+        }
+      }
+    }
+    filename = file.getPath();
+  }
+
+  // the 10 bit WMO_station_number follows the 7 bit WMO_block_number at the start of the data
+  private static void setStationNumber(byte[] message, int dataStart, int station) {
+    for (int i = 0; i < 10; i++) {
+      int bit = 7 + i;
+      int index = dataStart + bit / 8;
+      int mask = 0x80 >> (bit % 8);
+      if ((station & (1 << (9 - i))) != 0) {
+        message[index] |= mask;
+      } else {
+        message[index] &= ~mask;
+      }
+    }
+  }
+
+  @After
+  public void resetParallelism() {
+    BufrIospArrays.setDefaultParallelism(1);
+  }
+
+  private static List<StructureData> readAll() throws IOException {
+    List<StructureData> result = new ArrayList<>();
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      Sequence obs = (Sequence) ncfile.findVariable(BufrIosp.obsRecordName);
+      for (StructureData sdata : obs) {
+        result.add(sdata);
+      }
+    }
+    return result;
+  }
+
+  private static int getStationNumber(StructureData sdata) {
+    return ((Number) sdata.getMemberData("WMO_station_number").getScalar()).intValue();
+  }
+
+  @Test
+  public void testOrderIsPreserved() throws IOException {
+    List<StructureData> sequential = readAll();
+    assertThat(sequential).hasSize(nmessages);
+    for (int i = 0; i < nmessages; i++) {
+      assertThat(getStationNumber(sequential.get(i))).isEqualTo(100 + i);
+    }
+
+    for (int nthreads : new int[] {2, 3, 8}) {
+      BufrIospArrays.setDefaultParallelism(nthreads);
+      List<StructureData> parallel = readAll();
+      assertThat(parallel).hasSize(nmessages);
+      for (int i = 0; i < nmessages; i++) {
+        assertThat(getStationNumber(parallel.get(i))).isEqualTo(100 + i);
+        compare(sequential.get(i), parallel.get(i));
+      }
+    }
+  }
+
+  private static void compare(StructureData want, StructureData got) {
+    for (StructureMembers.Member m : want.getStructureMembers()) {
+      Array<?> wantData = want.getMemberData(m);
+      Array<?> gotData = got.getMemberData(m.getName());
+      assertThat(gotData.length()).isEqualTo(wantData.length());
+      Iterator<?> gotIter = gotData.iterator();
+      for (Object val : wantData) {
+        Object gotVal = gotIter.next();
+        if (val instanceof StructureData) {
+          compare((StructureData) val, (StructureData) gotVal);
+        } else {
+          assertThat(gotVal).isEqualTo(val);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testReadAgain() throws IOException {
+    BufrIospArrays.setDefaultParallelism(4);
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      Sequence obs = (Sequence) ncfile.findVariable(BufrIosp.obsRecordName);
+      // stop part way through, then start again
+      Iterator<StructureData> iter = obs.iterator();
+      for (int i = 0; i < 5; i++) {
+        assertThat(iter.hasNext()).isTrue();
+        assertThat(getStationNumber(iter.next())).isEqualTo(100 + i);
+      }
+      int count = 0;
+      for (StructureData sdata : obs) {
+        assertThat(getStationNumber(sdata)).isEqualTo(100 + count);
+        count++;
+      }
+      assertThat(count).isEqualTo(nmessages);
+    }
+  }
+
+  @Test
+  public void testStopEarly() throws IOException {
+    BufrIospArrays.setDefaultParallelism(2);
+    List<Future<?>> pending = new ArrayList<>();
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      Sequence obs = (Sequence) ncfile.findVariable(BufrIosp.obsRecordName);
+      BufrIospArrays.SeqIterArray iter = (BufrIospArrays.SeqIterArray) obs.iterator();
+      for (int i = 0; i < 5; i++) {
+        assertThat(iter.hasNext()).isTrue();
+        assertThat(getStationNumber(iter.next())).isEqualTo(100 + i);
+      }
+      // the next 3 messages are being decoded, or are waiting to be iterated over
+      assertThat(iter.decoding).hasSize(3);
+      for (Future<?> future : iter.decoding) {
+        if (!future.isDone()) {
+          pending.add(future);
+        }
+      }
+
+      // starting again stops decoding them
+      BufrIospArrays.SeqIterArray again = (BufrIospArrays.SeqIterArray) obs.iterator();
+      assertThat(iter.decoding).isEmpty();
+      for (Future<?> future : pending) {
+        assertThat(future.isCancelled()).isTrue();
+      }
+
+      assertThat(again.hasNext()).isTrue();
+      assertThat(getStationNumber(again.next())).isEqualTo(100);
+      assertThat(again.decoding).isNotEmpty();
+      ncfile.close();
+      // so does closing the file
+      assertThat(again.decoding).isEmpty();
+    }
+  }
+
+  @Test
+  public void testChangeParallelism() throws IOException {
+    BufrIospArrays.setDefaultParallelism(4);
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      Sequence obs = (Sequence) ncfile.findVariable(BufrIosp.obsRecordName);
+      Iterator<StructureData> iter = obs.iterator();
+      int count = 0;
+      while (iter.hasNext()) {
+        // the iteration keeps going with the decoders it started with
+        if (count == 10) {
+          BufrIospArrays.setDefaultParallelism(2);
+        }
+        assertThat(getStationNumber(iter.next())).isEqualTo(100 + count);
+        count++;
+      }
+      assertThat(count).isEqualTo(nmessages);
+    }
+  }
+}
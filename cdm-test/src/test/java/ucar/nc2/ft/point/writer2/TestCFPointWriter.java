@@ -20,6 +20,8 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
 import ucar.nc2.VariableSimpleIF;
 import ucar.nc2.constants.FeatureType;
 import ucar.nc2.ft.FeatureDataset;
@@ -84,6 +86,21 @@ public class TestCFPointWriter {
     assert count == countExpected : "count =" + count + " expected " + countExpected;
   }
 
+  @Test
+  public void testWrite3Buffered() throws IOException {
+    // the records are buffered for each variable; the file must not depend on how many
+    File unbuffered = tempFolder.newFile();
+    writeDataset(location, ftype, CFPointWriterConfig.builder().setBufferSize(1).build(), show, unbuffered);
+    File buffered = tempFolder.newFile();
+    writeDataset(location, ftype, CFPointWriterConfig.builder().setBufferSize(3).build(), show, buffered);
+
+    try (NetcdfFile org = NetcdfFiles.open(unbuffered.getPath());
+        NetcdfFile copy = NetcdfFiles.open(buffered.getPath())) {
+      Formatter f = new Formatter();
+      Assert.assertTrue(f.toString(), CompareNetcdf2.compareFiles(org, copy, f, true, false, false));
+    }
+  }
+
   /*
    * @Test
    * public void testWrite4classic() throws IOException {
@@ -5,16 +5,22 @@
 
 package ucar.nc2.internal.iosp.hdf5;
 
+import org.junit.After;
 import org.junit.experimental.categories.Category;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ucar.ma2.Array;
 import ucar.ma2.Index;
+import ucar.ma2.MAMath;
 import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
 import ucar.nc2.Variable;
+import ucar.unidata.util.test.TestDir;
 import ucar.unidata.util.test.category.NeedsCdmUnitTest;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Class Description.
@@ -94,5 +100,50 @@ public class TestH5filter {
     }
   }
 
+  @After
+  public void resetDecodeExecutor() {
+    // later tests use the default pool
+    H5tiledLayoutBB.resetDecodeExecutor();
+  }
+
+  @org.junit.Test
+  public void testParallelDecode() throws IOException {
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      compareDecode(TestH5.testDir + "msg/MSG1_8bit_HRV.H5", "image1/image_data", pool);
+      compareDecode(TestDir.cdmUnitTestDir + "formats/netcdf4/ncom_relo_fukushima_1km_tmp_2011040800_t000.nc4",
+          "water_temp", pool);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @org.junit.Test
+  public void testSmallBatches() throws IOException {
+    // the chunks read ahead together are over the cap, so they are read in several batches, some of one chunk
+    int saveMaxBatchBytes = H5tiledLayoutBB.maxBatchBytes;
+    try (NetcdfFile ncfile = NetcdfFiles.open(TestH5.testDir + "msg/MSG1_8bit_HRV.H5")) {
+      Variable v = ncfile.findVariable("image1/image_data");
+      assert v != null;
+      Array want = v.read();
+      H5tiledLayoutBB.maxBatchBytes = 1000;
+      Array got = v.read();
+      assert MAMath.nearlyEquals(want, got);
+    } finally {
+      H5tiledLayoutBB.maxBatchBytes = saveMaxBatchBytes;
+    }
+  }
+
+  private void compareDecode(String filename, String varName, ExecutorService pool) throws IOException {
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      Variable v = ncfile.findVariable(varName);
+      assert v != null;
+      H5tiledLayoutBB.setDecodeExecutor(null, 1);
+      Array serial = v.read();
+      H5tiledLayoutBB.setDecodeExecutor(pool, 8);
+      Array parallel = v.read();
+      assert MAMath.nearlyEquals(serial, parallel);
+    }
+  }
 
 }
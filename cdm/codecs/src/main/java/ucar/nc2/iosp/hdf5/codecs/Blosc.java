@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5.codecs;
+
+import io.airlift.compress.MalformedInputException;
+import io.airlift.compress.lz4.Lz4Decompressor;
+import io.airlift.compress.snappy.SnappyDecompressor;
+import io.airlift.compress.zstd.ZstdDecompressor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import ucar.nc2.iosp.hdf5.H5Filter;
+
+/**
+ * HDF5 filter 32001, blosc (version 1 format). The chunk is a single blosc buffer, which is self describing,
+ * so the client data is not needed.
+ * <p>
+ * The buffer has a 16 byte header (version, versionlz, flags, typesize, nbytes, blocksize, cbytes), then the
+ * starting offset of each block. Each block is split into typesize streams, or not, each stream preceded by its
+ * compressed size. Then the block is unshuffled, bitunshuffled or neither.
+ *
+ * @see "https://github.com/Blosc/c-blosc/blob/master/README_HEADER.rst"
+ */
+public class Blosc implements H5Filter {
+  private static final int HEADER_SIZE = 16;
+  private static final int MAX_SPLITS = 16;
+  private static final int MIN_BUFFERSIZE = 128;
+
+  // flags
+  private static final int DOSHUFFLE = 0x1;
+  private static final int MEMCPYED = 0x2;
+  private static final int DOBITSHUFFLE = 0x4;
+  private static final int DONT_SPLIT = 0x10;
+
+  // compressor formats, in the top 3 bits of flags
+  private static final int BLOSCLZ = 0;
+  private static final int LZ4 = 1;
+  private static final int SNAPPY = 2;
+  private static final int ZLIB = 3;
+  private static final int ZSTD = 4;
+
+  @Override
+  public int getId() {
+    return 32001;
+  }
+
+  @Override
+  public String getName() {
+    return "blosc";
+  }
+
+  @Override
+  public ByteBuffer decode(ByteBuffer in, Context context) throws IOException {
+    byte[] src = in.array();
+    int start = in.arrayOffset() + in.position();
+    if (in.remaining() < HEADER_SIZE)
+      throw new IOException("blosc chunk is too short: " + in.remaining());
+    int flags = src[start + 2] & 0xff;
+    int typesize = src[start + 3] & 0xff;
+    int nbytes = readInt(src, start + 4);
+    int blocksize = readInt(src, start + 8);
+    int cbytes = readInt(src, start + 12);
+    if (nbytes < 0 || cbytes > in.remaining() || (nbytes > 0 && blocksize <= 0) || typesize == 0)
+      throw new IOException(String.format("Bad blosc header nbytes=%d blocksize=%d cbytes=%d typesize=%d", nbytes,
+          blocksize, cbytes, typesize));
+
+    ByteBuffer out = context.allocate(nbytes);
+    byte[] dest = out.array();
+    if ((flags & MEMCPYED) != 0) {
+      if (HEADER_SIZE + nbytes > in.remaining())
+        throw new IOException("blosc chunk is too short: " + in.remaining());
+      System.arraycopy(src, start + HEADER_SIZE, dest, 0, nbytes);
+      return out;
+    }
+
+    int compressor = (flags >> 5) & 0x7;
+    boolean shuffle = (flags & DOSHUFFLE) != 0 && typesize > 1;
+    boolean bitshuffle = (flags & DOBITSHUFFLE) != 0;
+    boolean dontSplit = (flags & DONT_SPLIT) != 0;
+    int nblocks = nbytes / blocksize + ((nbytes % blocksize != 0) ? 1 : 0);
+    byte[] tmp = (shuffle || bitshuffle) ? new byte[blocksize] : null;
+
+    try {
+      for (int b = 0; b < nblocks; b++) {
+        int bstart = readInt(src, start + HEADER_SIZE + 4 * b);
+        int bsize = Math.min(blocksize, nbytes - b * blocksize);
+        boolean leftoverBlock = bsize < blocksize;
+        boolean split =
+            !dontSplit && typesize <= MAX_SPLITS && blocksize / typesize >= MIN_BUFFERSIZE && !leftoverBlock;
+        int nsplits = split ? typesize : 1;
+        int splitSize = bsize / nsplits;
+
+        // decompress into tmp if the block has to be unshuffled, else directly into dest
+        byte[] blockDest = (tmp != null) ? tmp : dest;
+        int blockOffset = (tmp != null) ? 0 : b * blocksize;
+        int pos = start + bstart;
+        for (int s = 0; s < nsplits; s++) {
+          int splitBytes = readInt(src, pos);
+          pos += 4;
+          if (splitBytes < 0 || pos + splitBytes > start + cbytes)
+            throw new IOException("Bad blosc split size " + splitBytes);
+          int destPos = blockOffset + s * splitSize;
+          if (splitBytes == splitSize) {
+            System.arraycopy(src, pos, blockDest, destPos, splitSize);
+          } else {
+            int n = decompress(compressor, src, pos, splitBytes, blockDest, destPos, splitSize);
+            if (n != splitSize)
+              throw new IOException(String.format("blosc split decoded to %d bytes, expected %d", n, splitSize));
+          }
+          pos += splitBytes;
+        }
+
+        if (shuffle) {
+          unshuffle(typesize, bsize, tmp, dest, b * blocksize);
+        } else if (bitshuffle) {
+          bitunshuffle(typesize, bsize, tmp, dest, b * blocksize);
+        }
+      }
+    } catch (MalformedInputException | DataFormatException | ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Bad blosc data", e);
+    }
+    return out;
+  }
+
+  private static int readInt(byte[] src, int pos) {
+    return (src[pos] & 0xff) | (src[pos + 1] & 0xff) << 8 | (src[pos + 2] & 0xff) << 16 | (src[pos + 3] & 0xff) << 24;
+  }
+
+  private static int decompress(int compressor, byte[] src, int srcPos, int srcLen, byte[] dest, int destPos,
+      int destLen) throws IOException, DataFormatException {
+    switch (compressor) {
+      case BLOSCLZ:
+        return BloscLz.decompress(src, srcPos, srcLen, dest, destPos, destLen);
+      case LZ4:
+        return new Lz4Decompressor().decompress(src, srcPos, srcLen, dest, destPos, destLen);
+      case SNAPPY:
+        return new SnappyDecompressor().decompress(src, srcPos, srcLen, dest, destPos, destLen);
+      case ZLIB: {
+        Inflater inflater = new Inflater();
+        try {
+          inflater.setInput(src, srcPos, srcLen);
+          int n = 0;
+          while (n < destLen && !inflater.finished()) {
+            int count = inflater.inflate(dest, destPos + n, destLen - n);
+            if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+              break;
+            n += count;
+          }
+          return n;
+        } finally {
+          inflater.end();
+        }
+      }
+      case ZSTD:
+        return new ZstdDecompressor().decompress(src, srcPos, srcLen, dest, destPos, destLen);
+      default:
+        throw new IOException("Unknown blosc compressor " + compressor);
+    }
+  }
+
+  // the i-th bytes of all the elements were stored together; leftover bytes are not shuffled
+  private static void unshuffle(int typesize, int blocksize, byte[] src, byte[] dest, int destOffset) {
+    int nelems = blocksize / typesize;
+    for (int j = 0; j < typesize; j++) {
+      int from = j * nelems;
+      for (int i = 0, to = destOffset + j; i < nelems; i++, to += typesize) {
+        dest[to] = src[from + i];
+      }
+    }
+    int shuffled = nelems * typesize;
+    System.arraycopy(src, shuffled, dest, destOffset + shuffled, blocksize - shuffled);
+  }
+
+  // bit k of byte j of all the elements were stored together, least significant bit first, for a multiple of 8
+  // elements; the leftover bytes are not shuffled
+  private static void bitunshuffle(int typesize, int blocksize, byte[] src, byte[] dest, int destOffset) {
+    int nelems = blocksize / typesize;
+    nelems -= nelems % 8;
+    int rowBytes = nelems / 8;
+    int shuffled = nelems * typesize;
+    Arrays.fill(dest, destOffset, destOffset + shuffled, (byte) 0);
+    for (int j = 0; j < typesize; j++) {
+      for (int k = 0; k < 8; k++) {
+        int row = (j * 8 + k) * rowBytes;
+        for (int i = 0; i < nelems; i++) {
+          int bit = (src[row + (i >> 3)] >> (i & 7)) & 1;
+          dest[destOffset + i * typesize + j] |= (byte) (bit << k);
+        }
+      }
+    }
+    System.arraycopy(src, shuffled, dest, destOffset + shuffled, blocksize - shuffled);
+  }
+
+  /** The blosclz compressor, a variant of FastLZ level 2. */
+  static class BloscLz {
+    private static final int MAX_DISTANCE = 8191;
+
+    static int decompress(byte[] src, int srcPos, int srcLen, byte[] dest, int destPos, int destLen)
+        throws IOException {
+      int ip = srcPos;
+      int ipLimit = srcPos + srcLen;
+      int op = destPos;
+      int opLimit = destPos + destLen;
+      int ctrl = src[ip++] & 31;
+
+      while (true) {
+        if (ctrl >= 32) { // match
+          int len = (ctrl >> 5) - 1;
+          int ofs = (ctrl & 31) << 8;
+          if (len == 7 - 1) {
+            int code;
+            do {
+              code = src[ip++] & 0xff;
+              len += code;
+            } while (code == 255);
+          }
+          int code = src[ip++] & 0xff;
+          len += 3;
+          int ref = op - ofs - code;
+          if (code == 255 && ofs == (31 << 8)) { // match from 16-bit distance
+            ofs = (src[ip++] & 0xff) << 8;
+            ofs += src[ip++] & 0xff;
+            ref = op - ofs - MAX_DISTANCE;
+          }
+          ref--;
+          if (op + len > opLimit || ref < destPos)
+            throw new IOException("Bad blosclz data");
+          for (int i = 0; i < len; i++) // may overlap, so copy byte by byte
+            dest[op++] = dest[ref++];
+
+        } else { // literal run
+          int len = ctrl + 1;
+          if (op + len > opLimit || ip + len > ipLimit)
+            throw new IOException("Bad blosclz data");
+          System.arraycopy(src, ip, dest, op, len);
+          ip += len;
+          op += len;
+        }
+
+        if (ip >= ipLimit)
+          break;
+        ctrl = src[ip++] & 0xff;
+      }
+      return op - destPos;
+    }
+  }
+
+}
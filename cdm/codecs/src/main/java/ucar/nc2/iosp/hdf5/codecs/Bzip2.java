@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5.codecs;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import ucar.nc2.iosp.hdf5.H5Filter;
+
+/**
+ * HDF5 filter 307, bzip2. The chunk is a bzip2 stream.
+ *
+ * @see "https://github.com/HDFGroup/hdf5_plugins/tree/master/BZIP2"
+ */
+public class Bzip2 implements H5Filter {
+  // Copied from ArrayList.
+  private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
+
+  @Override
+  public int getId() {
+    return 307;
+  }
+
+  @Override
+  public String getName() {
+    return "bzip2";
+  }
+
+  @Override
+  public ByteBuffer decode(ByteBuffer in, Context context) throws IOException {
+    // the decoded size is usually exactly the chunk size, so we rarely have to grow the buffer
+    byte[] uncomp = context.allocate(context.getChunkBytes()).array();
+    int nbytes = 0;
+    try (BZip2CompressorInputStream bzIn = new BZip2CompressorInputStream(
+        new ByteArrayInputStream(in.array(), in.arrayOffset() + in.position(), in.remaining()), true)) {
+      while (true) {
+        if (nbytes == uncomp.length) {
+          int b = bzIn.read();
+          if (b < 0)
+            break;
+          if (uncomp.length >= MAX_ARRAY_LEN)
+            throw new IOException("bzip2 decoded chunk is larger than the maximum array length " + MAX_ARRAY_LEN);
+          uncomp = Arrays.copyOf(uncomp, (int) Math.min(2L * uncomp.length + 1, MAX_ARRAY_LEN));
+          uncomp[nbytes++] = (byte) b;
+        }
+        int n = bzIn.read(uncomp, nbytes, uncomp.length - nbytes);
+        if (n < 0)
+          break;
+        nbytes += n;
+      }
+    }
+
+    ByteBuffer result = ByteBuffer.wrap(uncomp);
+    result.limit(nbytes);
+    return result;
+  }
+
+}
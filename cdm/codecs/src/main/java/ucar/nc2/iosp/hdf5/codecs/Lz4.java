@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5.codecs;
+
+import io.airlift.compress.MalformedInputException;
+import io.airlift.compress.lz4.Lz4Decompressor;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import ucar.nc2.iosp.hdf5.H5Filter;
+
+/**
+ * HDF5 filter 32004, lz4. The chunk starts with the decoded size (8 bytes) and the block size (4 bytes), followed by
+ * the blocks, each preceded by its compressed size (4 bytes). All sizes are big endian.
+ * A block whose compressed size equals its decoded size is stored uncompressed.
+ *
+ * @see "https://github.com/HDFGroup/hdf5_plugins/tree/master/LZ4"
+ */
+public class Lz4 implements H5Filter {
+
+  @Override
+  public int getId() {
+    return 32004;
+  }
+
+  @Override
+  public String getName() {
+    return "lz4";
+  }
+
+  @Override
+  public ByteBuffer decode(ByteBuffer in, Context context) throws IOException {
+    ByteBuffer src = in.duplicate(); // big endian
+    if (src.remaining() < 12)
+      throw new IOException("lz4 chunk is too short: " + src.remaining());
+    long origSize = src.getLong();
+    int blockSize = src.getInt();
+    if (origSize < 0 || origSize > Integer.MAX_VALUE - 8 || blockSize <= 0)
+      throw new IOException(String.format("Bad lz4 header decoded size=%d block size=%d", origSize, blockSize));
+
+    int size = (int) origSize;
+    ByteBuffer out = context.allocate(size);
+    byte[] dest = out.array();
+    Lz4Decompressor decompressor = new Lz4Decompressor();
+    int pos = 0;
+    try {
+      while (pos < size) {
+        int want = Math.min(blockSize, size - pos);
+        int compressedSize = src.getInt();
+        if (compressedSize <= 0 || compressedSize > src.remaining())
+          throw new IOException("Bad lz4 block size " + compressedSize);
+        int srcPos = src.arrayOffset() + src.position();
+        if (compressedSize == want) {
+          System.arraycopy(src.array(), srcPos, dest, pos, want);
+        } else {
+          int n = decompressor.decompress(src.array(), srcPos, compressedSize, dest, pos, want);
+          if (n != want)
+            throw new IOException(String.format("lz4 block decoded to %d bytes, expected %d", n, want));
+        }
+        src.position(src.position() + compressedSize);
+        pos += want;
+      }
+    } catch (MalformedInputException | BufferUnderflowException e) {
+      throw new IOException("Bad lz4 data", e);
+    }
+    return out;
+  }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5.codecs;
+
+import io.airlift.compress.MalformedInputException;
+import io.airlift.compress.zstd.ZstdDecompressor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import ucar.nc2.iosp.hdf5.H5Filter;
+
+/**
+ * HDF5 filter 32015, zstd. The chunk is a single zstd frame.
+ *
+ * @see "https://github.com/aparamon/HDF5Plugin-Zstandard"
+ */
+public class Zstd implements H5Filter {
+
+  @Override
+  public int getId() {
+    return 32015;
+  }
+
+  @Override
+  public String getName() {
+    return "zstd";
+  }
+
+  @Override
+  public ByteBuffer decode(ByteBuffer in, Context context) throws IOException {
+    byte[] src = in.array();
+    int start = in.arrayOffset() + in.position();
+    // the frame header has the decoded size, unless the writer left it out
+    long size = ZstdDecompressor.getDecompressedSize(src, start, in.remaining());
+    if (size < 0)
+      size = context.getChunkBytes();
+    if (size > Integer.MAX_VALUE - 8)
+      throw new IOException("zstd decoded chunk is too large: " + size);
+
+    ByteBuffer out = context.allocate((int) size);
+    try {
+      int n = new ZstdDecompressor().decompress(src, start, in.remaining(), out.array(), 0, (int) size);
+      out.limit(n);
+    } catch (MalformedInputException e) {
+      throw new IOException("Bad zstd data", e);
+    }
+    return out;
+  }
+
+}
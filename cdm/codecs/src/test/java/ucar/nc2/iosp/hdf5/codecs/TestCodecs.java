@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5.codecs;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.airlift.compress.lz4.Lz4Compressor;
+import io.airlift.compress.zstd.ZstdCompressor;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.Test;
+import ucar.nc2.iosp.hdf5.H5Filter;
+import ucar.nc2.iosp.hdf5.H5Filters;
+
+/** Test the codec H5Filters against their reference encoders, or hand made buffers. */
+public class TestCodecs {
+
+  private static class TestContext implements H5Filter.Context {
+    final int chunkBytes;
+
+    TestContext(int chunkBytes) {
+      this.chunkBytes = chunkBytes;
+    }
+
+    public int[] getClientData() {
+      return new int[0];
+    }
+
+    public int getElemSize() {
+      return 4;
+    }
+
+    public int getChunkBytes() {
+      return chunkBytes;
+    }
+
+    public ByteOrder getByteOrder() {
+      return ByteOrder.LITTLE_ENDIAN;
+    }
+
+    public ByteBuffer allocate(int nbytes) {
+      return ByteBuffer.allocate(nbytes);
+    }
+  }
+
+  private static byte[] decode(int id, byte[] in, int chunkBytes) throws IOException {
+    H5Filter filter = H5Filters.find(id);
+    assertThat(filter).isNotNull();
+    ByteBuffer out = filter.decode(ByteBuffer.wrap(in), new TestContext(chunkBytes));
+    return Arrays.copyOfRange(out.array(), out.arrayOffset() + out.position(), out.arrayOffset() + out.limit());
+  }
+
+  private static byte[] testData(int n) {
+    byte[] data = new byte[n];
+    for (int i = 0; i < n; i++)
+      data[i] = (byte) (i % 7 + i / 100);
+    return data;
+  }
+
+  @Test
+  public void testServiceLoader() {
+    assertThat(H5Filters.find(32001)).isInstanceOf(Blosc.class);
+    assertThat(H5Filters.find(307)).isInstanceOf(Bzip2.class);
+    assertThat(H5Filters.find(32004)).isInstanceOf(Lz4.class);
+    assertThat(H5Filters.find(32015)).isInstanceOf(Zstd.class);
+  }
+
+  @Test
+  public void testZstd() throws IOException {
+    byte[] data = testData(10000);
+    ZstdCompressor compressor = new ZstdCompressor();
+    byte[] compressed = new byte[compressor.maxCompressedLength(data.length)];
+    int n = compressor.compress(data, 0, data.length, compressed, 0, compressed.length);
+    assertThat(decode(32015, Arrays.copyOf(compressed, n), data.length)).isEqualTo(data);
+  }
+
+  @Test
+  public void testLz4() throws IOException {
+    byte[] data = testData(10000);
+    // the first block is random, so it is stored uncompressed
+    byte[] random = new byte[4096];
+    new Random(17).nextBytes(random);
+    System.arraycopy(random, 0, data, 0, random.length);
+
+    int blockSize = 4096;
+    ByteBuffer bb = ByteBuffer.allocate(20000);
+    bb.putLong(data.length).putInt(blockSize);
+    Lz4Compressor compressor = new Lz4Compressor();
+    for (int pos = 0; pos < data.length; pos += blockSize) {
+      int len = Math.min(blockSize, data.length - pos);
+      byte[] block = new byte[compressor.maxCompressedLength(len)];
+      int n = compressor.compress(data, pos, len, block, 0, block.length);
+      if (n >= len) {
+        bb.putInt(len).put(data, pos, len);
+      } else {
+        bb.putInt(n).put(block, 0, n);
+      }
+    }
+    assertThat(decode(32004, Arrays.copyOf(bb.array(), bb.position()), data.length)).isEqualTo(data);
+  }
+
+  @Test
+  public void testBzip2() throws IOException {
+    byte[] data = testData(10000);
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (BZip2CompressorOutputStream out = new BZip2CompressorOutputStream(bos)) {
+      out.write(data);
+    }
+    // chunkBytes smaller than the result, so the buffer has to grow
+    assertThat(decode(307, bos.toByteArray(), data.length)).isEqualTo(data);
+    assertThat(decode(307, bos.toByteArray(), 100)).isEqualTo(data);
+  }
+
+  private static ByteBuffer bloscHeader(int flags, int typesize, int nbytes, int blocksize, int cbytes) {
+    ByteBuffer bb = ByteBuffer.allocate(cbytes).order(ByteOrder.LITTLE_ENDIAN);
+    bb.put((byte) 2).put((byte) 1).put((byte) flags).put((byte) typesize);
+    bb.putInt(nbytes).putInt(blocksize).putInt(cbytes);
+    return bb;
+  }
+
+  @Test
+  public void testBloscMemcpyed() throws IOException {
+    byte[] data = testData(1000);
+    ByteBuffer bb = bloscHeader(0x2, 4, data.length, data.length, 16 + data.length);
+    bb.put(data);
+    assertThat(decode(32001, bb.array(), data.length)).isEqualTo(data);
+  }
+
+  @Test
+  public void testBloscZlibShuffle() throws IOException {
+    // 2 blocks of 1024 bytes, each split into 4 streams, and a leftover block of 102 bytes that is not split
+    int typesize = 4;
+    int blocksize = 1024;
+    byte[] data = testData(2 * blocksize + 102);
+    byte[] shuffled = new byte[data.length];
+    for (int b = 0; b * blocksize < data.length; b++) {
+      int bsize = Math.min(blocksize, data.length - b * blocksize);
+      int nelems = bsize / typesize;
+      for (int i = 0; i < nelems; i++)
+        for (int j = 0; j < typesize; j++)
+          shuffled[b * blocksize + j * nelems + i] = data[b * blocksize + i * typesize + j];
+      int rem = bsize - nelems * typesize;
+      System.arraycopy(data, b * blocksize + bsize - rem, shuffled, b * blocksize + bsize - rem, rem);
+    }
+
+    ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+    int[] bstarts = new int[3];
+    int overhead = 16 + 4 * bstarts.length;
+    for (int b = 0; b < 3; b++) {
+      bstarts[b] = overhead + blocks.size();
+      int bsize = Math.min(blocksize, data.length - b * blocksize);
+      int nsplits = (b < 2) ? typesize : 1;
+      int splitSize = bsize / nsplits;
+      for (int s = 0; s < nsplits; s++) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(shuffled, b * blocksize + s * splitSize, splitSize);
+        deflater.finish();
+        byte[] split = new byte[2 * splitSize + 64];
+        int n = deflater.deflate(split);
+        deflater.end();
+        ByteBuffer len = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(n);
+        blocks.write(len.array());
+        blocks.write(split, 0, n);
+      }
+    }
+
+    int flags = 0x1 | (3 << 5); // shuffle, zlib
+    ByteBuffer bb = bloscHeader(flags, typesize, data.length, blocksize, overhead + blocks.size());
+    for (int bstart : bstarts)
+      bb.putInt(bstart);
+    bb.put(blocks.toByteArray());
+    assertThat(decode(32001, bb.array(), data.length)).isEqualTo(data);
+  }
+
+  @Test
+  public void testBloscBitshuffle() throws IOException {
+    // 16 elements of 2 bytes, stored uncompressed after bitshuffling
+    int typesize = 2;
+    byte[] data = testData(32);
+    byte[] shuffled = new byte[32];
+    for (int j = 0; j < typesize; j++)
+      for (int k = 0; k < 8; k++)
+        for (int i = 0; i < 16; i++) {
+          int bit = (data[i * typesize + j] >> k) & 1;
+          int pos = (j * 8 + k) * 16 + i;
+          shuffled[pos / 8] |= (byte) (bit << (pos % 8));
+        }
+
+    int flags = 0x4 | 0x10; // bitshuffle, don't split
+    ByteBuffer bb = bloscHeader(flags, typesize, data.length, data.length, 16 + 4 + 4 + data.length);
+    bb.putInt(20).putInt(data.length).put(shuffled);
+    assertThat(decode(32001, bb.array(), data.length)).isEqualTo(data);
+  }
+
+  @Test
+  public void testBloscLz() throws IOException {
+    // literal run "abc", then a match of length 6 at distance 3
+    byte[] src = {2, 'a', 'b', 'c', (byte) 0x80, 2};
+    byte[] dest = new byte[9];
+    int n = Blosc.BloscLz.decompress(src, 0, src.length, dest, 0, dest.length);
+    assertThat(n).isEqualTo(9);
+    assertThat(new String(dest, "US-ASCII")).isEqualTo("abcabcabc");
+  }
+
+}
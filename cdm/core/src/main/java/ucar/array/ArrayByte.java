@@ -138,7 +138,7 @@ public final class ArrayByte extends Array<Byte> {
 
     @Override
     public Byte get(long elem) {
-      return storage[(byte) elem];
+      return storage[(int) elem];
     }
 
     @Override
@@ -401,6 +401,21 @@ public class Arrays {
     return newshape;
   }
 
+  /**
+   * Copy all or a portion of data, in canonical order, to a java primitive array of the same type.
+   * Mimic of System.arraycopy(Object src, int srcPos, Object dest, int destPos, int length);
+   * Do not use this for Vlens or Structures.
+   *
+   * @param data copy from this Array.
+   * @param srcPos starting element of data, in canonical order.
+   * @param dest destination java primitive array.
+   * @param destPos starting pos in destination.
+   * @param length copy these number of elements.
+   */
+  public static void arraycopy(Array<?> data, int srcPos, Object dest, int destPos, long length) {
+    data.arraycopy(srcPos, dest, destPos, length);
+  }
+
   public static Object copyPrimitiveArray(Array<?> data) {
     DataType dataType = data.getDataType();
     int idx = 0;
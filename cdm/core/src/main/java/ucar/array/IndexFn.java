@@ -402,7 +402,14 @@ final class IndexFn implements Iterable<Integer> {
 
     private Odometer(int startElement, long nelems) {
       this.nelems = nelems; // this many elements
-      current = odometer(startElement); // starts here
+      current = new int[rank]; // starts at the canonical position of startElement, not its storage position
+      long element = startElement;
+      for (int dim = rank - 1; dim >= 0; dim--) {
+        if (shape[dim] <= 0)
+          continue;
+        current[dim] = (int) (element % shape[dim]);
+        element /= shape[dim];
+      }
       nextIndex = get(current);
     }
 
@@ -702,6 +702,42 @@ public class NetcdfFile implements FileCacheable, Closeable {
     return 0;
   }
 
+  /**
+   * Estimate of the memory held while open, in bytes: the header objects, any cached data, and the iosp's buffers and
+   * indexes. Used by memory bounded file caches.
+   */
+  @Override
+  public long getMemoryEstimate() {
+    long size = estimateMemory(rootGroup);
+    if (iosp instanceof AbstractIOServiceProvider)
+      size += ((AbstractIOServiceProvider) iosp).getMemoryEstimate();
+    return size;
+  }
+
+  private static long estimateMemory(Group group) {
+    long size = 256 + 64 * group.getDimensions().size() + estimateMemory(group.attributes());
+    for (Variable v : group.getVariables()) {
+      size += 512 + estimateMemory(v.attributes());
+      if (v.hasCachedData())
+        size += Math.max(0, v.getSize()) * v.getElementSize();
+    }
+    for (Group nested : group.getGroups())
+      size += estimateMemory(nested);
+    return size;
+  }
+
+  private static long estimateMemory(AttributeContainer atts) {
+    long size = 0;
+    for (Attribute att : atts) {
+      size += 64;
+      if (att.isString())
+        size += 2 * att.getStringValue().length();
+      else
+        size += (long) att.getLength() * att.getDataType().getSize();
+    }
+    return size;
+  }
+
   /**
    * Access to iosp debugging info.
    *
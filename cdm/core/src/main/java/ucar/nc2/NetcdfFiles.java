@@ -63,6 +63,13 @@ public class NetcdfFiles {
     // Most IOSPs are loaded using the ServiceLoader mechanism. One problem with this is that we no longer
     // control the order which IOSPs try to open. So its harder to avoid mis-behaving and slow IOSPs from
     // making open() slow. So we load the core ones here to make sure they are tried first.
+    try {
+      // only opens the ZarrStoreFile of its RandomAccessFileProvider, which has no contents for others to read
+      registerIOProvider("ucar.nc2.iosp.zarr.ZarrIosp");
+    } catch (Throwable e) {
+      if (loadWarnings)
+        log.info("Cant load class ZarrIosp", e);
+    }
     try {
       registerIOProvider("ucar.nc2.internal.iosp.hdf5.H5iospArrays");
     } catch (Throwable e) {
@@ -96,6 +103,13 @@ public class NetcdfFiles {
         log.info("Cant load class InMemoryRandomAccessFileProvider", e);
     }
 
+    try {
+      registerRandomAccessFileProvider("ucar.unidata.io.MappedRandomAccessFile$Provider");
+    } catch (Throwable e) {
+      if (loadWarnings)
+        log.info("Cant load class MappedRandomAccessFileProvider", e);
+    }
+
     // if a user explicitly registers an IOSP or RandomAccessFile implementation via
     // registerIOProvider or registerRandomAccessFileProvider, this ensures they are tried first,
     // even before the core implementations.
@@ -345,7 +359,16 @@ public class NetcdfFiles {
     return canOpen;
   }
 
-  private static ucar.unidata.io.RandomAccessFile getRaf(String location, int buffer_size) throws IOException {
+  /**
+   * Open a RandomAccessFile using the registered RandomAccessFile Providers, or as a local file,
+   * uncompressing it if needed.
+   *
+   * @param location location of the file
+   * @param buffer_size RandomAccessFile buffer size, if <= 0, use default size
+   * @return the RandomAccessFile, caller must close.
+   * @throws IOException if it cant be opened
+   */
+  public static ucar.unidata.io.RandomAccessFile getRaf(String location, int buffer_size) throws IOException {
     String uriString = location.trim();
     if (buffer_size <= 0) {
       buffer_size = default_buffersize;
@@ -360,7 +383,7 @@ public class NetcdfFiles {
         Preconditions.checkNotNull(raf);
         // TODO what if resource location cannot be reliably used to determine compression
         // TODO can provider tell if it owns it if compressed?
-        if (looksCompressed(uriString)) {
+        if (looksCompressed(uriString) && !provider.isCompressionHandled(location)) {
           raf = downloadAndDecompress(raf, uriString, buffer_size);
         }
         break;
@@ -374,7 +397,7 @@ public class NetcdfFiles {
           raf = provider.open(location);
           Preconditions.checkNotNull(raf);
           // TODO what if resource location cannot be reliably used to determine compression
-          if (looksCompressed(uriString)) {
+          if (looksCompressed(uriString) && !provider.isCompressionHandled(location)) {
             raf = downloadAndDecompress(raf, uriString, buffer_size);
           }
           break;
@@ -25,6 +25,7 @@ public enum DataFormatType {
   NETCDF4("NetCDF-4"), //
   NEXRAD2(null), //
   NIDS(null), //
+  ZARR("Zarr"), //
   //
   GIF("image/gif"), //
   JPEG("image/jpeg"), //
@@ -522,7 +522,8 @@ public class DatasetUrl {
   }
 
   private static boolean checkIfNcml(File file) throws IOException {
-    if (!file.exists()) {
+    // a directory may be a dataset too, eg a Zarr store
+    if (!file.isFile()) {
       return false;
     }
 
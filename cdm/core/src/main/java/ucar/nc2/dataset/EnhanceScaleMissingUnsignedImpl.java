@@ -4,7 +4,9 @@
  */
 package ucar.nc2.dataset;
 
+import java.util.Iterator;
 import java.util.Set;
+import java.util.stream.IntStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ucar.ma2.*;
@@ -561,45 +563,313 @@ public class EnhanceScaleMissingUnsignedImpl implements EnhanceScaleMissingUnsig
       return in; // Nothing to do!
     }
 
-    if (getSignedness() == Signedness.SIGNED) {
-      convertUnsigned = false;
+    Converter converter = new Converter(convertUnsigned, applyScaleOffset, convertMissing);
+    if (converter.isIdentity(in.getDataType())) {
+      return in.copy();
     }
-    if (!hasScaleOffset()) {
-      applyScaleOffset = false;
+
+    Array out = Array.factory(converter.outType, in.getShape());
+    Object src = in.get1DJavaArray(in.getDataType());
+    Object dest = out.getStorage();
+    converter.convert((int) in.getSize(), (pos, len, buf) -> converter.convertBlock(src, pos, dest, pos, len, buf));
+    return out;
+  }
+
+  /**
+   * Perform the specified conversions on each element of {@code in}, as {@link #convert(Array, boolean, boolean,
+   * boolean)} does.
+   */
+  public ucar.array.Array<?> convertArray(ucar.array.Array<?> in, boolean convertUnsigned, boolean applyScaleOffset,
+      boolean convertMissing) {
+    if (!in.getDataType().isNumeric() || (!convertUnsigned && !applyScaleOffset && !convertMissing)) {
+      return in; // Nothing to do!
     }
 
-    DataType outType = origDataType;
-    if (convertUnsigned) {
-      outType = getUnsignedConversionType();
+    Converter converter = new Converter(convertUnsigned, applyScaleOffset, convertMissing);
+    if (converter.isIdentity(in.getDataType())) {
+      return in; // immutable, so no need to copy
     }
-    if (applyScaleOffset) {
-      outType = getScaledOffsetType();
+
+    int n = (int) in.length();
+    Object dest = java.lang.reflect.Array.newInstance(converter.outType.getPrimitiveClassType(), n);
+    converter.convert(in, 0, dest, 0, n);
+    return ucar.array.Arrays.factory(converter.outType, in.getShape(), dest);
+  }
+
+  /**
+   * Like {@link #convertArray(ucar.array.Array, boolean, boolean, boolean)}, but the conversions are done each time an
+   * element of the returned Array is accessed, so the converted data is never copied. Use this when only some of the
+   * elements will be used.
+   */
+  public ucar.array.Array<?> convertArrayView(ucar.array.Array<?> in, boolean convertUnsigned,
+      boolean applyScaleOffset, boolean convertMissing) {
+    if (!in.getDataType().isNumeric() || (!convertUnsigned && !applyScaleOffset && !convertMissing)) {
+      return in; // Nothing to do!
     }
 
-    if (outType != DataType.FLOAT && outType != DataType.DOUBLE) {
-      convertMissing = false;
+    Converter converter = new Converter(convertUnsigned, applyScaleOffset, convertMissing);
+    if (converter.isIdentity(in.getDataType())) {
+      return in;
     }
+    return ucar.array.Arrays.factory(converter.outType, in.getShape(), new ConvertedStorage(converter, in));
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // The conversions are done on blocks of BLOCK_SIZE elements, in a double[] buffer: one primitive loop for the
+  // source type and the unsigned conversion, then scale/offset and missing, then one primitive loop for the result
+  // type. Arrays larger than CHUNK_SIZE are converted in parallel.
+
+  private static final int BLOCK_SIZE = 1024;
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private interface BlockConversion {
+    void convert(int pos, int len, double[] buf);
+  }
 
-    Array out = Array.factory(outType, in.getShape());
-    IndexIterator iterIn = in.getIndexIterator();
-    IndexIterator iterOut = out.getIndexIterator();
+  /** The conversions of one call, resolved against the attributes of the Variable. */
+  private class Converter {
+    private final boolean unsigned;
+    private final boolean scaleOffset;
+    private final boolean missing;
+    private final DataType outType;
+    // the tests that isMissing() does, without the ones that are always false
+    private final boolean testMissingValue, testFillValue, testInvalidData;
 
-    while (iterIn.hasNext()) {
-      Number value = (Number) iterIn.getObjectNext();
+    Converter(boolean convertUnsigned, boolean applyScaleOffset, boolean convertMissing) {
+      this.unsigned = convertUnsigned && getSignedness() == Signedness.UNSIGNED;
+      this.scaleOffset = applyScaleOffset && hasScaleOffset();
 
-      if (convertUnsigned) {
-        value = convertUnsigned(value);
+      DataType outType = origDataType;
+      if (unsigned) {
+        outType = getUnsignedConversionType();
       }
-      if (applyScaleOffset) {
-        value = applyScaleOffset(value);
+      if (scaleOffset) {
+        outType = getScaledOffsetType();
       }
-      if (convertMissing) {
-        value = convertMissing(value);
+      this.outType = outType;
+
+      // isMissing() is only true for NaN unless hasMissing(), and NaN converts to NaN
+      this.missing = convertMissing && (outType == DataType.FLOAT || outType == DataType.DOUBLE) && hasMissing();
+      this.testMissingValue = missingDataIsMissing && hasMissingValue();
+      this.testFillValue = fillValueIsMissing && hasFillValue();
+      this.testInvalidData = invalidDataIsMissing && hasValidData();
+    }
+
+    private boolean isMissing(double val) {
+      return Double.isNaN(val) || (testMissingValue && isMissingValue(val)) || (testFillValue && isFillValue(val))
+          || (testInvalidData && isInvalidData(val));
+    }
+
+    /** If the data is already the result. */
+    boolean isIdentity(DataType inType) {
+      return !unsigned && !scaleOffset && !missing && inType == outType;
+    }
+
+    /** Run the conversion on n elements, in parallel if large. */
+    void convert(int n, BlockConversion conversion) {
+      int nchunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+      if (nchunks <= 1) {
+        convertChunk(0, n, conversion);
+      } else {
+        IntStream.range(0, nchunks).parallel()
+            .forEach(c -> convertChunk(c * CHUNK_SIZE, Math.min(n, (c + 1) * CHUNK_SIZE), conversion));
       }
+    }
 
-      iterOut.setObjectNext(value);
+    private void convertChunk(int from, int to, BlockConversion conversion) {
+      double[] buf = new double[BLOCK_SIZE];
+      for (int pos = from; pos < to; pos += BLOCK_SIZE) {
+        conversion.convert(pos, Math.min(BLOCK_SIZE, to - pos), buf);
+      }
     }
 
-    return out;
+    /** Convert len elements of in, starting at srcPos in canonical order, into the primitive array dest. */
+    void convert(ucar.array.Array<?> in, int srcPos, Object dest, int destPos, int len) {
+      Class<?> srcType = in.getDataType().getPrimitiveClassType();
+      convert(len, (pos, n, buf) -> {
+        Object src = java.lang.reflect.Array.newInstance(srcType, n);
+        ucar.array.Arrays.arraycopy(in, srcPos + pos, src, 0, n);
+        convertBlock(src, 0, dest, destPos + pos, n, buf);
+      });
+    }
+
+    /** Convert len elements of the primitive array src into the primitive array dest, using buf. */
+    void convertBlock(Object src, int srcPos, Object dest, int destPos, int len, double[] buf) {
+      decode(src, srcPos, buf, len);
+      if (scaleOffset) {
+        for (int i = 0; i < len; i++) {
+          buf[i] = scale * buf[i] + offset;
+        }
+      }
+      if (missing) {
+        for (int i = 0; i < len; i++) {
+          if (isMissing(buf[i])) {
+            buf[i] = Double.NaN;
+          }
+        }
+      }
+      encode(buf, dest, destPos, len);
+    }
+
+    private void decode(Object src, int srcPos, double[] buf, int len) {
+      if (src instanceof byte[]) {
+        byte[] b = (byte[]) src;
+        if (unsigned) {
+          for (int i = 0; i < len; i++)
+            buf[i] = b[srcPos + i] & 0xff;
+        } else {
+          for (int i = 0; i < len; i++)
+            buf[i] = b[srcPos + i];
+        }
+      } else if (src instanceof short[]) {
+        short[] s = (short[]) src;
+        if (unsigned) {
+          for (int i = 0; i < len; i++)
+            buf[i] = s[srcPos + i] & 0xffff;
+        } else {
+          for (int i = 0; i < len; i++)
+            buf[i] = s[srcPos + i];
+        }
+      } else if (src instanceof int[]) {
+        int[] v = (int[]) src;
+        if (unsigned) {
+          for (int i = 0; i < len; i++)
+            buf[i] = v[srcPos + i] & 0xffffffffL;
+        } else {
+          for (int i = 0; i < len; i++)
+            buf[i] = v[srcPos + i];
+        }
+      } else if (src instanceof long[]) {
+        long[] v = (long[]) src;
+        for (int i = 0; i < len; i++) {
+          long val = v[srcPos + i];
+          // unsigned: halve, keeping the low bit so that it rounds like BigInteger.doubleValue()
+          buf[i] = (unsigned && val < 0) ? (double) ((val >>> 1) | (val & 1)) * 2.0 : val;
+        }
+      } else if (src instanceof float[]) {
+        float[] f = (float[]) src;
+        for (int i = 0; i < len; i++)
+          buf[i] = f[srcPos + i];
+      } else {
+        System.arraycopy(src, srcPos, buf, 0, len);
+      }
+    }
+
+    private void encode(double[] buf, Object dest, int destPos, int len) {
+      switch (outType.getPrimitiveClassType().getName()) {
+        case "byte": {
+          byte[] b = (byte[]) dest;
+          for (int i = 0; i < len; i++)
+            b[destPos + i] = (byte) buf[i];
+          break;
+        }
+        case "short": {
+          short[] s = (short[]) dest;
+          for (int i = 0; i < len; i++)
+            s[destPos + i] = (short) buf[i];
+          break;
+        }
+        case "int": {
+          int[] v = (int[]) dest;
+          for (int i = 0; i < len; i++)
+            v[destPos + i] = (int) buf[i];
+          break;
+        }
+        case "long": {
+          long[] v = (long[]) dest;
+          for (int i = 0; i < len; i++)
+            v[destPos + i] = (long) buf[i];
+          break;
+        }
+        case "float": {
+          float[] f = (float[]) dest;
+          for (int i = 0; i < len; i++)
+            f[destPos + i] = (float) buf[i];
+          break;
+        }
+        default:
+          System.arraycopy(buf, 0, dest, destPos, len);
+      }
+    }
+
+    /** Convert a single element. */
+    Number convert(Number value) {
+      double val;
+      if (unsigned) {
+        val = DataType.widenNumberIfNegative(value).doubleValue();
+      } else {
+        val = value.doubleValue();
+      }
+      if (scaleOffset) {
+        val = scale * val + offset;
+      }
+      if (missing && isMissing(val)) {
+        val = Double.NaN;
+      }
+
+      switch (outType.getPrimitiveClassType().getName()) {
+        case "byte":
+          return (byte) val;
+        case "short":
+          return (short) val;
+        case "int":
+          return (int) val;
+        case "long":
+          return (long) val;
+        case "float":
+          return (float) val;
+        default:
+          return val;
+      }
+    }
+  }
+
+  /** Storage for a view of converted data, that does the conversion when the elements are accessed. */
+  private static class ConvertedStorage implements ucar.array.Storage<Number> {
+    private final Converter converter;
+    private final ucar.array.Array<?> in;
+
+    ConvertedStorage(Converter converter, ucar.array.Array<?> in) {
+      this.converter = converter;
+      this.in = in;
+    }
+
+    @Override
+    public long length() {
+      return in.length();
+    }
+
+    @Override
+    public Number get(long elem) {
+      // elem is in canonical order, which may not be the order of in's storage
+      int[] shape = in.getShape();
+      int[] index = new int[shape.length];
+      for (int dim = shape.length - 1; dim >= 0; dim--) {
+        index[dim] = (int) (elem % shape[dim]);
+        elem /= shape[dim];
+      }
+      return converter.convert((Number) in.get(index));
+    }
+
+    @Override
+    public void arraycopy(int srcPos, Object dest, int destPos, long length) {
+      converter.convert(in, srcPos, dest, destPos, (int) length);
+    }
+
+    @Override
+    public Iterator<Number> iterator() {
+      Iterator<?> iter = in.iterator();
+      return new Iterator<Number>() {
+        @Override
+        public boolean hasNext() {
+          return iter.hasNext();
+        }
+
+        @Override
+        public Number next() {
+          return converter.convert((Number) iter.next());
+        }
+      };
+    }
   }
 }
@@ -22,6 +22,7 @@ import ucar.nc2.iosp.IOServiceProvider;
 import ucar.nc2.util.CancelTask;
 import ucar.nc2.internal.cache.FileCache;
 import ucar.nc2.internal.cache.FileCacheIF;
+import ucar.nc2.internal.cache.FileCacheTinyLfu;
 import ucar.nc2.internal.cache.FileFactory;
 
 /**
@@ -35,7 +36,7 @@ public class NetcdfDatasets {
   ////////////////////////////////////////////////////////////////////////////////////
   // NetcdfFile caching
 
-  private static ucar.nc2.internal.cache.FileCache netcdfFileCache;
+  private static FileCacheIF netcdfFileCache;
   private static ucar.nc2.internal.cache.FileFactory defaultNetcdfFileFactory = new StandardFileFactory();
 
   // no state, so a singleton is ok
@@ -73,6 +74,18 @@ public class NetcdfDatasets {
     netcdfFileCache = new FileCache("NetcdfFileCache ", minElementsInMemory, maxElementsInMemory, hardLimit, period);
   }
 
+  /**
+   * Enable file caching with a memory bounded cache, see FileCacheTinyLfu. call this before calling acquireFile().
+   * When application terminates, call NetcdfDataset.shutdown().
+   *
+   * @param maxWeight evict unused files when their total estimated memory goes over this many bytes.
+   * @param maxFiles if > 0, also evict unused files when there are more than this many open.
+   * @param period if > 0, close files that have not been used for this number of seconds.
+   */
+  public static synchronized void initNetcdfFileCacheWeighted(long maxWeight, int maxFiles, int period) {
+    netcdfFileCache = new FileCacheTinyLfu("NetcdfFileCache ", maxWeight, maxFiles, period);
+  }
+
   public static synchronized void disableNetcdfFileCache() {
     if (null != netcdfFileCache)
       netcdfFileCache.disable();
@@ -86,6 +99,7 @@ public class NetcdfDatasets {
   public static synchronized void shutdown() {
     disableNetcdfFileCache();
     FileCache.shutdown();
+    FileCacheTinyLfu.shutdown();
   }
 
   /**
@@ -478,7 +492,7 @@ public class NetcdfDatasets {
    * @param iospMessage send to iosp.sendIospMessage() if not null
    * @return NetcdfFile or throw an Exception.
    */
-  private static NetcdfFile openOrAcquireFile(FileCache cache, FileFactory factory, Object hashKey, DatasetUrl durl,
+  private static NetcdfFile openOrAcquireFile(FileCacheIF cache, FileFactory factory, Object hashKey, DatasetUrl durl,
       int buffer_size, ucar.nc2.util.CancelTask cancelTask, Object iospMessage) throws IOException {
 
     if (factory == null)
@@ -89,6 +89,16 @@ public class VariableDS extends Variable implements EnhanceScaleMissingUnsigned,
     return dataEnhancer.convertArray(data, enhanceMode);
   }
 
+  /**
+   * Like convertArray(), but the conversions are done when the elements of the returned Array are accessed, rather
+   * than on a copy of all the data. Use this when only some of the data will be used.
+   *
+   * @param data data read from the original variable.
+   */
+  public ucar.array.Array<?> convertArrayView(ucar.array.Array<?> data) {
+    return dataEnhancer.convertArrayView(data, enhanceMode);
+  }
+
   /**
    * Returns the enhancements applied to this variable. If this variable wraps another variable, the returned set will
    * also contain the enhancements applied to the nested variable, recursively.
@@ -5,6 +5,7 @@
 
 package ucar.nc2.ft.point.writer2;
 
+import com.google.common.base.Preconditions;
 import javax.annotation.concurrent.Immutable;
 import ucar.nc2.write.Nc4Chunking;
 import ucar.nc2.write.Nc4ChunkingDefault;
@@ -18,6 +19,7 @@ public class CFPointWriterConfig {
   private final Nc4Chunking chunking; // for netcdf-4
   private final boolean noTimeCoverage; // does not have a time dimension
   private final NetcdfFileFormat format;
+  private final int bufferSize; // number of records buffered for each variable
 
   public Nc4Chunking getChunking() {
     return chunking;
@@ -31,10 +33,19 @@ public class CFPointWriterConfig {
     return format;
   }
 
+  /**
+   * The number of records that are buffered for each variable before being written in one call.
+   * Only used for the classic model, where each variable is written separately.
+   */
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
   private CFPointWriterConfig(Builder builder) {
     this.format = builder.format;
     this.chunking = builder.chunking;
     this.noTimeCoverage = builder.noTimeCoverage;
+    this.bufferSize = builder.bufferSize;
   }
 
   public static Builder builder() {
@@ -45,6 +56,7 @@ public class CFPointWriterConfig {
     NetcdfFileFormat format = NetcdfFileFormat.NETCDF3; // netcdf file version
     Nc4Chunking chunking = new Nc4ChunkingDefault(); // for netcdf-4
     boolean noTimeCoverage; // does not have a time dimension
+    int bufferSize = 10000; // number of records buffered for each variable
 
     public Builder setFormat(NetcdfFileFormat format) {
       this.format = format;
@@ -61,6 +73,13 @@ public class CFPointWriterConfig {
       return this;
     }
 
+    /** Set the number of records buffered for each variable before writing. 1 writes each record immediately. */
+    public Builder setBufferSize(int bufferSize) {
+      Preconditions.checkArgument(bufferSize > 0, "bufferSize must be > 0");
+      this.bufferSize = bufferSize;
+      return this;
+    }
+
     public CFPointWriterConfig build() {
       return new CFPointWriterConfig(this);
     }
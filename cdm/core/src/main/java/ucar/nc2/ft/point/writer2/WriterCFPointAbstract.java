@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -21,6 +22,7 @@ import ucar.ma2.ArrayChar;
 import ucar.ma2.ArrayObject;
 import ucar.ma2.ArrayStructureW;
 import ucar.ma2.DataType;
+import ucar.ma2.Index;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.StructureData;
 import ucar.ma2.StructureMembers;
@@ -104,6 +106,7 @@ abstract class WriterCFPointAbstract implements Closeable {
   Structure record; // used for netcdf3 and netcdf4 extended
   HashSet<String> dataMap = new HashSet<>();
   private List<Variable> extra;
+  private final Map<Set<String>, RecordBuffer> recordBuffers = new IdentityHashMap<>(); // classic model
 
   LatLonRect.Builder llbb;
   private CalendarDate minDate;
@@ -480,7 +483,8 @@ abstract class WriterCFPointAbstract implements Closeable {
         }
 
       } else {
-        writeStructureDataClassic(origin, sdata, varSet);
+        RecordBuffer buffer = recordBuffers.computeIfAbsent(varSet, RecordBuffer::new);
+        buffer.add(recno, sdata);
       }
 
     } catch (InvalidRangeException e) {
@@ -491,34 +495,149 @@ abstract class WriterCFPointAbstract implements Closeable {
     return recno + 1;
   }
 
-  private void writeStructureDataClassic(int[] origin, StructureData sdata, Set<String> varSet)
-      throws IOException, InvalidRangeException {
-    for (StructureMembers.Member m : sdata.getMembers()) {
-      Variable mv = findVariable(m.getName());
-      if (!varSet.contains(m.getName()) || mv == null) {
-        continue; // normal to fail here
+  private void flushRecordBuffers() throws IOException {
+    try {
+      for (RecordBuffer buffer : recordBuffers.values())
+        buffer.flush();
+    } catch (InvalidRangeException e) {
+      e.printStackTrace();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * The classic model writes each variable separately. Rather than write each record of each variable, the records
+   * written with one varSet are copied into a primitive array for each variable, and each array is written in one
+   * call when config.getBufferSize() records have been added, or from finish().
+   */
+  private class RecordBuffer {
+    private final List<Column> columns = new ArrayList<>();
+    private int startRecno; // record number of the first buffered record
+    private int nrecs; // number of buffered records
+
+    RecordBuffer(Set<String> varSet) {
+      for (String name : varSet) {
+        Variable mv = findVariable(name);
+        if (mv != null)
+          columns.add(new Column(mv, config.getBufferSize()));
       }
+    }
+
+    void add(int recno, StructureData sdata) throws IOException, InvalidRangeException {
+      if (nrecs > 0 && recno != startRecno + nrecs)
+        flush(); // records must be contiguous
+      if (nrecs == 0)
+        startRecno = recno;
+
+      for (Column column : columns)
+        column.set(nrecs, sdata);
+      nrecs++;
+
+      if (nrecs == config.getBufferSize())
+        flush();
+    }
+
+    void flush() throws IOException, InvalidRangeException {
+      if (nrecs == 0)
+        return;
+      for (Column column : columns)
+        column.write(startRecno, nrecs);
+      startRecno += nrecs;
+      nrecs = 0;
+    }
+  }
+
+  /**
+   * The buffered records of one variable, whose outer dimension is the record (or feature) dimension.
+   * As when each record was written separately, nothing is written for a record that does not have this member, and
+   * a member with fewer values than the variable only writes its own shape.
+   */
+  private class Column {
+    private final Variable mv;
+    private final int recSize; // number of elements in one record
+    private final Array data; // shape is {bufferSize, ...}
+    private final Object storage;
+    private final boolean[] isFull; // the buffered record has all recSize values of this member in storage
+    private final Map<Integer, Array> partial = new HashMap<>(); // buffered records with fewer values
+    private boolean hasData; // any of the buffered records had this member
+
+    Column(Variable mv, int bufferSize) {
+      this.mv = mv;
+      int[] shape = mv.getShape();
+      shape[0] = 1;
+      this.recSize = (int) Index.computeSize(shape);
+      shape[0] = bufferSize;
+      this.data = Array.factory(mv.getDataType(), shape);
+      this.storage = data.getStorage();
+      this.isFull = new boolean[bufferSize];
+    }
+
+    void set(int row, StructureData sdata) {
+      isFull[row] = false;
+      StructureMembers.Member m = sdata.findMember(mv.getShortName());
+      if (m == null)
+        return;
 
       Array org = sdata.getArray(m);
       if (m.getDataType() == DataType.STRING) { // convert to ArrayChar
-        int strlen = mv.getDimension(mv.getDimensions().size() - 1).getLength();
+        int strlen = mv.getDimension(mv.getRank() - 1).getLength();
         org = ArrayChar.makeFromStringArray((ArrayObject) org, strlen);
       }
 
-      Array orgPlus1 = Array.makeArrayRankPlusOne(org); // add dimension on the left (slow)
-      int[] useOrigin = origin;
+      if (org.getSize() < recSize) {
+        partial.put(row, org);
+      } else {
+        System.arraycopy(org.get1DJavaArray(mv.getDataType()), 0, storage, row * recSize, recSize);
+        isFull[row] = true;
+      }
+      hasData = true;
+    }
+
+    void write(int startRecno, int nrecs) throws IOException, InvalidRangeException {
+      if (!hasData)
+        return; // none of the records had this member, so dont write it
+
+      // write each run of full records in one call
+      int row = 0;
+      while (row < nrecs) {
+        if (!isFull[row]) {
+          Array org = partial.get(row);
+          if (org != null)
+            writePartial(startRecno + row, org);
+          row++;
+          continue;
+        }
+        int end = row + 1;
+        while (end < nrecs && isFull[end])
+          end++;
+        writeRun(startRecno, row, end);
+        row = end;
+      }
+      partial.clear();
+      hasData = false;
+    }
 
-      if (org.getRank() > 0) { // if rank 0 (common case, this is a nop, so skip)
-        useOrigin = new int[org.getRank() + 1];
-        useOrigin[0] = origin[0]; // the rest are 0
+    private void writeRun(int startRecno, int startRow, int endRow) throws IOException, InvalidRangeException {
+      Array block = data;
+      if (startRow > 0 || endRow < data.getShape()[0]) {
+        int[] shape = data.getShape();
+        shape[0] = endRow - startRow;
+        block = Array.factory(mv.getDataType(), shape);
+        System.arraycopy(storage, startRow * recSize, block.getStorage(), 0, shape[0] * recSize);
       }
 
-      writer.write(mv, useOrigin, orgPlus1);
+      int[] origin = new int[mv.getRank()];
+      origin[0] = startRecno + startRow;
+      writer.write(mv, origin, block);
     }
 
+    private void writePartial(int recno, Array org) throws IOException, InvalidRangeException {
+      int[] origin = new int[org.getRank() + 1];
+      origin[0] = recno;
+      writer.write(mv, origin, Array.makeArrayRankPlusOne(org));
+    }
   }
 
-
   // keep track of the bounding box
   void trackBB(LatLonPoint loc, CalendarDate obsDate) {
     if (loc != null) {
@@ -537,6 +656,8 @@ abstract class WriterCFPointAbstract implements Closeable {
   }
 
   public void finish() throws IOException {
+    flushRecordBuffers();
+
     if (llbb != null) {
       LatLonRect rect = llbb.build();
       writer.updateAttribute(null, new Attribute(ACDD.LAT_MIN, rect.getLowerLeftPoint().getLatitude()));
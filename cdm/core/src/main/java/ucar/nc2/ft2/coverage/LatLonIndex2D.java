@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.ft2.coverage;
+
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+import javax.annotation.concurrent.Immutable;
+import ucar.ma2.ArrayDouble;
+import ucar.unidata.geoloc.LatLonPoints;
+
+/**
+ * A spatial index of the cells of a 2D (curvilinear) lat/lon grid, for finding the cell that contains a lat/lon point,
+ * or the cell whose center is nearest to it.
+ * <p>
+ * To find the containing cell, the cells are put into the buckets of a regular lat/lon grid that their bounding boxes
+ * overlap, about two cells to a bucket, so a query only looks at the few cells in the bucket of the point, rather than
+ * searching the grid. To find the nearest cell, the centers of the cells are kept in a kd-tree.
+ * Build it once per coordinate system, since it looks at every cell; it is immutable, and may be shared by threads.
+ * <p>
+ * The longitudes of the edges are normalized to [lonMin, lonMin+360], where lonMin is the smallest of them, and the
+ * longitude of a point to within 180 degrees of the middle of the grid.
+ * Cells with a missing (NaN) corner are not in the index.
+ */
+@Immutable
+public class LatLonIndex2D {
+  private static final int CELLS_PER_BUCKET = 2;
+
+  private final int nrows, ncols;
+  private final double[] latEdge, lonEdge; // (nrows+1) * (ncols+1), row major
+  private final double latMin, latMax, lonMin, lonMax, lonMiddle;
+
+  private final int nbLat, nbLon;
+  private final double bucketLat, bucketLon; // size of a bucket in degrees
+  private final int[] bucketStart; // the cells of bucket b are bucketCells[bucketStart[b]..bucketStart[b+1])
+  private final int[] bucketCells;
+
+  private final double[] cellLat, cellLon; // the centers of the cells
+  private final int[] kdCells; // the cells that are not missing, as a kd-tree of their centers
+
+  /**
+   * Build the index of a grid of nrows x ncols cells.
+   *
+   * @param latEdges lat of the cell corners, shape (nrows+1, ncols+1), as from CoordinateAxis2D.makeEdges()
+   * @param lonEdges lon of the cell corners, same shape as latEdges
+   */
+  public LatLonIndex2D(ArrayDouble.D2 latEdges, ArrayDouble.D2 lonEdges) {
+    int[] shape = latEdges.getShape();
+    Preconditions.checkArgument(Arrays.equals(shape, lonEdges.getShape()), "lat and lon edges differ in shape");
+    Preconditions.checkArgument(shape[0] > 1 && shape[1] > 1, "must have at least one cell");
+    this.nrows = shape[0] - 1;
+    this.ncols = shape[1] - 1;
+    this.latEdge = (double[]) latEdges.copyTo1DJavaArray();
+    this.lonEdge = (double[]) lonEdges.copyTo1DJavaArray();
+
+    // assume missing values have been converted to NaNs
+    double minLon = Double.MAX_VALUE;
+    for (double lon : lonEdge) {
+      if (lon < minLon)
+        minLon = lon;
+    }
+    this.lonMin = minLon;
+
+    double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+    for (int i = 0; i < lonEdge.length; i++) {
+      if (Double.isFinite(lonEdge[i])) {
+        lonEdge[i] = LatLonPoints.lonNormalFrom(lonEdge[i], lonMin);
+        maxLon = Math.max(maxLon, lonEdge[i]);
+      }
+      if (Double.isFinite(latEdge[i])) {
+        minLat = Math.min(minLat, latEdge[i]);
+        maxLat = Math.max(maxLat, latEdge[i]);
+      }
+    }
+    this.latMin = minLat;
+    this.latMax = maxLat;
+    this.lonMax = maxLon;
+    this.lonMiddle = (lonMin + lonMax) / 2;
+
+    // about CELLS_PER_BUCKET cells to a bucket, with the buckets about as many degrees in lat as in lon
+    int ncells = nrows * ncols;
+    int nbuckets = Math.max(1, ncells / CELLS_PER_BUCKET);
+    double latRange = Math.max(latMax - latMin, Double.MIN_NORMAL);
+    double lonRange = Math.max(lonMax - lonMin, Double.MIN_NORMAL);
+    if (latMax < latMin || lonMax < lonMin) { // all missing
+      latRange = lonRange = 1.0;
+      nbLat = 1;
+      nbLon = 1;
+    } else {
+      nbLat = (int) Math.max(1, Math.min(nbuckets, Math.round(Math.sqrt(nbuckets * latRange / lonRange))));
+      nbLon = Math.max(1, nbuckets / nbLat);
+    }
+    this.bucketLat = latRange / nbLat;
+    this.bucketLon = lonRange / nbLon;
+
+    // count the cells in each bucket, then fill them in cell order
+    int[] start = new int[nbLat * nbLon + 1];
+    int[] box = new int[4];
+    this.cellLat = new double[ncells];
+    this.cellLon = new double[ncells];
+    int[] valid = new int[ncells];
+    int nvalid = 0;
+    for (int cell = 0; cell < ncells; cell++) {
+      if (!bucketBox(cell, box))
+        continue;
+      int e = edgeIndex(cell);
+      cellLat[cell] = (latEdge[e] + latEdge[e + 1] + latEdge[e + ncols + 1] + latEdge[e + ncols + 2]) / 4;
+      cellLon[cell] = (lonEdge[e] + lonEdge[e + 1] + lonEdge[e + ncols + 1] + lonEdge[e + ncols + 2]) / 4;
+      valid[nvalid++] = cell;
+      for (int i = box[0]; i <= box[1]; i++) {
+        for (int j = box[2]; j <= box[3]; j++)
+          start[i * nbLon + j + 1]++;
+      }
+    }
+    for (int b = 0; b < nbLat * nbLon; b++)
+      start[b + 1] += start[b];
+    int[] cells = new int[start[nbLat * nbLon]];
+    int[] next = Arrays.copyOf(start, nbLat * nbLon);
+    for (int cell = 0; cell < ncells; cell++) {
+      if (!bucketBox(cell, box))
+        continue;
+      for (int i = box[0]; i <= box[1]; i++) {
+        for (int j = box[2]; j <= box[3]; j++)
+          cells[next[i * nbLon + j]++] = cell;
+      }
+    }
+    this.bucketStart = start;
+    this.bucketCells = cells;
+
+    this.kdCells = Arrays.copyOf(valid, nvalid);
+    buildKdTree(0, nvalid, 0);
+  }
+
+  // the median of kdCells[lo, hi), by lat at even depths and lon at odd depths, is put in the middle; the cells
+  // before it are not greater, and the cells after it are not smaller
+  private void buildKdTree(int lo, int hi, int depth) {
+    if (hi - lo <= 1)
+      return;
+    int mid = (lo + hi) >>> 1;
+    select(lo, hi - 1, mid, (depth % 2 == 0) ? cellLat : cellLon);
+    buildKdTree(lo, mid, depth + 1);
+    buildKdTree(mid + 1, hi, depth + 1);
+  }
+
+  // quickselect: put the kth smallest of kdCells[lo..hi] at k
+  private void select(int lo, int hi, int k, double[] key) {
+    int[] a = kdCells;
+    while (hi > lo) {
+      double pivot = key[a[(lo + hi) >>> 1]];
+      int i = lo, j = hi;
+      while (i <= j) {
+        while (key[a[i]] < pivot)
+          i++;
+        while (key[a[j]] > pivot)
+          j--;
+        if (i <= j) {
+          int tmp = a[i];
+          a[i++] = a[j];
+          a[j--] = tmp;
+        }
+      }
+      // a[lo..j] <= pivot, a[j+1..i-1] == pivot, a[i..hi] >= pivot
+      if (k <= j)
+        hi = j;
+      else if (k >= i)
+        lo = i;
+      else
+        return;
+    }
+  }
+
+  // the range of buckets [latFirst, latLast, lonFirst, lonLast] that the bounding box of the cell overlaps
+  private boolean bucketBox(int cell, int[] box) {
+    int e = edgeIndex(cell);
+    double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+    double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+    for (int k : new int[] {e, e + 1, e + ncols + 1, e + ncols + 2}) {
+      double lat = latEdge[k];
+      double lon = lonEdge[k];
+      if (!Double.isFinite(lat) || !Double.isFinite(lon))
+        return false;
+      minLat = Math.min(minLat, lat);
+      maxLat = Math.max(maxLat, lat);
+      minLon = Math.min(minLon, lon);
+      maxLon = Math.max(maxLon, lon);
+    }
+    box[0] = latBucket(minLat);
+    box[1] = latBucket(maxLat);
+    box[2] = lonBucket(minLon);
+    box[3] = lonBucket(maxLon);
+    return true;
+  }
+
+  private int edgeIndex(int cell) {
+    return (cell / ncols) * (ncols + 1) + (cell % ncols);
+  }
+
+  private int latBucket(double lat) {
+    return Math.max(0, Math.min(nbLat - 1, (int) ((lat - latMin) / bucketLat)));
+  }
+
+  private int lonBucket(double lon) {
+    return Math.max(0, Math.min(nbLon - 1, (int) ((lon - lonMin) / bucketLon)));
+  }
+
+  /** Number of rows (y) of cells. */
+  public int getNrows() {
+    return nrows;
+  }
+
+  /** Number of columns (x) of cells. */
+  public int getNcols() {
+    return ncols;
+  }
+
+  /**
+   * Find the cell that contains the given lat,lon point.
+   *
+   * @param wantLat lat of point
+   * @param wantLon lon of point
+   * @param rectIndex return (row,col) index here, if found. may not be null
+   * @return false if not in the grid.
+   */
+  public boolean findContainingCell(double wantLat, double wantLon, int[] rectIndex) {
+    if (!Double.isFinite(wantLat) || !Double.isFinite(wantLon) || bucketCells.length == 0)
+      return false;
+    wantLon = LatLonPoints.lonNormal(wantLon, lonMiddle);
+    if (wantLat < latMin || wantLat > latMax || wantLon < lonMin || wantLon > lonMax)
+      return false;
+
+    int b = latBucket(wantLat) * nbLon + lonBucket(wantLon);
+    for (int k = bucketStart[b]; k < bucketStart[b + 1]; k++) {
+      int cell = bucketCells[k];
+      if (contains(cell, wantLat, wantLon)) {
+        rectIndex[0] = cell / ncols;
+        rectIndex[1] = cell % ncols;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Find the cell whose center (the mean of its corners) is nearest to the given lat,lon point, with the
+   * difference in longitude scaled by cos(lat). The point need not be inside the grid. This searches a kd-tree of the
+   * centers, so takes about log(ncells) time.
+   *
+   * @param wantLat lat of point
+   * @param wantLon lon of point
+   * @param rectIndex return (row,col) index here, if found. may not be null
+   * @return false if the grid has no cells, or the point is not finite.
+   */
+  public boolean findNearestCell(double wantLat, double wantLon, int[] rectIndex) {
+    if (!Double.isFinite(wantLat) || !Double.isFinite(wantLon) || kdCells.length == 0)
+      return false;
+    Nearest nearest = new Nearest(wantLat, LatLonPoints.lonNormal(wantLon, lonMiddle));
+    // start with the distance to the bounding box of the grid
+    double offLat = Math.max(0, Math.max(latMin - nearest.wantLat, nearest.wantLat - latMax));
+    double offLon = Math.max(0, Math.max(lonMin - nearest.wantLon, nearest.wantLon - lonMax)) * nearest.cosLat;
+    nearest.search(0, kdCells.length, 0, offLat * offLat + offLon * offLon, offLat, offLon);
+    rectIndex[0] = nearest.bestCell / ncols;
+    rectIndex[1] = nearest.bestCell % ncols;
+    return true;
+  }
+
+  // a search of the kd-tree, keeping track of the distance from the point to the region of the subtree (Arya and
+  // Mount, "Algorithms for fast vector quantization", 1993), so that subtrees far from the point are skipped
+  private class Nearest {
+    final double wantLat, wantLon, cosLat;
+    double best = Double.MAX_VALUE;
+    int bestCell = -1;
+
+    Nearest(double wantLat, double wantLon) {
+      this.wantLat = wantLat;
+      this.wantLon = wantLon;
+      this.cosLat = Math.abs(Math.cos(Math.toRadians(wantLat)));
+    }
+
+    // regionDist is the squared distance to the region, offLat and offLon its components
+    void search(int lo, int hi, int depth, double regionDist, double offLat, double offLon) {
+      if (lo >= hi || regionDist > best)
+        return;
+      int mid = (lo + hi) >>> 1;
+      int cell = kdCells[mid];
+      double dlat = wantLat - cellLat[cell];
+      double dlon = (wantLon - cellLon[cell]) * cosLat;
+      double d = dlat * dlat + dlon * dlon;
+      if (d < best || (d == best && cell < bestCell)) {
+        best = d;
+        bestCell = cell;
+      }
+
+      // the side of the split that the point is on first, then the other side, whose region is split away
+      boolean byLat = (depth % 2 == 0);
+      double split = byLat ? dlat : dlon;
+      int nearLo = (split < 0) ? lo : mid + 1;
+      int nearHi = (split < 0) ? mid : hi;
+      int farLo = (split < 0) ? mid + 1 : lo;
+      int farHi = (split < 0) ? hi : mid;
+      search(nearLo, nearHi, depth + 1, regionDist, offLat, offLon);
+      if (byLat)
+        search(farLo, farHi, depth + 1, regionDist - offLat * offLat + split * split, Math.abs(split), offLon);
+      else
+        search(farLo, farHi, depth + 1, regionDist - offLon * offLon + split * split, offLat, Math.abs(split));
+    }
+  }
+
+  /**
+   * Find the cells that contain n points. The (row, col) of the cell of point i is put into (rows[i], cols[i]),
+   * or (-1, -1) if it is not in the grid.
+   *
+   * @return the number of points in the grid.
+   */
+  public int findContainingCells(double[] lat, double[] lon, int[] rows, int[] cols, int n) {
+    int[] rectIndex = new int[2];
+    int count = 0;
+    for (int i = 0; i < n; i++) {
+      if (findContainingCell(lat[i], lon[i], rectIndex)) {
+        rows[i] = rectIndex[0];
+        cols[i] = rectIndex[1];
+        count++;
+      } else {
+        rows[i] = -1;
+        cols[i] = -1;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Find the nearest cells to n points, as findNearestCell() does. The (row, col) of the cell of point i is put into
+   * (rows[i], cols[i]), or (-1, -1) if there is none.
+   *
+   * @return the number of points that a cell was found for.
+   */
+  public int findNearestCells(double[] lat, double[] lon, int[] rows, int[] cols, int n) {
+    int[] rectIndex = new int[2];
+    int count = 0;
+    for (int i = 0; i < n; i++) {
+      if (findNearestCell(lat[i], lon[i], rectIndex)) {
+        rows[i] = rectIndex[0];
+        cols[i] = rectIndex[1];
+        count++;
+      } else {
+        rows[i] = -1;
+        cols[i] = -1;
+      }
+    }
+    return count;
+  }
+
+  /*
+   * Is the point inside the cell? To be inside a convex region, as you trace around it, the "areas" of the triangles
+   * made by each side and the point must either all be positive or all be negative.
+   * http://mathforum.org/library/drmath/view/54386.html
+   */
+  private boolean contains(int cell, double wantLat, double wantLon) {
+    int e = edgeIndex(cell);
+    double x1 = lonEdge[e];
+    double y1 = latEdge[e];
+    double x2 = lonEdge[e + 1];
+    double y2 = latEdge[e + 1];
+    double x3 = lonEdge[e + ncols + 2];
+    double y3 = latEdge[e + ncols + 2];
+    double x4 = lonEdge[e + ncols + 1];
+    double y4 = latEdge[e + ncols + 1];
+
+    // must all have same determinate sign
+    boolean sign = detIsPositive(x1, y1, x2, y2, wantLon, wantLat);
+    if (sign != detIsPositive(x2, y2, x3, y3, wantLon, wantLat))
+      return false;
+    if (sign != detIsPositive(x3, y3, x4, y4, wantLon, wantLat))
+      return false;
+    return sign == detIsPositive(x4, y4, x1, y1, wantLon, wantLat);
+  }
+
+  private static boolean detIsPositive(double x0, double y0, double x1, double y1, double x2, double y2) {
+    double det = (x1 * y2 - y1 * x2 - x0 * y2 + y0 * x2 + x0 * y1 - y0 * x1);
+    return det > 0;
+  }
+}
@@ -5,6 +5,7 @@
 package ucar.nc2.ft2.coverage.adapter;
 
 import ucar.nc2.dataset.CoordinateAxis2D;
+import ucar.nc2.ft2.coverage.LatLonIndex2D;
 import ucar.ma2.ArrayDouble;
 import ucar.ma2.MAMath;
 
@@ -13,8 +14,8 @@ import ucar.ma2.MAMath;
  *
  * 2D Coordinate System has lat(x,y) and lon(x,y).
  * This class implements finding the index (i,j) from (lat, lon) coord.
- * This is for "one-off" computation, not a systematic lookup table for all points in a pixel array.
- * Hueristic search of the 2D space for the cell that contains the point.
+ * findCoordElement() uses a LatLonIndex2D of the cells, made the first time it is called;
+ * findCoordElementNoForce() is a hueristic search of the 2D space for the cell that contains the point.
  *
  * @author caron
  * @since Jul 10, 2009
@@ -27,6 +28,7 @@ public class GeoGridCoordinate2D {
   private final int nrows, ncols;
   private ArrayDouble.D2 latEdge, lonEdge;
   private MAMath.MinMax latMinMax, lonMinMax;
+  private LatLonIndex2D index;
 
   GeoGridCoordinate2D(CoordinateAxis2D latCoord, CoordinateAxis2D lonCoord) {
     this.latCoord = latCoord;
@@ -40,7 +42,7 @@ public class GeoGridCoordinate2D {
     ncols = shape[1];
   }
 
-  private void findBounds() {
+  private synchronized void findBounds() {
     if (lonMinMax != null)
       return;
 
@@ -50,6 +52,7 @@ public class GeoGridCoordinate2D {
     // assume missing values have been converted to NaNs
     latMinMax = MAMath.getMinMax(latEdge);
     lonMinMax = MAMath.getMinMax(lonEdge);
+    index = new LatLonIndex2D(latEdge, lonEdge);
 
     if (debug)
       System.out.printf("Bounds (%d %d): lat= (%f,%f) lon = (%f,%f) %n", nrows, ncols, latMinMax.min, latMinMax.max,
@@ -86,8 +89,23 @@ public class GeoGridCoordinate2D {
     return false;
   }
 
+  /**
+   * Find the cell that contains the given lat,lon point.
+   *
+   * @param wantLat lat of point
+   * @param wantLon lon of point
+   * @param rectIndex return (row,col) index here, if found. may not be null
+   * @return false if not in the grid.
+   */
   public boolean findCoordElement(double wantLat, double wantLon, int[] rectIndex) {
-    return findCoordElementNoForce(wantLat, wantLon, rectIndex);
+    findBounds();
+    return index.findContainingCell(wantLat, wantLon, rectIndex);
+  }
+
+  /** Find the cell whose center is nearest to the given lat,lon point, as LatLonIndex2D.findNearestCell() does. */
+  public boolean findNearestCoordElement(double wantLat, double wantLon, int[] rectIndex) {
+    findBounds();
+    return index.findNearestCell(wantLat, wantLon, rectIndex);
   }
 
 
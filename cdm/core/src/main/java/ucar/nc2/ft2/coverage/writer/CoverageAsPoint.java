@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nonnull;
 import ucar.ma2.Array;
 import ucar.ma2.IndexIterator;
@@ -34,6 +35,9 @@ import ucar.nc2.ft2.coverage.CoverageCoordAxis;
 import ucar.nc2.ft2.coverage.CoverageCoordAxis1D;
 import ucar.nc2.ft2.coverage.CoverageCoordSys;
 import ucar.nc2.ft2.coverage.GeoReferencedArray;
+import ucar.nc2.ft2.coverage.HorizCoordSys;
+import ucar.nc2.ft2.coverage.HorizCoordSys2D;
+import ucar.nc2.ft2.coverage.LatLonIndex2D;
 import ucar.nc2.ft2.coverage.SubsetParams;
 import ucar.nc2.time.CalendarDateUnit;
 import ucar.unidata.geoloc.LatLonPoint;
@@ -81,6 +85,21 @@ public class CoverageAsPoint {
     if (latLonPoint == null)
       throw new IllegalArgumentException("No latlon point");
 
+    // on a curvilinear grid, a point that is not in any of the grid cells is moved to the nearest one
+    HorizCoordSys hcs = gcd.getHorizCoordSys();
+    if (hcs instanceof HorizCoordSys2D) {
+      LatLonIndex2D index = ((HorizCoordSys2D) hcs).getLatLonIndex();
+      int[] rectIndex = new int[2];
+      double lat = latLonPoint.getLatitude();
+      double lon = latLonPoint.getLongitude();
+      if (!index.findContainingCell(lat, lon, rectIndex) && index.findNearestCell(lat, lon, rectIndex)) {
+        SubsetParams nearest = new SubsetParams();
+        for (Map.Entry<String, Object> entry : subset.getEntries())
+          nearest.set(entry.getKey(), entry.getValue());
+        this.subset = nearest.set(SubsetParams.latlonPoint, hcs.getLatLon(rectIndex[0], rectIndex[1]));
+      }
+    }
+
     varData = new ArrayList<>(varNames.size());
     for (String varName : varNames) {
       Coverage cov = gcd.findCoverage(varName); // LOOK we should read all at once if possible
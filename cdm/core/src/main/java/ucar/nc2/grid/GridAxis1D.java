@@ -25,26 +25,18 @@ import java.util.*;
 @Immutable
 public class GridAxis1D extends GridAxis {
 
+  /** The indexes of this axis in the original, which is all of them unless this is a subset. */
   public RangeIterator getRangeIterator() {
     if (getDependenceType() == GridAxis.DependenceType.scalar)
       return Range.EMPTY;
-
-    try {
-      return new Range(axisType.toString(), 0, ncoords - 1);
-    } catch (InvalidRangeException e) {
-      throw new RuntimeException(e);
-    }
+    return (crange != null) ? crange : range;
   }
 
+  /** The indexes of this axis in the original, which is all of them unless this is a subset. */
   public Range getRange() {
     if (getDependenceType() == GridAxis.DependenceType.scalar)
       return Range.EMPTY;
-
-    try {
-      return new Range(axisType.toString(), 0, ncoords - 1);
-    } catch (InvalidRangeException e) {
-      throw new RuntimeException(e);
-    }
+    return range;
   }
 
   public int[] getShape() {
@@ -200,7 +192,7 @@ public class GridAxis1D extends GridAxis {
   public Optional<GridAxis> subset(double minValue, double maxValue, int stride, Formatter errLog) {
     GridAxis1DHelper helper = new GridAxis1DHelper(this);
     Optional<GridAxis1D.Builder<?>> buildero = helper.subset(minValue, maxValue, stride, errLog);
-    return buildero.map(GridAxis1D::new);
+    return buildero.map(GridAxis1D.Builder::build);
   }
 
   // CalendarDate, double[2], or Double
@@ -239,7 +231,7 @@ public class GridAxis1D extends GridAxis {
   @Override
   public Optional<GridAxis> subset(SubsetParams params, Formatter errLog) {
     Optional<Builder<?>> buildero = subsetBuilder(params, errLog);
-    return buildero.map(GridAxis1D::new);
+    return buildero.map(GridAxis1D.Builder::build);
   }
 
   // only for longitude, only for regular (do we need a subclass for longitude 1D coords ??
@@ -291,7 +283,7 @@ public class GridAxis1D extends GridAxis {
     try {
       GridAxis1DHelper helper = new GridAxis1DHelper(this);
       GridAxis1D.Builder<?> builder = helper.subsetByIndex(range);
-      return Optional.of(new GridAxis1D(builder));
+      return Optional.of(builder.build());
     } catch (InvalidRangeException e) {
       errLog.format("%s", e.getMessage());
       return Optional.empty();
@@ -362,7 +354,7 @@ public class GridAxis1D extends GridAxis {
       errLog.format("%s", e.getMessage());
       return Optional.empty();
     }
-    return Optional.of(new GridAxis1D(builder));
+    return Optional.of(builder.build());
   }
 
   //////////////////////////////////////////////////////////////
@@ -394,7 +386,7 @@ public class GridAxis1D extends GridAxis {
   // Add local fields to the builder.
   protected GridAxis1D.Builder<?> addLocalFieldsToBuilder(GridAxis1D.Builder<? extends GridAxis.Builder<?>> builder) {
     builder.setRange(this.range).setCompositeRange(this.crange);
-    return addLocalFieldsToBuilder(builder);
+    return (GridAxis1D.Builder<?>) super.addLocalFieldsToBuilder(builder);
   }
 
   /** A builder taking fields from a VariableDS */
@@ -311,7 +311,16 @@ public class GridAxis1DTime extends GridAxis1D {
     } else {
       this.timeHelper = TimeHelper.factory(this.units, this.attributes);
     }
-    this.cdates = builder.cdates;
+    if (builder.cdates != null && builder.cdates.size() != this.getNcoords()) {
+      // a subset: keep the dates of the original that are in the range
+      List<CalendarDate> subset = new ArrayList<>();
+      for (int index : this.range) {
+        subset.add(builder.cdates.get(index));
+      }
+      this.cdates = subset;
+    } else {
+      this.cdates = builder.cdates;
+    }
     Preconditions.checkArgument(cdates.size() == this.getNcoords());
   }
 
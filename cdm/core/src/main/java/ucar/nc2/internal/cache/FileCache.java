@@ -404,6 +404,11 @@ public class FileCache implements FileCacheIF {
     want.ncfile = null;
   }
 
+  @Override
+  public int getMaxFiles() {
+    return (hardLimit > 0) ? hardLimit : softLimit;
+  }
+
   /**
    * Remove all instances of object from the cache
    * 
@@ -33,6 +33,11 @@ public interface FileCacheIF {
 
   void clearCache(boolean force);
 
+  /** The most files that the cache keeps open, or -1 if it is not limited by the number of files. */
+  default int getMaxFiles() {
+    return -1;
+  }
+
   // debugging
   void resetTracking();
 
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.internal.cache;
+
+/**
+ * Counters of a FileCacheIF, for monitoring.
+ * Counts are cumulative since the cache was created.
+ */
+public interface FileCacheMetrics {
+
+  /** Name of the cache. */
+  String getName();
+
+  /** Number of acquires that found an unused open file in the cache. */
+  long getHitCount();
+
+  /** Number of acquires that had to open the file. */
+  long getMissCount();
+
+  /** Number of files closed by the cache to stay under its limits, or because they were idle too long. */
+  long getEvictionCount();
+
+  /** Total time that acquires waited for files to be opened on a miss, in nanoseconds. */
+  long getWaitNanos();
+
+  /** Number of files held open by the cache, in use or not. */
+  int getOpenHandles();
+
+  /** Number of open files that are in use, ie acquired and not yet released. */
+  int getInUseCount();
+
+  /** Sum of the estimated memory of the open files, in bytes. See FileCacheable.getMemoryEstimate(). */
+  long getWeight();
+
+  /** Maximum weight before files are evicted, in bytes. */
+  long getMaxWeight();
+}
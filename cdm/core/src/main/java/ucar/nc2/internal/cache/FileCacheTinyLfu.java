@@ -0,0 +1,803 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.internal.cache;
+
+import ucar.nc2.dataset.DatasetUrl;
+import ucar.nc2.time.CalendarDateFormatter;
+import ucar.nc2.util.CancelTask;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Formatter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keep cache of open FileCacheable objects, bounded by their estimated memory rather than their number.
+ * A drop-in replacement for FileCache for servers with many concurrent readers:
+ * <ol>
+ * <li>acquire() and release() take no locks: the cache is a ConcurrentHashMap, the unused files of each key are kept
+ * in a lock free deque, and a file is claimed by a compare-and-set of its state.
+ * <li>Each file is weighted by FileCacheable.getMemoryEstimate() when it is added. When the total weight goes over
+ * the maximum, or the number of open files goes over maxFiles, unused files are evicted by the thread that noticed,
+ * while other threads carry on.
+ * <li>Eviction is W-TinyLFU: new files go into a small window (1% of the weight). Once released, files leave the window
+ * in the order they were added, and when the cache is full they are only admitted to the main region if their key has
+ * been acquired more often than the least recently used file of the main region, using an approximate count of recent
+ * acquires. This keeps a burst of one-time reads from flushing the files that are used all the time.
+ * <li>The main region is kept in least recently used order by the evicting thread. Releases only record the access in a
+ * lock free buffer, which is applied when evicting, or when it gets long.
+ * <li>If period > 0, unused files that have not been accessed for period seconds are closed by a background thread.
+ * Call shutdown() when exiting the program, to stop it.
+ * <li>Counters are available through FileCacheMetrics.
+ * </ol>
+ * As with FileCache, files in use are never closed, so the limits are not strict.
+ */
+@ThreadSafe
+public class FileCacheTinyLfu implements FileCacheIF, FileCacheMetrics {
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(FileCacheTinyLfu.class);
+  private static final org.slf4j.Logger cacheLog = org.slf4j.LoggerFactory.getLogger("cacheLogger");
+
+  private static final int IDLE = 0, IN_USE = 1, EVICTED = 2;
+  private static final double WINDOW_FRACTION = 0.01;
+  private static final int ACCESS_BUFFER_DRAIN = 1024; // drain the access buffer when it has this many
+
+  private static ScheduledExecutorService exec;
+  private static final Object lock = new Object();
+
+  /**
+   * Shut down the background cleanup thread, if any.
+   */
+  public static void shutdown() {
+    synchronized (lock) {
+      if (exec != null) {
+        exec.shutdownNow();
+        cacheLog.info("FileCacheTinyLfu.shutdown called");
+      }
+      exec = null;
+    }
+  }
+
+  private static void scheduleAtFixedRate(Runnable task, long period) {
+    synchronized (lock) {
+      if (exec == null) {
+        exec = Executors.newSingleThreadScheduledExecutor(r -> {
+          Thread thread = new Thread(r, "FileCacheTinyLfu");
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+      exec.scheduleAtFixedRate(task, period, period, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /////////////////////////////////////////////////////////////////////////////////////////
+
+  private final String name;
+  private final long maxWeight, windowMaxWeight;
+  private final int maxFiles;
+  private final long period; // msecs
+
+  private final AtomicBoolean disabled = new AtomicBoolean(false);
+  private final AtomicBoolean evicting = new AtomicBoolean(false); // only one thread evicts or drains at a time
+
+  private final ConcurrentHashMap<Object, CacheElement> cache; // unique files (by key, often = filename)
+  private final ConcurrentHashMap<FileCacheable, CacheFile> files; // all files in the cache
+  private final ConcurrentLinkedQueue<CacheFile> windowQueue = new ConcurrentLinkedQueue<>(); // in order added
+  // the main region, least recently used first. Only used by the thread that set evicting.
+  private final LinkedHashMap<CacheFile, Boolean> mainOrder = new LinkedHashMap<>(16, 0.75f, true);
+  // files released or removed since mainOrder was last brought up to date
+  private final ConcurrentLinkedQueue<CacheFile> accessBuffer = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger accessBufferSize = new AtomicInteger();
+  private final FrequencySketch sketch;
+  private final AtomicLong weight = new AtomicLong();
+  private final AtomicLong windowWeight = new AtomicLong();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+
+  /**
+   * Constructor.
+   *
+   * @param name of file cache
+   * @param maxWeight evict unused files when their total estimated memory goes over this many bytes.
+   * @param maxFiles if > 0, also evict unused files when there are more than this many open.
+   * @param period if > 0, close files that have not been used for this number of seconds.
+   */
+  public FileCacheTinyLfu(String name, long maxWeight, int maxFiles, int period) {
+    this.name = name;
+    this.maxWeight = maxWeight;
+    this.windowMaxWeight = Math.max(1, (long) (WINDOW_FRACTION * maxWeight));
+    this.maxFiles = maxFiles;
+    this.period = (long) 1000 * period;
+
+    // size the frequency sketch for the number of files the cache is expected to hold
+    long expectedFiles = (maxFiles > 0) ? maxFiles : maxWeight / (64 * 1024);
+    int capacity = (int) Math.max(16, Math.min(expectedFiles, 1 << 20));
+    this.cache = new ConcurrentHashMap<>(2 * Math.min(capacity, 1024));
+    this.files = new ConcurrentHashMap<>(2 * Math.min(capacity, 1024));
+    this.sketch = new FrequencySketch(capacity);
+
+    if (period > 0) {
+      scheduleAtFixedRate(this::cleanup, this.period);
+      if (cacheLog.isDebugEnabled())
+        cacheLog.debug("FileCacheTinyLfu " + name + " cleanup every " + period + " secs");
+    }
+  }
+
+  /**
+   * Disable the cache, and force release all files.
+   */
+  @Override
+  public void disable() {
+    this.disabled.set(true);
+    clearCache(true);
+  }
+
+  /**
+   * Enable the cache, with the current set of parameters.
+   */
+  @Override
+  public void enable() {
+    this.disabled.set(false);
+  }
+
+  @Override
+  public FileCacheable acquire(FileFactory factory, DatasetUrl durl) throws IOException {
+    return acquire(factory, durl.getTrueurl(), durl, -1, null, null);
+  }
+
+  /**
+   * Acquire a FileCacheable from the cache, and lock it so no one else can use it.
+   * If not already in cache, open it with the FileFactory, and put in cache.
+   * App should call FileCacheable.close when done, and the file is then released instead of closed.
+   *
+   * @param factory use this factory to open the file if not in the cache; may not be null
+   * @param hashKey unique key for this file. If null, the location will be used
+   * @param location file location, may also used as the cache name, will be passed to the NetcdfFileFactory
+   * @param buffer_size RandomAccessFile buffer size, if <= 0, use default size
+   * @param cancelTask user can cancel, ok to be null.
+   * @param spiObject passed to the factory if object needs to be recreated
+   * @return FileCacheable corresponding to location.
+   * @throws IOException on error
+   */
+  @Override
+  public FileCacheable acquire(FileFactory factory, Object hashKey, DatasetUrl location, int buffer_size,
+      CancelTask cancelTask, Object spiObject) throws IOException {
+
+    if (null == hashKey)
+      hashKey = location.getTrueurl();
+    if (null == hashKey)
+      throw new IllegalArgumentException();
+
+    if (!disabled.get()) {
+      sketch.increment(hashKey);
+      FileCacheable ncfile = acquireCacheOnly(hashKey);
+      if (ncfile != null) {
+        hits.increment();
+        return ncfile;
+      }
+    }
+    misses.increment();
+
+    // open the file
+    long start = System.nanoTime();
+    FileCacheable ncfile = factory.open(location, buffer_size, cancelTask, spiObject);
+    waitNanos.add(System.nanoTime() - start);
+    if (cacheLog.isDebugEnabled())
+      cacheLog.debug("FileCacheTinyLfu " + name + " acquire " + hashKey + " " + ncfile.getLocation());
+
+    // user may have canceled
+    if ((cancelTask != null) && (cancelTask.isCancel())) {
+      ncfile.close();
+      return null;
+    }
+
+    if (disabled.get())
+      return ncfile;
+
+    add(hashKey, ncfile);
+    if (needsEviction())
+      evict();
+    return ncfile;
+  }
+
+  /**
+   * Try to find an unused file in the cache.
+   *
+   * @param hashKey used as the key.
+   * @return file if its in the cache, null otherwise.
+   */
+  private FileCacheable acquireCacheOnly(Object hashKey) {
+    CacheElement elem = cache.get(hashKey);
+    if (elem == null)
+      return null; // not found in cache
+
+    // most recently released first, so that the others get old and are evicted
+    CacheFile want;
+    while ((want = elem.idle.pollFirst()) != null) {
+      if (!want.state.compareAndSet(IDLE, IN_USE))
+        continue; // being evicted
+
+      // check if modified, remove if so
+      if (want.ncfile.getLastModified() != want.lastModified) {
+        if (cacheLog.isDebugEnabled())
+          cacheLog.debug("FileCacheTinyLfu " + name + ": acquire from cache " + hashKey + " "
+              + want.ncfile.getLocation() + " was changed; discard");
+        remove(want);
+        continue;
+      }
+
+      try {
+        want.ncfile.reacquire(); // rehydrate
+      } catch (IOException ioe) {
+        if (cacheLog.isDebugEnabled())
+          cacheLog.debug("FileCacheTinyLfu " + name + " acquire from cache " + hashKey + " "
+              + want.ncfile.getLocation() + " failed: " + ioe.getMessage());
+        remove(want);
+        continue;
+      }
+      return want.ncfile;
+    }
+    return null;
+  }
+
+  private void add(Object hashKey, FileCacheable ncfile) {
+    CacheFile file;
+    while (true) {
+      CacheElement elem = cache.computeIfAbsent(hashKey, CacheElement::new);
+      if (elem.retain()) {
+        file = new CacheFile(elem, ncfile);
+        break;
+      }
+      cache.remove(hashKey, elem); // its last file was just removed, make a new one
+    }
+    files.put(ncfile, file);
+    weight.addAndGet(file.weight);
+    windowWeight.addAndGet(file.weight);
+    windowQueue.add(file);
+    ncfile.setFileCache(this);
+    if (cacheLog.isDebugEnabled())
+      cacheLog.debug("FileCacheTinyLfu " + name + " add to cache " + hashKey + " weight " + file.weight);
+  }
+
+  /** Take the file out of the cache. Caller must own it, ie have changed its state from IDLE or IN_USE. */
+  private void unlink(CacheFile file) {
+    file.state.set(EVICTED);
+    file.elem.idle.remove(file);
+    if (files.remove(file.ncfile) != null) {
+      weight.addAndGet(-file.weight);
+      if (file.inWindow.compareAndSet(true, false)) {
+        windowWeight.addAndGet(-file.weight);
+        windowQueue.remove(file);
+      }
+      file.elem.unretain();
+      recordAccess(file);
+    }
+  }
+
+  /** Note that the file was released or removed, to be applied to mainOrder by drainAccessBuffer(). */
+  private void recordAccess(CacheFile file) {
+    accessBuffer.add(file);
+    if (accessBufferSize.incrementAndGet() > ACCESS_BUFFER_DRAIN && evicting.compareAndSet(false, true)) {
+      try {
+        drainAccessBuffer();
+      } finally {
+        evicting.set(false);
+      }
+    }
+  }
+
+  /** Bring mainOrder up to date. Caller must have set evicting. */
+  private void drainAccessBuffer() {
+    CacheFile file;
+    while ((file = accessBuffer.poll()) != null) {
+      accessBufferSize.decrementAndGet();
+      if (file.state.get() == EVICTED)
+        mainOrder.remove(file);
+      else if (!file.inWindow.get())
+        mainOrder.put(file, Boolean.TRUE); // moves it to the end
+    }
+  }
+
+  private void close(CacheFile file) {
+    try {
+      file.ncfile.setFileCache(null); // unhook the caching
+      file.ncfile.close();
+    } catch (IOException e) {
+      log.error("FileCacheTinyLfu " + name + " close failed on " + file.ncfile.getLocation(), e);
+    }
+  }
+
+  private void remove(CacheFile file) {
+    unlink(file);
+    close(file);
+  }
+
+  @Override
+  public int getMaxFiles() {
+    return (maxFiles > 0) ? maxFiles : -1;
+  }
+
+  /**
+   * Remove all instances of object from the cache, even if they are in use.
+   *
+   * @param hashKey the object
+   */
+  @Override
+  public void eject(Object hashKey) {
+    if (disabled.get())
+      return;
+
+    for (CacheFile file : files.values()) {
+      if (file.elem.hashKey.equals(hashKey) && file.state.getAndSet(EVICTED) != EVICTED) {
+        remove(file);
+        if (cacheLog.isDebugEnabled())
+          cacheLog.debug("FileCacheTinyLfu " + name + " eject " + hashKey);
+      }
+    }
+  }
+
+  /**
+   * Release the file. This unlocks it, and updates its lastAccessed date.
+   * Normally applications need not call this, just close the file as usual.
+   *
+   * @param ncfile release this file.
+   * @return true if file was in cache, false if it was not
+   */
+  @Override
+  public boolean release(FileCacheable ncfile) throws IOException {
+    if (ncfile == null)
+      return false;
+
+    if (disabled.get()) {
+      ncfile.setFileCache(null); // prevent infinite loops
+      ncfile.close();
+      return false;
+    }
+
+    // find it in the file cache
+    CacheFile file = files.get(ncfile); // using hashCode of the FileCacheable
+    if (file == null)
+      return false;
+
+    if (file.state.get() != IN_USE) {
+      cacheLog.warn(
+          "FileCacheTinyLfu " + name + " release " + ncfile.getLocation() + " not locked; hash= " + ncfile.hashCode());
+      return true;
+    }
+    file.lastAccessed = System.currentTimeMillis();
+    file.countAccessed.incrementAndGet();
+
+    try {
+      ncfile.release();
+    } catch (IOException ioe) {
+      cacheLog.error("FileCacheTinyLfu {} release failed on {} - will try to remove from cache. Failure due to:", name,
+          ncfile.getLocation(), ioe);
+      remove(file);
+      return true;
+    }
+
+    if (file.state.compareAndSet(IN_USE, IDLE)) {
+      file.elem.idle.offerFirst(file);
+      if (!file.inWindow.get())
+        recordAccess(file);
+    }
+
+    // files in use could not leave the window, or be evicted, before
+    if (needsEviction())
+      evict();
+    return true;
+  }
+
+  private boolean isOverLimit() {
+    return weight.get() > maxWeight || (maxFiles > 0 && files.size() > maxFiles);
+  }
+
+  private boolean needsEviction() {
+    return isOverLimit() || windowWeight.get() > windowMaxWeight;
+  }
+
+  /**
+   * Move unused files out of the window, and evict unused files until the cache is under its limits,
+   * using the W-TinyLFU policy. If another thread is already evicting, return immediately.
+   */
+  void evict() {
+    if (!evicting.compareAndSet(false, true))
+      return;
+
+    List<CacheFile> deleteList = new ArrayList<>();
+    Deque<CacheFile> candidates = new ArrayDeque<>();
+    try {
+      drainAccessBuffer();
+      boolean isOver = isOverLimit();
+
+      // unused files that overflow the window are candidates for the main region; files in use stay
+      Iterator<CacheFile> windowIter = windowQueue.iterator();
+      while (windowWeight.get() > windowMaxWeight && windowIter.hasNext()) {
+        CacheFile file = windowIter.next();
+        if (file.state.get() == IDLE && file.inWindow.compareAndSet(true, false)) {
+          windowIter.remove();
+          windowWeight.addAndGet(-file.weight);
+          candidates.add(file);
+        }
+      }
+      if (!isOver)
+        return; // there is room, the candidates join the main region
+
+      // unused files in the main region, least recently used first
+      Iterator<CacheFile> mainIter = mainOrder.keySet().iterator();
+      CacheFile victim = nextVictim(mainIter);
+      while (isOverLimit()) {
+        CacheFile candidate = candidates.peekFirst();
+        CacheFile evict;
+        if (candidate != null) {
+          // admit the candidate only if its key is used more often than the main region's LRU file
+          if (victim != null && sketch.frequency(candidate.elem.hashKey) > sketch.frequency(victim.elem.hashKey)) {
+            evict = victim;
+            victim = nextVictim(mainIter);
+          } else {
+            evict = candidates.pollFirst();
+          }
+        } else if (windowWeight.get() > windowMaxWeight) {
+          break; // new files are in use, they compete for admission when they are released
+        } else if (victim != null) {
+          evict = victim;
+          victim = nextVictim(mainIter);
+        } else if (windowIter.hasNext()) {
+          evict = windowIter.next();
+        } else {
+          cacheLog.warn("FileCacheTinyLfu " + name + " couldnt evict enough to keep under the maximum= " + maxWeight
+              + " bytes, " + maxFiles + " files due to files in use; currently at = " + weight.get() + " bytes, "
+              + files.size() + " files");
+          break;
+        }
+
+        if (evict.state.compareAndSet(IDLE, EVICTED)) { // may have been acquired in the meantime
+          unlink(evict);
+          deleteList.add(evict);
+        }
+      }
+    } finally {
+      // the remaining candidates join the main region as its most recently used files, the evicted files leave it
+      for (CacheFile file : candidates) {
+        if (file.state.get() != EVICTED)
+          mainOrder.put(file, Boolean.TRUE);
+      }
+      drainAccessBuffer();
+      evicting.set(false);
+      // now actually close the files
+      for (CacheFile file : deleteList)
+        close(file);
+      evictions.add(deleteList.size());
+    }
+    if (cacheLog.isDebugEnabled())
+      cacheLog.debug("FileCacheTinyLfu {} evicted={} weight={} nfiles={}", name, deleteList.size(), weight.get(),
+          files.size());
+  }
+
+  // the next unused file of the main region, or null
+  private CacheFile nextVictim(Iterator<CacheFile> mainIter) {
+    while (mainIter.hasNext()) {
+      CacheFile file = mainIter.next();
+      if (file.state.get() == IDLE)
+        return file;
+    }
+    return null;
+  }
+
+  /**
+   * Close unused files that have not been accessed for period, then evict if still over the limits.
+   * Normally this is done in a background thread, you dont need to call.
+   */
+  void cleanup() {
+    if (disabled.get())
+      return;
+
+    long olderThan = System.currentTimeMillis() - period;
+    int count = 0;
+    for (CacheFile file : files.values()) {
+      if (file.lastAccessed < olderThan && file.state.compareAndSet(IDLE, EVICTED)) {
+        remove(file);
+        count++;
+      }
+    }
+    evictions.add(count);
+    if (isOverLimit())
+      evict();
+  }
+
+  /**
+   * Remove all cache entries.
+   *
+   * @param force if true, remove them even if they are currently locked.
+   */
+  @Override
+  public void clearCache(boolean force) {
+    int count = 0;
+    for (CacheFile file : files.values()) {
+      if (force) {
+        int prev = file.state.getAndSet(EVICTED);
+        if (prev == EVICTED)
+          continue;
+        if (prev == IN_USE)
+          cacheLog.warn("FileCacheTinyLfu " + name + " force close locked file= " + file);
+      } else if (!file.state.compareAndSet(IDLE, EVICTED)) {
+        continue;
+      }
+      remove(file);
+      count++;
+    }
+    if (cacheLog.isDebugEnabled())
+      cacheLog.debug("*FileCacheTinyLfu " + name + " clearCache force= " + force + " deleted= " + count + " left="
+          + files.size());
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////////////
+  // FileCacheMetrics
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  @Override
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  @Override
+  public long getWaitNanos() {
+    return waitNanos.sum();
+  }
+
+  @Override
+  public int getOpenHandles() {
+    return files.size();
+  }
+
+  @Override
+  public int getInUseCount() {
+    int count = 0;
+    for (CacheFile file : files.values())
+      if (file.state.get() == IN_USE)
+        count++;
+    return count;
+  }
+
+  @Override
+  public long getWeight() {
+    return weight.get();
+  }
+
+  @Override
+  public long getMaxWeight() {
+    return maxWeight;
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////////////
+  // debugging
+
+  @Override
+  public void resetTracking() {}
+
+  @Override
+  public void showTracking(Formatter format) {}
+
+  @Override
+  public void showCache(Formatter format) {
+    format.format("%nFileCacheTinyLfu %s (maxWeight=%d maxFiles=%d period=%d secs):%n", name, maxWeight, maxFiles,
+        period / 1000);
+    format.format(" isLocked  accesses    weight lastAccess                   location %n");
+    for (String s : showCache())
+      format.format("%s%n", s);
+    showStats(format);
+  }
+
+  @Override
+  public List<String> showCache() {
+    List<CacheFileSorter> allFiles = new ArrayList<>(files.size());
+    for (CacheFile file : files.values())
+      allFiles.add(new CacheFileSorter(file));
+    Collections.sort(allFiles); // sort so oldest are on top
+
+    List<String> result = new ArrayList<>(allFiles.size());
+    for (CacheFileSorter sorter : allFiles)
+      result.add(sorter.cacheFile.toString());
+    return result;
+  }
+
+  /**
+   * Add stat report (hits, misses, etc) to formatter.
+   *
+   * @param format add to this
+   */
+  @Override
+  public void showStats(Formatter format) {
+    format.format("  hits= %d miss= %d evictions= %d waitMsecs= %d nfiles= %d inUse= %d weight= %d elems= %d%n",
+        getHitCount(), getMissCount(), getEvictionCount(), TimeUnit.NANOSECONDS.toMillis(getWaitNanos()),
+        getOpenHandles(), getInUseCount(), getWeight(), cache.size());
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////////////
+
+  private class CacheElement {
+    final Object hashKey;
+    final ConcurrentLinkedDeque<CacheFile> idle = new ConcurrentLinkedDeque<>(); // unused files, most recent first
+    final AtomicInteger count = new AtomicInteger(); // number of files; -1 when removed from the cache
+
+    CacheElement(Object hashKey) {
+      this.hashKey = hashKey;
+    }
+
+    /** Count another file, unless this element has been removed. */
+    boolean retain() {
+      while (true) {
+        int n = count.get();
+        if (n < 0)
+          return false;
+        if (count.compareAndSet(n, n + 1))
+          return true;
+      }
+    }
+
+    /** Uncount a file, and remove this element when it has no more. */
+    void unretain() {
+      if (count.decrementAndGet() == 0 && count.compareAndSet(0, -1))
+        cache.remove(hashKey, this);
+    }
+  }
+
+  private class CacheFile {
+    final CacheElement elem;
+    final FileCacheable ncfile;
+    final AtomicInteger state = new AtomicInteger(IN_USE);
+    final AtomicBoolean inWindow = new AtomicBoolean(true);
+    final AtomicInteger countAccessed = new AtomicInteger();
+    final long weight;
+    final long lastModified;
+    volatile long lastAccessed;
+
+    CacheFile(CacheElement elem, FileCacheable ncfile) {
+      this.elem = elem;
+      this.ncfile = ncfile;
+      this.weight = Math.max(1, ncfile.getMemoryEstimate());
+      this.lastModified = ncfile.getLastModified();
+      this.lastAccessed = System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%8s %9d %9d %s == %s", state.get() == IN_USE, countAccessed.get(), weight,
+          CalendarDateFormatter.toDateTimeStringISO(lastAccessed), ncfile.getLocation());
+    }
+  }
+
+  // We need to freeze the lastAccessed value for the sorting.
+  // If it changes, we get "Comparison method violates its general contract".
+  private class CacheFileSorter implements Comparable<CacheFileSorter> {
+    private final CacheFile cacheFile;
+    private final long lastAccessed;
+
+    CacheFileSorter(CacheFile cacheFile) {
+      this.cacheFile = cacheFile;
+      this.lastAccessed = cacheFile.lastAccessed;
+    }
+
+    @Override
+    public int compareTo(CacheFileSorter o) {
+      return Long.compare(lastAccessed, o.lastAccessed);
+    }
+  }
+
+  /**
+   * Approximate count of how often each key was acquired recently: a count-min sketch of 4 bit counters,
+   * 16 to a long, updated with compare-and-set. All counts are halved after 10 times the table size increments,
+   * so that keys that were popular long ago fade away.
+   */
+  static class FrequencySketch {
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+        0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final AtomicLongArray table;
+    private final int tableMask;
+    private final int sampleSize;
+    private final AtomicInteger size = new AtomicInteger();
+
+    FrequencySketch(int capacity) {
+      int length = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1; // next power of two
+      this.table = new AtomicLongArray(length);
+      this.tableMask = length - 1;
+      this.sampleSize = 10 * length;
+    }
+
+    /** Estimated number of increments of the key, at most 15. */
+    int frequency(Object key) {
+      int hash = spread(key.hashCode());
+      int start = (hash & 3) << 2;
+      int frequency = Integer.MAX_VALUE;
+      for (int i = 0; i < 4; i++) {
+        int offset = (start + i) << 2;
+        int count = (int) ((table.get(indexOf(hash, i)) >>> offset) & 0xfL);
+        frequency = Math.min(frequency, count);
+      }
+      return frequency;
+    }
+
+    void increment(Object key) {
+      int hash = spread(key.hashCode());
+      int start = (hash & 3) << 2;
+      boolean added = false;
+      for (int i = 0; i < 4; i++)
+        added |= incrementAt(indexOf(hash, i), (start + i) << 2);
+      if (added && size.incrementAndGet() == sampleSize)
+        reset();
+    }
+
+    private boolean incrementAt(int index, int offset) {
+      long mask = 0xfL << offset;
+      while (true) {
+        long value = table.get(index);
+        if ((value & mask) == mask)
+          return false; // saturated
+        if (table.compareAndSet(index, value, value + (1L << offset)))
+          return true;
+      }
+    }
+
+    private void reset() {
+      for (int i = 0; i < table.length(); i++) {
+        while (true) {
+          long value = table.get(i);
+          if (table.compareAndSet(i, value, (value >>> 1) & RESET_MASK))
+            break;
+        }
+      }
+      size.addAndGet(-sampleSize / 2);
+    }
+
+    private int indexOf(int hash, int i) {
+      long h = (hash + SEEDS[i]) * SEEDS[i];
+      h += (h >>> 32);
+      return ((int) h) & tableMask;
+    }
+
+    private static int spread(int x) {
+      x = ((x >>> 16) ^ x) * 0x45d9f3b;
+      x = ((x >>> 16) ^ x) * 0x45d9f3b;
+      return (x >>> 16) ^ x;
+    }
+  }
+
+}
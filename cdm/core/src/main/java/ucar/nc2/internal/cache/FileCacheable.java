@@ -72,4 +72,15 @@ public interface FileCacheable {
    */
   void reacquire() throws IOException;
 
+  /**
+   * Estimate of the memory held while open, in bytes: the header, any indexes and buffers.
+   * Used by caches that are bounded by memory rather than by the number of files, so it need only be approximate.
+   * The default is 64 Kbytes.
+   *
+   * @return estimated memory in bytes.
+   */
+  default long getMemoryEstimate() {
+    return 64 * 1024;
+  }
+
 }
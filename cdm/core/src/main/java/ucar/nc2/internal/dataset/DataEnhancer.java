@@ -56,10 +56,30 @@ public class DataEnhancer {
     return result;
   }
 
-  // TODO
   public ucar.array.Array<?> convertArray(ucar.array.Array<?> data, Set<Enhance> enhancements) {
-    ucar.ma2.Array ma2 = ArraysConvert.convertFromArray(data);
-    return ArraysConvert.convertToArray(convert(ma2, enhancements));
+    if (enhancements.contains(Enhance.ConvertEnums)
+        && (dataType.isEnum() || (orgDataType != null && orgDataType.isEnum()))) {
+      ucar.ma2.Array ma2 = ArraysConvert.convertFromArray(data);
+      return ArraysConvert.convertToArray(convertEnums(ma2));
+    }
+    if (variableDS.isVariableLength()) {
+      return data;
+    }
+    return scaleMissingUnsignedProxy.convertArray(data, enhancements.contains(Enhance.ConvertUnsigned),
+        enhancements.contains(Enhance.ApplyScaleOffset), enhancements.contains(Enhance.ConvertMissing));
+  }
+
+  /** Like convertArray(), but the returned Array converts each element when it is accessed. */
+  public ucar.array.Array<?> convertArrayView(ucar.array.Array<?> data, Set<Enhance> enhancements) {
+    if (enhancements.contains(Enhance.ConvertEnums)
+        && (dataType.isEnum() || (orgDataType != null && orgDataType.isEnum()))) {
+      return convertArray(data, enhancements);
+    }
+    if (variableDS.isVariableLength()) {
+      return data;
+    }
+    return scaleMissingUnsignedProxy.convertArrayView(data, enhancements.contains(Enhance.ConvertUnsigned),
+        enhancements.contains(Enhance.ApplyScaleOffset), enhancements.contains(Enhance.ConvertMissing));
   }
 
 }
@@ -7,6 +7,7 @@ package ucar.nc2.internal.grid;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import ucar.ma2.InvalidRangeException;
 import ucar.ma2.RangeIterator;
 import ucar.nc2.Dimension;
 import ucar.nc2.constants.AxisType;
@@ -53,10 +54,12 @@ class GridCoordinateSystemImpl implements GridCoordinateSystem {
 
     ImmutableList.Builder<GridAxis> axesb = ImmutableList.builder();
     for (CoordinateAxis axis : builder.allAxes) {
-      if (axis.getAxisType() == null) {
+      // the time axes are replaced by a CoordinateAxis1DTime, which doesnt keep the AxisType
+      GridAxis gridAxis = gridAxes.get(axis.getFullName());
+      if (gridAxis == null && axis.getAxisType() == null) {
         continue;
       }
-      axesb.add(Preconditions.checkNotNull(gridAxes.get(axis.getFullName())));
+      axesb.add(Preconditions.checkNotNull(gridAxis));
     }
     this.axes = axesb.build();
 
@@ -77,6 +80,26 @@ class GridCoordinateSystemImpl implements GridCoordinateSystem {
     this.timeOffsetAxis = (GridAxis1DTime) findCoordAxis(AxisType.TimeOffset);
   }
 
+  /** Create a subset of an existing GridCoordinateSystem, with the subsetted axes in the same order. */
+  private GridCoordinateSystemImpl(GridCoordinateSystemImpl from, List<GridAxis> subsetAxes) {
+    this.name = from.name;
+    this.projection = from.projection;
+    this.featureType = from.featureType;
+    this.isLatLon = from.isLatLon;
+    this.axes = ImmutableList.copyOf(subsetAxes);
+    this.transforms = from.transforms;
+    this.domain = from.domain; // the dimensions of the original
+    this.horizStaggerType = from.horizStaggerType;
+
+    this.xaxis = (GridAxis1D) findCoordAxis(AxisType.GeoX, AxisType.Lon);
+    this.yaxis = (GridAxis1D) findCoordAxis(AxisType.GeoY, AxisType.Lat);
+    this.vertAxis = (GridAxis1D) findCoordAxis(AxisType.GeoZ, AxisType.Height, AxisType.Pressure);
+    this.ensAxis = (GridAxis1D) findCoordAxis(AxisType.Ensemble);
+    this.timeAxis = (GridAxis1DTime) findCoordAxis(AxisType.Time);
+    this.rtAxis = (GridAxis1DTime) findCoordAxis(AxisType.RunTime);
+    this.timeOffsetAxis = (GridAxis1DTime) findCoordAxis(AxisType.TimeOffset);
+  }
+
   @Override
   public String getName() {
     return name;
@@ -360,7 +383,94 @@ class GridCoordinateSystemImpl implements GridCoordinateSystem {
 
   @Override
   public Optional<GridCoordinateSystem> subset(SubsetParams params, Formatter errLog) {
-    throw new UnsupportedOperationException();
+    // x,y get subsetted together
+    Optional<List<GridAxis1D>> horizo = subsetHorizontal(params, errLog);
+    if (!horizo.isPresent()) {
+      return Optional.empty();
+    }
+    List<GridAxis1D> horiz = horizo.get();
+
+    Map<String, GridAxis> subsetAxes = new HashMap<>();
+    if (horiz.size() == 2) {
+      subsetAxes.put(xaxis.getName(), horiz.get(0));
+      subsetAxes.put(yaxis.getName(), horiz.get(1));
+    }
+    for (GridAxis axis : axes) {
+      if (axis == xaxis || axis == yaxis) {
+        continue;
+      }
+      if (axis.getDependenceType() == GridAxis.DependenceType.independent) {
+        Optional<GridAxis> subset = axis.subset(params, errLog);
+        if (!subset.isPresent()) {
+          return Optional.empty();
+        }
+        subsetAxes.put(axis.getName(), subset.get());
+      }
+    }
+
+    // dependent axes follow the axis they depend on, scalars are unchanged
+    List<GridAxis> result = new ArrayList<>();
+    for (GridAxis axis : axes) {
+      GridAxis subset = subsetAxes.get(axis.getName());
+      if (subset == null && axis.getDependenceType() == GridAxis.DependenceType.dependent) {
+        GridAxis dependsOn = axis.getDependsOnList().isEmpty() ? null : subsetAxes.get(axis.getDependsOnList().get(0));
+        if (dependsOn instanceof GridAxis1D) {
+          Optional<GridAxis> dependent = axis.subsetDependent((GridAxis1D) dependsOn, errLog);
+          if (!dependent.isPresent()) {
+            return Optional.empty();
+          }
+          subset = dependent.get();
+        }
+      }
+      result.add(subset != null ? subset : axis);
+    }
+    return Optional.of(new GridCoordinateSystemImpl(this, result));
+  }
+
+  /** Subset the x and y axes by a lat/lon or projection bounding box and/or a stride. Empty list if not subsetted. */
+  private Optional<List<GridAxis1D>> subsetHorizontal(SubsetParams params, Formatter errLog) {
+    LatLonRect llbb = params.getLatLonBoundingBox();
+    ProjectionRect projbb = params.getProjectionRect();
+    Integer strideo = params.getInteger(SubsetParams.horizStride);
+    int stride = (strideo == null || strideo < 1) ? 1 : strideo;
+    if (xaxis == null || yaxis == null || (llbb == null && projbb == null && stride == 1)) {
+      return Optional.of(ImmutableList.of());
+    }
+
+    Optional<? extends GridAxis> xsubset;
+    Optional<? extends GridAxis> ysubset;
+    if (isLatLon && llbb != null) {
+      // LOOK a bounding box that crosses the seam of the longitude axis is truncated
+      double lonMin = LatLonPoints.lonNormalFrom(llbb.getLonMin(), Math.min(xaxis.getCoordEdgeFirst(),
+          xaxis.getCoordEdgeLast()));
+      xsubset = xaxis.subset(lonMin, lonMin + llbb.getWidth(), stride, errLog);
+      ysubset = yaxis.subset(llbb.getLatMin(), llbb.getLatMax(), stride, errLog);
+
+    } else if (llbb != null || projbb != null) {
+      if (projbb == null) {
+        if (projection == null) {
+          errLog.format("Cant subset coordinate system %s by lat/lon without a projection", name);
+          return Optional.empty();
+        }
+        projbb = projection.latLonToProjBB(llbb);
+      }
+      xsubset = xaxis.subset(projbb.getMinX(), projbb.getMaxX(), stride, errLog);
+      ysubset = yaxis.subset(projbb.getMinY(), projbb.getMaxY(), stride, errLog);
+
+    } else {
+      try {
+        xsubset = xaxis.subsetByIndex(xaxis.getRange().copyWithStride(stride), errLog);
+        ysubset = yaxis.subsetByIndex(yaxis.getRange().copyWithStride(stride), errLog);
+      } catch (InvalidRangeException e) {
+        errLog.format("%s", e.getMessage());
+        return Optional.empty();
+      }
+    }
+
+    if (!xsubset.isPresent() || !ysubset.isPresent()) {
+      return Optional.empty();
+    }
+    return Optional.of(ImmutableList.of((GridAxis1D) xsubset.get(), (GridAxis1D) ysubset.get()));
   }
 
   @Override
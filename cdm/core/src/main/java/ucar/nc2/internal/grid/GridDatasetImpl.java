@@ -19,6 +19,7 @@ import ucar.nc2.time.CalendarDateRange;
 import ucar.unidata.geoloc.LatLonRect;
 import ucar.unidata.geoloc.ProjectionRect;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.*;
 
@@ -156,7 +157,12 @@ public class GridDatasetImpl implements GridDataset {
   }
 
   @Override
+  @Nullable
   public Grid findGrid(String name) {
+    for (Grid grid : grids) {
+      if (grid.getName().equals(name))
+        return grid;
+    }
     return null;
   }
 
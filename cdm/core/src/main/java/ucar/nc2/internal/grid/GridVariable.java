@@ -2,9 +2,11 @@ package ucar.nc2.internal.grid;
 
 import ucar.array.Array;
 import ucar.ma2.*;
+import ucar.nc2.Dimension;
 import ucar.nc2.dataset.VariableDS;
 import ucar.nc2.ft2.coverage.SubsetParams;
 import ucar.nc2.grid.Grid;
+import ucar.nc2.grid.GridAxis;
 import ucar.nc2.grid.GridCoordinateSystem;
 import ucar.nc2.grid.GridReferencedArray;
 
@@ -76,12 +78,21 @@ public class GridVariable implements Grid {
     }
 
     GridCoordinateSystem subsetCoordSys = opt.get();
-    List<RangeIterator> rangeIters = subsetCoordSys.getRanges();
-    List<Range> ranges = new ArrayList<>();
 
+    // the ranges in the order of the variable's dimensions; a dimension without an axis is read in full
+    Map<String, RangeIterator> axisRanges = new HashMap<>();
+    for (GridAxis axis : subsetCoordSys.getCoordAxes()) {
+      if (axis.getDependenceType() == GridAxis.DependenceType.independent) {
+        axisRanges.put(axis.getName(), axis.getRangeIterator());
+      }
+    }
+    List<Range> ranges = new ArrayList<>();
     boolean hasComposite = false;
-    for (RangeIterator ri : rangeIters) {
-      if (ri instanceof RangeComposite) // TODO
+    for (Dimension dim : vds.getDimensions()) {
+      RangeIterator ri = axisRanges.get(dim.getShortName());
+      if (ri == null)
+        ranges.add(new Range(dim.getShortName(), 0, dim.getLength() - 1));
+      else if (ri instanceof RangeComposite) // TODO
         hasComposite = true;
       else
         ranges.add((Range) ri);
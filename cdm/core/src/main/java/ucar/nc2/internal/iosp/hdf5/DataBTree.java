@@ -26,6 +26,8 @@ import java.util.List;
  * The pointers out of internal nodes point to sub-trees while the pointers out of leaf nodes point to symbol nodes and
  * raw data chunks. Aside from that difference, internal nodes and leaf nodes are identical.
  *
+ * The chunks may instead come from a list, eg read from an H5chunkManifest, in which case the btree is not read.
+ *
  * @see "http://www.hdfgroup.org/HDF5/doc/H5.format.html#Btrees"
  */
 public class DataBTree {
@@ -39,8 +41,10 @@ public class DataBTree {
   private final MemTracker memTracker;
 
   private final long rootNodeAddress;
+  private final int[] varShape;
   private final Tiling tiling;
   private final int ndimStorage, wantType;
+  private final List<DataChunk> chunks; // in btree order, or null to read the btree
 
   private Object owner;
 
@@ -48,9 +52,32 @@ public class DataBTree {
     this.h5 = h5;
     this.raf = h5.getRandomAccessFile();
     this.rootNodeAddress = rootNodeAddress;
+    this.varShape = varShape;
     this.tiling = new Tiling(varShape, storageSize);
     this.ndimStorage = storageSize.length;
     this.memTracker = memTracker;
+    this.chunks = null;
+
+    wantType = 1;
+  }
+
+  /**
+   * Constructor for chunks that are already known, so the btree does not have to be read.
+   *
+   * @param h5 the header
+   * @param varShape the shape of the variable
+   * @param storageSize the chunk size, last number is element size
+   * @param chunks all the chunks, in btree order
+   */
+  DataBTree(H5header h5, int[] varShape, int[] storageSize, List<DataChunk> chunks) {
+    this.h5 = h5;
+    this.raf = h5.getRandomAccessFile();
+    this.rootNodeAddress = -1;
+    this.varShape = varShape;
+    this.tiling = new Tiling(varShape, storageSize);
+    this.ndimStorage = storageSize.length;
+    this.memTracker = null;
+    this.chunks = chunks;
 
     wantType = 1;
   }
@@ -59,6 +86,10 @@ public class DataBTree {
     this.owner = owner;
   }
 
+  int[] getVarShape() {
+    return varShape;
+  }
+
   // used by H5tiledLayoutBB
   public DataChunkIterator getDataChunkIteratorFilter(Section want) throws IOException {
     return new DataChunkIterator(want);
@@ -73,7 +104,7 @@ public class DataBTree {
   // returns the actual data from the btree leaf (level 0) nodes.
   // used by H5tiledLayout, when there are no filters
   class DataChunkIteratorNoFilter implements LayoutTiled.DataChunkIterator {
-    private final Node root;
+    private final DataChunkIterator delegate;
     private final int nChunkDim;
 
     /**
@@ -85,17 +116,15 @@ public class DataBTree {
      */
     DataChunkIteratorNoFilter(Section want, int nChunkDim) throws IOException {
       this.nChunkDim = nChunkDim;
-      root = new Node(rootNodeAddress, -1); // should we cache the nodes ???
-      int[] wantOrigin = (want != null) ? want.getOrigin() : null;
-      root.first(wantOrigin);
+      this.delegate = new DataChunkIterator(want);
     }
 
     public boolean hasNext() {
-      return root.hasNext(); // && !node.greaterThan(wantOrigin);
+      return delegate.hasNext();
     }
 
     public LayoutTiled.DataChunk next() throws IOException {
-      DataChunk dc = root.next();
+      DataChunk dc = delegate.next();
       int[] offset = dc.offset;
       if (offset.length > nChunkDim) { // may have to eliminate last offset
         offset = new int[nChunkDim];
@@ -112,7 +141,8 @@ public class DataBTree {
   // returns the data chunck info from the btree leaf (level 0) nodes
   // used by H5tiledLayoutBB, when there are filters
   public class DataChunkIterator {
-    private final Node root;
+    private final Node root; // null if the chunks are in a list
+    private int listIndex; // next chunk in the list
     private final int[] wantOrigin;
 
     /**
@@ -122,20 +152,45 @@ public class DataBTree {
      * @throws IOException on error
      */
     DataChunkIterator(Section want) throws IOException {
-      root = new Node(rootNodeAddress, -1); // should we cache the nodes ???
       wantOrigin = (want != null) ? want.getOrigin() : null;
-      root.first(wantOrigin);
+      if (chunks != null) {
+        root = null;
+        listIndex = firstInList(wantOrigin);
+      } else {
+        root = new Node(rootNodeAddress, -1); // should we cache the nodes ???
+        root.first(wantOrigin);
+      }
     }
 
     public boolean hasNext() {
+      if (root == null)
+        return listIndex < chunks.size();
       return root.hasNext(); // && !node.greaterThan(wantOrigin);
     }
 
     public DataChunk next() throws IOException {
+      if (root == null)
+        return chunks.get(listIndex++);
       return root.next();
     }
   }
 
+  // Same as Node.first(): skip the chunks that end before wantOrigin, ie the last chunk starting at or before it.
+  private int firstInList(int[] wantOrigin) {
+    if (wantOrigin == null)
+      return 0;
+    int lo = 0; // count of chunks that start at or before wantOrigin
+    int hi = chunks.size();
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (tiling.compare(chunks.get(mid).offset, wantOrigin) <= 0)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    return Math.max(0, lo - 1);
+  }
+
   // Btree nodes
   class Node {
     private final long address;
@@ -187,7 +242,7 @@ public class DataBTree {
         // read all entries as a DataChunk
         myEntries = new ArrayList<>();
         for (int i = 0; i <= nentries; i++) {
-          DataChunk dc = new DataChunk(ndimStorage, (i == nentries));
+          DataChunk dc = readDataChunk(ndimStorage, (i == nentries));
           myEntries.add(dc);
           if (debugDataChunk)
             debugOut.println(dc);
@@ -292,24 +347,32 @@ public class DataBTree {
   // see http://www.hdfgroup.org/HDF5/doc/H5.format.html#V1Btrees,
   // see "Key" field (type 1) p 10
   // this is only for leaf nodes (level 0)
-  public class DataChunk {
+  private DataChunk readDataChunk(int ndim, boolean last) throws IOException {
+    int size = raf.readInt();
+    int filterMask = raf.readInt();
+    int[] offset = new int[ndim];
+    for (int i = 0; i < ndim; i++) {
+      long loffset = raf.readLong();
+      assert loffset < Integer.MAX_VALUE;
+      offset[i] = (int) loffset;
+    }
+    long filePos = last ? -1 : h5.readAddress(); //
+    if (memTracker != null)
+      memTracker.addByLen("Chunked Data (" + owner + ")", filePos, size);
+    return new DataChunk(size, filterMask, offset, filePos);
+  }
+
+  public static class DataChunk {
     public final int size; // size of chunk in bytes; need storage layout dimensions to interpret
     public final int filterMask; // bitfield indicating which filters have been skipped for this chunk
     public final int[] offset; // offset index of this chunk, reletive to entire array
     public final long filePos; // filePos of a single raw data chunk, already shifted by the offset if needed
 
-    DataChunk(int ndim, boolean last) throws IOException {
-      this.size = raf.readInt();
-      this.filterMask = raf.readInt();
-      offset = new int[ndim];
-      for (int i = 0; i < ndim; i++) {
-        long loffset = raf.readLong();
-        assert loffset < Integer.MAX_VALUE;
-        offset[i] = (int) loffset;
-      }
-      this.filePos = last ? -1 : h5.readAddress(); //
-      if (memTracker != null)
-        memTracker.addByLen("Chunked Data (" + owner + ")", filePos, size);
+    DataChunk(int size, int filterMask, int[] offset, long filePos) {
+      this.size = size;
+      this.filterMask = filterMask;
+      this.offset = offset;
+      this.filePos = filePos;
     }
 
     public String toString() {
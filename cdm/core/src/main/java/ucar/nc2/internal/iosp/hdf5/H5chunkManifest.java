@@ -0,0 +1,455 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import javax.annotation.Nullable;
+import ucar.ma2.DataType;
+import ucar.nc2.Group;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Structure;
+import ucar.nc2.Variable;
+import ucar.nc2.internal.iosp.hdf5.H5objects.Filter;
+import ucar.nc2.stream.NcStream;
+import ucar.nc2.stream.NcStreamProto;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * The chunk manifest of an HDF5 / netCDF-4 file: its CDM header, and the storage of each variable, including the
+ * file position, size and filter mask of every chunk. A file opened from its manifest does not have its object
+ * headers, heaps and chunk btrees read, which takes many small reads and is slow for a remote file;
+ * only the chunks are read, in batches.
+ * <p>
+ * Manifests are made with write(), or main() for local files. H5iosp looks for a manifest only if told where by
+ * setSearch() or the "unidata.h5iosp.chunkManifest" system property: "sidecar" for next to the file, or the location
+ * of a directory. A manifest is not used if the file has changed since it was made: if its length, its last modified
+ * time (when known), or the checksum of its first HEADER_CHECK bytes is different.
+ * Files with structures, references, or variable length data (which is in the global heap) cannot have a manifest.
+ * <p>
+ * The format is: magic "H5CM", version, file length, last modified time, header checksum, then deflated: the
+ * netCDF-4 and HDF-EOS flags, the root group
+ * as an NcStreamProto.Group, and the H5header.Vinfo of each variable.
+ */
+public class H5chunkManifest {
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(H5chunkManifest.class);
+
+  /** The manifest of a file is named after it, with this suffix. */
+  public static final String SUFFIX = ".chunks";
+  /** Look for the manifest of a file next to it. */
+  public static final String SIDECAR = "sidecar";
+
+  // System property name for -D flag
+  private static final String SEARCH_PROPERTY = "unidata.h5iosp.chunkManifest";
+
+  private static final byte[] MAGIC = {'H', '5', 'C', 'M'};
+  private static final int VERSION = 2;
+  private static final int HEADER_CHECK = 4096; // the checksum is of this many bytes at the start of the file
+  private static final int SIZE_TO_CACHE = 1000; // the data of variables smaller than this is kept in the manifest
+
+  private static String search;
+  private static boolean searchInit;
+
+  /**
+   * Set where H5iosp looks for the manifest of a file that it opens, overriding the "unidata.h5iosp.chunkManifest"
+   * system property.
+   *
+   * @param where SIDECAR to look next to the file, or the location of a directory of manifests, or null to not look.
+   */
+  public static synchronized void setSearch(@Nullable String where) {
+    search = where;
+    searchInit = true;
+  }
+
+  @Nullable
+  static synchronized String getSearch() {
+    if (!searchInit) {
+      String val = System.getProperty(SEARCH_PROPERTY);
+      if ("true".equalsIgnoreCase(val))
+        val = SIDECAR;
+      search = (val == null || val.isEmpty() || "false".equalsIgnoreCase(val)) ? null : val;
+      searchInit = true;
+    }
+    return search;
+  }
+
+  /**
+   * The location of the manifest of a file.
+   *
+   * @param location location of the file
+   * @param where SIDECAR, or the location of a directory of manifests.
+   */
+  public static String getManifestLocation(String location, String where) {
+    if (SIDECAR.equals(where))
+      return location + SUFFIX;
+    // a file in the directory, named after the last element of the location
+    int pos = Math.max(location.lastIndexOf('/'), Math.max(location.lastIndexOf('\\'), location.lastIndexOf('?')));
+    String name = location.substring(pos + 1);
+    return (where.endsWith("/") ? where : where + "/") + name + SUFFIX;
+  }
+
+  /**
+   * Find and read the manifest of a file.
+   *
+   * @param raf the file
+   * @return the manifest, or null if not looking for manifests, there is none, or it is out of date.
+   */
+  @Nullable
+  static H5chunkManifest find(RandomAccessFile raf) {
+    String where = getSearch();
+    if (where == null)
+      return null;
+
+    String location = getManifestLocation(raf.getLocation(), where);
+    byte[] contents;
+    try (RandomAccessFile mraf = NetcdfFiles.getRaf(location, -1)) {
+      contents = new byte[(int) mraf.length()];
+      mraf.readFully(contents);
+    } catch (IOException e) {
+      log.debug("No chunk manifest {}: {}", location, e.getMessage());
+      return null;
+    }
+
+    try {
+      H5chunkManifest manifest = new H5chunkManifest(location, contents);
+      long fileLength = raf.length();
+      if (manifest.fileLength != fileLength) {
+        log.warn("Chunk manifest {} is out of date: file length {} != {}", location, fileLength, manifest.fileLength);
+        return null;
+      }
+      // 0 if not known, eg for http
+      long lastModified = raf.getLastModified();
+      if (lastModified != 0 && manifest.lastModified != 0 && manifest.lastModified != lastModified) {
+        log.warn("Chunk manifest {} is out of date: file last modified {} != {}", location, lastModified,
+            manifest.lastModified);
+        return null;
+      }
+      // the file may have been rewritten in place at the same length
+      if (manifest.headerChecksum != headerChecksum(raf)) {
+        log.warn("Chunk manifest {} is out of date: the start of the file has changed", location);
+        return null;
+      }
+      return manifest;
+    } catch (IOException e) {
+      log.warn("Cant read chunk manifest {}: {}", location, e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Write the manifest of an HDF5 file.
+   *
+   * @param ncfile opened by H5iosp
+   * @param out write to here; not closed.
+   * @throws IOException if ncfile is not an HDF5 file, it has variables that a manifest cannot describe, or on write
+   *         error.
+   */
+  public static void write(NetcdfFile ncfile, OutputStream out) throws IOException {
+    Object iosp = ncfile.sendIospMessage(NetcdfFile.IOSP_MESSAGE_GET_IOSP);
+    if (!(iosp instanceof H5iosp))
+      throw new IOException(ncfile.getLocation() + " was not opened by H5iosp");
+    H5iosp h5iosp = (H5iosp) iosp;
+    H5header header = h5iosp.getHeader();
+
+    // check all the variables first, so nothing is written for a file that cant be described
+    List<Variable> vars = ncfile.getVariables();
+    for (Variable v : vars) {
+      String problem = checkSupported(v);
+      if (problem != null)
+        throw new IOException(String.format("Cant make a chunk manifest for %s: variable %s %s", ncfile.getLocation(),
+            v.getFullName(), problem));
+    }
+
+    DataOutputStream preamble = new DataOutputStream(out);
+    preamble.write(MAGIC);
+    preamble.writeInt(VERSION);
+    RandomAccessFile raf = header.getRandomAccessFile();
+    preamble.writeLong(raf.length());
+    preamble.writeLong(raf.getLastModified());
+    preamble.writeLong(headerChecksum(raf));
+    preamble.flush();
+
+    DeflaterOutputStream zout = new DeflaterOutputStream(out);
+    DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(zout));
+    dout.writeBoolean(header.isNetcdf4());
+    dout.writeBoolean(h5iosp.isEos);
+    writeBytes(dout, NcStream.encodeGroup(ncfile.getRootGroup(), SIZE_TO_CACHE).build().toByteArray());
+    dout.writeInt(vars.size());
+    for (Variable v : vars) {
+      List<String> path = new ArrayList<>();
+      for (Group g = v.getParentGroup(); g.getParentGroup() != null; g = g.getParentGroup())
+        path.add(0, g.getShortName());
+      dout.writeInt(path.size());
+      for (String name : path)
+        dout.writeUTF(name);
+      dout.writeUTF(v.getShortName());
+      writeVinfo(dout, (H5header.Vinfo) v.getSPobject());
+    }
+    dout.flush();
+    zout.finish();
+  }
+
+  // null if a manifest can describe the variable, otherwise why not
+  @Nullable
+  private static String checkSupported(Variable v) {
+    if (v instanceof Structure)
+      return "is a Structure";
+    if (!(v.getSPobject() instanceof H5header.Vinfo) || ((H5header.Vinfo) v.getSPobject()).typeInfo == null)
+      return "has no HDF5 storage";
+    H5header.Vinfo vinfo = (H5header.Vinfo) v.getSPobject();
+    H5header.TypeInfo typeInfo = vinfo.typeInfo;
+    if (vinfo.isvlen || typeInfo.isVlen || typeInfo.isVString)
+      return "has variable length data";
+    switch (typeInfo.hdfType) {
+      case 0: // integer
+      case 1: // floating point
+      case 3: // fixed length string
+      case 8: // enum
+        return null;
+      default:
+        return "has HDF5 datatype " + typeInfo.hdfType;
+    }
+  }
+
+  private static void writeVinfo(DataOutputStream out, H5header.Vinfo vinfo) throws IOException {
+    writeTypeInfo(out, vinfo.typeInfo);
+    out.writeLong(vinfo.dataPos);
+    writeInts(out, vinfo.storageSize);
+    out.writeBoolean(vinfo.useFillValue);
+    writeBytes(out, vinfo.fillValue);
+
+    if (vinfo.mfp == null) {
+      out.writeInt(-1);
+    } else {
+      out.writeInt(vinfo.mfp.filters.length);
+      for (Filter filter : vinfo.mfp.filters) {
+        out.writeInt(filter.id);
+        out.writeShort(filter.flags);
+        out.writeUTF(filter.name == null ? "" : filter.name);
+        writeInts(out, (filter.data == null) ? new int[0] : filter.data);
+      }
+    }
+
+    out.writeBoolean(vinfo.isChunked);
+    if (vinfo.isChunked) {
+      writeInts(out, vinfo.btree.getVarShape());
+      List<DataBTree.DataChunk> chunks = new ArrayList<>();
+      if (!vinfo.useFillValue) {
+        DataBTree.DataChunkIterator iter = vinfo.btree.getDataChunkIteratorFilter(null);
+        while (iter.hasNext())
+          chunks.add(iter.next());
+      }
+      out.writeInt(chunks.size());
+      for (DataBTree.DataChunk chunk : chunks) {
+        out.writeInt(chunk.size);
+        out.writeInt(chunk.filterMask);
+        for (int i = 0; i < vinfo.storageSize.length; i++)
+          out.writeInt(chunk.offset[i]);
+        out.writeLong(chunk.filePos);
+      }
+    }
+  }
+
+  private static void writeTypeInfo(DataOutputStream out, H5header.TypeInfo typeInfo) throws IOException {
+    out.writeInt(typeInfo.hdfType);
+    out.writeInt(typeInfo.byteSize);
+    out.writeUTF(typeInfo.dataType.name());
+    out.writeByte(typeInfo.endian == null ? 0 : (typeInfo.endian == ByteOrder.BIG_ENDIAN ? 1 : 2));
+    out.writeBoolean(typeInfo.unsigned);
+    out.writeInt(typeInfo.vpad);
+    out.writeBoolean(typeInfo.base != null);
+    if (typeInfo.base != null)
+      writeTypeInfo(out, typeInfo.base);
+  }
+
+  private static void writeInts(DataOutputStream out, @Nullable int[] vals) throws IOException {
+    if (vals == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(vals.length);
+    for (int val : vals)
+      out.writeInt(val);
+  }
+
+  private static void writeBytes(DataOutputStream out, @Nullable byte[] vals) throws IOException {
+    if (vals == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(vals.length);
+    out.write(vals);
+  }
+
+  // CRC32 of the first HEADER_CHECK bytes of the file, which has the superblock and usually the root group
+  private static long headerChecksum(RandomAccessFile raf) throws IOException {
+    byte[] start = new byte[(int) Math.min(HEADER_CHECK, raf.length())];
+    raf.seek(0);
+    raf.readFully(start);
+    CRC32 crc = new CRC32();
+    crc.update(start, 0, start.length);
+    return crc.getValue();
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////
+
+  private final String location;
+  private final long fileLength;
+  private final long lastModified; // 0 if not known
+  private final long headerChecksum;
+  private final byte[] body; // deflated
+  private boolean isEos;
+
+  private H5chunkManifest(String location, byte[] contents) throws IOException {
+    this.location = location;
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(contents));
+    byte[] magic = new byte[MAGIC.length];
+    in.readFully(magic);
+    if (!Arrays.equals(magic, MAGIC))
+      throw new IOException("not a chunk manifest");
+    int version = in.readInt();
+    if (version != VERSION)
+      throw new IOException("unknown chunk manifest version " + version);
+    this.fileLength = in.readLong();
+    this.lastModified = in.readLong();
+    this.headerChecksum = in.readLong();
+    int start = MAGIC.length + 4 + 3 * 8;
+    this.body = Arrays.copyOfRange(contents, start, contents.length);
+  }
+
+  /** Was the file amended from its HDF-EOS metadata. Set by build(). */
+  boolean isEos() {
+    return isEos;
+  }
+
+  /**
+   * Add the contents of the file to the root group, instead of reading them from the file.
+   * Each variable gets a Vinfo made by the header.
+   */
+  void build(H5header header, Group.Builder root) throws IOException {
+    try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(body)))) {
+      header.setFromManifest(in.readBoolean());
+      this.isEos = in.readBoolean();
+      NcStream.readGroup(NcStreamProto.Group.parseFrom(readBytes(in)), root);
+
+      int nvars = in.readInt();
+      for (int i = 0; i < nvars; i++) {
+        Group.Builder group = root;
+        int depth = in.readInt();
+        for (int j = 0; j < depth; j++) {
+          String name = in.readUTF();
+          group = group.findGroupLocal(name)
+              .orElseThrow(() -> new IOException("Chunk manifest " + location + " has no group " + name));
+        }
+        String name = in.readUTF();
+        Variable.Builder<?> vb = group.findVariableLocal(name)
+            .orElseThrow(() -> new IOException("Chunk manifest " + location + " has no variable " + name));
+        H5header.Vinfo vinfo = readVinfo(in, header);
+        vb.setSPobject(vinfo);
+        vinfo.setOwner(vb);
+      }
+    }
+  }
+
+  private static H5header.Vinfo readVinfo(DataInputStream in, H5header header) throws IOException {
+    H5header.Vinfo vinfo = header.new Vinfo();
+    vinfo.typeInfo = readTypeInfo(in);
+    vinfo.dataPos = in.readLong();
+    vinfo.storageSize = readInts(in);
+    vinfo.useFillValue = in.readBoolean();
+    vinfo.fillValue = readBytes(in);
+
+    int nfilters = in.readInt();
+    if (nfilters >= 0) {
+      Filter[] filters = new Filter[nfilters];
+      for (int i = 0; i < nfilters; i++)
+        filters[i] = header.h5objects.new Filter(in.readInt(), in.readShort(), in.readUTF(), readInts(in));
+      vinfo.mfp = header.h5objects.new MessageFilter();
+      vinfo.mfp.filters = filters;
+    }
+
+    vinfo.isChunked = in.readBoolean();
+    if (vinfo.isChunked) {
+      int[] varShape = readInts(in);
+      int nchunks = in.readInt();
+      int ndim = vinfo.storageSize.length;
+      List<DataBTree.DataChunk> chunks = new ArrayList<>(nchunks);
+      for (int i = 0; i < nchunks; i++) {
+        int size = in.readInt();
+        int filterMask = in.readInt();
+        int[] offset = new int[ndim];
+        for (int j = 0; j < ndim; j++)
+          offset[j] = in.readInt();
+        chunks.add(new DataBTree.DataChunk(size, filterMask, offset, in.readLong()));
+      }
+      vinfo.btree = new DataBTree(header, varShape, vinfo.storageSize, chunks);
+    }
+    return vinfo;
+  }
+
+  private static H5header.TypeInfo readTypeInfo(DataInputStream in) throws IOException {
+    H5header.TypeInfo typeInfo = new H5header.TypeInfo(in.readInt(), in.readInt());
+    typeInfo.dataType = DataType.valueOf(in.readUTF());
+    byte endian = in.readByte();
+    typeInfo.endian = (endian == 0) ? null : (endian == 1 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    typeInfo.unsigned = in.readBoolean();
+    typeInfo.vpad = in.readInt();
+    if (in.readBoolean())
+      typeInfo.base = readTypeInfo(in);
+    return typeInfo;
+  }
+
+  @Nullable
+  private static int[] readInts(DataInputStream in) throws IOException {
+    int n = in.readInt();
+    if (n < 0)
+      return null;
+    int[] vals = new int[n];
+    for (int i = 0; i < n; i++)
+      vals[i] = in.readInt();
+    return vals;
+  }
+
+  @Nullable
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    int n = in.readInt();
+    if (n < 0)
+      return null;
+    byte[] vals = new byte[n];
+    in.readFully(vals);
+    return vals;
+  }
+
+  /** Write the manifest of each local file named on the command line, next to the file. */
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      System.out.printf("usage: H5chunkManifest <file>...%n");
+      return;
+    }
+    for (String filename : args) {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+        write(ncfile, bos);
+      }
+      Files.write(Paths.get(filename + SUFFIX), bos.toByteArray());
+      System.out.printf("wrote %s (%d bytes)%n", filename + SUFFIX, bos.size());
+    }
+  }
+}
@@ -67,6 +67,7 @@ import ucar.nc2.iosp.IospHelper;
 import ucar.nc2.iosp.Layout;
 import ucar.nc2.iosp.LayoutRegular;
 import ucar.nc2.iosp.NetcdfFormatUtils;
+import ucar.nc2.iosp.hdf5.H5Filters;
 import ucar.unidata.io.RandomAccessFile;
 
 /** Read all of the metadata of an HD5 file. */
@@ -136,8 +137,6 @@ public class H5header implements HdfHeaderIF {
    * 3) all variables' dimensions have a dimension scale
    */
 
-  private static final int KNOWN_FILTERS = 3;
-
   private final RandomAccessFile raf;
   private final Group.Builder root;
   private final H5iosp h5iosp;
@@ -1235,16 +1234,6 @@ public class H5header implements HdfHeaderIF {
       return null;
     }
 
-    // deal with filters, cant do SZIP
-    if (facade.dobj.mfp != null) {
-      for (Filter f : facade.dobj.mfp.filters) {
-        if (f.id == 4) {
-          log.debug("SKIPPING variable with SZIP Filter= " + facade.dobj.mfp + " for variable " + facade.name);
-          return null;
-        }
-      }
-    }
-
     Attribute fillAttribute = null;
     for (HeaderMessage mess : facade.dobj.messages) {
       if (mess.mtype == MessageType.FillValue) {
@@ -1374,7 +1363,7 @@ public class H5header implements HdfHeaderIF {
     vinfo.setOwner(vb);
     if ((vinfo.mfp != null) && warnings) {
       for (Filter f : vinfo.mfp.getFilters()) {
-        if (f.id > KNOWN_FILTERS) {
+        if (H5Filters.find(f.id) == null) {
           log.warn("  Variable " + facade.name + " has unknown Filter(s) = " + vinfo.mfp);
           break;
         }
@@ -2268,6 +2257,16 @@ public class H5header implements HdfHeaderIF {
     return isNetcdf4;
   }
 
+  /**
+   * Prepare to make Vinfo for the variables of an H5chunkManifest, instead of reading the header from the file.
+   * 
+   * @param isNetcdf4 was the header written by the netCDF-4 library
+   */
+  void setFromManifest(boolean isNetcdf4) {
+    this.isNetcdf4 = isNetcdf4;
+    this.h5objects = new H5objects(this, null, null);
+  }
+
   boolean isClassic() {
     return false; // TODO
   }
@@ -115,6 +115,15 @@ public class H5iosp extends AbstractIOServiceProvider {
 
     raf.order(RandomAccessFile.BIG_ENDIAN);
     header = new H5header(raf, rootGroup, this);
+
+    // the chunk manifest has everything, including any HDF-EOS changes
+    H5chunkManifest manifest = H5chunkManifest.find(raf);
+    if (manifest != null) {
+      manifest.build(header, rootGroup);
+      isEos = manifest.isEos();
+      return;
+    }
+
     header.read(null);
 
     // check if its an HDF5-EOS file
@@ -16,10 +16,8 @@ import ucar.array.StructureMembers;
 import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
-import ucar.nc2.Group;
 import ucar.nc2.Structure;
 import ucar.nc2.Variable;
-import ucar.nc2.internal.iosp.hdf4.HdfEos;
 import ucar.nc2.internal.iosp.hdf5.H5objects.GlobalHeap;
 import ucar.nc2.internal.iosp.hdf5.H5objects.HeapIdentifier;
 import ucar.nc2.iosp.IospHelper;
@@ -28,32 +26,10 @@ import ucar.nc2.iosp.LayoutBB;
 import ucar.nc2.iosp.LayoutRegular;
 import ucar.nc2.iosp.NetcdfFormatUtils;
 import ucar.nc2.time.CalendarDate;
-import ucar.nc2.util.CancelTask;
-import ucar.unidata.io.RandomAccessFile;
 
 /** HDF5 I/O with ucar.array.Array */
 public class H5iospArrays extends H5iosp {
 
-  @Override
-  public void build(RandomAccessFile raf, Group.Builder rootGroup, CancelTask cancelTask) throws IOException {
-    super.open(raf, rootGroup.getNcfile(), cancelTask);
-
-    raf.order(RandomAccessFile.BIG_ENDIAN);
-    header = new H5header(raf, rootGroup, this);
-    header.read(null);
-
-    // check if its an HDF5-EOS file
-    if (useHdfEos) {
-      rootGroup.findGroupLocal(HdfEos.HDF5_GROUP).ifPresent(eosGroup -> {
-        try {
-          isEos = HdfEos.amendFromODL(raf.getLocation(), header, eosGroup);
-        } catch (IOException e) {
-          log.warn(" HdfEos.amendFromODL failed");
-        }
-      });
-    }
-  }
-
   @Override
   public ucar.array.Array<?> readArrayData(Variable v2, Section section)
       throws java.io.IOException, ucar.ma2.InvalidRangeException {
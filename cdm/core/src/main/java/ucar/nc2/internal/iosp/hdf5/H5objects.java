@@ -16,6 +16,8 @@ import ucar.ma2.Array;
 import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
 import ucar.nc2.Dimension;
+import ucar.nc2.iosp.hdf5.H5Filter;
+import ucar.nc2.iosp.hdf5.H5Filters;
 import ucar.nc2.time.CalendarDate;
 import ucar.unidata.io.RandomAccessFile;
 
@@ -1716,17 +1718,15 @@ public class H5objects {
     }
   }
 
-  private static final String[] filterName = {"", "deflate", "shuffle", "fletcher32", "szip", "nbit", "scaleoffset"};
-
   class Filter {
-    short id; // 1=deflate, 2=shuffle, 3=fletcher32, 4=szip, 5=nbit, 6=scaleoffset
+    int id; // 1=deflate, 2=shuffle, 3=fletcher32, 4=szip, 5=nbit, 6=scaleoffset, others are registered with HDF
     short flags;
     String name;
     short nValues;
     int[] data;
 
     Filter(byte version) throws IOException {
-      this.id = raf.readShort();
+      this.id = raf.readUnsignedShort();
       short nameSize = ((version > 1) && (id < 256)) ? 0 : raf.readShort(); // if the filter id < 256 then this field is
       // not stored
       this.flags = raf.readShort();
@@ -1747,8 +1747,18 @@ public class H5objects {
       }
     }
 
+    // from an H5chunkManifest
+    Filter(int id, short flags, String name, int[] data) {
+      this.id = id;
+      this.flags = flags;
+      this.name = name;
+      this.nValues = (short) data.length;
+      this.data = data;
+    }
+
     String getFilterName(int id) {
-      return (id < filterName.length) ? filterName[id] : "StandardFilter " + id;
+      H5Filter h5filter = H5Filters.find(id);
+      return (h5filter != null) ? h5filter.getName() : "StandardFilter " + id;
     }
 
     public String toString() {
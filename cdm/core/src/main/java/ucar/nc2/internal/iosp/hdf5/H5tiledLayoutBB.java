@@ -7,11 +7,19 @@ package ucar.nc2.internal.iosp.hdf5;
 import com.google.common.base.Preconditions;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import javax.annotation.Nullable;
 import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
@@ -19,7 +27,11 @@ import ucar.nc2.Variable;
 import ucar.nc2.internal.iosp.hdf5.H5objects.Filter;
 import ucar.nc2.iosp.LayoutBB;
 import ucar.nc2.iosp.LayoutBBTiled;
-import ucar.nc2.util.IO;
+import ucar.nc2.iosp.hdf5.H5Filter;
+import ucar.nc2.iosp.hdf5.H5Filters;
+import ucar.nc2.util.SharedExecutor;
+import ucar.unidata.io.ByteRange;
+import ucar.unidata.io.MappedRandomAccessFile;
 import ucar.unidata.io.RandomAccessFile;
 
 /**
@@ -28,29 +40,62 @@ import ucar.unidata.io.RandomAccessFile;
  * Assumes that the data is stored in chunks, indexed by a Btree.
  * Used for filtered data
  * Had to split from old H5tiledLayoutBB because need to use H5headerNew.Vinfo.
+ * <p>
+ * The raw chunk bytes are read ahead of the consumer on the calling thread, and the filters are run on the decode
+ * Executor, so several chunks are decompressed in parallel. Chunks are always delivered to LayoutBBTiled in btree
+ * order. The filters are found in the H5Filters registry; the decoded chunk buffers are pooled within a read.
  * 
  * @author caron
  */
 public class H5tiledLayoutBB implements LayoutBB {
   static boolean debugFilter;
 
-  private static final int DEFAULTZIPBUFFERSIZE = 512;
-  // System property name for -D flag
-  private static final String INFLATEBUFFERSIZE_PROPERTY = "unidata.h5iosp.inflate.buffersize";
   private static boolean debug;
 
+  // Copied from ArrayList.
+  private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
+
+  // limit on the number of bytes read by one readVectored() call, as in IospHelper. Not final so tests can lower it.
+  static int maxBatchBytes = 16 * 1024 * 1024;
+
+  // decode filtered chunks on this pool, sized by the "unidata.h5iosp.decode.threads" system property
+  private static final SharedExecutor decodeExecutor =
+      new SharedExecutor("hdf5-decode", "unidata.h5iosp.decode", Runtime.getRuntime().availableProcessors());
+
+  /**
+   * Set the Executor used to decode filtered chunks, overriding the default pool sized by the
+   * "unidata.h5iosp.decode.threads" system property.
+   *
+   * @param exec decode chunks on this Executor, or null to decode on the calling thread.
+   * @param nprefetch maximum number of chunks read ahead of the consumer, must be > 0.
+   */
+  public static void setDecodeExecutor(@Nullable Executor exec, int nprefetch) {
+    decodeExecutor.set(exec, nprefetch);
+  }
+
+  /** Go back to the default pool sized by the system properties, after setDecodeExecutor(). */
+  public static void resetDecodeExecutor() {
+    decodeExecutor.reset();
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////
+
   private final LayoutBBTiled delegate;
 
   private final RandomAccessFile raf;
   private final Filter[] filters;
+  private final H5Filter[] h5filters; // null if no H5Filter is registered for that filter id
+  private final H5Filter.Context[] contexts;
   private final ByteOrder byteOrder;
 
   private final Section want;
   private final int[] chunkSize; // from the StorageLayout message (exclude the elemSize)
   private final int elemSize; // last dimension of the StorageLayout message
   private final int nChunkDims;
+  private final int chunkBytes; // size in bytes of a decoded chunk
 
-  private int inflatebuffersize = DEFAULTZIPBUFFERSIZE;
+  private final Executor executor;
+  private final ArrayDeque<byte[]> bufferPool = new ArrayDeque<>(); // decoded chunk buffers of length chunkBytes
 
   /**
    * Constructor.
@@ -91,25 +136,26 @@ public class H5tiledLayoutBB implements LayoutBB {
     this.chunkSize = new int[nChunkDims];
     System.arraycopy(vinfo.storageSize, 0, chunkSize, 0, nChunkDims);
     this.elemSize = vinfo.storageSize[vinfo.storageSize.length - 1]; // last one is always the elements size
+    long nbytes = (long) elemSize;
+    for (int size : chunkSize)
+      nbytes *= size;
+    this.chunkBytes = (int) Math.min(nbytes, MAX_ARRAY_LEN);
+
+    this.h5filters = new H5Filter[filters.length];
+    this.contexts = new H5Filter.Context[filters.length];
+    for (int i = 0; i < filters.length; i++) {
+      h5filters[i] = H5Filters.find(filters[i].id);
+      contexts[i] = new FilterContext(filters[i]);
+    }
 
     // create the data chunk iterator
+    this.executor = decodeExecutor.getExecutor();
     DataBTree.DataChunkIterator iter = vinfo.btree.getDataChunkIteratorFilter(this.want);
-    DataChunkIterator dcIter = new DataChunkIterator(iter);
+    DataChunkIterator dcIter = new DataChunkIterator(iter, decodeExecutor.getPrefetch());
     delegate = new LayoutBBTiled(dcIter, chunkSize, elemSize, this.want);
 
-    if (System.getProperty(INFLATEBUFFERSIZE_PROPERTY) != null) {
-      try {
-        int size = Integer.parseInt(System.getProperty(INFLATEBUFFERSIZE_PROPERTY));
-        if (size <= 0)
-          H5iosp.log.warn(String.format("-D%s must be > 0", INFLATEBUFFERSIZE_PROPERTY));
-        else
-          this.inflatebuffersize = size;
-      } catch (NumberFormatException nfe) {
-        H5iosp.log.warn(String.format("-D%s is not an integer", INFLATEBUFFERSIZE_PROPERTY));
-      }
-    }
     if (debugFilter)
-      System.out.printf("inflate buffer size -D%s = %d%n", INFLATEBUFFERSIZE_PROPERTY, this.inflatebuffersize);
+      System.out.printf("decode executor = %s%n", executor);
 
     if (debug)
       System.out.println(" H5tiledLayout: " + this);
@@ -145,27 +191,184 @@ public class H5tiledLayoutBB implements LayoutBB {
     return sbuff.toString();
   }
 
-  private class DataChunkIterator implements LayoutBBTiled.DataChunkIterator {
-    DataBTree.DataChunkIterator delegate;
+  // get a buffer of at least the given length, reusing a decoded chunk buffer if possible
+  private byte[] takeBuffer(int len) {
+    if (len == chunkBytes) {
+      synchronized (bufferPool) {
+        byte[] buff = bufferPool.poll();
+        if (buff != null)
+          return buff;
+      }
+    }
+    return new byte[len];
+  }
+
+  private void releaseBuffer(byte[] buff) {
+    if (buff.length == chunkBytes) {
+      synchronized (bufferPool) {
+        bufferPool.push(buff);
+      }
+    }
+  }
+
+  /** The H5Filter.Context of one filter in the pipeline. Decoded chunk buffers are taken from the pool. */
+  private class FilterContext implements H5Filter.Context {
+    private final int[] clientData;
+
+    FilterContext(Filter filter) {
+      this.clientData = (filter.data == null) ? new int[0] : filter.data;
+    }
+
+    public int[] getClientData() {
+      return clientData;
+    }
+
+    public int getElemSize() {
+      return elemSize;
+    }
 
-    DataChunkIterator(DataBTree.DataChunkIterator delegate) {
+    public int getChunkBytes() {
+      return chunkBytes;
+    }
+
+    public ByteOrder getByteOrder() {
+      return byteOrder;
+    }
+
+    public ByteBuffer allocate(int nbytes) {
+      return ByteBuffer.wrap(takeBuffer(nbytes), 0, nbytes);
+    }
+  }
+
+  private static Error outOfMemory(Throwable e) {
+    Error oom = new OutOfMemoryError("Ran out of memory trying to read HDF5 filtered chunk. Either increase the "
+        + "JVM's heap size (use the -Xmx switch) or reduce the size of the dataset's chunks (use nccopy -c).");
+    oom.initCause(e); // OutOfMemoryError lacks a constructor with a cause parameter.
+    return oom;
+  }
+
+  /**
+   * Reads ahead of LayoutBBTiled, up to prefetch chunks that intersect the wanted section.
+   * The raw bytes of the newly queued chunks are read here with RandomAccessFile.readVectored() calls of no more than
+   * maxBatchBytes each, on the calling thread, since the RandomAccessFile is not thread safe,
+   * except for a MappedRandomAccessFile, whose positional reads are done on the decode executor.
+   */
+  private class DataChunkIterator implements LayoutBBTiled.DataChunkIterator {
+    private final DataBTree.DataChunkIterator delegate;
+    private final int prefetch;
+    private final ArrayDeque<DataChunk> pending = new ArrayDeque<>();
+    private final long wantNelems;
+    private long queuedNelems; // number of wanted elements covered by the chunks read so far
+    private DataChunk current;
+
+    DataChunkIterator(DataBTree.DataChunkIterator delegate, int prefetch) {
       this.delegate = delegate;
+      this.prefetch = prefetch;
+      this.wantNelems = want.computeSize();
     }
 
     public boolean hasNext() {
-      return delegate.hasNext();
+      try {
+        fill();
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      return !pending.isEmpty();
     }
 
     public LayoutBBTiled.DataChunk next() throws IOException {
-      return new DataChunk(delegate.next());
+      // LayoutBBTiled is done with the previous chunk when it asks for the next one
+      if (current != null)
+        current.release();
+      fill();
+      current = pending.poll();
+      if (current == null)
+        throw new NoSuchElementException();
+      return current;
+    }
+
+    private void fill() throws IOException {
+      List<DataChunk> added = new ArrayList<>();
+      // once the chunks cover the wanted section, there is no need to look at the rest of the btree
+      while (pending.size() < prefetch && queuedNelems < wantNelems && delegate.hasNext()) {
+        DataChunk dataChunk = new DataChunk(delegate.next());
+        try {
+          Section dataSection = new Section(dataChunk.getOffset(), chunkSize);
+          if (!dataSection.intersects(want))
+            continue;
+          queuedNelems += dataSection.intersect(want).computeSize();
+        } catch (InvalidRangeException e) {
+          throw new IllegalStateException(e);
+        }
+        pending.add(dataChunk);
+        added.add(dataChunk);
+      }
+      start(added);
+    }
+
+    // read the raw bytes of the chunks, and start decoding them
+    private void start(List<DataChunk> chunks) throws IOException {
+      if (chunks.isEmpty())
+        return;
+      if (raf instanceof MappedRandomAccessFile) {
+        for (DataChunk chunk : chunks)
+          chunk.start();
+        return;
+      }
+      int[] sizes = new int[chunks.size()];
+      for (int i = 0; i < sizes.length; i++)
+        sizes[i] = chunks.get(i).delegate.size;
+      int from = 0;
+      while (from < sizes.length) {
+        int to = batchEnd(sizes, from, maxBatchBytes);
+        start(chunks.subList(from, to), sizes, from);
+        from = to;
+      }
+    }
+
+    // read one batch of chunks with a single readVectored() call
+    private void start(List<DataChunk> batch, int[] sizes, int from) throws IOException {
+      if (batch.size() == 1) {
+        batch.get(0).start();
+        return;
+      }
+      List<ByteRange> ranges = new ArrayList<>(batch.size());
+      for (DataChunk chunk : batch)
+        ranges.add(new ByteRange(chunk.delegate.filePos, chunk.delegate.size));
+      try {
+        byte[] all = raf.readVectored(ranges);
+        int pos = 0;
+        for (int i = 0; i < batch.size(); i++) {
+          // each chunk decodes its own slice of the batch, see decode()
+          batch.get(i).start(ByteBuffer.wrap(all, pos, sizes[from + i]).slice());
+          pos += sizes[from + i];
+        }
+      } catch (OutOfMemoryError e) {
+        throw outOfMemory(e);
+      }
     }
   }
 
-  private class DataChunk implements LayoutBBTiled.DataChunk {
-    // Copied from ArrayList.
-    private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
+  /**
+   * Find the end of the batch of chunks that starts at from: the following chunks, up to a total of maxBytes.
+   * A chunk larger than maxBytes is in a batch by itself.
+   *
+   * @return index of the first chunk after the batch.
+   */
+  static int batchEnd(int[] sizes, int from, int maxBytes) {
+    long total = sizes[from];
+    int end = from + 1;
+    while (end < sizes.length && total + sizes[end] <= maxBytes) {
+      total += sizes[end];
+      end++;
+    }
+    return end;
+  }
 
+  private class DataChunk implements LayoutBBTiled.DataChunk {
     DataBTree.DataChunk delegate;
+    private FutureTask<byte[]> task;
+    private byte[] data;
 
     DataChunk(DataBTree.DataChunk delegate) {
       this.delegate = delegate;
@@ -200,121 +403,106 @@ public class H5tiledLayoutBB implements LayoutBB {
       return offset;
     }
 
-    public ByteBuffer getByteBuffer() throws IOException {
+    // read the raw bytes, and start decoding them on the executor
+    void start() throws IOException {
       try {
-        // read the data
-        byte[] data = new byte[delegate.size];
-        raf.seek(delegate.filePos);
-        raf.readFully(data);
-
-        // apply filters backwards
-        for (int i = filters.length - 1; i >= 0; i--) {
-          Filter f = filters[i];
-          if (isBitSet(delegate.filterMask, i)) {
-            if (debug)
-              System.out.println("skip for chunk " + delegate);
-            continue;
-          }
-          if (f.id == 1) {
-            data = inflate(data);
-          } else if (f.id == 2) {
-            data = shuffle(data, f.data[0]);
-          } else if (f.id == 3) {
-            data = checkfletcher32(data);
-            /*
-             * } else if (f.id == 307) {
-             * data = unbzip2(data);
-             */
-          } else
-            throw new RuntimeException("Unknown filter type=" + f.id);
+        if (raf instanceof MappedRandomAccessFile) {
+          // positional reads are thread safe, so read on the executor too
+          MappedRandomAccessFile mraf = (MappedRandomAccessFile) raf;
+          task = new FutureTask<>(() -> {
+            byte[] raw = new byte[delegate.size];
+            mraf.readFully(delegate.filePos, raw, 0, raw.length);
+            return decode(ByteBuffer.wrap(raw));
+          });
+          if (executor != null)
+            executor.execute(task);
+        } else {
+          byte[] raw = new byte[delegate.size];
+          raf.seek(delegate.filePos);
+          raf.readFully(raw);
+          start(ByteBuffer.wrap(raw));
         }
-
-        ByteBuffer result = ByteBuffer.wrap(data);
-        result.order(byteOrder);
-        return result;
       } catch (OutOfMemoryError e) {
-        Error oom = new OutOfMemoryError("Ran out of memory trying to read HDF5 filtered chunk. Either increase the "
-            + "JVM's heap size (use the -Xmx switch) or reduce the size of the dataset's chunks (use nccopy -c).");
-        oom.initCause(e); // OutOfMemoryError lacks a constructor with a cause parameter.
-        throw oom;
+        throw outOfMemory(e);
       }
     }
 
-    /**
-     * inflate data
-     *
-     * @param compressed compressed data
-     * @return uncompressed data
-     * @throws IOException on I/O error
-     */
-    private byte[] inflate(byte[] compressed) throws IOException {
-      // run it through the Inflator
-      ByteArrayInputStream in = new ByteArrayInputStream(compressed);
-      java.util.zip.Inflater inflater = new java.util.zip.Inflater();
-      java.util.zip.InflaterInputStream inflatestream =
-          new java.util.zip.InflaterInputStream(in, inflater, inflatebuffersize);
-      int len = Math.min(8 * compressed.length, MAX_ARRAY_LEN);
-      ByteArrayOutputStream out = new ByteArrayOutputStream(len); // Fixes KXL-349288
-      IO.copyB(inflatestream, out, len);
-
-      byte[] uncomp = out.toByteArray();
-      if (debug || debugFilter)
-        System.out.println(" inflate bytes in= " + compressed.length + " bytes out= " + uncomp.length);
-      return uncomp;
+    // start decoding raw bytes that have already been read
+    void start(ByteBuffer raw) {
+      task = new FutureTask<>(() -> decode(raw));
+      if (executor != null)
+        executor.execute(task);
     }
 
-    /*
-     * private byte[] unbzip2(byte[] compressed) throws IOException {
-     * int max = 20 * compressed.length;
-     * byte[] buffer = new byte[max];
-     * ByteArrayOutputStream out = new ByteArrayOutputStream(20 * compressed.length);
-     * ByteArrayInputStream in = new ByteArrayInputStream(compressed);
-     * try (org.itadaki.bzip2.BZip2InputStream bzIn = new org.itadaki.bzip2.BZip2InputStream(in, false)) {
-     * int bytesRead;
-     * int totRead = 0;
-     * while ((bytesRead = bzIn.read (buffer)) != -1) {
-     * out.write (buffer, 0, bytesRead) ; // LOOK unneeded copy
-     * totRead += bytesRead;
-     * }
-     * out.close();
-     * //System.out.printf("unbzip2=%d%n", totRead);
-     * } catch (Exception e) {
-     * e.printStackTrace();
-     * }
-     * 
-     * return out.toByteArray();
-     * }
-     */
-
-    // just strip off the 4-byte fletcher32 checksum at the end
-    private byte[] checkfletcher32(byte[] org) {
-      byte[] result = new byte[org.length - 4];
-      System.arraycopy(org, 0, result, 0, result.length);
-      if (debug)
-        System.out.println(" checkfletcher32 bytes in= " + org.length + " bytes out= " + result.length);
+    public ByteBuffer getByteBuffer() throws IOException {
+      if (data == null) {
+        if (task == null)
+          start();
+        task.run(); // no-op if it already ran on the executor
+        try {
+          data = task.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("interrupted decoding chunk " + delegate);
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof IOException)
+            throw (IOException) cause;
+          if (cause instanceof RuntimeException)
+            throw (RuntimeException) cause;
+          if (cause instanceof OutOfMemoryError)
+            throw outOfMemory(cause);
+          if (cause instanceof Error)
+            throw (Error) cause;
+          throw new IOException(cause);
+        }
+      }
+      ByteBuffer result = ByteBuffer.wrap(data);
+      result.order(byteOrder);
       return result;
     }
 
-    private byte[] shuffle(byte[] data, int n) {
-      if (debug)
-        System.out.println(" shuffle bytes in= " + data.length + " n= " + n);
-
-      assert data.length % n == 0;
-      if (n <= 1)
-        return data;
-
-      int m = data.length / n;
-      int[] count = new int[n];
-      for (int k = 0; k < n; k++)
-        count[k] = k * m;
+    void release() {
+      if (data != null)
+        releaseBuffer(data);
+      data = null;
+      task = null;
+    }
 
-      byte[] result = new byte[data.length];
-      for (int i = 0; i < m; i++) {
-        for (int j = 0; j < n; j++) {
-          result[i * n + j] = data[i + count[j]];
+    // apply filters backwards. May run on the decode executor.
+    // raw may be a slice of an array shared with other chunks, which must not go to the buffer pool.
+    private byte[] decode(ByteBuffer raw) throws IOException {
+      byte[] shared = (raw.remaining() == raw.array().length) ? null : raw.array();
+      ByteBuffer data = raw;
+      for (int i = filters.length - 1; i >= 0; i--) {
+        if (isBitSet(delegate.filterMask, i)) {
+          if (debug)
+            System.out.println("skip for chunk " + delegate);
+          continue;
         }
+        H5Filter h5filter = h5filters[i];
+        if (h5filter == null)
+          throw new IOException("Unknown filter type=" + filters[i].id + " in chunk " + delegate);
+        ByteBuffer prev = data;
+        try {
+          data = h5filter.decode(data, contexts[i]);
+        } catch (IOException e) {
+          throw new IOException(String.format("Failed to decode %s filter in chunk %s", h5filter.getName(), delegate),
+              e);
+        }
+        if (debug || debugFilter)
+          System.out.printf(" %s bytes in= %d bytes out= %d%n", h5filter.getName(), prev.remaining(), data.remaining());
+        if (prev.array() != data.array() && prev.array() != shared)
+          releaseBuffer(prev.array());
       }
 
+      byte[] result = data.array();
+      int start = data.arrayOffset() + data.position();
+      if (start == 0 && data.remaining() == result.length)
+        return result;
+      result = Arrays.copyOfRange(result, start, start + data.remaining());
+      if (data.array() != shared)
+        releaseBuffer(data.array());
       return result;
     }
 
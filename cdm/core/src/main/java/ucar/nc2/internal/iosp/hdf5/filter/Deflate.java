@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5.filter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import ucar.nc2.iosp.hdf5.H5Filter;
+
+/** HDF5 filter 1, zlib deflate. Inflaters hold native memory, so they are pooled rather than made for each chunk. */
+public class Deflate implements H5Filter {
+  // Copied from ArrayList.
+  private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
+
+  private static final int MAX_POOLED_INFLATERS = 4 * Runtime.getRuntime().availableProcessors();
+  private static final ConcurrentLinkedQueue<Inflater> inflaterPool = new ConcurrentLinkedQueue<>();
+
+  private static Inflater borrowInflater() {
+    Inflater inflater = inflaterPool.poll();
+    return (inflater != null) ? inflater : new Inflater();
+  }
+
+  private static void returnInflater(Inflater inflater) {
+    inflater.reset();
+    if (inflaterPool.size() < MAX_POOLED_INFLATERS)
+      inflaterPool.offer(inflater);
+    else
+      inflater.end();
+  }
+
+  @Override
+  public int getId() {
+    return 1;
+  }
+
+  @Override
+  public String getName() {
+    return "deflate";
+  }
+
+  @Override
+  public ByteBuffer decode(ByteBuffer in, Context context) throws IOException {
+    // the uncompressed size is usually exactly the chunk size, so we rarely have to grow the buffer
+    byte[] uncomp = context.allocate(context.getChunkBytes()).array();
+    int nbytes = 0;
+    Inflater inflater = borrowInflater();
+    try {
+      inflater.setInput(in.array(), in.arrayOffset() + in.position(), in.remaining());
+      while (!inflater.finished()) {
+        int n;
+        if (nbytes < uncomp.length) {
+          n = inflater.inflate(uncomp, nbytes, uncomp.length - nbytes);
+        } else {
+          // buffer is full; see if there is anything left before growing it
+          byte[] one = new byte[1];
+          n = inflater.inflate(one);
+          if (n > 0) {
+            if (uncomp.length >= MAX_ARRAY_LEN)
+              throw new IOException("Inflated chunk is larger than the maximum array length " + MAX_ARRAY_LEN);
+            uncomp = Arrays.copyOf(uncomp, (int) Math.min(2L * uncomp.length + 1, MAX_ARRAY_LEN));
+            uncomp[nbytes] = one[0];
+          }
+        }
+        if (n == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary()))
+          throw new IOException("Unexpected end of ZLIB input stream");
+        nbytes += n;
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Bad ZLIB data", e);
+    } finally {
+      returnInflater(inflater);
+    }
+
+    ByteBuffer result = ByteBuffer.wrap(uncomp);
+    result.limit(nbytes);
+    return result;
+  }
+
+}
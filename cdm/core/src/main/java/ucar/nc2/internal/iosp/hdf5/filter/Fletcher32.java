@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5.filter;
+
+import java.nio.ByteBuffer;
+import ucar.nc2.iosp.hdf5.H5Filter;
+
+/** HDF5 filter 3, fletcher32 checksum. Just strips off the 4-byte checksum at the end, without checking it. */
+public class Fletcher32 implements H5Filter {
+
+  @Override
+  public int getId() {
+    return 3;
+  }
+
+  @Override
+  public String getName() {
+    return "fletcher32";
+  }
+
+  @Override
+  public ByteBuffer decode(ByteBuffer in, Context context) {
+    in.limit(in.limit() - 4);
+    return in;
+  }
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5.filter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import ucar.nc2.iosp.hdf5.H5Filter;
+
+/**
+ * HDF5 filter 5, nbit. Only the significant bits (precision) of each element are stored, packed MSB first.
+ * A port of the decompression half of H5Znbit.c. The client data describes the datatype:
+ * (nparms, need_not_compress, nelems, class, ...), where the rest depends on the class.
+ */
+public class Nbit implements H5Filter {
+  private static final int ATOMIC = 1;
+  private static final int ARRAY = 2;
+  private static final int COMPOUND = 3;
+  private static final int NOOPTYPE = 4;
+  private static final int ORDER_LE = 0;
+
+  @Override
+  public int getId() {
+    return 5;
+  }
+
+  @Override
+  public String getName() {
+    return "nbit";
+  }
+
+  @Override
+  public ByteBuffer decode(ByteBuffer in, Context context) throws IOException {
+    int[] parms = context.getClientData();
+    if (parms.length < 5 || parms[0] != parms.length)
+      throw new IOException("Bad nbit filter parameters " + Arrays.toString(parms));
+    if (parms[1] != 0) // no need to compress
+      return in;
+
+    int nelems = parms[2];
+    int size = parms[4]; // size of the datatype
+    ByteBuffer out = context.allocate(nelems * size);
+    byte[] data = out.array();
+    Arrays.fill(data, 0, nelems * size, (byte) 0);
+
+    Bits buffer = new Bits(in.array(), in.arrayOffset() + in.position());
+    switch (parms[3]) {
+      case ATOMIC:
+        Atomic p = new Atomic(parms, 4);
+        for (int i = 0; i < nelems; i++)
+          decompressAtomic(data, i * p.size, buffer, p);
+        break;
+      case ARRAY:
+        for (int i = 0; i < nelems; i++)
+          decompressArray(data, i * size, buffer, parms, new int[] {4});
+        break;
+      case COMPOUND:
+        for (int i = 0; i < nelems; i++)
+          decompressCompound(data, i * size, buffer, parms, new int[] {4});
+        break;
+      case NOOPTYPE:
+        for (int i = 0; i < nelems; i++)
+          decompressNooptype(data, i * size, buffer, size);
+        break;
+      default:
+        throw new IOException("Unknown nbit datatype class " + parms[3]);
+    }
+    return out;
+  }
+
+  /** Parameters of an atomic datatype: size, order, precision, offset. */
+  private static class Atomic {
+    final int size, order, precision, offset;
+
+    Atomic(int[] parms, int index) {
+      size = parms[index];
+      order = parms[index + 1];
+      precision = parms[index + 2];
+      offset = parms[index + 3];
+    }
+  }
+
+  /** Position in the packed input, as H5Znbit's (j, buf_len). */
+  private static class Bits {
+    final byte[] buf;
+    int j;
+    int bufLen = 8; // number of bits not yet used in buf[j]
+
+    Bits(byte[] buf, int start) {
+      this.buf = buf;
+      this.j = start;
+    }
+
+    int val() {
+      return buf[j] & 0xff;
+    }
+
+    void nextByte() {
+      j++;
+      bufLen = 8;
+    }
+  }
+
+  private static int mask(int nbits) {
+    return ~(~0 << nbits);
+  }
+
+  private static void decompressOneByte(byte[] data, int dataOffset, int k, int beginI, int endI, Bits buffer,
+      Atomic p, int datatypeLen) {
+    int datLen; // number of bits to be copied into this data byte
+    int ucharOffset = 0;
+    int val = buffer.val();
+
+    if (beginI != endI) { // significant bits occupy more than one byte
+      if (k == beginI) {
+        datLen = 8 - (datatypeLen - p.precision - p.offset) % 8;
+      } else if (k == endI) {
+        datLen = 8 - p.offset % 8;
+        ucharOffset = 8 - datLen;
+      } else {
+        datLen = 8;
+      }
+    } else { // all significant bits in one byte
+      ucharOffset = p.offset % 8;
+      datLen = p.precision;
+    }
+
+    if (buffer.bufLen > datLen) {
+      data[dataOffset + k] = (byte) (((val >>> (buffer.bufLen - datLen)) & mask(datLen)) << ucharOffset);
+      buffer.bufLen -= datLen;
+    } else {
+      int b = ((val & mask(buffer.bufLen)) << (datLen - buffer.bufLen)) << ucharOffset;
+      datLen -= buffer.bufLen;
+      buffer.nextByte();
+      if (datLen > 0) {
+        val = buffer.val();
+        b |= ((val >>> (buffer.bufLen - datLen)) & mask(datLen)) << ucharOffset;
+        buffer.bufLen -= datLen;
+      }
+      data[dataOffset + k] = (byte) b;
+    }
+  }
+
+  private static void decompressAtomic(byte[] data, int dataOffset, Bits buffer, Atomic p) {
+    int datatypeLen = p.size * 8;
+    if (p.order == ORDER_LE) {
+      int bits = p.precision + p.offset;
+      int beginI = (bits % 8 != 0) ? bits / 8 : bits / 8 - 1;
+      int endI = p.offset / 8;
+      for (int k = beginI; k >= endI; k--)
+        decompressOneByte(data, dataOffset, k, beginI, endI, buffer, p, datatypeLen);
+    } else {
+      int beginI = (datatypeLen - p.precision - p.offset) / 8;
+      int endI = (p.offset % 8 != 0) ? (datatypeLen - p.offset) / 8 : (datatypeLen - p.offset) / 8 - 1;
+      for (int k = beginI; k <= endI; k++)
+        decompressOneByte(data, dataOffset, k, beginI, endI, buffer, p, datatypeLen);
+    }
+  }
+
+  private static void decompressNooptype(byte[] data, int dataOffset, Bits buffer, int size) {
+    for (int i = 0; i < size; i++) {
+      int datLen = 8;
+      int val = buffer.val();
+      int b = (val & mask(buffer.bufLen)) << (datLen - buffer.bufLen);
+      datLen -= buffer.bufLen;
+      buffer.nextByte();
+      if (datLen > 0) {
+        val = buffer.val();
+        b |= (val >>> (buffer.bufLen - datLen)) & mask(datLen);
+        buffer.bufLen -= datLen;
+      }
+      data[dataOffset + i] = (byte) b;
+    }
+  }
+
+  // parmsIndex is an in/out parameter
+  private static void decompressArray(byte[] data, int dataOffset, Bits buffer, int[] parms, int[] parmsIndex)
+      throws IOException {
+    int totalSize = parms[parmsIndex[0]++];
+    int baseClass = parms[parmsIndex[0]++];
+    switch (baseClass) {
+      case ATOMIC: {
+        Atomic p = new Atomic(parms, parmsIndex[0]);
+        parmsIndex[0] += 4;
+        int n = totalSize / p.size;
+        for (int i = 0; i < n; i++)
+          decompressAtomic(data, dataOffset + i * p.size, buffer, p);
+        break;
+      }
+      case ARRAY:
+      case COMPOUND: {
+        int baseSize = parms[parmsIndex[0]]; // size of the base type, not consumed
+        int n = totalSize / baseSize;
+        int beginIndex = parmsIndex[0];
+        for (int i = 0; i < n; i++) {
+          if (baseClass == ARRAY)
+            decompressArray(data, dataOffset + i * baseSize, buffer, parms, parmsIndex);
+          else
+            decompressCompound(data, dataOffset + i * baseSize, buffer, parms, parmsIndex);
+          parmsIndex[0] = beginIndex; // as H5Znbit.c does
+        }
+        break;
+      }
+      case NOOPTYPE:
+        parmsIndex[0]++; // skip size of the no-op type
+        decompressNooptype(data, dataOffset, buffer, totalSize);
+        break;
+      default:
+        throw new IOException("Unknown nbit datatype class " + baseClass);
+    }
+  }
+
+  // parmsIndex is an in/out parameter
+  private static void decompressCompound(byte[] data, int dataOffset, Bits buffer, int[] parms, int[] parmsIndex)
+      throws IOException {
+    parmsIndex[0]++; // size of the compound, not needed
+    int nmembers = parms[parmsIndex[0]++];
+    for (int i = 0; i < nmembers; i++) {
+      int memberOffset = parms[parmsIndex[0]++];
+      int memberClass = parms[parmsIndex[0]++];
+      switch (memberClass) {
+        case ATOMIC: {
+          Atomic p = new Atomic(parms, parmsIndex[0]);
+          parmsIndex[0] += 4;
+          decompressAtomic(data, dataOffset + memberOffset, buffer, p);
+          break;
+        }
+        case ARRAY:
+          decompressArray(data, dataOffset + memberOffset, buffer, parms, parmsIndex);
+          break;
+        case COMPOUND:
+          decompressCompound(data, dataOffset + memberOffset, buffer, parms, parmsIndex);
+          break;
+        case NOOPTYPE:
+          decompressNooptype(data, dataOffset + memberOffset, buffer, parms[parmsIndex[0]++]);
+          break;
+        default:
+          throw new IOException("Unknown nbit datatype class " + memberClass);
+      }
+    }
+  }
+
+}
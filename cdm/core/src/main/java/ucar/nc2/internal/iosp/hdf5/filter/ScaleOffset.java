@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5.filter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import ucar.nc2.iosp.hdf5.H5Filter;
+
+/**
+ * HDF5 filter 6, scale-offset. Each element is stored as (value - minval) in minbits bits, packed MSB first.
+ * Floating point values are first scaled by 10^D and rounded (the "D-scale" method).
+ * A port of the decompression half of H5Zscaleoffset.c.
+ * <p>
+ * The client data is (scale_type, scale_factor, nelems, class, size, sign, order, filavail, fill value...).
+ * The chunk starts with minbits (4 bytes), the size of minval (1 byte) and minval (16 bytes), all little endian.
+ */
+public class ScaleOffset implements H5Filter {
+  private static final int PARM_SCALETYPE = 0;
+  private static final int PARM_SCALEFACTOR = 1;
+  private static final int PARM_NELMTS = 2;
+  private static final int PARM_CLASS = 3;
+  private static final int PARM_SIZE = 4;
+  private static final int PARM_ORDER = 6;
+  private static final int PARM_FILAVAIL = 7;
+  private static final int PARM_FILVAL = 8;
+
+  private static final int CLS_INTEGER = 0;
+  private static final int CLS_FLOAT = 1;
+  private static final int FLOAT_DSCALE = 0;
+  private static final int ORDER_LE = 0;
+  private static final int FILL_DEFINED = 1;
+  private static final int BUFFER_OFFSET = 21;
+
+  @Override
+  public int getId() {
+    return 6;
+  }
+
+  @Override
+  public String getName() {
+    return "scaleoffset";
+  }
+
+  @Override
+  public ByteBuffer decode(ByteBuffer in, Context context) throws IOException {
+    int[] parms = context.getClientData();
+    if (parms.length < PARM_FILVAL)
+      throw new IOException("Bad scaleoffset filter parameters " + Arrays.toString(parms));
+    int nelems = parms[PARM_NELMTS];
+    int size = parms[PARM_SIZE];
+    int dtypeClass = parms[PARM_CLASS];
+    boolean littleEndian = parms[PARM_ORDER] == ORDER_LE;
+    boolean fillDefined = parms[PARM_FILAVAIL] == FILL_DEFINED;
+    if (size != 1 && size != 2 && size != 4 && size != 8)
+      throw new IOException("Unsupported scaleoffset datatype size " + size);
+    if (dtypeClass == CLS_FLOAT && parms[PARM_SCALETYPE] != FLOAT_DSCALE)
+      throw new IOException("Unsupported scaleoffset scale type " + parms[PARM_SCALETYPE]);
+
+    byte[] src = in.array();
+    int start = in.arrayOffset() + in.position();
+    int minbits = (int) readLE(src, start, 4);
+    int minvalSize = Math.min(8, src[start + 4] & 0xff);
+    long minval = readLE(src, start + 5, minvalSize);
+    int nbits = size * 8;
+    if (minbits < 0 || minbits > nbits)
+      throw new IOException("Bad scaleoffset minbits " + minbits);
+
+    ByteBuffer out = context.allocate(nelems * size);
+    byte[] data = out.array();
+
+    if (minbits == nbits) {
+      // full precision: the values were stored unchanged, in the (little endian) byte order of the writer
+      System.arraycopy(src, start + BUFFER_OFFSET, data, 0, nelems * size);
+      if (!littleEndian)
+        swap(data, nelems, size);
+      return out;
+    }
+
+    long fillBits = readFillValue(parms, size);
+    long fillCode = (minbits == 0) ? 0 : (1L << minbits) - 1;
+    double scale = Math.pow(10.0, parms[PARM_SCALEFACTOR]);
+    float floatMin = Float.intBitsToFloat((int) minval);
+    double doubleMin = Double.longBitsToDouble(minval);
+    float floatScale = (float) scale;
+
+    long bitPos = 8L * (start + BUFFER_OFFSET);
+    for (int i = 0; i < nelems; i++) {
+      long v = (minbits == 0) ? 0 : readBits(src, bitPos, minbits);
+      bitPos += minbits;
+
+      long result;
+      if (fillDefined && minbits != 0 && v == fillCode) {
+        result = fillBits;
+      } else if (dtypeClass == CLS_INTEGER) {
+        result = v + minval; // signed or not, this wraps to the datatype size when written
+      } else if (size == 4) {
+        result = Float.floatToRawIntBits((float) v / floatScale + floatMin);
+      } else {
+        result = Double.doubleToRawLongBits((double) v / scale + doubleMin);
+      }
+      writeValue(data, i * size, size, result, littleEndian);
+    }
+    return out;
+  }
+
+  // the fill value was copied byte for byte into the unsigned ints of the client data
+  private static long readFillValue(int[] parms, int size) {
+    long fill = 0;
+    for (int i = 0; i < size; i++) {
+      int parmIndex = PARM_FILVAL + i / 4;
+      if (parmIndex >= parms.length)
+        break;
+      long b = (parms[parmIndex] >>> (8 * (i % 4))) & 0xff;
+      fill |= b << (8 * i);
+    }
+    return fill;
+  }
+
+  private static long readLE(byte[] src, int start, int nbytes) {
+    long result = 0;
+    for (int i = 0; i < nbytes; i++)
+      result |= (src[start + i] & 0xffL) << (8 * i);
+    return result;
+  }
+
+  // read nbits <= 64 starting at the given bit position, MSB first
+  private static long readBits(byte[] src, long bitPos, int nbits) {
+    long result = 0;
+    int byteIndex = (int) (bitPos >>> 3);
+    int bitOffset = (int) (bitPos & 7);
+    int remaining = nbits;
+    while (remaining > 0) {
+      int avail = 8 - bitOffset;
+      int take = Math.min(avail, remaining);
+      int b = (src[byteIndex] & 0xff) >>> (avail - take);
+      result = (result << take) | (b & ((1 << take) - 1));
+      remaining -= take;
+      bitOffset = 0;
+      byteIndex++;
+    }
+    return result;
+  }
+
+  private static void writeValue(byte[] data, int offset, int size, long value, boolean littleEndian) {
+    for (int b = 0; b < size; b++) {
+      int shift = littleEndian ? 8 * b : 8 * (size - 1 - b);
+      data[offset + b] = (byte) (value >>> shift);
+    }
+  }
+
+  private static void swap(byte[] data, int nelems, int size) {
+    for (int i = 0; i < nelems; i++) {
+      int offset = i * size;
+      for (int b = 0; b < size / 2; b++) {
+        byte tmp = data[offset + b];
+        data[offset + b] = data[offset + size - 1 - b];
+        data[offset + size - 1 - b] = tmp;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5.filter;
+
+import java.nio.ByteBuffer;
+import ucar.nc2.iosp.hdf5.H5Filter;
+
+/**
+ * HDF5 filter 2, byte shuffle. The client data is the element size n; the i-th bytes of all the elements are stored
+ * together. Leftover bytes at the end, if the chunk is not a multiple of n, are not shuffled.
+ */
+public class Shuffle implements H5Filter {
+
+  @Override
+  public int getId() {
+    return 2;
+  }
+
+  @Override
+  public String getName() {
+    return "shuffle";
+  }
+
+  @Override
+  public ByteBuffer decode(ByteBuffer in, Context context) {
+    int[] clientData = context.getClientData();
+    int n = (clientData.length > 0) ? clientData[0] : context.getElemSize();
+    if (n <= 1)
+      return in;
+
+    int len = in.remaining();
+    byte[] data = in.array();
+    int start = in.arrayOffset() + in.position();
+    ByteBuffer out = context.allocate(len);
+    byte[] result = out.array();
+
+    int m = len / n;
+    for (int j = 0; j < n; j++) {
+      // each source run is contiguous, write with stride n
+      int src = start + j * m;
+      for (int i = 0, dest = j; i < m; i++, dest += n) {
+        result[dest] = data[src + i];
+      }
+    }
+    int leftover = len - m * n;
+    if (leftover > 0)
+      System.arraycopy(data, start + m * n, result, m * n, leftover);
+    return out;
+  }
+
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5.filter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import ucar.nc2.iosp.hdf5.H5Filter;
+
+/**
+ * HDF5 filter 4, szip. A pure java decoder of the CCSDS 121.0 Adaptive Entropy Coding used by szip and libaec,
+ * following the szip compatibility layer of libaec.
+ * <p>
+ * The client data is (options_mask, pixels_per_block, bits_per_pixel, pixels_per_scanline).
+ * The chunk starts with the decoded size as a 4 byte little endian int, followed by the AEC coded stream.
+ *
+ * @see "https://public.ccsds.org/Pubs/121x0b2ec1.pdf"
+ * @see "https://gitlab.dkrz.de/k202009/libaec"
+ */
+public class Szip implements H5Filter {
+  private static final int SZ_MSB_OPTION_MASK = 16;
+  private static final int SZ_NN_OPTION_MASK = 32;
+  private static final int ROS = 5; // a zero block count meaning "remainder of segment"
+
+  @Override
+  public int getId() {
+    return 4;
+  }
+
+  @Override
+  public String getName() {
+    return "szip";
+  }
+
+  @Override
+  public ByteBuffer decode(ByteBuffer in, Context context) throws IOException {
+    int[] clientData = context.getClientData();
+    if (clientData.length < 4)
+      throw new IOException("szip filter needs 4 parameters, has " + clientData.length);
+    int options = clientData[0];
+    int pixelsPerBlock = clientData[1];
+    int bitsPerPixel = clientData[2];
+    int pixelsPerScanline = clientData[3];
+    if (pixelsPerBlock <= 0 || pixelsPerScanline <= 0 || bitsPerPixel <= 0 || bitsPerPixel > 64)
+      throw new IOException(String.format("Bad szip parameters ppb=%d bpp=%d pps=%d", pixelsPerBlock, bitsPerPixel,
+          pixelsPerScanline));
+
+    int start = in.arrayOffset() + in.position();
+    byte[] src = in.array();
+    int destLen = (src[start] & 0xff) | (src[start + 1] & 0xff) << 8 | (src[start + 2] & 0xff) << 16
+        | (src[start + 3] & 0xff) << 24;
+    if (destLen < 0)
+      throw new IOException("Bad szip decoded size " + destLen);
+
+    // 32 and 64 bit pixels are coded as interleaved bytes
+    boolean deinterleave = (bitsPerPixel == 32 || bitsPerPixel == 64);
+    int bitsPerSample = deinterleave ? 8 : bitsPerPixel;
+    int pixelSize = bitsToBytes(bitsPerSample);
+    boolean msb = (options & SZ_MSB_OPTION_MASK) != 0;
+    boolean preprocess = (options & SZ_NN_OPTION_MASK) != 0;
+    int rsi = (pixelsPerScanline + pixelsPerBlock - 1) / pixelsPerBlock;
+    int padScanline = pixelsPerScanline % pixelsPerBlock;
+
+    // each scanline is coded as one reference sample interval, padded to a whole number of blocks
+    int nsamples;
+    if (padScanline != 0 || deinterleave) {
+      long scanlines = ((long) destLen / pixelSize + pixelsPerScanline - 1) / pixelsPerScanline;
+      nsamples = (int) (scanlines * rsi * pixelsPerBlock);
+    } else {
+      nsamples = destLen / pixelSize;
+    }
+
+    AecDecoder aec = new AecDecoder(src, start + 4, in.arrayOffset() + in.limit(), bitsPerSample, pixelsPerBlock, rsi,
+        preprocess);
+    byte[] decoded = new byte[nsamples * pixelSize];
+    int scanlineBytes = pixelsPerScanline * pixelSize;
+    int rsiBytes = rsi * pixelsPerBlock * pixelSize;
+    int pos = 0;
+    while (pos < decoded.length) {
+      int n = aec.decodeRsi(nsamples - pos / pixelSize);
+      if (n == 0)
+        break;
+      pos = aec.writeSamples(n, decoded, pos, pixelSize, msb);
+    }
+
+    ByteBuffer out = context.allocate(destLen);
+    byte[] result = out.array();
+    if (padScanline != 0) {
+      // remove the padding at the end of each scanline
+      byte[] unpadded = deinterleave ? new byte[destLen] : result;
+      for (int from = 0, to = 0; to < destLen; from += rsiBytes, to += scanlineBytes) {
+        System.arraycopy(decoded, from, unpadded, to, Math.min(scanlineBytes, destLen - to));
+      }
+      decoded = unpadded;
+    }
+    if (deinterleave) {
+      deinterleave(decoded, result, destLen, bitsPerPixel / 8);
+    } else if (padScanline == 0) {
+      System.arraycopy(decoded, 0, result, 0, Math.min(destLen, decoded.length));
+    }
+    return out;
+  }
+
+  private static int bitsToBytes(int bits) {
+    if (bits > 16)
+      return 4;
+    if (bits > 8)
+      return 2;
+    return 1;
+  }
+
+  // the bytes of each wordSize element were coded as wordSize separate streams
+  private static void deinterleave(byte[] src, byte[] dest, int len, int wordSize) {
+    int nwords = len / wordSize;
+    for (int i = 0; i < nwords; i++) {
+      for (int j = 0; j < wordSize; j++) {
+        dest[i * wordSize + j] = src[j * nwords + i];
+      }
+    }
+  }
+
+  /** Decodes one reference sample interval at a time. */
+  static class AecDecoder {
+    private final BitInput bits;
+    private final int bitsPerSample;
+    private final int blockSize;
+    private final int rsi;
+    private final boolean preprocess;
+    private final int idLen;
+    private final long xmax;
+    private final int[] samples;
+
+    AecDecoder(byte[] buf, int start, int end, int bitsPerSample, int blockSize, int rsi, boolean preprocess) {
+      this.bits = new BitInput(buf, start, end);
+      this.bitsPerSample = bitsPerSample;
+      this.blockSize = blockSize;
+      this.rsi = rsi;
+      this.preprocess = preprocess;
+      if (bitsPerSample > 16)
+        idLen = 5;
+      else if (bitsPerSample > 8)
+        idLen = 4;
+      else
+        idLen = 3;
+      this.xmax = (1L << bitsPerSample) - 1;
+      this.samples = new int[rsi * blockSize];
+    }
+
+    /**
+     * Decode the next reference sample interval into samples[].
+     *
+     * @param want stop after the block that gets at least this many samples
+     * @return number of samples decoded, 0 when the input is exhausted.
+     */
+    int decodeRsi(int want) throws IOException {
+      int n = 0;
+      int blocks = 0;
+      while (blocks < rsi && n < want && !bits.isExhausted()) {
+        boolean ref = preprocess && (blocks == 0);
+        int id = bits.get(idLen);
+
+        if (id == 0) { // low entropy
+          boolean secondExtension = bits.get(1) == 1;
+          if (ref)
+            samples[n++] = bits.get(bitsPerSample);
+
+          if (secondExtension) {
+            int i = ref ? 1 : 0;
+            while (i < blockSize) {
+              int m = bits.fs();
+              int sum = 0;
+              while ((sum + 1) * (sum + 2) / 2 <= m)
+                sum++;
+              int d1 = m - sum * (sum + 1) / 2;
+              if ((i & 1) == 0) {
+                samples[n++] = sum - d1;
+                i++;
+              }
+              samples[n++] = d1;
+              i++;
+            }
+            blocks++;
+
+          } else { // run of zero blocks
+            int zeroBlocks = bits.fs() + 1;
+            if (zeroBlocks == ROS) {
+              int b = n / blockSize;
+              zeroBlocks = Math.min(rsi - b, 64 - (b % 64));
+            } else if (zeroBlocks > ROS) {
+              zeroBlocks--;
+            }
+            int nzeros = Math.min(zeroBlocks * blockSize - (ref ? 1 : 0), samples.length - n);
+            for (int i = 0; i < nzeros; i++)
+              samples[n++] = 0;
+            blocks += zeroBlocks;
+          }
+
+        } else if (id == (1 << idLen) - 1) { // uncompressed; the first sample is the reference, if any
+          for (int i = 0; i < blockSize; i++)
+            samples[n++] = bits.get(bitsPerSample);
+          blocks++;
+
+        } else { // split sample: the fundamental sequences for the block, then the k low bits of each sample
+          int k = id - 1;
+          if (ref)
+            samples[n++] = bits.get(bitsPerSample);
+          int count = blockSize - (ref ? 1 : 0);
+          for (int i = 0; i < count; i++)
+            samples[n + i] = bits.fs() << k;
+          if (k > 0) {
+            for (int i = 0; i < count; i++)
+              samples[n + i] |= bits.get(k);
+          }
+          n += count;
+          blocks++;
+        }
+      }
+
+      if (preprocess && n > 0)
+        postprocess(n);
+      return n;
+    }
+
+    // invert the unit delay predictor mapping, for unsigned samples
+    private void postprocess(int n) {
+      long x = samples[0] & 0xffffffffL;
+      for (int i = 1; i < n; i++) {
+        long d = samples[i] & 0xffffffffL;
+        long theta = Math.min(x, xmax - x);
+        if (d <= 2 * theta) {
+          if ((d & 1) != 0)
+            x -= (d + 1) >> 1;
+          else
+            x += d >> 1;
+        } else if (theta == x) {
+          x = d;
+        } else {
+          x = xmax - d;
+        }
+        samples[i] = (int) x;
+      }
+    }
+
+    int writeSamples(int n, byte[] dest, int pos, int pixelSize, boolean msb) {
+      for (int i = 0; i < n && pos + pixelSize <= dest.length; i++) {
+        int x = samples[i];
+        for (int b = 0; b < pixelSize; b++) {
+          int shift = msb ? 8 * (pixelSize - 1 - b) : 8 * b;
+          dest[pos++] = (byte) (x >>> shift);
+        }
+      }
+      return pos;
+    }
+  }
+
+  /** Reads bits MSB first. Past the end of the buffer it returns zeros. */
+  static class BitInput {
+    private final byte[] buf;
+    private final int end;
+    private int pos;
+    private long acc;
+    private int nbits;
+
+    BitInput(byte[] buf, int start, int end) {
+      this.buf = buf;
+      this.pos = start;
+      this.end = end;
+    }
+
+    boolean isExhausted() {
+      return pos >= end && nbits == 0;
+    }
+
+    /** Read an unsigned value of n <= 32 bits. */
+    int get(int n) {
+      while (nbits < n) {
+        acc = (acc << 8) | ((pos < end) ? (buf[pos] & 0xff) : 0);
+        pos++;
+        nbits += 8;
+      }
+      nbits -= n;
+      return (int) ((acc >>> nbits) & ((1L << n) - 1));
+    }
+
+    /** Read a fundamental sequence: the number of zero bits before the next one bit. */
+    int fs() throws IOException {
+      int count = 0;
+      while (get(1) == 0) {
+        count++;
+        if (pos > end + 8)
+          throw new IOException("szip data ended inside a fundamental sequence");
+      }
+      return count;
+    }
+  }
+
+}
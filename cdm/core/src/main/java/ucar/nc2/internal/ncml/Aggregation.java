@@ -3,6 +3,8 @@
  */
 package ucar.nc2.internal.ncml;
 
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.jdom2.Element;
 import thredds.filesystem.MFileOS;
 import thredds.filesystem.MFileOS7;
@@ -14,14 +16,26 @@ import ucar.nc2.Group;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.Variable;
 import ucar.nc2.dataset.NetcdfDataset;
+import ucar.nc2.dataset.NetcdfDatasets;
+import ucar.nc2.internal.cache.FileCacheIF;
 import ucar.nc2.util.CancelTask;
 import ucar.nc2.internal.util.DiskCache2;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Superclass for NcML Aggregation Builder.
@@ -56,13 +70,26 @@ public abstract class Aggregation {
     // cache else clobber ncml 7/31/2014
   }
 
-  // experimental multithreading
+  // if set, all aggregations read their component datasets with this, instead of their own executor
   protected static Executor executor;
 
   public static void setExecutor(Executor exec) {
     executor = exec;
   }
 
+  private static int defaultParallelism = 1;
+
+  /**
+   * Set the default number of component datasets that an aggregation reads at the same time.
+   * Each concurrent read holds one file open, so this should be well below the limits of the NetcdfFile cache.
+   *
+   * @param nthreads maximum number of concurrent reads; 1 (the default) reads the datasets one at a time.
+   */
+  public static void setDefaultParallelism(int nthreads) {
+    Preconditions.checkArgument(nthreads > 0, "parallelism must be > 0");
+    defaultParallelism = nthreads;
+  }
+
   public static void setTypicalDatasetMode(String mode) {
     if (mode.equalsIgnoreCase("random"))
       typicalDatasetMode = TypicalDataset.RANDOM;
@@ -99,6 +126,9 @@ public abstract class Aggregation {
 
   Element ncmlElem;
 
+  private int parallelism = defaultParallelism; // number of datasets read at the same time
+  private ThreadPoolExecutor datasetExecutor; // created when first needed, shutdown on close()
+
   // experimental
   protected String dateFormatMark;
   // protected EnumSet<NetcdfDataset.Enhance> enhance = null; // default no enhancement
@@ -206,10 +236,140 @@ public abstract class Aggregation {
     return ncDataset.location;
   }
 
+  /**
+   * Set the number of component datasets that this aggregation reads at the same time.
+   *
+   * @param nthreads maximum number of concurrent reads; 1 reads the datasets one at a time.
+   */
+  public synchronized void setParallelism(int nthreads) {
+    Preconditions.checkArgument(nthreads > 0, "parallelism must be > 0");
+    this.parallelism = nthreads;
+    if (datasetExecutor != null) { // remade with the new number of threads
+      datasetExecutor.shutdown();
+      datasetExecutor = null;
+    }
+  }
+
+  /** The number of component datasets that this aggregation reads at the same time. */
+  public int getParallelism() {
+    return parallelism;
+  }
+
   /////////////////////////////////////////////////////////////////////
 
   public void close() throws IOException {
     persistWrite();
+    synchronized (this) {
+      if (datasetExecutor != null) {
+        datasetExecutor.shutdown();
+        datasetExecutor = null;
+      }
+    }
+  }
+
+  /** Something done to each component dataset, that may be done concurrently. */
+  protected interface DatasetTask<T> {
+    /** Return the result for this dataset, or null if there is none. */
+    @Nullable
+    T call(AggDataset dataset) throws Exception;
+  }
+
+  /**
+   * Run the task on each of the datasets. If the parallelism is greater than one, up to that many datasets are
+   * done at the same time, but never more than the NetcdfFile cache holds open.
+   *
+   * @param datasets the component datasets
+   * @param cancelTask checked between datasets; no new ones are started once it is cancelled.
+   * @param task called on each dataset
+   * @return results in the same order as the datasets, or null if cancelled.
+   * @throws IOException if any of the tasks fails; the others are cancelled.
+   */
+  @Nullable
+  protected <T> List<T> readDatasets(List<AggDataset> datasets, @Nullable CancelTask cancelTask, DatasetTask<T> task)
+      throws IOException {
+    int n = datasets.size();
+    // a shared executor bounds the concurrency itself, unless a parallelism is set
+    int nthreads = (executor != null && parallelism == 1) ? n : Math.min(n, parallelism);
+    // leave room in the cache for files opened by other readers
+    FileCacheIF fileCache = NetcdfDatasets.getNetcdfFileCache();
+    if (fileCache != null && fileCache.getMaxFiles() > 0) {
+      nthreads = Math.min(nthreads, Math.max(1, fileCache.getMaxFiles() / 2));
+    }
+
+    List<T> results = new ArrayList<>(n);
+    if (n == 0 || (nthreads <= 1 && executor == null)) {
+      for (AggDataset dataset : datasets) {
+        try {
+          results.add(task.call(dataset));
+        } catch (IOException | RuntimeException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new IOException(e.getMessage(), e);
+        }
+        if (cancelTask != null && cancelTask.isCancel())
+          return null;
+      }
+      return results;
+    }
+
+    // keep no more than nthreads in flight, even if the executor is shared with others
+    CompletionService<Integer> completionService = new ExecutorCompletionService<>(getDatasetExecutor());
+    List<Future<Integer>> futures = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      results.add(null);
+    }
+    try {
+      int next = 0;
+      for (; next < nthreads; next++) {
+        futures.add(submit(completionService, datasets, next, task, results));
+      }
+      for (int done = 0; done < n; done++) {
+        completionService.take().get();
+        if (cancelTask != null && cancelTask.isCancel())
+          return null;
+        if (next < n) {
+          futures.add(submit(completionService, datasets, next++, task, results));
+        }
+      }
+      return results;
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted reading " + getLocation());
+
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      throw new IOException(cause.getMessage(), cause);
+
+    } finally {
+      for (Future<Integer> future : futures) {
+        future.cancel(false); // no-op if done
+      }
+    }
+  }
+
+  private static <T> Future<Integer> submit(CompletionService<Integer> completionService, List<AggDataset> datasets,
+      int index, DatasetTask<T> task, List<T> results) {
+    return completionService.submit(() -> {
+      results.set(index, task.call(datasets.get(index))); // visible to the caller after take()
+      return index;
+    });
+  }
+
+  private synchronized Executor getDatasetExecutor() {
+    if (executor != null)
+      return executor;
+    if (datasetExecutor == null) {
+      ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("Aggregation-%d").setDaemon(true).build();
+      datasetExecutor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(), threadFactory);
+      datasetExecutor.allowCoreThreadTimeOut(true);
+    }
+    return datasetExecutor;
   }
 
   /**
@@ -11,10 +11,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CompletionService;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ConcurrentHashMap;
 import thredds.inventory.MFile;
 import ucar.ma2.Array;
 import ucar.ma2.DataType;
@@ -146,6 +143,9 @@ abstract class AggregationOuter extends Aggregation implements ProxyReader {
       }
     }
 
+    // open the datasets that dont know their number of coordinates
+    readDatasets(nestedDatasets, cancelTask, nested -> ((AggDatasetOuter) nested).getNcoords(cancelTask));
+
     totalCoords = 0;
     for (AggDataset nested : nestedDatasets) {
       AggDatasetOuter dod = (AggDatasetOuter) nested;
@@ -163,55 +163,63 @@ abstract class AggregationOuter extends Aggregation implements ProxyReader {
     Calendar calendarToCheck;
     CalendarDateUnit calendarDateUnit;
 
-    // make concurrent
-    for (AggDataset dataset : getDatasets()) {
+    List<AggDataset> nestedDatasets = getDatasets();
+    List<TimeCoords> timeCoordsList = readDatasets(nestedDatasets, cancelTask, dataset -> {
       try (NetcdfFile ncfile = dataset.acquireFile(cancelTask)) {
         // LOOK was Variable v = ncfile.findVariable(timeAxis.getFullNameEscaped());
         Variable v = ncfile.findVariable(timeAxis.shortName);
         if (v == null) {
-          logger.warn(
-              "readTimeCoordinates: variable = " + timeAxis.shortName + " not found in file " + dataset.getLocation());
-          return;
+          return null;
         }
         VariableDS vds =
             (v instanceof VariableDS) ? (VariableDS) v : VariableDS.fromVar(ncfile.getRootGroup(), v, true);
         // LOOK was CoordinateAxis1DTime timeCoordVar = CoordinateAxis1DTime.factory(ncDataset, vds, null);
         CoordinateAxis1DTime timeCoordVar = CoordinateAxis1DTime.factory(null, vds, null);
-        dateList.addAll(timeCoordVar.getCalendarDates());
-
-        // if timeUnits is null, then that is our signal in the code that
-        // we are on the first file of the aggregation
-        if (timeUnits == null) {
-          timeUnits = v.getUnitsString();
-          // time units might be null. Check before moving on, and, if so, throw runtime error
-          if (timeUnits != null) {
-            calendar = timeCoordVar.getCalendarFromAttribute();
-          } else {
-            String msg = String.format("Time coordinate %s must have a non-null unit attribute.", timeAxis.shortName);
-            logger.error(msg);
-            throw new UnsupportedOperationException(msg);
-          }
-        } else {
-          // Aggregation only makes sense if all files use the same calendar.
-          // This block does take into account the same calendar might have
-          // different names (i.e. "all_leap" and "366_day" are the same calendar)
-          // and we will allow that in the aggregation.
-          // If first file in the aggregation was not defined, it also must be
-          // not defined in the other files.
-          calendarToCheck = timeCoordVar.getCalendarFromAttribute();
-          if (!calendarsEquivalent(calendar, calendarToCheck)) {
-            String msg = String.format(
-                "Inequivalent calendars found across the aggregation: calendar %s is not equivalent to %s.", calendar,
-                calendarToCheck);
-            logger.error(msg);
-            throw new UnsupportedOperationException(msg);
-          }
-        }
+        return new TimeCoords(timeCoordVar.getCalendarDates(), v.getUnitsString(),
+            timeCoordVar.getCalendarFromAttribute());
       }
+    });
+    if (timeCoordsList == null) {
+      return; // cancelled
+    }
 
-      if (cancelTask != null && cancelTask.isCancel()) {
+    for (int i = 0; i < nestedDatasets.size(); i++) {
+      TimeCoords timeCoords = timeCoordsList.get(i);
+      if (timeCoords == null) {
+        logger.warn("readTimeCoordinates: variable = " + timeAxis.shortName + " not found in file "
+            + nestedDatasets.get(i).getLocation());
         return;
       }
+      dateList.addAll(timeCoords.dates);
+
+      // if timeUnits is null, then that is our signal in the code that
+      // we are on the first file of the aggregation
+      if (timeUnits == null) {
+        timeUnits = timeCoords.units;
+        // time units might be null. Check before moving on, and, if so, throw runtime error
+        if (timeUnits != null) {
+          calendar = timeCoords.calendar;
+        } else {
+          String msg = String.format("Time coordinate %s must have a non-null unit attribute.", timeAxis.shortName);
+          logger.error(msg);
+          throw new UnsupportedOperationException(msg);
+        }
+      } else {
+        // Aggregation only makes sense if all files use the same calendar.
+        // This block does take into account the same calendar might have
+        // different names (i.e. "all_leap" and "366_day" are the same calendar)
+        // and we will allow that in the aggregation.
+        // If first file in the aggregation was not defined, it also must be
+        // not defined in the other files.
+        calendarToCheck = timeCoords.calendar;
+        if (!calendarsEquivalent(calendar, calendarToCheck)) {
+          String msg = String.format(
+              "Inequivalent calendars found across the aggregation: calendar %s is not equivalent to %s.", calendar,
+              calendarToCheck);
+          logger.error(msg);
+          throw new UnsupportedOperationException(msg);
+        }
+      }
     }
 
     // int[] shape = timeAxis.getShapeAsSection().getShape();
@@ -248,6 +256,19 @@ abstract class AggregationOuter extends Aggregation implements ProxyReader {
     timeAxis.setSourceData(timeCoordVals);
   }
 
+  // the time coordinates of one dataset
+  private static class TimeCoords {
+    final List<CalendarDate> dates;
+    final String units;
+    final Calendar calendar;
+
+    TimeCoords(List<CalendarDate> dates, String units, Calendar calendar) {
+      this.dates = dates;
+      this.units = units;
+      this.calendar = calendar;
+    }
+  }
+
   // Check if two calendars are equivalent, while allowing one or both to be null.
   // in this case, two null calendars are considered equivalent
   private boolean calendarsEquivalent(Calendar a, Calendar b) {
@@ -387,30 +408,36 @@ abstract class AggregationOuter extends Aggregation implements ProxyReader {
 
     List<Range> ranges = section.getRanges();
     Range joinRange = section.getRange(0);
-    List<Range> nestedSection = new ArrayList<>(ranges); // get copy
     List<Range> innerSection = ranges.subList(1, ranges.size());
 
     if (debug)
       System.out.println("   agg wants range=" + mainv.getFullName() + "(" + joinRange + ")");
 
-    // LOOK: could multithread here
-    List<AggDataset> nestedDatasets = getDatasets();
-    for (AggDataset nested : nestedDatasets) {
-      AggDatasetOuter dod = (AggDatasetOuter) nested;
-      Range nestedJoinRange = dod.getNestedJoinRange(joinRange);
-      if (nestedJoinRange == null)
-        continue;
+    // the datasets that overlap the section
+    List<AggDataset> wantDatasets = new ArrayList<>();
+    Map<AggDataset, Range> nestedJoinRanges = new HashMap<>();
+    for (AggDataset nested : getDatasets()) {
+      Range nestedJoinRange = ((AggDatasetOuter) nested).getNestedJoinRange(joinRange);
+      if (nestedJoinRange != null) {
+        wantDatasets.add(nested);
+        nestedJoinRanges.put(nested, nestedJoinRange);
+      }
+    }
 
-      Array varData;
+    List<Array> dataList = readDatasets(wantDatasets, cancelTask, nested -> {
+      AggDatasetOuter dod = (AggDatasetOuter) nested;
       if ((type == Type.joinNew) || (type == Type.forecastModelRunCollection)) {
-        varData = dod.read(mainv, cancelTask, innerSection);
+        return dod.read(mainv, cancelTask, innerSection);
       } else {
-        nestedSection.set(0, nestedJoinRange);
-        varData = dod.read(mainv, cancelTask, nestedSection);
+        List<Range> nestedSection = new ArrayList<>(ranges); // get copy
+        nestedSection.set(0, nestedJoinRanges.get(nested));
+        return dod.read(mainv, cancelTask, nestedSection);
       }
+    });
+    if (dataList == null || ((cancelTask != null) && cancelTask.isCancel()))
+      return null;
 
-      if ((cancelTask != null) && cancelTask.isCancel())
-        return null;
+    for (Array varData : dataList) {
       varData = MAMath.convert(varData, dtype); // just in case it need to be converted
 
       Array.arraycopy(varData, 0, sectionData, destPos, (int) varData.getSize());
@@ -459,75 +486,20 @@ abstract class AggregationOuter extends Aggregation implements ProxyReader {
     Array allData = Array.factory(dtype, mainv.getShape());
     int destPos = 0;
 
-    List<AggDataset> nestedDatasets = getDatasets();
-    if (executor != null) {
-      CompletionService<Result> completionService = new ExecutorCompletionService<>(executor);
-
-      int count = 0;
-      for (AggDataset vnested : nestedDatasets)
-        completionService.submit(new ReaderTask(vnested, mainv, cancelTask, count++));
-
-      try {
-        int n = nestedDatasets.size();
-        for (int i = 0; i < n; ++i) {
-          Result r = completionService.take().get();
-          if (r != null) {
-            r.data = MAMath.convert(r.data, dtype); // just in case it needs to be converted
-            int size = (int) r.data.getSize();
-            Array.arraycopy(r.data, 0, allData, size * r.index, size);
-          }
-        }
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-      } catch (ExecutionException e) {
-        throw new IOException(e.getMessage());
-      }
-
-    } else {
+    List<Array> dataList = readDatasets(getDatasets(), cancelTask, nested -> nested.read(mainv, cancelTask));
+    if (dataList == null || ((cancelTask != null) && cancelTask.isCancel()))
+      return null;
 
-      for (AggDataset vnested : nestedDatasets) {
-        Array varData = vnested.read(mainv, cancelTask);
-        if ((cancelTask != null) && cancelTask.isCancel())
-          return null;
-        varData = MAMath.convert(varData, dtype); // just in case it need to be converted
+    for (Array varData : dataList) {
+      varData = MAMath.convert(varData, dtype); // just in case it need to be converted
 
-        Array.arraycopy(varData, 0, allData, destPos, (int) varData.getSize());
-        destPos += varData.getSize();
-      }
+      Array.arraycopy(varData, 0, allData, destPos, (int) varData.getSize());
+      destPos += varData.getSize();
     }
 
     return allData;
   }
 
-  private static class ReaderTask implements Callable<Result> {
-    AggDataset ds;
-    Variable mainv;
-    CancelTask cancelTask;
-    int index;
-
-    ReaderTask(AggDataset ds, Variable mainv, CancelTask cancelTask, int index) {
-      this.ds = ds;
-      this.mainv = mainv;
-      this.cancelTask = cancelTask;
-      this.index = index;
-    }
-
-    public Result call() throws Exception {
-      Array data = ds.read(mainv, cancelTask);
-      return new Result(data, index);
-    }
-  }
-
-  private static class Result {
-    Array data;
-    int index;
-
-    Result(Array data, int index) {
-      this.data = data;
-      this.index = index;
-    }
-  }
-
   @Override
   protected AggDataset makeDataset(String cacheName, String location, String id, String ncoordS, String coordValueS,
       String sectionSpec, EnumSet<NetcdfDataset.Enhance> enhance, ucar.nc2.internal.cache.FileFactory reader) {
@@ -544,7 +516,7 @@ abstract class AggregationOuter extends Aggregation implements ProxyReader {
   class CacheVar {
     String varName;
     DataType dtype;
-    private Map<String, Array> dataMap = new HashMap<>();
+    private Map<String, Array> dataMap = new ConcurrentHashMap<>(); // datasets may be read concurrently
 
     CacheVar(String varName, DataType dtype) {
       this.varName = varName;
@@ -560,7 +532,7 @@ abstract class AggregationOuter extends Aggregation implements ProxyReader {
 
     // clear out old stuff from the Hash, so it doesnt grow forever
     void reset() {
-      Map<String, Array> newMap = new HashMap<>();
+      Map<String, Array> newMap = new ConcurrentHashMap<>();
       for (AggDataset ds : datasets) {
         String id = ds.getId();
         Array data = dataMap.get(id);
@@ -583,21 +555,29 @@ abstract class AggregationOuter extends Aggregation implements ProxyReader {
         innerSection = new Section(ranges.subList(1, ranges.size()));
       }
 
-      // LOOK could make concurrent
-      int resultPos = 0;
-      List<AggDataset> nestedDatasets = getDatasets();
-      for (AggDataset vnested : nestedDatasets) {
-        AggDatasetOuter dod = (AggDatasetOuter) vnested;
-
-        // can we skip ?
-        Range nestedJoinRange = dod.getNestedJoinRange(joinRange);
-        if (nestedJoinRange == null) {
-          continue;
+      // the datasets that overlap the section
+      List<AggDataset> wantDatasets = new ArrayList<>();
+      List<Range> nestedJoinRanges = new ArrayList<>();
+      for (AggDataset vnested : getDatasets()) {
+        Range nestedJoinRange = ((AggDatasetOuter) vnested).getNestedJoinRange(joinRange);
+        if (nestedJoinRange != null) {
+          wantDatasets.add(vnested);
+          nestedJoinRanges.add(nestedJoinRange);
         }
+      }
+
+      List<Array> dataList = readDatasets(wantDatasets, cancelTask, vnested -> read((AggDatasetOuter) vnested));
+      if (dataList == null)
+        return null;
+
+      int resultPos = 0;
+      for (int i = 0; i < wantDatasets.size(); i++) {
+        AggDatasetOuter dod = (AggDatasetOuter) wantDatasets.get(i);
+        Range nestedJoinRange = nestedJoinRanges.get(i);
         if (debugStride)
           System.out.printf("%d: %s [%d,%d) (%d) %f for %s%n", resultPos, nestedJoinRange, dod.aggStart, dod.aggEnd,
-              dod.ncoord, dod.aggStart / 8.0, vnested.getLocation());
-        Array varData = read(dod);
+              dod.ncoord, dod.aggStart / 8.0, dod.getLocation());
+        Array varData = dataList.get(i);
         if (varData == null)
           throw new IOException("cant read " + dod);
 
@@ -626,9 +606,6 @@ abstract class AggregationOuter extends Aggregation implements ProxyReader {
         int nelems = (int) varData.getSize();
         Array.arraycopy(varData, 0, allData, resultPos, nelems);
         resultPos += nelems;
-
-        if ((cancelTask != null) && cancelTask.isCancel())
-          return null;
       }
 
       return allData;
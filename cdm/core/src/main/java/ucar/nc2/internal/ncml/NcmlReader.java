@@ -1389,6 +1389,11 @@ public class NcmlReader {
       throw new IllegalArgumentException("Unsupported aggregation type=" + type);
     }
 
+    String parallelism = aggElem.getAttributeValue("parallelism");
+    if (parallelism != null) {
+      agg.setParallelism(Integer.parseInt(parallelism));
+    }
+
     if (agg instanceof AggregationOuter) {
       AggregationOuter aggo = (AggregationOuter) agg;
 
@@ -146,6 +146,14 @@ public abstract class AbstractIOServiceProvider implements IOServiceProvider {
     }
   }
 
+  /**
+   * Estimate of the memory held while the file is open, in bytes, used by memory bounded file caches.
+   * This is the RandomAccessFile buffer; subclasses that keep indexes in memory should add them.
+   */
+  public long getMemoryEstimate() {
+    return (raf == null) ? 0 : raf.getBufferSize();
+  }
+
   @Override
   public String toStringDebug(Object o) {
     return "";
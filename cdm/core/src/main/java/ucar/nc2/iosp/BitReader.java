@@ -25,9 +25,13 @@ public class BitReader {
   private byte bitBuf;
   private int bitPos; // Current bit position in bitBuf.
 
-  // for testing
-  public BitReader(byte[] test) {
-    this.data = test;
+  /**
+   * Read from bytes already in memory.
+   *
+   * @param data the bit packed data, starting at the first byte.
+   */
+  public BitReader(byte[] data) {
+    this.data = data;
     this.dataPos = 0;
   }
 
@@ -56,6 +60,17 @@ public class BitReader {
    * @throws IOException on io error
    */
   public void setBitOffset(int bitOffset) throws IOException {
+    if (raf == null) {
+      dataPos = bitOffset / 8;
+      bitPos = 0;
+      bitBuf = 0;
+      if (bitOffset % 8 != 0) {
+        bitPos = 8 - (bitOffset % 8);
+        bitBuf = nextByte();
+        bitBuf &= 0xff >> (8 - bitPos); // mask off consumed bits
+      }
+      return;
+    }
     if (bitOffset % 8 == 0) {
       raf.seek(startPos + bitOffset / 8);
       bitPos = 0;
@@ -154,6 +169,8 @@ public class BitReader {
         throw new EOFException();
       return (byte) result;
     } else {
+      if (dataPos >= data.length)
+        throw new EOFException();
       return data[dataPos++];
     }
   }
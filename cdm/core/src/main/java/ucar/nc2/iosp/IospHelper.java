@@ -5,6 +5,7 @@
 package ucar.nc2.iosp;
 
 import java.nio.charset.StandardCharsets;
+import ucar.unidata.io.ByteRange;
 import ucar.unidata.io.RandomAccessFile;
 import ucar.unidata.io.PositioningDataInputStream;
 import ucar.ma2.*;
@@ -16,6 +17,7 @@ import java.io.OutputStream;
 import java.nio.*;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -68,13 +70,17 @@ public class IospHelper {
     if (showLayoutTypes)
       System.out.println("***RAF LayoutType=" + layout.getClass().getName());
 
+    // The chunks are read in batches with readVectored(), which lets the RandomAccessFile coalesce nearby chunks,
+    // and issue remote requests concurrently. Layouts may read from the raf (eg btrees) while iterating,
+    // so get the byte order of the data now.
+    raf.order(byteOrder);
+    ByteOrder order = raf.getByteOrder();
     if (dataType.getPrimitiveClassType() == byte.class || dataType == DataType.CHAR) {
       byte[] pa = (byte[]) arr;
-      while (layout.hasNext()) {
-        Layout.Chunk chunk = layout.next();
-        raf.order(byteOrder);
-        raf.seek(chunk.getSrcPos());
-        raf.readFully(pa, (int) chunk.getDestElem(), chunk.getNelems());
+      ChunkBatch batch = new ChunkBatch(raf, order, layout, 1);
+      while (batch.next()) {
+        for (int i = 0; i < batch.count; i++)
+          batch.bb.get(pa, batch.destElem[i], batch.nelems[i]);
       }
       if (convertChar && dataType == DataType.CHAR)
         return convertByteToChar(pa);
@@ -83,62 +89,61 @@ public class IospHelper {
 
     } else if (dataType.getPrimitiveClassType() == short.class) {
       short[] pa = (short[]) arr;
-      while (layout.hasNext()) {
-        Layout.Chunk chunk = layout.next();
-        raf.order(byteOrder);
-        raf.seek(chunk.getSrcPos());
-        raf.readShort(pa, (int) chunk.getDestElem(), chunk.getNelems());
+      ChunkBatch batch = new ChunkBatch(raf, order, layout, 2);
+      while (batch.next()) {
+        ShortBuffer buffer = batch.bb.asShortBuffer();
+        for (int i = 0; i < batch.count; i++)
+          buffer.get(pa, batch.destElem[i], batch.nelems[i]);
       }
       return pa;
 
     } else if (dataType.getPrimitiveClassType() == int.class) {
       int[] pa = (int[]) arr;
-      while (layout.hasNext()) {
-        Layout.Chunk chunk = layout.next();
-        raf.order(byteOrder);
-        raf.seek(chunk.getSrcPos());
-        raf.readInt(pa, (int) chunk.getDestElem(), chunk.getNelems());
+      ChunkBatch batch = new ChunkBatch(raf, order, layout, 4);
+      while (batch.next()) {
+        IntBuffer buffer = batch.bb.asIntBuffer();
+        for (int i = 0; i < batch.count; i++)
+          buffer.get(pa, batch.destElem[i], batch.nelems[i]);
       }
       return pa;
 
     } else if (dataType == DataType.FLOAT) {
       float[] pa = (float[]) arr;
-      while (layout.hasNext()) {
-        Layout.Chunk chunk = layout.next();
-        raf.order(byteOrder);
-        raf.seek(chunk.getSrcPos());
-        raf.readFloat(pa, (int) chunk.getDestElem(), chunk.getNelems());
+      ChunkBatch batch = new ChunkBatch(raf, order, layout, 4);
+      while (batch.next()) {
+        FloatBuffer buffer = batch.bb.asFloatBuffer();
+        for (int i = 0; i < batch.count; i++)
+          buffer.get(pa, batch.destElem[i], batch.nelems[i]);
       }
       return pa;
 
     } else if (dataType == DataType.DOUBLE) {
       double[] pa = (double[]) arr;
-      while (layout.hasNext()) {
-        Layout.Chunk chunk = layout.next();
-        raf.order(byteOrder);
-        raf.seek(chunk.getSrcPos());
-        raf.readDouble(pa, (int) chunk.getDestElem(), chunk.getNelems());
+      ChunkBatch batch = new ChunkBatch(raf, order, layout, 8);
+      while (batch.next()) {
+        DoubleBuffer buffer = batch.bb.asDoubleBuffer();
+        for (int i = 0; i < batch.count; i++)
+          buffer.get(pa, batch.destElem[i], batch.nelems[i]);
       }
       return pa;
 
     } else if (dataType.getPrimitiveClassType() == long.class) {
       long[] pa = (long[]) arr;
-      while (layout.hasNext()) {
-        Layout.Chunk chunk = layout.next();
-        raf.order(byteOrder);
-        raf.seek(chunk.getSrcPos());
-        raf.readLong(pa, (int) chunk.getDestElem(), chunk.getNelems());
+      ChunkBatch batch = new ChunkBatch(raf, order, layout, 8);
+      while (batch.next()) {
+        LongBuffer buffer = batch.bb.asLongBuffer();
+        for (int i = 0; i < batch.count; i++)
+          buffer.get(pa, batch.destElem[i], batch.nelems[i]);
       }
       return pa;
 
     } else if (dataType == DataType.STRUCTURE) {
       byte[] pa = (byte[]) arr;
       int recsize = layout.getElemSize();
-      while (layout.hasNext()) {
-        Layout.Chunk chunk = layout.next();
-        raf.order(byteOrder);
-        raf.seek(chunk.getSrcPos());
-        raf.readFully(pa, (int) chunk.getDestElem() * recsize, chunk.getNelems() * recsize);
+      ChunkBatch batch = new ChunkBatch(raf, order, layout, recsize);
+      while (batch.next()) {
+        for (int i = 0; i < batch.count; i++)
+          batch.bb.get(pa, batch.destElem[i] * recsize, batch.nelems[i] * recsize);
       }
       return pa;
 
@@ -161,6 +166,85 @@ public class IospHelper {
     throw new IllegalStateException("unknown type= " + dataType);
   }
 
+  // limit on the number of bytes read by one ChunkBatch
+  private static final int maxBatchBytes = 16 * 1024 * 1024;
+
+  /**
+   * Reads the chunks of a Layout in batches, each with one call to RandomAccessFile.readVectored().
+   * A chunk larger than maxBatchBytes is split into pieces, each read in its own batch.
+   */
+  private static class ChunkBatch {
+    private final RandomAccessFile raf;
+    private final ByteOrder order;
+    private final Layout layout;
+    private final int elemSize;
+    private final int maxElems; // the most elements in one batch, at least 1
+    private final List<ByteRange> ranges = new ArrayList<>();
+
+    // the part of the last chunk that did not fit into the previous batch
+    private long pendingSrcPos;
+    private long pendingDestElem;
+    private long pendingNelems;
+
+    // the current batch: its bytes, in the order of the chunks, and where each chunk goes
+    ByteBuffer bb;
+    int count;
+    int[] destElem = new int[16];
+    int[] nelems = new int[16];
+
+    ChunkBatch(RandomAccessFile raf, ByteOrder order, Layout layout, int elemSize) {
+      this.raf = raf;
+      this.order = order;
+      this.layout = layout;
+      this.elemSize = elemSize;
+      this.maxElems = Math.max(maxBatchBytes / Math.max(elemSize, 1), 1);
+    }
+
+    /** Read the next batch, return false if there are no more chunks. */
+    boolean next() throws IOException {
+      ranges.clear();
+      count = 0;
+      long nelemsInBatch = 0;
+      while (nelemsInBatch < maxElems && (pendingNelems > 0 || layout.hasNext())) {
+        if (pendingNelems == 0) {
+          Layout.Chunk chunk = layout.next(); // may be reused by the iterator, so copy what we need
+          pendingSrcPos = chunk.getSrcPos();
+          pendingDestElem = chunk.getDestElem();
+          pendingNelems = chunk.getNelems();
+          if (pendingNelems == 0)
+            continue;
+        }
+        // take as much of the chunk as fits; a chunk is only split when it does not fit into an empty batch
+        long n = pendingNelems;
+        if (nelemsInBatch + n > maxElems) {
+          if (nelemsInBatch > 0)
+            break;
+          n = maxElems;
+        }
+        add(pendingSrcPos, pendingDestElem, (int) n);
+        nelemsInBatch += n;
+        pendingSrcPos += n * elemSize;
+        pendingDestElem += n;
+        pendingNelems -= n;
+      }
+      if (count == 0)
+        return false;
+      bb = ByteBuffer.wrap(raf.readVectored(ranges)).order(order);
+      return true;
+    }
+
+    private void add(long srcPos, long dest, int n) {
+      if (count == destElem.length) {
+        destElem = Arrays.copyOf(destElem, 2 * count);
+        nelems = Arrays.copyOf(nelems, 2 * count);
+      }
+      destElem[count] = (int) dest;
+      nelems[count] = n;
+      ranges.add(new ByteRange(srcPos, Math.multiplyExact(n, elemSize)));
+      count++;
+    }
+  }
+
   /**
    * Read data subset from PositioningDataInputStream, create primitive array of size Layout.getTotalNelems.
    * Reading is controlled by the Layout object.
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A Service Provider that reverses an HDF5 filter on a chunk of data, keyed by its registered HDF5 filter id.
+ * Implementations are found by {@link H5Filters}, either built in, registered with {@link H5Filters#register},
+ * or listed in META-INF/services/ucar.nc2.iosp.hdf5.H5Filter.
+ * Implementations must have a no-argument constructor, and must be thread safe, since chunks are decoded in parallel.
+ *
+ * @see "https://portal.hdfgroup.org/display/support/Filters"
+ */
+public interface H5Filter {
+
+  /** The registered HDF5 filter id. */
+  int getId();
+
+  /** The name of the filter, used in messages. */
+  String getName();
+
+  /**
+   * Reverse the filter on one chunk.
+   *
+   * @param in the filtered bytes, from position to limit, in a heap ByteBuffer.
+   * @param context describes the chunk and the filter parameters.
+   * @return the unfiltered bytes, from position to limit, in a heap ByteBuffer. May share storage with in.
+   */
+  ByteBuffer decode(ByteBuffer in, Context context) throws IOException;
+
+  /** What a filter may know about the chunk it is decoding. */
+  interface Context {
+    /** The filter's "client data" parameters from the filter pipeline message. */
+    int[] getClientData();
+
+    /** The size in bytes of one data element. */
+    int getElemSize();
+
+    /** The size in bytes of a fully decoded chunk. */
+    int getChunkBytes();
+
+    /** The byte order of the data elements. */
+    ByteOrder getByteOrder();
+
+    /**
+     * Get a heap ByteBuffer to decode into. This may come from a pool, so its contents are undefined.
+     *
+     * @param nbytes the size in bytes needed
+     * @return buffer with position 0 and limit nbytes
+     */
+    ByteBuffer allocate(int nbytes);
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import ucar.nc2.internal.iosp.hdf5.filter.Deflate;
+import ucar.nc2.internal.iosp.hdf5.filter.Fletcher32;
+import ucar.nc2.internal.iosp.hdf5.filter.Nbit;
+import ucar.nc2.internal.iosp.hdf5.filter.ScaleOffset;
+import ucar.nc2.internal.iosp.hdf5.filter.Shuffle;
+import ucar.nc2.internal.iosp.hdf5.filter.Szip;
+
+/**
+ * Registry of H5Filter, keyed by HDF5 filter id.
+ * The standard HDF5 filters are built in. Others are loaded with the ServiceLoader the first time they are needed,
+ * or may be registered explicitly, which overrides any previous filter with the same id.
+ */
+public class H5Filters {
+  private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(H5Filters.class);
+
+  private static final Map<Integer, H5Filter> registry = new ConcurrentHashMap<>();
+  private static boolean loaded;
+
+  static {
+    register(new Deflate());
+    register(new Shuffle());
+    register(new Fletcher32());
+    register(new Szip());
+    register(new Nbit());
+    register(new ScaleOffset());
+  }
+
+  /** Register an H5Filter, replacing any filter already registered with that id. */
+  public static void register(H5Filter filter) {
+    registry.put(filter.getId(), filter);
+  }
+
+  /**
+   * Find the H5Filter for this HDF5 filter id.
+   *
+   * @return the filter, or null if none is registered.
+   */
+  @Nullable
+  public static H5Filter find(int id) {
+    loadServices();
+    return registry.get(id);
+  }
+
+  /** All of the registered filters. */
+  public static ImmutableList<H5Filter> getFilters() {
+    loadServices();
+    return ImmutableList.copyOf(registry.values());
+  }
+
+  // explicitly registered filters take precedence over ones found by the ServiceLoader
+  private static synchronized void loadServices() {
+    if (loaded)
+      return;
+    loaded = true;
+    try {
+      for (H5Filter filter : ServiceLoader.load(H5Filter.class)) {
+        registry.putIfAbsent(filter.getId(), filter);
+      }
+    } catch (ServiceConfigurationError e) {
+      logger.error("Failed to load H5Filter services", e);
+    }
+  }
+
+}
@@ -63,7 +63,7 @@ public class NcStream {
 
   public static final int ncstream_data_version = 3;
 
-  static NcStreamProto.Group.Builder encodeGroup(Group g, int sizeToCache) throws IOException {
+  public static NcStreamProto.Group.Builder encodeGroup(Group g, int sizeToCache) throws IOException {
     NcStreamProto.Group.Builder groupBuilder = NcStreamProto.Group.newBuilder();
     groupBuilder.setName(g.getShortName());
 
@@ -432,7 +432,7 @@ public class NcStream {
 
   ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
-  static void readGroup(NcStreamProto.Group proto, Group.Builder g) {
+  public static void readGroup(NcStreamProto.Group proto, Group.Builder g) {
 
     for (NcStreamProto.Dimension dim : proto.getDimsList())
       g.addDimension(NcStream.decodeDim(dim)); // always added to group? what if private ??
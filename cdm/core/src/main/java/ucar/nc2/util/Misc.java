@@ -10,6 +10,8 @@ import ucar.ma2.DataType;
 
 /** Miscellaneous static routines. */
 public class Misc {
+  private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(Misc.class);
+
   /** Estimates pointer size in bytes */
   public static final int referenceSize = 4;
   /** Estimates object size in bytes */
@@ -202,4 +204,39 @@ public class Misc {
       f.format("Misc.compare %d ints, %d are different%n", len, ndiff);
     return ok;
   }
+
+  /**
+   * The value of an integer system property, set with a -D flag.
+   *
+   * @param name name of the property
+   * @param def returned if the property is not set, or is not an integer > 0, which is logged.
+   */
+  public static int getIntProperty(String name, int def) {
+    return (int) getLongProperty(name, def, 1, Integer.MAX_VALUE);
+  }
+
+  /**
+   * The value of a long system property, set with a -D flag.
+   *
+   * @param name name of the property
+   * @param def returned if the property is not set, or is not an integer >= 0, which is logged.
+   */
+  public static long getLongProperty(String name, long def) {
+    return getLongProperty(name, def, 0, Long.MAX_VALUE);
+  }
+
+  private static long getLongProperty(String name, long def, long min, long max) {
+    String val = System.getProperty(name);
+    if (val == null)
+      return def;
+    try {
+      long size = Long.parseLong(val);
+      if (size >= min && size <= max)
+        return size;
+      logger.warn(String.format("-D%s must be from %d to %d", name, min, max));
+    } catch (NumberFormatException nfe) {
+      logger.warn(String.format("-D%s is not an integer", name));
+    }
+    return def;
+  }
 }
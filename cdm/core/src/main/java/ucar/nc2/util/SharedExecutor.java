@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.util;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A process wide pool of daemon threads, shared by all the readers of one format to decode their data in parallel,
+ * and the number of chunks or records that may be read ahead of the consumer.
+ * <p>
+ * The pool is made when first needed. Its size is set by the "prefix.threads" system property, and the read ahead by
+ * "prefix.prefetch" (default 2 * threads). With one thread there is no pool, and the data is decoded on the calling
+ * thread. The threads are named "name-n", and go away when they are idle.
+ * <p>
+ * An application may use its own Executor instead with set(), and go back to the pool with reset().
+ */
+@ThreadSafe
+public final class SharedExecutor {
+  private final String name;
+  private final String threadsProperty;
+  private final String prefetchProperty;
+  private final int defaultThreads;
+
+  private ThreadPoolExecutor pool; // null if there is one thread
+  private int poolPrefetch;
+  private boolean poolInit;
+
+  private Executor executor; // set by the application
+  private int prefetch;
+  private boolean isSet;
+
+  /**
+   * Constructor. Nothing is read from the system properties until the Executor is first needed.
+   *
+   * @param name the threads are named "name-n".
+   * @param propertyPrefix the system properties are "propertyPrefix.threads" and "propertyPrefix.prefetch".
+   * @param defaultThreads number of threads if "propertyPrefix.threads" is not set, must be > 0.
+   */
+  public SharedExecutor(String name, String propertyPrefix, int defaultThreads) {
+    Preconditions.checkArgument(defaultThreads > 0, "defaultThreads must be > 0");
+    this.name = name;
+    this.threadsProperty = propertyPrefix + ".threads";
+    this.prefetchProperty = propertyPrefix + ".prefetch";
+    this.defaultThreads = defaultThreads;
+  }
+
+  /**
+   * Use this Executor rather than the pool.
+   *
+   * @param exec decode on this Executor, or null to decode on the calling thread.
+   * @param nprefetch maximum number of chunks or records read ahead of the consumer, must be > 0.
+   */
+  public synchronized void set(@Nullable Executor exec, int nprefetch) {
+    Preconditions.checkArgument(nprefetch > 0, "nprefetch must be > 0");
+    executor = exec;
+    prefetch = nprefetch;
+    isSet = true;
+  }
+
+  /** Go back to the pool configured by the system properties, after set(). */
+  public synchronized void reset() {
+    executor = null;
+    isSet = false;
+  }
+
+  /** The Executor to decode on, or null to decode on the calling thread. */
+  @Nullable
+  public synchronized Executor getExecutor() {
+    if (isSet)
+      return executor;
+    if (!poolInit) {
+      int nthreads = Misc.getIntProperty(threadsProperty, defaultThreads);
+      if (nthreads > 1) {
+        pool = new ThreadPoolExecutor(nthreads, nthreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+        pool.allowCoreThreadTimeOut(true);
+      }
+      poolPrefetch = Misc.getIntProperty(prefetchProperty, 2 * nthreads);
+      poolInit = true;
+    }
+    return pool;
+  }
+
+  /** Maximum number of chunks or records read ahead of the consumer; 1 if decoding on the calling thread. */
+  public synchronized int getPrefetch() {
+    if (getExecutor() == null)
+      return 1;
+    return isSet ? prefetch : poolPrefetch;
+  }
+}
@@ -39,6 +39,34 @@ public interface Projection {
   /** Convert projection coordinates to a LatLonPoint. */
   LatLonPoint projToLatLon(ProjectionPoint ppt);
 
+  /**
+   * Convert n projection points to lat/lon: (lat[i], lon[i]) is set to projToLatLon(x[i], y[i]), for i < n.
+   * The output arrays may be the same as the input arrays.
+   * Implementations may override this to not allocate a LatLonPoint for each point, and to convert large arrays
+   * in parallel.
+   */
+  default void projToLatLon(double[] x, double[] y, double[] lat, double[] lon, int n) {
+    for (int i = 0; i < n; i++) {
+      LatLonPoint llpt = projToLatLon(x[i], y[i]);
+      lat[i] = llpt.getLatitude();
+      lon[i] = llpt.getLongitude();
+    }
+  }
+
+  /**
+   * Convert n lat/lon points to projection coordinates: (x[i], y[i]) is set to latLonToProj(lat[i], lon[i]), for i < n.
+   * The output arrays may be the same as the input arrays.
+   * Implementations may override this to not allocate a ProjectionPoint for each point, and to convert large arrays
+   * in parallel.
+   */
+  default void latLonToProj(double[] lat, double[] lon, double[] x, double[] y, int n) {
+    for (int i = 0; i < n; i++) {
+      ProjectionPoint ppt = latLonToProj(lat[i], lon[i]);
+      x[i] = ppt.getX();
+      y[i] = ppt.getY();
+    }
+  }
+
   /**
    * Does the line between these two points cross the projection "seam", which
    * is a discontinuity in the function latlon <-> projection plane
@@ -53,12 +53,7 @@ public class Projections {
       throw new IllegalArgumentException("Projections.projToLatLon: from array not same length as to array");
     }
 
-    for (int i = 0; i < from[0].length; i++) {
-      LatLonPoint endL = proj.projToLatLon(from[0][i], from[1][i]);
-      to[0][i] = endL.getLatitude();
-      to[1][i] = endL.getLongitude();
-    }
-
+    proj.projToLatLon(from[0], from[1], to[0], to[1], from[0].length);
     return to;
   }
 
@@ -176,12 +171,7 @@ public class Projections {
       throw new IllegalArgumentException("Projections.latLonToProj: from array not same length as to array");
     }
 
-    for (int i = 0; i < from[0].length; i++) {
-      LatLonPoint llpi = LatLonPoint.create(from[latIndex][i], from[lonIndex][i]);
-      ProjectionPoint ppi = proj.latLonToProj(llpi);
-      to[0][i] = ppi.getX();
-      to[1][i] = ppi.getY();
-    }
+    proj.latLonToProj(from[latIndex], from[lonIndex], to[0], to[1], from[0].length);
     return to;
   }
 
@@ -15,6 +15,7 @@ import ucar.unidata.geoloc.ProjectionPoint;
 import ucar.unidata.geoloc.ProjectionRect;
 import ucar.unidata.util.*;
 import java.util.*;
+import java.util.stream.IntStream;
 
 /**
  * Superclass for our implementations of geoloc.Projection.
@@ -259,6 +260,74 @@ public abstract class AbstractProjection implements Projection {
     return llbb;
   }
 
+  //////////////////////////////////////////////////////////////////////
+  // bulk conversions
+
+  /** Number of points in each of the chunks that the bulk conversions of large arrays are done in, in parallel. */
+  private static final int BULK_CHUNK_SIZE = 32 * 1024;
+
+  @Override
+  public void projToLatLon(double[] x, double[] y, double[] lat, double[] lon, int n) {
+    checkBulkArgs(n, x, y, lat, lon);
+    forEachChunk(n, (from, to) -> projToLatLon(x, y, lat, lon, from, to));
+  }
+
+  @Override
+  public void latLonToProj(double[] lat, double[] lon, double[] x, double[] y, int n) {
+    checkBulkArgs(n, lat, lon, x, y);
+    forEachChunk(n, (from, to) -> latLonToProj(lat, lon, x, y, from, to));
+  }
+
+  /**
+   * Convert the projection points from (inclusive) to to (exclusive) to lat/lon, as projToLatLon(x, y, lat, lon, n)
+   * does. This calls projToLatLon(x, y) for each point; subclasses override it to not allocate a LatLonPoint for each
+   * point, and must give the same result, including LatLonPoint's normalization of lat and lon.
+   * It is called from several threads at once, for disjoint ranges.
+   */
+  protected void projToLatLon(double[] x, double[] y, double[] lat, double[] lon, int from, int to) {
+    for (int i = from; i < to; i++) {
+      LatLonPoint llpt = projToLatLon(x[i], y[i]);
+      lat[i] = llpt.getLatitude();
+      lon[i] = llpt.getLongitude();
+    }
+  }
+
+  /**
+   * Convert the lat/lon points from (inclusive) to to (exclusive) to projection coordinates, as
+   * latLonToProj(lat, lon, x, y, n) does. This calls latLonToProj(lat, lon) for each point; subclasses override it to
+   * not allocate a ProjectionPoint for each point, and must give the same result, including normalizing the input as
+   * LatLonPoint does. It is called from several threads at once, for disjoint ranges.
+   */
+  protected void latLonToProj(double[] lat, double[] lon, double[] x, double[] y, int from, int to) {
+    for (int i = from; i < to; i++) {
+      ProjectionPoint ppt = latLonToProj(lat[i], lon[i]);
+      x[i] = ppt.getX();
+      y[i] = ppt.getY();
+    }
+  }
+
+  private static void checkBulkArgs(int n, double[]... arrays) {
+    for (double[] array : arrays) {
+      if (array.length < n) {
+        throw new IllegalArgumentException("array length " + array.length + " < number of points " + n);
+      }
+    }
+  }
+
+  private interface RangeConversion {
+    void convert(int from, int to);
+  }
+
+  private static void forEachChunk(int n, RangeConversion conversion) {
+    if (n <= BULK_CHUNK_SIZE) {
+      conversion.convert(0, n);
+      return;
+    }
+    int nchunks = (n + BULK_CHUNK_SIZE - 1) / BULK_CHUNK_SIZE;
+    IntStream.range(0, nchunks).parallel()
+        .forEach(c -> conversion.convert(c * BULK_CHUNK_SIZE, Math.min(n, (c + 1) * BULK_CHUNK_SIZE)));
+  }
+
   /**
    * Alternate way to calculate latLonToProjBB, originally in GridCoordSys.
    * Difficult to do this in a general way.
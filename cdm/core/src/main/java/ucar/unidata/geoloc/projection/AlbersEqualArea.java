@@ -348,5 +348,37 @@ public class AlbersEqualArea extends AbstractProjection {
     return LatLonPoint.create(toLat, toLon);
   }
 
+  @Override
+  protected void latLonToProj(double[] lat, double[] lon, double[] x, double[] y, int from, int to) {
+    for (int i = from; i < to; i++) {
+      double rho = computeRho(Math.toRadians(LatLonPoints.latNormal(lat[i])));
+      double theta = computeTheta(Math.toRadians(LatLonPoints.lonNormal(lon[i])));
+      x[i] = rho * Math.sin(theta) + falseEasting;
+      y[i] = rho0 - rho * Math.cos(theta) + falseNorthing;
+    }
+  }
+
+  @Override
+  protected void projToLatLon(double[] x, double[] y, double[] lat, double[] lon, int from, int to) {
+    double rrho0 = (n < 0) ? -rho0 : rho0;
+    for (int i = from; i < to; i++) {
+      double fromX = x[i] - falseEasting;
+      double fromY = y[i] - falseNorthing;
+      if (n < 0) {
+        fromX *= -1.0;
+        fromY *= -1.0;
+      }
+
+      double yd = rrho0 - fromY;
+      double rho = Math.sqrt(fromX * fromX + yd * yd);
+      double theta = Math.atan2(fromX, yd);
+      if (n < 0) {
+        rho *= -1.0;
+      }
+      lat[i] = LatLonPoints.latNormal(Math.toDegrees(Math.asin((C - Math.pow((rho * n / earth_radius), 2)) / (2 * n))));
+      lon[i] = LatLonPoints.lonNormal(Math.toDegrees(theta / n + lon0));
+    }
+  }
+
 }
 
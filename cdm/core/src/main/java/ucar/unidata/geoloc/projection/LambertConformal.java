@@ -410,6 +410,49 @@ public class LambertConformal extends AbstractProjection {
     return LatLonPoint.create(toLat, toLon);
   }
 
+  @Override
+  protected void latLonToProj(double[] lat, double[] lon, double[] x, double[] y, int from, int to) {
+    for (int i = from; i < to; i++) {
+      double fromLat = Math.toRadians(LatLonPoints.latNormal(lat[i]));
+      double dlon = LatLonPoints.lonNormal(LatLonPoints.lonNormal(lon[i]) - lon0Degrees);
+      double theta = n * Math.toRadians(dlon);
+      double tn = Math.pow(Math.tan(PI_OVER_4 + fromLat / 2), n);
+      double r = earthRadiusTimesF / tn;
+      x[i] = r * Math.sin(theta) + falseEasting;
+      y[i] = rho - r * Math.cos(theta) + falseNorthing;
+    }
+  }
+
+  @Override
+  protected void projToLatLon(double[] x, double[] y, double[] lat, double[] lon, int from, int to) {
+    double rhop = (n < 0) ? -rho : rho;
+    for (int i = from; i < to; i++) {
+      double fromX = x[i] - falseEasting;
+      double fromY = y[i] - falseNorthing;
+      if (n < 0) {
+        fromX *= -1.0;
+        fromY *= -1.0;
+      }
+
+      double yd = (rhop - fromY);
+      double theta = Math.atan2(fromX, yd);
+      double r = Math.sqrt(fromX * fromX + yd * yd);
+      if (n < 0.0) {
+        r *= -1.0;
+      }
+
+      double toLat;
+      if (Math.abs(r) < TOLERANCE) {
+        toLat = ((n < 0.0) ? -90.0 : 90.0);
+      } else {
+        double rn = Math.pow(earth_radius * F / r, 1 / n);
+        toLat = Math.toDegrees(2.0 * Math.atan(rn) - Math.PI / 2);
+      }
+      lat[i] = LatLonPoints.latNormal(toLat);
+      lon[i] = LatLonPoints.lonNormal(Math.toDegrees(theta / n + lon0));
+    }
+  }
+
 }
 
 
@@ -243,5 +243,34 @@ public class Mercator extends AbstractProjection {
     return LatLonPoint.create(toLat, toLon);
   }
 
+  @Override
+  protected void latLonToProj(double[] lat, double[] lon, double[] x, double[] y, int from, int to) {
+    for (int i = from; i < to; i++) {
+      double fromLat = LatLonPoints.latNormal(lat[i]);
+      double fromLon = LatLonPoints.lonNormal(lon[i]);
+
+      // infinite projection
+      if ((Math.abs(90.0 - Math.abs(fromLat))) < TOLERANCE) {
+        x[i] = Double.POSITIVE_INFINITY;
+        y[i] = Double.POSITIVE_INFINITY;
+      } else {
+        x[i] = A * Math.toRadians(LatLonPoints.range180(fromLon - this.lon0)) + falseEasting;
+        y[i] = A * SpecialMathFunction.atanh(Math.sin(Math.toRadians(fromLat))) + falseNorthing;
+      }
+    }
+  }
+
+  @Override
+  protected void projToLatLon(double[] x, double[] y, double[] lat, double[] lon, int from, int to) {
+    for (int i = from; i < to; i++) {
+      double fromX = x[i] - falseEasting;
+      double fromY = y[i] - falseNorthing;
+
+      double e = Math.exp(-fromY / A);
+      lon[i] = LatLonPoints.lonNormal(Math.toDegrees(fromX / A) + lon0);
+      lat[i] = LatLonPoints.latNormal(Math.toDegrees(Math.PI / 2 - 2 * Math.atan(e))); // Snyder p 44
+    }
+  }
+
 }
 
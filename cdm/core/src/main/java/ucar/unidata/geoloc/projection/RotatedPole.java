@@ -186,6 +186,62 @@ public class RotatedPole extends AbstractProjection {
     return LatLonPoint.create(lat, lon);
   }
 
+  @Override
+  protected void latLonToProj(double[] lat, double[] lon, double[] x, double[] y, int from, int to) {
+    for (int i = from; i < to; i++) {
+      double lonRad = Math.toRadians(LatLonPoints.lonNormal(lon[i]));
+      double latRad = Math.toRadians(LatLonPoints.latNormal(lat[i]));
+
+      // Lon-lat pair to xyz coordinates on sphere with radius 1
+      double p00 = Math.cos(latRad) * Math.cos(lonRad);
+      double p01 = Math.cos(latRad) * Math.sin(lonRad);
+      double p02 = Math.sin(latRad);
+
+      // Rotate around Z-axis
+      double p10 = rotZ[0][0] * p00 + rotZ[0][1] * p01;
+      double p11 = rotZ[1][0] * p00 + rotZ[1][1] * p01;
+
+      // Rotate around Y-axis
+      double p20 = rotY[0][0] * p10 + rotY[0][2] * p02;
+      double p22 = rotY[2][0] * p10 + rotY[2][2] * p02;
+
+      x[i] = LatLonPoints.range180(Math.atan2(p11, p20) * DEG_PER_RAD);
+      y[i] = Math.asin(p22) * DEG_PER_RAD;
+    }
+  }
+
+  @Override
+  protected void projToLatLon(double[] x, double[] y, double[] lat, double[] lon, int from, int to) {
+    for (int i = from; i < to; i++) {
+      // "x" and "y" input for rotated pole coords are actually a lon-lat pair
+      double lonR = LatLonPoints.range180(x[i]);
+      double latR = y[i];
+
+      if (Math.abs(latR) > 90.) {
+        throw new IllegalArgumentException("ProjectionPoint y must be in range [-90,90].");
+      }
+
+      double lonRRad = Math.toRadians(lonR);
+      double latRRad = Math.toRadians(latR);
+
+      // Lon-lat pair to xyz coordinates on sphere with radius 1
+      double p00 = Math.cos(latRRad) * Math.cos(lonRRad);
+      double p01 = Math.cos(latRRad) * Math.sin(lonRRad);
+      double p02 = Math.sin(latRRad);
+
+      // Inverse rotate around Y-axis (using transpose of Y matrix)
+      double p10 = rotY[0][0] * p00 + rotY[2][0] * p02;
+      double p12 = rotY[0][2] * p00 + rotY[2][2] * p02;
+
+      // Inverse rotate around Z-axis (using transpose of Z matrix)
+      double p20 = rotZ[0][0] * p10 + rotZ[1][0] * p01;
+      double p21 = rotZ[0][1] * p10 + rotZ[1][1] * p01;
+
+      lat[i] = LatLonPoints.latNormal(Math.asin(p12) * DEG_PER_RAD);
+      lon[i] = LatLonPoints.lonNormal(Math.atan2(p21, p20) * DEG_PER_RAD);
+    }
+  }
+
   public boolean crossSeam(ProjectionPoint pt1, ProjectionPoint pt2) {
     return Math.abs(pt1.getX() - pt2.getX()) > 270.0;
   }
@@ -279,6 +279,34 @@ public class TransverseMercator extends AbstractProjection {
     return LatLonPoint.create(toLat, toLon);
   }
 
+  @Override
+  protected void latLonToProj(double[] lat, double[] lon, double[] x, double[] y, int from, int to) {
+    for (int i = from; i < to; i++) {
+      double lonr = Math.toRadians(LatLonPoints.lonNormal(lon[i]));
+      double latr = Math.toRadians(LatLonPoints.latNormal(lat[i]));
+      double dlon = lonr - lon0;
+      double b = Math.cos(latr) * Math.sin(dlon);
+
+      if ((Math.abs(Math.abs(b) - 1.0)) < TOLERANCE) { // infinite projection
+        x[i] = Double.POSITIVE_INFINITY;
+        y[i] = Double.POSITIVE_INFINITY;
+      } else {
+        x[i] = scale * SpecialMathFunction.atanh(b) + falseEasting;
+        y[i] = scale * (Math.atan2(Math.tan(latr), Math.cos(dlon)) - lat0) + falseNorthing;
+      }
+    }
+  }
+
+  @Override
+  protected void projToLatLon(double[] x, double[] y, double[] lat, double[] lon, int from, int to) {
+    for (int i = from; i < to; i++) {
+      double xs = (x[i] - falseEasting) / scale;
+      double d = (y[i] - falseNorthing) / scale + lat0;
+      lon[i] = LatLonPoints.lonNormal(Math.toDegrees(lon0 + Math.atan2(Math.sinh(xs), Math.cos(d))));
+      lat[i] = LatLonPoints.latNormal(Math.toDegrees(Math.asin(Math.sin(d) / Math.cosh(xs))));
+    }
+  }
+
   /**
    * Convert lat/lon coordinates to projection coordinates.
    *
@@ -149,6 +149,19 @@ class GEOSTransform {
    * @return (lamda, theta) units: radian. This is the (x,y) or (East-West, North_South) view angle.
    */
   double[] earthToSat(double geographic_lon, double geographic_lat) {
+    double[] result = new double[2];
+    earthToSat(geographic_lon, geographic_lat, result);
+    return result;
+  }
+
+  /**
+   * Transform geographic Earth coordinates to satellite view angle coordinates, without allocating.
+   *
+   * @param geographic_lon longitude, units: degrees
+   * @param geographic_lat latitude, units: degrees
+   * @param result set to (lamda, theta), units: radian
+   */
+  void earthToSat(double geographic_lon, double geographic_lat, double[] result) {
 
     geographic_lat = geographic_lat * DEG_TO_RAD;
     geographic_lon = geographic_lon * DEG_TO_RAD;
@@ -163,7 +176,9 @@ class GEOSTransform {
     double r_3 = r_earth * Math.sin(geocentric_lat);
 
     if (r_1 > h) { // often two geoid intersect points, use the closer one.
-      return new double[] {Double.NaN, Double.NaN};
+      result[0] = Double.NaN;
+      result[1] = Double.NaN;
+      return;
     }
 
     double lamda_sat = Double.NaN;
@@ -177,7 +192,8 @@ class GEOSTransform {
       theta_sat = Math.atan(r_3 / r_1);
     }
 
-    return new double[] {lamda_sat, theta_sat};
+    result[0] = lamda_sat;
+    result[1] = theta_sat;
   }
 
   /**
@@ -189,18 +205,34 @@ class GEOSTransform {
    * @return (Longitude, Latitude), units degrees
    */
   double[] satToEarth(double x, double y) {
+    double[] result = new double[2];
+    satToEarth(x, y, result);
+    return result;
+  }
+
+  /**
+   * Transform satellite view angle coordinates to geographic Earth coordinates, without allocating.
+   *
+   * @param x is lamda (East-West) angle, units: radians
+   * @param y is theta (North-South) angle, units: radians
+   * @param result set to (Longitude, Latitude), units degrees
+   */
+  void satToEarth(double x, double y, double[] result) {
 
     if (scan_geom.equals(GOES)) { // convert from GOES to GEOS for transfrom below
-      double[] lambda_theta_geos = GOES_to_GEOS(x, y);
-      x = lambda_theta_geos[0];
-      y = lambda_theta_geos[1];
+      double theta_geos = Math.asin(Math.sin(y) * Math.cos(x));
+      double lamda_geos = Math.atan(Math.tan(x) / Math.cos(y));
+      x = lamda_geos;
+      y = theta_geos;
     }
 
     double c1 = (h * Math.cos(x) * Math.cos(y)) * (h * Math.cos(x) * Math.cos(y));
     double c2 = (Math.cos(y) * Math.cos(y) + fp * Math.sin(y) * Math.sin(y)) * d;
 
     if (c1 < c2) {
-      return new double[] {Double.NaN, Double.NaN};
+      result[0] = Double.NaN;
+      result[1] = Double.NaN;
+      return;
     }
 
     double s_d = Math.sqrt(c1 - c2);
@@ -225,18 +257,8 @@ class GEOSTransform {
     if (lonDegrees > 180.0)
       lonDegrees -= 360.0;
 
-    return new double[] {lonDegrees, latDegrees};
-  }
-
-  /**
-   * Transform view angle coordinates in the GOES scan geometry frame to view angle coordinates
-   * in the GEOS scan geometry frame.
-   */
-  private double[] GOES_to_GEOS(double lamda_goes, double theta_goes) {
-    double theta_geos = Math.asin(Math.sin(theta_goes) * Math.cos(lamda_goes));
-    double lamda_geos = Math.atan(Math.tan(lamda_goes) / Math.cos(theta_goes));
-
-    return new double[] {lamda_geos, theta_geos};
+    result[0] = lonDegrees;
+    result[1] = latDegrees;
   }
 
 
@@ -234,6 +234,34 @@ public class Geostationary extends AbstractProjection {
     return LatLonPoint.create(lonlat[1], lonlat[0]);
   }
 
+  @Override
+  protected void latLonToProj(double[] lat, double[] lon, double[] x, double[] y, int from, int to) {
+    final double[] satCoords = new double[2];
+    for (int i = from; i < to; i++) {
+      navigation.earthToSat(LatLonPoints.lonNormal(lon[i]), LatLonPoints.latNormal(lat[i]), satCoords);
+      if (isGeoCoordinateScaled()) {
+        x[i] = satCoords[0] / geoCoordinateScaleFactor;
+        y[i] = satCoords[1] / geoCoordinateScaleFactor;
+      } else {
+        x[i] = satCoords[0];
+        y[i] = satCoords[1];
+      }
+    }
+  }
+
+  @Override
+  protected void projToLatLon(double[] x, double[] y, double[] lat, double[] lon, int from, int to) {
+    final double[] lonlat = new double[2];
+    for (int i = from; i < to; i++) {
+      if (isGeoCoordinateScaled())
+        navigation.satToEarth(x[i] * geoCoordinateScaleFactor, y[i] * geoCoordinateScaleFactor, lonlat);
+      else
+        navigation.satToEarth(x[i], y[i], lonlat);
+      lat[i] = LatLonPoints.latNormal(lonlat[1]);
+      lon[i] = LatLonPoints.lonNormal(lonlat[0]);
+    }
+  }
+
   @Override
   public boolean crossSeam(ProjectionPoint pt1, ProjectionPoint pt2) {
     // either point is infinite
@@ -215,7 +215,8 @@ public class MSGnavigation extends AbstractProjection {
         + minor_axis + ", sat_height=" + sat_height + ", scale_x=" + scale_x + ", scale_y=" + scale_y + '}';
   }
 
-  private LatLonPoint pixcoord2geocoord(double xkm, double ykm) {
+  // result is set to (lat, lon) in degrees
+  private void pixcoord2geocoord(double xkm, double ykm, double[] result) {
 
     /* calculate viewing angle of the satellite by use of the equation */
     /* on page 28, Ref [1]. */
@@ -241,7 +242,9 @@ public class MSGnavigation extends AbstractProjection {
 
     /* produce error values */
     if (sa <= 0.0) {
-      return LatLonPoint.create(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+      result[0] = Double.POSITIVE_INFINITY;
+      result[1] = Double.POSITIVE_INFINITY;
+      return;
     }
 
     /* now calculate the rest of the formulas using equations on */
@@ -264,14 +267,18 @@ public class MSGnavigation extends AbstractProjection {
     double lati = Math.atan(const1 * s3 / sxy);
 
     /* convert from radians into degrees */
-    return LatLonPoint.create(Math.toDegrees(lati), Math.toDegrees(longi));
+    result[0] = Math.toDegrees(lati);
+    result[1] = Math.toDegrees(longi);
   }
 
-  private ProjectionPoint geocoord2pixcoord(double latitude, double longitude) {
+  // result is set to (x, y)
+  private void geocoord2pixcoord(double latitude, double longitude, double[] result) {
 
     /* check if the values are sane, otherwise return error values */
     if (latitude < -90.0 || latitude > 90.0 || longitude < -180.0 || longitude > 180.0) {
-      return ProjectionPoint.create(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+      result[0] = Double.POSITIVE_INFINITY;
+      result[1] = Double.POSITIVE_INFINITY;
+      return;
     }
 
     /* convert to radians */
@@ -309,7 +316,9 @@ public class MSGnavigation extends AbstractProjection {
 
     double dotprod = r1 * (re * coscLat * cosLon) - r2 * r2 - r3 * r3 * const1;
     if (dotprod <= 0) {
-      return ProjectionPoint.create(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+      result[0] = Double.POSITIVE_INFINITY;
+      result[1] = Double.POSITIVE_INFINITY;
+      return;
     }
 
     double xx = Math.atan(-r2 / r1);
@@ -319,7 +328,8 @@ public class MSGnavigation extends AbstractProjection {
     // double cc = x_off + xx * cfac;
     // double ll = y_off + yy * lfac;
 
-    return ProjectionPoint.create(scale_x * xx, scale_y * yy);
+    result[0] = scale_x * xx;
+    result[1] = scale_y * yy;
   }
 
   @Override
@@ -335,12 +345,36 @@ public class MSGnavigation extends AbstractProjection {
 
   @Override
   public ProjectionPoint latLonToProj(LatLonPoint latlon) {
-    return geocoord2pixcoord(latlon.getLatitude(), latlon.getLongitude());
+    double[] xy = new double[2];
+    geocoord2pixcoord(latlon.getLatitude(), latlon.getLongitude(), xy);
+    return ProjectionPoint.create(xy[0], xy[1]);
   }
 
   @Override
   public LatLonPoint projToLatLon(ProjectionPoint ppt) {
-    return pixcoord2geocoord(ppt.getX(), ppt.getY());
+    double[] latlon = new double[2];
+    pixcoord2geocoord(ppt.getX(), ppt.getY(), latlon);
+    return LatLonPoint.create(latlon[0], latlon[1]);
+  }
+
+  @Override
+  protected void latLonToProj(double[] lat, double[] lon, double[] x, double[] y, int from, int to) {
+    double[] xy = new double[2];
+    for (int i = from; i < to; i++) {
+      geocoord2pixcoord(LatLonPoints.latNormal(lat[i]), LatLonPoints.lonNormal(lon[i]), xy);
+      x[i] = xy[0];
+      y[i] = xy[1];
+    }
+  }
+
+  @Override
+  protected void projToLatLon(double[] x, double[] y, double[] lat, double[] lon, int from, int to) {
+    double[] latlon = new double[2];
+    for (int i = from; i < to; i++) {
+      pixcoord2geocoord(x[i], y[i], latlon);
+      lat[i] = LatLonPoints.latNormal(latlon[0]);
+      lon[i] = LatLonPoints.lonNormal(latlon[1]);
+    }
   }
 
   @Override
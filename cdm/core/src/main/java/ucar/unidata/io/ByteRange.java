@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import com.google.common.base.Preconditions;
+import java.util.Objects;
+import javax.annotation.concurrent.Immutable;
+
+/** A contiguous range of bytes in a file, for RandomAccessFile.readVectored(). */
+@Immutable
+public final class ByteRange {
+  private final long position;
+  private final int length;
+
+  /**
+   * Constructor.
+   *
+   * @param position starting position in the file, must be >= 0
+   * @param length number of bytes, must be >= 0
+   */
+  public ByteRange(long position, int length) {
+    Preconditions.checkArgument(position >= 0, "position must be >= 0");
+    Preconditions.checkArgument(length >= 0, "length must be >= 0");
+    this.position = position;
+    this.length = length;
+  }
+
+  /** Starting position in the file. */
+  public long getPosition() {
+    return position;
+  }
+
+  /** Number of bytes. */
+  public int getLength() {
+    return length;
+  }
+
+  /** The position just past the end of the range. */
+  public long getEnd() {
+    return position + length;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o)
+      return true;
+    if (o == null || getClass() != o.getClass())
+      return false;
+    ByteRange that = (ByteRange) o;
+    return position == that.position && length == that.length;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(position, length);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("[%d, %d)", position, getEnd());
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import ucar.unidata.io.spi.RandomAccessFileProvider;
+
+/**
+ * A read-only RandomAccessFile for local files, that reads from memory mapped segments of the file, or with
+ * positional reads on its FileChannel. Neither changes any shared state, so the positional
+ * {@link #read(long, byte[], int, int)} and {@link #readFully(long, byte[], int, int)} may be called by many threads
+ * at once on one open file.
+ * The seek / read methods inherited from RandomAccessFile still share the file pointer and buffer,
+ * and so must be confined to one thread at a time, as usual.
+ * <p>
+ * Mapped segments are not unmapped until they are garbage collected, which on some operating systems keeps the
+ * file from being deleted or replaced. Use the positional mode if that matters.
+ */
+public class MappedRandomAccessFile extends RandomAccessFile {
+  /** Location prefix for the Provider, eg "mmap:/data/file.nc" */
+  public static final String PREFIX = "mmap:";
+
+  private static final int SEGMENT_SIZE = 1 << 30; // each mapped segment is at most 1 GB
+
+  private final boolean mapped;
+  private final FileChannel channel;
+  private final MappedByteBuffer[] segments;
+  private final long mappedLength; // the file length when opened; reads past this use the channel
+
+  /**
+   * Open a local file for reading from memory mapped segments.
+   *
+   * @param location local file path
+   * @throws IOException on open error
+   */
+  public MappedRandomAccessFile(String location) throws IOException {
+    this(location, true, defaultBufferSize);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param location local file path
+   * @param mapped if true, memory map the file, else use positional reads on the FileChannel.
+   * @param bufferSize size of the buffer used by the inherited seek / read methods.
+   * @throws IOException on open error
+   */
+  public MappedRandomAccessFile(String location, boolean mapped, int bufferSize) throws IOException {
+    super(bufferSize < 0 ? defaultBufferSize : bufferSize);
+    this.location = location;
+    this.file = new java.io.RandomAccessFile(location, "r");
+    this.channel = file.getChannel();
+    this.fileChannel = channel;
+    this.mapped = mapped;
+
+    long length = channel.size();
+    if (mapped) {
+      int nsegs = (int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+      this.segments = new MappedByteBuffer[nsegs];
+      try {
+        for (int i = 0; i < nsegs; i++) {
+          long start = (long) i * SEGMENT_SIZE;
+          segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, length - start));
+        }
+      } catch (IOException e) {
+        file.close();
+        throw e;
+      }
+      this.mappedLength = length;
+    } else {
+      this.segments = new MappedByteBuffer[0];
+      this.mappedLength = 0;
+    }
+
+    if (debugLeaks)
+      openFiles.add(location);
+  }
+
+  /** True if the file is memory mapped, false if it uses positional reads. */
+  public boolean isMapped() {
+    return mapped;
+  }
+
+  /**
+   * Read up to len bytes starting at pos, without using or changing the file pointer or the buffer.
+   * May be called concurrently from many threads.
+   *
+   * @param pos start here in the file
+   * @param b put data into this array
+   * @param off starting at this index
+   * @param len maximum number of bytes to read
+   * @return the number of bytes read, or -1 if pos is at or past the end of the file.
+   * @throws IOException on io error
+   */
+  public int read(long pos, byte[] b, int off, int len) throws IOException {
+    if (len == 0)
+      return 0;
+    int n = read_(pos, b, off, len);
+    return (n <= 0) ? -1 : n;
+  }
+
+  /**
+   * Read exactly len bytes starting at pos, without using or changing the file pointer or the buffer.
+   * May be called concurrently from many threads.
+   *
+   * @param pos start here in the file
+   * @param b put data into this array
+   * @param off starting at this index
+   * @param len number of bytes to read
+   * @throws EOFException if the file ends before len bytes are read
+   * @throws IOException on io error
+   */
+  public void readFully(long pos, byte[] b, int off, int len) throws IOException {
+    int n = read_(pos, b, off, len);
+    if (n < len)
+      throw new EOFException(String.format("Reading %s at %d file length = %d", location, pos, length()));
+  }
+
+  @Override
+  protected int read_(long pos, byte[] b, int offset, int len) throws IOException {
+    int total = 0;
+    // copy what we can out of the mapped segments
+    while (total < len && pos < mappedLength) {
+      ByteBuffer segment = segments[(int) (pos / SEGMENT_SIZE)].duplicate(); // private position
+      int segPos = (int) (pos % SEGMENT_SIZE);
+      int n = Math.min(len - total, segment.limit() - segPos);
+      segment.position(segPos);
+      segment.get(b, offset + total, n);
+      total += n;
+      pos += n;
+    }
+    // the rest with positional reads, which do not change the channel's position
+    while (total < len) {
+      int n = channel.read(ByteBuffer.wrap(b, offset + total, len - total), pos);
+      if (n < 0)
+        break;
+      total += n;
+      pos += n;
+    }
+    if (debugAccess && showRead)
+      System.out.printf(" **read_ %s = %d bytes at %d%n", location, total, pos - total);
+    return total;
+  }
+
+  @Override
+  public long length() throws IOException {
+    long fileLength = (file == null) ? -1L : channel.size();
+    return Math.max(fileLength, dataEnd);
+  }
+
+  /**
+   * Hook for service provider interface RandomAccessFileProvider.
+   * Owns locations starting with "mmap:", eg "mmap:/data/file.nc".
+   */
+  public static class Provider implements RandomAccessFileProvider {
+
+    @Override
+    public boolean isOwnerOf(String location) {
+      return location.startsWith(PREFIX);
+    }
+
+    @Override
+    public RandomAccessFile open(String location) throws IOException {
+      String path = location.substring(PREFIX.length());
+      if (path.startsWith("file:"))
+        path = path.substring(5);
+      return new MappedRandomAccessFile(path);
+    }
+  }
+
+}
@@ -148,7 +148,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     public FileCacheable open(DatasetUrl durl, int buffer_size, CancelTask cancelTask, Object iospMessage)
         throws IOException {
       String location = StringUtil2.replace(durl.getTrueurl(), "\\", "/"); // canonicalize the name
-      RandomAccessFile result = new RandomAccessFile(location, "r", buffer_size);
+      RandomAccessFile result = openLocal(location, buffer_size);
       result.cacheState = 1; // in use
       return result;
     }
@@ -156,6 +156,18 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
 
   private static FileCacheIF cache;
 
+  // System property for -D flag: how acquire() opens local files, "mapped", "positional" or "buffered" (the default)
+  private static final String LOCAL_FILE_MODE_PROPERTY = "ucar.unidata.io.localFileMode";
+
+  private static RandomAccessFile openLocal(String location, int buffer_size) throws IOException {
+    String mode = System.getProperty(LOCAL_FILE_MODE_PROPERTY, "buffered");
+    if (mode.equalsIgnoreCase("mapped"))
+      return new MappedRandomAccessFile(location, true, buffer_size);
+    if (mode.equalsIgnoreCase("positional"))
+      return new MappedRandomAccessFile(location, false, buffer_size);
+    return new RandomAccessFile(location, "r", buffer_size);
+  }
+
   public static synchronized void enableDefaultGlobalFileCache() {
     if (cache != null)
       cache.disable();
@@ -175,14 +187,14 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
 
   public static RandomAccessFile acquire(String location) throws IOException {
     if (cache == null)
-      return new RandomAccessFile(location, "r");
+      return openLocal(location, defaultBufferSize);
     else
       return (RandomAccessFile) cache.acquire(factory, DatasetUrl.create(null, location));
   }
 
   public static RandomAccessFile acquire(String location, int buffer_size) throws IOException {
     if (cache == null)
-      return new RandomAccessFile(location, "r", buffer_size);
+      return openLocal(location, buffer_size);
     else
       return (RandomAccessFile) cache.acquire(factory, location, DatasetUrl.create(null, location), buffer_size, null,
           null);
@@ -452,6 +464,12 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     return file.lastModified();
   }
 
+  /** The memory held while open is the buffer. */
+  @Override
+  public long getMemoryEstimate() {
+    return (buffer == null) ? 0 : buffer.length;
+  }
+
   /**
    * Return true if file pointer is at end of file.
    *
@@ -558,6 +576,11 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     this.bigEndian = bo.equals(ByteOrder.BIG_ENDIAN);
   }
 
+  /** The current endian mode, used by the reads of short, int, float, double, long, char. */
+  public ByteOrder getByteOrder() {
+    return bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+  }
+
   /**
    * Copy the contents of the buffer to the disk.
    *
@@ -817,6 +840,120 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     }
   }
 
+  /**
+   * Read a list of byte ranges in one call, and return their contents concatenated in list order.
+   * Ranges may be in any order and may overlap. Nearby ranges are coalesced into a smaller number of larger reads,
+   * which bypass the buffer. The file pointer and buffer are not changed.
+   * Subclasses may override readRanges() to issue the coalesced reads concurrently.
+   *
+   * @param ranges the byte ranges to read
+   * @return the bytes of each range, one after the other, in the order of the list
+   * @throws EOFException if a range extends past the end of the file
+   * @throws IOException if an I/O error occurs.
+   */
+  public byte[] readVectored(List<ByteRange> ranges) throws IOException {
+    if (bufferModified)
+      flush();
+
+    long total = 0;
+    int[] resultOffset = new int[ranges.size()];
+    for (int i = 0; i < ranges.size(); i++) {
+      resultOffset[i] = (int) total;
+      total += ranges.get(i).getLength();
+    }
+    if (total > Integer.MAX_VALUE - 8)
+      throw new IllegalArgumentException("Total size of ranges is too large: " + total);
+    byte[] result = new byte[(int) total];
+    if (total == 0)
+      return result;
+
+    // sort by position, then coalesce ranges that are close enough together
+    Integer[] order = new Integer[ranges.size()];
+    for (int i = 0; i < order.length; i++)
+      order[i] = i;
+    Arrays.sort(order, Comparator.comparingLong(i -> ranges.get(i).getPosition()));
+
+    long maxGap = getVectoredReadMaxGap();
+    long maxSize = Math.max(getVectoredReadMaxSize(), 1);
+    List<ByteRange> blocks = new ArrayList<>();
+    int[] blockIndex = new int[ranges.size()];
+    long blockStart = -1;
+    long blockEnd = -1;
+    for (int i : order) {
+      ByteRange range = ranges.get(i);
+      if (range.getLength() == 0)
+        continue;
+      if (blockStart < 0 || range.getPosition() - blockEnd > maxGap
+          || Math.max(blockEnd, range.getEnd()) - blockStart > maxSize) {
+        if (blockStart >= 0)
+          blocks.add(new ByteRange(blockStart, (int) (blockEnd - blockStart)));
+        blockStart = range.getPosition();
+        blockEnd = range.getEnd();
+      } else {
+        blockEnd = Math.max(blockEnd, range.getEnd());
+      }
+      blockIndex[i] = blocks.size();
+    }
+    blocks.add(new ByteRange(blockStart, (int) (blockEnd - blockStart)));
+
+    if (!extendMode) {
+      long fileLength = length();
+      for (ByteRange block : blocks) {
+        if (block.getEnd() > fileLength)
+          throw new EOFException("Reading " + location + " at " + block + " file length = " + fileLength);
+      }
+    }
+
+    byte[][] blockData = readRanges(blocks);
+    for (int i = 0; i < ranges.size(); i++) {
+      ByteRange range = ranges.get(i);
+      if (range.getLength() == 0)
+        continue;
+      ByteRange block = blocks.get(blockIndex[i]);
+      System.arraycopy(blockData[blockIndex[i]], (int) (range.getPosition() - block.getPosition()), result,
+          resultOffset[i], range.getLength());
+    }
+    return result;
+  }
+
+  /**
+   * Read each of the coalesced ranges of readVectored(), without using the buffer or the file pointer.
+   * The ranges do not overlap, and are sorted by position.
+   * The default reads them one after the other; remote files may read them concurrently.
+   *
+   * @param blocks the ranges to read
+   * @return the contents of each range, in the same order
+   * @throws IOException if an I/O error occurs.
+   */
+  protected byte[][] readRanges(List<ByteRange> blocks) throws IOException {
+    byte[][] result = new byte[blocks.size()][];
+    for (int i = 0; i < blocks.size(); i++) {
+      ByteRange block = blocks.get(i);
+      result[i] = new byte[block.getLength()];
+      int n = 0;
+      while (n < block.getLength()) {
+        int count = read_(block.getPosition() + n, result[i], n, block.getLength() - n);
+        if (count <= 0)
+          throw new EOFException("Reading " + location + " at " + block + " file length = " + length());
+        n += count;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * readVectored() coalesces two ranges if the gap between them is no more than this many bytes.
+   * The default is the buffer size, ie the read is merged if it would cost less than one more buffer fill.
+   */
+  protected long getVectoredReadMaxGap() {
+    return buffer.length;
+  }
+
+  /** readVectored() does not coalesce ranges into a read larger than this many bytes. */
+  protected long getVectoredReadMaxSize() {
+    return 16 * 1024 * 1024;
+  }
+
   /**
    * Skips exactly <code>n</code> bytes of input.
    * This method blocks until all the bytes are skipped, the end of
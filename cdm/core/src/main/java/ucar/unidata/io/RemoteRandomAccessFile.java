@@ -8,11 +8,19 @@ package ucar.unidata.io;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.Nonnull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +39,19 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
   // default cache time to live in milliseconds
   private static final long defaultReadCacheTimeToLive = 30 * 1000;
 
+  /** System property for the number of threads used for concurrent range requests by readVectored(). */
+  public static final String VECTORED_THREADS_PROPERTY = "ucar.unidata.io.remote.vectoredThreads";
+  // coalesce ranges separated by less than this, since another request costs more than reading the gap
+  private static final long vectoredReadMaxGap = 1024 * 1024;
+  // but split large reads, so they can be fetched concurrently
+  private static final long vectoredReadMaxSize = 8 * 1024 * 1024;
+
+  private static class VectoredExecutor {
+    static final ExecutorService executor = Executors.newFixedThreadPool(
+        Math.max(1, Integer.getInteger(VECTORED_THREADS_PROPERTY, 8)),
+        new ThreadFactoryBuilder().setNameFormat("remote-read-%d").setDaemon(true).build());
+  }
+
   protected final String url;
   private final boolean readCacheEnabled;
   private final int readCacheBlockSize;
@@ -147,6 +168,60 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
     return buffer;
   }
 
+  /**
+   * Read the coalesced ranges of readVectored() with concurrent requests to the remote service,
+   * bypassing the read cache.
+   */
+  @Override
+  protected byte[][] readRanges(List<ByteRange> blocks) throws IOException {
+    if (blocks.size() == 1)
+      return new byte[][] {readRemoteFully(blocks.get(0))};
+
+    List<Future<byte[]>> futures = new ArrayList<>(blocks.size());
+    for (ByteRange block : blocks)
+      futures.add(VectoredExecutor.executor.submit(() -> readRemoteFully(block)));
+
+    byte[][] result = new byte[blocks.size()][];
+    try {
+      for (int i = 0; i < futures.size(); i++)
+        result[i] = futures.get(i).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted reading " + url);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      throw new IOException(cause);
+    } finally {
+      for (Future<byte[]> future : futures)
+        future.cancel(true);
+    }
+    return result;
+  }
+
+  private byte[] readRemoteFully(ByteRange block) throws IOException {
+    byte[] data = new byte[block.getLength()];
+    int n = 0;
+    while (n < data.length) {
+      int count = readRemote(block.getPosition() + n, data, n, data.length - n);
+      if (count <= 0)
+        throw new EOFException("Reading " + url + " at " + block + " file length = " + length());
+      n += count;
+    }
+    return data;
+  }
+
+  @Override
+  protected long getVectoredReadMaxGap() {
+    return vectoredReadMaxGap;
+  }
+
+  @Override
+  protected long getVectoredReadMaxSize() {
+    return vectoredReadMaxSize;
+  }
+
   @Override
   public long readToByteChannel(WritableByteChannel dest, long offset, long nbytes) throws IOException {
     int n = (int) nbytes;
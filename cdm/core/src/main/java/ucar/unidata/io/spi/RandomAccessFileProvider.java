@@ -15,4 +15,12 @@ public interface RandomAccessFileProvider {
 
   /** Open a location that this Provider is the owner of. */
   RandomAccessFile open(String location) throws IOException;
+
+  /**
+   * Determine if this Provider reads the location as it is, even though its name looks like a compressed file
+   * (eg ends with .zip), so that it should not be uncompressed before it is opened.
+   */
+  default boolean isCompressionHandled(String location) {
+    return false;
+  }
 }
@@ -8,6 +8,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.fail;
 
 import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.Test;
 import ucar.ma2.InvalidRangeException;
@@ -69,4 +70,17 @@ public class TestIndexFn {
     assertThat(subset.length()).isEqualTo(5);
   }
 
+  @Test
+  public void testIteratorFromElement() throws InvalidRangeException {
+    int[] shape = new int[] {4, 5};
+    IndexFn index = IndexFn.builder(shape).build();
+    IndexFn subset = index.section(ImmutableList.of(new Range(0, 3, 2), new Range(1, 3)));
+    assertThat(subset.toString()).isEqualTo("1, 2, 3, 11, 12, 13");
+
+    // the start element is in canonical order, not a position in the storage
+    List<Integer> result = new ArrayList<>();
+    subset.iterator(4, 2).forEachRemaining(result::add);
+    assertThat(result).containsExactly(12, 13).inOrder();
+  }
+
 }
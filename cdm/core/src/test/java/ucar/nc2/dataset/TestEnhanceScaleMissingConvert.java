@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.dataset;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import ucar.array.ArraysConvert;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.IndexIterator;
+import ucar.nc2.Attribute;
+import ucar.nc2.VariableSimpleBuilder;
+import ucar.nc2.VariableSimpleIF;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.dataset.NetcdfDataset.Enhance;
+
+/** Compare the array conversions of EnhanceScaleMissingUnsignedImpl with converting each element. */
+public class TestEnhanceScaleMissingConvert {
+  private static final DataType[] dataTypes = {DataType.BYTE, DataType.UBYTE, DataType.SHORT, DataType.USHORT,
+      DataType.INT, DataType.UINT, DataType.LONG, DataType.ULONG, DataType.FLOAT, DataType.DOUBLE};
+
+  // variables with each data type and a mix of attributes
+  private static List<VariableSimpleIF> makeVariables() {
+    List<VariableSimpleIF> result = new ArrayList<>();
+    for (DataType dt : dataTypes) {
+      result.add(VariableSimpleBuilder.makeScalar("plain", null, null, dt).build());
+      result.add(VariableSimpleBuilder.makeScalar("packed", null, null, dt)
+          .addAttribute(new Attribute(CDM.SCALE_FACTOR, 0.01f)).addAttribute(new Attribute(CDM.ADD_OFFSET, 10.0f))
+          .addAttribute(Attribute.fromArray(CDM.FILL_VALUE, Array.factory(dt, new int[] {1}, makeStorage(dt, 7))))
+          .build());
+      result.add(VariableSimpleBuilder.makeScalar("doublePacked", null, null, dt)
+          .addAttribute(new Attribute(CDM.SCALE_FACTOR, 0.5)).addAttribute(new Attribute(CDM.ADD_OFFSET, -3.0))
+          .addAttribute(new Attribute(CDM.VALID_MIN, -20.0)).addAttribute(new Attribute(CDM.VALID_MAX, 40.0))
+          .build());
+      result.add(VariableSimpleBuilder.makeScalar("intScale", null, null, dt)
+          .addAttribute(new Attribute(CDM.SCALE_FACTOR, 2)).addAttribute(new Attribute(CDM.UNSIGNED, "true"))
+          .build());
+      result.add(VariableSimpleBuilder.makeScalar("missing", null, null, dt)
+          .addAttribute(
+              Attribute.fromArray(CDM.MISSING_VALUE, Array.factory(dt, new int[] {2}, makeStorage(dt, 3, 5))))
+          .addAttribute(
+              Attribute.fromArray(CDM.VALID_RANGE, Array.factory(dt, new int[] {2}, makeStorage(dt, 1, 100))))
+          .build());
+    }
+    return result;
+  }
+
+  private static Object makeStorage(DataType dt, long... vals) {
+    Array a = Array.factory(dt, new int[] {vals.length});
+    for (int i = 0; i < vals.length; i++) {
+      a.setLong(i, vals[i]);
+    }
+    return a.getStorage();
+  }
+
+  // values covering the range of the type, including negative (large unsigned) values, the special values, and NaN
+  private static Array makeData(DataType dt, int n, Random r) {
+    Array a = Array.factory(dt, new int[] {n});
+    for (int i = 0; i < n; i++) {
+      switch (r.nextInt(4)) {
+        case 0:
+          a.setLong(i, r.nextLong());
+          break;
+        case 1:
+          a.setLong(i, r.nextInt(200) - 100);
+          break;
+        case 2:
+          a.setLong(i, new long[] {1, 3, 5, 7, 100}[r.nextInt(5)]);
+          break;
+        default:
+          if (dt.isFloatingPoint())
+            a.setDouble(i, r.nextBoolean() ? Double.NaN : 1000 * r.nextGaussian());
+          else
+            a.setLong(i, r.nextInt());
+      }
+    }
+    return a;
+  }
+
+  // the conversion of each element, as it was done before the conversions were vectorized
+  private static Array convertEachElement(EnhanceScaleMissingUnsignedImpl enhance, Array in, boolean convertUnsigned,
+      boolean applyScaleOffset, boolean convertMissing) {
+    if (enhance.getSignedness() == DataType.Signedness.SIGNED)
+      convertUnsigned = false;
+    if (!enhance.hasScaleOffset())
+      applyScaleOffset = false;
+    DataType outType = in.getDataType();
+    if (convertUnsigned)
+      outType = enhance.getUnsignedConversionType();
+    if (applyScaleOffset)
+      outType = enhance.getScaledOffsetType();
+    if (outType != DataType.FLOAT && outType != DataType.DOUBLE)
+      convertMissing = false;
+
+    Array out = Array.factory(outType, in.getShape());
+    IndexIterator iterIn = in.getIndexIterator();
+    IndexIterator iterOut = out.getIndexIterator();
+    while (iterIn.hasNext()) {
+      Number value = (Number) iterIn.getObjectNext();
+      if (convertUnsigned)
+        value = enhance.convertUnsigned(value);
+      if (applyScaleOffset)
+        value = enhance.applyScaleOffset(value);
+      if (convertMissing)
+        value = enhance.convertMissing(value);
+      iterOut.setObjectNext(value);
+    }
+    return out;
+  }
+
+  private static void checkSame(String msg, int i, Object want, Object got) {
+    if (!want.equals(got)) { // NaN equals NaN
+      assertWithMessage(msg + " [" + i + "]").that(got).isEqualTo(want);
+    }
+  }
+
+  private static void checkSame(String msg, Array want, Array got) {
+    assertWithMessage(msg).that(got.getDataType()).isEqualTo(want.getDataType());
+    assertWithMessage(msg).that(got.getShape()).isEqualTo(want.getShape());
+    for (int i = 0; i < want.getSize(); i++) {
+      checkSame(msg, i, want.getObject(i), got.getObject(i));
+    }
+  }
+
+  private static void checkSame(String msg, Array want, ucar.array.Array<?> got) {
+    checkSame(msg, want, ArraysConvert.convertFromArray(got));
+    // element access, not through the storage iterator
+    ucar.array.Array<?> got1D = ucar.array.Arrays.reshape(got, new int[] {(int) got.length()});
+    for (int i = 0; i < want.getSize(); i += 7) {
+      checkSame(msg, i, want.getObject(i), got1D.get(i));
+    }
+    Iterator<?> iter = got.iterator();
+    for (int i = 0; i < want.getSize(); i++) {
+      checkSame(msg, i, want.getObject(i), iter.next());
+    }
+  }
+
+  private static void checkConversions(int n, int minFlags) {
+    Random r = new Random(n);
+    for (VariableSimpleIF v : makeVariables()) {
+      EnhanceScaleMissingUnsignedImpl enhance =
+          new EnhanceScaleMissingUnsignedImpl(v, EnumSet.allOf(Enhance.class), true, true, true);
+      Array data = makeData(v.getDataType(), n, r);
+      ucar.array.Array<?> array = ArraysConvert.convertToArray(data);
+
+      for (int flags = minFlags; flags < 8; flags++) {
+        boolean unsigned = (flags & 1) != 0;
+        boolean scaleOffset = (flags & 2) != 0;
+        boolean missing = (flags & 4) != 0;
+        String msg = v.getShortName() + " " + v.getDataType() + " " + flags;
+        Array want = convertEachElement(enhance, data, unsigned, scaleOffset, missing);
+
+        checkSame(msg, want, enhance.convert(data, unsigned, scaleOffset, missing));
+        checkSame(msg, want, enhance.convertArray(array, unsigned, scaleOffset, missing));
+        checkSame(msg, want, enhance.convertArrayView(array, unsigned, scaleOffset, missing));
+      }
+    }
+  }
+
+  @Test
+  public void testSameAsEachElement() {
+    checkConversions(1000, 1);
+  }
+
+  @Test
+  public void testLargeArrays() {
+    // large enough to be converted in parallel chunks
+    checkConversions(2 * 64 * 1024 + 3, 7);
+  }
+
+  @Test
+  public void testViewOfSection() throws Exception {
+    VariableSimpleIF v = VariableSimpleBuilder.makeScalar("packed", null, null, DataType.SHORT)
+        .addAttribute(new Attribute(CDM.SCALE_FACTOR, 0.5f)).addAttribute(new Attribute(CDM.FILL_VALUE, (short) -1))
+        .build();
+    EnhanceScaleMissingUnsignedImpl enhance =
+        new EnhanceScaleMissingUnsignedImpl(v, EnumSet.allOf(Enhance.class), true, true, true);
+
+    short[] vals = new short[60];
+    for (int i = 0; i < vals.length; i++) {
+      vals[i] = (short) (i % 7 == 0 ? -1 : i);
+    }
+    ucar.array.Array<Short> data = ucar.array.Arrays.factory(DataType.SHORT, new int[] {6, 10}, vals);
+    ucar.array.Array<Short> section = ucar.array.Arrays.section(data,
+        new ucar.ma2.Section("1:4:3,2:8:2").getRanges());
+
+    ucar.array.Array<?> view = enhance.convertArrayView(section, true, true, true);
+    assertThat(view.getDataType()).isEqualTo(DataType.FLOAT);
+    assertThat(view.getShape()).isEqualTo(new int[] {2, 4});
+    assertThat(view.get(0, 0)).isEqualTo(6.0f);
+    assertThat(view.get(0, 1)).isEqualTo(Float.NaN); // 14 is the fill value
+    assertThat(view.get(1, 1)).isEqualTo(22.0f);
+    assertThat(view.get(1, 3)).isEqualTo(24.0f);
+    checkSame("section", enhance.convert(ArraysConvert.convertFromArray(section), true, true, true), view);
+  }
+}
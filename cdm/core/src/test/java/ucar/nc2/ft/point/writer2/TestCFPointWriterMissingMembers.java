@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.ft.point.writer2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.StructureData;
+import ucar.ma2.StructureDataFromMember;
+import ucar.ma2.StructureMembers;
+import ucar.nc2.Attribute;
+import ucar.nc2.AttributeContainerMutable;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.VariableSimpleBuilder;
+import ucar.nc2.VariableSimpleIF;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.internal.util.CompareNetcdf2;
+import ucar.nc2.iosp.NetcdfFormatUtils;
+import ucar.nc2.time.CalendarDateUnit;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+/** Test that the classic model CF point writer does not write the members that a record does not have. */
+public class TestCFPointWriterMissingMembers {
+  private static final int nrecs = 10;
+  private static final List<String> dataNames = ImmutableList.of("temp", "pres", "wind");
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final List<VariableSimpleIF> dataVars = ImmutableList.of(
+      VariableSimpleBuilder.makeScalar("temp", "temperature", "K", DataType.FLOAT)
+          .addAttribute(new Attribute(CDM.FILL_VALUE, -999f)).build(),
+      VariableSimpleBuilder.makeScalar("pres", "pressure", "hPa", DataType.FLOAT).build(),
+      new VariableSimpleBuilder("wind", "wind", "m/s", DataType.FLOAT,
+          ImmutableList.of(Dimension.builder("wind_n", 3).build())).build());
+
+  // every record has the coordinates; temp is missing from odd records, pres from every third record, and
+  // wind has two of its three values in record 4 and is missing from record 7
+  private StructureData makeRecord(int recno, boolean all) {
+    StructureMembers.Builder smb = StructureMembers.builder().setName("obs");
+    smb.addMemberScalar(WriterCFPointAbstract.timeName, null, null, DataType.DOUBLE, (double) recno);
+    smb.addMemberScalar(WriterCFPointAbstract.latName, null, null, DataType.DOUBLE, 40.0 + recno);
+    smb.addMemberScalar(WriterCFPointAbstract.lonName, null, null, DataType.DOUBLE, -105.0);
+    if (all || recno % 2 == 0)
+      smb.addMemberScalar("temp", null, "K", DataType.FLOAT, 270f + recno);
+    if (all || recno % 3 != 0)
+      smb.addMemberScalar("pres", null, "hPa", DataType.FLOAT, 1000f - recno);
+    if (all || recno != 7) {
+      int n = (!all && recno == 4) ? 2 : 3;
+      float[] wind = new float[n];
+      for (int i = 0; i < n; i++)
+        wind[i] = recno + i / 10f;
+      smb.addMember("wind", null, "m/s", DataType.FLOAT, new int[] {n})
+          .setDataArray(Array.factory(DataType.FLOAT, new int[] {n}, wind));
+    }
+    return new StructureDataFromMember(smb.build());
+  }
+
+  private void writeWithPointWriter(String location, int bufferSize, boolean fill) throws IOException {
+    CFPointWriterConfig config = CFPointWriterConfig.builder().setBufferSize(bufferSize).build();
+    try (WriterCFPointCollection writer = new WriterCFPointCollection(location, new AttributeContainerMutable(null),
+        dataVars, CalendarDateUnit.of(null, "days since 2020-01-01"), null, config)) {
+      writer.writerb.setFill(fill);
+      List<VariableSimpleIF> coords = new ArrayList<>();
+      coords.add(VariableSimpleBuilder.makeScalar(WriterCFPointAbstract.timeName, "time", "days since 2020-01-01",
+          DataType.DOUBLE).build());
+      coords.add(VariableSimpleBuilder
+          .makeScalar(WriterCFPointAbstract.latName, "latitude", CDM.LAT_UNITS, DataType.DOUBLE).build());
+      coords.add(VariableSimpleBuilder
+          .makeScalar(WriterCFPointAbstract.lonName, "longitude", CDM.LON_UNITS, DataType.DOUBLE).build());
+      writer.writeHeader(coords, null, null, makeRecord(0, true), "time latitude longitude");
+
+      int recno = 0;
+      for (int i = 0; i < nrecs; i++)
+        recno = writer.writeStructureData(recno, writer.record, makeRecord(i, false), writer.dataMap);
+      writer.finish();
+    }
+  }
+
+  // what the writer did before the records were buffered: write each member of each record by itself
+  private void writeEachMember(String location, boolean fill) throws IOException, InvalidRangeException {
+    NetcdfFormatWriter.Builder writerb = NetcdfFormatWriter.createNewNetcdf3(location).setFill(fill);
+    writerb.addUnlimitedDimension("obs");
+    writerb.addDimension("wind_n", 3);
+    writerb.addVariable("temp", DataType.FLOAT, "obs").addAttribute(new Attribute(CDM.FILL_VALUE, -999f));
+    writerb.addVariable("pres", DataType.FLOAT, "obs");
+    writerb.addVariable("wind", DataType.FLOAT, "obs wind_n");
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      for (int recno = 0; recno < nrecs; recno++) {
+        StructureData sdata = makeRecord(recno, false);
+        for (StructureMembers.Member m : sdata.getMembers()) {
+          if (!dataNames.contains(m.getName()))
+            continue;
+          Array org = sdata.getArray(m);
+          int[] origin = new int[org.getRank() + 1];
+          origin[0] = recno;
+          writer.write(writer.findVariable(m.getName()), origin, Array.makeArrayRankPlusOne(org));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testMissingMembersAreNotWritten() throws IOException, InvalidRangeException {
+    checkAgainstEachMember(false);
+  }
+
+  // with fill on, the values that are not written are the fill values, so writing anything else would show
+  @Test
+  public void testMissingMembersAreFilled() throws IOException, InvalidRangeException {
+    checkAgainstEachMember(true);
+    String location = tempFolder.newFile().getPath();
+    writeWithPointWriter(location, 4, true);
+    try (NetcdfFile ncfile = NetcdfFiles.open(location)) {
+      Array temp = ncfile.findVariable("temp").read();
+      Array wind = ncfile.findVariable("wind").read();
+      for (int recno = 1; recno < nrecs; recno += 2)
+        assertThat(temp.getFloat(recno)).isEqualTo(-999f);
+      assertThat(wind.getFloat(4 * 3 + 2)).isEqualTo(NetcdfFormatUtils.NC_FILL_FLOAT);
+      assertThat(wind.getFloat(7 * 3)).isEqualTo(NetcdfFormatUtils.NC_FILL_FLOAT);
+    }
+  }
+
+  private void checkAgainstEachMember(boolean fill) throws IOException, InvalidRangeException {
+    String expected = tempFolder.newFile().getPath();
+    writeEachMember(expected, fill);
+
+    for (int bufferSize : new int[] {1, 4, 100}) {
+      String location = tempFolder.newFile().getPath();
+      writeWithPointWriter(location, bufferSize, fill);
+
+      try (NetcdfFile org = NetcdfFiles.open(expected); NetcdfFile copy = NetcdfFiles.open(location)) {
+        for (String name : dataNames) {
+          Array want = org.findVariable(name).read();
+          Array got = copy.findVariable(name).read();
+          assertThat(got.getShape()).isEqualTo(want.getShape());
+          assertThat(CompareNetcdf2.compareData(name + " bufferSize=" + bufferSize, want, got)).isTrue();
+        }
+
+        // the values that were written
+        Array temp = copy.findVariable("temp").read();
+        Array wind = copy.findVariable("wind").read();
+        for (int recno = 0; recno < nrecs; recno += 2)
+          assertThat(temp.getFloat(recno)).isEqualTo(270f + recno);
+        assertThat(wind.getFloat(4 * 3 + 1)).isEqualTo(4.1f);
+        assertThat(wind.getFloat(8 * 3 + 2)).isEqualTo(8.2f);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.ft2.coverage;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.util.Random;
+import org.junit.Test;
+import ucar.ma2.ArrayDouble;
+import ucar.nc2.dataset.CoordinateAxis2D;
+
+/** Test the spatial index of curvilinear grid cells against a search of every cell. */
+public class TestLatLonIndex2D {
+  private static final int ny = 60, nx = 80;
+
+  // a rotated, warped grid, with lon starting at lon0
+  private static ArrayDouble.D2[] makeGrid(double lon0) {
+    ArrayDouble.D2 lat = new ArrayDouble.D2(ny, nx);
+    ArrayDouble.D2 lon = new ArrayDouble.D2(ny, nx);
+    for (int y = 0; y < ny; y++) {
+      for (int x = 0; x < nx; x++) {
+        lat.set(y, x, 30.0 + 0.1 * y + 0.03 * x + 0.2 * Math.sin(x / 10.0));
+        lon.set(y, x, lon0 + 0.1 * x - 0.04 * y + 0.1 * Math.cos(y / 7.0));
+      }
+    }
+    return new ArrayDouble.D2[] {CoordinateAxis2D.makeEdges(lat), CoordinateAxis2D.makeEdges(lon)};
+  }
+
+  // point in convex quadrilateral
+  private static boolean inCell(ArrayDouble.D2 latEdge, ArrayDouble.D2 lonEdge, int row, int col, double lat,
+      double lon) {
+    double[] xs = {lonEdge.get(row, col), lonEdge.get(row, col + 1), lonEdge.get(row + 1, col + 1),
+        lonEdge.get(row + 1, col)};
+    double[] ys = {latEdge.get(row, col), latEdge.get(row, col + 1), latEdge.get(row + 1, col + 1),
+        latEdge.get(row + 1, col)};
+    int pos = 0, neg = 0;
+    for (int k = 0; k < 4; k++) {
+      int k1 = (k + 1) % 4;
+      double cross = (xs[k1] - xs[k]) * (lat - ys[k]) - (ys[k1] - ys[k]) * (lon - xs[k]);
+      if (cross > 0)
+        pos++;
+      else if (cross < 0)
+        neg++;
+    }
+    return pos == 4 || neg == 4;
+  }
+
+  private static double centerDistance(ArrayDouble.D2 latEdge, ArrayDouble.D2 lonEdge, int row, int col, double lat,
+      double lon) {
+    double clat = (latEdge.get(row, col) + latEdge.get(row, col + 1) + latEdge.get(row + 1, col)
+        + latEdge.get(row + 1, col + 1)) / 4;
+    double clon = (lonEdge.get(row, col) + lonEdge.get(row, col + 1) + lonEdge.get(row + 1, col)
+        + lonEdge.get(row + 1, col + 1)) / 4;
+    double dlon = (lon - clon) * Math.cos(Math.toRadians(lat));
+    return (lat - clat) * (lat - clat) + dlon * dlon;
+  }
+
+  private static void checkIndex(double lon0, double lonOffset) {
+    ArrayDouble.D2[] edges = makeGrid(lon0);
+    ArrayDouble.D2 latEdge = edges[0];
+    ArrayDouble.D2 lonEdge = edges[1];
+    LatLonIndex2D index = new LatLonIndex2D(latEdge, lonEdge);
+    assertThat(index.getNrows()).isEqualTo(ny);
+    assertThat(index.getNcols()).isEqualTo(nx);
+
+    Random r = new Random(1234);
+    int[] rectIndex = new int[2];
+    int nfound = 0;
+    for (int i = 0; i < 500; i++) {
+      double lat = 29.0 + 11.0 * r.nextDouble();
+      double lon = lon0 - 4.0 + 14.0 * r.nextDouble();
+      String msg = lat + "," + lon;
+
+      // the query lon may be in another range of 360 degrees
+      if (index.findContainingCell(lat, lon + lonOffset, rectIndex)) {
+        assertWithMessage(msg).that(inCell(latEdge, lonEdge, rectIndex[0], rectIndex[1], lat, lon)).isTrue();
+        nfound++;
+      } else {
+        for (int row = 0; row < ny; row++) {
+          for (int col = 0; col < nx; col++)
+            assertWithMessage(msg).that(inCell(latEdge, lonEdge, row, col, lat, lon)).isFalse();
+        }
+      }
+
+      assertThat(index.findNearestCell(lat, lon + lonOffset, rectIndex)).isTrue();
+      double got = centerDistance(latEdge, lonEdge, rectIndex[0], rectIndex[1], lat, lon);
+      for (int row = 0; row < ny; row++) {
+        for (int col = 0; col < nx; col++)
+          assertWithMessage(msg).that(got).isAtMost(centerDistance(latEdge, lonEdge, row, col, lat, lon) + 1.0e-9);
+      }
+    }
+    assertThat(nfound).isGreaterThan(100);
+  }
+
+  @Test
+  public void testSameAsExhaustive() {
+    checkIndex(-100.0, 0.0);
+  }
+
+  @Test
+  public void testLongitudeNormalization() {
+    checkIndex(-100.0, 360.0);
+    checkIndex(175.0, -360.0);
+  }
+
+  @Test
+  public void testBulk() {
+    ArrayDouble.D2[] edges = makeGrid(-100.0);
+    LatLonIndex2D index = new LatLonIndex2D(edges[0], edges[1]);
+    double[] lat = {34.0, 35.0, 0.0, Double.NaN};
+    double[] lon = {-98.0, -96.0, 0.0, -97.0};
+    int[] rows = new int[4];
+    int[] cols = new int[4];
+    assertThat(index.findContainingCells(lat, lon, rows, cols, 4)).isEqualTo(2);
+    int[] rectIndex = new int[2];
+    assertThat(index.findContainingCell(lat[1], lon[1], rectIndex)).isTrue();
+    assertThat(rows[1]).isEqualTo(rectIndex[0]);
+    assertThat(cols[1]).isEqualTo(rectIndex[1]);
+    assertThat(rows[2]).isEqualTo(-1);
+    assertThat(cols[3]).isEqualTo(-1);
+
+    // far outside of the grid, the nearest cell is on its edge
+    assertThat(index.findNearestCells(lat, lon, rows, cols, 4)).isEqualTo(3);
+    assertThat(rows[2]).isEqualTo(0);
+    assertThat(rows[3]).isEqualTo(-1);
+  }
+
+  @Test
+  public void testMissing() {
+    ArrayDouble.D2[] edges = makeGrid(-100.0);
+    ArrayDouble.D2 latEdge = edges[0];
+    ArrayDouble.D2 lonEdge = edges[1];
+    // the cells around this corner are missing
+    ArrayDouble.D2 latMissing = (ArrayDouble.D2) latEdge.copy();
+    latMissing.set(10, 10, Double.NaN);
+    LatLonIndex2D index = new LatLonIndex2D(latMissing, lonEdge);
+
+    int[] rectIndex = new int[2];
+    for (int row = 0; row < ny; row++) {
+      for (int col = 0; col < nx; col++) {
+        boolean missing = (row == 9 || row == 10) && (col == 9 || col == 10);
+        double lat = (latEdge.get(row, col) + latEdge.get(row + 1, col + 1)) / 2;
+        double lon = (lonEdge.get(row, col) + lonEdge.get(row + 1, col + 1)) / 2;
+        if (missing) {
+          assertThat(index.findNearestCell(lat, lon, rectIndex)).isTrue();
+          assertThat(rectIndex[0] != row || rectIndex[1] != col).isTrue();
+        } else {
+          assertThat(index.findContainingCell(lat, lon, rectIndex)).isTrue();
+          assertThat(rectIndex).isEqualTo(new int[] {row, col});
+        }
+      }
+    }
+
+    ArrayDouble.D2 allMissing = new ArrayDouble.D2(3, 3);
+    for (int i = 0; i < 9; i++)
+      allMissing.setDouble(i, Double.NaN);
+    index = new LatLonIndex2D(allMissing, allMissing);
+    assertThat(index.findContainingCell(0.0, 0.0, rectIndex)).isFalse();
+    assertThat(index.findNearestCell(0.0, 0.0, rectIndex)).isFalse();
+  }
+}
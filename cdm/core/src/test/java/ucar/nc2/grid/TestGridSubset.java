@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grid;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Formatter;
+import java.util.Iterator;
+import org.junit.Test;
+import ucar.array.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
+import ucar.nc2.dataset.NetcdfDataset;
+import ucar.nc2.dataset.NetcdfDatasets;
+import ucar.nc2.ft2.coverage.SubsetParams;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.unidata.geoloc.LatLonPoint;
+import ucar.unidata.geoloc.LatLonRect;
+import ucar.unidata.util.test.TestDir;
+
+/** Test {@link Grid#readData} subsetting by coordinate values. */
+public class TestGridSubset {
+  private static final String projFile =
+      TestDir.cdmLocalTestDataDir + "ncml/fmrc/GFS_Puerto_Rico_191km_20090730_0000.nc";
+  private static final String latlonFile = TestDir.cdmLocalTestDataDir + "ncml/nested/1980/Test19980.nc";
+
+  private static GridDataset open(String location) throws IOException {
+    Formatter errlog = new Formatter();
+    return GridDatasetFactory.openGridDataset(location, errlog).orElseThrow(() -> new IOException(errlog.toString()));
+  }
+
+  private static LatLonRect makeLatLonRect(double south, double west, double north, double east) {
+    return new LatLonRect.Builder(LatLonPoint.create(south, west), LatLonPoint.create(north, east)).build();
+  }
+
+  // the subset data is the same as reading the section of the variable given by the subsetted axes
+  private static void checkData(String location, Grid grid, GridReferencedArray geoArray) throws Exception {
+    GridCoordinateSystem cs = geoArray.csSubset();
+    Section.Builder want = Section.builder();
+    for (GridAxis axis : new GridAxis[] {cs.getTimeAxis(), cs.getVerticalAxis(), cs.getYHorizAxis(),
+        cs.getXHorizAxis()}) {
+      Range range = ((GridAxis1D) axis).getRange();
+      assertThat(range.length()).isEqualTo(axis.getNcoords());
+      want.appendRange(range);
+    }
+    Section section = want.build();
+    assertThat(geoArray.data().getShape()).isEqualTo(section.getShape());
+
+    try (NetcdfDataset ncd = NetcdfDatasets.openDataset(location)) {
+      Array<?> expected = ncd.findVariable(grid.getName()).readArray(section);
+      Iterator<?> expectedIter = expected.iterator();
+      for (Object val : geoArray.data()) {
+        assertThat(val).isEqualTo(expectedIter.next());
+      }
+    }
+  }
+
+  @Test
+  public void testProjection() throws Exception {
+    try (GridDataset gds = open(projFile)) {
+      Grid grid = gds.findGrid("Temperature_isobaric");
+      assertThat(grid).isNotNull();
+      GridCoordinateSystem cs = grid.getCoordinateSystem();
+      assertThat(cs.isLatLon()).isFalse();
+      GridAxis1DTime time = cs.getTimeAxis();
+
+      SubsetParams params = new SubsetParams();
+      params.setLatLonBoundingBox(makeLatLonRect(15, -70, 20, -60));
+      params.setTimeRange(CalendarDateRange.of(time.getCalendarDate(1), time.getCalendarDate(20)));
+      params.set(SubsetParams.timeStride, 2);
+      params.setVertCoord(cs.getVerticalAxis().getCoordMidpoint(1));
+      GridReferencedArray geoArray = grid.readData(params);
+      assertThat(geoArray.data().getShape()).isEqualTo(new int[] {10, 1, 6, 9});
+
+      GridAxis1DTime subsetTime = geoArray.csSubset().getTimeAxis();
+      assertThat(subsetTime.getNcoords()).isEqualTo(10);
+      assertThat(subsetTime.getCalendarDate(0)).isEqualTo(time.getCalendarDate(1));
+      assertThat(subsetTime.getCalendarDate(9)).isEqualTo(time.getCalendarDate(19));
+      checkData(projFile, grid, geoArray);
+    }
+  }
+
+  @Test
+  public void testLatLon() throws Exception {
+    try (GridDataset gds = open(latlonFile)) {
+      Grid grid = gds.findGrid("CMu25h");
+      assertThat(grid.getCoordinateSystem().isLatLon()).isTrue();
+
+      // the longitude axis is 0 - 360
+      SubsetParams params = new SubsetParams();
+      params.setLatLonBoundingBox(makeLatLonRect(37, -123, 38, -122.8));
+      GridReferencedArray geoArray = grid.readData(params);
+      assertThat(geoArray.data().getShape()).isEqualTo(new int[] {1, 1, 13, 9});
+      assertThat(geoArray.csSubset().getXHorizAxis().getStartValue()).isWithin(0.01).of(237.0);
+      checkData(latlonFile, grid, geoArray);
+    }
+  }
+
+  @Test
+  public void testHorizStride() throws Exception {
+    try (GridDataset gds = open(projFile)) {
+      Grid grid = gds.findGrid("Temperature_isobaric");
+      GridReferencedArray geoArray = grid.readData(new SubsetParams().setHorizStride(2));
+      assertThat(geoArray.data().getShape()).isEqualTo(new int[] {21, 6, 20, 23});
+      assertThat(geoArray.csSubset().getXHorizAxis().getRange().stride()).isEqualTo(2);
+      checkData(projFile, grid, geoArray);
+
+      // no subset
+      geoArray = grid.readData(new SubsetParams());
+      assertThat(geoArray.data().getShape()).isEqualTo(new int[] {21, 6, 39, 45});
+    }
+  }
+
+  @Test
+  public void testNoPointsInSubset() throws Exception {
+    try (GridDataset gds = open(latlonFile)) {
+      Grid grid = gds.findGrid("CMu25h");
+      SubsetParams params = new SubsetParams();
+      params.setLatLonBoundingBox(makeLatLonRect(-40, 10, -30, 20));
+      try {
+        grid.readData(params);
+        fail();
+      } catch (InvalidRangeException e) {
+        assertThat(e.getMessage()).contains("no points in subset");
+      }
+    }
+  }
+}
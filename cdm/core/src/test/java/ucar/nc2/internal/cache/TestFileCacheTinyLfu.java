@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.dataset.DatasetUrl;
+import ucar.nc2.dataset.NetcdfDatasets;
+import ucar.unidata.util.test.TestDir;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/** Test FileCacheTinyLfu */
+public class TestFileCacheTinyLfu {
+  private static final int WEIGHT = 100;
+
+  // a file that only lives in memory
+  private static class MyFile implements FileCacheable {
+    final String location;
+    FileCacheIF cache;
+    boolean closed;
+
+    MyFile(String location) {
+      this.location = location;
+    }
+
+    @Override
+    public String getLocation() {
+      return location;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      if (cache != null && cache.release(this))
+        return;
+      closed = true;
+    }
+
+    @Override
+    public long getLastModified() {
+      return 0;
+    }
+
+    @Override
+    public void setFileCache(FileCacheIF fileCache) {
+      this.cache = fileCache;
+    }
+
+    @Override
+    public void release() {}
+
+    @Override
+    public void reacquire() {}
+
+    @Override
+    public long getMemoryEstimate() {
+      return WEIGHT;
+    }
+  }
+
+  private final List<MyFile> opened = new ArrayList<>();
+
+  private final FileFactory factory = (location, buffer_size, cancelTask, iospMessage) -> {
+    MyFile file = new MyFile(location.getTrueurl());
+    synchronized (opened) {
+      opened.add(file);
+    }
+    return file;
+  };
+
+  private MyFile acquire(FileCacheIF cache, String location) throws IOException {
+    return (MyFile) cache.acquire(factory, DatasetUrl.create(null, location));
+  }
+
+  private int countClosed() {
+    return (int) opened.stream().filter(f -> f.closed).count();
+  }
+
+  @Test
+  public void testHitAndMiss() throws IOException {
+    FileCacheTinyLfu cache = new FileCacheTinyLfu("test", 100 * WEIGHT, 0, 0);
+    MyFile file = acquire(cache, "a");
+    file.close();
+    assertThat(file.closed).isFalse();
+    assertThat(acquire(cache, "a")).isSameInstanceAs(file);
+
+    // in use, so another copy is opened
+    MyFile file2 = acquire(cache, "a");
+    assertThat(file2).isNotSameInstanceAs(file);
+    assertThat(cache.getHitCount()).isEqualTo(1);
+    assertThat(cache.getMissCount()).isEqualTo(2);
+    assertThat(cache.getOpenHandles()).isEqualTo(2);
+    assertThat(cache.getInUseCount()).isEqualTo(2);
+    assertThat(cache.getWeight()).isEqualTo(2 * WEIGHT);
+
+    file.close();
+    file2.close();
+    assertThat(cache.getInUseCount()).isEqualTo(0);
+    cache.eject("a");
+    assertThat(cache.getOpenHandles()).isEqualTo(0);
+    assertThat(cache.getWeight()).isEqualTo(0);
+    assertThat(countClosed()).isEqualTo(2);
+
+    Formatter f = new Formatter();
+    cache.showCache(f);
+    assertThat(f.toString()).contains("hits= 1 miss= 2");
+  }
+
+  @Test
+  public void testEvictByWeight() throws IOException {
+    FileCacheTinyLfu cache = new FileCacheTinyLfu("test", 10 * WEIGHT, 0, 0);
+
+    // files in use are not evicted
+    List<MyFile> inUse = new ArrayList<>();
+    for (int i = 0; i < 15; i++)
+      inUse.add(acquire(cache, "file" + i));
+    assertThat(cache.getOpenHandles()).isEqualTo(15);
+    assertThat(countClosed()).isEqualTo(0);
+
+    for (MyFile file : inUse)
+      file.close();
+    assertThat(cache.getWeight()).isAtMost(10 * WEIGHT);
+    assertThat(cache.getOpenHandles()).isEqualTo(10);
+    assertThat(cache.getEvictionCount()).isEqualTo(5);
+    assertThat(countClosed()).isEqualTo(5);
+
+    cache.clearCache(false);
+    assertThat(cache.getOpenHandles()).isEqualTo(0);
+    assertThat(countClosed()).isEqualTo(15);
+  }
+
+  @Test
+  public void testEvictByCount() throws IOException {
+    FileCacheTinyLfu cache = new FileCacheTinyLfu("test", Long.MAX_VALUE, 4, 0);
+    for (int i = 0; i < 10; i++)
+      acquire(cache, "file" + i).close();
+    assertThat(cache.getOpenHandles()).isEqualTo(4);
+    assertThat(countClosed()).isEqualTo(6);
+  }
+
+  @Test
+  public void testFrequentFilesAreKept() throws IOException {
+    FileCacheTinyLfu cache = new FileCacheTinyLfu("test", 10 * WEIGHT, 0, 0);
+    for (int n = 0; n < 5; n++) {
+      for (int i = 0; i < 5; i++)
+        acquire(cache, "hot" + i).close();
+    }
+
+    // a scan of files that are read once does not flush the ones used all the time
+    for (int i = 0; i < 50; i++)
+      acquire(cache, "scan" + i).close();
+    assertThat(cache.getWeight()).isAtMost(10 * WEIGHT);
+
+    long hits = cache.getHitCount();
+    for (int i = 0; i < 5; i++)
+      acquire(cache, "hot" + i).close();
+    assertThat(cache.getHitCount()).isEqualTo(hits + 5);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIsEvicted() throws IOException {
+    FileCacheTinyLfu cache = new FileCacheTinyLfu("test", 4 * WEIGHT, 0, 0);
+    MyFile a = acquire(cache, "a");
+    a.close();
+    MyFile b = acquire(cache, "b");
+    b.close();
+    acquire(cache, "c").close();
+    acquire(cache, "d").close();
+    assertThat(countClosed()).isEqualTo(0);
+
+    // a is now used more recently than b
+    assertThat(acquire(cache, "a")).isSameInstanceAs(a);
+    a.close();
+
+    // the first time, e is not used more often than the files in the cache, so it is not kept
+    MyFile e = acquire(cache, "e");
+    e.close();
+    assertThat(e.closed).isTrue();
+    assertThat(b.closed).isFalse();
+
+    // the second time it is, and replaces the least recently used file
+    e = acquire(cache, "e");
+    e.close();
+    assertThat(e.closed).isFalse();
+    assertThat(b.closed).isTrue();
+    assertThat(a.closed).isFalse();
+    assertThat(cache.getOpenHandles()).isEqualTo(4);
+  }
+
+  @Test
+  public void testDisabled() throws IOException {
+    FileCacheTinyLfu cache = new FileCacheTinyLfu("test", 10 * WEIGHT, 0, 0);
+    MyFile file = acquire(cache, "a");
+    file.close();
+    cache.disable();
+    assertThat(file.closed).isTrue();
+
+    MyFile file2 = acquire(cache, "a");
+    assertThat(file2).isNotSameInstanceAs(file);
+    file2.close();
+    assertThat(file2.closed).isTrue();
+    assertThat(cache.getOpenHandles()).isEqualTo(0);
+  }
+
+  @Test
+  public void testConcurrentAccess() throws Exception {
+    FileCacheTinyLfu cache = new FileCacheTinyLfu("test", 20 * WEIGHT, 0, 0);
+    ExecutorService pool = Executors.newFixedThreadPool(16);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 16; t++) {
+        final int seed = t;
+        futures.add(pool.submit(() -> {
+          for (int i = 0; i < 2000; i++) {
+            MyFile file = acquire(cache, "file" + ((seed * 31 + i * 7) % 50));
+            assertThat(file.closed).isFalse();
+            file.close();
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures)
+        future.get(100, TimeUnit.SECONDS);
+    } finally {
+      pool.shutdownNow();
+    }
+
+    assertThat(cache.getInUseCount()).isEqualTo(0);
+    assertThat(cache.getHitCount() + cache.getMissCount()).isEqualTo(16 * 2000);
+    assertThat(cache.getMissCount()).isEqualTo(opened.size());
+    assertThat(cache.getOpenHandles()).isEqualTo(opened.size() - countClosed());
+    assertThat(cache.getWeight()).isEqualTo(WEIGHT * cache.getOpenHandles());
+    assertThat(cache.getWeight()).isAtMost(20 * WEIGHT);
+  }
+
+  @Test
+  public void testNetcdfFile() throws IOException {
+    FileCacheTinyLfu cache = new FileCacheTinyLfu("test", 100 * 1000 * 1000, 0, 0);
+    FileFactory ncfactory = (location, buffer_size, cancelTask, iospMessage) -> NetcdfDatasets.openFile(location,
+        buffer_size, cancelTask, iospMessage);
+    DatasetUrl durl = DatasetUrl.create(null, TestDir.cdmLocalTestDataDir + "jan.nc");
+    NetcdfFile ncfile = (NetcdfFile) cache.acquire(ncfactory, durl);
+    ncfile.close();
+    assertThat(cache.acquire(ncfactory, durl)).isSameInstanceAs(ncfile);
+    assertThat(cache.getWeight()).isEqualTo(ncfile.getMemoryEstimate());
+    // the header and the RandomAccessFile buffer
+    assertThat(ncfile.getMemoryEstimate()).isGreaterThan((long) 8092);
+    ncfile.close();
+    cache.clearCache(true);
+  }
+}
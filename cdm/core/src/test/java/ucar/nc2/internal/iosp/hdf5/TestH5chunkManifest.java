@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Formatter;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import ucar.ma2.Array;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.internal.util.CompareNetcdf2;
+import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.util.test.TestDir;
+
+/** Test opening HDF5 files from an H5chunkManifest. */
+@RunWith(Parameterized.class)
+public class TestH5chunkManifest {
+
+  @Parameterized.Parameters(name = "{0}")
+  public static Collection<Object[]> getTestParameters() {
+    return Arrays.asList(new Object[][] {{"testCFGridWriter.nc4"}, {"chunked.h5"}, {"testSpecialAttributes.nc4"},
+        {"ncml/nc/ubyte_1.nc4"}, {"dataset/testRename.nc4"}});
+  }
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final String filename;
+
+  public TestH5chunkManifest(String filename) {
+    this.filename = filename;
+  }
+
+  @After
+  public void resetSearch() {
+    H5chunkManifest.setSearch(null);
+  }
+
+  private File copyTestFile() throws IOException {
+    File file = new File(tempFolder.getRoot(), new File(filename).getName());
+    Files.copy(new File(TestDir.cdmLocalTestDataDir + filename).toPath(), file.toPath(),
+        StandardCopyOption.REPLACE_EXISTING);
+    return file;
+  }
+
+  private static void writeManifest(File file) throws IOException {
+    try (NetcdfFile ncfile = NetcdfFiles.open(file.getPath());
+        OutputStream out = new FileOutputStream(file.getPath() + H5chunkManifest.SUFFIX)) {
+      H5chunkManifest.write(ncfile, out);
+    }
+  }
+
+  private static boolean openedFromManifest(NetcdfFile ncfile) {
+    H5iosp iosp = (H5iosp) ncfile.sendIospMessage(NetcdfFile.IOSP_MESSAGE_GET_IOSP);
+    return iosp.getHeader().getDataObjects().isEmpty(); // the objects in the file were not read
+  }
+
+  @Test
+  public void testSidecar() throws Exception {
+    File file = copyTestFile();
+    writeManifest(file);
+
+    H5chunkManifest.setSearch(H5chunkManifest.SIDECAR);
+    try (NetcdfFile org = NetcdfFiles.open(TestDir.cdmLocalTestDataDir + filename);
+        NetcdfFile fromManifest = NetcdfFiles.open(file.getPath())) {
+      assertThat(openedFromManifest(fromManifest)).isTrue();
+      assertThat(fromManifest.getFileTypeId()).isEqualTo(org.getFileTypeId());
+
+      Formatter f = new Formatter();
+      boolean ok = CompareNetcdf2.compareFiles(org, fromManifest, f, true, false, false);
+      assertWithMessage(f.toString()).that(ok).isTrue();
+
+      // sections, which start part way through the chunks
+      for (Variable v : org.getVariables()) {
+        if (v.getRank() == 0 || v.getSize() < 2)
+          continue;
+        Section.Builder sb = Section.builder();
+        for (int len : v.getShape())
+          sb.appendRange(len / 2, len - 1);
+        Section section = sb.build();
+        Array want = v.read(section);
+        Array got = fromManifest.findVariable(v.getFullName()).read(section);
+        assertWithMessage(v.getFullName()).that(CompareNetcdf2.compareData(v.getFullName(), want, got)).isTrue();
+      }
+    }
+  }
+
+  @Test
+  public void testDirectory() throws Exception {
+    File file = copyTestFile();
+    File dir = tempFolder.newFolder("manifests");
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (NetcdfFile ncfile = NetcdfFiles.open(file.getPath())) {
+      H5chunkManifest.write(ncfile, bos);
+    }
+    String manifest = H5chunkManifest.getManifestLocation(file.getPath(), dir.getPath());
+    assertThat(manifest).isEqualTo(new File(dir, file.getName() + H5chunkManifest.SUFFIX).getPath());
+    Files.write(new File(manifest).toPath(), bos.toByteArray());
+
+    H5chunkManifest.setSearch(dir.getPath());
+    try (NetcdfFile ncfile = NetcdfFiles.open(file.getPath())) {
+      assertThat(openedFromManifest(ncfile)).isTrue();
+    }
+  }
+
+  @Test
+  public void testOutOfDate() throws Exception {
+    File file = copyTestFile();
+    writeManifest(file);
+    // the file changed after the manifest was made
+    try (OutputStream out = new FileOutputStream(file, true)) {
+      out.write(new byte[8]);
+    }
+
+    H5chunkManifest.setSearch(H5chunkManifest.SIDECAR);
+    try (NetcdfFile ncfile = NetcdfFiles.open(file.getPath())) {
+      assertThat(openedFromManifest(ncfile)).isFalse();
+    }
+  }
+
+  @Test
+  public void testRewrittenSameLength() throws Exception {
+    File file = copyTestFile();
+    writeManifest(file);
+    // the file is written again at the same length
+    long lastModified = file.lastModified();
+    Files.write(file.toPath(), Files.readAllBytes(file.toPath()));
+    assertThat(file.setLastModified(lastModified + 10000)).isTrue();
+
+    H5chunkManifest.setSearch(H5chunkManifest.SIDECAR);
+    try (NetcdfFile ncfile = NetcdfFiles.open(file.getPath())) {
+      assertThat(openedFromManifest(ncfile)).isFalse();
+    }
+  }
+
+  @Test
+  public void testHeaderChanged() throws Exception {
+    File file = copyTestFile();
+    writeManifest(file);
+    // a byte near the start changes but the length and last modified time do not
+    long lastModified = file.lastModified();
+    try (java.io.RandomAccessFile out = new java.io.RandomAccessFile(file, "rw")) {
+      out.seek(100);
+      int b = out.read();
+      out.seek(100);
+      out.write(b ^ 0xff);
+    }
+    assertThat(file.setLastModified(lastModified)).isTrue();
+
+    H5chunkManifest.setSearch(H5chunkManifest.SIDECAR);
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      assertThat(H5chunkManifest.find(raf)).isNull();
+    }
+  }
+
+  @Test
+  public void testNoManifest() throws Exception {
+    File file = copyTestFile();
+    H5chunkManifest.setSearch(H5chunkManifest.SIDECAR);
+    try (NetcdfFile ncfile = NetcdfFiles.open(file.getPath())) {
+      assertThat(openedFromManifest(ncfile)).isFalse();
+    }
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/** Test how {@link H5tiledLayoutBB} splits the chunks it reads ahead into batches. */
+public class TestH5tiledLayoutBB {
+
+  private static List<Integer> batchEnds(int[] sizes, int maxBytes) {
+    List<Integer> ends = new ArrayList<>();
+    int from = 0;
+    while (from < sizes.length) {
+      from = H5tiledLayoutBB.batchEnd(sizes, from, maxBytes);
+      ends.add(from);
+    }
+    return ends;
+  }
+
+  @Test
+  public void testBatchesAreCapped() {
+    // together the chunks are over the cap, so they are read in several batches
+    assertThat(batchEnds(new int[] {40, 40, 40, 40, 40}, 100)).containsExactly(2, 4, 5).inOrder();
+    assertThat(batchEnds(new int[] {50, 50, 50}, 100)).containsExactly(2, 3).inOrder();
+    assertThat(batchEnds(new int[] {10, 20, 30}, 100)).containsExactly(3);
+  }
+
+  @Test
+  public void testLargeChunkIsByItself() {
+    assertThat(batchEnds(new int[] {150}, 100)).containsExactly(1);
+    assertThat(batchEnds(new int[] {10, 150, 10, 10}, 100)).containsExactly(1, 2, 4).inOrder();
+  }
+
+  @Test
+  public void testTotalDoesNotOverflow() {
+    int big = Integer.MAX_VALUE / 3;
+    // all three would be more than the largest byte array
+    assertThat(batchEnds(new int[] {big, big, big}, Integer.MAX_VALUE - 8)).containsExactly(2, 3).inOrder();
+    assertThat(batchEnds(new int[] {big, big, big}, 16 * 1024 * 1024)).containsExactly(1, 2, 3).inOrder();
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.ncml;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.MAMath;
+import ucar.ma2.Section;
+import ucar.nc2.Variable;
+import ucar.nc2.dataset.NetcdfDataset;
+import ucar.nc2.dataset.NetcdfDatasets;
+import ucar.nc2.util.CancelTask;
+
+/** Test that reading the datasets of an aggregation in parallel gives the same results as reading them serially. */
+public class TestAggParallel {
+  private static final String[] ncmlFiles =
+      {"aggExisting.xml", "aggExistingPromote.ncml", "aggExistingOne.xml", "aggSynthetic.xml", "aggSynScan.xml"};
+
+  private static NetcdfDataset open(String name, int parallelism) throws IOException {
+    String ncml = new String(Files.readAllBytes(Paths.get(TestNcmlRead.topDir + name)), StandardCharsets.UTF_8);
+    if (parallelism > 0)
+      ncml = ncml.replaceFirst("<aggregation ", "<aggregation parallelism='" + parallelism + "' ");
+    return NetcdfDatasets.openNcmlDataset(new StringReader(ncml), "file:" + TestNcmlRead.topDir + name, null);
+  }
+
+  @Test
+  public void testSameAsSerial() throws Exception {
+    for (String name : ncmlFiles) {
+      try (NetcdfDataset serial = open(name, 0); NetcdfDataset parallel = open(name, 3)) {
+        Aggregation agg = (Aggregation) parallel.sendIospMessage(NetcdfDataset.AGGREGATION);
+        assertThat(agg.getParallelism()).isEqualTo(3);
+
+        for (Variable want : serial.getVariables()) {
+          Variable got = parallel.findVariable(want.getFullName());
+          assertWithMessage(name + " " + want).that(got).isNotNull();
+          assertWithMessage(name + " " + want).that(MAMath.equals(want.read(), got.read())).isTrue();
+
+          // a strided section of the outer dimension
+          if (want.getRank() > 0 && want.getShape(0) > 2) {
+            Section.Builder sb = Section.builder().appendRange(1, want.getShape(0) - 1, 2);
+            for (int i = 1; i < want.getRank(); i++)
+              sb.appendRange(want.getShape(i));
+            Section section = sb.build();
+            assertWithMessage(name + " " + want + section)
+                .that(MAMath.equals(want.read(section), got.read(section))).isTrue();
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testReadDatasets() throws Exception {
+    try (NetcdfDataset ncd = open("aggSynScan.xml", 4)) {
+      Aggregation agg = (Aggregation) ncd.sendIospMessage(NetcdfDataset.AGGREGATION);
+      List<AggDataset> datasets = agg.getDatasets();
+      assertThat(datasets.size()).isGreaterThan(2);
+
+      // results are in dataset order
+      List<String> locations = agg.readDatasets(datasets, null, AggDataset::getLocation);
+      assertThat(locations).hasSize(datasets.size());
+      for (int i = 0; i < datasets.size(); i++)
+        assertThat(locations.get(i)).isEqualTo(datasets.get(i).getLocation());
+
+      // failures are thrown to the caller
+      try {
+        agg.readDatasets(datasets, null, ds -> {
+          throw new IOException("failed " + ds.getLocation());
+        });
+        fail();
+      } catch (IOException e) {
+        assertThat(e.getMessage()).startsWith("failed ");
+      }
+
+      // no more datasets are started once cancelled
+      AtomicInteger count = new AtomicInteger();
+      CancelTask cancelTask = CancelTask.create();
+      agg.setParallelism(1);
+      assertThat(agg.readDatasets(datasets, cancelTask, ds -> {
+        cancelTask.cancel();
+        return count.incrementAndGet();
+      })).isNull();
+      assertThat(count.get()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testSharedExecutor() throws Exception {
+    ExecutorService exec = Executors.newFixedThreadPool(2);
+    try (NetcdfDataset serial = open("aggExisting.xml", 0); NetcdfDataset parallel = open("aggExisting.xml", 0)) {
+      Array want = serial.findVariable("T").read();
+      Aggregation.setExecutor(exec);
+      assertThat(MAMath.equals(want, parallel.findVariable("T").read())).isTrue();
+    } finally {
+      Aggregation.setExecutor(null);
+      exec.shutdown();
+    }
+  }
+}
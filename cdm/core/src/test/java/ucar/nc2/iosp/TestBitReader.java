@@ -6,6 +6,8 @@
 package ucar.nc2.iosp;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import java.io.EOFException;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import org.junit.Test;
@@ -60,4 +62,22 @@ public class TestBitReader {
     assertEquals(6, (int) bu.bits2UInt(8));
   }
 
+  @Test
+  public void testSetBitOffset() throws IOException {
+    byte[] bits = new byte[] {(byte) 199, (byte) 242, (byte) 0, (byte) 0, (byte) 6, (byte) 6};
+    BitReader bu = new BitReader(bits);
+    bu.setBitOffset(10);
+    assertEquals(800, (int) bu.bits2UInt(10));
+    bu.setBitOffset(0);
+    assertEquals(799, (int) bu.bits2UInt(10));
+    bu.setBitOffset(40);
+    assertEquals(6, (int) bu.bits2UInt(8));
+    try {
+      bu.bits2UInt(9);
+      fail();
+    } catch (EOFException e) {
+      // expected
+    }
+  }
+
 }
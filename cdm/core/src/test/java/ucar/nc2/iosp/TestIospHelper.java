@@ -9,20 +9,29 @@ import static com.google.common.truth.Truth.assertThat;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import ucar.ma2.Array;
 import ucar.ma2.ArrayObject;
 import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
 import ucar.nc2.stream.NcStream;
+import ucar.unidata.io.RandomAccessFile;
 
 /** Test {@link ucar.nc2.iosp.IospHelper} */
 public class TestIospHelper {
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
 
   @Test
   public void testCopyToOutputStreamFloat() throws IOException {
@@ -163,4 +172,35 @@ public class TestIospHelper {
     }
   }
 
+  // a chunk bigger than the batch limit of readData() is read in pieces
+  @Test
+  public void testReadDataLargeChunk() throws IOException, InvalidRangeException {
+    int nelems = 5_000_000; // 20 Mbytes
+    int header = 12;
+    ByteBuffer bb = ByteBuffer.allocate(header + 4 * nelems).order(ByteOrder.BIG_ENDIAN);
+    bb.position(header);
+    for (int i = 0; i < nelems; i++) {
+      bb.putInt(i);
+    }
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), bb.array());
+
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      Layout layout = new LayoutRegular(header, 4, new int[] {nelems}, null);
+      int[] data = (int[]) IospHelper.readData(raf, layout, DataType.INT, new int[nelems], ByteOrder.BIG_ENDIAN, true);
+      for (int i = 0; i < nelems; i++) {
+        assertThat(data[i]).isEqualTo(i);
+      }
+
+      // two chunks that do not fit into one batch
+      int half = nelems / 2;
+      layout = new LayoutRegular(header, 4, new int[] {2, half}, new Section("0:1,1:" + (half - 1)));
+      data = (int[]) IospHelper.readData(raf, layout, DataType.INT, new int[nelems - 2], ByteOrder.BIG_ENDIAN, true);
+      for (int i = 0; i < half - 1; i++) {
+        assertThat(data[i]).isEqualTo(i + 1);
+        assertThat(data[half - 1 + i]).isEqualTo(half + i + 1);
+      }
+    }
+  }
+
 }
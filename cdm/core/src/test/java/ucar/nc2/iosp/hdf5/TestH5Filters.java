@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import org.junit.Test;
+
+/** Test the built in H5Filters. */
+public class TestH5Filters {
+
+  static class TestContext implements H5Filter.Context {
+    final int[] clientData;
+    final int elemSize;
+    final int chunkBytes;
+
+    TestContext(int[] clientData, int elemSize, int chunkBytes) {
+      this.clientData = clientData;
+      this.elemSize = elemSize;
+      this.chunkBytes = chunkBytes;
+    }
+
+    public int[] getClientData() {
+      return clientData;
+    }
+
+    public int getElemSize() {
+      return elemSize;
+    }
+
+    public int getChunkBytes() {
+      return chunkBytes;
+    }
+
+    public ByteOrder getByteOrder() {
+      return ByteOrder.LITTLE_ENDIAN;
+    }
+
+    public ByteBuffer allocate(int nbytes) {
+      return ByteBuffer.allocate(nbytes);
+    }
+  }
+
+  static byte[] decode(int id, byte[] in, H5Filter.Context context) throws IOException {
+    H5Filter filter = H5Filters.find(id);
+    assertThat(filter).isNotNull();
+    ByteBuffer out = filter.decode(ByteBuffer.wrap(in), context);
+    return Arrays.copyOfRange(out.array(), out.arrayOffset() + out.position(), out.arrayOffset() + out.limit());
+  }
+
+  private static byte[] testData(int n) {
+    byte[] data = new byte[n];
+    for (int i = 0; i < n; i++)
+      data[i] = (byte) (i % 7 + i / 100);
+    return data;
+  }
+
+  @Test
+  public void testRegistry() {
+    for (int id = 1; id <= 6; id++) {
+      H5Filter filter = H5Filters.find(id);
+      assertThat(filter).isNotNull();
+      assertThat(filter.getId()).isEqualTo(id);
+    }
+    assertThat(H5Filters.find(4).getName()).isEqualTo("szip");
+    assertThat(H5Filters.find(12345)).isNull();
+  }
+
+  @Test
+  public void testDeflate() throws IOException {
+    byte[] data = testData(10000);
+    Deflater deflater = new Deflater();
+    deflater.setInput(data);
+    deflater.finish();
+    byte[] compressed = new byte[20000];
+    int n = deflater.deflate(compressed);
+    deflater.end();
+
+    // chunkBytes smaller than the result, so the buffer has to grow
+    for (int chunkBytes : new int[] {10000, 100}) {
+      byte[] result = decode(1, Arrays.copyOf(compressed, n), new TestContext(new int[0], 1, chunkBytes));
+      assertThat(result).isEqualTo(data);
+    }
+  }
+
+  @Test
+  public void testShuffle() throws IOException {
+    byte[] data = testData(4 * 25 + 3);
+    byte[] shuffled = new byte[data.length];
+    for (int i = 0; i < 25; i++)
+      for (int j = 0; j < 4; j++)
+        shuffled[j * 25 + i] = data[i * 4 + j];
+    System.arraycopy(data, 100, shuffled, 100, 3);
+
+    byte[] result = decode(2, shuffled, new TestContext(new int[] {4}, 4, data.length));
+    assertThat(result).isEqualTo(data);
+  }
+
+  @Test
+  public void testFletcher32() throws IOException {
+    byte[] result = decode(3, new byte[] {1, 2, 3, 4, 5, 6}, new TestContext(new int[0], 1, 2));
+    assertThat(result).isEqualTo(new byte[] {1, 2});
+  }
+
+  // pack (value, nbits) pairs MSB first
+  private static byte[] packBits(int start, int... valueAndBits) {
+    int nbits = 0;
+    for (int i = 1; i < valueAndBits.length; i += 2)
+      nbits += valueAndBits[i];
+    byte[] result = new byte[start + (nbits + 7) / 8];
+    int pos = 8 * start;
+    for (int i = 0; i < valueAndBits.length; i += 2) {
+      for (int b = valueAndBits[i + 1] - 1; b >= 0; b--, pos++) {
+        if (((valueAndBits[i] >>> b) & 1) != 0)
+          result[pos / 8] |= (byte) (0x80 >>> (pos % 8));
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void testSzip() throws IOException {
+    // bits_per_pixel=8, pixels_per_block=8, pixels_per_scanline=8, no preprocessing.
+    // an uncompressed block (id 111, then 8 samples), then one zero block (id 000, 0, fs=0)
+    byte[] chunk = packBits(4, 0b111, 3, 10, 8, 20, 8, 30, 8, 40, 8, 50, 8, 60, 8, 70, 8, 200, 8, 0, 3, 0, 1, 1, 1);
+    chunk[0] = 16; // decoded size, little endian
+
+    byte[] result = decode(4, chunk, new TestContext(new int[] {0, 8, 8, 8}, 1, 16));
+    byte[] expected = {10, 20, 30, 40, 50, 60, 70, (byte) 200, 0, 0, 0, 0, 0, 0, 0, 0};
+    assertThat(result).isEqualTo(expected);
+  }
+
+  @Test
+  public void testNbit() throws IOException {
+    // atomic 16 bit little endian values, precision 12, offset 0: 0x0ABC, 0x0123 packed MSB first
+    int[] parms = {8, 0, 2, 1, 2, 0, 12, 0};
+    byte[] packed = {(byte) 0xAB, (byte) 0xC1, 0x23};
+    byte[] result = decode(5, packed, new TestContext(parms, 2, 4));
+    assertThat(result).isEqualTo(new byte[] {(byte) 0xBC, 0x0A, 0x23, 0x01});
+  }
+
+  @Test
+  public void testScaleOffsetInteger() throws IOException {
+    // 3 signed shorts, minbits 4, minval -5, stored values 0, 3, 15
+    int[] parms = {2, 4, 3, 0, 2, 1, 0, 0};
+    byte[] chunk = new byte[21 + 2];
+    chunk[0] = 4;
+    chunk[4] = 8;
+    Arrays.fill(chunk, 5, 13, (byte) 0xff);
+    chunk[5] = (byte) 0xfb;
+    chunk[21] = 0x03;
+    chunk[22] = (byte) 0xf0;
+    ByteBuffer expected = ByteBuffer.allocate(6).order(ByteOrder.LITTLE_ENDIAN);
+    expected.putShort((short) -5).putShort((short) -2).putShort((short) 10);
+
+    byte[] result = decode(6, chunk, new TestContext(parms, 2, 6));
+    assertThat(result).isEqualTo(expected.array());
+  }
+
+  @Test
+  public void testScaleOffsetFloat() throws IOException {
+    // 3 floats, D-scale 2, minbits 8, minval 1.5, stored values 0, 25, 250
+    int[] parms = {0, 2, 3, 1, 4, 0, 0, 0};
+    ByteBuffer chunk = ByteBuffer.allocate(21 + 3).order(ByteOrder.LITTLE_ENDIAN);
+    chunk.putInt(8).put((byte) 4).putFloat(1.5f);
+    chunk.position(21);
+    chunk.put((byte) 0).put((byte) 25).put((byte) 250);
+    ByteBuffer expected = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+    expected.putFloat(1.5f).putFloat(1.75f).putFloat(4.0f);
+
+    byte[] result = decode(6, chunk.array(), new TestContext(parms, 4, 12));
+    assertThat(result).isEqualTo(expected.array());
+  }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+
+/** Test {@link ucar.nc2.util.SharedExecutor} */
+public class TestSharedExecutor {
+  private static final String PREFIX = "ucar.nc2.util.TestSharedExecutor";
+
+  @After
+  public void clearProperties() {
+    System.clearProperty(PREFIX + ".threads");
+    System.clearProperty(PREFIX + ".prefetch");
+  }
+
+  @Test
+  public void testPool() throws Exception {
+    SharedExecutor shared = new SharedExecutor("test-pool", PREFIX, 3);
+    Executor pool = shared.getExecutor();
+    assertThat(pool).isNotNull();
+    assertThat(shared.getExecutor()).isSameInstanceAs(pool);
+    assertThat(shared.getPrefetch()).isEqualTo(6);
+
+    AtomicReference<Thread> thread = new AtomicReference<>();
+    CountDownLatch done = new CountDownLatch(1);
+    pool.execute(() -> {
+      thread.set(Thread.currentThread());
+      done.countDown();
+    });
+    assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(thread.get().getName()).startsWith("test-pool-");
+    assertThat(thread.get().isDaemon()).isTrue();
+  }
+
+  @Test
+  public void testProperties() {
+    System.setProperty(PREFIX + ".threads", "2");
+    System.setProperty(PREFIX + ".prefetch", "5");
+    SharedExecutor shared = new SharedExecutor("test-properties", PREFIX, 8);
+    assertThat(shared.getExecutor()).isNotNull();
+    assertThat(shared.getPrefetch()).isEqualTo(5);
+
+    // one thread decodes on the calling thread
+    System.setProperty(PREFIX + ".threads", "1");
+    shared = new SharedExecutor("test-properties", PREFIX, 8);
+    assertThat(shared.getExecutor()).isNull();
+    assertThat(shared.getPrefetch()).isEqualTo(1);
+
+    // bad values use the default
+    System.setProperty(PREFIX + ".threads", "0");
+    System.setProperty(PREFIX + ".prefetch", "many");
+    shared = new SharedExecutor("test-properties", PREFIX, 4);
+    assertThat(shared.getExecutor()).isNotNull();
+    assertThat(shared.getPrefetch()).isEqualTo(8);
+  }
+
+  @Test
+  public void testSetAndReset() {
+    SharedExecutor shared = new SharedExecutor("test-reset", PREFIX, 2);
+    Executor pool = shared.getExecutor();
+
+    Executor mine = Runnable::run;
+    shared.set(mine, 3);
+    assertThat(shared.getExecutor()).isSameInstanceAs(mine);
+    assertThat(shared.getPrefetch()).isEqualTo(3);
+
+    shared.set(null, 3);
+    assertThat(shared.getExecutor()).isNull();
+    assertThat(shared.getPrefetch()).isEqualTo(1);
+
+    // back to the same pool
+    shared.reset();
+    assertThat(shared.getExecutor()).isSameInstanceAs(pool);
+    assertThat(shared.getPrefetch()).isEqualTo(4);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadPrefetch() {
+    new SharedExecutor("test-bad", PREFIX, 2).set(null, 0);
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.geoloc.projection;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import ucar.unidata.geoloc.LatLonPoint;
+import ucar.unidata.geoloc.Projection;
+import ucar.unidata.geoloc.ProjectionPoint;
+import ucar.unidata.geoloc.Projections;
+import ucar.unidata.geoloc.projection.sat.Geostationary;
+import ucar.unidata.geoloc.projection.sat.MSGnavigation;
+
+/** Test that the bulk array conversions of Projection give the same results as the per point conversions. */
+public class TestBulkProjection {
+  private static final List<Projection> projections = Arrays.asList(new LambertConformal(),
+      new LambertConformal(-40.0, 10.0, -20.0, -60.0), new LambertConformal(25.0, 265.0, 25.0, 25.0, 100.0, -50.0),
+      new Stereographic(), new Stereographic(-90.0, 0.0, 0.933), new Mercator(), new Mercator(-105.0, 20.0),
+      new TransverseMercator(), new TransverseMercator(10.0, -75.0, 0.9996), new AlbersEqualArea(),
+      new AlbersEqualArea(-23.0, 150.0, -10.0, -40.0), new RotatedPole(), new RotatedPole(37.0, 177.0),
+      new Geostationary(), new Geostationary(-75.0, true), new Geostationary(-137.0, "x", 5.6e-5),
+      new MSGnavigation(), new Sinusoidal(0, 0, 0, 6371.007));
+
+  // lat/lon points, some outside of the normal ranges
+  private static void randomLatLon(Random r, double[] lat, double[] lon) {
+    for (int i = 0; i < lat.length; i++) {
+      lat[i] = 200.0 * (r.nextDouble() - .5);
+      lon[i] = 1000.0 * (r.nextDouble() - .5);
+    }
+  }
+
+  // projection points, around the points that the lat/lon points map to
+  private static void randomProj(Random r, Projection proj, double[] x, double[] y) {
+    double[] lat = new double[x.length];
+    double[] lon = new double[x.length];
+    randomLatLon(r, lat, lon);
+    for (int i = 0; i < x.length; i++) {
+      ProjectionPoint ppt = proj.latLonToProj(lat[i], lon[i]);
+      double fuzz = 1.0 + (r.nextDouble() - .5) / 10;
+      x[i] = Double.isFinite(ppt.getX()) ? fuzz * ppt.getX() : 0.0;
+      y[i] = Double.isFinite(ppt.getY()) ? fuzz * ppt.getY() : 0.0;
+      if (proj instanceof RotatedPole) // y is a latitude
+        y[i] = Math.max(-90.0, Math.min(90.0, y[i]));
+    }
+  }
+
+  private static void checkLatLonToProj(Projection proj, double[] lat, double[] lon) {
+    int n = lat.length;
+    double[] x = new double[n];
+    double[] y = new double[n];
+    proj.latLonToProj(lat, lon, x, y, n);
+
+    double[] wantx = new double[n];
+    double[] wanty = new double[n];
+    for (int i = 0; i < n; i++) {
+      ProjectionPoint ppt = proj.latLonToProj(lat[i], lon[i]);
+      wantx[i] = ppt.getX();
+      wanty[i] = ppt.getY();
+    }
+    assertWithMessage(proj.toString()).that(x).isEqualTo(wantx);
+    assertWithMessage(proj.toString()).that(y).isEqualTo(wanty);
+
+    // in place
+    double[] inx = lat.clone();
+    double[] iny = lon.clone();
+    proj.latLonToProj(inx, iny, inx, iny, n);
+    assertWithMessage(proj.toString()).that(inx).isEqualTo(wantx);
+    assertWithMessage(proj.toString()).that(iny).isEqualTo(wanty);
+  }
+
+  private static void checkProjToLatLon(Projection proj, double[] x, double[] y) {
+    int n = x.length;
+    double[] lat = new double[n];
+    double[] lon = new double[n];
+    proj.projToLatLon(x, y, lat, lon, n);
+
+    double[] wantLat = new double[n];
+    double[] wantLon = new double[n];
+    for (int i = 0; i < n; i++) {
+      LatLonPoint llpt = proj.projToLatLon(x[i], y[i]);
+      wantLat[i] = llpt.getLatitude();
+      wantLon[i] = llpt.getLongitude();
+    }
+    assertWithMessage(proj.toString()).that(lat).isEqualTo(wantLat);
+    assertWithMessage(proj.toString()).that(lon).isEqualTo(wantLon);
+
+    // in place
+    double[] inlat = x.clone();
+    double[] inlon = y.clone();
+    proj.projToLatLon(inlat, inlon, inlat, inlon, n);
+    assertWithMessage(proj.toString()).that(inlat).isEqualTo(wantLat);
+    assertWithMessage(proj.toString()).that(inlon).isEqualTo(wantLon);
+  }
+
+  @Test
+  public void testSameAsPerPoint() {
+    Random r = new Random(17);
+    for (Projection proj : projections) {
+      double[] lat = new double[1000];
+      double[] lon = new double[1000];
+      randomLatLon(r, lat, lon);
+      checkLatLonToProj(proj, lat, lon);
+
+      double[] x = new double[1000];
+      double[] y = new double[1000];
+      randomProj(r, proj, x, y);
+      checkProjToLatLon(proj, x, y);
+    }
+  }
+
+  @Test
+  public void testLargeArrays() {
+    // large enough to be converted in parallel chunks
+    int n = 100 * 1000 + 17;
+    Random r = new Random(23);
+    for (Projection proj : projections) {
+      double[] lat = new double[n];
+      double[] lon = new double[n];
+      randomLatLon(r, lat, lon);
+      checkLatLonToProj(proj, lat, lon);
+
+      double[] x = new double[n];
+      double[] y = new double[n];
+      randomProj(r, proj, x, y);
+      checkProjToLatLon(proj, x, y);
+    }
+  }
+
+  @Test
+  public void testPartialArrays() {
+    Projection proj = new LambertConformal();
+    double[] lat = {10.0, 20.0, 30.0, 40.0};
+    double[] lon = {-100.0, -90.0, -80.0, -70.0};
+    double[] x = new double[4];
+    double[] y = new double[4];
+    proj.latLonToProj(lat, lon, x, y, 2);
+    assertThat(x[0]).isEqualTo(proj.latLonToProj(10.0, -100.0).getX());
+    assertThat(y[1]).isEqualTo(proj.latLonToProj(20.0, -90.0).getY());
+    assertThat(x[2]).isEqualTo(0.0);
+    assertThat(y[3]).isEqualTo(0.0);
+
+    try {
+      proj.latLonToProj(lat, lon, x, new double[3], 4);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testProjections() {
+    Projection proj = new TransverseMercator(10.0, -75.0, 0.9996);
+    double[][] latlon = {{45.0, -10.0, 0.0}, {-80.0, -70.0, 400.0}};
+    double[][] xy = Projections.latLonToProj(proj, latlon);
+    for (int i = 0; i < 3; i++) {
+      ProjectionPoint ppt = proj.latLonToProj(latlon[0][i], latlon[1][i]);
+      assertThat(xy[0][i]).isEqualTo(ppt.getX());
+      assertThat(xy[1][i]).isEqualTo(ppt.getY());
+    }
+
+    double[][] back = Projections.projToLatLon(proj, xy);
+    for (int i = 0; i < 3; i++) {
+      LatLonPoint llpt = proj.projToLatLon(xy[0][i], xy[1][i]);
+      assertThat(back[0][i]).isEqualTo(llpt.getLatitude());
+      assertThat(back[1][i]).isEqualTo(llpt.getLongitude());
+    }
+  }
+}
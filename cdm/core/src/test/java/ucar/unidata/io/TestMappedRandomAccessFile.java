@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.internal.util.CompareNetcdf2;
+import ucar.unidata.util.test.TestDir;
+
+/** Test MappedRandomAccessFile against the contents of the file. */
+public class TestMappedRandomAccessFile {
+  @ClassRule
+  public static TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static File file;
+  private static byte[] contents;
+
+  @BeforeClass
+  public static void makeFile() throws IOException {
+    contents = new byte[100000];
+    new Random(42).nextBytes(contents);
+    file = tempFolder.newFile();
+    Files.write(file.toPath(), contents);
+  }
+
+  private void checkReads(MappedRandomAccessFile raf) throws IOException {
+    assertThat(raf.length()).isEqualTo(contents.length);
+
+    byte[] b = new byte[1000];
+    raf.readFully(12345, b, 0, b.length);
+    assertThat(b).isEqualTo(Arrays.copyOfRange(contents, 12345, 13345));
+
+    // short read at the end of the file
+    assertThat(raf.read(contents.length - 10, b, 0, b.length)).isEqualTo(10);
+    assertThat(raf.read(contents.length, b, 0, b.length)).isEqualTo(-1);
+    try {
+      raf.readFully(contents.length - 10, b, 0, b.length);
+      throw new AssertionError("expected EOFException");
+    } catch (EOFException e) {
+      // expected
+    }
+
+    // the usual buffered reads still work, and are not disturbed by positional reads
+    raf.order(RandomAccessFile.BIG_ENDIAN);
+    raf.seek(500);
+    assertThat(raf.readInt()).isEqualTo(ByteBuffer.wrap(contents, 500, 4).getInt());
+    raf.readFully(0, b, 0, 10);
+    assertThat(raf.getFilePointer()).isEqualTo(504);
+    byte[] b2 = new byte[20000];
+    raf.readFully(b2);
+    assertThat(b2).isEqualTo(Arrays.copyOfRange(contents, 504, 20504));
+  }
+
+  @Test
+  public void testMapped() throws IOException {
+    try (MappedRandomAccessFile raf = new MappedRandomAccessFile(file.getPath())) {
+      assertThat(raf.isMapped()).isTrue();
+      checkReads(raf);
+    }
+  }
+
+  @Test
+  public void testPositional() throws IOException {
+    try (MappedRandomAccessFile raf = new MappedRandomAccessFile(file.getPath(), false, 100)) {
+      assertThat(raf.isMapped()).isFalse();
+      checkReads(raf);
+    }
+  }
+
+  @Test
+  public void testConcurrentReads() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try (MappedRandomAccessFile raf = new MappedRandomAccessFile(file.getPath())) {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int t = 0; t < 64; t++) {
+        int seed = t;
+        results.add(pool.submit(() -> {
+          Random random = new Random(seed);
+          byte[] b = new byte[777];
+          for (int i = 0; i < 200; i++) {
+            int pos = random.nextInt(contents.length - b.length);
+            raf.readFully(pos, b, 0, b.length);
+            if (!Arrays.equals(b, Arrays.copyOfRange(contents, pos, pos + b.length)))
+              return false;
+          }
+          return true;
+        }));
+      }
+      for (Future<Boolean> result : results)
+        assertThat(result.get()).isTrue();
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testProvider() throws IOException {
+    String[] files = {"jan.nc", "chunked.h5"};
+    for (String name : files) {
+      String location = TestDir.cdmLocalTestDataDir + name;
+      try (NetcdfFile org = NetcdfFiles.open(location);
+          NetcdfFile mapped = NetcdfFiles.open(MappedRandomAccessFile.PREFIX + location)) {
+        Object raf = mapped.sendIospMessage(NetcdfFile.IOSP_MESSAGE_RANDOM_ACCESS_FILE);
+        assertThat(raf).isInstanceOf(MappedRandomAccessFile.class);
+        Formatter f = new Formatter();
+        boolean ok = new CompareNetcdf2(f, false, false, true).compare(org, mapped, null);
+        assertThat(ok).isTrue();
+      }
+    }
+  }
+
+}
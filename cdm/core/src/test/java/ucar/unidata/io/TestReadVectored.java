@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Test RandomAccessFile.readVectored() */
+public class TestReadVectored {
+  @ClassRule
+  public static TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static File file;
+  private static byte[] contents;
+
+  @BeforeClass
+  public static void makeFile() throws IOException {
+    contents = new byte[3000000];
+    new Random(17).nextBytes(contents);
+    file = tempFolder.newFile();
+    Files.write(file.toPath(), contents);
+  }
+
+  /** A remote file that serves contents from memory, and counts its requests. */
+  private static class MemoryRemoteFile extends RemoteRandomAccessFile {
+    final AtomicInteger nrequests = new AtomicInteger();
+
+    MemoryRemoteFile() {
+      super("memory:test", 1000, 0);
+    }
+
+    @Override
+    public int readRemote(long pos, byte[] buff, int offset, int len) {
+      nrequests.incrementAndGet();
+      int n = (int) Math.min(len, contents.length - pos);
+      System.arraycopy(contents, (int) pos, buff, offset, n);
+      return n;
+    }
+
+    @Override
+    public void closeRemote() {}
+
+    @Override
+    public long length() {
+      return contents.length;
+    }
+  }
+
+  private static List<ByteRange> makeRanges(long seed, int n, int maxLength) {
+    Random random = new Random(seed);
+    List<ByteRange> ranges = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      int len = random.nextInt(maxLength);
+      ranges.add(new ByteRange(random.nextInt(contents.length - len), len));
+    }
+    return ranges;
+  }
+
+  private static void checkRanges(RandomAccessFile raf, List<ByteRange> ranges) throws IOException {
+    byte[] result = raf.readVectored(ranges);
+    int pos = 0;
+    for (ByteRange range : ranges) {
+      int start = (int) range.getPosition();
+      assertThat(Arrays.copyOfRange(result, pos, pos + range.getLength()))
+          .isEqualTo(Arrays.copyOfRange(contents, start, start + range.getLength()));
+      pos += range.getLength();
+    }
+    assertThat(pos).isEqualTo(result.length);
+  }
+
+  private static void checkReads(RandomAccessFile raf) throws IOException {
+    // unordered and overlapping ranges, some close together, some far apart
+    checkRanges(raf, makeRanges(1, 500, 3000));
+    checkRanges(raf, makeRanges(2, 10, 300000));
+    checkRanges(raf, Collections.emptyList());
+    checkRanges(raf, Arrays.asList(new ByteRange(100, 0), new ByteRange(contents.length - 10, 10)));
+
+    // adjacent ranges in reverse order
+    List<ByteRange> adjacent = new ArrayList<>();
+    for (int i = 99; i >= 0; i--)
+      adjacent.add(new ByteRange(i * 100, 100));
+    checkRanges(raf, adjacent);
+
+    // the file pointer and buffer are not disturbed
+    raf.seek(1234);
+    raf.readVectored(makeRanges(3, 20, 1000));
+    assertThat(raf.getFilePointer()).isEqualTo(1234);
+    assertThat(raf.readByte()).isEqualTo(contents[1234]);
+
+    try {
+      raf.readVectored(Collections.singletonList(new ByteRange(contents.length - 10, 11)));
+      throw new AssertionError("expected EOFException");
+    } catch (EOFException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testLocalFile() throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r", 1000)) {
+      checkReads(raf);
+    }
+  }
+
+  @Test
+  public void testMappedFile() throws IOException {
+    try (RandomAccessFile raf = new MappedRandomAccessFile(file.getPath())) {
+      checkReads(raf);
+    }
+  }
+
+  @Test
+  public void testInMemoryFile() throws IOException {
+    try (RandomAccessFile raf = new InMemoryRandomAccessFile("test", contents)) {
+      checkReads(raf);
+    }
+  }
+
+  @Test
+  public void testRemoteFile() throws IOException {
+    try (MemoryRemoteFile raf = new MemoryRemoteFile()) {
+      checkReads(raf);
+    }
+  }
+
+  @Test
+  public void testCoalesce() throws IOException {
+    // 1000 small ranges over 1 MB are one request
+    List<ByteRange> ranges = new ArrayList<>();
+    for (int i = 0; i < 1000; i++)
+      ranges.add(new ByteRange(i * 1000, 10));
+    try (MemoryRemoteFile raf = new MemoryRemoteFile()) {
+      checkRanges(raf, ranges);
+      assertThat(raf.nrequests.get()).isEqualTo(1);
+    }
+
+    // ranges far apart are not coalesced
+    ranges.clear();
+    for (int i = 0; i < 3; i++)
+      ranges.add(new ByteRange(i * 1100000, 10));
+    try (MemoryRemoteFile raf = new MemoryRemoteFile()) {
+      checkRanges(raf, ranges);
+      assertThat(raf.nrequests.get()).isEqualTo(3);
+    }
+  }
+
+}
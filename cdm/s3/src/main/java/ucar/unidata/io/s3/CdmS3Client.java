@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.io.s3;
+
+import java.time.Duration;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.auth.credentials.AnonymousCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProviderChain;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.ProfileCredentialsProvider;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient.Builder;
+import software.amazon.awssdk.profiles.ProfileFile;
+import software.amazon.awssdk.profiles.ProfileProperty;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+/**
+ * Makes the S3Client used to access the object store of a CdmS3Uri: the endpoint, credentials and region come from the
+ * uri, the AWS configuration files, system properties and environment, in the same way for all CDM S3 access.
+ */
+public final class CdmS3Client {
+
+  private static final Logger logger = LoggerFactory.getLogger(CdmS3Client.class);
+
+  private static final String AWS_REGION_ENV_VAR_NAME = "AWS_REGION";
+  private static final String AWS_REGION_PROP_NAME = "aws.region";
+
+  /**
+   * The maximum number of connections allowed in the S3 http connection pool. Each built S3 HTTP client has it's own
+   * private connection pool.
+   */
+  private static final int maxConnections =
+      Integer.parseInt(System.getProperty("ucar.unidata.io.s3.httpMaxConnections", "128"));
+  /**
+   * The amount of time to wait (in milliseconds) when initially establishing a connection before giving up and timing
+   * out. A duration of
+   * 0 means infinity, and is not recommended.
+   */
+  private static final int connectionTimeout =
+      Integer.parseInt(System.getProperty("ucar.unidata.io.s3.connectionTimeout", "10000"));
+  /**
+   * The amount of time to wait for data to be transferred over an established, open connection before the connection is
+   * timed out. A duration of 0 means infinity, and is not recommended.
+   */
+  private static final int socketTimeout =
+      Integer.parseInt(System.getProperty("ucar.unidata.io.s3.socketTimeout", "100000"));
+
+  private CdmS3Client() {}
+
+  /**
+   * Make a new S3Client for the object store of this uri. The caller must close it.
+   *
+   * @param uri identifies the object store, and optionally the profile to use.
+   * @return a new S3Client, which is thread safe.
+   */
+  public static S3Client create(CdmS3Uri uri) {
+    // Region is tricky. Since we are using AWS SDK to manage connections to all object stores, we might have users
+    // who use netCDF-Java and never touch AWS. If that's they case, they likely have not setup a basic credentials or
+    // configuration file, and thus lack a default region. What we will do here is check to see if there is one set.
+    // If, by the time we make the client, profileRegion isn't set, we will default to the AWS_GLOBAL region, which is
+    // like a no-op region when it comes to S3. This will allow requests to non-AWS-S3 object stores to work, because
+    // a region must be set, even if it's useless.
+    // First, look for a region in the default profile of the default config file (~/.aws/config)
+    Optional<Region> profileRegion = ProfileFile.defaultProfileFile().profile("default")
+        .map(p -> p.properties().get(ProfileProperty.REGION)).map(Region::of);
+
+    // If region not found, check the aws.region system property and, if not found there, the environmental
+    // variable AWS_REGION
+    if (!profileRegion.isPresent()) {
+      // first check system property
+      logger.debug("Checking system property {} for Region.", AWS_REGION_PROP_NAME);
+      String regionName = System.getProperty(AWS_REGION_PROP_NAME);
+      if (regionName == null) {
+        // ok, now check environmental variable
+        logger.debug("Checking environmental variable {} for Region.", AWS_REGION_ENV_VAR_NAME);
+        regionName = System.getenv(AWS_REGION_ENV_VAR_NAME);
+      }
+
+      if (regionName != null) {
+        logger.debug("Region found: {}", regionName);
+        profileRegion = Optional.ofNullable(Region.of(regionName));
+      }
+    }
+
+    Builder httpConfig = ApacheHttpClient.builder().maxConnections(maxConnections)
+        .connectionTimeout(Duration.ofMillis(connectionTimeout)).socketTimeout(Duration.ofMillis(socketTimeout));
+
+    S3ClientBuilder s3ClientBuilder = S3Client.builder().httpClientBuilder(httpConfig);
+
+    // if we are accessing an S3 compatible service, we need to override the server endpoint
+    uri.getEndpoint().ifPresent(s3ClientBuilder::endpointOverride);
+
+    // build up a chain of credentials providers
+    AwsCredentialsProviderChain.Builder cdmCredentialsProviderChainBuilder = AwsCredentialsProviderChain.builder();
+
+    // if uri has a profile name, we need setup a credentials provider to look for potential credentials, and see if a
+    // region has been set
+    if (uri.getProfile().isPresent()) {
+      // get the profile name
+      String profileName = uri.getProfile().get();
+
+      ProfileCredentialsProvider namedProfileCredentials =
+          ProfileCredentialsProvider.builder().profileName(profileName).build();
+
+      // add it to the chain that it is the first thing checked for credentials
+      cdmCredentialsProviderChainBuilder.addCredentialsProvider(namedProfileCredentials);
+
+      // Read the region associated with the profile, if set, as it might be different than the
+      // default value in the profile file, or the value found in the System property or Environmental
+      // variable.
+      // Note: the java sdk does not do this by default
+      Optional<Region> namedProfileRegion = ProfileFile.defaultProfileFile().profile(profileName)
+          .map(p -> p.properties().get(ProfileProperty.REGION)).map(Region::of);
+      // if the named profile has a region, update profileRegion to use it.
+      if (namedProfileRegion.isPresent()) {
+        logger.debug("Region {} found for profile {} - will be using this region.", namedProfileRegion.get(),
+            profileName);
+        profileRegion = namedProfileRegion;
+      }
+    }
+
+    // Add the Default Credentials Provider Chain:
+    // https://docs.aws.amazon.com/sdk-for-java/v2/developer-guide/credentials.html
+    cdmCredentialsProviderChainBuilder.addCredentialsProvider(DefaultCredentialsProvider.create());
+
+    // Add the AnonymousCredentialsProvider last
+    cdmCredentialsProviderChainBuilder.addCredentialsProvider(AnonymousCredentialsProvider.create());
+
+    // build the credentials provider that we'll use
+    AwsCredentialsProviderChain cdmCredentialsProviderChain = cdmCredentialsProviderChainBuilder.build();
+
+    // Add the credentials provider to the client builder
+    s3ClientBuilder.credentialsProvider(cdmCredentialsProviderChain);
+
+    // Set the region for the client builder (or default to AWS_GLOBAL)
+    s3ClientBuilder.region(profileRegion.orElse(Region.AWS_GLOBAL));
+
+    // Build the client
+    return s3ClientBuilder.build();
+  }
+}
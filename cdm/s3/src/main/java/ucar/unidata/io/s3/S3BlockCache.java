@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.io.s3;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Formatter;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A cache of fixed size blocks of S3 objects, bounded by the total number of bytes, and shared by all open
+ * S3RandomAccessFiles. Blocks are keyed by object, so handles to the same object share them.
+ * A block that is being fetched is shared too, so concurrent requests for it make only one request to the server.
+ */
+@ThreadSafe
+public final class S3BlockCache {
+  private final long maxBytes;
+  private final Cache<BlockKey, byte[]> cache;
+  private final ConcurrentMap<BlockKey, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder prefetches = new LongAdder();
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder bytesFetched = new LongAdder();
+
+  /**
+   * Constructor.
+   *
+   * @param maxBytes maximum number of bytes held in the cache. If 0, blocks are not kept once they have been read.
+   */
+  public S3BlockCache(long maxBytes) {
+    this.maxBytes = Math.max(0, maxBytes);
+    this.cache = CacheBuilder.newBuilder().maximumWeight(this.maxBytes)
+        .weigher((BlockKey key, byte[] value) -> value.length).build();
+  }
+
+  /**
+   * Get a block, from the cache, or from a fetch already in progress, or else by running loader on the executor.
+   *
+   * @param objectId identifies the object, including its version
+   * @param block the block number in the object
+   * @param loader reads the block from the server
+   * @param executor where to run loader
+   * @param prefetch true if this is a read ahead, rather than a read the caller will wait on
+   * @return the block contents, when available
+   */
+  CompletableFuture<byte[]> get(String objectId, long block, Callable<byte[]> loader, Executor executor,
+      boolean prefetch) {
+    BlockKey key = new BlockKey(objectId, block);
+    byte[] data = cache.getIfPresent(key);
+    if (data != null) {
+      if (!prefetch)
+        hits.increment();
+      return CompletableFuture.completedFuture(data);
+    }
+
+    CompletableFuture<byte[]> result = new CompletableFuture<>();
+    CompletableFuture<byte[]> existing = inFlight.putIfAbsent(key, result);
+    if (existing != null) {
+      if (!prefetch)
+        hits.increment();
+      return existing;
+    }
+    // a fetch may have finished between the two lookups; it is put in the cache before it leaves inFlight
+    data = cache.getIfPresent(key);
+    if (data != null) {
+      inFlight.remove(key, result);
+      result.complete(data);
+      if (!prefetch)
+        hits.increment();
+      return result;
+    }
+
+    if (prefetch)
+      prefetches.increment();
+    else
+      misses.increment();
+    try {
+      executor.execute(() -> {
+        // leave inFlight before completing, so a failed fetch is not seen by a retry
+        try {
+          byte[] fetched = loader.call();
+          requests.increment();
+          bytesFetched.add(fetched.length);
+          cache.put(key, fetched);
+          inFlight.remove(key, result);
+          result.complete(fetched);
+        } catch (Throwable t) {
+          inFlight.remove(key, result);
+          result.completeExceptionally(t);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      inFlight.remove(key, result);
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+
+  /** Discard all cached blocks. Does not reset the statistics. */
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+  /** Maximum number of bytes held in the cache. */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** Approximate number of blocks in the cache. */
+  public long getBlockCount() {
+    return cache.size();
+  }
+
+  /** Number of block reads served from the cache, or from a fetch that was already in progress. */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /** Number of block reads that had to wait for a new request to the server. */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /** Number of blocks fetched ahead of being read, because the object was being read sequentially. */
+  public long getPrefetches() {
+    return prefetches.sum();
+  }
+
+  /** Number of successful block requests made to the server. */
+  public long getRequests() {
+    return requests.sum();
+  }
+
+  /** Total number of bytes fetched from the server. */
+  public long getBytesFetched() {
+    return bytesFetched.sum();
+  }
+
+  public void showStats(Formatter f) {
+    f.format("S3BlockCache: blocks=%d maxBytes=%d hits=%d misses=%d prefetches=%d requests=%d bytesFetched=%d%n",
+        getBlockCount(), maxBytes, getHits(), getMisses(), getPrefetches(), getRequests(), getBytesFetched());
+  }
+
+  private static final class BlockKey {
+    private final String objectId;
+    private final long block;
+
+    BlockKey(String objectId, long block) {
+      this.objectId = objectId;
+      this.block = block;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      BlockKey that = (BlockKey) o;
+      return block == that.block && objectId.equals(that.objectId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(objectId, block);
+    }
+  }
+}
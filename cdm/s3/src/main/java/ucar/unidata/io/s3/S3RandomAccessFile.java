@@ -5,26 +5,17 @@
 
 package ucar.unidata.io.s3;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
-import java.time.Duration;
-import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import software.amazon.awssdk.auth.credentials.AnonymousCredentialsProvider;
-import software.amazon.awssdk.auth.credentials.AwsCredentialsProviderChain;
-import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
-import software.amazon.awssdk.auth.credentials.ProfileCredentialsProvider;
 import software.amazon.awssdk.core.ResponseBytes;
-import software.amazon.awssdk.http.apache.ApacheHttpClient;
-import software.amazon.awssdk.http.apache.ApacheHttpClient.Builder;
-import software.amazon.awssdk.profiles.ProfileFile;
-import software.amazon.awssdk.profiles.ProfileProperty;
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.S3ClientBuilder;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
@@ -42,68 +33,42 @@ public final class S3RandomAccessFile extends RemoteRandomAccessFile implements
 
   private static final Logger logger = LoggerFactory.getLogger(S3RandomAccessFile.class);
 
-  private static final String AWS_REGION_ENV_VAR_NAME = "AWS_REGION";
-  private static final String AWS_REGION_PROP_NAME = "aws.region";
-
   private static final int s3BufferSize = Integer
       .parseInt(System.getProperty("ucar.unidata.io.s3.bufferSize", String.valueOf(defaultRemoteFileBufferSize)));
 
-  private static final long s3MaxReadCacheSize = Long
-      .parseLong(System.getProperty("ucar.unidata.io.s3.maxReadCacheSize", String.valueOf(defaultMaxReadCacheSize)));
-  /**
-   * The maximum number of connections allowed in the S3 http connection pool. Each built S3 HTTP client has it's own
-   * private connection pool.
-   */
-  private static final int maxConnections =
-      Integer.parseInt(System.getProperty("ucar.unidata.io.s3.httpMaxConnections", "128"));
-  /**
-   * The amount of time to wait (in milliseconds) when initially establishing a connection before giving up and timing
-   * out. A duration of
-   * 0 means infinity, and is not recommended.
-   */
-  private static final int connectionTimeout = Integer
-      .parseInt(System.getProperty("ucar.unidata.io.s3.connectionTimeout", String.valueOf(defaultRemoteFileTimeout)));
-  /**
-   * The amount of time to wait for data to be transferred over an established, open connection before the connection is
-   * timed out. A duration of 0 means infinity, and is not recommended.
-   */
-  private static final int socketTimeout =
-      Integer.parseInt(System.getProperty("ucar.unidata.io.s3.socketTimeout", "100000"));
+  // 1 MiB default block size
+  private static final int defaultBlockSize = 1024 * 1024;
+  // 256 MiB default shared block cache size
+  private static final long defaultBlockCacheSize = 256L * 1024 * 1024;
+
+  /** The size in bytes of the blocks requested from the server and held in the shared block cache. */
+  private static final int blockSize =
+      Integer.parseInt(System.getProperty("ucar.unidata.io.s3.blockSize", String.valueOf(defaultBlockSize)));
+  // deprecate ucar.unidata.io.s3.maxReadCacheSize, since the block cache is now shared by all open files.
+  // however, if it is set, use it (unless ucar.unidata.io.s3.blockCacheSize is also set)
+  private static final long blockCacheSize = Long.parseLong(System.getProperty("ucar.unidata.io.s3.blockCacheSize",
+      System.getProperty("ucar.unidata.io.s3.maxReadCacheSize", String.valueOf(defaultBlockCacheSize))));
+  /** The maximum number of concurrent block requests, over all open files. */
+  private static final int maxConcurrentRequests =
+      Integer.parseInt(System.getProperty("ucar.unidata.io.s3.maxConcurrentRequests", "16"));
+  /** The number of blocks to request ahead of a sequential reader. */
+  private static final int readAheadBlocks =
+      Integer.parseInt(System.getProperty("ucar.unidata.io.s3.readAheadBlocks", "4"));
+
+  private static final S3BlockCache blockCache = new S3BlockCache(blockCacheSize);
+  private static final ExecutorService requestExecutor =
+      Executors.newFixedThreadPool(Math.max(1, maxConcurrentRequests),
+          new ThreadFactoryBuilder().setNameFormat("s3-read-%d").setDaemon(true).build());
+
   private final CdmS3Uri uri;
   private final S3Client client;
+  private final S3ReadEngine engine;
 
   private HeadObjectResponse objectHeadResponse;
 
   private S3RandomAccessFile(String url) throws IOException {
-    super(url, s3BufferSize, s3MaxReadCacheSize);
-
-    // Region is tricky. Since we are using AWS SDK to manage connections to all object stores, we might have users
-    // who use netCDF-Java and never touch AWS. If that's they case, they likely have not setup a basic credentials or
-    // configuration file, and thus lack a default region. What we will do here is check to see if there is one set.
-    // If, by the time we make the client, profileRegion isn't set, we will default to the AWS_GLOBAL region, which is
-    // like a no-op region when it comes to S3. This will allow requests to non-AWS-S3 object stores to work, because
-    // a region must be set, even if it's useless.
-    // First, look for a region in the default profile of the default config file (~/.aws/config)
-    Optional<Region> profileRegion = ProfileFile.defaultProfileFile().profile("default")
-        .map(p -> p.properties().get(ProfileProperty.REGION)).map(Region::of);
-
-    // If region not found, check the aws.region system property and, if not found there, the environmental
-    // variable AWS_REGION
-    if (!profileRegion.isPresent()) {
-      // first check system property
-      logger.debug("Checking system property {} for Region.", AWS_REGION_PROP_NAME);
-      String regionName = System.getProperty(AWS_REGION_PROP_NAME);
-      if (regionName == null) {
-        // ok, now check environmental variable
-        logger.debug("Checking environmental variable {} for Region.", AWS_REGION_ENV_VAR_NAME);
-        regionName = System.getenv(AWS_REGION_ENV_VAR_NAME);
-      }
-
-      if (regionName != null) {
-        logger.debug("Region found: {}", regionName);
-        profileRegion = Optional.ofNullable(Region.of(regionName));
-      }
-    }
+    // the shared block cache replaces the per file read cache of RemoteRandomAccessFile
+    super(url, s3BufferSize, 0);
 
     try {
       uri = new CdmS3Uri(url);
@@ -113,67 +78,24 @@ public final class S3RandomAccessFile extends RemoteRandomAccessFile implements
       throw new IOException(urie.getCause());
     }
 
-    Builder httpConfig = ApacheHttpClient.builder().maxConnections(maxConnections)
-        .connectionTimeout(Duration.ofMillis(connectionTimeout)).socketTimeout(Duration.ofMillis(socketTimeout));
-
-    S3ClientBuilder s3ClientBuilder = S3Client.builder().httpClientBuilder(httpConfig);
-
-    // if we are accessing an S3 compatible service, we need to override the server endpoint
-    uri.getEndpoint().ifPresent(s3ClientBuilder::endpointOverride);
-
-    // build up a chain of credentials providers
-    AwsCredentialsProviderChain.Builder cdmCredentialsProviderChainBuilder = AwsCredentialsProviderChain.builder();
-
-    // if uri has a profile name, we need setup a credentials provider to look for potential credentials, and see if a
-    // region has been set
-    if (uri.getProfile().isPresent()) {
-      // get the profile name
-      String profileName = uri.getProfile().get();
-
-      ProfileCredentialsProvider namedProfileCredentials =
-          ProfileCredentialsProvider.builder().profileName(profileName).build();
-
-      // add it to the chain that it is the first thing checked for credentials
-      cdmCredentialsProviderChainBuilder.addCredentialsProvider(namedProfileCredentials);
-
-      // Read the region associated with the profile, if set, as it might be different than the
-      // default value in the profile file, or the value found in the System property or Environmental
-      // variable.
-      // Note: the java sdk does not do this by default
-      Optional<Region> namedProfileRegion = ProfileFile.defaultProfileFile().profile(profileName)
-          .map(p -> p.properties().get(ProfileProperty.REGION)).map(Region::of);
-      // if the named profile has a region, update profileRegion to use it.
-      if (namedProfileRegion.isPresent()) {
-        logger.debug("Region {} found for profile {} - will be using this region.", namedProfileRegion.get(),
-            profileName);
-        profileRegion = namedProfileRegion;
-      }
-    }
-
-    // Add the Default Credentials Provider Chain:
-    // https://docs.aws.amazon.com/sdk-for-java/v2/developer-guide/credentials.html
-    cdmCredentialsProviderChainBuilder.addCredentialsProvider(DefaultCredentialsProvider.create());
-
-    // Add the AnonymousCredentialsProvider last
-    cdmCredentialsProviderChainBuilder.addCredentialsProvider(AnonymousCredentialsProvider.create());
-
-    // build the credentials provider that we'll use
-    AwsCredentialsProviderChain cdmCredentialsProviderChain = cdmCredentialsProviderChainBuilder.build();
-
-    // Add the credentials provider to the client builder
-    s3ClientBuilder.credentialsProvider(cdmCredentialsProviderChain);
-
-    // Set the region for the client builder (or default to AWS_GLOBAL)
-    s3ClientBuilder.region(profileRegion.orElse(Region.AWS_GLOBAL));
-
-    // Build the client
-    client = s3ClientBuilder.build();
+    client = CdmS3Client.create(uri);
 
     // request HEAD for the object
     HeadObjectRequest headdObjectRequest =
         HeadObjectRequest.builder().bucket(uri.getBucket()).key(uri.getKey()).build();
 
     objectHeadResponse = client.headObject(headdObjectRequest);
+
+    // the ETag changes when the object does, so cached blocks of an older version are not used
+    String objectId = uri.getEndpoint().map(Object::toString).orElse("") + "/" + uri.getBucket() + "/" + uri.getKey()
+        + "#" + objectHeadResponse.eTag();
+    engine = new S3ReadEngine(objectId, objectHeadResponse.contentLength(), blockSize, readAheadBlocks,
+        this::readObjectRange, blockCache, requestExecutor);
+  }
+
+  /** The block cache shared by all S3RandomAccessFiles, with statistics on hits, misses and bytes fetched. */
+  public static S3BlockCache getBlockCache() {
+    return blockCache;
   }
 
   public void closeRemote() {
@@ -186,9 +108,8 @@ public final class S3RandomAccessFile extends RemoteRandomAccessFile implements
   }
 
   /**
-   * Read directly from the remote service All reading goes through here or readToByteChannel;
-   *
-   * 1. https://docs.aws.amazon.com/AmazonS3/latest/dev/RetrievingObjectUsingJava.html
+   * Read from the remote service, in blocks that are requested concurrently and kept in the shared block cache.
+   * All reading goes through here or readToByteChannel;
    *
    * @param pos start here in the file
    * @param buff put data into this buffer
@@ -199,8 +120,17 @@ public final class S3RandomAccessFile extends RemoteRandomAccessFile implements
    */
   @Override
   public int readRemote(long pos, byte[] buff, int offset, int len) throws IOException {
+    return engine.read(pos, buff, offset, len);
+  }
 
-    String range = String.format("bytes=%d-%d", pos, pos + len);
+  /**
+   * Read a range of the object with one GET request.
+   *
+   * 1. https://docs.aws.amazon.com/AmazonS3/latest/dev/RetrievingObjectUsingJava.html
+   */
+  private int readObjectRange(long pos, byte[] buff, int offset, int len) throws IOException {
+    // the end of an http byte range is inclusive
+    String range = String.format("bytes=%d-%d", pos, pos + len - 1);
     GetObjectRequest rangeObjectRequest =
         GetObjectRequest.builder().bucket(uri.getBucket()).key(uri.getKey()).range(range).build();
 
@@ -219,7 +149,6 @@ public final class S3RandomAccessFile extends RemoteRandomAccessFile implements
     return totalBytes;
   }
 
-
   @Override
   public long length() {
     return objectHeadResponse.contentLength();
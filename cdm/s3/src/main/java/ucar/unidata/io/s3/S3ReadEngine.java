@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.io.s3;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Reads an S3 object in fixed size blocks, through a shared S3BlockCache.
+ * The blocks of a read are requested concurrently, on a bounded executor.
+ * When the object is being read sequentially, the next blocks are requested before they are needed.
+ */
+@ThreadSafe
+class S3ReadEngine {
+
+  /** Reads a range of bytes of the object from the server. */
+  interface RangeSource {
+    /**
+     * Read up to len bytes starting at pos.
+     *
+     * @return the number of bytes read, may be less than len only at the end of the object.
+     */
+    int read(long pos, byte[] buff, int offset, int len) throws IOException;
+  }
+
+  private final String objectId;
+  private final long length;
+  private final int blockSize;
+  private final int readAhead;
+  private final RangeSource source;
+  private final S3BlockCache cache;
+  private final Executor executor;
+
+  // sequential access detection
+  private long lastBlock = -2;
+  private int sequentialReads;
+
+  /**
+   * Constructor.
+   *
+   * @param objectId identifies the object, including its version, in the cache.
+   * @param length length of the object in bytes
+   * @param blockSize size of the blocks that are requested and cached
+   * @param readAhead number of blocks to request ahead of a sequential reader, 0 for none.
+   * @param source reads from the server
+   * @param cache the shared block cache
+   * @param executor requests run here; its size limits the number of concurrent requests.
+   */
+  S3ReadEngine(String objectId, long length, int blockSize, int readAhead, RangeSource source, S3BlockCache cache,
+      Executor executor) {
+    if (blockSize <= 0)
+      throw new IllegalArgumentException("blockSize must be > 0");
+    this.objectId = objectId;
+    this.length = length;
+    this.blockSize = blockSize;
+    this.readAhead = Math.max(0, readAhead);
+    this.source = source;
+    this.cache = cache;
+    this.executor = executor;
+  }
+
+  /**
+   * Read up to len bytes starting at pos.
+   *
+   * @return the number of bytes read, less than len only at the end of the object.
+   */
+  int read(long pos, byte[] buff, int offset, int len) throws IOException {
+    if (pos >= length || len <= 0)
+      return 0;
+    int n = (int) Math.min(len, length - pos);
+    long first = pos / blockSize;
+    long last = (pos + n - 1) / blockSize;
+
+    // request all of the blocks before waiting on any of them
+    List<CompletableFuture<byte[]>> blocks = new ArrayList<>((int) (last - first + 1));
+    for (long block = first; block <= last; block++)
+      blocks.add(getBlock(block, false));
+    if (isSequential(first, last)) {
+      long lastBlockInObject = (length - 1) / blockSize;
+      for (long block = last + 1; block <= Math.min(last + readAhead, lastBlockInObject); block++)
+        getBlock(block, true);
+    }
+
+    int done = 0;
+    for (int i = 0; i < blocks.size(); i++) {
+      byte[] data;
+      try {
+        data = waitFor(blocks.get(i), first + i);
+      } catch (InterruptedIOException e) {
+        throw e;
+      } catch (IOException | RuntimeException e) {
+        // the fetch may have been started by another handle to the object, which has since been closed, so try once
+        // more with our own request
+        data = waitFor(getBlock(first + i, false), first + i);
+      }
+      long blockStart = (first + i) * blockSize;
+      int start = (int) (pos + done - blockStart);
+      int count = Math.min(n - done, data.length - start);
+      System.arraycopy(data, start, buff, offset + done, count);
+      done += count;
+    }
+    return done;
+  }
+
+  // a read is sequential if it starts in or just after the block where the last one ended
+  private synchronized boolean isSequential(long first, long last) {
+    if (first == lastBlock || first == lastBlock + 1)
+      sequentialReads++;
+    else
+      sequentialReads = 0;
+    lastBlock = last;
+    return sequentialReads > 0;
+  }
+
+  private CompletableFuture<byte[]> getBlock(long block, boolean prefetch) {
+    return cache.get(objectId, block, () -> fetch(block), executor, prefetch);
+  }
+
+  private byte[] fetch(long block) throws IOException {
+    long start = block * blockSize;
+    byte[] data = new byte[(int) Math.min(blockSize, length - start)];
+    int done = 0;
+    while (done < data.length) {
+      int count = source.read(start + done, data, done, data.length - done);
+      if (count <= 0)
+        throw new EOFException(String.format("Reading %s at %d length = %d", objectId, start + done, length));
+      done += count;
+    }
+    return data;
+  }
+
+  private byte[] waitFor(CompletableFuture<byte[]> future, long block) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted reading block " + block + " of " + objectId);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      throw new IOException(cause);
+    }
+  }
+}
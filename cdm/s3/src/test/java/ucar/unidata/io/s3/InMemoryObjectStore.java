@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.io.s3;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local stand-in for an S3 object, served from memory, for testing S3ReadEngine without a server.
+ * Each range request can be given a latency, and the requests are counted.
+ */
+class InMemoryObjectStore implements S3ReadEngine.RangeSource {
+  private final byte[] contents;
+  private final long latencyMillis;
+  private final AtomicInteger active = new AtomicInteger();
+
+  final AtomicInteger requests = new AtomicInteger();
+  final AtomicInteger maxConcurrent = new AtomicInteger();
+  final AtomicLong bytesServed = new AtomicLong();
+
+  InMemoryObjectStore(byte[] contents, long latencyMillis) {
+    this.contents = contents;
+    this.latencyMillis = latencyMillis;
+  }
+
+  @Override
+  public int read(long pos, byte[] buff, int offset, int len) throws IOException {
+    requests.incrementAndGet();
+    maxConcurrent.accumulateAndGet(active.incrementAndGet(), Math::max);
+    try {
+      if (latencyMillis > 0)
+        Thread.sleep(latencyMillis);
+      int n = (int) Math.max(0, Math.min(len, contents.length - pos));
+      System.arraycopy(contents, (int) pos, buff, offset, n);
+      bytesServed.addAndGet(n);
+      return n;
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException();
+    } finally {
+      active.decrementAndGet();
+    }
+  }
+}
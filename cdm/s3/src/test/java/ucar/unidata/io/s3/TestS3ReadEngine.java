@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.io.s3;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Test S3ReadEngine and S3BlockCache against an in memory stand-in for S3. */
+public class TestS3ReadEngine {
+  private static final int BLOCK_SIZE = 1000;
+
+  private byte[] contents;
+  private ExecutorService executor;
+
+  @Before
+  public void setup() {
+    contents = new byte[100500];
+    new Random(11).nextBytes(contents);
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void cleanup() {
+    executor.shutdownNow();
+  }
+
+  private S3ReadEngine makeEngine(String id, InMemoryObjectStore store, S3BlockCache cache, int readAhead) {
+    return new S3ReadEngine(id, contents.length, BLOCK_SIZE, readAhead, store, cache, executor);
+  }
+
+  private void checkRead(S3ReadEngine engine, long pos, int len) throws IOException {
+    byte[] buff = new byte[len + 2];
+    int n = engine.read(pos, buff, 1, len);
+    int expected = (int) Math.max(0, Math.min(len, contents.length - pos));
+    assertThat(n).isEqualTo(expected);
+    assertThat(Arrays.copyOfRange(buff, 1, 1 + n))
+        .isEqualTo(Arrays.copyOfRange(contents, (int) pos, (int) pos + expected));
+  }
+
+  @Test
+  public void testRandomReads() throws IOException {
+    InMemoryObjectStore store = new InMemoryObjectStore(contents, 0);
+    S3ReadEngine engine = makeEngine("random", store, new S3BlockCache(1000000), 0);
+    Random random = new Random(3);
+    for (int i = 0; i < 500; i++) {
+      int len = random.nextInt(5000);
+      checkRead(engine, random.nextInt(contents.length - len), len);
+    }
+    // short reads at the end of the object
+    checkRead(engine, contents.length - 10, 100);
+    checkRead(engine, contents.length, 100);
+    // each block was only fetched once
+    assertThat(store.requests.get()).isAtMost(101);
+  }
+
+  @Test
+  public void testConcurrentBlockRequests() throws IOException {
+    InMemoryObjectStore store = new InMemoryObjectStore(contents, 20);
+    S3ReadEngine engine = makeEngine("concurrent", store, new S3BlockCache(1000000), 0);
+    checkRead(engine, 500, 20000); // 21 blocks
+    assertThat(store.requests.get()).isEqualTo(21);
+    assertThat(store.maxConcurrent.get()).isGreaterThan(1);
+    assertThat(store.maxConcurrent.get()).isAtMost(4);
+  }
+
+  @Test
+  public void testSharedCache() throws IOException {
+    S3BlockCache cache = new S3BlockCache(1000000);
+    InMemoryObjectStore store1 = new InMemoryObjectStore(contents, 0);
+    InMemoryObjectStore store2 = new InMemoryObjectStore(contents, 0);
+    checkRead(makeEngine("shared", store1, cache, 0), 0, 10000);
+    assertThat(store1.requests.get()).isEqualTo(10);
+    assertThat(cache.getMisses()).isEqualTo(10);
+
+    // another handle to the same object uses the cached blocks
+    checkRead(makeEngine("shared", store2, cache, 0), 2000, 5000);
+    assertThat(store2.requests.get()).isEqualTo(0);
+    assertThat(cache.getHits()).isEqualTo(5);
+
+    // but a different object (or version of it) does not
+    checkRead(makeEngine("shared#2", store2, cache, 0), 2000, 5000);
+    assertThat(store2.requests.get()).isEqualTo(5);
+
+    assertThat(cache.getRequests()).isEqualTo(15);
+    assertThat(cache.getBytesFetched()).isEqualTo(15 * BLOCK_SIZE);
+    Formatter f = new Formatter();
+    cache.showStats(f);
+    assertThat(f.toString()).contains("bytesFetched=15000");
+  }
+
+  @Test
+  public void testCacheIsBounded() throws IOException {
+    S3BlockCache cache = new S3BlockCache(10 * BLOCK_SIZE);
+    InMemoryObjectStore store = new InMemoryObjectStore(contents, 0);
+    S3ReadEngine engine = makeEngine("bounded", store, cache, 0);
+    for (int pos = 0; pos < contents.length; pos += 5000)
+      checkRead(engine, pos, 5000);
+    assertThat(cache.getBlockCount()).isAtMost(10);
+    assertThat(cache.getBlockCount()).isGreaterThan(0);
+  }
+
+  @Test
+  public void testSequentialReadAhead() throws Exception {
+    S3BlockCache cache = new S3BlockCache(1000000);
+    InMemoryObjectStore store = new InMemoryObjectStore(contents, 0);
+    S3ReadEngine engine = makeEngine("sequential", store, cache, 4);
+
+    // a sequential scan, in reads smaller than a block
+    for (int pos = 0; pos < contents.length; pos += 250)
+      checkRead(engine, pos, 250);
+    assertThat(cache.getPrefetches()).isGreaterThan(90L);
+    assertThat(cache.getMisses()).isLessThan(10L);
+    assertThat(store.requests.get()).isEqualTo(101);
+  }
+
+  @Test
+  public void testNoReadAheadForRandomAccess() throws IOException {
+    S3BlockCache cache = new S3BlockCache(1000000);
+    InMemoryObjectStore store = new InMemoryObjectStore(contents, 0);
+    S3ReadEngine engine = makeEngine("jumps", store, cache, 4);
+    for (int pos = 0; pos < contents.length - 100; pos += 7 * BLOCK_SIZE)
+      checkRead(engine, pos, 100);
+    assertThat(cache.getPrefetches()).isEqualTo(0);
+  }
+
+  @Test
+  public void testErrorsArePropagated() {
+    S3ReadEngine.RangeSource failing = (pos, buff, offset, len) -> {
+      throw new IOException("server error");
+    };
+    S3ReadEngine engine =
+        new S3ReadEngine("failing", contents.length, BLOCK_SIZE, 0, failing, new S3BlockCache(1000000), executor);
+    try {
+      engine.read(0, new byte[10], 0, 10);
+      throw new AssertionError("expected IOException");
+    } catch (IOException e) {
+      assertThat(e.getMessage()).isEqualTo("server error");
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.zarr;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/** A Zarr store in a local directory, where each key is a file. */
+@ThreadSafe
+class DirectoryStore implements ZarrStore {
+  private final Path root;
+
+  DirectoryStore(Path root) {
+    this.root = root;
+  }
+
+  @Override
+  public String getLocation() {
+    return root.toString();
+  }
+
+  @Nullable
+  @Override
+  public byte[] read(String key) throws IOException {
+    try {
+      return Files.readAllBytes(root.resolve(key));
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public List<String> listChildren(String prefix) throws IOException {
+    List<String> result = new ArrayList<>();
+    Path dir = prefix.isEmpty() ? root : root.resolve(prefix);
+    if (!Files.isDirectory(dir))
+      return result;
+    try (DirectoryStream<Path> children = Files.newDirectoryStream(dir, Files::isDirectory)) {
+      for (Path child : children)
+        result.add(child.getFileName().toString());
+    }
+    return result;
+  }
+
+  @Override
+  public void close() {}
+}
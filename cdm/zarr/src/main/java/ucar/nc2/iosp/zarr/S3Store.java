@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.zarr;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import ucar.unidata.io.s3.CdmS3Client;
+import ucar.unidata.io.s3.CdmS3Uri;
+
+/**
+ * A Zarr store on an object store, where each key is an object. The key of the CdmS3Uri is the prefix of the store,
+ * eg cdms3:bucket?path/to/dataset.zarr
+ */
+@ThreadSafe
+class S3Store implements ZarrStore {
+  private final String location;
+  private final CdmS3Uri uri;
+  private final String root; // prefix of all keys, empty or ending with '/'
+  private final S3Client client;
+
+  S3Store(String location) throws IOException {
+    this.location = location;
+    try {
+      this.uri = new CdmS3Uri(location);
+    } catch (URISyntaxException e) {
+      throw new IOException(e);
+    }
+    String key = uri.getKey();
+    while (key.endsWith("/"))
+      key = key.substring(0, key.length() - 1);
+    this.root = key.isEmpty() ? "" : key + "/";
+    this.client = CdmS3Client.create(uri);
+  }
+
+  @Override
+  public String getLocation() {
+    return location;
+  }
+
+  @Nullable
+  @Override
+  public byte[] read(String key) throws IOException {
+    GetObjectRequest request = GetObjectRequest.builder().bucket(uri.getBucket()).key(root + key).build();
+    try {
+      return client.getObjectAsBytes(request).asByteArray();
+    } catch (NoSuchKeyException e) {
+      return null;
+    } catch (SdkException e) {
+      throw new IOException(String.format("Failed to read %s from %s", key, location), e);
+    }
+  }
+
+  @Override
+  public List<String> listChildren(String prefix) throws IOException {
+    String dir = root + (prefix.isEmpty() ? "" : prefix + "/");
+    List<String> result = new ArrayList<>();
+    String token = null;
+    try {
+      do {
+        ListObjectsV2Request request = ListObjectsV2Request.builder().bucket(uri.getBucket()).prefix(dir)
+            .delimiter("/").continuationToken(token).build();
+        ListObjectsV2Response response = client.listObjectsV2(request);
+        for (CommonPrefix child : response.commonPrefixes()) {
+          String name = child.prefix().substring(dir.length());
+          if (name.endsWith("/"))
+            name = name.substring(0, name.length() - 1);
+          if (!name.isEmpty())
+            result.add(name);
+        }
+        token = Boolean.TRUE.equals(response.isTruncated()) ? response.nextContinuationToken() : null;
+      } while (token != null);
+    } catch (SdkException e) {
+      throw new IOException(String.format("Failed to list %s in %s", prefix, location), e);
+    }
+    return result;
+  }
+
+  @Override
+  public void close() {
+    client.close();
+  }
+}
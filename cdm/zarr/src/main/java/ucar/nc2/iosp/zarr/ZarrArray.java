@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.zarr;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import ucar.ma2.DataType;
+
+/**
+ * The storage of a Zarr array: its chunk grid, how chunks are named in the store, and how they are encoded.
+ * Kept as the SPobject of its Variable.
+ */
+@Immutable
+class ZarrArray {
+  private final String path; // path of the array in the store
+  private final int[] chunkShape; // includes the string length dimension for DataType.CHAR
+  private final DataType dataType;
+  private final int elemSize;
+  private final ByteOrder byteOrder;
+  @Nullable
+  private final Number fillValue;
+  private final ImmutableList<ZarrCodec> codecs; // in decoding order
+  @Nullable
+  private final String unsupported; // why the chunks cannot be decoded
+  private final boolean v3Keys; // the Zarr v3 default chunk key encoding
+  private final String separator;
+
+  ZarrArray(String path, int[] chunkShape, DataType dataType, int elemSize, ByteOrder byteOrder,
+      @Nullable Number fillValue, List<ZarrCodec> codecs, @Nullable String unsupported, boolean v3Keys,
+      String separator) {
+    this.path = path;
+    this.chunkShape = chunkShape;
+    this.dataType = dataType;
+    this.elemSize = elemSize;
+    this.byteOrder = byteOrder;
+    this.fillValue = fillValue;
+    this.codecs = ImmutableList.copyOf(codecs);
+    this.unsupported = unsupported;
+    this.v3Keys = v3Keys;
+    this.separator = separator;
+  }
+
+  String getPath() {
+    return path;
+  }
+
+  int[] getChunkShape() {
+    return chunkShape;
+  }
+
+  DataType getDataType() {
+    return dataType;
+  }
+
+  /** The size of a chunk element in bytes. For DataType.CHAR, this is 1. */
+  int getElemSize() {
+    return elemSize;
+  }
+
+  ByteOrder getByteOrder() {
+    return byteOrder;
+  }
+
+  /** The value of the elements of chunks that are not in the store, or null for zero. */
+  @Nullable
+  Number getFillValue() {
+    return fillValue;
+  }
+
+  int getChunkBytes() {
+    long nbytes = elemSize;
+    for (int size : chunkShape)
+      nbytes *= size;
+    return (int) nbytes;
+  }
+
+  /**
+   * The key of a chunk. Zarr v2 keys are the chunk indices joined by the separator, eg "temp/0.3";
+   * the Zarr v3 default keys start with "c", eg "temp/c/0/3".
+   *
+   * @param chunkIndex index of the chunk in the chunk grid, for each dimension of the array
+   */
+  String chunkKey(int[] chunkIndex) {
+    StringBuilder sb = new StringBuilder();
+    if (v3Keys) {
+      sb.append('c');
+      for (int idx : chunkIndex)
+        sb.append(separator).append(idx);
+    } else {
+      for (int i = 0; i < chunkIndex.length; i++) {
+        if (i > 0)
+          sb.append(separator);
+        sb.append(chunkIndex[i]);
+      }
+      if (chunkIndex.length == 0)
+        sb.append('0'); // zero dimensional array
+    }
+    return ZarrStore.key(path, sb.toString());
+  }
+
+  /**
+   * Decode the bytes of a chunk, as read from the store.
+   *
+   * @return the decoded chunk, of getChunkBytes() bytes.
+   */
+  byte[] decode(byte[] raw, String key) throws IOException {
+    if (unsupported != null)
+      throw new IOException(unsupported);
+    ByteBuffer data = ByteBuffer.wrap(raw);
+    for (ZarrCodec codec : codecs) {
+      try {
+        data = codec.decode(data);
+      } catch (IOException | RuntimeException e) {
+        throw new IOException(String.format("Failed to decode %s codec in chunk %s", codec.getName(), key), e);
+      }
+    }
+    int chunkBytes = getChunkBytes();
+    if (data.remaining() != chunkBytes)
+      throw new IOException(
+          String.format("Chunk %s decoded to %d bytes, expected %d", key, data.remaining(), chunkBytes));
+    byte[] result = data.array();
+    int start = data.arrayOffset() + data.position();
+    if (start == 0 && chunkBytes == result.length)
+      return result;
+    return Arrays.copyOfRange(result, start, start + chunkBytes);
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.zarr;
+
+import com.google.common.io.ByteStreams;
+import io.airlift.compress.MalformedInputException;
+import io.airlift.compress.lz4.Lz4Decompressor;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.GZIPInputStream;
+import javax.annotation.concurrent.Immutable;
+import ucar.nc2.iosp.hdf5.H5Filter;
+import ucar.nc2.iosp.hdf5.H5Filters;
+
+/**
+ * Decodes one stage of the codec pipeline of a Zarr chunk, eg decompression or an unshuffle.
+ * Where the encoding is the same as an HDF5 filter, the H5Filter is used, so the zstd, bzip2 and blosc codecs
+ * come from the cdm-codecs module.
+ */
+@Immutable
+abstract class ZarrCodec {
+  // HDF5 filter ids
+  static final int DEFLATE = 1;
+  static final int SHUFFLE = 2;
+  static final int BZIP2 = 307;
+  static final int BLOSC = 32001;
+  static final int ZSTD = 32015;
+
+  private final String name;
+
+  ZarrCodec(String name) {
+    this.name = name;
+  }
+
+  /** The name of the codec, used in messages. */
+  String getName() {
+    return name;
+  }
+
+  /**
+   * Reverse the codec on one chunk. Must be thread safe.
+   *
+   * @param in the encoded bytes, from position to limit, in a heap ByteBuffer
+   * @return the decoded bytes, from position to limit, in a heap ByteBuffer. May share storage with in.
+   */
+  abstract ByteBuffer decode(ByteBuffer in) throws IOException;
+
+  /**
+   * A codec whose encoding is that of an HDF5 filter.
+   *
+   * @param name name of the codec
+   * @param filterId HDF5 filter id
+   * @param clientData HDF5 filter parameters
+   * @param elemSize size of a data element in bytes
+   * @param chunkBytes size of a decoded chunk in bytes
+   * @throws IOException if no H5Filter is registered for filterId, eg cdm-codecs is not on the classpath.
+   */
+  static ZarrCodec h5filter(String name, int filterId, int[] clientData, int elemSize, int chunkBytes)
+      throws IOException {
+    H5Filter filter = H5Filters.find(filterId);
+    if (filter == null)
+      throw new IOException(String.format("No H5Filter is registered for the %s codec (filter id %d); "
+          + "add the cdm-codecs module to the classpath", name, filterId));
+    return new H5FilterCodec(name, filter, new Context(clientData, elemSize, chunkBytes));
+  }
+
+  /** The numcodecs lz4 codec: the decoded size (4 bytes, little endian) followed by a single lz4 block. */
+  static ZarrCodec lz4() {
+    return new Lz4Codec();
+  }
+
+  /** The gzip codec. */
+  static ZarrCodec gzip() {
+    return new GzipCodec();
+  }
+
+  /** The Zarr v3 crc32c codec, which appends a 4 byte checksum. The checksum is not verified. */
+  static ZarrCodec crc32c() {
+    return new Crc32cCodec();
+  }
+
+  private static class H5FilterCodec extends ZarrCodec {
+    private final H5Filter filter;
+    private final H5Filter.Context context;
+
+    H5FilterCodec(String name, H5Filter filter, H5Filter.Context context) {
+      super(name);
+      this.filter = filter;
+      this.context = context;
+    }
+
+    @Override
+    ByteBuffer decode(ByteBuffer in) throws IOException {
+      return filter.decode(in, context);
+    }
+  }
+
+  // Not the HDF5 lz4 filter: that takes a block whose compressed size equals its decoded size to be stored
+  // uncompressed, while numcodecs always compresses the block.
+  private static class Lz4Codec extends ZarrCodec {
+    Lz4Codec() {
+      super("lz4");
+    }
+
+    @Override
+    ByteBuffer decode(ByteBuffer in) throws IOException {
+      if (in.remaining() < 4)
+        throw new IOException("lz4 chunk is too short: " + in.remaining());
+      int size = in.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt();
+      if (size <= 0)
+        throw new IOException("Bad lz4 decoded size " + size);
+      byte[] out = new byte[size];
+      try {
+        int n = new Lz4Decompressor().decompress(in.array(), in.arrayOffset() + in.position() + 4, in.remaining() - 4,
+            out, 0, size);
+        if (n != size)
+          throw new IOException(String.format("lz4 chunk decoded to %d bytes, expected %d", n, size));
+      } catch (MalformedInputException e) {
+        throw new IOException("Bad lz4 data", e);
+      }
+      return ByteBuffer.wrap(out);
+    }
+  }
+
+  private static class GzipCodec extends ZarrCodec {
+    GzipCodec() {
+      super("gzip");
+    }
+
+    @Override
+    ByteBuffer decode(ByteBuffer in) throws IOException {
+      try (InputStream gzip =
+          new GZIPInputStream(new ByteArrayInputStream(in.array(), in.arrayOffset() + in.position(), in.remaining()))) {
+        return ByteBuffer.wrap(ByteStreams.toByteArray(gzip));
+      }
+    }
+  }
+
+  private static class Crc32cCodec extends ZarrCodec {
+    Crc32cCodec() {
+      super("crc32c");
+    }
+
+    @Override
+    ByteBuffer decode(ByteBuffer in) throws IOException {
+      if (in.remaining() < 4)
+        throw new IOException("crc32c chunk is too short: " + in.remaining());
+      ByteBuffer result = in.duplicate();
+      result.limit(result.limit() - 4);
+      return result;
+    }
+  }
+
+  /** The H5Filter.Context of a codec. The filter parameters are fixed for the array. */
+  private static class Context implements H5Filter.Context {
+    private final int[] clientData;
+    private final int elemSize;
+    private final int chunkBytes;
+
+    Context(int[] clientData, int elemSize, int chunkBytes) {
+      this.clientData = clientData;
+      this.elemSize = elemSize;
+      this.chunkBytes = chunkBytes;
+    }
+
+    public int[] getClientData() {
+      return clientData;
+    }
+
+    public int getElemSize() {
+      return elemSize;
+    }
+
+    public int getChunkBytes() {
+      return chunkBytes;
+    }
+
+    // the codecs work on the bytes; only the scaleoffset and nbit HDF5 filters look at the data element order
+    public ByteOrder getByteOrder() {
+      return ByteOrder.LITTLE_ENDIAN;
+    }
+
+    public ByteBuffer allocate(int nbytes) {
+      return ByteBuffer.allocate(nbytes);
+    }
+  }
+}
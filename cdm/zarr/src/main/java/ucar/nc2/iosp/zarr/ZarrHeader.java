@@ -0,0 +1,645 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.zarr;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.ma2.DataType;
+import ucar.nc2.Attribute;
+import ucar.nc2.AttributeContainerMutable;
+import ucar.nc2.Dimension;
+import ucar.nc2.Group;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.constants.CDM;
+
+/**
+ * Reads the metadata of a Zarr v2 or v3 hierarchy into the CDM objects.
+ * <ul>
+ * <li>A Zarr group becomes a Group, and a Zarr array becomes a Variable.</li>
+ * <li>Zarr attributes become Attributes. The dimension names that xarray puts in the _ARRAY_DIMENSIONS attribute
+ * (v2), or the dimension_names of the array (v3), become shared Dimensions; otherwise the dimensions are
+ * anonymous.</li>
+ * <li>The fill_value becomes the _FillValue attribute.</li>
+ * <li>Consolidated metadata (.zmetadata in v2, consolidated_metadata in v3) is used when present, so that the store
+ * does not have to be listed.</li>
+ * </ul>
+ */
+class ZarrHeader {
+  private static final Logger logger = LoggerFactory.getLogger(ZarrHeader.class);
+
+  static final String ARRAY_DIMENSIONS = "_ARRAY_DIMENSIONS";
+
+  private final ZarrStore store;
+  @Nullable
+  private Map<String, JsonObject> consolidated; // key of the metadata document -> document
+
+  ZarrHeader(ZarrStore store) {
+    this.store = store;
+  }
+
+  /** Read the hierarchy into the root group. */
+  void read(Group.Builder root) throws IOException {
+    JsonObject v3 = readJson("zarr.json");
+    if (v3 != null) {
+      readConsolidatedV3(v3);
+      if (isArrayV3(v3))
+        addArrayV3(root, "", rootArrayName(), v3);
+      else
+        readGroupV3(root, "", v3);
+      return;
+    }
+
+    JsonObject zmetadata = readJson(".zmetadata");
+    if (zmetadata != null && zmetadata.has("metadata"))
+      readConsolidatedV2(zmetadata.getAsJsonObject("metadata"));
+    JsonObject zarray = readJson(".zarray");
+    if (zarray != null) {
+      addArrayV2(root, "", rootArrayName(), zarray);
+      return;
+    }
+    if (readJson(".zgroup") == null)
+      throw new IOException("Not a Zarr store: " + store.getLocation());
+    readGroupV2(root, "");
+  }
+
+  // an array at the root of the store is named after the store
+  private String rootArrayName() {
+    String name = store.getLocation();
+    while (name.endsWith("/"))
+      name = name.substring(0, name.length() - 1);
+    name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('?')) + 1);
+    int pos = name.lastIndexOf('.');
+    if (pos > 0)
+      name = name.substring(0, pos);
+    return name.isEmpty() ? "data" : NetcdfFiles.makeValidCdmObjectName(name);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////
+  // Zarr v2
+
+  private void readConsolidatedV2(JsonObject metadata) {
+    consolidated = new HashMap<>();
+    for (Map.Entry<String, JsonElement> entry : metadata.entrySet()) {
+      if (entry.getValue().isJsonObject())
+        consolidated.put(entry.getKey(), entry.getValue().getAsJsonObject());
+    }
+  }
+
+  private void readGroupV2(Group.Builder group, String path) throws IOException {
+    addAttributes(group.getAttributeContainer(), readJson(ZarrStore.key(path, ".zattrs")), null);
+    for (String child : listChildren(path)) {
+      String childPath = ZarrStore.key(path, child);
+      String name = NetcdfFiles.makeValidCdmObjectName(child);
+      JsonObject zarray = readJson(ZarrStore.key(childPath, ".zarray"));
+      if (zarray != null) {
+        addArrayV2(group, childPath, name, zarray);
+      } else if (readJson(ZarrStore.key(childPath, ".zgroup")) != null) {
+        Group.Builder nested = Group.builder().setName(name);
+        group.addGroup(nested);
+        readGroupV2(nested, childPath);
+      }
+    }
+  }
+
+  private void addArrayV2(Group.Builder group, String path, String name, JsonObject zarray) throws IOException {
+    JsonObject zattrs = readJson(ZarrStore.key(path, ".zattrs"));
+    int[] shape = getInts(zarray, "shape");
+    int[] chunks = getInts(zarray, "chunks");
+    JsonElement dtypeElem = zarray.get("dtype");
+    String dtype =
+        (dtypeElem != null && dtypeElem.isJsonPrimitive()) ? dtypeElem.getAsString() : String.valueOf(dtypeElem);
+    if (shape == null || chunks == null || chunks.length != shape.length || dtype.length() < 3) {
+      logger.warn("Skipping Zarr array {} in {}: bad .zarray", path, store.getLocation());
+      return;
+    }
+
+    DataType dataType = null;
+    int size = parseInt(dtype.substring(2));
+    String kind = dtype.substring(1, 2);
+    switch (kind) {
+      case "b":
+        dataType = (size == 1) ? DataType.UBYTE : null;
+        break;
+      case "i":
+        dataType = integerType(size, false);
+        break;
+      case "u":
+        dataType = integerType(size, true);
+        break;
+      case "f":
+        dataType = (size == 4) ? DataType.FLOAT : (size == 8) ? DataType.DOUBLE : null;
+        break;
+      case "S":
+        dataType = (size > 0) ? DataType.CHAR : null;
+        break;
+    }
+    if (dataType == null) {
+      logger.warn("Skipping Zarr array {} in {}: dtype {} is not supported", path, store.getLocation(), dtype);
+      return;
+    }
+    ByteOrder byteOrder = dtype.charAt(0) == '>' ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    int elemSize = (dataType == DataType.CHAR) ? 1 : size;
+    int[] chunkShape = (dataType == DataType.CHAR) ? append(chunks, size) : chunks;
+    int chunkBytes = chunkBytes(chunkShape, elemSize);
+
+    // decode the compressor, then the filters in reverse order
+    List<ZarrCodec> codecs = new ArrayList<>();
+    String unsupported = null;
+    try {
+      String order = getString(zarray, "order", "C");
+      if (!order.equals("C"))
+        throw new IOException("Zarr array order " + order + " is not supported");
+      JsonElement compressor = zarray.get("compressor");
+      if (compressor != null && compressor.isJsonObject())
+        codecs.add(makeCodec(compressor.getAsJsonObject(), "id", elemSize, chunkBytes));
+      JsonElement filters = zarray.get("filters");
+      if (filters != null && filters.isJsonArray()) {
+        JsonArray filterArray = filters.getAsJsonArray();
+        for (int i = filterArray.size() - 1; i >= 0; i--)
+          codecs.add(makeCodec(filterArray.get(i).getAsJsonObject(), "id", elemSize, chunkBytes));
+      }
+    } catch (IOException e) {
+      unsupported = String.format("Cant read Zarr array %s in %s: %s", path, store.getLocation(), e.getMessage());
+      logger.warn(unsupported);
+    }
+
+    Number fillValue = (dataType == DataType.CHAR) ? null : makeNumber(dataType, zarray.get("fill_value"));
+    String separator = getString(zarray, "dimension_separator", ".");
+    ZarrArray array = new ZarrArray(path, chunkShape, dataType, elemSize, byteOrder, fillValue, codecs, unsupported,
+        false, separator);
+    List<String> dimNames = (zattrs == null) ? null : getStrings(zattrs.get(ARRAY_DIMENSIONS));
+    addVariable(group, name, shape, dimNames, array, zattrs);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////
+  // Zarr v3
+
+  private static boolean isArrayV3(JsonObject node) {
+    return "array".equals(getString(node, "node_type", ""));
+  }
+
+  // the consolidated metadata of the root group is keyed by the path of each node
+  private void readConsolidatedV3(JsonObject root) {
+    JsonElement cm = root.get("consolidated_metadata");
+    if (cm == null || !cm.isJsonObject() || !cm.getAsJsonObject().has("metadata"))
+      return;
+    JsonElement metadata = cm.getAsJsonObject().get("metadata");
+    if (!metadata.isJsonObject())
+      return;
+    consolidated = new HashMap<>();
+    consolidated.put("zarr.json", root);
+    for (Map.Entry<String, JsonElement> entry : metadata.getAsJsonObject().entrySet()) {
+      if (entry.getValue().isJsonObject())
+        consolidated.put(ZarrStore.key(entry.getKey(), "zarr.json"), entry.getValue().getAsJsonObject());
+    }
+  }
+
+  private void readGroupV3(Group.Builder group, String path, JsonObject node) throws IOException {
+    addAttributes(group.getAttributeContainer(), asObject(node.get("attributes")), null);
+    for (String child : listChildren(path)) {
+      String childPath = ZarrStore.key(path, child);
+      JsonObject childNode = readJson(ZarrStore.key(childPath, "zarr.json"));
+      if (childNode == null)
+        continue;
+      String name = NetcdfFiles.makeValidCdmObjectName(child);
+      if (isArrayV3(childNode)) {
+        addArrayV3(group, childPath, name, childNode);
+      } else {
+        Group.Builder nested = Group.builder().setName(name);
+        group.addGroup(nested);
+        readGroupV3(nested, childPath, childNode);
+      }
+    }
+  }
+
+  private void addArrayV3(Group.Builder group, String path, String name, JsonObject node) throws IOException {
+    int[] shape = getInts(node, "shape");
+    int[] chunks = null;
+    JsonObject chunkGrid = asObject(node.get("chunk_grid"));
+    if (chunkGrid != null && "regular".equals(getString(chunkGrid, "name", ""))) {
+      JsonObject config = asObject(chunkGrid.get("configuration"));
+      if (config != null)
+        chunks = getInts(config, "chunk_shape");
+    }
+    if (shape == null || chunks == null || chunks.length != shape.length) {
+      logger.warn("Skipping Zarr array {} in {}: no regular chunk grid", path, store.getLocation());
+      return;
+    }
+
+    String dtype = getString(node, "data_type", "");
+    DataType dataType;
+    switch (dtype) {
+      case "bool":
+      case "uint8":
+        dataType = DataType.UBYTE;
+        break;
+      case "int8":
+        dataType = DataType.BYTE;
+        break;
+      case "int16":
+        dataType = DataType.SHORT;
+        break;
+      case "uint16":
+        dataType = DataType.USHORT;
+        break;
+      case "int32":
+        dataType = DataType.INT;
+        break;
+      case "uint32":
+        dataType = DataType.UINT;
+        break;
+      case "int64":
+        dataType = DataType.LONG;
+        break;
+      case "uint64":
+        dataType = DataType.ULONG;
+        break;
+      case "float32":
+        dataType = DataType.FLOAT;
+        break;
+      case "float64":
+        dataType = DataType.DOUBLE;
+        break;
+      default:
+        logger.warn("Skipping Zarr array {} in {}: data_type {} is not supported", path, store.getLocation(), dtype);
+        return;
+    }
+    int elemSize = dataType.getSize();
+    int chunkBytes = chunkBytes(chunks, elemSize);
+
+    // the codecs are listed in encoding order: array to array, array to bytes, then bytes to bytes
+    ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+    List<ZarrCodec> codecs = new ArrayList<>();
+    String unsupported = null;
+    try {
+      JsonElement codecList = node.get("codecs");
+      if (codecList != null && codecList.isJsonArray()) {
+        for (JsonElement elem : codecList.getAsJsonArray()) {
+          JsonObject codec = elem.getAsJsonObject();
+          String codecName = getString(codec, "name", "");
+          JsonObject config = asObject(codec.get("configuration"));
+          if (codecName.equals("bytes")) {
+            if (config != null && "big".equals(getString(config, "endian", "little")))
+              byteOrder = ByteOrder.BIG_ENDIAN;
+          } else {
+            codecs.add(0, makeCodec(codec, "name", elemSize, chunkBytes));
+          }
+        }
+      }
+    } catch (IOException e) {
+      unsupported = String.format("Cant read Zarr array %s in %s: %s", path, store.getLocation(), e.getMessage());
+      logger.warn(unsupported);
+    }
+
+    boolean v3Keys = true;
+    String separator = "/";
+    JsonObject keyEncoding = asObject(node.get("chunk_key_encoding"));
+    if (keyEncoding != null) {
+      v3Keys = !"v2".equals(getString(keyEncoding, "name", "default"));
+      JsonObject config = asObject(keyEncoding.get("configuration"));
+      separator = getString(config, "separator", v3Keys ? "/" : ".");
+    }
+
+    Number fillValue = makeNumber(dataType, node.get("fill_value"));
+    ZarrArray array =
+        new ZarrArray(path, chunks, dataType, elemSize, byteOrder, fillValue, codecs, unsupported, v3Keys, separator);
+    addVariable(group, name, shape, getStrings(node.get("dimension_names")), array, asObject(node.get("attributes")));
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Make the codec for the v2 compressor or a filter, or a v3 codec.
+   *
+   * @param codec the codec metadata
+   * @param idName the name of the codec identifier, "id" in v2, "name" in v3
+   */
+  private static ZarrCodec makeCodec(JsonObject codec, String idName, int elemSize, int chunkBytes)
+      throws IOException {
+    String id = getString(codec, idName, "");
+    // v3 parameters are in a configuration object, v2 parameters are inline
+    JsonObject config = codec.has("configuration") ? asObject(codec.get("configuration")) : codec;
+    if (id.startsWith("numcodecs."))
+      id = id.substring("numcodecs.".length());
+    switch (id) {
+      case "zlib":
+        return ZarrCodec.h5filter(id, ZarrCodec.DEFLATE, new int[0], elemSize, chunkBytes);
+      case "gzip":
+        return ZarrCodec.gzip();
+      case "zstd":
+        return ZarrCodec.h5filter(id, ZarrCodec.ZSTD, new int[0], elemSize, chunkBytes);
+      case "blosc":
+        return ZarrCodec.h5filter(id, ZarrCodec.BLOSC, new int[0], elemSize, chunkBytes);
+      case "bz2":
+        return ZarrCodec.h5filter(id, ZarrCodec.BZIP2, new int[0], elemSize, chunkBytes);
+      case "lz4":
+        return ZarrCodec.lz4();
+      case "shuffle":
+        int shuffleSize =
+            (config != null && config.has("elementsize")) ? config.get("elementsize").getAsInt() : elemSize;
+        return ZarrCodec.h5filter(id, ZarrCodec.SHUFFLE, new int[] {shuffleSize}, elemSize, chunkBytes);
+      case "crc32c":
+        return ZarrCodec.crc32c();
+      default:
+        throw new IOException("Zarr codec " + id + " is not supported");
+    }
+  }
+
+  // add the Variable, with shared dimensions if they are named
+  private void addVariable(Group.Builder group, String name, int[] shape, @Nullable List<String> dimNames,
+      ZarrArray array, @Nullable JsonObject attributes) {
+    if (group.findVariableLocal(name).isPresent()) {
+      logger.warn("Skipping Zarr array {} in {}: duplicate name", array.getPath(), store.getLocation());
+      return;
+    }
+    List<Dimension> dims = new ArrayList<>();
+    for (int i = 0; i < shape.length; i++) {
+      String dimName = (dimNames != null && dimNames.size() == shape.length) ? dimNames.get(i) : null;
+      Dimension dim = null;
+      if (dimName != null && !dimName.isEmpty()) {
+        dimName = NetcdfFiles.makeValidCdmObjectName(dimName);
+        Optional<Dimension> existing = group.findDimension(dimName);
+        if (!existing.isPresent()) {
+          dim = new Dimension(dimName, shape[i]);
+          group.addDimension(dim);
+        } else if (existing.get().getLength() == shape[i]) {
+          dim = existing.get();
+        }
+      }
+      if (dim == null) // not named, or the name is used with a different length
+        dim = Dimension.builder().setLength(shape[i]).setIsShared(false).build();
+      dims.add(dim);
+    }
+    if (array.getDataType() == DataType.CHAR) {
+      int strlen = array.getChunkShape()[shape.length];
+      dims.add(Dimension.builder().setLength(strlen).setIsShared(false).build());
+    }
+
+    Variable.Builder<?> vb =
+        Variable.builder().setName(name).setDataType(array.getDataType()).setDimensions(dims).setSPobject(array);
+    addAttributes(vb.getAttributeContainer(), attributes, ARRAY_DIMENSIONS);
+    Number fillValue = array.getFillValue();
+    if (fillValue != null && vb.getAttributeContainer().findAttribute(CDM.FILL_VALUE) == null) {
+      vb.addAttribute(Attribute.builder(CDM.FILL_VALUE).setNumericValue(fillValue, array.getDataType().isUnsigned())
+          .build());
+    }
+    group.addVariable(vb);
+  }
+
+  private static void addAttributes(AttributeContainerMutable container, @Nullable JsonObject attributes,
+      @Nullable String skip) {
+    if (attributes == null)
+      return;
+    for (Map.Entry<String, JsonElement> entry : attributes.entrySet()) {
+      if (entry.getKey().equals(skip))
+        continue;
+      Attribute att = makeAttribute(entry.getKey(), entry.getValue());
+      if (att != null)
+        container.addAttribute(att);
+    }
+  }
+
+  /**
+   * Make an Attribute from a JSON attribute value. Numbers and strings, and lists of them, map directly;
+   * booleans become the strings "true" and "false", and other values are kept as JSON text.
+   */
+  @Nullable
+  static Attribute makeAttribute(String name, JsonElement value) {
+    if (value == null || value.isJsonNull())
+      return null;
+    if (value.isJsonPrimitive()) {
+      JsonPrimitive prim = value.getAsJsonPrimitive();
+      if (prim.isNumber())
+        return new Attribute(name, toNumber(prim));
+      return new Attribute(name, prim.getAsString());
+    }
+    if (value.isJsonArray() && value.getAsJsonArray().size() > 0) {
+      JsonArray array = value.getAsJsonArray();
+      boolean allNumbers = true;
+      boolean allStrings = true;
+      boolean allIntegers = true;
+      for (JsonElement elem : array) {
+        boolean isNumber = elem.isJsonPrimitive() && elem.getAsJsonPrimitive().isNumber();
+        allNumbers &= isNumber;
+        allStrings &= elem.isJsonPrimitive() && elem.getAsJsonPrimitive().isString();
+        allIntegers &= isNumber && toNumber(elem.getAsJsonPrimitive()) instanceof Integer;
+      }
+      if (allNumbers || allStrings) {
+        List<Object> values = new ArrayList<>();
+        for (JsonElement elem : array) {
+          if (allIntegers)
+            values.add(elem.getAsInt());
+          else if (allNumbers)
+            values.add(elem.getAsDouble());
+          else
+            values.add(elem.getAsString());
+        }
+        return Attribute.builder(name).setValues(values, false).build();
+      }
+    }
+    return new Attribute(name, value.toString());
+  }
+
+  // integral values become Integer or Long, others Double
+  private static Number toNumber(JsonPrimitive prim) {
+    BigDecimal value = prim.getAsBigDecimal();
+    try {
+      long lval = value.longValueExact();
+      if (lval >= Integer.MIN_VALUE && lval <= Integer.MAX_VALUE)
+        return (int) lval;
+      return lval;
+    } catch (ArithmeticException e) {
+      return value.doubleValue();
+    }
+  }
+
+  /**
+   * Make the fill value of an array. Zarr writes NaN and infinities as strings, and v3 may write floating point
+   * values as the hex string of their bits.
+   *
+   * @return the fill value as the Number class of the DataType, or null if none.
+   */
+  @Nullable
+  static Number makeNumber(DataType dataType, @Nullable JsonElement value) {
+    if (value == null || !value.isJsonPrimitive())
+      return null;
+    JsonPrimitive prim = value.getAsJsonPrimitive();
+    double dval;
+    long lval;
+    if (prim.isBoolean()) {
+      dval = lval = prim.getAsBoolean() ? 1 : 0;
+    } else if (prim.isNumber()) {
+      BigDecimal bd = prim.getAsBigDecimal();
+      dval = bd.doubleValue();
+      lval = bd.toBigInteger().longValue(); // wraps around for large unsigned values
+    } else {
+      String sval = prim.getAsString();
+      if (sval.startsWith("0x") && dataType == DataType.FLOAT) {
+        dval = Float.intBitsToFloat(Integer.parseUnsignedInt(sval.substring(2), 16));
+      } else if (sval.startsWith("0x") && dataType == DataType.DOUBLE) {
+        dval = Double.longBitsToDouble(Long.parseUnsignedLong(sval.substring(2), 16));
+      } else if (sval.equals("NaN")) {
+        dval = Double.NaN;
+      } else if (sval.equals("Infinity")) {
+        dval = Double.POSITIVE_INFINITY;
+      } else if (sval.equals("-Infinity")) {
+        dval = Double.NEGATIVE_INFINITY;
+      } else {
+        return null;
+      }
+      lval = (long) dval;
+    }
+    switch (dataType) {
+      case BYTE:
+      case UBYTE:
+        return (byte) lval;
+      case SHORT:
+      case USHORT:
+        return (short) lval;
+      case INT:
+      case UINT:
+        return (int) lval;
+      case LONG:
+      case ULONG:
+        return lval;
+      case FLOAT:
+        return (float) dval;
+      case DOUBLE:
+        return dval;
+      default:
+        return null;
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////
+
+  // read a metadata document, from the consolidated metadata if there is any
+  @Nullable
+  private JsonObject readJson(String key) throws IOException {
+    if (consolidated != null)
+      return consolidated.get(key);
+    byte[] bytes = store.read(key);
+    if (bytes == null)
+      return null;
+    try {
+      JsonElement json = JsonParser.parseString(new String(bytes, StandardCharsets.UTF_8));
+      return json.isJsonObject() ? json.getAsJsonObject() : null;
+    } catch (JsonParseException e) {
+      throw new IOException(String.format("Bad JSON in %s of %s", key, store.getLocation()), e);
+    }
+  }
+
+  // the child nodes of a group, in sorted order
+  private List<String> listChildren(String path) throws IOException {
+    List<String> result;
+    if (consolidated != null) {
+      String prefix = path.isEmpty() ? "" : path + "/";
+      Set<String> children = new LinkedHashSet<>();
+      for (String key : consolidated.keySet()) {
+        if (!key.startsWith(prefix))
+          continue;
+        int pos = key.indexOf('/', prefix.length());
+        if (pos > prefix.length())
+          children.add(key.substring(prefix.length(), pos));
+      }
+      result = new ArrayList<>(children);
+    } else {
+      result = new ArrayList<>(store.listChildren(path));
+    }
+    Collections.sort(result);
+    return result;
+  }
+
+  @Nullable
+  private static JsonObject asObject(@Nullable JsonElement elem) {
+    return (elem != null && elem.isJsonObject()) ? elem.getAsJsonObject() : null;
+  }
+
+  private static String getString(@Nullable JsonObject obj, String name, String def) {
+    JsonElement elem = (obj == null) ? null : obj.get(name);
+    return (elem != null && elem.isJsonPrimitive()) ? elem.getAsString() : def;
+  }
+
+  @Nullable
+  private static int[] getInts(JsonObject obj, String name) {
+    JsonElement elem = obj.get(name);
+    if (elem == null || !elem.isJsonArray())
+      return null;
+    JsonArray array = elem.getAsJsonArray();
+    int[] result = new int[array.size()];
+    for (int i = 0; i < result.length; i++)
+      result[i] = array.get(i).getAsInt();
+    return result;
+  }
+
+  // null elements become null
+  @Nullable
+  private static List<String> getStrings(@Nullable JsonElement elem) {
+    if (elem == null || !elem.isJsonArray())
+      return null;
+    List<String> result = new ArrayList<>();
+    for (JsonElement e : elem.getAsJsonArray())
+      result.add(e.isJsonPrimitive() ? e.getAsString() : null);
+    return result;
+  }
+
+  private static int parseInt(String s) {
+    try {
+      return Integer.parseInt(s);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  @Nullable
+  private static DataType integerType(int size, boolean unsigned) {
+    switch (size) {
+      case 1:
+        return unsigned ? DataType.UBYTE : DataType.BYTE;
+      case 2:
+        return unsigned ? DataType.USHORT : DataType.SHORT;
+      case 4:
+        return unsigned ? DataType.UINT : DataType.INT;
+      case 8:
+        return unsigned ? DataType.ULONG : DataType.LONG;
+      default:
+        return null;
+    }
+  }
+
+  private static int[] append(int[] shape, int last) {
+    int[] result = new int[shape.length + 1];
+    System.arraycopy(shape, 0, result, 0, shape.length);
+    result[shape.length] = last;
+    return result;
+  }
+
+  private static int chunkBytes(int[] chunkShape, int elemSize) {
+    long nbytes = elemSize;
+    for (int size : chunkShape)
+      nbytes *= size;
+    return (int) Math.min(nbytes, Integer.MAX_VALUE - 8);
+  }
+}
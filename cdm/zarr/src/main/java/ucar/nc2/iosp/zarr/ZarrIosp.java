@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.zarr;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.Group;
+import ucar.nc2.Variable;
+import ucar.nc2.constants.DataFormatType;
+import ucar.nc2.iosp.AbstractIOServiceProvider;
+import ucar.nc2.iosp.IospHelper;
+import ucar.nc2.util.CancelTask;
+import ucar.nc2.util.SharedExecutor;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * IOSP for Zarr v2 and v3 stores, in a local directory, a zip file, or on an object store.
+ * The store is opened by the ZarrStoreFile.Provider.
+ * <p>
+ * The chunks of a read are fetched from the store and decoded concurrently, on a shared pool whose size is set by
+ * the "ucar.nc2.iosp.zarr.threads" system property (default 2 * the number of processors, at least 8),
+ * up to "ucar.nc2.iosp.zarr.prefetch" chunks ahead of the reader (default 2 * threads). With one thread, the chunks
+ * are read on the calling thread.
+ */
+public class ZarrIosp extends AbstractIOServiceProvider {
+  // reading chunks is mostly waiting on the store, so use more threads than processors
+  private static final SharedExecutor executor = new SharedExecutor("zarr-read", "ucar.nc2.iosp.zarr",
+      Math.max(8, 2 * Runtime.getRuntime().availableProcessors()));
+
+  /**
+   * Set the Executor used to read and decode chunks, overriding the default pool sized by the
+   * "ucar.nc2.iosp.zarr.threads" system property.
+   *
+   * @param exec read chunks on this Executor, or null to read them on the calling thread.
+   * @param nprefetch maximum number of chunks read ahead of the consumer, must be > 0.
+   */
+  public static void setExecutor(@Nullable Executor exec, int nprefetch) {
+    executor.set(exec, nprefetch);
+  }
+
+  /** Go back to the default pool sized by the system properties, after setExecutor(). */
+  public static void resetExecutor() {
+    executor.reset();
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////
+
+  private ZarrStore store;
+
+  @Override
+  public boolean isValidFile(RandomAccessFile raf) {
+    return raf instanceof ZarrStoreFile;
+  }
+
+  @Override
+  public void build(RandomAccessFile raf, Group.Builder rootGroup, CancelTask cancelTask) throws IOException {
+    super.open(raf, rootGroup.getNcfile(), cancelTask);
+    this.store = ((ZarrStoreFile) raf).getStore();
+    new ZarrHeader(store).read(rootGroup);
+  }
+
+  @Override
+  public Array readData(Variable v2, Section section) throws IOException, InvalidRangeException {
+    ZarrArray array = (ZarrArray) v2.getSPobject();
+    Section want = Section.fill(section, v2.getShape());
+    ZarrLayoutBB layout = new ZarrLayoutBB(store, array, want, executor.getExecutor(), executor.getPrefetch());
+    Object data;
+    try {
+      data = IospHelper.readDataFill(layout, v2.getDataType(), array.getFillValue());
+    } catch (IllegalStateException e) {
+      // LayoutBBTiled wraps the IOException of a chunk
+      if (e.getCause() instanceof IOException)
+        throw (IOException) e.getCause();
+      throw e;
+    }
+    return Array.factory(v2.getDataType(), want.getShape(), data);
+  }
+
+  @Override
+  public String getFileTypeId() {
+    return DataFormatType.ZARR.getDescription();
+  }
+
+  @Override
+  public String getFileTypeDescription() {
+    return "Zarr chunked array storage, version 2 and 3";
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.zarr;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import javax.annotation.Nullable;
+import ucar.ma2.DataType;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
+import ucar.nc2.iosp.LayoutBB;
+import ucar.nc2.iosp.LayoutBBTiled;
+
+/**
+ * Iterates over the chunks of a Zarr array that intersect the wanted section.
+ * Chunks are read from the store and decoded on the Executor, up to prefetch chunks ahead of the consumer,
+ * and are delivered to LayoutBBTiled in row-major order. Chunks that are not in the store are skipped,
+ * so their elements keep the fill value.
+ */
+class ZarrLayoutBB implements LayoutBB {
+  private final LayoutBBTiled delegate;
+  private final ZarrStore store;
+  private final ZarrArray array;
+  @Nullable
+  private final Executor executor;
+
+  /**
+   * Constructor.
+   *
+   * @param store read chunks from here
+   * @param array the array metadata
+   * @param want the wanted section, complete, in the rank of the chunks
+   * @param executor read and decode chunks here, or on the calling thread if null
+   * @param prefetch maximum number of chunks read ahead of the consumer, must be > 0
+   */
+  ZarrLayoutBB(ZarrStore store, ZarrArray array, Section want, @Nullable Executor executor, int prefetch) {
+    this.store = store;
+    this.array = array;
+    this.executor = executor;
+    int[] chunkShape = array.getChunkShape();
+    this.delegate = new LayoutBBTiled(new DataChunkIterator(want, chunkShape, prefetch), chunkShape,
+        array.getElemSize(), want);
+  }
+
+  @Override
+  public long getTotalNelems() {
+    return delegate.getTotalNelems();
+  }
+
+  @Override
+  public int getElemSize() {
+    return delegate.getElemSize();
+  }
+
+  @Override
+  public boolean hasNext() {
+    return delegate.hasNext();
+  }
+
+  @Override
+  public Chunk next() {
+    return delegate.next();
+  }
+
+  private class DataChunkIterator implements LayoutBBTiled.DataChunkIterator {
+    private final int[] chunkShape;
+    private final int nIndexDims; // the string length dimension of a CHAR array is not chunked
+    private final int[] first; // first chunk index in each dimension
+    private final int[] last; // last chunk index in each dimension
+    private final int[] counter; // next chunk index
+    private final int prefetch;
+    private final ArrayDeque<DataChunk> pending = new ArrayDeque<>();
+    private boolean done;
+
+    DataChunkIterator(Section want, int[] chunkShape, int prefetch) {
+      this.chunkShape = chunkShape;
+      this.prefetch = prefetch;
+      int rank = chunkShape.length;
+      this.nIndexDims = array.getDataType() == DataType.CHAR ? rank - 1 : rank;
+      this.first = new int[rank];
+      this.last = new int[rank];
+      for (int i = 0; i < rank; i++) {
+        Range r = want.getRange(i);
+        first[i] = r.first() / chunkShape[i];
+        last[i] = r.last() / chunkShape[i];
+        done |= r.length() == 0;
+      }
+      this.counter = first.clone();
+    }
+
+    // true if there is another chunk in the store; waits for the next chunk to be read
+    public boolean hasNext() {
+      while (true) {
+        fill();
+        DataChunk next = pending.peek();
+        if (next == null)
+          return false;
+        if (!next.isMissing())
+          return true;
+        pending.poll();
+      }
+    }
+
+    public LayoutBBTiled.DataChunk next() {
+      fill();
+      DataChunk next = pending.poll();
+      if (next == null)
+        throw new NoSuchElementException();
+      return next;
+    }
+
+    private void fill() {
+      while (pending.size() < prefetch && !done) {
+        int[] index = new int[nIndexDims];
+        int[] offset = new int[chunkShape.length];
+        for (int i = 0; i < chunkShape.length; i++) {
+          if (i < nIndexDims)
+            index[i] = counter[i];
+          offset[i] = counter[i] * chunkShape[i];
+        }
+        DataChunk chunk = new DataChunk(offset, array.chunkKey(index));
+        if (executor != null)
+          executor.execute(chunk.task);
+        pending.add(chunk);
+        done = !increment();
+      }
+    }
+
+    // row-major odometer over the chunk indices
+    private boolean increment() {
+      for (int i = counter.length - 1; i >= 0; i--) {
+        if (counter[i] < last[i]) {
+          counter[i]++;
+          return true;
+        }
+        counter[i] = first[i];
+      }
+      return false;
+    }
+  }
+
+  private class DataChunk implements LayoutBBTiled.DataChunk {
+    private final int[] offset;
+    private final String key;
+    private final FutureTask<byte[]> task;
+
+    DataChunk(int[] offset, String key) {
+      this.offset = offset;
+      this.key = key;
+      // a chunk that is not in the store yields null
+      this.task = new FutureTask<>(() -> {
+        byte[] raw = store.read(key);
+        return (raw == null) ? null : array.decode(raw, key);
+      });
+    }
+
+    @Override
+    public int[] getOffset() {
+      return offset;
+    }
+
+    // a chunk that failed to read is not missing; getByteBuffer() reports the failure
+    boolean isMissing() {
+      try {
+        return get() == null;
+      } catch (IOException e) {
+        return false;
+      }
+    }
+
+    @Override
+    public ByteBuffer getByteBuffer() throws IOException {
+      byte[] data = get();
+      if (data == null)
+        throw new IOException("Chunk " + key + " is not in the store " + store.getLocation());
+      return ByteBuffer.wrap(data).order(array.getByteOrder());
+    }
+
+    private byte[] get() throws IOException {
+      task.run(); // no-op if it already ran on the executor
+      try {
+        return task.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted reading chunk " + key);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException)
+          throw (IOException) cause;
+        if (cause instanceof RuntimeException)
+          throw (RuntimeException) cause;
+        if (cause instanceof Error)
+          throw (Error) cause;
+        throw new IOException(cause);
+      }
+    }
+  }
+}
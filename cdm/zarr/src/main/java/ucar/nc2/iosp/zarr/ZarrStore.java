@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.zarr;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * The key/value store holding a Zarr hierarchy. Keys are '/' separated paths relative to the root of the store,
+ * eg "temp/.zarray" or "temp/0.0". Implementations must be thread safe, since chunks are read concurrently.
+ */
+interface ZarrStore extends Closeable {
+
+  /** The location of the store, for messages. */
+  String getLocation();
+
+  /**
+   * Read the value of a key.
+   *
+   * @param key the key, relative to the root of the store
+   * @return the value, or null if the key does not exist.
+   */
+  @Nullable
+  byte[] read(String key) throws IOException;
+
+  /**
+   * The names of the nodes directly below a node, eg the groups and arrays of a group.
+   *
+   * @param prefix path of the node, relative to the root of the store; empty for the root.
+   * @return the names of the child nodes, without the prefix, in any order.
+   */
+  List<String> listChildren(String prefix) throws IOException;
+
+  /** Join path elements into a key. Empty elements are skipped. */
+  static String key(String... elements) {
+    StringBuilder sb = new StringBuilder();
+    for (String elem : elements) {
+      if (elem.isEmpty())
+        continue;
+      if (sb.length() > 0)
+        sb.append('/');
+      sb.append(elem);
+    }
+    return sb.toString();
+  }
+}
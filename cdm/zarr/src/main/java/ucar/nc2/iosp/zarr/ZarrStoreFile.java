@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.zarr;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import ucar.unidata.io.InMemoryRandomAccessFile;
+import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.io.spi.RandomAccessFileProvider;
+import ucar.unidata.util.StringUtil2;
+
+/**
+ * A Zarr store, standing in for the RandomAccessFile that NetcdfFiles opens and hands to the IOSPs.
+ * A Zarr dataset is many objects rather than one file, so this has no contents of its own;
+ * ZarrIosp reads the objects from the store, and is tried first by NetcdfFiles so no other IOSP looks at this.
+ * <p>
+ * The Provider owns locations starting with "zarr:", which may be followed by a local directory or zip file, or a
+ * cdms3 uri, eg zarr:cdms3:bucket?path/to/dataset.zarr. It also owns local directories and zip files without the
+ * prefix, if they hold Zarr metadata.
+ */
+public class ZarrStoreFile extends InMemoryRandomAccessFile {
+  static final String PREFIX = "zarr:";
+
+  private final ZarrStore store;
+
+  private ZarrStoreFile(String location, ZarrStore store) {
+    super(location, new byte[0]);
+    this.store = store;
+  }
+
+  ZarrStore getStore() {
+    return store;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    super.close();
+    store.close();
+  }
+
+  /** Is this the key of a metadata document at the root of a Zarr store? */
+  static boolean isMetadataKey(String key) {
+    return key.equals(".zgroup") || key.equals(".zarray") || key.equals(".zmetadata") || key.equals("zarr.json");
+  }
+
+  /** Open the store at this location, which may have the "zarr:" prefix. */
+  static ZarrStoreFile open(String location) throws IOException {
+    String path = location.startsWith(PREFIX) ? location.substring(PREFIX.length()) : location;
+    if (path.startsWith("cdms3:") || path.startsWith("s3:"))
+      return new ZarrStoreFile(location, new S3Store(path));
+    File file = localFile(path);
+    if (file.isDirectory())
+      return new ZarrStoreFile(location, new DirectoryStore(file.toPath()));
+    if (file.isFile())
+      return new ZarrStoreFile(location, new ZipStore(file));
+    throw new IOException("Zarr store does not exist: " + location);
+  }
+
+  private static File localFile(String path) {
+    path = StringUtil2.replace(path, '\\', "/");
+    if (path.startsWith("file:"))
+      path = StringUtil2.unescape(path.substring(5));
+    return new File(path);
+  }
+
+  private static boolean isLocalStore(String location) {
+    if (location.indexOf(':') > 1 && !location.startsWith("file:"))
+      return false; // some other protocol, or a windows drive letter
+    File file = localFile(location);
+    if (file.isDirectory()) {
+      for (String name : new String[] {".zgroup", ".zarray", ".zmetadata", "zarr.json"}) {
+        if (new File(file, name).isFile())
+          return true;
+      }
+      return false;
+    }
+    if (file.isFile() && file.getName().toLowerCase().endsWith(".zip")) {
+      try (ZipFile zipFile = new ZipFile(file)) {
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+          String name = entries.nextElement().getName();
+          if (isMetadataKey(name.substring(name.indexOf('/') + 1)))
+            return true;
+        }
+      } catch (IOException e) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Hook into service provider interface to RandomAccessFileProvider. Register in
+   * META-INF.services.ucar.unidata.io.spi.RandomAccessFileProvider
+   */
+  public static class Provider implements RandomAccessFileProvider {
+
+    @Override
+    public boolean isOwnerOf(String location) {
+      return location.startsWith(PREFIX) || isLocalStore(location);
+    }
+
+    @Override
+    public RandomAccessFile open(String location) throws IOException {
+      return ZarrStoreFile.open(location);
+    }
+
+    @Override
+    public boolean isCompressionHandled(String location) {
+      return true; // a zip store is read in place
+    }
+  }
+}
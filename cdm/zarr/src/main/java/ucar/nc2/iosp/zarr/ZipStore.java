@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.zarr;
+
+import com.google.common.io.ByteStreams;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A Zarr store in a zip file, as written by zarr.storage.ZipStore, where each key is an entry.
+ * If all of the entries are in one top level directory (eg the zip of a directory store), that is the root.
+ */
+@ThreadSafe
+class ZipStore implements ZarrStore {
+  private final File file;
+  private final ZipFile zipFile;
+  private final String root; // prefix of all entries, empty or ending with '/'
+
+  ZipStore(File file) throws IOException {
+    this.file = file;
+    this.zipFile = new ZipFile(file);
+    this.root = findRoot(zipFile);
+  }
+
+  // the Zarr metadata is either at the top of the zip, or in a single top level directory
+  private static String findRoot(ZipFile zipFile) {
+    String top = null;
+    Enumeration<? extends ZipEntry> entries = zipFile.entries();
+    while (entries.hasMoreElements()) {
+      String name = entries.nextElement().getName();
+      if (ZarrStoreFile.isMetadataKey(name))
+        return "";
+      int pos = name.indexOf('/');
+      String dir = (pos < 0) ? "" : name.substring(0, pos + 1);
+      if (top == null)
+        top = dir;
+      else if (!top.equals(dir))
+        return "";
+    }
+    return (top == null) ? "" : top;
+  }
+
+  @Override
+  public String getLocation() {
+    return file.getPath();
+  }
+
+  @Nullable
+  @Override
+  public byte[] read(String key) throws IOException {
+    ZipEntry entry = zipFile.getEntry(root + key);
+    if (entry == null || entry.isDirectory())
+      return null;
+    try (InputStream in = zipFile.getInputStream(entry)) {
+      return ByteStreams.toByteArray(in);
+    }
+  }
+
+  @Override
+  public List<String> listChildren(String prefix) {
+    String dir = root + (prefix.isEmpty() ? "" : prefix + "/");
+    Set<String> result = new LinkedHashSet<>();
+    Enumeration<? extends ZipEntry> entries = zipFile.entries();
+    while (entries.hasMoreElements()) {
+      String name = entries.nextElement().getName();
+      if (!name.startsWith(dir))
+        continue;
+      // the directory entries themselves are optional, so look at the paths of all entries
+      int pos = name.indexOf('/', dir.length());
+      if (pos > dir.length())
+        result.add(name.substring(dir.length(), pos));
+    }
+    return new ArrayList<>(result);
+  }
+
+  @Override
+  public void close() throws IOException {
+    zipFile.close();
+  }
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.zarr;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.airlift.compress.lz4.Lz4Compressor;
+import io.airlift.compress.zstd.ZstdCompressor;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Attribute;
+import ucar.nc2.Dimension;
+import ucar.nc2.Group;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.dataset.NetcdfDataset;
+import ucar.nc2.dataset.NetcdfDatasets;
+
+/** Test ZarrIosp on small v2 and v3 stores written here. */
+public class TestZarrIosp {
+  private static final int NY = 5;
+  private static final int NX = 7;
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File v2;
+
+  @Before
+  public void makeV2Store() throws IOException {
+    v2 = tempFolder.newFolder("test.zarr");
+    write(v2, ".zgroup", "{\"zarr_format\": 2}");
+    write(v2, ".zattrs", "{\"title\": \"zarr test\", \"version\": 3, \"levels\": [1.5, 2.5]}");
+
+    // temp(y, x), zlib, chunks of 2 x 3, the last chunk is missing
+    write(v2, "temp/.zarray", "{\"zarr_format\": 2, \"shape\": [5, 7], \"chunks\": [2, 3], \"dtype\": \"<f4\","
+        + " \"compressor\": {\"id\": \"zlib\", \"level\": 1}, \"fill_value\": -999.0, \"order\": \"C\","
+        + " \"filters\": null}");
+    write(v2, "temp/.zattrs", "{\"_ARRAY_DIMENSIONS\": [\"y\", \"x\"], \"units\": \"K\"}");
+    for (int cy = 0; cy < 3; cy++) {
+      for (int cx = 0; cx < 3; cx++) {
+        if (cy == 2 && cx == 2)
+          continue;
+        ByteBuffer bb = ByteBuffer.allocate(2 * 3 * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int y = cy * 2; y < cy * 2 + 2; y++)
+          for (int x = cx * 3; x < cx * 3 + 3; x++)
+            bb.putFloat(temp(y, x));
+        write(v2, "temp/" + cy + "." + cx, zlib(bb.array()));
+      }
+    }
+
+    // lat(y), big endian, uncompressed
+    write(v2, "lat/.zarray", "{\"zarr_format\": 2, \"shape\": [5], \"chunks\": [5], \"dtype\": \">i2\","
+        + " \"compressor\": null, \"fill_value\": null, \"order\": \"C\", \"filters\": null}");
+    write(v2, "lat/.zattrs", "{\"_ARRAY_DIMENSIONS\": [\"y\"]}");
+    ByteBuffer lat = ByteBuffer.allocate(10);
+    for (int y = 0; y < NY; y++)
+      lat.putShort((short) (10 * y));
+    write(v2, "lat/0", lat.array());
+
+    // sub/counts(4, 4), shuffle then gzip, nested chunk keys
+    write(v2, "sub/.zgroup", "{\"zarr_format\": 2}");
+    write(v2, "sub/counts/.zarray", "{\"zarr_format\": 2, \"shape\": [4, 4], \"chunks\": [2, 4], \"dtype\": \"<u2\","
+        + " \"compressor\": {\"id\": \"gzip\"}, \"fill_value\": 0, \"order\": \"C\","
+        + " \"filters\": [{\"id\": \"shuffle\", \"elementsize\": 2}], \"dimension_separator\": \"/\"}");
+    for (int c = 0; c < 2; c++) {
+      ByteBuffer bb = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+      for (int i = 0; i < 8; i++)
+        bb.putShort((short) (60000 + c * 8 + i));
+      write(v2, "sub/counts/" + c + "/0", gzip(shuffle(bb.array(), 2)));
+    }
+  }
+
+  private static float temp(int y, int x) {
+    return 100 * y + x;
+  }
+
+  private void checkV2(NetcdfFile ncfile) throws IOException, InvalidRangeException {
+    assertThat(ncfile.getFileTypeId()).isEqualTo("Zarr");
+    assertThat(ncfile.getRootGroup().findAttributeString("title", null)).isEqualTo("zarr test");
+    assertThat(ncfile.getRootGroup().findAttribute("version").getNumericValue()).isEqualTo(3);
+    assertThat(ncfile.getRootGroup().findAttribute("levels").getLength()).isEqualTo(2);
+
+    Variable temp = ncfile.findVariable("temp");
+    assertThat(temp).isNotNull();
+    assertThat(temp.getDataType()).isEqualTo(DataType.FLOAT);
+    assertThat(temp.getDimensionsString()).isEqualTo("y x");
+    assertThat(temp.findAttributeString("units", null)).isEqualTo("K");
+    assertThat(temp.findAttribute(ZarrHeader.ARRAY_DIMENSIONS)).isNull();
+    assertThat(temp.findAttribute("_FillValue").getNumericValue()).isEqualTo(-999.0f);
+
+    float[] data = (float[]) temp.read().get1DJavaArray(DataType.FLOAT);
+    for (int y = 0; y < NY; y++) {
+      for (int x = 0; x < NX; x++) {
+        float expected = (y >= 4 && x >= 6) ? -999 : temp(y, x);
+        assertThat(data[y * NX + x]).isEqualTo(expected);
+      }
+    }
+    // a section that crosses chunk boundaries
+    Array section = temp.read("1:3,2:5");
+    assertThat(section.getShape()).isEqualTo(new int[] {3, 4});
+    assertThat(section.getFloat(0)).isEqualTo(temp(1, 2));
+    assertThat(section.getFloat(11)).isEqualTo(temp(3, 5));
+    // strided
+    Array strided = temp.read("0:4:2,0:6:3");
+    assertThat((float[]) strided.get1DJavaArray(DataType.FLOAT))
+        .isEqualTo(new float[] {temp(0, 0), temp(0, 3), temp(0, 6), temp(2, 0), temp(2, 3), temp(2, 6), temp(4, 0),
+            temp(4, 3), -999});
+
+    Variable lat = ncfile.findVariable("lat");
+    assertThat(lat.getDimension(0)).isEqualTo(temp.getDimension(0));
+    assertThat((short[]) lat.read().get1DJavaArray(DataType.SHORT)).isEqualTo(new short[] {0, 10, 20, 30, 40});
+
+    Group sub = ncfile.findGroup("sub");
+    assertThat(sub).isNotNull();
+    Variable counts = sub.findVariableLocal("counts");
+    assertThat(counts.getDataType()).isEqualTo(DataType.USHORT);
+    assertThat(counts.getDimensions().get(0).isShared()).isFalse();
+    Array countData = counts.read();
+    for (int i = 0; i < 16; i++)
+      assertThat(countData.getInt(i) & 0xffff).isEqualTo(60000 + i);
+  }
+
+  @Test
+  public void testDirectoryStore() throws Exception {
+    try (NetcdfFile ncfile = NetcdfFiles.open(v2.getPath())) {
+      checkV2(ncfile);
+    }
+    try (NetcdfFile ncfile = NetcdfFiles.open("zarr:" + v2.getPath())) {
+      checkV2(ncfile);
+    }
+  }
+
+  @Test
+  public void testZipStore() throws Exception {
+    File zip = new File(tempFolder.getRoot(), "test.zarr.zip");
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+      Path root = v2.toPath();
+      for (Path path : (Iterable<Path>) Files.walk(root).filter(Files::isRegularFile)::iterator) {
+        out.putNextEntry(new ZipEntry(root.relativize(path).toString().replace(File.separatorChar, '/')));
+        out.write(Files.readAllBytes(path));
+        out.closeEntry();
+      }
+    }
+    // not uncompressed first, since the provider reads the zip in place
+    try (NetcdfFile ncfile = NetcdfFiles.open(zip.getPath())) {
+      assertThat(ncfile.getLocation()).isEqualTo(zip.getPath());
+      checkV2(ncfile);
+    }
+  }
+
+  @Test
+  public void testConsolidatedMetadata() throws Exception {
+    File dir = tempFolder.newFolder("consolidated.zarr");
+    // only the consolidated metadata is in the store, so it must be used
+    write(dir, ".zmetadata", "{\"zarr_consolidated_format\": 1, \"metadata\": {"
+        + "\".zgroup\": {\"zarr_format\": 2}, \".zattrs\": {\"title\": \"consolidated\"},"
+        + "\"data/.zarray\": {\"zarr_format\": 2, \"shape\": [6], \"chunks\": [4], \"dtype\": \"<i4\","
+        + " \"compressor\": null, \"fill_value\": 7, \"order\": \"C\", \"filters\": null},"
+        + "\"data/.zattrs\": {\"_ARRAY_DIMENSIONS\": [\"n\"]}}}");
+    ByteBuffer bb = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+    bb.putInt(1).putInt(2).putInt(3).putInt(4);
+    write(dir, "data/0", bb.array());
+    try (NetcdfFile ncfile = NetcdfFiles.open(dir.getPath())) {
+      assertThat(ncfile.getRootGroup().findAttributeString("title", null)).isEqualTo("consolidated");
+      Variable data = ncfile.findVariable("data");
+      assertThat(data.getDimensionsString()).isEqualTo("n");
+      assertThat((int[]) data.read().get1DJavaArray(DataType.INT)).isEqualTo(new int[] {1, 2, 3, 4, 7, 7});
+    }
+  }
+
+  @Test
+  public void testV3Store() throws Exception {
+    File dir = tempFolder.newFolder("v3.zarr");
+    write(dir, "zarr.json", "{\"zarr_format\": 3, \"node_type\": \"group\", \"attributes\": {\"source\": \"v3\"}}");
+    write(dir, "grid/zarr.json", "{\"zarr_format\": 3, \"node_type\": \"group\"}");
+    write(dir, "grid/elev/zarr.json", "{\"zarr_format\": 3, \"node_type\": \"array\", \"shape\": [4, 6],"
+        + " \"data_type\": \"float64\","
+        + " \"chunk_grid\": {\"name\": \"regular\", \"configuration\": {\"chunk_shape\": [2, 4]}},"
+        + " \"chunk_key_encoding\": {\"name\": \"default\", \"configuration\": {\"separator\": \"/\"}},"
+        + " \"fill_value\": \"NaN\", \"codecs\": [{\"name\": \"bytes\", \"configuration\": {\"endian\": \"big\"}},"
+        + " {\"name\": \"zstd\", \"configuration\": {\"level\": 0, \"checksum\": false}}, {\"name\": \"crc32c\"}],"
+        + " \"dimension_names\": [\"lat\", \"lon\"], \"attributes\": {\"units\": \"m\"}}");
+    for (int cy = 0; cy < 2; cy++) {
+      for (int cx = 0; cx < 2; cx++) {
+        if (cy == 1 && cx == 1)
+          continue;
+        ByteBuffer bb = ByteBuffer.allocate(8 * 8); // big endian
+        for (int y = 0; y < 2; y++)
+          for (int x = 0; x < 4; x++)
+            bb.putDouble((cy * 2 + y) + 0.25 * (cx * 4 + x));
+        write(dir, "grid/elev/c/" + cy + "/" + cx, crc32c(zstd(bb.array())));
+      }
+    }
+
+    try (NetcdfFile ncfile = NetcdfFiles.open(dir.getPath())) {
+      assertThat(ncfile.getRootGroup().findAttributeString("source", null)).isEqualTo("v3");
+      Variable elev = ncfile.findVariable("grid/elev");
+      assertThat(elev).isNotNull();
+      assertThat(elev.getDimensionsString()).isEqualTo("lat lon");
+      assertThat(elev.findAttributeString("units", null)).isEqualTo("m");
+      double[] data = (double[]) elev.read().get1DJavaArray(DataType.DOUBLE);
+      for (int y = 0; y < 4; y++) {
+        for (int x = 0; x < 6; x++) {
+          if (y >= 2 && x >= 4)
+            assertThat(data[y * 6 + x]).isNaN();
+          else
+            assertThat(data[y * 6 + x]).isEqualTo(y + 0.25 * x);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testManyChunksLz4() throws Exception {
+    File dir = tempFolder.newFolder("many.zarr");
+    int n = 120;
+    int chunk = 10;
+    write(dir, ".zarray", "{\"zarr_format\": 2, \"shape\": [120, 120], \"chunks\": [10, 10], \"dtype\": \"<i4\","
+        + " \"compressor\": {\"id\": \"lz4\", \"acceleration\": 1}, \"fill_value\": 0, \"order\": \"C\","
+        + " \"filters\": null}");
+    for (int cy = 0; cy < n / chunk; cy++) {
+      for (int cx = 0; cx < n / chunk; cx++) {
+        ByteBuffer bb = ByteBuffer.allocate(chunk * chunk * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int y = 0; y < chunk; y++)
+          for (int x = 0; x < chunk; x++)
+            bb.putInt((cy * chunk + y) * n + cx * chunk + x);
+        write(dir, cy + "." + cx, lz4(bb.array()));
+      }
+    }
+    // the root is an array, named after the store
+    try (NetcdfFile ncfile = NetcdfFiles.open(dir.getPath())) {
+      Variable v = ncfile.findVariable("many");
+      assertThat(v).isNotNull();
+      int[] data = (int[]) v.read().get1DJavaArray(DataType.INT);
+      for (int i = 0; i < n * n; i++)
+        assertThat(data[i]).isEqualTo(i);
+      int[] part = (int[]) v.read("15:104,33:33").get1DJavaArray(DataType.INT);
+      for (int i = 0; i < part.length; i++)
+        assertThat(part[i]).isEqualTo((15 + i) * n + 33);
+    }
+  }
+
+  @Test
+  public void testLz4Incompressible() throws Exception {
+    int n = 400;
+    // random bytes do not compress, and with a short run of zeros lz4 encodes them to exactly n bytes
+    byte[] sameSize = null;
+    for (int run = 0; run < 40 && sameSize == null; run++) {
+      byte[] data = new byte[n];
+      new Random(42).nextBytes(data);
+      Arrays.fill(data, n - 20 - run, n - 20, (byte) 0);
+      if (lz4(data).length == 4 + n)
+        sameSize = data;
+    }
+    assertThat(sameSize).isNotNull();
+    byte[] random = new byte[n];
+    new Random(17).nextBytes(random);
+    assertThat(lz4(random).length).isGreaterThan(4 + n);
+
+    File dir = tempFolder.newFolder("incompressible.zarr");
+    write(dir, ".zgroup", "{\"zarr_format\": 2}");
+    for (String name : new String[] {"same", "random"}) {
+      write(dir, name + "/.zarray", "{\"zarr_format\": 2, \"shape\": [400], \"chunks\": [400], \"dtype\": \"|u1\","
+          + " \"compressor\": {\"id\": \"lz4\", \"acceleration\": 1}, \"fill_value\": 0, \"order\": \"C\","
+          + " \"filters\": null}");
+    }
+    write(dir, "same/0", lz4(sameSize));
+    write(dir, "random/0", lz4(random));
+    try (NetcdfFile ncfile = NetcdfFiles.open(dir.getPath())) {
+      assertThat((byte[]) ncfile.findVariable("same").read().get1DJavaArray(DataType.UBYTE)).isEqualTo(sameSize);
+      assertThat((byte[]) ncfile.findVariable("random").read().get1DJavaArray(DataType.UBYTE)).isEqualTo(random);
+    }
+  }
+
+  @Test
+  public void testNetcdfDatasets() throws Exception {
+    try (NetcdfDataset ncd = NetcdfDatasets.openDataset(v2.getPath())) {
+      Variable temp = ncd.findVariable("temp");
+      Array data = temp.read();
+      // the fill value is converted to missing
+      assertThat(data.getFloat(NY * NX - 1)).isNaN();
+      assertThat(data.getFloat(8)).isEqualTo(temp(1, 1));
+    }
+  }
+
+  @Test
+  public void testUnsupportedCodec() throws Exception {
+    File dir = tempFolder.newFolder("unsupported.zarr");
+    write(dir, ".zgroup", "{\"zarr_format\": 2}");
+    write(dir, "x/.zarray", "{\"zarr_format\": 2, \"shape\": [4], \"chunks\": [4], \"dtype\": \"<i4\","
+        + " \"compressor\": {\"id\": \"fancy\"}, \"fill_value\": 0, \"order\": \"C\", \"filters\": null}");
+    write(dir, "x/0", new byte[16]);
+    try (NetcdfFile ncfile = NetcdfFiles.open(dir.getPath())) {
+      Variable x = ncfile.findVariable("x");
+      assertThat(x).isNotNull();
+      try {
+        x.read();
+        throw new AssertionError("expected IOException");
+      } catch (IOException e) {
+        assertThat(e.getMessage()).contains("fancy");
+      }
+    }
+  }
+
+  @Test
+  public void testProviderOwnership() throws IOException {
+    ZarrStoreFile.Provider provider = new ZarrStoreFile.Provider();
+    assertThat(provider.isOwnerOf(v2.getPath())).isTrue();
+    assertThat(provider.isOwnerOf("zarr:cdms3:bucket?data.zarr")).isTrue();
+    assertThat(provider.isOwnerOf(tempFolder.getRoot().getPath())).isFalse();
+    assertThat(provider.isOwnerOf("cdms3:bucket?data.nc")).isFalse();
+    assertThat(provider.isOwnerOf("http://server/data.zarr")).isFalse();
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////
+
+  private static void write(File dir, String key, String json) throws IOException {
+    write(dir, key, json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void write(File dir, String key, byte[] bytes) throws IOException {
+    File file = new File(dir, key);
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), bytes);
+  }
+
+  private static byte[] zlib(byte[] data) {
+    Deflater deflater = new Deflater();
+    deflater.setInput(data);
+    deflater.finish();
+    byte[] buff = new byte[data.length + 100];
+    int n = deflater.deflate(buff);
+    deflater.end();
+    return Arrays.copyOf(buff, n);
+  }
+
+  private static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(bos)) {
+      out.write(data);
+    }
+    return bos.toByteArray();
+  }
+
+  private static byte[] shuffle(byte[] data, int elemSize) {
+    int n = data.length / elemSize;
+    byte[] result = new byte[data.length];
+    for (int i = 0; i < n; i++)
+      for (int b = 0; b < elemSize; b++)
+        result[b * n + i] = data[i * elemSize + b];
+    return result;
+  }
+
+  private static byte[] zstd(byte[] data) {
+    ZstdCompressor compressor = new ZstdCompressor();
+    byte[] buff = new byte[compressor.maxCompressedLength(data.length)];
+    int n = compressor.compress(data, 0, data.length, buff, 0, buff.length);
+    return Arrays.copyOf(buff, n);
+  }
+
+  // numcodecs lz4: the decoded size, little endian, then an lz4 block
+  private static byte[] lz4(byte[] data) {
+    Lz4Compressor compressor = new Lz4Compressor();
+    byte[] buff = new byte[4 + compressor.maxCompressedLength(data.length)];
+    ByteBuffer.wrap(buff).order(ByteOrder.LITTLE_ENDIAN).putInt(data.length);
+    int n = compressor.compress(data, 0, data.length, buff, 4, buff.length - 4);
+    return Arrays.copyOf(buff, 4 + n);
+  }
+
+  // the checksum is not verified, so any value will do
+  private static byte[] crc32c(byte[] data) {
+    return Arrays.copyOf(data, data.length + 4);
+  }
+}
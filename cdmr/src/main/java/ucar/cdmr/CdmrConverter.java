@@ -5,14 +5,29 @@
 package ucar.cdmr;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import io.airlift.compress.zstd.ZstdCompressor;
+import io.airlift.compress.zstd.ZstdDecompressor;
 import java.io.IOException;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 import ucar.array.ArrayByte;
 import ucar.array.ArrayVlen;
 import ucar.array.Arrays;
@@ -22,6 +37,7 @@ import ucar.array.StructureDataStorageBB;
 import ucar.array.StructureMembers;
 import ucar.array.StructureMembers.Member;
 import ucar.array.StructureMembers.MemberBuilder;
+import ucar.cdmr.CdmRemoteProto.Compress;
 import ucar.cdmr.CdmRemoteProto.Data;
 import ucar.cdmr.CdmRemoteProto.StructureDataProto;
 import ucar.cdmr.CdmRemoteProto.StructureMemberProto;
@@ -37,11 +53,12 @@ import ucar.nc2.Group;
 import ucar.nc2.Sequence;
 import ucar.nc2.Structure;
 import ucar.nc2.Variable;
+import ucar.nc2.write.ChunkingIndex;
 
 /** Convert between CdmRemote Protos and Netcdf objects, using ucar.ma2.Array for data. */
 public class CdmrConverter {
 
-  private static CdmRemoteProto.DataType convertDataType(DataType dtype) {
+  public static CdmRemoteProto.DataType convertDataType(DataType dtype) {
     switch (dtype) {
       case CHAR:
         return CdmRemoteProto.DataType.CHAR;
@@ -171,6 +188,35 @@ public class CdmrConverter {
     return sbuilder.build();
   }
 
+  /**
+   * Split a section into chunks of no more than maxElems elements. Each chunk is a contiguous run of the section's
+   * elements in canonical order, and the chunks are returned in that order.
+   *
+   * @param wantSection the section to split, may not start at 0, and may be strided.
+   * @param maxElems maximum number of elements in a chunk, must be positive.
+   */
+  public static List<Section> chunkSection(Section wantSection, long maxElems) throws InvalidRangeException {
+    Preconditions.checkArgument(maxElems > 0);
+    if (wantSection.computeSize() <= maxElems) {
+      return ImmutableList.of(wantSection);
+    }
+    List<Section> chunks = new ArrayList<>();
+    ChunkingIndex index = new ChunkingIndex(wantSection.getShape());
+    while (index.currentElement() < index.getSize()) {
+      int[] chunkOrigin = index.getCurrentCounter();
+      int[] chunkShape = index.computeChunkShape(maxElems);
+      Section.Builder section = Section.builder();
+      for (int i = 0; i < chunkOrigin.length; i++) {
+        Range want = wantSection.getRange(i);
+        int first = want.first() + chunkOrigin[i] * want.stride();
+        section.appendRange(first, first + (chunkShape[i] - 1) * want.stride(), want.stride());
+      }
+      chunks.add(section.build());
+      index.setCurrentCounter(index.currentElement() + (int) Arrays.computeSize(chunkShape));
+    }
+    return chunks;
+  }
+
   private static CdmRemoteProto.Attribute.Builder encodeAtt(Attribute att) {
     CdmRemoteProto.Attribute.Builder attBuilder = CdmRemoteProto.Attribute.newBuilder();
     attBuilder.setName(att.getShortName());
@@ -283,6 +329,46 @@ public class CdmrConverter {
     }
   }
 
+  /**
+   * Encode the data, optionally sending fixed size primitives as packed bytes.
+   *
+   * @param dataType the data type
+   * @param data the data
+   * @param packed if true, and the dataType is fixed size, send the values as little endian packed bytes, rather
+   *        than element by element in the repeated fields.
+   * @param compression compress the packed bytes with this; only used if the result is smaller.
+   */
+  public static CdmRemoteProto.Data encodeData(DataType dataType, Array<?> data, boolean packed,
+      Compress compression) {
+    if (packed && isPackable(dataType) && !data.isVlen()) {
+      return encodePackedData(dataType, data, compression);
+    }
+    return encodeData(dataType, data);
+  }
+
+  /** Whether this dataType can be sent as packed bytes. */
+  public static boolean isPackable(DataType dataType) {
+    switch (dataType) {
+      case BYTE:
+      case UBYTE:
+      case ENUM1:
+      case CHAR:
+      case SHORT:
+      case USHORT:
+      case ENUM2:
+      case INT:
+      case UINT:
+      case ENUM4:
+      case LONG:
+      case ULONG:
+      case FLOAT:
+      case DOUBLE:
+        return true;
+      default:
+        return false;
+    }
+  }
+
   private static void encodeShape(CdmRemoteProto.Data.Builder data, int[] shape) {
     for (int j : shape) {
       data.addShape(j);
@@ -361,6 +447,107 @@ public class CdmrConverter {
     return builder.build();
   }
 
+  private static CdmRemoteProto.Data encodePackedData(DataType dataType, Array<?> data, Compress compression) {
+    CdmRemoteProto.Data.Builder builder = CdmRemoteProto.Data.newBuilder();
+    builder.setDataType(convertDataType(dataType));
+    encodeShape(builder, data.getShape());
+
+    int n = (int) data.length();
+    byte[] bytes;
+    if (dataType.getPrimitiveClassType() == byte.class) {
+      bytes = new byte[n];
+      Arrays.arraycopy(data, 0, bytes, 0, n);
+    } else {
+      // CHAR is a 16 bit java char, not the 8 bit netcdf char
+      int elemSize = (dataType == DataType.CHAR) ? 2 : dataType.getSize();
+      ByteBuffer bb = ByteBuffer.allocate(Math.multiplyExact(n, elemSize)).order(ByteOrder.LITTLE_ENDIAN);
+      copyInto(dataType, data, bb);
+      bytes = bb.array();
+    }
+
+    // the byte arrays are not shared, so no need for protobuf to copy them
+    builder.setPackedSize(bytes.length);
+    ByteString compressed = compress(bytes, compression);
+    if (compressed != null) {
+      builder.setCompression(compression);
+      builder.setPacked(compressed);
+    } else {
+      builder.setPacked(UnsafeByteOperations.unsafeWrap(bytes));
+    }
+    return builder.build();
+  }
+
+  private static final int COPY_CHUNK = 8192;
+
+  /**
+   * Copy the data into the byte buffer, a chunk of elements at a time, so the only full size copy is the buffer.
+   */
+  private static void copyInto(DataType dataType, Array<?> data, ByteBuffer bb) {
+    int n = (int) data.length();
+    Object chunk = java.lang.reflect.Array.newInstance(dataType.getPrimitiveClassType(), Math.min(n, COPY_CHUNK));
+    Buffer view;
+    if (chunk instanceof char[]) {
+      view = bb.asCharBuffer();
+    } else if (chunk instanceof short[]) {
+      view = bb.asShortBuffer();
+    } else if (chunk instanceof int[]) {
+      view = bb.asIntBuffer();
+    } else if (chunk instanceof long[]) {
+      view = bb.asLongBuffer();
+    } else if (chunk instanceof float[]) {
+      view = bb.asFloatBuffer();
+    } else {
+      view = bb.asDoubleBuffer();
+    }
+
+    for (int start = 0; start < n; start += COPY_CHUNK) {
+      int len = Math.min(COPY_CHUNK, n - start);
+      Arrays.arraycopy(data, start, chunk, 0, len);
+      if (view instanceof CharBuffer) {
+        ((CharBuffer) view).put((char[]) chunk, 0, len);
+      } else if (view instanceof ShortBuffer) {
+        ((ShortBuffer) view).put((short[]) chunk, 0, len);
+      } else if (view instanceof IntBuffer) {
+        ((IntBuffer) view).put((int[]) chunk, 0, len);
+      } else if (view instanceof LongBuffer) {
+        ((LongBuffer) view).put((long[]) chunk, 0, len);
+      } else if (view instanceof FloatBuffer) {
+        ((FloatBuffer) view).put((float[]) chunk, 0, len);
+      } else {
+        ((DoubleBuffer) view).put((double[]) chunk, 0, len);
+      }
+    }
+  }
+
+  /** Compress the bytes, return null if not compressed or not smaller. */
+  private static ByteString compress(byte[] bytes, Compress compression) {
+    switch (compression) {
+      case DEFLATE: {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+          deflater.setInput(bytes);
+          deflater.finish();
+          byte[] out = new byte[bytes.length];
+          int len = 0;
+          while (!deflater.finished() && len < out.length) {
+            len += deflater.deflate(out, len, out.length - len);
+          }
+          return deflater.finished() && len < bytes.length ? UnsafeByteOperations.unsafeWrap(out, 0, len) : null;
+        } finally {
+          deflater.end();
+        }
+      }
+      case ZSTD: {
+        ZstdCompressor compressor = new ZstdCompressor();
+        byte[] out = new byte[compressor.maxCompressedLength(bytes.length)];
+        int len = compressor.compress(bytes, 0, bytes.length, out, 0, out.length);
+        return len < bytes.length ? UnsafeByteOperations.unsafeWrap(out, 0, len) : null;
+      }
+      default:
+        return null;
+    }
+  }
+
   private static CdmRemoteProto.Data encodeStructureDataArray(DataType dataType, StructureDataArray arrayStructure) {
     CdmRemoteProto.Data.Builder builder = CdmRemoteProto.Data.newBuilder();
     builder.setDataType(convertDataType(dataType));
@@ -572,9 +759,102 @@ public class CdmrConverter {
     }
   }
 
+  /**
+   * Decode fixed size primitive data into a java primitive array, for example when assembling the chunks of a
+   * data request. Packed bytes are decoded directly into dest.
+   *
+   * @param data the data, with an {@link #isPackable} dataType.
+   * @param dest destination java primitive array, of the same type as data.
+   * @param destPos starting position in dest.
+   * @return the number of values decoded.
+   */
+  public static int decodeData(CdmRemoteProto.Data data, Object dest, int destPos) {
+    DataType dataType = convertDataType(data.getDataType());
+    Preconditions.checkArgument(isPackable(dataType), "Cant decode %s into a primitive array", dataType);
+    int n = (int) Arrays.computeSize(decodeShape(data));
+    if (n == 0) {
+      return 0;
+    }
+    if (data.getPacked().isEmpty()) {
+      Array<?> array = decodePrimitiveData(data);
+      Arrays.arraycopy(array, 0, dest, destPos, n);
+      return n;
+    }
+
+    ByteBuffer bb = decodePacked(data);
+    if (dest instanceof byte[]) {
+      bb.get((byte[]) dest, destPos, n);
+    } else if (dest instanceof char[]) {
+      bb.asCharBuffer().get((char[]) dest, destPos, n);
+    } else if (dest instanceof short[]) {
+      bb.asShortBuffer().get((short[]) dest, destPos, n);
+    } else if (dest instanceof int[]) {
+      bb.asIntBuffer().get((int[]) dest, destPos, n);
+    } else if (dest instanceof long[]) {
+      bb.asLongBuffer().get((long[]) dest, destPos, n);
+    } else if (dest instanceof float[]) {
+      bb.asFloatBuffer().get((float[]) dest, destPos, n);
+    } else if (dest instanceof double[]) {
+      bb.asDoubleBuffer().get((double[]) dest, destPos, n);
+    } else {
+      throw new IllegalArgumentException("Not a primitive array " + dest.getClass().getName());
+    }
+    return n;
+  }
+
+  private static ByteBuffer decodePacked(CdmRemoteProto.Data data) {
+    ByteString packed = data.getPacked();
+    int size = data.getPackedSize();
+    ByteBuffer bb;
+    switch (data.getCompression()) {
+      case NONE:
+        bb = packed.asReadOnlyByteBuffer();
+        break;
+      case DEFLATE: {
+        byte[] out = new byte[size];
+        Inflater inflater = new Inflater();
+        try {
+          inflater.setInput(packed.toByteArray());
+          int len = 0;
+          while (len < size && !inflater.finished() && !inflater.needsInput()) {
+            len += inflater.inflate(out, len, size - len);
+          }
+          if (len != size) {
+            throw new IllegalStateException("Inflated " + len + " bytes, expected " + size);
+          }
+        } catch (DataFormatException e) {
+          throw new IllegalStateException("Bad compressed data", e);
+        } finally {
+          inflater.end();
+        }
+        bb = ByteBuffer.wrap(out);
+        break;
+      }
+      case ZSTD: {
+        byte[] in = packed.toByteArray();
+        byte[] out = new byte[size];
+        int len = new ZstdDecompressor().decompress(in, 0, in.length, out, 0, size);
+        if (len != size) {
+          throw new IllegalStateException("Decompressed " + len + " bytes, expected " + size);
+        }
+        bb = ByteBuffer.wrap(out);
+        break;
+      }
+      default:
+        throw new IllegalStateException("Unknown compression " + data.getCompression());
+    }
+    return bb.order(data.getBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+  }
+
   private static <T> Array<T> decodePrimitiveData(CdmRemoteProto.Data data) {
     DataType dataType = convertDataType(data.getDataType());
     int[] shape = decodeShape(data);
+    if (!data.getPacked().isEmpty()) {
+      Object array = java.lang.reflect.Array.newInstance(dataType.getPrimitiveClassType(),
+          (int) Arrays.computeSize(shape));
+      decodeData(data, array, 0);
+      return Arrays.factory(dataType, shape, array);
+    }
     switch (dataType) {
       case ENUM1:
       case UBYTE:
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.cdmr;
+
+import com.google.common.base.Strings;
+import ucar.cdmr.CdmRemoteProto.GridAxisProto;
+import ucar.cdmr.CdmRemoteProto.GridDataRequest;
+import ucar.cdmr.CdmRemoteProto.LatLonRectProto;
+import ucar.cdmr.CdmRemoteProto.ProjectionRectProto;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
+import ucar.nc2.AttributeContainerMutable;
+import ucar.nc2.constants.AxisType;
+import ucar.nc2.ft2.coverage.SubsetParams;
+import ucar.nc2.grid.GridAxis;
+import ucar.nc2.grid.GridAxis1D;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.unidata.geoloc.LatLonPoint;
+import ucar.unidata.geoloc.LatLonRect;
+import ucar.unidata.geoloc.ProjectionRect;
+
+/** Convert between CdmRemote Protos and ucar.nc2.grid objects. */
+public class CdmrGridConverter {
+
+  /** Encode the subset parameters that GetGridData supports into the request. Others are ignored. */
+  public static GridDataRequest.Builder encodeSubsetParams(SubsetParams params, GridDataRequest.Builder builder) {
+    LatLonRect llbb = params.getLatLonBoundingBox();
+    if (llbb != null) {
+      builder.setLatlonRect(LatLonRectProto.newBuilder().setSouth(llbb.getLatMin()).setWest(llbb.getLonMin())
+          .setNorth(llbb.getLatMax()).setEast(llbb.getLonMax()));
+    }
+    ProjectionRect projbb = params.getProjectionRect();
+    if (projbb != null) {
+      builder.setProjRect(ProjectionRectProto.newBuilder().setMinX(projbb.getMinX()).setMinY(projbb.getMinY())
+          .setMaxX(projbb.getMaxX()).setMaxY(projbb.getMaxY()));
+    }
+    Integer horizStride = params.getInteger(SubsetParams.horizStride);
+    if (horizStride != null) {
+      builder.setHorizStride(horizStride);
+    }
+
+    CalendarDate time = params.getTime();
+    if (time != null) {
+      builder.setTime(time.toString()).setCalendar(time.getCalendar().name());
+    }
+    CalendarDateRange timeRange = params.getTimeRange();
+    if (timeRange != null) {
+      builder.setTimeStart(timeRange.getStart().toString()).setTimeEnd(timeRange.getEnd().toString())
+          .setCalendar(timeRange.getStart().getCalendar().name());
+    }
+    Integer timeStride = params.getInteger(SubsetParams.timeStride);
+    if (timeStride != null) {
+      builder.setTimeStride(timeStride);
+    }
+    builder.setTimePresent(params.isTrue(SubsetParams.timePresent));
+
+    Double vertCoord = params.getVertCoord();
+    if (vertCoord != null) {
+      builder.setHasVertCoord(true).setVertCoord(vertCoord);
+    }
+    Double ensCoord = params.getEnsCoord();
+    if (ensCoord != null) {
+      builder.setHasEnsCoord(true).setEnsCoord(ensCoord);
+    }
+    return builder;
+  }
+
+  public static SubsetParams decodeSubsetParams(GridDataRequest proto) {
+    SubsetParams params = new SubsetParams();
+    if (proto.hasLatlonRect()) {
+      LatLonRectProto llbb = proto.getLatlonRect();
+      params.setLatLonBoundingBox(new LatLonRect.Builder(LatLonPoint.create(llbb.getSouth(), llbb.getWest()),
+          LatLonPoint.create(llbb.getNorth(), llbb.getEast())).build());
+    }
+    if (proto.hasProjRect()) {
+      ProjectionRectProto projbb = proto.getProjRect();
+      params.setProjectionRect(
+          new ProjectionRect(projbb.getMinX(), projbb.getMinY(), projbb.getMaxX(), projbb.getMaxY()));
+    }
+    if (proto.getHorizStride() > 1) {
+      params.setHorizStride(proto.getHorizStride());
+    }
+
+    String calendar = Strings.emptyToNull(proto.getCalendar());
+    if (!proto.getTime().isEmpty()) {
+      params.setTime(CalendarDate.parseISOformat(calendar, proto.getTime()));
+    }
+    if (!proto.getTimeStart().isEmpty() && !proto.getTimeEnd().isEmpty()) {
+      params.setTimeRange(CalendarDateRange.of(CalendarDate.parseISOformat(calendar, proto.getTimeStart()),
+          CalendarDate.parseISOformat(calendar, proto.getTimeEnd())));
+    }
+    if (proto.getTimeStride() > 1) {
+      params.set(SubsetParams.timeStride, proto.getTimeStride());
+    }
+    if (proto.getTimePresent()) {
+      params.setTimePresent();
+    }
+
+    if (proto.getHasVertCoord()) {
+      params.setVertCoord(proto.getVertCoord());
+    }
+    if (proto.getHasEnsCoord()) {
+      params.setEnsCoord(proto.getEnsCoord());
+    }
+    return params;
+  }
+
+  public static GridAxisProto encodeGridAxis(GridAxis axis) {
+    GridAxisProto.Builder builder = GridAxisProto.newBuilder();
+    builder.setName(axis.getName());
+    builder.setDescription(Strings.nullToEmpty(axis.getDescription()));
+    builder.setUnits(Strings.nullToEmpty(axis.getUnits()));
+    builder.setDataType(CdmrConverter.convertDataType(axis.getDataType()));
+    if (axis.getAxisType() != null) {
+      builder.setAxisType(axis.getAxisType().name());
+    }
+    builder.setDependenceType(axis.getDependenceType().name());
+    builder.addAllDependsOn(axis.getDependsOnList());
+    builder.setSpacing(axis.getSpacing().name());
+    builder.setNcoords(axis.getNcoords());
+    builder.setStartValue(axis.getStartValue());
+    builder.setEndValue(axis.getEndValue());
+    builder.setResolution(axis.getResolution());
+    double[] values = axis.getValues();
+    if (values != null) {
+      for (double value : values) {
+        builder.addValues(value);
+      }
+    }
+    if (axis instanceof GridAxis1D) {
+      Range range = ((GridAxis1D) axis).getRange();
+      builder.setRange(CdmrConverter.encodeSection(new Section(range)).getRange(0));
+    }
+    return builder.build();
+  }
+
+  /** Decode a GridAxis1D. Time axes are not converted to a GridAxis1DTime, use the units to interpret them. */
+  public static GridAxis1D decodeGridAxis(GridAxisProto proto) {
+    GridAxis1D.Builder<?> builder = GridAxis1D.builder();
+    builder.setName(proto.getName());
+    builder.setDescription(proto.getDescription());
+    builder.setUnits(proto.getUnits());
+    builder.setDataType(CdmrConverter.convertDataType(proto.getDataType()));
+    if (!proto.getAxisType().isEmpty()) {
+      builder.setAxisType(AxisType.valueOf(proto.getAxisType()));
+    }
+    builder.setAttributes(new AttributeContainerMutable(proto.getName()).toImmutable());
+    builder.setDependenceType(GridAxis.DependenceType.valueOf(proto.getDependenceType()));
+    builder.setDependsOn(proto.getDependsOnList());
+    builder.setSpacing(GridAxis.Spacing.valueOf(proto.getSpacing()));
+    builder.setGenerated(proto.getNcoords(), proto.getStartValue(), proto.getEndValue(), proto.getResolution());
+    if (proto.getValuesCount() > 0) {
+      double[] values = new double[proto.getValuesCount()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = proto.getValues(i);
+      }
+      builder.setValues(values);
+    }
+    if (proto.hasRange()) {
+      CdmRemoteProto.Section section = CdmRemoteProto.Section.newBuilder().addRange(proto.getRange()).build();
+      builder.setRange(CdmrConverter.decodeSection(section).getRange(0));
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.cdmr.client;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import ucar.array.Array;
+import ucar.nc2.constants.AxisType;
+import ucar.nc2.grid.GridAxis1D;
+
+/** The data of a Grid subsetted on the server, with its subsetted coordinate axes. */
+@Immutable
+public class CdmrGridArray {
+  private final String gridName;
+  private final Array<?> data;
+  private final ImmutableList<GridAxis1D> axes;
+
+  CdmrGridArray(String gridName, Array<?> data, List<GridAxis1D> axes) {
+    this.gridName = gridName;
+    this.data = data;
+    this.axes = ImmutableList.copyOf(axes);
+  }
+
+  public String getGridName() {
+    return gridName;
+  }
+
+  public Array<?> getData() {
+    return data;
+  }
+
+  /** The subsetted coordinate axes. The range of each one is the indexes of the subset in the original axis. */
+  public ImmutableList<GridAxis1D> getAxes() {
+    return axes;
+  }
+
+  @Nullable
+  public GridAxis1D findAxis(AxisType axisType) {
+    for (GridAxis1D axis : axes) {
+      if (axis.getAxisType() == axisType) {
+        return axis;
+      }
+    }
+    return null;
+  }
+}
@@ -6,14 +6,24 @@ package ucar.cdmr.client;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
+import com.google.common.primitives.Ints;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import ucar.array.Array;
@@ -21,12 +31,21 @@ import ucar.array.Arrays;
 import ucar.array.StructureData;
 import ucar.array.StructureDataArray;
 import ucar.cdmr.CdmRemoteGrpc;
+import ucar.cdmr.CdmRemoteProto.Compress;
+import ucar.cdmr.CdmRemoteProto.Data;
+import ucar.cdmr.CdmRemoteProto.DataBatchRequest;
 import ucar.cdmr.CdmRemoteProto.DataRequest;
 import ucar.cdmr.CdmRemoteProto.DataResponse;
+import ucar.cdmr.CdmRemoteProto.GridAxisProto;
+import ucar.cdmr.CdmRemoteProto.GridDataRequest;
+import ucar.cdmr.CdmRemoteProto.GridDataResponse;
 import ucar.cdmr.CdmRemoteProto.Header;
 import ucar.cdmr.CdmRemoteProto.HeaderRequest;
 import ucar.cdmr.CdmRemoteProto.HeaderResponse;
 import ucar.cdmr.CdmrConverter;
+import ucar.cdmr.CdmrGridConverter;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
 import ucar.ma2.StructureDataIterator;
 import ucar.nc2.Group;
@@ -35,12 +54,17 @@ import ucar.nc2.ParsedSectionSpec;
 import ucar.nc2.Sequence;
 import ucar.nc2.Structure;
 import ucar.nc2.Variable;
+import ucar.nc2.ft2.coverage.SubsetParams;
+import ucar.nc2.grid.GridAxis1D;
 
 /** A remote CDM dataset, using cdmremote protocol to communicate. */
 public class CdmrNetcdfFile extends NetcdfFile {
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(CdmrNetcdfFile.class);
   private static final int MAX_DATA_WAIT_SECONDS = 30;
   private static final int MAX_MESSAGE = 51 * 1000 * 1000; // 51 Mb
+  private static final long MIN_SUBREQUEST_SIZE = 2 * 1000 * 1000; // split larger data requests into sub-requests
+  private static final long MAX_SUBREQUEST_SIZE = 20 * 1000 * 1000; // sub-request size, if more than concurrent
+  private static final long MAX_PREFETCH = 10 * 1000 * 1000; // max bytes of coordinate data to read when opened
   private static boolean showRequest = true;
 
   public static final String PROTOCOL = "cdmr";
@@ -73,15 +97,32 @@ public class CdmrNetcdfFile extends NetcdfFile {
 
   @Nullable
   protected ucar.array.Array<?> readArrayData(Variable v, Section sectionWanted) throws IOException {
+    ucar.array.Array<?> prefetch = prefetched.get(v.getFullName());
+    if (prefetch != null) {
+      try {
+        return Arrays.section(prefetch, sectionWanted.getRanges());
+      } catch (InvalidRangeException e) {
+        throw new IOException(e);
+      }
+    }
+
+    // large sections of fixed size primitives are split into sub-requests that are sent concurrently
+    if (concurrentRequests > 1 && CdmrConverter.isPackable(v.getDataType()) && !v.isVariableLength()) {
+      long nbytes = v.getElementSize() * sectionWanted.computeSize();
+      if (nbytes > MIN_SUBREQUEST_SIZE) {
+        return readArrayDataAsync(v, sectionWanted, nbytes);
+      }
+    }
+
     String spec = ParsedSectionSpec.makeSectionSpecString(v, sectionWanted.getRanges());
     if (showRequest)
       System.out.printf("CdmrNetcdfFile data request forspec=(%s)%n url='%s'%n path='%s'%n", spec, this.remoteURI,
           this.path);
     final Stopwatch stopwatch = Stopwatch.createStarted();
 
-    List<ucar.array.Array<?>> results = new ArrayList<>();
-    long size = 0;
-    DataRequest request = DataRequest.newBuilder().setLocation(this.path).setVariableSpec(spec).build();
+    DataAssembler assembler = new DataAssembler(v, sectionWanted);
+    DataRequest request = DataRequest.newBuilder().setLocation(this.path).setVariableSpec(spec).setPacked(true)
+        .setCompression(this.compression).build();
     try {
       Iterator<DataResponse> responses =
           blockingStub.withDeadlineAfter(MAX_DATA_WAIT_SECONDS, TimeUnit.SECONDS).getData(request);
@@ -91,9 +132,7 @@ public class CdmrNetcdfFile extends NetcdfFile {
           throw new IOException(response.getError().getMessage());
         }
         // Section sectionReturned = CdmrConverter.decodeSection(response.getSection());
-        ucar.array.Array<?> result = CdmrConverter.decodeData(response.getData());
-        results.add(result);
-        size += result.length();
+        assembler.add(response.getData());
       }
 
     } catch (StatusRuntimeException e) {
@@ -105,12 +144,330 @@ public class CdmrNetcdfFile extends NetcdfFile {
       log.warn("readSection requestData failed failed: ", t);
       throw new IOException(t);
     }
-    System.out.printf(" ** size=%d took=%s%n", size, stopwatch.stop());
+    System.out.printf(" ** size=%d took=%s%n", assembler.count, stopwatch.stop());
+    return assembler.finish();
+  }
+
+  /**
+   * Read the data of several Variables in one request, for example all the coordinate variables.
+   * Sequences are not allowed.
+   *
+   * @param variables read all the data of these Variables.
+   * @return the data of each Variable, in the same order.
+   */
+  public List<ucar.array.Array<?>> readArrays(List<Variable> variables) throws IOException {
+    if (showRequest)
+      System.out.printf("CdmrNetcdfFile batch data request for %d variables%n url='%s'%n path='%s'%n",
+          variables.size(), this.remoteURI, this.path);
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+
+    List<DataAssembler> assemblers = new ArrayList<>();
+    DataBatchRequest.Builder request = DataBatchRequest.newBuilder().setLocation(this.path).setPacked(true)
+        .setCompression(this.compression);
+    for (Variable v : variables) {
+      Preconditions.checkArgument(!(v instanceof Sequence), "Sequence not allowed %s", v.getFullName());
+      assemblers.add(new DataAssembler(v, v.getShapeAsSection()));
+      request.addVariableSpec(ParsedSectionSpec.makeSectionSpecString(v, null));
+    }
+    try {
+      Iterator<DataResponse> responses =
+          blockingStub.withDeadlineAfter(MAX_DATA_WAIT_SECONDS, TimeUnit.SECONDS).getDataBatch(request.build());
+      while (responses.hasNext()) {
+        DataResponse response = responses.next();
+        if (response.hasError()) {
+          throw new IOException(response.getError().getMessage());
+        }
+        if (response.getIndex() >= assemblers.size()) {
+          throw new IOException("Bad response index " + response.getIndex());
+        }
+        assemblers.get(response.getIndex()).add(response.getData());
+      }
+
+    } catch (StatusRuntimeException e) {
+      log.warn("readArrays requestData failed failed: ", e);
+      throw new IOException(e);
+    }
+    if (showRequest)
+      System.out.printf(" ** batch took=%s%n", stopwatch.stop());
+
+    List<ucar.array.Array<?>> result = new ArrayList<>();
+    for (DataAssembler assembler : assemblers) {
+      result.add(assembler.finish());
+    }
+    return result;
+  }
+
+  /**
+   * Read Grids, subsetted on the server by coordinate values. The Grids are the ones found by
+   * {@link ucar.nc2.grid.GridDatasetFactory} in the remote dataset.
+   *
+   * @param gridNames read the Grids with these names.
+   * @param params the subset: lat/lon or projection bounding box, horizontal stride, time or time range, time stride,
+   *        vertical and ensemble coordinates. Other parameters are ignored.
+   * @return the subsetted data and coordinate axes of each Grid, in the same order.
+   */
+  public List<CdmrGridArray> readGridData(List<String> gridNames, SubsetParams params) throws IOException {
+    if (showRequest)
+      System.out.printf("CdmrNetcdfFile grid data request for %s %s%n url='%s'%n path='%s'%n", gridNames, params,
+          this.remoteURI, this.path);
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+
+    GridDataRequest.Builder request = GridDataRequest.newBuilder().setLocation(this.path).addAllGridName(gridNames)
+        .setPacked(true).setCompression(this.compression);
+    CdmrGridConverter.encodeSubsetParams(params, request);
+
+    // the shape and axes of each grid come with its first response
+    List<DataAssembler> assemblers = new ArrayList<>(Collections.nCopies(gridNames.size(), null));
+    List<List<GridAxis1D>> axes = new ArrayList<>(Collections.nCopies(gridNames.size(), null));
+    try {
+      Iterator<GridDataResponse> responses =
+          blockingStub.withDeadlineAfter(MAX_DATA_WAIT_SECONDS, TimeUnit.SECONDS).getGridData(request.build());
+      while (responses.hasNext()) {
+        GridDataResponse response = responses.next();
+        if (response.hasError()) {
+          throw new IOException(response.getError().getMessage());
+        }
+        int index = response.getIndex();
+        if (index >= assemblers.size()) {
+          throw new IOException("Bad response index " + index);
+        }
+        if (assemblers.get(index) == null) {
+          DataType dataType = CdmrConverter.convertDataType(response.getData().getDataType());
+          assemblers.set(index, new DataAssembler(dataType, Ints.toArray(response.getShapeList()), false));
+          List<GridAxis1D> gridAxes = new ArrayList<>();
+          for (GridAxisProto axis : response.getAxesList()) {
+            gridAxes.add(CdmrGridConverter.decodeGridAxis(axis));
+          }
+          axes.set(index, gridAxes);
+        }
+        assemblers.get(index).add(response.getData());
+      }
+
+    } catch (StatusRuntimeException e) {
+      log.warn("readGridData requestData failed failed: ", e);
+      throw new IOException(e);
+    }
+    if (showRequest)
+      System.out.printf(" ** grid data took=%s%n", stopwatch.stop());
+
+    List<CdmrGridArray> result = new ArrayList<>();
+    for (int i = 0; i < gridNames.size(); i++) {
+      if (assemblers.get(i) == null) {
+        throw new IOException("No data received for grid " + gridNames.get(i));
+      }
+      result.add(new CdmrGridArray(gridNames.get(i), assemblers.get(i).finish(), axes.get(i)));
+    }
+    return result;
+  }
+
+  // send the sub-requests, no more than concurrentRequests at a time, and wait for them all to finish
+  private ucar.array.Array<?> readArrayDataAsync(Variable v, Section sectionWanted, long nbytes) throws IOException {
+    if (showRequest)
+      System.out.printf("CdmrNetcdfFile async data request for %s%s%n url='%s'%n path='%s'%n", v.getFullName(),
+          sectionWanted, this.remoteURI, this.path);
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+
+    // at least one sub-request for each concurrent request
+    long subrequestSize = (nbytes + concurrentRequests - 1) / concurrentRequests;
+    subrequestSize = Math.min(MAX_SUBREQUEST_SIZE, Math.max(MIN_SUBREQUEST_SIZE, subrequestSize));
+    List<Section> subsections;
+    try {
+      subsections = CdmrConverter.chunkSection(sectionWanted, Math.max(1, subrequestSize / v.getElementSize()));
+    } catch (InvalidRangeException e) {
+      throw new IOException(e);
+    }
+
+    DataType dataType = v.getDataType();
+    Object storage =
+        java.lang.reflect.Array.newInstance(dataType.getPrimitiveClassType(), (int) sectionWanted.computeSize());
+    Semaphore inFlight = new Semaphore(concurrentRequests);
+    List<Subrequest> subrequests = new ArrayList<>();
+    try {
+      int start = 0;
+      for (Section subsection : subsections) {
+        inFlight.acquire();
+        if (subrequests.stream().anyMatch(s -> s.done.isCompletedExceptionally())) {
+          break; // dont bother sending the rest
+        }
+        String spec = ParsedSectionSpec.makeSectionSpecString(v, subsection.getRanges());
+        DataRequest request = DataRequest.newBuilder().setLocation(this.path).setVariableSpec(spec).setPacked(true)
+            .setCompression(this.compression).build();
+        Subrequest subrequest = new Subrequest(storage, start, (int) subsection.computeSize(), inFlight);
+        subrequests.add(subrequest);
+        asyncStub.withDeadlineAfter(MAX_DATA_WAIT_SECONDS, TimeUnit.SECONDS).getData(request, subrequest);
+        start += subrequest.nvalues;
+      }
+      for (Subrequest subrequest : subrequests) {
+        subrequest.done.get();
+      }
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted reading " + v.getFullName());
+
+    } catch (ExecutionException e) {
+      if (showRequest)
+        System.out.printf(" ** failed after %s%n", stopwatch);
+      log.warn("readSection requestData failed failed: ", e.getCause());
+      throw (e.getCause() instanceof IOException) ? (IOException) e.getCause() : new IOException(e.getCause());
+
+    } finally {
+      subrequests.forEach(Subrequest::cancel);
+    }
+    if (showRequest)
+      System.out.printf(" ** size=%d subrequests=%d took=%s%n", sectionWanted.computeSize(), subrequests.size(),
+          stopwatch.stop());
+    return Arrays.factory(dataType, sectionWanted.getShape(), storage);
+  }
+
+  /** Assembles the responses for a section of a Variable into the result. */
+  private static class DataAssembler {
+    private final DataType dataType;
+    private final int[] shape;
+    private final long size;
+    @Nullable
+    private final Object storage; // fixed size primitives are decoded directly into the storage of the result
+    private final List<ucar.array.Array<?>> results = new ArrayList<>();
+    private long count;
+
+    DataAssembler(Variable v, Section section) {
+      this(v.getDataType(), section.getShape(), v.isVariableLength());
+    }
+
+    DataAssembler(DataType dataType, int[] shape, boolean isVariableLength) {
+      this.dataType = dataType;
+      this.shape = shape;
+      this.size = Arrays.computeSize(shape);
+      this.storage = (CdmrConverter.isPackable(dataType) && !isVariableLength)
+          ? java.lang.reflect.Array.newInstance(dataType.getPrimitiveClassType(), (int) size)
+          : null;
+    }
+
+    void add(Data data) throws IOException {
+      if (storage != null) {
+        if (count + Arrays.computeSize(Ints.toArray(data.getShapeList())) > size) {
+          throw new IOException(String.format("Received more than the %d values requested", size));
+        }
+        count += CdmrConverter.decodeData(data, storage, (int) count);
+      } else {
+        ucar.array.Array<?> result = CdmrConverter.decodeData(data);
+        results.add(result);
+        count += result.length();
+      }
+    }
+
+    ucar.array.Array<?> finish() throws IOException {
+      if (storage != null) {
+        if (count != size) {
+          throw new IOException(String.format("Read %d values, expected %d", count, size));
+        }
+        return Arrays.factory(dataType, shape, storage);
+      } else if (results.size() == 1) {
+        return results.get(0);
+      } else {
+        return Arrays.factoryCopy(dataType, shape, (List) results); // TODO generics
+      }
+    }
+  }
+
+  /**
+   * Receives the responses of one sub-request, and decodes them into its part of the result storage. The next
+   * response is only requested once the current one has been decoded.
+   */
+  private static class Subrequest implements ClientResponseObserver<DataRequest, DataResponse> {
+    private final Object storage;
+    private final int start;
+    private final int nvalues;
+    private final Semaphore inFlight;
+    private final CompletableFuture<Integer> done = new CompletableFuture<>();
+    private ClientCallStreamObserver<DataRequest> call;
+    private int count;
+
+    Subrequest(Object storage, int start, int nvalues, Semaphore inFlight) {
+      this.storage = storage;
+      this.start = start;
+      this.nvalues = nvalues;
+      this.inFlight = inFlight;
+    }
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<DataRequest> call) {
+      this.call = call;
+      call.disableAutoRequestWithInitial(1);
+    }
+
+    @Override
+    public void onNext(DataResponse response) {
+      if (response.hasError()) {
+        finish(new IOException(response.getError().getMessage()));
+        return;
+      }
+      Data data = response.getData();
+      if (count + Arrays.computeSize(Ints.toArray(data.getShapeList())) > nvalues) {
+        finish(new IOException(String.format("Received more than the %d values requested", nvalues)));
+        call.cancel("Too many values", null);
+        return;
+      }
+      try {
+        count += CdmrConverter.decodeData(data, storage, start + count);
+      } catch (RuntimeException e) {
+        finish(e);
+        call.cancel("Decoding failed", e);
+        return;
+      }
+      call.request(1);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      finish(t);
+    }
+
+    @Override
+    public void onCompleted() {
+      if (count != nvalues) {
+        finish(new IOException(String.format("Read %d values, expected %d", count, nvalues)));
+      } else {
+        finish(null);
+      }
+    }
 
-    if (results.size() == 1) {
-      return results.get(0);
-    } else {
-      return Arrays.factoryCopy(v.getDataType(), sectionWanted.getShape(), (List) results); // TODO generics
+    // the first outcome wins, and frees the slot for the next sub-request
+    private void finish(@Nullable Throwable t) {
+      boolean first = (t == null) ? done.complete(count) : done.completeExceptionally(t);
+      if (first) {
+        inFlight.release();
+      }
+    }
+
+    void cancel() {
+      if (!done.isDone()) {
+        call.cancel("Cancelled", null);
+      }
+    }
+  }
+
+  // read the coordinate variables that were not sent in the header in one request
+  private void prefetchCoordinates() {
+    List<Variable> coords = new ArrayList<>();
+    long size = 0;
+    for (Variable v : getVariables()) {
+      if (v.isCoordinateVariable() && !v.hasCachedData() && CdmrConverter.isPackable(v.getDataType())
+          && size + v.getSize() * v.getElementSize() <= MAX_PREFETCH) {
+        coords.add(v);
+        size += v.getSize() * v.getElementSize();
+      }
+    }
+    if (coords.isEmpty()) {
+      return;
+    }
+    try {
+      List<ucar.array.Array<?>> data = readArrays(coords);
+      for (int i = 0; i < coords.size(); i++) {
+        prefetched.put(coords.get(i).getFullName(), data.get(i));
+      }
+    } catch (IOException e) {
+      log.warn("CdmrNetcdfFile prefetch coordinates failed " + this.remoteURI, e);
     }
   }
 
@@ -140,6 +497,10 @@ public class CdmrNetcdfFile extends NetcdfFile {
   private final String path;
   private final ManagedChannel channel;
   private final CdmRemoteGrpc.CdmRemoteBlockingStub blockingStub;
+  private final CdmRemoteGrpc.CdmRemoteStub asyncStub;
+  private final Compress compression;
+  private final int concurrentRequests;
+  private final Map<String, ucar.array.Array<?>> prefetched = new ConcurrentHashMap<>(); // key is full name
 
   private CdmrNetcdfFile(Builder<?> builder) {
     super(builder);
@@ -147,6 +508,9 @@ public class CdmrNetcdfFile extends NetcdfFile {
     this.path = builder.path;
     this.channel = builder.channel;
     this.blockingStub = builder.blockingStub;
+    this.asyncStub = builder.asyncStub;
+    this.compression = builder.compression;
+    this.concurrentRequests = builder.concurrentRequests;
   }
 
   public Builder<?> toBuilder() {
@@ -155,6 +519,8 @@ public class CdmrNetcdfFile extends NetcdfFile {
 
   private Builder<?> addLocalFieldsToBuilder(Builder<? extends Builder<?>> b) {
     b.setRemoteURI(this.remoteURI);
+    b.setCompression(this.compression);
+    b.setConcurrentRequests(this.concurrentRequests);
     return (Builder<?>) super.addLocalFieldsToBuilder(b);
   }
 
@@ -178,7 +544,11 @@ public class CdmrNetcdfFile extends NetcdfFile {
     private String remoteURI;
     private ManagedChannel channel;
     private CdmRemoteGrpc.CdmRemoteBlockingStub blockingStub;
+    private CdmRemoteGrpc.CdmRemoteStub asyncStub;
     private String path;
+    private Compress compression = Compress.NONE;
+    private int concurrentRequests = 4;
+    private boolean prefetchCoordinates = true;
     private boolean built;
 
     protected abstract T self();
@@ -188,12 +558,38 @@ public class CdmrNetcdfFile extends NetcdfFile {
       return self();
     }
 
+    /** Ask the server to compress the data it sends. Default is none. */
+    public T setCompression(Compress compression) {
+      this.compression = Preconditions.checkNotNull(compression);
+      return self();
+    }
+
+    /**
+     * Large data requests are split into sub-requests, and this many are sent at the same time.
+     * Set to 1 to send each data request as a single request. Default is 4.
+     */
+    public T setConcurrentRequests(int concurrentRequests) {
+      Preconditions.checkArgument(concurrentRequests > 0);
+      this.concurrentRequests = concurrentRequests;
+      return self();
+    }
+
+    /** Read the coordinate variables that are not sent in the header with one request when opened. Default true. */
+    public T setPrefetchCoordinates(boolean prefetchCoordinates) {
+      this.prefetchCoordinates = prefetchCoordinates;
+      return self();
+    }
+
     public CdmrNetcdfFile build() {
       if (built)
         throw new IllegalStateException("already built");
       built = true;
       openChannel();
-      return new CdmrNetcdfFile(this);
+      CdmrNetcdfFile result = new CdmrNetcdfFile(this);
+      if (prefetchCoordinates) {
+        result.prefetchCoordinates();
+      }
+      return result;
     }
 
     private void openChannel() {
@@ -216,6 +612,7 @@ public class CdmrNetcdfFile extends NetcdfFile {
           .build();
       try {
         this.blockingStub = CdmRemoteGrpc.newBlockingStub(channel);
+        this.asyncStub = CdmRemoteGrpc.newStub(channel);
         readHeader(path);
 
       } catch (Exception e) {
@@ -1,6 +1,9 @@
 package ucar.cdmr.server;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.Iterables;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.grpc.Metadata;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
@@ -8,22 +11,39 @@ import io.grpc.ServerCall;
 import io.grpc.ServerCall.Listener;
 import io.grpc.ServerCallHandler;
 import io.grpc.ServerInterceptor;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Formatter;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import ucar.array.Arrays;
 import ucar.array.StructureData;
 import ucar.array.StructureDataArray;
 import ucar.array.StructureMembers;
 import ucar.cdmr.CdmRemoteGrpc.CdmRemoteImplBase;
 import ucar.cdmr.CdmRemoteProto;
+import ucar.cdmr.CdmRemoteProto.Compress;
+import ucar.cdmr.CdmRemoteProto.DataBatchRequest;
 import ucar.cdmr.CdmRemoteProto.DataRequest;
 import ucar.cdmr.CdmRemoteProto.DataResponse;
+import ucar.cdmr.CdmRemoteProto.GridDataRequest;
+import ucar.cdmr.CdmRemoteProto.GridDataResponse;
 import ucar.cdmr.CdmRemoteProto.Header;
 import ucar.cdmr.CdmRemoteProto.HeaderRequest;
 import ucar.cdmr.CdmRemoteProto.HeaderResponse;
 import ucar.cdmr.CdmrConverter;
+import ucar.cdmr.CdmrGridConverter;
 import ucar.array.Array;
 import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
@@ -32,8 +52,18 @@ import ucar.nc2.NetcdfFile;
 import ucar.nc2.ParsedSectionSpec;
 import ucar.nc2.Sequence;
 import ucar.nc2.Variable;
+import ucar.nc2.dataset.DatasetUrl;
+import ucar.nc2.dataset.NetcdfDataset;
 import ucar.nc2.dataset.NetcdfDatasets;
-import ucar.nc2.write.ChunkingIndex;
+import ucar.nc2.ft2.coverage.SubsetParams;
+import ucar.nc2.grid.Grid;
+import ucar.nc2.grid.GridAxis;
+import ucar.nc2.grid.GridDataset;
+import ucar.nc2.grid.GridReferencedArray;
+import ucar.nc2.internal.cache.FileCache;
+import ucar.nc2.internal.cache.FileCacheIF;
+import ucar.nc2.internal.cache.FileFactory;
+import ucar.nc2.internal.grid.GridDatasetImpl;
 
 /** Server that manages startup/shutdown of a Cdm Remote server. */
 public class CdmrServer {
@@ -42,12 +72,19 @@ public class CdmrServer {
   private static final int SEQUENCE_CHUNK = 1000;
 
   private Server server;
+  private FileCacheIF datasetCache;
+  private ExecutorService readExecutor;
 
   private void start() throws IOException {
     /* The port on which the server should run */
     int port = 16111;
+    // keep opened datasets between requests
+    datasetCache = new FileCache("CdmrServer", 50, 100, -1, 15 * 60);
+    // reads the next chunk of a data request while the current one is being sent
+    readExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+        new ThreadFactoryBuilder().setNameFormat("CdmrServer-read-%d").setDaemon(true).build());
     server = ServerBuilder.forPort(port) //
-        .addService(new CdmRemoteImpl()) //
+        .addService(new CdmRemoteImpl(datasetCache, readExecutor, MAX_MESSAGE)) //
         // .intercept(new MyServerInterceptor())
         .build().start();
     logger.info("Server started, listening on " + port);
@@ -70,6 +107,12 @@ public class CdmrServer {
     if (server != null) {
       server.shutdown().awaitTermination(30, TimeUnit.SECONDS);
     }
+    if (readExecutor != null) {
+      readExecutor.shutdown();
+    }
+    if (datasetCache != null) {
+      datasetCache.clearCache(true);
+    }
   }
 
   /** Await termination on the main thread since the grpc library uses daemon threads. */
@@ -101,12 +144,52 @@ public class CdmrServer {
   }
 
   static class CdmRemoteImpl extends CdmRemoteImplBase {
+    private static final FileFactory datasetFactory = NetcdfDatasets::openFile;
+    private static final FileFactory enhancedDatasetFactory = (durl, bufferSize, cancelTask,
+        iospMessage) -> NetcdfDatasets.openDataset(durl, NetcdfDataset.getDefaultEnhanceMode(), bufferSize, cancelTask,
+            iospMessage);
+
+    @Nullable
+    private final FileCacheIF datasetCache;
+    private final Executor readExecutor;
+    private final long maxMessage;
+
+    /**
+     * @param datasetCache keep opened datasets in this cache; if null, open them on each request.
+     * @param readExecutor read and encode the chunks of data requests
+     * @param maxMessage split data requests into chunks of no more than this many bytes
+     */
+    CdmRemoteImpl(@Nullable FileCacheIF datasetCache, Executor readExecutor, long maxMessage) {
+      this.datasetCache = datasetCache;
+      this.readExecutor = readExecutor;
+      this.maxMessage = maxMessage;
+    }
+
+    // close() releases it back to the cache
+    private NetcdfFile acquireFile(String location) throws IOException {
+      DatasetUrl durl = DatasetUrl.findDatasetUrl(location);
+      if (datasetCache == null) {
+        return NetcdfDatasets.openFile(durl, -1, null, null);
+      }
+      return (NetcdfFile) datasetCache.acquire(datasetFactory, durl);
+    }
+
+    // enhanced, for the grid requests; close() releases it back to the cache
+    private NetcdfDataset acquireDataset(String location) throws IOException {
+      DatasetUrl durl = DatasetUrl.findDatasetUrl(location);
+      if (datasetCache == null) {
+        return (NetcdfDataset) enhancedDatasetFactory.open(durl, -1, null, null);
+      }
+      // must not share a key with the plain file
+      return (NetcdfDataset) datasetCache.acquire(enhancedDatasetFactory, "enhanced:" + durl.getTrueurl(), durl, -1,
+          null, null);
+    }
 
     @Override
     public void getHeader(HeaderRequest req, StreamObserver<HeaderResponse> responseObserver) {
       System.out.printf("CdmrServer getHeader open %s%n", req.getLocation());
       HeaderResponse.Builder response = HeaderResponse.newBuilder();
-      try (NetcdfFile ncfile = NetcdfDatasets.openFile(req.getLocation(), null)) {
+      try (NetcdfFile ncfile = acquireFile(req.getLocation())) {
         Header.Builder header = Header.newBuilder().setLocation(req.getLocation())
             .setRoot(CdmrConverter.encodeGroup(ncfile.getRootGroup(), 100).build());
         response.setHeader(header);
@@ -126,78 +209,442 @@ public class CdmrServer {
       final Stopwatch stopwatch = Stopwatch.createStarted();
       long size = -1;
 
-      try (NetcdfFile ncfile = NetcdfDatasets.openFile(req.getLocation(), null)) { // LOOK cache ncfile?
+      NetcdfFile ncfile = null;
+      try {
+        ncfile = acquireFile(req.getLocation());
         ParsedSectionSpec varSection = ParsedSectionSpec.parseVariableSection(ncfile, req.getVariableSpec());
         Variable var = varSection.getVariable();
         if (var instanceof Sequence) {
           size = getSequenceData(ncfile, varSection, responseObserver);
+          responseObserver.onCompleted();
+          logger.info("CdmrServer getData " + req.getLocation());
+          System.out.printf(" ** size=%d took=%s%n", size, stopwatch.stop());
         } else {
           Section wantSection = varSection.getSection();
           size = var.getElementSize() * wantSection.getSize();
-          getData(ncfile, varSection, responseObserver);
+          // the streamer sends the chunks as they are read, and closes the file when done
+          new ChunkStreamer(ncfile, makeChunks(varSection, 0), req.getPacked(), req.getCompression(),
+              responseObserver, readExecutor, size, stopwatch).start();
+          ncfile = null;
         }
-        responseObserver.onCompleted();
-        logger.info("CdmrServer getData " + req.getLocation());
 
       } catch (Throwable t) {
         logger.warn("CdmrServer getData failed ", t);
         t.printStackTrace();
-        DataResponse.Builder response =
-            DataResponse.newBuilder().setLocation(req.getLocation()).setVariableSpec(req.getVariableSpec());
-        response.setError(
-            CdmRemoteProto.Error.newBuilder().setMessage(t.getMessage() == null ? "N/A" : t.getMessage()).build());
-        responseObserver.onNext(response.build());
-      }
+        sendError(req.getLocation(), req.getVariableSpec(), 0, t, responseObserver);
 
-      System.out.printf(" ** size=%d took=%s%n", size, stopwatch.stop());
+      } finally {
+        closeFile(ncfile);
+      }
     }
 
-    private void getData(NetcdfFile ncfile, ParsedSectionSpec varSection, StreamObserver<DataResponse> responseObserver)
-        throws IOException, InvalidRangeException {
-      Variable var = varSection.getVariable();
-      Section wantSection = varSection.getSection();
-      long size = var.getElementSize() * wantSection.getSize();
-      if (size > MAX_MESSAGE) {
-        getDataInChunks(ncfile, varSection, responseObserver);
-      } else {
-        getOneChunk(ncfile, varSection, responseObserver);
+    @Override
+    public void getDataBatch(DataBatchRequest req, StreamObserver<DataResponse> responseObserver) {
+      logger.debug("CdmrServer getDataBatch {} {}", req.getLocation(), req.getVariableSpecList());
+      final Stopwatch stopwatch = Stopwatch.createStarted();
+      int index = 0;
+
+      NetcdfFile ncfile = null;
+      try {
+        ncfile = acquireFile(req.getLocation());
+        // the chunks of all the variables, sent in the order requested
+        List<Chunk> chunks = new ArrayList<>();
+        long size = 0;
+        for (index = 0; index < req.getVariableSpecCount(); index++) {
+          ParsedSectionSpec varSection = ParsedSectionSpec.parseVariableSection(ncfile, req.getVariableSpec(index));
+          Variable var = varSection.getVariable();
+          if (var instanceof Sequence) {
+            throw new IllegalArgumentException("Sequence not allowed in batch request " + var.getFullName());
+          }
+          size += var.getElementSize() * varSection.getSection().getSize();
+          chunks.addAll(makeChunks(varSection, index));
+        }
+        if (chunks.isEmpty()) {
+          responseObserver.onCompleted();
+        } else {
+          new ChunkStreamer(ncfile, chunks, req.getPacked(), req.getCompression(), responseObserver, readExecutor,
+              size, stopwatch).start();
+          ncfile = null;
+        }
+
+      } catch (Throwable t) {
+        logger.warn("CdmrServer getDataBatch failed ", t);
+        String spec = index < req.getVariableSpecCount() ? req.getVariableSpec(index) : "";
+        sendError(req.getLocation(), spec, index, t, responseObserver);
+
+      } finally {
+        closeFile(ncfile);
       }
     }
 
-    private void getDataInChunks(NetcdfFile ncfile, ParsedSectionSpec varSection,
-        StreamObserver<DataResponse> responseObserver) throws IOException, InvalidRangeException {
+    @Override
+    public void getGridData(GridDataRequest req, StreamObserver<GridDataResponse> responseObserver) {
+      logger.debug("CdmrServer getGridData {} {}", req.getLocation(), req.getGridNameList());
+      final Stopwatch stopwatch = Stopwatch.createStarted();
+
+      NetcdfDataset ncd = null;
+      try {
+        ncd = acquireDataset(req.getLocation());
+        Formatter errlog = new Formatter();
+        GridDataset gridDataset = GridDatasetImpl.create(ncd, errlog).filter(gds -> !Iterables.isEmpty(gds.getGrids()))
+            .orElseThrow(() -> new IOException("Could not open as GridDataset: " + req.getLocation() + " " + errlog));
+        SubsetParams params = CdmrGridConverter.decodeSubsetParams(req);
+        if (req.getGridNameCount() == 0) {
+          responseObserver.onCompleted();
+        } else {
+          // the streamer sends the grids as they are read, and releases the dataset when done
+          new GridStreamer(ncd, gridDataset, req, params, maxMessage, responseObserver, readExecutor, stopwatch)
+              .start();
+          ncd = null;
+        }
 
+      } catch (Throwable t) {
+        logger.warn("CdmrServer getGridData failed ", t);
+        sendGridError(req, 0, t, responseObserver);
+
+      } finally {
+        closeFile(ncd);
+      }
+    }
+
+    // split the wanted section into chunks of no more than maxMessage bytes
+    private List<Chunk> makeChunks(ParsedSectionSpec varSection, int index) throws InvalidRangeException {
       Variable var = varSection.getVariable();
-      long maxChunkElems = MAX_MESSAGE / var.getElementSize();
-      // LOOK wrong this assume starts at 0, should start at varSection
-      ChunkingIndex index = new ChunkingIndex(var.getShape());
-      while (index.currentElement() < index.getSize()) {
-        int[] chunkOrigin = index.getCurrentCounter();
-        int[] chunkShape = index.computeChunkShape(maxChunkElems);
-        Section section = new Section(chunkOrigin, chunkShape);
-        getOneChunk(ncfile, new ParsedSectionSpec(var, section), responseObserver);
-        index.setCurrentCounter(index.currentElement() + (int) Arrays.computeSize(chunkShape));
+      long maxChunkElems = Math.max(1, maxMessage / var.getElementSize());
+      List<Chunk> chunks = new ArrayList<>();
+      for (Section section : CdmrConverter.chunkSection(varSection.getSection(), maxChunkElems)) {
+        chunks.add(new Chunk(new ParsedSectionSpec(var, section), index));
       }
+      return chunks;
     }
 
-    private void getOneChunk(NetcdfFile ncfile, ParsedSectionSpec varSection,
-        StreamObserver<DataResponse> responseObserver) throws IOException, InvalidRangeException {
+    private static DataResponse readChunk(NetcdfFile ncfile, Chunk chunk, boolean packed, Compress compression)
+        throws IOException, InvalidRangeException {
 
+      ParsedSectionSpec varSection = chunk.varSection;
       String spec = varSection.makeSectionSpecString();
       Variable var = varSection.getVariable();
       Section wantSection = varSection.getSection();
 
       DataResponse.Builder response = DataResponse.newBuilder().setLocation(ncfile.getLocation()).setVariableSpec(spec)
-          .setVarFullName(var.getFullName()).setSection(CdmrConverter.encodeSection(wantSection));
+          .setVarFullName(var.getFullName()).setSection(CdmrConverter.encodeSection(wantSection))
+          .setIndex(chunk.index);
 
       Array<?> data = var.readArray(wantSection);
-      response.setData(CdmrConverter.encodeData(data.getDataType(), data));
+      response.setData(CdmrConverter.encodeData(data.getDataType(), data, packed, compression));
+      System.out.printf(" Read one chunk %s size=%d bytes%n", spec,
+          data.length() * varSection.getVariable().getElementSize());
+      return response.build();
+    }
 
+    private static void sendError(String location, String variableSpec, int index, Throwable t,
+        StreamObserver<DataResponse> responseObserver) {
+      DataResponse.Builder response =
+          DataResponse.newBuilder().setLocation(location).setVariableSpec(variableSpec).setIndex(index);
+      response.setError(
+          CdmRemoteProto.Error.newBuilder().setMessage(t.getMessage() == null ? "N/A" : t.getMessage()).build());
       responseObserver.onNext(response.build());
-      System.out.printf(" Send one chunk %s size=%d bytes%n", spec,
-          data.length() * varSection.getVariable().getElementSize());
+      responseObserver.onCompleted();
+    }
+
+    private static void sendGridError(GridDataRequest req, int index, Throwable t,
+        StreamObserver<GridDataResponse> responseObserver) {
+      GridDataResponse.Builder response = GridDataResponse.newBuilder().setLocation(req.getLocation()).setIndex(index)
+          .setGridName(index < req.getGridNameCount() ? req.getGridName(index) : "");
+      response.setError(
+          CdmRemoteProto.Error.newBuilder().setMessage(t.getMessage() == null ? "N/A" : t.getMessage()).build());
+      responseObserver.onNext(response.build());
+      responseObserver.onCompleted();
+    }
+
+    private static void closeFile(@Nullable NetcdfFile ncfile) {
+      if (ncfile == null) {
+        return;
+      }
+      try {
+        ncfile.close();
+      } catch (IOException e) {
+        logger.warn("CdmrServer close failed " + ncfile.getLocation(), e);
+      }
+    }
+
+    /** A chunk of a data request, for the variableSpec at index in a batch request. */
+    private static class Chunk {
+      final ParsedSectionSpec varSection;
+      final int index;
+
+      Chunk(ParsedSectionSpec varSection, int index) {
+        this.varSection = varSection;
+        this.index = index;
+      }
+    }
+
+    /**
+     * Sends the responses of one request, in order. The next response is read on the read executor while the current
+     * one is being sent. A response is only sent when the call is ready for it, so that gRPC flow control limits how
+     * much data is waiting to be sent.
+     */
+    private abstract static class ResponseStreamer<T> {
+      private final String request;
+      private final String location;
+      private final StreamObserver<T> responseObserver;
+      @Nullable
+      private final ServerCallStreamObserver<T> flowControl; // null if not a server call
+      private final Executor readExecutor;
+
+      private CompletableFuture<T> next; // reading the next response
+      private boolean draining, finished;
+
+      ResponseStreamer(String request, String location, StreamObserver<T> responseObserver, Executor readExecutor) {
+        this.request = request;
+        this.location = location;
+        this.responseObserver = responseObserver;
+        this.flowControl = (responseObserver instanceof ServerCallStreamObserver)
+            ? (ServerCallStreamObserver<T>) responseObserver
+            : null;
+        this.readExecutor = readExecutor;
+      }
+
+      /** Read the next response. Called on the read executor, never while the previous read is running. */
+      abstract T readNext() throws IOException, InvalidRangeException;
+
+      /** Is there a response after the ones already read? */
+      abstract boolean hasNext();
+
+      /** Send the error for the response that could not be read. */
+      abstract void sendError(Throwable t, StreamObserver<T> responseObserver);
+
+      /** Called after the last response is sent. */
+      abstract void completed();
+
+      /** Release what the request holds. Called once, after the last read is done. */
+      abstract void close();
+
+      void start() {
+        // start reading before the handlers are set, so that a cancel always has a read to wait for
+        synchronized (this) {
+          next = read();
+        }
+        if (flowControl != null) {
+          flowControl.setOnReadyHandler(this::drain);
+          flowControl.setOnCancelHandler(this::cancel);
+        }
+        drain();
+      }
+
+      private CompletableFuture<T> read() {
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+          try {
+            return readNext();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          } catch (InvalidRangeException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+          }
+        }, readExecutor);
+        future.whenComplete((response, t) -> drain());
+        return future;
+      }
+
+      private boolean isReady() {
+        return flowControl == null || flowControl.isReady();
+      }
+
+      // send as many responses as are read and the call is ready for
+      private synchronized void drain() {
+        if (draining || finished || next == null) {
+          return;
+        }
+        draining = true;
+        try {
+          while (!finished && next.isDone() && isReady()) {
+            T response;
+            try {
+              response = next.join();
+            } catch (CompletionException | CancellationException e) {
+              Throwable cause = (e.getCause() instanceof UncheckedIOException) ? e.getCause().getCause() : e.getCause();
+              fail(cause != null ? cause : e);
+              return;
+            }
+            boolean more = hasNext();
+            if (more) {
+              next = read(); // read the next response while this one is sent
+            }
+            responseObserver.onNext(response);
+            if (!more) {
+              finish();
+              responseObserver.onCompleted();
+              completed();
+            }
+          }
+        } finally {
+          draining = false;
+        }
+      }
+
+      private void fail(Throwable t) {
+        logger.warn("CdmrServer " + request + " failed ", t);
+        finish();
+        sendError(t, responseObserver);
+      }
+
+      private synchronized void cancel() {
+        logger.info("CdmrServer " + request + " cancelled " + location);
+        finish();
+      }
+
+      // release once no response is being read
+      private void finish() {
+        if (finished) {
+          return;
+        }
+        finished = true;
+        if (next == null) {
+          close();
+        } else {
+          next.whenComplete((response, t) -> close());
+        }
+      }
     }
 
+    /** Sends the chunks of one data request, reading each one from the file. */
+    private static class ChunkStreamer extends ResponseStreamer<DataResponse> {
+      private final NetcdfFile ncfile;
+      private final List<Chunk> chunks;
+      private final boolean packed;
+      private final Compress compression;
+      private final long size;
+      private final Stopwatch stopwatch;
+
+      private int nread; // only used by the reads
+
+      ChunkStreamer(NetcdfFile ncfile, List<Chunk> chunks, boolean packed, Compress compression,
+          StreamObserver<DataResponse> responseObserver, Executor readExecutor, long size, Stopwatch stopwatch) {
+        super("getData", ncfile.getLocation(), responseObserver, readExecutor);
+        this.ncfile = ncfile;
+        this.chunks = chunks;
+        this.packed = packed;
+        this.compression = compression;
+        this.size = size;
+        this.stopwatch = stopwatch;
+      }
+
+      @Override
+      DataResponse readNext() throws IOException, InvalidRangeException {
+        Chunk chunk = chunks.get(nread);
+        nread++;
+        return readChunk(ncfile, chunk, packed, compression);
+      }
+
+      @Override
+      boolean hasNext() {
+        return nread < chunks.size();
+      }
+
+      @Override
+      void sendError(Throwable t, StreamObserver<DataResponse> responseObserver) {
+        Chunk chunk = chunks.get(nread - 1);
+        CdmRemoteImpl.sendError(ncfile.getLocation(), chunk.varSection.makeSectionSpecString(), chunk.index, t,
+            responseObserver);
+      }
+
+      @Override
+      void completed() {
+        logger.info("CdmrServer getData " + ncfile.getLocation());
+        System.out.printf(" ** size=%d took=%s%n", size, stopwatch.stop());
+      }
+
+      @Override
+      void close() {
+        closeFile(ncfile);
+      }
+    }
+
+    /**
+     * Sends the data of the grids of one grid data request, in chunks of no more than maxMessage bytes. A grid is
+     * read and subsetted when its first chunk is wanted.
+     */
+    private static class GridStreamer extends ResponseStreamer<GridDataResponse> {
+      private final NetcdfDataset ncd;
+      private final GridDataset gridDataset;
+      private final GridDataRequest req;
+      private final SubsetParams params;
+      private final long maxMessage;
+      private final Stopwatch stopwatch;
+
+      // only used by the reads
+      private int index = -1; // the grid being read
+      private GridReferencedArray geoArray;
+      private Iterator<Section> sections; // the chunks of geoArray not yet read
+      private long size;
+
+      GridStreamer(NetcdfDataset ncd, GridDataset gridDataset, GridDataRequest req, SubsetParams params,
+          long maxMessage, StreamObserver<GridDataResponse> responseObserver, Executor readExecutor,
+          Stopwatch stopwatch) {
+        super("getGridData", req.getLocation(), responseObserver, readExecutor);
+        this.ncd = ncd;
+        this.gridDataset = gridDataset;
+        this.req = req;
+        this.params = params;
+        this.maxMessage = maxMessage;
+        this.stopwatch = stopwatch;
+      }
+
+      @Override
+      GridDataResponse readNext() throws IOException, InvalidRangeException {
+        boolean first = false;
+        if (sections == null || !sections.hasNext()) {
+          index++;
+          Grid grid = gridDataset.findGrid(req.getGridName(index));
+          if (grid == null) {
+            throw new IllegalArgumentException("No grid named " + req.getGridName(index));
+          }
+          // the subsetting is done by the Grid, so only the wanted data is read
+          geoArray = grid.readData(params);
+          Array<?> data = geoArray.data();
+          long maxChunkElems = Math.max(1, maxMessage / data.getDataType().getSize());
+          sections = CdmrConverter.chunkSection(new Section(data.getShape()), maxChunkElems).iterator();
+          size += data.length() * data.getDataType().getSize();
+          first = true;
+        }
+
+        Array<?> data = geoArray.data();
+        Section section = sections.next();
+        GridDataResponse.Builder response = GridDataResponse.newBuilder().setLocation(req.getLocation())
+            .setGridName(geoArray.coverageName()).setIndex(index).addAllShape(Ints.asList(data.getShape()))
+            .setSection(CdmrConverter.encodeSection(section));
+        // the axes are sent with the first chunk
+        if (first) {
+          for (GridAxis axis : geoArray.csSubset().getCoordAxes()) {
+            response.addAxes(CdmrGridConverter.encodeGridAxis(axis));
+          }
+        }
+        Array<?> chunk = Arrays.section(data, section.getRanges());
+        response.setData(CdmrConverter.encodeData(data.getDataType(), chunk, req.getPacked(), req.getCompression()));
+        return response.build();
+      }
+
+      @Override
+      boolean hasNext() {
+        return sections.hasNext() || index + 1 < req.getGridNameCount();
+      }
+
+      @Override
+      void sendError(Throwable t, StreamObserver<GridDataResponse> responseObserver) {
+        sendGridError(req, index, t, responseObserver);
+      }
+
+      @Override
+      void completed() {
+        logger.info("CdmrServer getGridData " + req.getLocation());
+        logger.debug("CdmrServer getGridData size={} took={}", size, stopwatch.stop());
+      }
+
+      @Override
+      void close() {
+        closeFile(ncd);
+      }
+    }
 
     private long getSequenceData(NetcdfFile ncfile, ParsedSectionSpec varSection,
         StreamObserver<DataResponse> responseObserver) throws InvalidRangeException {
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.cdmr;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import com.google.protobuf.ByteString;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.Random;
+import org.junit.Test;
+import ucar.array.Array;
+import ucar.array.Arrays;
+import ucar.cdmr.CdmRemoteProto.Compress;
+import ucar.cdmr.CdmRemoteProto.Data;
+import ucar.ma2.DataType;
+import ucar.ma2.Range;
+
+/** Test {@link CdmrConverter} packed data encoding. */
+public class TestCdmrConverterPacked {
+  private static final DataType[] packable = {DataType.BYTE, DataType.UBYTE, DataType.ENUM1, DataType.CHAR,
+      DataType.SHORT, DataType.USHORT, DataType.ENUM2, DataType.INT, DataType.UINT, DataType.ENUM4, DataType.LONG,
+      DataType.ULONG, DataType.FLOAT, DataType.DOUBLE};
+
+  private static Array<?> makeArray(DataType dataType, int[] shape, Random random) {
+    int n = (int) Arrays.computeSize(shape);
+    Object values = java.lang.reflect.Array.newInstance(dataType.getPrimitiveClassType(), n);
+    for (int i = 0; i < n; i++) {
+      // mostly repeated values, so they compress
+      long val = random == null ? (i % 17) - 8 : random.nextLong();
+      switch (dataType.getPrimitiveClassType().getName()) {
+        case "byte":
+          ((byte[]) values)[i] = (byte) val;
+          break;
+        case "char":
+          ((char[]) values)[i] = (char) val;
+          break;
+        case "short":
+          ((short[]) values)[i] = (short) val;
+          break;
+        case "int":
+          ((int[]) values)[i] = (int) val;
+          break;
+        case "long":
+          ((long[]) values)[i] = val;
+          break;
+        case "float":
+          ((float[]) values)[i] = random == null ? val / 3.0f : random.nextFloat();
+          break;
+        default:
+          ((double[]) values)[i] = random == null ? val / 3.0 : random.nextDouble();
+          break;
+      }
+    }
+    return Arrays.factory(dataType, shape, values);
+  }
+
+  private static void checkEqual(String what, Array<?> want, Array<?> got) {
+    assertWithMessage(what).that(got.getDataType()).isEqualTo(want.getDataType());
+    assertWithMessage(what).that(got.getShape()).isEqualTo(want.getShape());
+    Iterator<?> wantIter = want.iterator();
+    Iterator<?> gotIter = got.iterator();
+    while (wantIter.hasNext()) {
+      assertWithMessage(what).that(gotIter.next()).isEqualTo(wantIter.next());
+    }
+  }
+
+  @Test
+  public void testRoundTrip() {
+    int[] shape = {3, 5, 7};
+    for (DataType dataType : packable) {
+      Array<?> array = makeArray(dataType, shape, null);
+      for (Compress compress : new Compress[] {Compress.NONE, Compress.DEFLATE, Compress.ZSTD}) {
+        String what = dataType + " " + compress;
+        Data data = CdmrConverter.encodeData(dataType, array, true, compress);
+        assertWithMessage(what).that(data.getPacked().isEmpty()).isFalse();
+        assertWithMessage(what).that(data.getIdataCount() + data.getDdataCount() + data.getBdataCount()).isEqualTo(0);
+        int elemSize = dataType == DataType.CHAR ? 2 : dataType.getSize();
+        assertWithMessage(what).that(data.getPackedSize()).isEqualTo(array.length() * elemSize);
+        assertWithMessage(what).that(data.getCompression()).isEqualTo(compress);
+        if (compress != Compress.NONE) {
+          assertWithMessage(what).that(data.getPacked().size()).isLessThan(data.getPackedSize());
+        }
+        checkEqual(what, array, CdmrConverter.decodeData(data));
+      }
+    }
+  }
+
+  @Test
+  public void testIncompressible() {
+    for (DataType dataType : new DataType[] {DataType.BYTE, DataType.LONG}) {
+      Array<?> array = makeArray(dataType, new int[] {100}, new Random(42));
+      for (Compress compress : new Compress[] {Compress.DEFLATE, Compress.ZSTD}) {
+        // sent uncompressed when compressing does not make it smaller
+        Data data = CdmrConverter.encodeData(dataType, array, true, compress);
+        assertThat(data.getCompression()).isEqualTo(Compress.NONE);
+        assertThat(data.getPacked().size()).isEqualTo(data.getPackedSize());
+        checkEqual(dataType + " " + compress, array, CdmrConverter.decodeData(data));
+      }
+    }
+  }
+
+  @Test
+  public void testView() throws Exception {
+    // a strided section is not in canonical order in its storage
+    for (DataType dataType : packable) {
+      Array<?> array = makeArray(dataType, new int[] {6, 8}, null);
+      Array<?> view = Arrays.section(array, java.util.Arrays.asList(new Range(1, 5, 2), new Range(0, 6, 3)));
+      Data data = CdmrConverter.encodeData(dataType, view, true, Compress.NONE);
+      checkEqual(dataType.toString(), view, CdmrConverter.decodeData(data));
+    }
+  }
+
+  @Test
+  public void testLargerThanCopyChunk() throws Exception {
+    // the data is copied into the packed bytes several thousand elements at a time, with a partial last chunk
+    for (DataType dataType : packable) {
+      Array<?> array = makeArray(dataType, new int[] {101, 203}, new Random(7));
+      Data data = CdmrConverter.encodeData(dataType, array, true, Compress.NONE);
+      checkEqual(dataType.toString(), array, CdmrConverter.decodeData(data));
+
+      Array<?> view = Arrays.section(array, java.util.Arrays.asList(new Range(0, 100, 2), new Range(1, 202)));
+      data = CdmrConverter.encodeData(dataType, view, true, Compress.NONE);
+      checkEqual(dataType + " view", view, CdmrConverter.decodeData(data));
+    }
+  }
+
+  @Test
+  public void testDecodeIntoStorage() {
+    // two chunks, one packed and one not, assembled into one primitive array
+    for (DataType dataType : packable) {
+      Array<?> first = makeArray(dataType, new int[] {2, 3}, null);
+      Array<?> second = makeArray(dataType, new int[] {4, 3}, new Random(17));
+      Object storage = java.lang.reflect.Array.newInstance(dataType.getPrimitiveClassType(), 18);
+      int pos = CdmrConverter.decodeData(CdmrConverter.encodeData(dataType, first, true, Compress.ZSTD), storage, 0);
+      assertThat(pos).isEqualTo(6);
+      pos += CdmrConverter.decodeData(CdmrConverter.encodeData(dataType, second), storage, pos);
+      assertThat(pos).isEqualTo(18);
+
+      Array<?> result = Arrays.factory(dataType, new int[] {6, 3}, storage);
+      Array<?> want = Arrays.factoryCopy(dataType, new int[] {6, 3}, java.util.Arrays.asList((Array) first, second));
+      checkEqual(dataType.toString(), want, result);
+    }
+  }
+
+  @Test
+  public void testBigEndian() {
+    ByteBuffer bb = ByteBuffer.allocate(24).order(ByteOrder.BIG_ENDIAN);
+    bb.asDoubleBuffer().put(new double[] {1.5, -2.25, 1.0e30});
+    Data data = Data.newBuilder().setDataType(CdmRemoteProto.DataType.DOUBLE).addShape(3)
+        .setPacked(ByteString.copyFrom(bb.array())).setPackedSize(24).setBigEndian(true).build();
+    Array<Double> result = CdmrConverter.decodeData(data);
+    assertThat(result.get(0)).isEqualTo(1.5);
+    assertThat(result.get(1)).isEqualTo(-2.25);
+    assertThat(result.get(2)).isEqualTo(1.0e30);
+  }
+
+  @Test
+  public void testNotPackable() {
+    Array<String> array = Arrays.factory(DataType.STRING, new int[] {3}, new String[] {"one", "two", "three"});
+    Data data = CdmrConverter.encodeData(DataType.STRING, array, true, Compress.DEFLATE);
+    assertThat(data.getPacked().isEmpty()).isTrue();
+    assertThat(data.getSdataCount()).isEqualTo(3);
+    checkEqual("string", array, CdmrConverter.decodeData(data));
+  }
+}
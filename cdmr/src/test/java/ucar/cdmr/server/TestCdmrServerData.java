@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.cdmr.server;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ucar.array.Array;
+import ucar.array.Arrays;
+import ucar.cdmr.CdmRemoteProto.Compress;
+import ucar.cdmr.CdmRemoteProto.DataBatchRequest;
+import ucar.cdmr.CdmRemoteProto.DataRequest;
+import ucar.cdmr.CdmRemoteProto.DataResponse;
+import ucar.cdmr.CdmrConverter;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.internal.cache.FileCache;
+import ucar.unidata.util.test.TestDir;
+
+/** Test {@link CdmrServer} data requests, without a network connection. */
+public class TestCdmrServerData {
+  private static final String location = TestDir.cdmLocalFromTestDataDir + "ncml/nc/jan.nc";
+
+  private ExecutorService readExecutor;
+  private FileCache cache;
+
+  @Before
+  public void setup() {
+    readExecutor = Executors.newFixedThreadPool(2);
+    cache = new FileCache("TestCdmrServerData", 5, 10, -1, -1);
+  }
+
+  @After
+  public void cleanup() {
+    readExecutor.shutdown();
+    cache.clearCache(true);
+  }
+
+  /** Records what is sent, and lets the test control when the call is ready. */
+  private static class ResponseObserver extends ServerCallStreamObserver<DataResponse> {
+    final List<DataResponse> responses = Collections.synchronizedList(new ArrayList<>());
+    final CountDownLatch done = new CountDownLatch(1);
+    volatile boolean ready;
+    volatile boolean readyAfterSend;
+    Runnable onReady;
+    Runnable onCancel;
+    boolean cancelOnRegister; // the call is cancelled as soon as the handler is set
+
+    ResponseObserver(boolean ready, boolean readyAfterSend) {
+      this.ready = ready;
+      this.readyAfterSend = readyAfterSend;
+    }
+
+    void setReady() {
+      ready = true;
+      onReady.run();
+    }
+
+    @Override
+    public void onNext(DataResponse value) {
+      assertThat(ready).isTrue();
+      responses.add(value);
+      ready = readyAfterSend;
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      done.countDown();
+    }
+
+    @Override
+    public void onCompleted() {
+      done.countDown();
+    }
+
+    @Override
+    public boolean isReady() {
+      return ready;
+    }
+
+    @Override
+    public void setOnReadyHandler(Runnable onReadyHandler) {
+      this.onReady = onReadyHandler;
+    }
+
+    @Override
+    public void setOnCancelHandler(Runnable onCancelHandler) {
+      this.onCancel = onCancelHandler;
+      if (cancelOnRegister)
+        onCancelHandler.run();
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return false;
+    }
+
+    @Override
+    public void setCompression(String compression) {}
+
+    @Override
+    public void disableAutoInboundFlowControl() {}
+
+    @Override
+    public void request(int count) {}
+
+    @Override
+    public void setMessageCompression(boolean enable) {}
+  }
+
+  private static void waitForResponses(ResponseObserver observer, int n) throws InterruptedException {
+    for (int i = 0; i < 500 && observer.responses.size() < n; i++) {
+      Thread.sleep(10);
+    }
+    assertThat(observer.responses).hasSize(n);
+  }
+
+  private void checkData(String spec, List<DataResponse> responses) throws Exception {
+    List<Array<?>> arrays = new ArrayList<>();
+    for (DataResponse response : responses) {
+      assertThat(response.hasError()).isFalse();
+      arrays.add(CdmrConverter.decodeData(response.getData()));
+    }
+    try (NetcdfFile ncfile = NetcdfFiles.open(location)) {
+      Array<?> want = ncfile.readSectionArray(spec);
+      Array<?> got = Arrays.factoryCopy(want.getDataType(), want.getShape(), (List) arrays);
+      Iterator<?> wantIter = want.iterator();
+      Iterator<?> gotIter = got.iterator();
+      while (wantIter.hasNext()) {
+        assertThat(gotIter.next()).isEqualTo(wantIter.next());
+      }
+    }
+  }
+
+  @Test
+  public void testChunks() throws Exception {
+    // 8 bytes * 12 per time step, so 5 time steps per chunk
+    CdmrServer.CdmRemoteImpl service = new CdmrServer.CdmRemoteImpl(cache, readExecutor, 500);
+    for (String spec : new String[] {"T", "T(2:30:3,1:2,:)", "P(7,:,1)"}) {
+      ResponseObserver observer = new ResponseObserver(true, true);
+      service.getData(DataRequest.newBuilder().setLocation(location).setVariableSpec(spec).build(), observer);
+      assertThat(observer.done.await(10, TimeUnit.SECONDS)).isTrue();
+      checkData(spec, observer.responses);
+    }
+    assertThat(cache.showCache()).hasSize(1); // the file was released after each request, and reused
+  }
+
+  @Test
+  public void testPacked() throws Exception {
+    CdmrServer.CdmRemoteImpl service = new CdmrServer.CdmRemoteImpl(cache, readExecutor, 500);
+    for (Compress compress : Compress.values()) {
+      if (compress == Compress.UNRECOGNIZED) {
+        continue;
+      }
+      ResponseObserver observer = new ResponseObserver(true, true);
+      DataRequest request = DataRequest.newBuilder().setLocation(location).setVariableSpec("T(2:30:3,1:2,:)")
+          .setPacked(true).setCompression(compress).build();
+      service.getData(request, observer);
+      assertThat(observer.done.await(10, TimeUnit.SECONDS)).isTrue();
+      for (DataResponse response : observer.responses) {
+        assertThat(response.getData().getPacked().isEmpty()).isFalse();
+        assertThat(response.getData().getDdataCount()).isEqualTo(0);
+      }
+      checkData("T(2:30:3,1:2,:)", observer.responses);
+    }
+  }
+
+  @Test
+  public void testBatch() throws Exception {
+    CdmrServer.CdmRemoteImpl service = new CdmrServer.CdmRemoteImpl(cache, readExecutor, 500);
+    String[] specs = {"time", "T", "P(7,:,1)", "lat"};
+    ResponseObserver observer = new ResponseObserver(true, true);
+    DataBatchRequest.Builder request = DataBatchRequest.newBuilder().setLocation(location).setPacked(true);
+    for (String spec : specs) {
+      request.addVariableSpec(spec);
+    }
+    service.getDataBatch(request.build(), observer);
+    assertThat(observer.done.await(10, TimeUnit.SECONDS)).isTrue();
+
+    // the responses for each spec are in order
+    int index = 0;
+    List<DataResponse> responses = new ArrayList<>();
+    for (DataResponse response : observer.responses) {
+      assertThat(response.getIndex()).isAtLeast(index);
+      if (response.getIndex() != index) {
+        checkData(specs[index], responses);
+        responses.clear();
+        index = response.getIndex();
+      }
+      responses.add(response);
+    }
+    assertThat(index).isEqualTo(specs.length - 1);
+    checkData(specs[index], responses);
+  }
+
+  @Test
+  public void testBatchError() throws Exception {
+    CdmrServer.CdmRemoteImpl service = new CdmrServer.CdmRemoteImpl(cache, readExecutor, 500);
+    ResponseObserver observer = new ResponseObserver(true, true);
+    service.getDataBatch(
+        DataBatchRequest.newBuilder().setLocation(location).addVariableSpec("T").addVariableSpec("bad").build(),
+        observer);
+    assertThat(observer.done.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(observer.responses).hasSize(1);
+    assertThat(observer.responses.get(0).hasError()).isTrue();
+    assertThat(observer.responses.get(0).getIndex()).isEqualTo(1);
+  }
+
+  @Test
+  public void testFlowControl() throws Exception {
+    CdmrServer.CdmRemoteImpl service = new CdmrServer.CdmRemoteImpl(cache, readExecutor, 500);
+    ResponseObserver observer = new ResponseObserver(false, false);
+    service.getData(DataRequest.newBuilder().setLocation(location).setVariableSpec("T").build(), observer);
+
+    // 31 time steps in 7 chunks, one sent each time the call is ready
+    Thread.sleep(100);
+    assertThat(observer.responses).isEmpty();
+    for (int i = 1; i <= 7; i++) {
+      observer.setReady();
+      waitForResponses(observer, i);
+    }
+    assertThat(observer.done.await(10, TimeUnit.SECONDS)).isTrue();
+    checkData("T", observer.responses);
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    CdmrServer.CdmRemoteImpl service = new CdmrServer.CdmRemoteImpl(cache, readExecutor, 500);
+    ResponseObserver observer = new ResponseObserver(false, false);
+    service.getData(DataRequest.newBuilder().setLocation(location).setVariableSpec("T").build(), observer);
+    observer.setReady();
+    waitForResponses(observer, 1);
+
+    observer.onCancel.run();
+    observer.setReady();
+    Thread.sleep(100);
+    assertThat(observer.responses).hasSize(1);
+    assertThat(observer.done.getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testCancelBeforeFirstRead() throws Exception {
+    CdmrServer.CdmRemoteImpl service = new CdmrServer.CdmRemoteImpl(cache, readExecutor, 500);
+    ResponseObserver observer = new ResponseObserver(true, true);
+    observer.cancelOnRegister = true;
+    service.getData(DataRequest.newBuilder().setLocation(location).setVariableSpec("T").build(), observer);
+    Thread.sleep(100);
+    assertThat(observer.responses).isEmpty();
+    assertThat(observer.done.getCount()).isEqualTo(1);
+    // the file was released
+    assertThat(cache.showCache()).hasSize(1);
+    assertThat(cache.showCache().get(0)).startsWith("false");
+  }
+
+  @Test
+  public void testError() throws Exception {
+    CdmrServer.CdmRemoteImpl service = new CdmrServer.CdmRemoteImpl(cache, readExecutor, 500);
+    ResponseObserver observer = new ResponseObserver(true, true);
+    service.getData(DataRequest.newBuilder().setLocation(location).setVariableSpec("T(40,:,:)").build(), observer);
+    assertThat(observer.done.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(observer.responses).hasSize(1);
+    assertThat(observer.responses.get(0).hasError()).isTrue();
+  }
+}
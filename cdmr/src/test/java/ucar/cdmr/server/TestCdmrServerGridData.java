@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.cdmr.server;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.Iterables;
+import io.grpc.stub.ServerCallStreamObserver;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Test;
+import ucar.array.Array;
+import ucar.cdmr.CdmRemoteProto.Compress;
+import ucar.cdmr.CdmRemoteProto.GridDataRequest;
+import ucar.cdmr.CdmRemoteProto.GridDataResponse;
+import ucar.cdmr.CdmrConverter;
+import ucar.cdmr.CdmrGridConverter;
+import ucar.ma2.Section;
+import ucar.nc2.ft2.coverage.SubsetParams;
+import ucar.nc2.grid.Grid;
+import ucar.nc2.grid.GridAxis1D;
+import ucar.nc2.grid.GridAxis1DTime;
+import ucar.nc2.grid.GridDataset;
+import ucar.nc2.grid.GridDatasetFactory;
+import ucar.nc2.grid.GridReferencedArray;
+import ucar.nc2.internal.cache.FileCache;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.unidata.geoloc.LatLonPoint;
+import ucar.unidata.geoloc.LatLonRect;
+import ucar.unidata.util.test.TestDir;
+
+/** Test {@link CdmrServer} grid data requests, without a network connection. */
+public class TestCdmrServerGridData {
+  private static final String location =
+      TestDir.cdmLocalFromTestDataDir + "ncml/fmrc/GFS_Puerto_Rico_191km_20090730_0000.nc";
+  private static final String gridName = "Temperature_isobaric";
+
+  /** Records what is sent, and lets the test control when the call is ready. */
+  private static class ResponseObserver extends ServerCallStreamObserver<GridDataResponse> {
+    final List<GridDataResponse> responses = new ArrayList<>();
+    boolean completed;
+    boolean ready = true;
+    boolean readyAfterSend = true;
+    Runnable onReady;
+
+    void setReady() {
+      ready = true;
+      onReady.run();
+    }
+
+    @Override
+    public void onNext(GridDataResponse value) {
+      assertThat(ready).isTrue();
+      responses.add(value);
+      ready = readyAfterSend;
+    }
+
+    @Override
+    public void onError(Throwable t) {}
+
+    @Override
+    public void onCompleted() {
+      completed = true;
+    }
+
+    @Override
+    public boolean isReady() {
+      return ready;
+    }
+
+    @Override
+    public void setOnReadyHandler(Runnable onReadyHandler) {
+      this.onReady = onReadyHandler;
+    }
+
+    @Override
+    public void setOnCancelHandler(Runnable onCancelHandler) {}
+
+    @Override
+    public boolean isCancelled() {
+      return false;
+    }
+
+    @Override
+    public void setCompression(String compression) {}
+
+    @Override
+    public void disableAutoInboundFlowControl() {}
+
+    @Override
+    public void request(int count) {}
+
+    @Override
+    public void setMessageCompression(boolean enable) {}
+  }
+
+  private static SubsetParams makeSubset(GridDataset gds) {
+    GridAxis1DTime time = gds.findGrid(gridName).getCoordinateSystem().getTimeAxis();
+    SubsetParams params = new SubsetParams();
+    params.setLatLonBoundingBox(
+        new LatLonRect.Builder(LatLonPoint.create(15, -70), LatLonPoint.create(20, -60)).build());
+    params.setTimeRange(CalendarDateRange.of(time.getCalendarDate(1), time.getCalendarDate(20)));
+    params.set(SubsetParams.timeStride, 2);
+    params.setVertCoord(500.0);
+    return params;
+  }
+
+  @Test
+  public void testSubsetParams() throws Exception {
+    try (GridDataset gds = GridDatasetFactory.openGridDataset(location, new Formatter()).get()) {
+      SubsetParams params = makeSubset(gds);
+      params.setHorizStride(3);
+      GridDataRequest.Builder request = GridDataRequest.newBuilder().setLocation(location);
+      SubsetParams decoded =
+          CdmrGridConverter.decodeSubsetParams(CdmrGridConverter.encodeSubsetParams(params, request).build());
+      assertThat(decoded.getLatLonBoundingBox().nearlyEquals(params.getLatLonBoundingBox())).isTrue();
+      assertThat(decoded.getTimeRange()).isEqualTo(params.getTimeRange());
+      assertThat(decoded.getInteger(SubsetParams.timeStride)).isEqualTo(2);
+      assertThat(decoded.getInteger(SubsetParams.horizStride)).isEqualTo(3);
+      assertThat(decoded.getVertCoord()).isEqualTo(500.0);
+      assertThat(decoded.getEnsCoord()).isNull();
+      assertThat(decoded.getTime()).isNull();
+    }
+  }
+
+  @Test
+  public void testGridData() throws Exception {
+    try (GridDataset gds = GridDatasetFactory.openGridDataset(location, new Formatter()).get()) {
+      Grid grid = gds.findGrid(gridName);
+      SubsetParams params = makeSubset(gds);
+      GridReferencedArray want = grid.readData(params);
+
+      // small messages, so the grid is sent in several pieces
+      CdmrServer.CdmRemoteImpl service = new CdmrServer.CdmRemoteImpl(null, Runnable::run, 100);
+      ResponseObserver observer = new ResponseObserver();
+      GridDataRequest.Builder request = GridDataRequest.newBuilder().setLocation(location).addGridName(gridName)
+          .setPacked(true).setCompression(Compress.DEFLATE);
+      service.getGridData(CdmrGridConverter.encodeSubsetParams(params, request).build(), observer);
+      assertThat(observer.completed).isTrue();
+      assertThat(observer.responses.size()).isGreaterThan(1);
+
+      GridDataResponse first = observer.responses.get(0);
+      assertThat(first.hasError()).isFalse();
+      assertThat(first.getShapeList()).containsExactly(10, 1, 6, 9).inOrder();
+      assertThat(first.getAxesCount()).isEqualTo(4);
+      for (int i = 0; i < first.getAxesCount(); i++) {
+        GridAxis1D axis = CdmrGridConverter.decodeGridAxis(first.getAxes(i));
+        GridAxis1D wantAxis = (GridAxis1D) Iterables.get(want.csSubset().getCoordAxes(), i);
+        assertThat(axis.getName()).isEqualTo(wantAxis.getName());
+        assertThat(axis.getAxisType()).isEqualTo(wantAxis.getAxisType());
+        assertThat(axis.getRange()).isEqualTo(wantAxis.getRange());
+        assertThat(axis.getNcoords()).isEqualTo(wantAxis.getNcoords());
+        assertThat(axis.getCoordMidpoint(0)).isEqualTo(wantAxis.getCoordMidpoint(0));
+      }
+
+      // the pieces are in order, and together are the subsetted grid
+      long count = 0;
+      Iterator<?> wantIter = want.data().iterator();
+      for (GridDataResponse response : observer.responses) {
+        assertThat(response.getIndex()).isEqualTo(0);
+        Section section = CdmrConverter.decodeSection(response.getSection());
+        Array<?> data = CdmrConverter.decodeData(response.getData());
+        assertThat(data.length()).isEqualTo(section.computeSize());
+        for (Object val : data) {
+          assertThat(val).isEqualTo(wantIter.next());
+        }
+        count += data.length();
+      }
+      assertThat(count).isEqualTo(want.data().length());
+    }
+  }
+
+  @Test
+  public void testFlowControl() throws Exception {
+    try (GridDataset gds = GridDatasetFactory.openGridDataset(location, new Formatter()).get()) {
+      SubsetParams params = makeSubset(gds);
+      GridReferencedArray want = gds.findGrid(gridName).readData(params);
+
+      CdmrServer.CdmRemoteImpl service = new CdmrServer.CdmRemoteImpl(null, Runnable::run, 100);
+      ResponseObserver observer = new ResponseObserver();
+      observer.ready = false;
+      observer.readyAfterSend = false;
+      GridDataRequest.Builder request = GridDataRequest.newBuilder().setLocation(location).addGridName(gridName);
+      service.getGridData(CdmrGridConverter.encodeSubsetParams(params, request).build(), observer);
+      assertThat(observer.responses).isEmpty();
+
+      // one piece is sent each time the call is ready
+      long count = 0;
+      while (!observer.completed) {
+        int before = observer.responses.size();
+        observer.setReady();
+        assertThat(observer.responses).hasSize(before + 1);
+        count += CdmrConverter.decodeData(observer.responses.get(before).getData()).length();
+      }
+      assertThat(observer.responses.size()).isGreaterThan(1);
+      assertThat(count).isEqualTo(want.data().length());
+    }
+  }
+
+  @Test
+  public void testDatasetCache() {
+    FileCache cache = new FileCache("TestCdmrServerGridData", 5, 10, -1, -1);
+    try {
+      CdmrServer.CdmRemoteImpl service = new CdmrServer.CdmRemoteImpl(cache, Runnable::run, 1000 * 1000);
+      for (int i = 0; i < 3; i++) {
+        ResponseObserver observer = new ResponseObserver();
+        service.getGridData(GridDataRequest.newBuilder().setLocation(location).addGridName(gridName).build(),
+            observer);
+        assertThat(observer.completed).isTrue();
+        assertThat(observer.responses.get(0).hasError()).isFalse();
+      }
+      // the dataset was released after each request, and reused
+      assertThat(cache.showCache()).hasSize(1);
+      assertThat(cache.showCache().get(0)).startsWith("false");
+    } finally {
+      cache.clearCache(true);
+    }
+  }
+
+  @Test
+  public void testGridError() {
+    CdmrServer.CdmRemoteImpl service = new CdmrServer.CdmRemoteImpl(null, Runnable::run, 1000 * 1000);
+    ResponseObserver observer = new ResponseObserver();
+    service.getGridData(
+        GridDataRequest.newBuilder().setLocation(location).addGridName(gridName).addGridName("bad").build(), observer);
+    assertThat(observer.completed).isTrue();
+    GridDataResponse last = observer.responses.get(observer.responses.size() - 1);
+    assertThat(last.hasError()).isTrue();
+    assertThat(last.getIndex()).isEqualTo(1);
+    assertThat(last.getGridName()).isEqualTo("bad");
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib;
+
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * Unpacks the bit packed unsigned integers of a GRIB data section, most significant bit first.
+ * Same results as ucar.nc2.iosp.BitReader, but the section is read into memory once, and a run of values is unpacked
+ * in one loop, instead of a bits2UInt() call per value.
+ * Each value is extracted from the 8 bytes that hold it, read as one big endian long, so no bit buffer state is
+ * carried from one value to the next. Byte aligned 8, 16, 24 and 32 bit values have their own loops.
+ * Values may be 0 to 32 bits wide. Bytes past the end of the section read as zero.
+ */
+public class GribBitUnpacker {
+  private final byte[] buf;
+  private final ByteBuffer bb; // big endian view of buf
+  private long bitPos; // next bit to read
+
+  public GribBitUnpacker(byte[] buf) {
+    this.buf = buf;
+    this.bb = ByteBuffer.wrap(buf);
+  }
+
+  /**
+   * Read the packed bytes into memory.
+   *
+   * @param raf the RandomAccessFile
+   * @param startPos points to start of data in data section, in bytes
+   * @param nbytes number of bytes of packed data; clipped to the end of the file
+   * @throws IOException on read error
+   */
+  public static GribBitUnpacker read(RandomAccessFile raf, long startPos, int nbytes) throws IOException {
+    long avail = raf.length() - startPos;
+    byte[] buf = new byte[(int) Math.max(0, Math.min(nbytes, avail))];
+    raf.seek(startPos);
+    raf.readFully(buf);
+    return new GribBitUnpacker(buf);
+  }
+
+  /** Go to the start of the next byte, unless already at the start of a byte. */
+  public void incrByte() {
+    bitPos = (bitPos + 7) & ~7L;
+  }
+
+  /** The current position, in bits from the start. */
+  public long getBitPos() {
+    return bitPos;
+  }
+
+  /**
+   * Read the next nb bits as an unsigned integer.
+   *
+   * @param nb the number of bits, 0 to 32
+   * @return the value, truncated to an int when nb == 32
+   */
+  public int bits2UInt(int nb) {
+    checkWidth(nb);
+    if (nb == 0)
+      return 0;
+    int result = (int) extract(bitPos, nb);
+    bitPos += nb;
+    return result;
+  }
+
+  /**
+   * Unpack the next n values of nb bits each.
+   *
+   * @param nb the number of bits of each value, 0 to 32
+   * @param n number of values
+   * @param dest put them here, starting at 0
+   */
+  public void unpack(int nb, int n, int[] dest) {
+    checkWidth(nb);
+    if (nb == 0) {
+      Arrays.fill(dest, 0, n, 0);
+      return;
+    }
+    long start = bitPos;
+    int nfast = countInBounds(start, nb, n);
+    int shift = 64 - nb;
+    for (int j = 0; j < nfast; j++) {
+      long bit = start + (long) j * nb;
+      dest[j] = (int) ((bb.getLong((int) (bit >>> 3)) << (bit & 7)) >>> shift);
+    }
+    for (int j = nfast; j < n; j++)
+      dest[j] = (int) extract(start + (long) j * nb, nb);
+    bitPos = start + (long) n * nb;
+  }
+
+  /**
+   * Unpack the next n values of nb bits each, add offset to each, and store them as floats.
+   * The sum is an int, except that 32 bit values are unsigned, so their sum is a long.
+   *
+   * @param nb the number of bits of each value, 0 to 32; if 0, all the values are offset
+   * @param n number of values
+   * @param offset add to each value, eg the group reference value of complex packing
+   * @param dest put them here
+   * @param destPos starting at this index
+   */
+  public void unpack(int nb, int n, int offset, float[] dest, int destPos) {
+    checkWidth(nb);
+    if (destPos + n > dest.length)
+      throw new ArrayIndexOutOfBoundsException(destPos + n);
+    if (nb == 0) {
+      Arrays.fill(dest, destPos, destPos + n, (float) offset);
+      return;
+    }
+
+    long start = bitPos;
+    bitPos = start + (long) n * nb;
+    if ((start & 7) == 0 && (nb & 7) == 0 && (bitPos >>> 3) <= buf.length) {
+      unpackAligned(nb / 8, n, offset, dest, destPos, (int) (start >>> 3));
+      return;
+    }
+
+    int nfast = countInBounds(start, nb, n);
+    int shift = 64 - nb;
+    if (nb < 32) {
+      for (int j = 0; j < nfast; j++) {
+        long bit = start + (long) j * nb;
+        int value = (int) ((bb.getLong((int) (bit >>> 3)) << (bit & 7)) >>> shift);
+        dest[destPos + j] = value + offset;
+      }
+    } else {
+      for (int j = 0; j < nfast; j++) {
+        long bit = start + (long) j * nb;
+        long value = (bb.getLong((int) (bit >>> 3)) << (bit & 7)) >>> shift;
+        dest[destPos + j] = value + offset;
+      }
+    }
+    for (int j = nfast; j < n; j++) {
+      long value = extract(start + (long) j * nb, nb);
+      dest[destPos + j] = (nb < 32) ? (int) value + offset : value + offset;
+    }
+  }
+
+  // whole byte values starting on a byte boundary, all inside buf
+  private void unpackAligned(int nbytes, int n, int offset, float[] dest, int destPos, int p) {
+    switch (nbytes) {
+      case 1:
+        for (int j = 0; j < n; j++)
+          dest[destPos + j] = (buf[p + j] & 0xff) + offset;
+        break;
+      case 2:
+        for (int j = 0; j < n; j++)
+          dest[destPos + j] = (bb.getShort(p + 2 * j) & 0xffff) + offset;
+        break;
+      case 3:
+        for (int j = 0, q = p; j < n; j++, q += 3) {
+          int value = ((buf[q] & 0xff) << 16) | ((buf[q + 1] & 0xff) << 8) | (buf[q + 2] & 0xff);
+          dest[destPos + j] = value + offset;
+        }
+        break;
+      default:
+        for (int j = 0; j < n; j++)
+          dest[destPos + j] = (bb.getInt(p + 4 * j) & 0xffffffffL) + offset;
+    }
+  }
+
+  // the number of values, from the first, whose 8 byte word lies inside buf
+  private int countInBounds(long start, int nb, int n) {
+    long lastWordBit = 8L * (buf.length - 8); // a value can be read with getLong() if it starts before lastWordBit + 8
+    if (start + (long) (n - 1) * nb < lastWordBit + 8)
+      return n; // all of them, the usual case
+    if (lastWordBit < 0 || start >= lastWordBit + 8)
+      return 0;
+    long count = (lastWordBit + 7 - start) / nb + 1;
+    return (int) Math.min(n, count);
+  }
+
+  // the nb bits starting at bit, reading zeros past the end of buf
+  private long extract(long bit, int nb) {
+    int p = (int) (bit >>> 3);
+    long word = 0;
+    for (int i = 0; i < 8; i++) {
+      word <<= 8;
+      if (p + i < buf.length)
+        word |= buf[p + i] & 0xff;
+    }
+    return (word << (bit & 7)) >>> (64 - nb);
+  }
+
+  private static void checkWidth(int nb) {
+    Preconditions.checkArgument(nb >= 0 && nb <= 32, "bit width %s must be 0 to 32", nb);
+  }
+}
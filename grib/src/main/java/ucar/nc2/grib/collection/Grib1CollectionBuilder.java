@@ -8,7 +8,6 @@ package ucar.nc2.grib.collection;
 import javax.annotation.Nonnull;
 import thredds.featurecollection.FeatureCollectionConfig;
 import thredds.featurecollection.FeatureCollectionConfig.GribConfig;
-import thredds.inventory.CollectionUpdateType;
 import thredds.inventory.MCollection;
 import thredds.inventory.MFile;
 import ucar.nc2.grib.GribIndex;
@@ -27,7 +26,6 @@ import ucar.nc2.grib.grib2.Grib2Utils;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.nc2.time.CalendarPeriod;
-import thredds.inventory.CloseableIterator;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
@@ -68,74 +66,54 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
     logger.debug(" dcm={}", dcm);
 
     // place each record into its group
-    try (CloseableIterator<MFile> iter = dcm.getFileIterator()) { // not sorted
-      if (iter == null)
-        return new ArrayList<>(); // empty
-
-      while (iter.hasNext()) {
-        MFile mfile = iter.next();
-        Grib1Index index;
-        try {
-          if (Grib.debugGbxIndexOnly) {
-            index = (Grib1Index) GribIndex.open(true, mfile);
-            if (index == null)
-              continue;
-          } else {
-            // here is where gbx9 files get recreated
-            index =
-                (Grib1Index) GribIndex.readOrCreateIndexFromSingleFile(true, mfile, CollectionUpdateType.test, logger);
-          }
-          allFiles.add(mfile); // add on success
-
-        } catch (IOException ioe) {
-          logger.error("Grib1CollectionBuilder " + name + " : reading/Creating gbx9 index for file " + mfile.getPath()
-              + " failed", ioe);
-          continue;
+    long start = System.currentTimeMillis();
+    List<MFile> mfiles = new ArrayList<>();
+    List<GribIndex> indexes = readOrCreateIndexes(mfiles);
+    for (int i = 0; i < mfiles.size(); i++) {
+      Grib1Index index = (Grib1Index) indexes.get(i);
+      if (index == null)
+        continue;
+      allFiles.add(mfiles.get(i)); // add on success
+
+      for (Grib1Record gr : index.getRecords()) { // we are using entire Grib1Record - likely this is the memory
+                                                  // bottleneck for how big a collection can handle
+        if (this.cust == null) {
+          cust = Grib1Customizer.factory(gr, null);
+          cust.setTimeUnitConverter(gribConfig.getTimeUnitConverter());
         }
-        if (index == null) {
-          logger.error("Grib1CollectionBuilder " + name + " : reading/Creating gbx9 index for file " + mfile.getPath()
-              + " failed");
-          continue;
+        if (filterIntervals(gr, gribConfig.intvFilter)) {
+          statsAll.filter++;
+          continue; // skip
         }
 
-        for (Grib1Record gr : index.getRecords()) { // we are using entire Grib1Record - likely this is the memory
-                                                    // bottleneck for how big a collection can handle
-          if (this.cust == null) {
-            cust = Grib1Customizer.factory(gr, null);
-            cust.setTimeUnitConverter(gribConfig.getTimeUnitConverter());
-          }
-          if (filterIntervals(gr, gribConfig.intvFilter)) {
-            statsAll.filter++;
-            continue; // skip
-          }
-
-          gr.setFile(fileno); // each record tracks which file it belongs to
-          Grib1Gds gds = gr.getGDS(); // use GDS to group records
-          int hashCode = gribConfig.convertGdsHash(gds.hashCode()); // allow external config to muck with gdsHash. Why?
-                                                                    // because of error in encoding and we need exact
-                                                                    // hash matching
-          if (0 == hashCode)
-            continue; // skip this group
-          // GdsHashObject gdsHashObject = new GdsHashObject(gr.getGDS(), hashOverride);
-
-          CalendarDate runtimeDate = gr.getReferenceDate();
-          long runtime = singleRuntime ? runtimeDate.getMillis() : 0; // seperate Groups for each runtime, if
-                                                                      // singleRuntime is true
-          GroupAndRuntime gar = new GroupAndRuntime(hashCode, runtime);
-          Grib1CollectionWriter.Group g = gdsMap.get(gar);
-          if (g == null) {
-            g = new Grib1CollectionWriter.Group(gr.getGDSsection(), hashCode, runtimeDate);
-            gdsMap.put(gar, g);
-          }
-          g.records.add(gr);
-          g.runtimes.add(runtimeDate.getMillis());
+        gr.setFile(fileno); // each record tracks which file it belongs to
+        Grib1Gds gds = gr.getGDS(); // use GDS to group records
+        int hashCode = gribConfig.convertGdsHash(gds.hashCode()); // allow external config to muck with gdsHash. Why?
+                                                                  // because of error in encoding and we need exact
+                                                                  // hash matching
+        if (0 == hashCode)
+          continue; // skip this group
+        // GdsHashObject gdsHashObject = new GdsHashObject(gr.getGDS(), hashOverride);
+
+        CalendarDate runtimeDate = gr.getReferenceDate();
+        long runtime = singleRuntime ? runtimeDate.getMillis() : 0; // seperate Groups for each runtime, if
+                                                                    // singleRuntime is true
+        GroupAndRuntime gar = new GroupAndRuntime(hashCode, runtime);
+        Grib1CollectionWriter.Group g = gdsMap.get(gar);
+        if (g == null) {
+          g = new Grib1CollectionWriter.Group(gr.getGDSsection(), hashCode, runtimeDate);
+          gdsMap.put(gar, g);
         }
-        fileno++;
-        statsAll.recordsTotal += index.getRecords().size();
+        g.records.add(gr);
+        g.runtimes.add(runtimeDate.getMillis());
       }
+      fileno++;
+      statsAll.recordsTotal += index.getRecords().size();
     }
+    msecsIndexFiles = System.currentTimeMillis() - start;
 
     // rectilyze each group independently
+    start = System.currentTimeMillis();
     List<Grib1CollectionWriter.Group> groups = new ArrayList<>(gdsMap.values());
     for (Grib1CollectionWriter.Group g : groups) {
       GribRecordStats stats = new GribRecordStats(); // debugging
@@ -146,6 +124,7 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
 
       statsAll.add(stats);
     }
+    msecsRectilyze = System.currentTimeMillis() - start;
 
     // debugging and validation
     if (logger.isDebugEnabled())
@@ -29,16 +29,22 @@ import ucar.nc2.grib.coord.TimeCoordIntvDateValue;
 import ucar.nc2.grib.grib1.Grib1ParamTime;
 import ucar.nc2.grib.grib1.Grib1Parameter;
 import ucar.nc2.grib.grib1.Grib1Record;
+import ucar.nc2.grib.grib1.Grib1SectionIndicator;
 import ucar.nc2.grib.grib1.Grib1SectionProductDefinition;
 import ucar.nc2.grib.grib1.tables.Grib1Customizer;
 import ucar.nc2.grib.grib2.Grib2Record;
 import ucar.nc2.grib.grib2.Grib2RecordScanner;
+import ucar.nc2.grib.grib2.Grib2SectionIndicator;
 import ucar.nc2.grib.grib2.table.Grib2Tables;
 import ucar.unidata.io.RandomAccessFile;
 
 /**
  * Grib Data Reader.
  * Split from GribIosp, so can be used by GribCoverage.
+ * <p>
+ * When a request has enough records, the records of each file are read sequentially, and decoded in parallel on the
+ * decode Executor, see GribDataReader.setDecodeExecutor().
+ * Decoded records are looked up in, and added to, the GribDataCache, when it is turned on.
  *
  * @author caron
  * @since 4/6/11
@@ -55,7 +61,12 @@ public abstract class GribArrayReader {
       return new Grib2ArrayReader(gribCollection, vindex);
   }
 
-  protected abstract float[] readData(RandomAccessFile rafData, GribReaderRecord dr) throws IOException;
+  /** Decode the record, whose GRIB message starts at messageStart in rafData. */
+  protected abstract float[] readData(RandomAccessFile rafData, GribReaderRecord dr, long messageStart)
+      throws IOException;
+
+  /** Length of the GRIB message that starts at pos. */
+  protected abstract long getMessageLength(RandomAccessFile rafData, long pos) throws IOException;
 
   protected abstract void show(RandomAccessFile rafData, long dataPos) throws IOException;
 
@@ -242,7 +253,20 @@ public abstract class GribArrayReader {
    */
   private void read(DataReceiverIF dataReceiver) throws IOException {
     Collections.sort(records);
+    if (useParallel()) {
+      GribParallelReader.read(records, new GribParallelReader.FileOpener() {
+        public RandomAccessFile open(GribReaderRecord dr) throws IOException {
+          return gribCollection.getDataRaf(dr.record.fileno);
+        }
+
+        public boolean isSameFile(GribReaderRecord dr, GribReaderRecord previous) {
+          return dr.record.fileno == previous.record.fileno;
+        }
+      }, makeDecoder(), dataReceiver::addData);
+      return;
+    }
 
+    GribParallelReader.Decoder decoder = makeDecoder();
     int currFile = -1;
     RandomAccessFile rafData = null;
     try {
@@ -276,7 +300,7 @@ public abstract class GribArrayReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
+        float[] data = GribDataCache.readData(decoder, rafData, dr, dr.record.pos);
         GdsHorizCoordSys hcs = vindex.group.getGdsHorizCoordSys();
         dataReceiver.addData(data, dr.resultIndex, hcs.nx);
       }
@@ -287,6 +311,24 @@ public abstract class GribArrayReader {
     }
   }
 
+  // the debugging and validation paths stay serial
+  private boolean useParallel() {
+    return !Grib.debugIndexOnly && !Grib.debugGbxIndexOnly && validator == null && !show
+        && GribParallelReader.useParallel(records.size());
+  }
+
+  private GribParallelReader.Decoder makeDecoder() {
+    return new GribParallelReader.Decoder() {
+      public long getMessageLength(RandomAccessFile raf, long pos) throws IOException {
+        return GribArrayReader.this.getMessageLength(raf, pos);
+      }
+
+      public float[] readData(RandomAccessFile raf, GribReaderRecord dr, long messageStart) throws IOException {
+        return GribArrayReader.this.readData(raf, dr, messageStart);
+      }
+    };
+  }
+
   private void show(SubsetParams validation) {
     if (validation == null)
       return;
@@ -295,7 +337,22 @@ public abstract class GribArrayReader {
 
   private void readPartitioned(DataReceiverIF dataReceiver) throws IOException {
     Collections.sort(records);
+    if (useParallel()) {
+      GribParallelReader.read(records, new GribParallelReader.FileOpener() {
+        public RandomAccessFile open(GribReaderRecord dr) throws IOException {
+          PartitionCollectionImmutable.DataRecord drp = (PartitionCollectionImmutable.DataRecord) dr;
+          return drp.usePartition.getRaf(drp.partno, dr.record.fileno);
+        }
+
+        public boolean isSameFile(GribReaderRecord dr, GribReaderRecord previous) {
+          return ((PartitionCollectionImmutable.DataRecord) dr)
+              .usesSameFile((PartitionCollectionImmutable.DataRecord) previous);
+        }
+      }, makeDecoder(), dataReceiver::addData);
+      return;
+    }
 
+    GribParallelReader.Decoder decoder = makeDecoder();
     PartitionCollectionImmutable.DataRecord lastRecord = null;
     RandomAccessFile rafData = null;
     try {
@@ -328,7 +385,7 @@ public abstract class GribArrayReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
+        float[] data = GribDataCache.readData(decoder, rafData, dr, dr.record.pos);
         GdsHorizCoordSys hcs = dr.hcs;
         dataReceiver.addData(data, dr.resultIndex, hcs.nx);
       }
@@ -347,6 +404,7 @@ public abstract class GribArrayReader {
     Array<?> getArray();
   }
 
+  /** Each record has its own part of the result, so addData() may be called from several threads at once. */
   public static class DataReceiver implements DataReceiverIF {
     private final RangeIterator yRange;
     private final RangeIterator xRange;
@@ -407,14 +465,20 @@ public abstract class GribArrayReader {
     }
 
     @Override
-    protected float[] readData(RandomAccessFile rafData, GribReaderRecord dr) throws IOException {
+    protected float[] readData(RandomAccessFile rafData, GribReaderRecord dr, long messageStart) throws IOException {
       GdsHorizCoordSys hcs = dr.hcs;
-      long dataPos = dr.record.pos + dr.record.drsOffset;
-      long bmsPos = (dr.record.bmsOffset > 0) ? dr.record.pos + dr.record.bmsOffset : 0;
+      long dataPos = messageStart + dr.record.drsOffset;
+      long bmsPos = (dr.record.bmsOffset > 0) ? messageStart + dr.record.bmsOffset : 0;
       return Grib2Record.readData(rafData, dataPos, bmsPos, hcs.gdsNumberPoints, hcs.getScanMode(), hcs.nxRaw,
           hcs.nyRaw, hcs.nptsInLine);
     }
 
+    @Override
+    protected long getMessageLength(RandomAccessFile rafData, long pos) throws IOException {
+      rafData.seek(pos);
+      return new Grib2SectionIndicator(rafData).getMessageLength();
+    }
+
     @Override
     protected void show(RandomAccessFile rafData, long pos) throws IOException {
       Grib2Record gr = Grib2RecordScanner.findRecordByDrspos(rafData, pos);
@@ -443,8 +507,14 @@ public abstract class GribArrayReader {
     }
 
     @Override
-    protected float[] readData(RandomAccessFile rafData, GribReaderRecord dr) throws IOException {
-      return Grib1Record.readData(rafData, dr.record.pos);
+    protected float[] readData(RandomAccessFile rafData, GribReaderRecord dr, long messageStart) throws IOException {
+      return Grib1Record.readData(rafData, messageStart);
+    }
+
+    @Override
+    protected long getMessageLength(RandomAccessFile rafData, long pos) throws IOException {
+      rafData.seek(pos);
+      return new Grib1SectionIndicator(rafData).getMessageLength();
     }
 
     @Override
@@ -33,11 +33,14 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Formatter;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * Utilities for creating GRIB CDM index (ncx) files, both collections and partitions
@@ -100,6 +103,17 @@ public class GribCdmIndex implements IndexReader {
       gribCollectionCache.clearCache(true);
   }
 
+  /**
+   * Set the Executor used to build indexes in parallel: the gbx9 of each file in a collection, and the children of a
+   * partition. Overrides the default pool sized by the "unidata.grib.index.threads" system property.
+   *
+   * @param exec run the indexing on this Executor, or null to index on the calling thread.
+   * @param nthreads number of items worked on at once, including the calling thread, must be > 0.
+   */
+  public static void setIndexExecutor(@Nullable Executor exec, int nthreads) {
+    GribIndexExecutor.setIndexExecutor(exec, nthreads);
+  }
+
   /////////////////////////////////////////////////////////////////////////////////////////////////
 
   public static File getTopIndexFileFromConfig(FeatureCollectionConfig config) {
@@ -397,16 +411,25 @@ public class GribCdmIndex implements IndexReader {
     long start = System.currentTimeMillis();
     Formatter errlog = new Formatter();
 
-    for (MCollection part : tp.makePartitions(updateType)) {
+    // the component grib collections are independent, so update them in parallel
+    List<MCollection> parts = toList(tp.makePartitions(updateType));
+    Map<MCollection, Formatter> errlogs = makeErrlogs(parts);
+    List<MCollection> failed = GribIndexExecutor.map(parts, part -> {
       try {
         updateGribCollection(isGrib1, part, updateType, FeatureCollectionConfig.PartitionType.timePeriod, logger,
-            errlog);
+            errlogs.get(part));
+        return null;
 
       } catch (Throwable t) {
         logger.warn("Error making partition " + part.getRoot(), t);
-        tp.removePartition(part); // keep on truckin; can happen if directory is empty
+        return part;
       }
-    } // loop over component grib collections
+    });
+    for (MCollection part : failed) {
+      if (part != null)
+        tp.removePartition(part); // keep on truckin; can happen if directory is empty
+    }
+    appendErrlogs(errlog, parts, errlogs);
 
 
     try {
@@ -427,6 +450,26 @@ public class GribCdmIndex implements IndexReader {
     }
   }
 
+  private static List<MCollection> toList(Iterable<MCollection> partitions) {
+    List<MCollection> result = new ArrayList<>();
+    for (MCollection part : partitions)
+      result.add(part);
+    return result;
+  }
+
+  // the children are updated in parallel, so each gets its own errlog
+  private static Map<MCollection, Formatter> makeErrlogs(List<MCollection> parts) {
+    Map<MCollection, Formatter> result = new IdentityHashMap<>();
+    for (MCollection part : parts)
+      result.put(part, new Formatter());
+    return result;
+  }
+
+  private static void appendErrlogs(Formatter errlog, List<MCollection> parts, Map<MCollection, Formatter> errlogs) {
+    for (MCollection part : parts)
+      errlog.format("%s", errlogs.get(part));
+  }
+
   private static boolean isUpdateNeeded(String idxFilenameOrg, CollectionUpdateType updateType,
       GribCollectionType wantType, Logger logger) {
     if (updateType == CollectionUpdateType.never)
@@ -468,9 +511,9 @@ public class GribCdmIndex implements IndexReader {
 
     long start = System.currentTimeMillis();
 
-    // check the children partitions first
+    // check the children partitions first, in parallel. only the ones that have changed are rewritten
     if (updateType != CollectionUpdateType.testIndexOnly) { // skip children on testIndexOnly
-      for (MCollection part : dpart.makePartitions(updateType)) {
+      List<MCollection> failed = GribIndexExecutor.map(toList(dpart.makePartitions(updateType)), part -> {
         part.putAuxInfo(FeatureCollectionConfig.AUX_CONFIG, config);
         try {
           if (part instanceof DirectoryPartition) { // LOOK if child partition fails, the parent partition doesnt know
@@ -480,15 +523,21 @@ public class GribCdmIndex implements IndexReader {
             Path partPath = Paths.get(part.getRoot());
             updateLeafCollection(isGrib1, config, updateType, false, logger, partPath); // LOOK why not using part ??
           }
+          return null;
+
         } catch (IllegalStateException t) {
           logger.warn("Error making partition {} '{}'", part.getRoot(), t.getMessage());
-          dpart.removePartition(part); // keep on truckin; can happen if directory is empty
+          return part; // keep on truckin; can happen if directory is empty
 
         } catch (Throwable t) {
           logger.error("Error making partition " + part.getRoot(), t);
-          dpart.removePartition(part);
+          return part;
         }
-      } // loop over partitions
+      });
+      for (MCollection part : failed) {
+        if (part != null)
+          dpart.removePartition(part);
+      }
     }
 
     try {
@@ -570,29 +619,36 @@ public class GribCdmIndex implements IndexReader {
           (isGrib1 ? GribCollectionType.Partition1 : GribCollectionType.Partition2), logger))
         return false;
 
-      AtomicBoolean anyChange = new AtomicBoolean(false); // just need a mutable boolean we can declare final
-
-      // redo the children here
+      // redo the children here, in parallel. only the ones that have changed are rewritten
       if (updateType != CollectionUpdateType.testIndexOnly) { // skip children on testIndexOnly
+        List<MCollection> parts = new ArrayList<>();
         partition.iterateOverMFileCollection(mfile -> {
           MCollection part = new CollectionSingleFile(mfile, logger);
           part.putAuxInfo(FeatureCollectionConfig.AUX_CONFIG, config);
+          parts.add(part);
+        });
 
+        Map<MCollection, Formatter> errlogs = makeErrlogs(parts);
+        List<MCollection> failed = GribIndexExecutor.map(parts, part -> {
           try {
-            boolean changed = updateGribCollection(isGrib1, part, updateType,
-                FeatureCollectionConfig.PartitionType.file, logger, errlog);
-            if (changed)
-              anyChange.set(true);
+            updateGribCollection(isGrib1, part, updateType, FeatureCollectionConfig.PartitionType.file, logger,
+                errlogs.get(part));
+            return null;
 
           } catch (IllegalStateException t) {
             logger.warn("Error making partition {} '{}'", part.getRoot(), t.getMessage());
-            partition.removePartition(part); // keep on truckin; can happen if directory is empty
+            return part; // keep on truckin; can happen if directory is empty
 
           } catch (Throwable t) {
             logger.error("Error making partition " + part.getRoot(), t);
-            partition.removePartition(part);
+            return part;
           }
         });
+        for (MCollection part : failed) {
+          if (part != null)
+            partition.removePartition(part);
+        }
+        appendErrlogs(errlog, parts, errlogs);
       }
 
       // LOOK what if theres only one file?
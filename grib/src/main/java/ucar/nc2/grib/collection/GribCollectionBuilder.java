@@ -43,6 +43,10 @@ abstract class GribCollectionBuilder {
   protected final String name; // collection name
   protected final File directory; // top directory
 
+  // timing report, msecs
+  protected long msecsIndexFiles; // read or create the gbx9 of each file, and put the records into groups
+  protected long msecsRectilyze; // make the coordinates and variables of each group
+
   protected abstract List<? extends Group> makeGroups(List<MFile> allFiles, boolean singleRuntime, Formatter errlog)
       throws IOException;
 
@@ -110,6 +114,43 @@ abstract class GribCollectionBuilder {
     return false;
   }
 
+  /**
+   * Read or create the gbx9 index of each file in the collection. The files are indexed in parallel, see
+   * GribCdmIndex.setIndexExecutor().
+   *
+   * @param mfiles add the files of the collection to this list
+   * @return the index of each file, in the same order; null if it could not be read or created.
+   */
+  protected List<GribIndex> readOrCreateIndexes(List<MFile> mfiles) throws IOException {
+    try (CloseableIterator<MFile> iter = dcm.getFileIterator()) { // not sorted
+      if (iter == null)
+        return new ArrayList<>(); // empty
+      while (iter.hasNext())
+        mfiles.add(iter.next());
+    }
+
+    return GribIndexExecutor.map(mfiles, mfile -> {
+      try {
+        GribIndex index;
+        if (Grib.debugGbxIndexOnly) {
+          index = GribIndex.open(isGrib1, mfile);
+        } else {
+          // this is where gbx9 files get recreated
+          index = GribIndex.readOrCreateIndexFromSingleFile(isGrib1, mfile, CollectionUpdateType.test, logger);
+        }
+        if (index == null)
+          logger.error("{} {} : reading/Creating gbx9 index for file {} failed", getClass().getSimpleName(), name,
+              mfile.getPath());
+        return index;
+
+      } catch (IOException ioe) {
+        logger.error(getClass().getSimpleName() + " " + name + " : reading/Creating gbx9 index for file "
+            + mfile.getPath() + " failed", ioe);
+        return null;
+      }
+    });
+  }
+
   //////////////////////////////////////////////////////////////////////////////////////////////////////////
 
   // Throw exception if failure
@@ -171,8 +212,10 @@ abstract class GribCollectionBuilder {
 
     CoordinateRuntime masterRuntimes = new CoordinateRuntime(sortedList, null);
     MFile indexFileForRuntime = GribCollectionMutable.makeIndexMFile(this.name, directory);
+    long startWrite = System.currentTimeMillis();
     boolean ok =
         writeIndex(this.name, indexFileForRuntime.getPath(), masterRuntimes, groups, allFiles, calendarDateRangeAll);
+    long msecsWrite = System.currentTimeMillis() - startWrite;
 
     /*
      * if (this.type == GribCollectionImmutable.Type.MRC) {
@@ -181,10 +224,20 @@ abstract class GribCollectionBuilder {
      */
 
     long took = System.currentTimeMillis() - start;
-    logger.debug("That took {} msecs", took);
+    showTiming(errlog, allFiles.size(), msecsWrite, took);
     return ok;
   }
 
+  // the timing report for each phase of building the index
+  private void showTiming(Formatter errlog, int nfiles, long msecsWrite, long took) {
+    String report = String.format(
+        "GribCollectionBuilder %s: %d files; index files %d msecs, rectilyze %d msecs, write %d msecs, total %d msecs",
+        name, nfiles, msecsIndexFiles, msecsRectilyze, msecsWrite, took);
+    if (errlog != null)
+      errlog.format(" INFO %s%n", report);
+    logger.debug(report);
+  }
+
   // PartitionType = all; not currently used but leave it here in case it needs to be revived
   // creates seperate collection and index for each runtime.
   private boolean createAllRuntimeCollections(Formatter errlog) throws IOException {
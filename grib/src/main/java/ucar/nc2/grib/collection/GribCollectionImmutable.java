@@ -51,7 +51,7 @@ import java.util.*;
 /**
  * An Immutable GribCollection, corresponds to one index (ncx) file.
  * The index file has already been read; it is opened and the closed when a variable is first accessed to read in the
- * record array (sa).
+ * record array (records).
  * <p>
  * Could use the Proto equivalents, and eliminate GribCollectionMutable ?
  *
@@ -447,7 +447,7 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
     }
   }
 
-  @Immutable // except for sa
+  @Immutable // except for records
   public class VariableIndex {
     final GroupGC group; // belongs to this group
     final VariableIndex.Info info;
@@ -461,7 +461,7 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
     final int ndups, nrecords, nmissing;
 
     // read in on demand
-    private SparseArray<Record> sa; // for GC only; lazily read; same array shape as variable, minus x and y
+    private volatile RecordTable records; // for GC only; lazily read; same array shape as variable, minus x and y
 
     protected VariableIndex(GroupGC g, GribCollectionMutable.VariableIndex gcVar) {
       this.group = g;
@@ -477,66 +477,43 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
       this.nmissing = gcVar.nmissing;
     }
 
-    public synchronized void readRecords() throws IOException {
-      if (this.sa != null)
+    public void readRecords() throws IOException {
+      if (this.records != null)
         return;
 
-      if (recordsLen == 0)
-        return;
-      byte[] b = new byte[recordsLen];
-
-      try (RandomAccessFile indexRaf = RandomAccessFile.acquire(indexFilename)) {
-
-        indexRaf.seek(recordsPos);
-        indexRaf.readFully(b);
-
-        /*
-         * message SparseArray {
-         * repeated uint32 size = 2 [packed=true]; // multidim sizes = shape[]
-         * repeated uint32 track = 3 [packed=true]; // 1-based index into record list, 0 == missing
-         * repeated Record records = 4; // List<Record>
-         * uint32 ndups = 5; // duplicates found when creating
-         * }
-         */
-        GribCollectionProto.SparseArray proto = GribCollectionProto.SparseArray.parseFrom(b);
-
-        int nsizes = proto.getSizeCount();
-        int[] size = new int[nsizes];
-        for (int i = 0; i < nsizes; i++)
-          size[i] = proto.getSize(i);
-
-        int ntrack = proto.getTrackCount();
-        int[] track = new int[ntrack];
-        for (int i = 0; i < ntrack; i++)
-          track[i] = proto.getTrack(i);
-
-        int n = proto.getRecordsCount();
-        List<Record> records = new ArrayList<>(n);
-        for (int i = 0; i < n; i++) {
-          GribCollectionProto.Record pr = proto.getRecords(i);
-          records.add(new Record(pr.getFileno(), pr.getStartPos(), pr.getBmsOffset(), pr.getDrsOffset()));
-        }
-        int ndups = proto.getNdups();
-        this.sa = new SparseArray<>(size, track, records, ndups);
+      synchronized (this) {
+        if (this.records != null || recordsLen == 0)
+          return;
+        byte[] b = new byte[recordsLen];
 
-      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
-        logger.error(" file={} recordsLen={} recordPos={}", indexFilename, recordsLen, recordsPos);
-        throw e;
+        try (RandomAccessFile indexRaf = RandomAccessFile.acquire(indexFilename)) {
+          indexRaf.seek(recordsPos);
+          indexRaf.readFully(b);
+          // GribCollectionProto.SparseArray, read straight into the record columns
+          this.records = RecordTable.read(b, nrecords);
+
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          logger.error(" file={} recordsLen={} recordPos={}", indexFilename, recordsLen, recordsPos);
+          throw e;
+        }
       }
     }
 
-    synchronized Record getRecordAt(int sourceIndex) {
-      return sa.getContent(sourceIndex);
+    // readRecords() must have been called
+    @Nullable
+    Record getRecordAt(int sourceIndex) {
+      return records.getRecord(sourceIndex);
     }
 
-    synchronized Record getRecordAt(int[] sourceIndex) {
-      return sa.getContent(sourceIndex);
+    @Nullable
+    Record getRecordAt(int[] sourceIndex) {
+      return records.getRecord(sourceIndex);
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // coord based record finding. note only one record at a time
     @Nullable
-    synchronized Record getRecordAt(SubsetParams coords) {
+    Record getRecordAt(SubsetParams coords) {
       int[] want = new int[getRank()];
       int count = 0;
       int runIdx = -1;
@@ -613,7 +590,7 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
 
         want[count++] = idx;
       }
-      return sa.getContent(want);
+      return records.getRecord(want);
     }
 
     public List<Coordinate> getCoordinates() {
@@ -649,12 +626,22 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
       return coordIndex;
     }
 
+    /** Make a SparseArray of the records, for showing them. Null if readRecords() has not been called. */
+    @Nullable
     public SparseArray<Record> getSparseArray() {
-      return sa;
+      RecordTable table = records;
+      return table == null ? null : table.toSparseArray();
     }
 
     public int getNRecords() {
-      return sa == null ? -1 : sa.countNotMissing();
+      RecordTable table = records;
+      return table == null ? -1 : table.countNotMissing();
+    }
+
+    /** Estimate of the memory used, including the records if they have been read. */
+    long getMemoryEstimate() {
+      RecordTable table = records;
+      return 256 + (table == null ? 0 : table.getMemoryEstimate());
     }
 
     public int getTableVersion() {
@@ -908,6 +895,20 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
     return indexFile.lastModified();
   }
 
+  /** Estimate of the memory held by the index: its groups and variables, and the records that have been read. */
+  @Override
+  public long getMemoryEstimate() {
+    long size = 1024;
+    for (Dataset ds : datasets) {
+      for (GroupGC group : ds.getGroups()) {
+        size += 1024 + 256 * group.getCoordinates().size();
+        for (VariableIndex vindex : group.getVariables())
+          size += vindex.getMemoryEstimate();
+      }
+    }
+    return size;
+  }
+
   /** @deprecated do not use */
   @Deprecated
   @Override
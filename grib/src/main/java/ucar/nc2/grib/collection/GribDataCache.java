@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib.collection;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Formatter;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import ucar.nc2.util.Misc;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * A process wide cache of decoded GRIB fields, bounded by the total number of bytes, and shared by all
+ * GribDataReaders and GribArrayReaders, so by all datasets that use the same GRIB files.
+ * A field is keyed by the location of its data file, the start of its GRIB message, and the offset of its data
+ * representation section, so the records of a file are assumed not to change while they are in the cache;
+ * call invalidate() if a file is rewritten in place.
+ * <p>
+ * The fields may be kept on the heap, or off the heap in direct buffers, which then count against
+ * -XX:MaxDirectMemorySize rather than the heap, and are copied to a new float[] on each hit.
+ * <p>
+ * The cache is off by default; turn it on with setDataCache(), or with the "unidata.grib.dataCache.size" system
+ * property. The cache is not split into segments, so a single field may use up to the whole of maxBytes; a field
+ * larger than maxBytes is not kept.
+ */
+@ThreadSafe
+public final class GribDataCache {
+  // System property names for -D flags
+  private static final String CACHE_SIZE_PROPERTY = "unidata.grib.dataCache.size";
+  private static final String CACHE_OFFHEAP_PROPERTY = "unidata.grib.dataCache.offHeap";
+
+  private static GribDataCache dataCache;
+  private static boolean cacheInit;
+
+  /**
+   * Set the cache of decoded fields used by GribDataReader and GribArrayReader, overriding the system properties.
+   *
+   * @param maxBytes maximum number of bytes of decoded fields to keep; 0 turns the cache off. A field larger than
+   *        this is not kept.
+   * @param offHeap keep the fields in direct buffers, rather than on the heap.
+   */
+  public static synchronized void setDataCache(long maxBytes, boolean offHeap) {
+    Preconditions.checkArgument(maxBytes >= 0, "maxBytes must be >= 0");
+    if (dataCache != null)
+      dataCache.clear();
+    dataCache = (maxBytes > 0) ? new GribDataCache(maxBytes, offHeap) : null;
+    cacheInit = true;
+  }
+
+  /** The cache of decoded fields, or null if it is turned off. */
+  @Nullable
+  public static synchronized GribDataCache getDataCache() {
+    if (!cacheInit) {
+      long maxBytes = Misc.getLongProperty(CACHE_SIZE_PROPERTY, 0);
+      if (maxBytes > 0)
+        dataCache = new GribDataCache(maxBytes, Boolean.getBoolean(CACHE_OFFHEAP_PROPERTY));
+      cacheInit = true;
+    }
+    return dataCache;
+  }
+
+  /**
+   * Decode a record, or get it from the cache if it is turned on.
+   * The returned array may be shared with other readers, and must not be modified.
+   */
+  static float[] readData(GribParallelReader.Decoder decoder, RandomAccessFile raf, GribReaderRecord dr,
+      long messageStart) throws IOException {
+    GribDataCache cache = getDataCache();
+    if (cache == null)
+      return decoder.readData(raf, dr, messageStart);
+    String location = raf.getLocation();
+    float[] data = cache.get(location, dr.record);
+    if (data == null) {
+      data = decoder.readData(raf, dr, messageStart);
+      cache.put(location, dr.record, data);
+    }
+    return data;
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////////
+
+  private final long maxBytes;
+  private final boolean offHeap;
+  private final Cache<FieldKey, FloatBuffer> cache;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final AtomicLong weight = new AtomicLong();
+
+  private GribDataCache(long maxBytes, boolean offHeap) {
+    this.maxBytes = maxBytes;
+    this.offHeap = offHeap;
+    // one segment: Guava divides maximumWeight between the segments, and evicts a field that is bigger than its
+    // segment's share as soon as it is added
+    this.cache = CacheBuilder.newBuilder().concurrencyLevel(1).maximumWeight(maxBytes)
+        .weigher((FieldKey key, FloatBuffer value) -> weigh(value)).removalListener(this::onRemoval).build();
+  }
+
+  private static int weigh(FloatBuffer value) {
+    return (int) Math.min(Integer.MAX_VALUE, 4L * value.capacity());
+  }
+
+  private void onRemoval(RemovalNotification<FieldKey, FloatBuffer> removal) {
+    weight.addAndGet(-weigh(removal.getValue()));
+    if (removal.wasEvicted())
+      evictions.increment();
+  }
+
+  /** The decoded field of the record in the file at location, or null if it is not in the cache. */
+  @Nullable
+  float[] get(String location, GribCollectionImmutable.Record record) {
+    FloatBuffer field = cache.getIfPresent(new FieldKey(location, record));
+    if (field == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    if (field.hasArray())
+      return field.array();
+    float[] data = new float[field.capacity()];
+    field.duplicate().get(data);
+    return data;
+  }
+
+  /** Add the decoded field of the record in the file at location. The cache keeps data, if it is on the heap. */
+  void put(String location, GribCollectionImmutable.Record record, float[] data) {
+    FloatBuffer field;
+    if (offHeap) {
+      field = ByteBuffer.allocateDirect(4 * data.length).order(ByteOrder.nativeOrder()).asFloatBuffer();
+      field.put(data);
+      field.flip();
+    } else {
+      field = FloatBuffer.wrap(data);
+    }
+    weight.addAndGet(weigh(field));
+    cache.put(new FieldKey(location, record), field);
+  }
+
+  /** Discard the cached fields of the file at location, eg because it has been rewritten. */
+  public void invalidate(String location) {
+    cache.asMap().keySet().removeIf(key -> key.location.equals(location));
+  }
+
+  /** Discard all cached fields. Does not reset the statistics. */
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+  /** Are the fields kept in direct buffers, rather than on the heap? */
+  public boolean isOffHeap() {
+    return offHeap;
+  }
+
+  /** Maximum number of bytes of decoded fields held in the cache. */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** Number of bytes of decoded fields held in the cache. */
+  public long getWeight() {
+    return weight.get();
+  }
+
+  /** Approximate number of fields in the cache. */
+  public long getFieldCount() {
+    return cache.size();
+  }
+
+  /** Number of records read from the cache, rather than decoded. */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /** Number of records that had to be decoded. */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /** Number of fields discarded to stay under maxBytes. */
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /** Fraction of the records that were read from the cache, or 0 if none have been read. */
+  public double getHitRate() {
+    long h = getHits();
+    long total = h + getMisses();
+    return (total == 0) ? 0.0 : (double) h / total;
+  }
+
+  public void showStats(Formatter f) {
+    f.format("GribDataCache: fields=%d weight=%d maxBytes=%d offHeap=%s hits=%d misses=%d hitRate=%.3f evictions=%d%n",
+        getFieldCount(), getWeight(), maxBytes, offHeap, getHits(), getMisses(), getHitRate(), getEvictions());
+  }
+
+  private static final class FieldKey {
+    private final String location;
+    private final long pos;
+    private final int drsOffset;
+
+    FieldKey(String location, GribCollectionImmutable.Record record) {
+      this.location = location;
+      this.pos = record.pos;
+      this.drsOffset = record.drsOffset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      FieldKey that = (FieldKey) o;
+      return pos == that.pos && drsOffset == that.drsOffset && location.equals(that.location);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(location, pos, drsOffset);
+    }
+  }
+}
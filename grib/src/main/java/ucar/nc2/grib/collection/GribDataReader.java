@@ -17,19 +17,27 @@ import ucar.nc2.grib.coord.TimeCoordIntvDateValue;
 import ucar.nc2.grib.grib1.Grib1ParamTime;
 import ucar.nc2.grib.grib1.Grib1Parameter;
 import ucar.nc2.grib.grib1.Grib1Record;
+import ucar.nc2.grib.grib1.Grib1SectionIndicator;
 import ucar.nc2.grib.grib1.Grib1SectionProductDefinition;
 import ucar.nc2.grib.grib1.tables.Grib1Customizer;
 import ucar.nc2.grib.grib2.Grib2Record;
 import ucar.nc2.grib.grib2.Grib2RecordScanner;
+import ucar.nc2.grib.grib2.Grib2SectionIndicator;
 import ucar.nc2.grib.grib2.table.Grib2Tables;
 import ucar.unidata.io.RandomAccessFile;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 /**
  * Grib Data Reader.
  * Split from GribIosp, so can be used by GribCoverage.
+ * <p>
+ * When a request has enough records, the records of each file are read sequentially, and decoded in parallel on the
+ * decode Executor, see setDecodeExecutor().
+ * Decoded records are looked up in, and added to, the GribDataCache, when it is turned on.
  *
  * @author caron
  * @since 4/6/11
@@ -47,7 +55,29 @@ public abstract class GribDataReader {
       return new Grib2DataReader(gribCollection, vindex);
   }
 
-  protected abstract float[] readData(RandomAccessFile rafData, GribReaderRecord dr) throws IOException;
+  /**
+   * Set the Executor used to decode records in parallel, by GribDataReader and GribArrayReader, overriding the default
+   * pool sized by the "unidata.grib.decode.threads" system property.
+   *
+   * @param exec decode records on this Executor, or null to decode on the calling thread.
+   * @param nprefetch maximum number of GRIB messages read ahead of the decoders, must be > 0.
+   * @param minRecords requests with fewer records than this are decoded on the calling thread, must be > 0.
+   */
+  public static void setDecodeExecutor(@Nullable Executor exec, int nprefetch, int minRecords) {
+    GribParallelReader.setDecodeExecutor(exec, nprefetch, minRecords);
+  }
+
+  /** Go back to the default pool and minRecords set by the system properties, after setDecodeExecutor(). */
+  public static void resetDecodeExecutor() {
+    GribParallelReader.resetDecodeExecutor();
+  }
+
+  /** Decode the record, whose GRIB message starts at messageStart in rafData. */
+  protected abstract float[] readData(RandomAccessFile rafData, GribReaderRecord dr, long messageStart)
+      throws IOException;
+
+  /** Length of the GRIB message that starts at pos. */
+  protected abstract long getMessageLength(RandomAccessFile rafData, long pos) throws IOException;
 
   protected abstract void show(RandomAccessFile rafData, long dataPos) throws IOException;
 
@@ -234,7 +264,20 @@ public abstract class GribDataReader {
    */
   private void read(DataReceiverIF dataReceiver) throws IOException {
     Collections.sort(records);
+    if (useParallel()) {
+      GribParallelReader.read(records, new GribParallelReader.FileOpener() {
+        public RandomAccessFile open(GribReaderRecord dr) throws IOException {
+          return gribCollection.getDataRaf(dr.record.fileno);
+        }
 
+        public boolean isSameFile(GribReaderRecord dr, GribReaderRecord previous) {
+          return dr.record.fileno == previous.record.fileno;
+        }
+      }, makeDecoder(), dataReceiver::addData);
+      return;
+    }
+
+    GribParallelReader.Decoder decoder = makeDecoder();
     int currFile = -1;
     RandomAccessFile rafData = null;
     try {
@@ -268,7 +311,7 @@ public abstract class GribDataReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
+        float[] data = GribDataCache.readData(decoder, rafData, dr, dr.record.pos);
         GdsHorizCoordSys hcs = vindex.group.getGdsHorizCoordSys();
         dataReceiver.addData(data, dr.resultIndex, hcs.nx);
       }
@@ -279,6 +322,24 @@ public abstract class GribDataReader {
     }
   }
 
+  // the debugging and validation paths stay serial
+  private boolean useParallel() {
+    return !Grib.debugIndexOnly && !Grib.debugGbxIndexOnly && validator == null && !show
+        && GribParallelReader.useParallel(records.size());
+  }
+
+  private GribParallelReader.Decoder makeDecoder() {
+    return new GribParallelReader.Decoder() {
+      public long getMessageLength(RandomAccessFile raf, long pos) throws IOException {
+        return GribDataReader.this.getMessageLength(raf, pos);
+      }
+
+      public float[] readData(RandomAccessFile raf, GribReaderRecord dr, long messageStart) throws IOException {
+        return GribDataReader.this.readData(raf, dr, messageStart);
+      }
+    };
+  }
+
   private void show(SubsetParams validation) {
     if (validation == null)
       return;
@@ -287,7 +348,22 @@ public abstract class GribDataReader {
 
   private void readPartitioned(DataReceiverIF dataReceiver) throws IOException {
     Collections.sort(records);
+    if (useParallel()) {
+      GribParallelReader.read(records, new GribParallelReader.FileOpener() {
+        public RandomAccessFile open(GribReaderRecord dr) throws IOException {
+          PartitionCollectionImmutable.DataRecord drp = (PartitionCollectionImmutable.DataRecord) dr;
+          return drp.usePartition.getRaf(drp.partno, dr.record.fileno);
+        }
 
+        public boolean isSameFile(GribReaderRecord dr, GribReaderRecord previous) {
+          return ((PartitionCollectionImmutable.DataRecord) dr)
+              .usesSameFile((PartitionCollectionImmutable.DataRecord) previous);
+        }
+      }, makeDecoder(), dataReceiver::addData);
+      return;
+    }
+
+    GribParallelReader.Decoder decoder = makeDecoder();
     PartitionCollectionImmutable.DataRecord lastRecord = null;
     RandomAccessFile rafData = null;
     try {
@@ -320,7 +396,7 @@ public abstract class GribDataReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
+        float[] data = GribDataCache.readData(decoder, rafData, dr, dr.record.pos);
         GdsHorizCoordSys hcs = dr.hcs;
         dataReceiver.addData(data, dr.resultIndex, hcs.nx);
       }
@@ -339,8 +415,10 @@ public abstract class GribDataReader {
     Array getArray();
   }
 
+  /** Each record has its own part of the result, so addData() may be called from several threads at once. */
   public static class DataReceiver implements DataReceiverIF {
     private final Array dataArray;
+    private final float[] data;
     private final RangeIterator yRange;
     private final RangeIterator xRange;
     private final int horizSize;
@@ -356,19 +434,19 @@ public abstract class GribDataReader {
             Throwables.getStackTraceAsString(new Throwable()));
         throw new IllegalArgumentException("RequestTooLarge: Len greater that 100M ");
       }
-      float[] data = new float[(int) len];
+      data = new float[(int) len];
       Arrays.fill(data, Float.NaN); // prefill primitive array
       dataArray = Array.factory(DataType.FLOAT, shape, data);
     }
 
     @Override
-    public void addData(float[] data, int resultIndex, int nx) {
+    public void addData(float[] record, int resultIndex, int nx) {
       int start = resultIndex * horizSize;
       int count = 0;
       for (int y : yRange) {
         for (int x : xRange) {
           int dataIdx = y * nx + x;
-          dataArray.setFloat(start + count, data[dataIdx]);
+          data[start + count] = record[dataIdx];
           count++;
         }
       }
@@ -377,7 +455,6 @@ public abstract class GribDataReader {
     // optimization
     @Override
     public void setDataToZero() {
-      float[] data = (float[]) dataArray.get1DJavaArray(dataArray.getDataType());
       Arrays.fill(data, 0.0f);
     }
 
@@ -398,14 +475,20 @@ public abstract class GribDataReader {
     }
 
     @Override
-    protected float[] readData(RandomAccessFile rafData, GribReaderRecord dr) throws IOException {
+    protected float[] readData(RandomAccessFile rafData, GribReaderRecord dr, long messageStart) throws IOException {
       GdsHorizCoordSys hcs = dr.hcs;
-      long dataPos = dr.record.pos + dr.record.drsOffset;
-      long bmsPos = (dr.record.bmsOffset > 0) ? dr.record.pos + dr.record.bmsOffset : 0;
+      long dataPos = messageStart + dr.record.drsOffset;
+      long bmsPos = (dr.record.bmsOffset > 0) ? messageStart + dr.record.bmsOffset : 0;
       return Grib2Record.readData(rafData, dataPos, bmsPos, hcs.gdsNumberPoints, hcs.getScanMode(), hcs.nxRaw,
           hcs.nyRaw, hcs.nptsInLine);
     }
 
+    @Override
+    protected long getMessageLength(RandomAccessFile rafData, long pos) throws IOException {
+      rafData.seek(pos);
+      return new Grib2SectionIndicator(rafData).getMessageLength();
+    }
+
     @Override
     protected void show(RandomAccessFile rafData, long pos) throws IOException {
       Grib2Record gr = Grib2RecordScanner.findRecordByDrspos(rafData, pos);
@@ -434,8 +517,14 @@ public abstract class GribDataReader {
     }
 
     @Override
-    protected float[] readData(RandomAccessFile rafData, GribReaderRecord dr) throws IOException {
-      return Grib1Record.readData(rafData, dr.record.pos);
+    protected float[] readData(RandomAccessFile rafData, GribReaderRecord dr, long messageStart) throws IOException {
+      return Grib1Record.readData(rafData, messageStart);
+    }
+
+    @Override
+    protected long getMessageLength(RandomAccessFile rafData, long pos) throws IOException {
+      rafData.seek(pos);
+      return new Grib1SectionIndicator(rafData).getMessageLength();
     }
 
     @Override
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib.collection;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import ucar.nc2.util.Misc;
+
+/**
+ * Runs the independent steps of building collection indexes in parallel: reading or creating the gbx9 of each file,
+ * and updating the child partitions of a partition.
+ * The calling thread works on the items too, and only waits for items that another thread has started, so map()
+ * may be called from inside a task (eg a child partition that is itself a partition) without deadlocking the pool.
+ */
+class GribIndexExecutor {
+  // System property name for -D flag
+  private static final String INDEX_THREADS_PROPERTY = "unidata.grib.index.threads";
+
+  private static Executor indexExecutor; // null means run on the calling thread
+  private static int nthreads;
+  private static boolean init;
+
+  /** See GribCdmIndex.setIndexExecutor(). */
+  static synchronized void setIndexExecutor(@Nullable Executor exec, int n) {
+    Preconditions.checkArgument(n > 0, "nthreads must be > 0");
+    indexExecutor = exec;
+    nthreads = n;
+    init = true;
+  }
+
+  private static synchronized Executor getIndexExecutor() {
+    if (!init) {
+      nthreads = Misc.getIntProperty(INDEX_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+      if (nthreads > 1) {
+        indexExecutor = Executors.newFixedThreadPool(nthreads,
+            new ThreadFactoryBuilder().setNameFormat("GribIndex-%d").setDaemon(true).build());
+      }
+      init = true;
+    }
+    return indexExecutor;
+  }
+
+  interface Task<T, R> {
+    R call(T item) throws IOException;
+  }
+
+  /**
+   * Apply the task to each item, in parallel if there is an index Executor.
+   * If a task throws, the remaining items are skipped and the first exception is rethrown; tasks that want to carry on
+   * past a bad item should catch and log the exception themselves.
+   *
+   * @return the results, in the order of the items.
+   */
+  static <T, R> List<R> map(List<T> items, Task<T, R> task) throws IOException {
+    Executor exec;
+    int nworkers;
+    synchronized (GribIndexExecutor.class) {
+      exec = getIndexExecutor();
+      nworkers = Math.min(nthreads, items.size()) - 1; // the calling thread is a worker too
+    }
+
+    if (exec == null || nworkers < 1) {
+      List<R> result = new ArrayList<>(items.size());
+      for (T item : items)
+        result.add(task.call(item));
+      return result;
+    }
+
+    Object[] results = new Object[items.size()];
+    AtomicInteger next = new AtomicInteger();
+    CountDownLatch finished = new CountDownLatch(items.size());
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    Runnable worker = () -> {
+      int idx;
+      while ((idx = next.getAndIncrement()) < results.length) {
+        try {
+          if (failure.get() == null)
+            results[idx] = task.call(items.get(idx));
+        } catch (Throwable t) {
+          failure.compareAndSet(null, t);
+        } finally {
+          finished.countDown();
+        }
+      }
+    };
+
+    for (int i = 0; i < nworkers; i++) {
+      try {
+        exec.execute(worker);
+      } catch (RejectedExecutionException e) {
+        break; // executor was shut down, the calling thread does the rest
+      }
+    }
+    worker.run();
+
+    try {
+      finished.await(); // only items that have been started are left
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("GribIndexExecutor interrupted");
+    }
+
+    Throwable t = failure.get();
+    if (t instanceof IOException)
+      throw (IOException) t;
+    if (t instanceof RuntimeException)
+      throw (RuntimeException) t;
+    if (t instanceof Error)
+      throw (Error) t;
+    if (t != null)
+      throw new IOException(t);
+
+    @SuppressWarnings("unchecked")
+    List<R> result = (List<R>) Arrays.asList(results);
+    return result;
+  }
+}
@@ -215,6 +215,14 @@ public abstract class GribIosp extends AbstractIOServiceProvider {
     super.close();
   }
 
+  @Override
+  public long getMemoryEstimate() {
+    long size = super.getMemoryEstimate();
+    if (gribCollection != null)
+      size += gribCollection.getMemoryEstimate();
+    return size;
+  }
+
   @Override
   public String getDetailInfo() {
     Formatter f = new Formatter();
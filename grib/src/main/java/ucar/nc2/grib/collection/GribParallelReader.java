@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib.collection;
+
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import ucar.nc2.util.Misc;
+import ucar.nc2.util.SharedExecutor;
+import ucar.unidata.io.InMemoryRandomAccessFile;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * Reads the data records of a GribDataReader or GribArrayReader, and decodes them in parallel.
+ * The records must be sorted by file and position. Each file is read sequentially on the calling thread, one GRIB
+ * message at a time, and the messages are decoded on the decode Executor, at most "prefetch" at a time.
+ * The decoded fields are sent to the DataSink from the decode threads; each record has its own place in the result,
+ * so the sink needs no locking.
+ * Records found in the GribDataCache are sent to the sink without reading their message.
+ */
+class GribParallelReader {
+  // System property names for -D flags
+  private static final String DECODE_MIN_RECORDS_PROPERTY = "unidata.grib.decode.minRecords";
+
+  // decode records on this pool, sized by the "unidata.grib.decode.threads" system property
+  private static final SharedExecutor decodeExecutor =
+      new SharedExecutor("grib-decode", "unidata.grib.decode", Runtime.getRuntime().availableProcessors());
+  private static int minRecords; // 0 until it is set or read from the system property
+
+  /** See GribDataReader.setDecodeExecutor(). */
+  static synchronized void setDecodeExecutor(@Nullable Executor exec, int nprefetch, int nminRecords) {
+    Preconditions.checkArgument(nminRecords > 0, "minRecords must be > 0");
+    decodeExecutor.set(exec, nprefetch);
+    minRecords = nminRecords;
+  }
+
+  /** See GribDataReader.resetDecodeExecutor(). */
+  static synchronized void resetDecodeExecutor() {
+    decodeExecutor.reset();
+    minRecords = 0;
+  }
+
+  private static synchronized int getMinRecords() {
+    if (minRecords == 0)
+      minRecords = Misc.getIntProperty(DECODE_MIN_RECORDS_PROPERTY, 4);
+    return minRecords;
+  }
+
+  /** Is it worth decoding this many records in parallel? Small requests are read serially. */
+  static synchronized boolean useParallel(int nrecords) {
+    return decodeExecutor.getExecutor() != null && nrecords >= getMinRecords();
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////////
+
+  /** The records of one file. */
+  interface FileOpener {
+    RandomAccessFile open(GribReaderRecord dr) throws IOException;
+
+    boolean isSameFile(GribReaderRecord dr, GribReaderRecord previous);
+  }
+
+  /** Edition specific decoding. */
+  interface Decoder {
+    /** Length of the GRIB message that starts at pos. */
+    long getMessageLength(RandomAccessFile raf, long pos) throws IOException;
+
+    /** Decode the record, whose GRIB message starts at messageStart in raf. */
+    float[] readData(RandomAccessFile raf, GribReaderRecord dr, long messageStart) throws IOException;
+  }
+
+  interface DataSink {
+    void addData(float[] data, int resultIndex, int nx);
+  }
+
+  /**
+   * Read and decode the records.
+   *
+   * @param records sorted by file and position
+   */
+  static void read(List<? extends GribReaderRecord> records, FileOpener opener, Decoder decoder, DataSink sink)
+      throws IOException {
+    Executor exec;
+    int nprefetch;
+    synchronized (GribParallelReader.class) {
+      exec = decodeExecutor.getExecutor();
+      nprefetch = decodeExecutor.getPrefetch();
+    }
+    Preconditions.checkNotNull(exec);
+    GribDataCache cache = GribDataCache.getDataCache();
+
+    Semaphore inFlight = new Semaphore(nprefetch);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    GribReaderRecord previous = null;
+    RandomAccessFile rafData = null;
+    long messageStart = -1;
+    byte[] message = null;
+
+    try {
+      for (GribReaderRecord dr : records) {
+        if (failure.get() != null)
+          break;
+        if (rafData == null || !opener.isSameFile(dr, previous)) {
+          if (rafData != null)
+            rafData.close();
+          rafData = opener.open(dr);
+          messageStart = -1;
+        }
+        previous = dr;
+
+        if (dr.record.pos == GribCollectionMutable.MISSING_RECORD)
+          continue;
+
+        if (cache != null) {
+          float[] cached = cache.get(rafData.getLocation(), dr.record);
+          if (cached != null) {
+            sink.addData(cached, dr.resultIndex, dr.hcs.nx);
+            continue;
+          }
+        }
+
+        // several records may be in the same message
+        if (dr.record.pos != messageStart) {
+          long len = decoder.getMessageLength(rafData, dr.record.pos);
+          if (len <= 0 || len > Integer.MAX_VALUE - 8) { // cant hold it in memory, decode it here
+            sink.addData(decode(decoder, cache, rafData, dr, dr.record.pos), dr.resultIndex, dr.hcs.nx);
+            continue;
+          }
+          message = new byte[(int) len];
+          rafData.seek(dr.record.pos);
+          rafData.readFully(message);
+          messageStart = dr.record.pos;
+        }
+
+        try {
+          inFlight.acquire();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("GribParallelReader interrupted");
+        }
+        Runnable task = makeTask(rafData.getLocation(), rafData.getByteOrder(), message, dr, decoder, cache, sink,
+            inFlight, failure);
+        try {
+          exec.execute(task);
+        } catch (RejectedExecutionException e) {
+          task.run(); // executor was shut down
+        }
+      }
+
+    } finally {
+      if (rafData != null)
+        rafData.close();
+      // wait for the decodes that are still running, even on exception
+      inFlight.acquireUninterruptibly(nprefetch);
+    }
+
+    Throwable t = failure.get();
+    if (t instanceof IOException)
+      throw (IOException) t;
+    if (t instanceof RuntimeException)
+      throw (RuntimeException) t;
+    if (t != null)
+      throw new IOException(t);
+  }
+
+  private static Runnable makeTask(String location, ByteOrder order, byte[] message, GribReaderRecord dr,
+      Decoder decoder, @Nullable GribDataCache cache, DataSink sink, Semaphore inFlight,
+      AtomicReference<Throwable> failure) {
+    return () -> {
+      try (RandomAccessFile raf = new InMemoryRandomAccessFile(location, message)) {
+        raf.order(order); // the decoders read multibyte numbers in the order of the data file
+        if (failure.get() == null)
+          sink.addData(decode(decoder, cache, raf, dr, 0), dr.resultIndex, dr.hcs.nx);
+      } catch (Throwable t) {
+        failure.compareAndSet(null, t);
+      } finally {
+        inFlight.release();
+      }
+    };
+  }
+
+  // decode a record that was not found in the cache, and add it to the cache
+  private static float[] decode(Decoder decoder, @Nullable GribDataCache cache, RandomAccessFile raf,
+      GribReaderRecord dr, long messageStart) throws IOException {
+    float[] data = decoder.readData(raf, dr, messageStart);
+    if (cache != null)
+      cache.put(raf.getLocation(), dr.record, data);
+    return data;
+  }
+}
@@ -118,6 +118,7 @@ abstract class GribPartitionBuilder {
   boolean createPartitionedIndex(CollectionUpdateType forcePartition, Formatter errlog) throws IOException {
     if (errlog == null)
       errlog = new Formatter(); // info will be discarded
+    long start = System.currentTimeMillis();
 
     // create partitions from the partitionManager
     for (MCollection dcmp : partitionManager.makePartitions(forcePartition)) {
@@ -153,6 +154,7 @@ abstract class GribPartitionBuilder {
     // check consistency across vert and ens coords
     // create partitioned variables
     // partition index is used - do not resort partitions
+    long startDataset = System.currentTimeMillis();
     GribCollectionMutable.Dataset ds2D = makeDataset2D(errlog);
     if (ds2D == null) {
       errlog.format(" ERR makeDataset2D failed, index not written on %s%n", result.showLocation());
@@ -165,9 +167,20 @@ abstract class GribPartitionBuilder {
       makeDatasetBest(ds2D, false);
     // else if (ds2D.gctype == GribCollectionImmutable.Type.MRUTC)
     // makeTime2runtime(ds2D, false);
+    long startWrite = System.currentTimeMillis();
 
     // ready to write the index file
-    return writeIndex(result, errlog);
+    boolean ok = writeIndex(result, errlog);
+
+    // the timing report for each phase
+    long end = System.currentTimeMillis();
+    String report = String.format(
+        "GribPartitionBuilder %s: %d partitions; find partitions %d msecs, merge partitions %d msecs, write %d msecs,"
+            + " total %d msecs",
+        name, n, startDataset - start, startWrite - startDataset, end - startWrite, end - start);
+    errlog.format(" INFO %s%n", report);
+    logger.debug(report);
+    return ok;
   }
 
   // each dataset / group has one of these, across all partitions
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib.collection;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.nc2.grib.coord.SparseArray;
+
+/**
+ * The records of a GribCollectionImmutable.VariableIndex, stored column-wise.
+ * Conceptually a multidim array with shape[n], like SparseArray<Record>, but the Records are kept in parallel
+ * primitive arrays, so a variable with a million records is a handful of arrays, not a million objects.
+ * track[totalSize] = {0 = missing, else = index+1 into the record columns}.
+ * Immutable, so lookups need no locking.
+ */
+@Immutable
+class RecordTable {
+  private static final Logger logger = LoggerFactory.getLogger(RecordTable.class);
+
+  private final int[] shape; // multidim sizes
+  private final int[] stride; // for index calculation
+  private final int[] track; // 1-based index into the record columns, 0 = missing
+  private final int nrecords;
+  private final int ndups;
+
+  // the record columns, length nrecords
+  private final int[] fileno;
+  private final long[] pos;
+  private final int[] bmsOffset;
+  private final int[] drsOffset;
+
+  private RecordTable(int[] shape, int[] track, int nrecords, int[] fileno, long[] pos, int[] bmsOffset,
+      int[] drsOffset, int ndups) {
+    this.shape = shape;
+    this.stride = new int[shape.length];
+    int product = 1;
+    for (int ii = shape.length - 1; ii >= 0; ii--) {
+      stride[ii] = product;
+      product *= shape[ii];
+    }
+    if (track.length != product)
+      throw new IllegalStateException("track len " + track.length + " != totalSize " + product);
+
+    this.track = track;
+    this.nrecords = nrecords;
+    this.fileno = fileno;
+    this.pos = pos;
+    this.bmsOffset = bmsOffset;
+    this.drsOffset = drsOffset;
+    this.ndups = ndups;
+  }
+
+  /**
+   * Read the protobuf SparseArray message directly into the columns, without making a Record (or a protobuf Record)
+   * for each GRIB message.
+   *
+   * <pre>
+   * message SparseArray {
+   *   repeated uint32 size = 2 [packed=true]; // multidim sizes = shape[]
+   *   repeated uint32 track = 3 [packed=true]; // 1-based index into record list, 0 == missing
+   *   repeated Record records = 4; // List<Record>
+   *   uint32 ndups = 5; // duplicates found when creating
+   * }
+   * message Record {
+   *   uint32 fileno = 1;
+   *   uint64 startPos = 2;
+   *   uint32 bmsOffset = 3;
+   *   uint32 drsOffset = 4;
+   * }
+   * </pre>
+   *
+   * @param b the encoded SparseArray message
+   * @param nrecordsHint expected number of records, used to size the columns
+   */
+  static RecordTable read(byte[] b, int nrecordsHint) throws IOException {
+    CodedInputStream input = CodedInputStream.newInstance(b);
+    input.setSizeLimit(Integer.MAX_VALUE);
+
+    IntList size = new IntList(4);
+    IntList track = new IntList(0);
+    int capacity = Math.max(nrecordsHint, 1);
+    int[] fileno = new int[capacity];
+    long[] pos = new long[capacity];
+    int[] bmsOffset = new int[capacity];
+    int[] drsOffset = new int[capacity];
+    int nrecords = 0;
+    int ndups = 0;
+
+    while (true) {
+      int tag = input.readTag();
+      if (tag == 0)
+        break;
+      switch (WireFormat.getTagFieldNumber(tag)) {
+        case 2:
+          readUInt32s(input, tag, size);
+          break;
+        case 3:
+          readUInt32s(input, tag, track);
+          break;
+        case 4:
+          if (nrecords == fileno.length) {
+            capacity = 2 * capacity;
+            fileno = Arrays.copyOf(fileno, capacity);
+            pos = Arrays.copyOf(pos, capacity);
+            bmsOffset = Arrays.copyOf(bmsOffset, capacity);
+            drsOffset = Arrays.copyOf(drsOffset, capacity);
+          }
+          int limit = input.pushLimit(input.readRawVarint32());
+          while (true) {
+            int rtag = input.readTag();
+            if (rtag == 0)
+              break;
+            switch (WireFormat.getTagFieldNumber(rtag)) {
+              case 1:
+                fileno[nrecords] = input.readUInt32();
+                break;
+              case 2:
+                pos[nrecords] = input.readUInt64();
+                break;
+              case 3:
+                bmsOffset[nrecords] = input.readUInt32();
+                break;
+              case 4:
+                drsOffset[nrecords] = input.readUInt32();
+                break;
+              default:
+                input.skipField(rtag);
+            }
+          }
+          input.popLimit(limit);
+          nrecords++;
+          break;
+        case 5:
+          ndups = input.readUInt32();
+          break;
+        default:
+          if (!input.skipField(tag))
+            throw new InvalidProtocolBufferException("Bad SparseArray tag " + tag);
+      }
+    }
+
+    if (nrecords != capacity) { // nrecordsHint was wrong
+      fileno = Arrays.copyOf(fileno, nrecords);
+      pos = Arrays.copyOf(pos, nrecords);
+      bmsOffset = Arrays.copyOf(bmsOffset, nrecords);
+      drsOffset = Arrays.copyOf(drsOffset, nrecords);
+    }
+    return new RecordTable(size.toArray(), track.toArray(), nrecords, fileno, pos, bmsOffset, drsOffset, ndups);
+  }
+
+  // repeated uint32, packed or not
+  private static void readUInt32s(CodedInputStream input, int tag, IntList result) throws IOException {
+    if (WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+      int length = input.readRawVarint32();
+      int limit = input.pushLimit(length);
+      result.ensureCapacity(length); // at least one byte each
+      while (input.getBytesUntilLimit() > 0)
+        result.add(input.readUInt32());
+      input.popLimit(limit);
+    } else {
+      result.add(input.readUInt32());
+    }
+  }
+
+  private static class IntList {
+    int[] values;
+    int size;
+
+    IntList(int capacity) {
+      values = new int[capacity];
+    }
+
+    void ensureCapacity(int n) {
+      if (size + n > values.length)
+        values = Arrays.copyOf(values, Math.max(size + n, 2 * values.length));
+    }
+
+    void add(int value) {
+      ensureCapacity(1);
+      values[size++] = value;
+    }
+
+    int[] toArray() {
+      return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////
+
+  int calcIndex(int... index) {
+    assert index.length == shape.length;
+    int result = 0;
+    for (int ii = 0; ii < index.length; ii++)
+      result += index[ii] * stride[ii];
+    return result;
+  }
+
+  /** The record at this index into the track, or null if missing. */
+  @Nullable
+  GribCollectionImmutable.Record getRecord(int idx) {
+    if (idx >= track.length || idx < 0)
+      logger.error("BAD index get=" + idx + " max= " + track.length, new Throwable());
+    int recno = track[idx] - 1;
+    if (recno < 0)
+      return null; // missing
+    return makeRecord(recno);
+  }
+
+  @Nullable
+  GribCollectionImmutable.Record getRecord(int[] index) {
+    return getRecord(calcIndex(index));
+  }
+
+  private GribCollectionImmutable.Record makeRecord(int recno) {
+    return new GribCollectionImmutable.Record(fileno[recno], pos[recno], bmsOffset[recno], drsOffset[recno]);
+  }
+
+  int[] getShape() {
+    return shape.clone();
+  }
+
+  int getTotalSize() {
+    return track.length;
+  }
+
+  int getNRecords() {
+    return nrecords;
+  }
+
+  int getNdups() {
+    return ndups;
+  }
+
+  int countNotMissing() {
+    int result = 0;
+    for (int idx : track)
+      if (idx > 0)
+        result++;
+    return result;
+  }
+
+  /** Estimate of the memory used: the track and the record columns. */
+  long getMemoryEstimate() {
+    return 96 + 4L * track.length + 20L * nrecords;
+  }
+
+  /** Make a SparseArray with a Record object for each record. Used by the UI, not when reading data. */
+  SparseArray<GribCollectionImmutable.Record> toSparseArray() {
+    List<GribCollectionImmutable.Record> records = new ArrayList<>(nrecords);
+    for (int i = 0; i < nrecords; i++)
+      records.add(makeRecord(i));
+    return new SparseArray<>(getShape(), track.clone(), records, ndups);
+  }
+}
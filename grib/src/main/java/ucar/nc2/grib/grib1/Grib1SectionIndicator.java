@@ -32,7 +32,7 @@ public class Grib1SectionIndicator {
    * @throws java.io.IOException on I/O error
    * @throws IllegalArgumentException if not a GRIB-2 record
    */
-  Grib1SectionIndicator(RandomAccessFile raf) throws IOException {
+  public Grib1SectionIndicator(RandomAccessFile raf) throws IOException {
     startPos = raf.getFilePointer();
     byte[] b = new byte[4];
     raf.readFully(b);
@@ -6,6 +6,7 @@
 package ucar.nc2.grib.grib2;
 
 import javax.annotation.Nullable;
+import ucar.nc2.grib.GribBitUnpacker;
 import ucar.nc2.grib.GribNumbers;
 import ucar.nc2.grib.GribUtils;
 import ucar.nc2.iosp.BitReader;
@@ -81,6 +82,18 @@ public class Grib2DataReader {
    */
 
   public float[] getData(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs) throws IOException {
+    return getData(raf, bitmapSection, gdrs, null);
+  }
+
+  /**
+   * Read the data into the given buffer, if it is big enough.
+   * Simple and complex packing (templates 0, 2 and 3) decode straight into the buffer; other templates ignore it.
+   *
+   * @param buffer use this if non-null and length >= the number of points; only the first npoints are set.
+   * @return the buffer if it was used, else a new array of the number of points.
+   */
+  public float[] getData(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs,
+      @Nullable float[] buffer) throws IOException {
     this.bitmap = bitmapSection.getBitmap(raf);
     this.bitmapIndicator = bitmapSection.getBitMapIndicator();
 
@@ -94,16 +107,16 @@ public class Grib2DataReader {
 
     raf.seek(startPos + 5); // skip past first 5 bytes in data section, now ready to read
 
-    float[] data;
+    float[] data = (buffer != null && buffer.length >= totalNPoints) ? buffer : new float[totalNPoints];
     switch (dataTemplate) {
       case 0:
-        data = getData0(raf, (Grib2Drs.Type0) gdrs);
+        getData0(raf, (Grib2Drs.Type0) gdrs, data);
         break;
       case 2:
-        data = getData2(raf, (Grib2Drs.Type2) gdrs);
+        getData2(raf, (Grib2Drs.Type2) gdrs, data);
         break;
       case 3:
-        data = getData3(raf, (Grib2Drs.Type3) gdrs);
+        getData3(raf, (Grib2Drs.Type3) gdrs, data);
         break;
       case 40:
         data = getData40(raf, (Grib2Drs.Type40) gdrs);
@@ -120,7 +133,7 @@ public class Grib2DataReader {
 
     // int scanMode = gds.getGds().getScanMode();
     // int nx = gds.getGds().getNx(); // needs some smarts for different type Grids
-    scanningModeCheck(data, scanMode, nx);
+    scanningModeCheck(data, totalNPoints, scanMode, nx);
 
     return data;
   }
@@ -207,7 +220,7 @@ public class Grib2DataReader {
 
 
   // Grid point data - simple packing
-  private float[] getData0(RandomAccessFile raf, Grib2Drs.Type0 gdrs) throws IOException {
+  private void getData0(RandomAccessFile raf, Grib2Drs.Type0 gdrs, float[] data) throws IOException {
     int nb = gdrs.numberOfBits;
     int D = gdrs.decimalScaleFactor;
     float DD = (float) java.lang.Math.pow((double) 10, (double) D);
@@ -218,7 +231,7 @@ public class Grib2DataReader {
     // LOOK: can # datapoints differ from bitmap and data ?
     // dataPoints are number of points encoded, it could be less than the
     // totalNPoints in the grid record if bitMap is used, otherwise equal
-    float[] data = new float[totalNPoints];
+    int npacked = (bitmap == null) ? totalNPoints : countBitmap();
 
     // Y * 10**D = R + (X1 + X2) * 2**E
     // E = binary scale factor
@@ -228,24 +241,48 @@ public class Grib2DataReader {
     // X2 = scaled encoded value
     // data[ i ] = (R + ( X1 + X2) * EE)/DD ;
 
-    BitReader reader = new BitReader(raf, startPos + 5);
-    if (bitmap == null) {
-      for (int i = 0; i < totalNPoints; i++) {
-        // data[ i ] = (R + ( X1 + X2) * EE)/DD ;
-        data[i] = (R + reader.bits2UInt(nb) * EE) / DD;
-      }
-    } else {
-      for (int i = 0; i < totalNPoints; i++) {
-        if (GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
-          data[i] = (R + reader.bits2UInt(nb) * EE) / DD;
-        } else {
-          data[i] = staticMissingValue;
-          // data[i] = R / DD;
-        }
+    GribBitUnpacker reader = GribBitUnpacker.read(raf, startPos + 5, dataLength - 5);
+    reader.unpack(nb, npacked, 0, data, 0);
+    scale(data, npacked, R, EE, DD);
+
+    if (bitmap != null) {
+      expandBitmap(data, npacked, staticMissingValue);
+    }
+  }
+
+  // data[i] = (R + X * EE) / DD, for the first n values; a loop the JIT can vectorize
+  private static void scale(float[] data, int n, float R, float EE, float DD) {
+    for (int i = 0; i < n; i++) {
+      data[i] = (R + data[i] * EE) / DD;
+    }
+  }
+
+  // number of points that are set in the bitmap
+  private int countBitmap() {
+    int nbytes = totalNPoints / 8;
+    int count = 0;
+    for (int i = 0; i < nbytes; i++) {
+      count += Integer.bitCount(bitmap[i] & 0xff);
+    }
+    for (int i = 8 * nbytes; i < totalNPoints; i++) {
+      if (GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
+        count++;
       }
     }
+    return count;
+  }
 
-    return data;
+  // The first nset values in data belong to the points set in the bitmap: move them to those points, and set the others
+  // to mv. Works backwards from the last point, so it can be done in place.
+  private void expandBitmap(float[] data, int nset, float mv) {
+    int idx = nset;
+    for (int i = totalNPoints - 1; i >= 0; i--) {
+      if (GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
+        data[i] = data[--idx];
+      } else {
+        data[i] = mv;
+      }
+    }
   }
 
   /*
@@ -275,7 +312,7 @@ public class Grib2DataReader {
    * from data representation template.
    * (4) For groups with a constant value, associated field width is 0, and no incremental data are physically present.
    */
-  private float[] getData2(RandomAccessFile raf, Grib2Drs.Type2 gdrs) throws IOException {
+  private void getData2(RandomAccessFile raf, Grib2Drs.Type2 gdrs, float[] data) throws IOException {
     int mvm = gdrs.missingValueManagement;
     float mv = getMissingValue(gdrs);
 
@@ -286,18 +323,17 @@ public class Grib2DataReader {
 
     int NG = gdrs.numberOfGroups;
     if (NG == 0) {
-      return nGroups0(bitmapIndicator, ref_val, mv);
+      nGroups0(bitmapIndicator, ref_val, mv, data);
+      return;
     }
 
-    BitReader reader = new BitReader(raf, startPos + 5);
+    GribBitUnpacker reader = GribBitUnpacker.read(raf, startPos + 5, dataLength - 5);
 
     // 6-xx Get reference values for groups (X1's)
     int[] X1 = new int[NG];
     int nb = gdrs.numberOfBits;
     if (nb != 0) {
-      for (int i = 0; i < NG; i++) {
-        X1[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.unpack(nb, NG, X1);
     }
 
     // [xx +1 ]-yy Get number of bits used to encode each group
@@ -305,9 +341,10 @@ public class Grib2DataReader {
     nb = gdrs.bitsGroupWidths;
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        NB[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.unpack(nb, NG, NB);
+    }
+    for (int i = 0; i < NG; i++) {
+      NB[i] += gdrs.referenceGroupWidths;
     }
 
     // [yy +1 ]-zz Get the scaled group lengths using formula
@@ -320,13 +357,12 @@ public class Grib2DataReader {
     nb = gdrs.bitsScaledGroupLength;
 
     reader.incrByte();
+    reader.unpack(nb, NG, L);
     for (int i = 0; i < NG; i++) {
-      L[i] = ref + (int) reader.bits2UInt(nb) * len_inc;
+      L[i] = ref + L[i] * len_inc;
     }
     L[NG - 1] = gdrs.lengthLastGroup; // enter Length of Last Group
 
-    float[] data = new float[totalNPoints];
-
     // [zz +1 ]-nn get X2 values and calculate the results Y using formula
 
     // Y = R + [(X1 + X2) * (2 ** E) * (10 ** D)]
@@ -340,46 +376,38 @@ public class Grib2DataReader {
     int count = 0;
     reader.incrByte();
     for (int i = 0; i < NG; i++) {
-      for (int j = 0; j < L[i]; j++) {
-        if (NB[i] == 0) {
-          if (mvm == 0) { // X2 = 0
-            data[count++] = (R + X1[i] * EE) / DD;
-          } else { // if (mvm == 1) || (mvm == 2 )
+      if (count + L[i] > totalNPoints) {
+        throw new IllegalStateException("Group lengths > number of points " + totalNPoints);
+      }
+      if (mvm == 0) { // X1 + X2, scaled below; X2 = 0 if NB == 0
+        reader.unpack(NB[i], L[i], X1[i], data, count);
+        count += L[i];
+      } else if (NB[i] == 0) { // if (mvm == 1) || (mvm == 2 )
+        Arrays.fill(data, count, count + L[i], mv);
+        count += L[i];
+      } else {
+        for (int j = 0; j < L[i]; j++) {
+          int X2 = reader.bits2UInt(NB[i]);
+          // X2 is also set to missing value if all bits set to 1's
+          if (X2 == bitsmv1[NB[i]]) {
             data[count++] = mv;
-          }
-        } else {
-          int X2 = (int) reader.bits2UInt(NB[i]);
-          if (mvm == 0) {
+          } else {
             data[count++] = (R + (X1[i] + X2) * EE) / DD;
-          } else { // if (mvm == 1) || (mvm == 2 )
-            // X2 is also set to missing value if all bits set to 1's
-            if (X2 == bitsmv1[NB[i]]) {
-              data[count++] = mv;
-            } else {
-              data[count++] = (R + (X1[i] + X2) * EE) / DD;
-            }
           }
         }
-      } // end for j
+      }
     } // end for i
 
-    if (bitmap != null) {
-      int idx = 0;
-      float[] tmp = new float[totalNPoints];
-      for (int i = 0; i < totalNPoints; i++) {
-        if (GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
-          tmp[i] = data[idx++];
-        } else {
-          tmp[i] = mv;
-        }
-      }
-      data = tmp;
+    if (mvm == 0) {
+      scale(data, count, R, EE, DD);
     }
+    Arrays.fill(data, count, totalNPoints, 0.0f);
 
-    return data;
+    if (bitmap != null) {
+      expandBitmap(data, countBitmap(), mv);
+    }
   }
 
-
   /*
    * from wgrib unpk_complex():
    * 
@@ -413,8 +441,7 @@ public class Grib2DataReader {
    * fatal_error("unknown bitmap", "");
    * }
    */
-  private float[] nGroups0(int bitmap_flag, float ref, float mv1) {
-    float[] data = new float[totalNPoints];
+  private void nGroups0(int bitmap_flag, float ref, float mv1, float[] data) {
     if (bitmap_flag == 255) {
       for (int i = 0; i < totalNPoints; i++) {
         data[i] = ref;
@@ -435,7 +462,6 @@ public class Grib2DataReader {
     } else {
       throw new IllegalArgumentException("unknown bitmap type =" + bitmap_flag);
     }
-    return data;
   }
 
   /*
@@ -461,7 +487,7 @@ public class Grib2DataReader {
    * (4) Overall minimum will be negative in most cases. First bit should indicate the sign: 0 if positive, 1 if
    * negative.
    */
-  private float[] getData3(RandomAccessFile raf, Grib2Drs.Type3 gdrs) throws IOException {
+  private void getData3(RandomAccessFile raf, Grib2Drs.Type3 gdrs, float[] data) throws IOException {
     int mvm = gdrs.missingValueManagement;
     float mv = getMissingValue(gdrs);
 
@@ -472,10 +498,11 @@ public class Grib2DataReader {
 
     int NG = gdrs.numberOfGroups;
     if (NG == 0) {
-      return nGroups0(bitmapIndicator, ref_val, mv);
+      nGroups0(bitmapIndicator, ref_val, mv, data);
+      return;
     }
 
-    BitReader reader = new BitReader(raf, startPos + 5);
+    GribBitUnpacker reader = GribBitUnpacker.read(raf, startPos + 5, dataLength - 5);
 
     int ival1;
     int ival2 = 0;
@@ -488,30 +515,27 @@ public class Grib2DataReader {
     // ds is number of bytes, convert to bits -1 for sign bit
     nbitsd = nbitsd * 8;
     if (nbitsd > 0) { // first order spatial differencing g1 and gMin
-      sign = (int) reader.bits2UInt(1);
-      ival1 = (int) reader.bits2UInt(nbitsd - 1);
+      sign = reader.bits2UInt(1);
+      ival1 = reader.bits2UInt(nbitsd - 1);
       if (sign == 1) {
         ival1 = -ival1;
       }
       if (os == 2) { // second order spatial differencing h1, h2, hMin
-        sign = (int) reader.bits2UInt(1);
-        ival2 = (int) reader.bits2UInt(nbitsd - 1);
+        sign = reader.bits2UInt(1);
+        ival2 = reader.bits2UInt(nbitsd - 1);
         if (sign == 1) {
           ival2 = -ival2;
         }
       }
-      sign = (int) reader.bits2UInt(1);
-      minsd = (int) reader.bits2UInt(nbitsd - 1);
+      sign = reader.bits2UInt(1);
+      minsd = reader.bits2UInt(nbitsd - 1);
       if (sign == 1) {
         minsd = -minsd;
       }
 
     } else {
-      float[] data = new float[totalNPoints];
-      for (int i = 0; i < totalNPoints; i++) {
-        data[i] = mv;
-      }
-      return data;
+      Arrays.fill(data, 0, totalNPoints, mv);
+      return;
     }
 
     // [ww +1]-xx Get reference values for groups (X1's)
@@ -520,9 +544,7 @@ public class Grib2DataReader {
     int nb = gdrs.numberOfBits;
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        X1[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.unpack(nb, NG, X1);
     }
 
     // [xx +1 ]-yy Get number of bits used to encode each group
@@ -531,9 +553,7 @@ public class Grib2DataReader {
     nb = gdrs.bitsGroupWidths;
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        NB[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.unpack(nb, NG, NB);
     }
 
     int referenceGroupWidths = gdrs.referenceGroupWidths;
@@ -552,9 +572,7 @@ public class Grib2DataReader {
 
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        L[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.unpack(nb, NG, L);
     }
 
     int totalL = 0;
@@ -572,25 +590,17 @@ public class Grib2DataReader {
     if (mvm != 0) {
       if (totalL != totalNPoints) {
         logger.warn("NPoints != gds.nPts: " + totalL + "!=" + totalNPoints);
-        float[] data = new float[totalNPoints];
-        for (int i = 0; i < totalNPoints; i++) {
-          data[i] = mv;
-        }
-        return data;
+        Arrays.fill(data, 0, totalNPoints, mv);
+        return;
       }
     } else {
       if (totalL != dataNPoints) {
         logger.warn("NPoints != drs.nPts: " + totalL + "!=" + totalNPoints);
-        float[] data = new float[totalNPoints];
-        for (int i = 0; i < totalNPoints; i++) {
-          data[i] = mv;
-        }
-        return data;
+        Arrays.fill(data, 0, totalNPoints, mv);
+        return;
       }
     }
 
-    float[] data = new float[totalNPoints];
-
     // [zz +1 ]-nn get X2 values and calculate the results Y using formula
     // formula used to create values, Y * 10**D = R + (X1 + X2) * 2**E
 
@@ -608,15 +618,8 @@ public class Grib2DataReader {
     boolean[] dataBitMap = null;
     if (mvm == 0) {
       for (int i = 0; i < NG; i++) {
-        if (NB[i] != 0) {
-          for (int j = 0; j < L[i]; j++) {
-            data[count++] = (int) reader.bits2UInt(NB[i]) + X1[i];
-          }
-        } else {
-          for (int j = 0; j < L[i]; j++) {
-            data[count++] = X1[i];
-          }
-        }
+        reader.unpack(NB[i], L[i], X1[i], data, count); // X1 + X2; X2 = 0 if NB == 0
+        count += L[i];
       } // end for i
 
     } else if (mvm == 1 || mvm == 2) {
@@ -628,7 +631,7 @@ public class Grib2DataReader {
           int msng1 = bitsmv1[NB[i]];
           int msng2 = msng1 - 1;
           for (int j = 0; j < L[i]; j++) {
-            data[count] = (int) reader.bits2UInt(NB[i]);
+            data[count] = reader.bits2UInt(NB[i]);
             if (data[count] == msng1 || mvm == 2 && data[count] == msng2) {
               dataBitMap[count] = false;
             } else {
@@ -659,6 +662,7 @@ public class Grib2DataReader {
         }
       } // end for i
     }
+    Arrays.fill(data, count, totalNPoints, 0.0f);
 
     // first order spatial differencing
     if (os == 1) { // g1 and gMin
@@ -672,9 +676,11 @@ public class Grib2DataReader {
       } else {
         itemp = dataSize;
       }
-      for (int i = 1; i < itemp; i++) {
-        data[i] += minsd;
-        data[i] = data[i] + data[i - 1];
+      int start = undifference1(data, itemp, minsd);
+      float prev = data[start - 1]; // F(n-1), kept in a register
+      for (int i = start; i < itemp; i++) {
+        prev = (data[i] + minsd) + prev;
+        data[i] = prev;
       }
     } else if (os == 2) { // 2nd order
       data[0] = ival1;
@@ -685,9 +691,13 @@ public class Grib2DataReader {
       } else {
         itemp = dataSize;
       }
-      for (int i = 2; i < itemp; i++) {
-        data[i] += minsd;
-        data[i] = data[i] + (2 * data[i - 1]) - data[i - 2];
+      int start = undifference2(data, itemp, minsd);
+      float prev1 = data[start - 1], prev2 = data[start - 2]; // F(n-1) and F(n-2), kept in registers
+      for (int i = start; i < itemp; i++) {
+        float value = (data[i] + minsd) + (2 * prev1) - prev2;
+        data[i] = value;
+        prev2 = prev1;
+        prev1 = value;
       }
     }
 
@@ -703,37 +713,103 @@ public class Grib2DataReader {
     // D = THE DECIMAL SCALE FACTOR
 
     if (mvm == 0) { // no missing values
-      for (int i = 0; i < data.length; i++) {
-        data[i] = (R + (data[i] * EE)) / DD;
-      }
+      scale(data, totalNPoints, R, EE, DD);
     } else if (mvm == 1 || mvm == 2) { // missing value == 1 || missing value == 2
-      int count2 = 0;
-      float[] tmp = new float[totalNPoints];
-      for (int i = 0; i < data.length; i++) {
+      // the dataSize values are packed at the start of data; in place, backwards from the last point
+      int count2 = dataSize;
+      for (int i = totalNPoints - 1; i >= 0; i--) {
         if (dataBitMap[i]) {
-          tmp[i] = (R + (data[count2++] * EE)) / DD;
+          data[i] = (R + (data[--count2] * EE)) / DD;
         } else { // mvm = 1 or 2
-          tmp[i] = mv;
+          data[i] = mv;
         }
       }
-      data = tmp;
     }
 
     // bit map is used
     if (bitmap != null) {
-      int idx = 0;
-      float[] tmp = new float[totalNPoints];
-      for (int i = 0; i < totalNPoints; i++) {
-        if (GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
-          tmp[i] = data[idx++];
-        } else {
-          tmp[i] = mv;
-        }
+      expandBitmap(data, countBitmap(), mv);
+    }
+  }
+
+  // Undoing the spatial differencing is a chain of dependent additions, so it is done in int arithmetic, which is much
+  // faster than float. That gives the same values as float while they stay within 2^24 in magnitude, since a float
+  // holds those integers exactly. The usual case, but if a value gets bigger, the caller carries on in float from
+  // there.
+  private static final int FLOAT_EXACT = 1 << 24;
+
+  // |value|, less one if negative: < FLOAT_EXACT if the value is exact as a float. OR them to test several at once.
+  private static int magnitude(int value) {
+    return value ^ (value >> 31);
+  }
+
+  // first order: F(n) = G(n) + minsd + F(n-1), for 1 <= n < npts. Returns where it stopped.
+  static int undifference1(float[] data, int npts, int minsd) {
+    int prev = (int) data[0];
+    if ((magnitude(prev) | magnitude(minsd)) >= FLOAT_EXACT) {
+      return 1;
+    }
+    for (int i = 1; i < npts; i++) {
+      int g = (int) data[i];
+      int a = g + minsd;
+      int f = a + prev;
+      if ((magnitude(g) | magnitude(a) | magnitude(f)) >= FLOAT_EXACT) {
+        return i;
       }
-      data = tmp;
+      data[i] = f;
+      prev = f;
     }
+    return Math.max(npts, 1);
+  }
 
-    return data;
+  // second order: F(n) = G(n) + minsd + 2 F(n-1) - F(n-2), for 2 <= n < npts. Returns where it stopped.
+  static int undifference2(float[] data, int npts, int minsd) {
+    int prev1 = (int) data[1];
+    int prev2 = (int) data[0];
+    if ((magnitude(prev1) | magnitude(prev2) | magnitude(minsd)) >= FLOAT_EXACT) {
+      return 2;
+    }
+    for (int i = 2; i < npts; i++) {
+      int g = (int) data[i];
+      int a = g + minsd;
+      int b = a + 2 * prev1;
+      int f = b - prev2;
+      if ((magnitude(g) | magnitude(a) | magnitude(b) | magnitude(f)) >= FLOAT_EXACT) {
+        return i;
+      }
+      data[i] = f;
+      prev2 = prev1;
+      prev1 = f;
+    }
+    return Math.max(npts, 2);
+  }
+
+  // one per thread, as the decoder keeps its working buffers from one record to the next, up to a size limit
+  private static final ThreadLocal<Grib2JpegCodestreamDecoder> jpegDecoder =
+      ThreadLocal.withInitial(Grib2JpegCodestreamDecoder::new);
+
+  // Decode the JPEG 2000 code stream, with Grib2JpegCodestreamDecoder if it handles the stream, else with jj2000
+  private int[] decodeJpeg2000(RandomAccessFile raf, Grib2Drs.Type40 gdrs) throws IOException {
+    int nb = gdrs.numberOfBits;
+    byte[] buf = new byte[dataLength - 5];
+    raf.readFully(buf);
+
+    Grib2JpegCodestreamDecoder fast = jpegDecoder.get();
+    try {
+      if (fast.decode(buf, nb)) {
+        gdrs.hasSignedProblem = fast.hasSignedProblem();
+        return fast.getGdata();
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.debug("Grib2JpegCodestreamDecoder failed on {}, using jj2000", raf.getLocation(), e);
+    } finally {
+      fast.trimBuffers();
+    }
+
+    Grib2JpegDecoder g2j = new Grib2JpegDecoder(nb, false);
+    g2j.decode(buf);
+    gdrs.hasSignedProblem = g2j.hasSignedProblem();
+    return g2j.getGdata();
   }
 
   // Grid point data - JPEG 2000 code stream format
@@ -752,14 +828,10 @@ public class Grib2DataReader {
     float EE = (float) java.lang.Math.pow(2.0, (double) E);
     float ref_val = R / DD;
 
-    Grib2JpegDecoder g2j = null;
+    int[] idata = null;
     // try {
     if (nb != 0) { // there's data to decode
-      g2j = new Grib2JpegDecoder(nb, false);
-      byte[] buf = new byte[dataLength - 5];
-      raf.readFully(buf);
-      g2j.decode(buf);
-      gdrs.hasSignedProblem = g2j.hasSignedProblem();
+      idata = decodeJpeg2000(raf, gdrs);
     }
 
     float[] result = new float[totalNPoints];
@@ -772,7 +844,6 @@ public class Grib2DataReader {
       return result;
     }
 
-    int[] idata = g2j.getGdata();
     if (bitmap == null) { // must be one decoded value in idata for every expected data point
       if (idata.length != dataNPoints) {
         logger.debug("Number of points in the data record {} != {} expected from GDS", idata.length, dataNPoints);
@@ -827,14 +898,7 @@ public class Grib2DataReader {
     }
     int missing_value = (2 << nb - 1) - 1; // all ones - reserved for missing value
 
-    Grib2JpegDecoder g2j;
-    g2j = new Grib2JpegDecoder(nb, false);
-    byte[] buf = new byte[dataLength - 5];
-    raf.readFully(buf);
-    g2j.decode(buf);
-    gdrs.hasSignedProblem = g2j.hasSignedProblem();
-
-    int[] idata = g2j.getGdata();
+    int[] idata = decodeJpeg2000(raf, gdrs);
 
     if (bitmap == null) { // must be one decoded value in idata for every expected data point
       if (idata.length != totalNPoints) {
@@ -1086,7 +1150,7 @@ public class Grib2DataReader {
   // Rearrange the data array using the scanning mode.
   // LOOK: not handling scanMode generally
   // LOOK might be wrong for a quasi regular (thin) grid ??
-  private void scanningModeCheck(float[] data, int scanMode, int Xlength) {
+  private void scanningModeCheck(float[] data, int npoints, int scanMode, int Xlength) {
     // Mode 0 +x, -y, adjacent x, adjacent rows same dir
     // Mode 64 +x, +y, adjacent x, adjacent rows same dir
     if ((scanMode == 0) || (scanMode == 64)) // dont flip Y - handle it in the HorizCoordSys
@@ -1098,7 +1162,7 @@ public class Grib2DataReader {
     if (!GribUtils.scanModeXisPositive(scanMode)) {
       float tmp;
       int mid = Xlength / 2;
-      for (int index = 0; index < data.length; index += Xlength) {
+      for (int index = 0; index < npoints; index += Xlength) {
         for (int idx = 0; idx < mid; idx++) {
           tmp = data[index + idx];
           data[index + idx] = data[index + Xlength - idx - 1];
@@ -1111,7 +1175,7 @@ public class Grib2DataReader {
     if (!GribUtils.scanModeSameDirection(scanMode)) {
       float tmp;
       int mid = Xlength / 2;
-      for (int index = 0; index < data.length; index += Xlength) {
+      for (int index = 0; index < npoints; index += Xlength) {
         int row = index / Xlength;
         if (row % 2 != 0) { // odd numbered row, calculate reverse index
           for (int idx = 0; idx < mid; idx++) {
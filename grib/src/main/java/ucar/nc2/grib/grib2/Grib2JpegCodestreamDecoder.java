@@ -0,0 +1,1332 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib.grib2;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A JPEG 2000 decoder for the codestreams of GRIB2 data template 5.40, as written by the jasper (NCEP) and
+ * OpenJPEG (ECMWF) based encoders: a raw codestream with one component, the reversible 5/3 wavelet, and no
+ * quantization. It gives the same result as Grib2JpegDecoder.getGdata(), without the general JJ2000 decoding chain:
+ * no parameter list, file format, colour space, component transform, or ImgWriter stages, and each tile is decoded
+ * in one piece, rather than block by block.
+ * <p>
+ * decode() returns false for a codestream that uses anything outside of that subset (eg several components, the
+ * irreversible 9/7 wavelet, quantization, code-block coding options such as arithmetic coder bypass, ROI, POC or
+ * packed packet headers, or a position driven progression with several precincts); use Grib2JpegDecoder for those.
+ * <p>
+ * Not thread safe; give each thread its own instance. An instance keeps its working buffers from one decode to the
+ * next, so it allocates little when it decodes a sequence of similar records. Call trimBuffers() when done with the
+ * result, so that an idle instance does not hold on to the buffers of an unusually large record.
+ */
+final class Grib2JpegCodestreamDecoder {
+  // markers
+  private static final int SOC = 0xFF4F, SOT = 0xFF90, SOD = 0xFF93;
+  private static final int SIZ = 0xFF51, COD = 0xFF52, COC = 0xFF53, QCD = 0xFF5C, QCC = 0xFF5D;
+  private static final int RGN = 0xFF5E, POC = 0xFF5F, PPM = 0xFF60, PPT = 0xFF61;
+
+  // working buffers larger than this many ints are not kept by trimBuffers()
+  private static final int MAX_KEPT_BUFFER = 1 << 20;
+
+  // progression orders
+  private static final int LRCP = 0, RLCP = 1, RPCL = 2, PCRL = 3, CPRL = 4;
+
+  private int[] gdata;
+  private boolean hasSignedProblem;
+
+  // image and tiling, from SIZ
+  private int xsiz, ysiz, xoff, yoff, tileW, tileH, tileXoff, tileYoff;
+  private int depth;
+  private boolean signed;
+
+  // reused from one decode to the next
+  private final Tier1 tier1 = new Tier1();
+  private int[] coefs = new int[0]; // subband coefficients of a tile
+  private int[] work1 = new int[0]; // wavelet synthesis
+  private int[] work2 = new int[0];
+
+  /**
+   * Decode a codestream.
+   *
+   * @param buf the JPEG 2000 codestream.
+   * @param rate the number of bits per value in the GRIB data representation section.
+   * @return false if the codestream uses features that this decoder does not support.
+   * @throws IOException if the codestream is malformed.
+   */
+  boolean decode(byte[] buf, int rate) throws IOException {
+    gdata = null;
+    hasSignedProblem = false;
+    Codestream cs = new Codestream(buf);
+    if (buf.length < 2 || cs.u16() != SOC)
+      return false;
+
+    // main header
+    CodingStyle main = new CodingStyle();
+    boolean haveSiz = false;
+    int marker;
+    while (true) {
+      marker = cs.u16();
+      if (marker == SOT)
+        break;
+      if (marker < 0xFF00)
+        throw new IOException("Bad marker in main header: " + Integer.toHexString(marker));
+      int len = cs.u16();
+      int next = cs.pos + len - 2;
+      switch (marker) {
+        case SIZ:
+          if (!readSiz(cs))
+            return false;
+          haveSiz = true;
+          break;
+        case COD:
+          main.readCod(cs);
+          break;
+        case COC:
+          main.readCoc(cs);
+          break;
+        case QCD:
+          main.readQcd(cs, next);
+          break;
+        case QCC:
+          main.readQcc(cs, next);
+          break;
+        case RGN:
+        case POC:
+        case PPM:
+          return false;
+        default: // TLM, PLM, CRG, COM
+      }
+      cs.seek(next);
+    }
+    if (!haveSiz || main.levels < 0)
+      throw new IOException("Missing SIZ or COD marker");
+
+    // tile parts
+    int ntx = ceilDiv(xsiz - tileXoff, tileW);
+    int nty = ceilDiv(ysiz - tileYoff, tileH);
+    Tile[] tiles = new Tile[ntx * nty];
+    while (marker == SOT) {
+      int sotPos = cs.pos - 2;
+      cs.u16(); // Lsot
+      int isot = cs.u16();
+      long psot = cs.u32();
+      cs.u8(); // TPsot
+      cs.u8(); // TNsot
+      if (isot >= tiles.length)
+        throw new IOException("Bad tile index " + isot);
+      Tile tile = tiles[isot];
+      boolean first = (tile == null);
+      if (first)
+        tile = tiles[isot] = new Tile(isot % ntx, isot / ntx, new CodingStyle(main));
+
+      while (true) {
+        marker = cs.u16();
+        if (marker == SOD)
+          break;
+        int len = cs.u16();
+        int next = cs.pos + len - 2;
+        switch (marker) {
+          case COD:
+            if (first)
+              tile.style.readCod(cs);
+            break;
+          case COC:
+            if (first)
+              tile.style.readCoc(cs);
+            break;
+          case QCD:
+            if (first)
+              tile.style.readQcd(cs, next);
+            break;
+          case QCC:
+            if (first)
+              tile.style.readQcc(cs, next);
+            break;
+          case RGN:
+          case POC:
+          case PPT:
+            return false;
+          default: // PLT, COM
+        }
+        cs.seek(next);
+      }
+
+      int end;
+      if (psot == 0) { // the last tile part runs to EOC
+        end = buf.length;
+        if (end >= 2 && (buf[end - 2] & 0xff) == 0xFF && (buf[end - 1] & 0xff) == 0xD9)
+          end -= 2;
+      } else {
+        end = (int) Math.min(buf.length, sotPos + psot);
+      }
+      tile.addPart(buf, cs.pos, end);
+      if (end + 2 > buf.length)
+        break;
+      cs.seek(end);
+      marker = cs.u16();
+    }
+
+    long npts = (long) (xsiz - xoff) * (ysiz - yoff);
+    if (npts > Integer.MAX_VALUE)
+      throw new IOException("Image too large: " + npts);
+    int[] result = new int[(int) npts];
+    for (int i = 0; i < tiles.length; i++) {
+      Tile tile = tiles[i];
+      if (tile == null)
+        tile = new Tile(i % ntx, i / ntx, main);
+      if (!decodeTile(tile, result))
+        return false;
+    }
+
+    if (!signed) {
+      int levShift = 1 << (depth - 1);
+      for (int i = 0; i < result.length; i++)
+        result[i] += levShift;
+      hasSignedProblem = (depth != rate);
+    }
+    gdata = result;
+    return true;
+  }
+
+  /** The decoded values, in raster order; null if decode() returned false. */
+  int[] getGdata() {
+    return gdata;
+  }
+
+  /** Same as Grib2JpegDecoder.hasSignedProblem(). */
+  boolean hasSignedProblem() {
+    return hasSignedProblem;
+  }
+
+  /** Drop the decoded values, and the working buffers that are larger than MAX_KEPT_BUFFER. */
+  void trimBuffers() {
+    gdata = null;
+    if (coefs.length > MAX_KEPT_BUFFER)
+      coefs = new int[0];
+    if (work1.length > MAX_KEPT_BUFFER) {
+      work1 = new int[0];
+      work2 = new int[0];
+    }
+    tier1.trimBuffers();
+  }
+
+  private boolean readSiz(Codestream cs) throws IOException {
+    cs.u16(); // Rsiz
+    xsiz = cs.s32();
+    ysiz = cs.s32();
+    xoff = cs.s32();
+    yoff = cs.s32();
+    tileW = cs.s32();
+    tileH = cs.s32();
+    tileXoff = cs.s32();
+    tileYoff = cs.s32();
+    int ncomps = cs.u16();
+    if (ncomps != 1)
+      return false;
+    int ssiz = cs.u8();
+    int xr = cs.u8();
+    int yr = cs.u8();
+    if (xr != 1 || yr != 1)
+      return false;
+    depth = (ssiz & 0x7f) + 1;
+    signed = (ssiz & 0x80) != 0;
+    if (xsiz <= xoff || ysiz <= yoff || tileW <= 0 || tileH <= 0 || tileXoff > xoff || tileYoff > yoff
+        || tileXoff + tileW <= xoff || tileYoff + tileH <= yoff)
+      throw new IOException("Bad SIZ marker");
+    return depth <= 30;
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////////
+  // tiles
+
+  private boolean decodeTile(Tile tile, int[] result) throws IOException {
+    CodingStyle style = tile.style;
+    if (style.transform != 1 || style.quantStyle != 0 || style.cbStyle != 0)
+      return false;
+
+    int tx0 = Math.max(tileXoff + tile.p * tileW, xoff);
+    int ty0 = Math.max(tileYoff + tile.q * tileH, yoff);
+    int tx1 = Math.min(tileXoff + (tile.p + 1) * tileW, xsiz);
+    int ty1 = Math.min(tileYoff + (tile.q + 1) * tileH, ysiz);
+    int nl = style.levels;
+
+    // resolutions, subbands and precincts
+    Resolution[] res = new Resolution[nl + 1];
+    int coefPos = 0;
+    for (int r = 0; r <= nl; r++) {
+      Resolution rr = res[r] = new Resolution(r, nl, tx0, ty0, tx1, ty1, style);
+      for (Subband band : rr.bands) {
+        int mb = style.guardBits + style.exponent(band.index) - 1;
+        if (mb > 30)
+          return false;
+        band.mb = mb;
+        band.offset = coefPos;
+        coefPos += band.width() * band.height();
+      }
+    }
+    if (coefs.length < coefPos)
+      coefs = new int[coefPos];
+    else
+      Arrays.fill(coefs, 0, coefPos, 0);
+
+    // packets
+    PacketReader packets = new PacketReader(tile.data, tile.start, tile.end, style);
+    try {
+      switch (style.progression) {
+        case LRCP:
+          for (int l = 0; l < style.layers; l++)
+            for (Resolution rr : res)
+              for (Precinct prec : rr.precincts)
+                packets.read(l, rr, prec);
+          break;
+        case RLCP:
+        case RPCL:
+        case PCRL:
+        case CPRL:
+          if (style.progression != RLCP && !isResolutionOrder(res, style.progression, tx0, ty0))
+            return false;
+          for (Resolution rr : res)
+            for (int l = 0; l < style.layers; l++)
+              for (Precinct prec : rr.precincts)
+                packets.read(l, rr, prec);
+          break;
+        default:
+          throw new IOException("Bad progression order " + style.progression);
+      }
+    } catch (EOFException e) {
+      // truncated codestream: decode what was read
+    }
+
+    // code-blocks
+    for (Resolution rr : res) {
+      for (Precinct prec : rr.precincts) {
+        for (int b = 0; b < rr.bands.length; b++) {
+          Subband band = rr.bands[b];
+          for (CodeBlock cb : prec.blocks[b]) {
+            if (cb.npasses > 0)
+              tier1.decode(cb, band, coefs);
+          }
+        }
+      }
+    }
+
+    // wavelet synthesis
+    int w = tx1 - tx0;
+    int h = ty1 - ty0;
+    int[] tileData = synthesize(res);
+    int dst = (ty0 - yoff) * (xsiz - xoff) + (tx0 - xoff);
+    for (int y = 0; y < h; y++, dst += xsiz - xoff)
+      System.arraycopy(tileData, y * w, result, dst, w);
+    return true;
+  }
+
+  /*
+   * With one component, and one precinct in each resolution, a position driven progression is the same as RLCP,
+   * if every resolution's precinct is reached at the first position of the tile (JPEG 2000 part 1, B.12.1.3).
+   */
+  private static boolean isResolutionOrder(Resolution[] res, int progression, int tx0, int ty0) {
+    for (Resolution rr : res) {
+      if (rr.precincts.length > 1)
+        return false;
+    }
+    if (progression == RPCL)
+      return true;
+    for (Resolution rr : res) {
+      if (rr.precincts.length == 0)
+        continue;
+      int shift = rr.nl - rr.r;
+      boolean atX = (tx0 % (1L << (rr.ppx + shift)) == 0) || (rr.x0 % (1L << rr.ppx) != 0);
+      boolean atY = (ty0 % (1L << (rr.ppy + shift)) == 0) || (rr.y0 % (1L << rr.ppy) != 0);
+      if (!atX || !atY)
+        return false;
+    }
+    return true;
+  }
+
+  /** Inverse reversible 5/3 wavelet transform of the tile, JPEG 2000 part 1, F.3. */
+  private int[] synthesize(Resolution[] res) {
+    Resolution r0 = res[0];
+    Subband ll = r0.bands[0];
+    int size = r0.width() * r0.height();
+    Resolution top = res[res.length - 1];
+    int tileSize = top.width() * top.height();
+    if (work1.length < tileSize) {
+      work1 = new int[tileSize];
+      work2 = new int[tileSize];
+    }
+    int[] cur = work1;
+    int[] next = work2;
+    System.arraycopy(coefs, ll.offset, cur, 0, size);
+
+    for (int r = 1; r < res.length; r++) {
+      Resolution rr = res[r];
+      Resolution prev = res[r - 1];
+      int u0 = rr.x0;
+      int v0 = rr.y0;
+      int w = rr.width();
+      int h = rr.height();
+      int lw = prev.width(); // width of LL and LH
+      Subband hl = rr.bands[0];
+      Subband lh = rr.bands[1];
+      Subband hh = rr.bands[2];
+      int hw = hl.width(); // width of HL and HH
+
+      // interleave the subbands, and synthesize the rows
+      for (int y = 0; y < h; y++) {
+        boolean lowRow = ((v0 + y) & 1) == 0;
+        int ri = y >> 1;
+        int[] lowSrc = lowRow ? cur : coefs;
+        int lowPos = lowRow ? ri * lw : lh.offset + ri * lw;
+        int highPos = (lowRow ? hl.offset : hh.offset) + ri * hw;
+        int row = y * w;
+        for (int t = 0; t < w; t++) {
+          if (((u0 + t) & 1) == 0)
+            next[row + t] = lowSrc[lowPos + (t >> 1)];
+          else
+            next[row + t] = coefs[highPos + (t >> 1)];
+        }
+        lift(next, row, 1, w, u0 & 1);
+      }
+
+      // synthesize the columns, a row at a time
+      liftColumns(next, w, h, v0 & 1);
+
+      int[] tmp = cur;
+      cur = next;
+      next = tmp;
+    }
+    return cur;
+  }
+
+  /*
+   * 1D reversible synthesis in place, on interleaved samples, with symmetric extension.
+   * odd == 1 if the first sample has an odd coordinate, ie is a high pass sample.
+   */
+  private static void lift(int[] x, int off, int step, int n, int odd) {
+    if (n == 1) {
+      if (odd == 1)
+        x[off] >>= 1;
+      return;
+    }
+    int last = off + (n - 1) * step;
+    // even (low pass) samples
+    for (int t = odd == 0 ? 0 : 1; t < n; t += 2) {
+      int p = off + t * step;
+      int left = (t == 0) ? x[p + step] : x[p - step];
+      int right = (t == n - 1) ? x[p - step] : x[p + step];
+      x[p] -= (left + right + 2) >> 2;
+    }
+    // odd (high pass) samples
+    for (int t = 1 - odd; t < n; t += 2) {
+      int p = off + t * step;
+      int left = (t == 0) ? x[p + step] : x[p - step];
+      int right = (p == last) ? x[p - step] : x[p + step];
+      x[p] += (left + right) >> 1;
+    }
+  }
+
+  // lift() applied to every column of a w x h array, processing whole rows for locality
+  private static void liftColumns(int[] a, int w, int h, int odd) {
+    if (h == 1) {
+      if (odd == 1) {
+        for (int j = 0; j < w; j++)
+          a[j] >>= 1;
+      }
+      return;
+    }
+    for (int t = odd == 0 ? 0 : 1; t < h; t += 2) {
+      int up = (t == 0) ? 1 : t - 1;
+      int down = (t == h - 1) ? t - 1 : t + 1;
+      int p = t * w;
+      int pu = up * w;
+      int pd = down * w;
+      for (int j = 0; j < w; j++)
+        a[p + j] -= (a[pu + j] + a[pd + j] + 2) >> 2;
+    }
+    for (int t = 1 - odd; t < h; t += 2) {
+      int up = (t == 0) ? 1 : t - 1;
+      int down = (t == h - 1) ? t - 1 : t + 1;
+      int p = t * w;
+      int pu = up * w;
+      int pd = down * w;
+      for (int j = 0; j < w; j++)
+        a[p + j] += (a[pu + j] + a[pd + j]) >> 1;
+    }
+  }
+
+  private static int ceilDiv(long a, long b) {
+    return (int) -Math.floorDiv(-a, b);
+  }
+
+  private static int ceilDivPow2(int a, int n) {
+    return (int) -((-(long) a) >> n);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////////
+  // headers
+
+  private static final class Codestream {
+    private final byte[] buf;
+    private int pos;
+
+    Codestream(byte[] buf) {
+      this.buf = buf;
+    }
+
+    void seek(int pos) throws IOException {
+      if (pos < this.pos - 2 || pos > buf.length)
+        throw new IOException("Bad marker segment length");
+      this.pos = pos;
+    }
+
+    int u8() throws IOException {
+      if (pos >= buf.length)
+        throw new EOFException("Codestream too short");
+      return buf[pos++] & 0xff;
+    }
+
+    int u16() throws IOException {
+      return (u8() << 8) | u8();
+    }
+
+    long u32() throws IOException {
+      return ((long) u16() << 16) | u16();
+    }
+
+    int s32() throws IOException {
+      long v = u32();
+      if (v > Integer.MAX_VALUE)
+        throw new IOException("Value too large: " + v);
+      return (int) v;
+    }
+  }
+
+  /** COD, COC, QCD and QCC parameters of the component, for the main header or a tile. */
+  private static final class CodingStyle {
+    boolean sop, eph;
+    int progression, layers;
+    int levels = -1, cbw, cbh, cbStyle, transform;
+    int[] ppx, ppy;
+    int quantStyle, guardBits;
+    int[] exponents = new int[0];
+    private boolean haveCoc, haveQcc; // COC and QCC override COD and QCD in the same header
+
+    CodingStyle() {}
+
+    // the tile header starts from the main header; tile COD and QCD override main COC and QCC
+    CodingStyle(CodingStyle from) {
+      sop = from.sop;
+      eph = from.eph;
+      progression = from.progression;
+      layers = from.layers;
+      levels = from.levels;
+      cbw = from.cbw;
+      cbh = from.cbh;
+      cbStyle = from.cbStyle;
+      transform = from.transform;
+      ppx = from.ppx;
+      ppy = from.ppy;
+      quantStyle = from.quantStyle;
+      guardBits = from.guardBits;
+      exponents = from.exponents;
+    }
+
+    void readCod(Codestream cs) throws IOException {
+      int scod = cs.u8();
+      sop = (scod & 2) != 0;
+      eph = (scod & 4) != 0;
+      progression = cs.u8();
+      layers = cs.u16();
+      cs.u8(); // multiple component transform
+      if (layers == 0)
+        throw new IOException("Bad number of layers");
+      if (!haveCoc)
+        readSPcod(cs, (scod & 1) != 0);
+    }
+
+    void readCoc(Codestream cs) throws IOException {
+      cs.u8(); // the one component
+      int scoc = cs.u8();
+      readSPcod(cs, (scoc & 1) != 0);
+      haveCoc = true;
+    }
+
+    private void readSPcod(Codestream cs, boolean hasPrecincts) throws IOException {
+      levels = cs.u8();
+      cbw = cs.u8() + 2;
+      cbh = cs.u8() + 2;
+      cbStyle = cs.u8();
+      transform = cs.u8();
+      if (levels > 32 || cbw > 10 || cbh > 10 || cbw + cbh > 12)
+        throw new IOException("Bad COD marker");
+      ppx = new int[levels + 1];
+      ppy = new int[levels + 1];
+      for (int r = 0; r <= levels; r++) {
+        int pp = hasPrecincts ? cs.u8() : 0xff;
+        ppx[r] = pp & 0xf;
+        ppy[r] = pp >> 4;
+        if (r > 0 && (ppx[r] == 0 || ppy[r] == 0))
+          throw new IOException("Bad precinct size");
+      }
+    }
+
+    void readQcd(Codestream cs, int end) throws IOException {
+      if (!haveQcc)
+        readSPqcd(cs, end);
+    }
+
+    void readQcc(Codestream cs, int end) throws IOException {
+      cs.u8(); // the one component
+      readSPqcd(cs, end);
+      haveQcc = true;
+    }
+
+    private void readSPqcd(Codestream cs, int end) throws IOException {
+      int sqcd = cs.u8();
+      quantStyle = sqcd & 0x1f;
+      guardBits = sqcd >> 5;
+      if (quantStyle != 0)
+        return; // not supported
+      exponents = new int[end - cs.pos];
+      for (int i = 0; i < exponents.length; i++)
+        exponents[i] = cs.u8() >> 3;
+    }
+
+    // exponent of the subband, in the order LL, then HL, LH, HH of each level
+    int exponent(int band) throws IOException {
+      if (band >= exponents.length)
+        throw new IOException("Missing exponent for subband " + band);
+      return exponents[band];
+    }
+  }
+
+  /** The data of a tile, in one or more tile parts. */
+  private static final class Tile {
+    final int p, q;
+    final CodingStyle style;
+    byte[] data;
+    int start, end;
+
+    Tile(int p, int q, CodingStyle style) {
+      this.p = p;
+      this.q = q;
+      this.style = style;
+    }
+
+    void addPart(byte[] buf, int from, int to) {
+      if (to <= from)
+        return;
+      if (data == null) {
+        data = buf;
+        start = from;
+        end = to;
+      } else { // concatenate the parts
+        byte[] joined = Arrays.copyOfRange(data, start, end + (to - from));
+        System.arraycopy(buf, from, joined, end - start, to - from);
+        data = joined;
+        start = 0;
+        end = joined.length;
+      }
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////////
+  // tile structure, JPEG 2000 part 1, B.5 - B.7
+
+  private static final class Resolution {
+    final int r, nl;
+    final int x0, y0, x1, y1; // in resolution coordinates
+    final int ppx, ppy;
+    final Subband[] bands;
+    final Precinct[] precincts;
+
+    Resolution(int r, int nl, int tx0, int ty0, int tx1, int ty1, CodingStyle style) {
+      this.r = r;
+      this.nl = nl;
+      int shift = nl - r;
+      x0 = ceilDivPow2(tx0, shift);
+      y0 = ceilDivPow2(ty0, shift);
+      x1 = ceilDivPow2(tx1, shift);
+      y1 = ceilDivPow2(ty1, shift);
+      ppx = style.ppx[r];
+      ppy = style.ppy[r];
+
+      if (r == 0) {
+        bands = new Subband[] {new Subband(0, 0, nl, tx0, ty0, tx1, ty1)};
+      } else {
+        int nb = nl - r + 1;
+        bands = new Subband[3];
+        for (int o = 1; o <= 3; o++)
+          bands[o - 1] = new Subband(o, 3 * (r - 1) + o, nb, tx0, ty0, tx1, ty1);
+      }
+
+      // code-block size in the subbands, limited by the precinct size
+      int bandPpx = (r == 0) ? ppx : ppx - 1;
+      int bandPpy = (r == 0) ? ppy : ppy - 1;
+      int cbw = Math.min(style.cbw, bandPpx);
+      int cbh = Math.min(style.cbh, bandPpy);
+
+      int npx = (x1 > x0) ? ceilDivPow2(x1, ppx) - (x0 >> ppx) : 0;
+      int npy = (y1 > y0) ? ceilDivPow2(y1, ppy) - (y0 >> ppy) : 0;
+      precincts = new Precinct[npx * npy];
+      for (int j = 0; j < npy; j++) {
+        for (int i = 0; i < npx; i++) {
+          int px = (x0 >> ppx) + i;
+          int py = (y0 >> ppy) + j;
+          precincts[j * npx + i] = new Precinct(bands, px, py, bandPpx, bandPpy, cbw, cbh);
+        }
+      }
+    }
+
+    int width() {
+      return x1 - x0;
+    }
+
+    int height() {
+      return y1 - y0;
+    }
+  }
+
+  private static final class Subband {
+    final int orientation; // 0 = LL, 1 = HL, 2 = LH, 3 = HH
+    final int index; // into the quantization exponents
+    final int x0, y0, x1, y1; // in subband coordinates
+    int mb; // number of magnitude bits
+    int offset; // into coefs
+
+    Subband(int orientation, int index, int nb, int tx0, int ty0, int tx1, int ty1) {
+      this.orientation = orientation;
+      this.index = index;
+      int xob = orientation & 1;
+      int yob = orientation >> 1;
+      long xo = (long) xob << (nb - 1);
+      long yo = (long) yob << (nb - 1);
+      x0 = ceilDiv(tx0 - xo, 1L << nb);
+      y0 = ceilDiv(ty0 - yo, 1L << nb);
+      x1 = ceilDiv(tx1 - xo, 1L << nb);
+      y1 = ceilDiv(ty1 - yo, 1L << nb);
+    }
+
+    int width() {
+      return x1 - x0;
+    }
+
+    int height() {
+      return y1 - y0;
+    }
+  }
+
+  private static final class Precinct {
+    final CodeBlock[][] blocks; // for each subband, in raster order
+    final int[] ncbx;
+    final TagTree[] inclusion, zeroPlanes;
+
+    Precinct(Subband[] bands, int px, int py, int bandPpx, int bandPpy, int cbw, int cbh) {
+      blocks = new CodeBlock[bands.length][];
+      ncbx = new int[bands.length];
+      inclusion = new TagTree[bands.length];
+      zeroPlanes = new TagTree[bands.length];
+      for (int b = 0; b < bands.length; b++) {
+        Subband band = bands[b];
+        // the precinct, in subband coordinates, clipped to the subband
+        long pbx0 = Math.max(band.x0, (long) px << bandPpx);
+        long pby0 = Math.max(band.y0, (long) py << bandPpy);
+        long pbx1 = Math.min(band.x1, (long) (px + 1) << bandPpx);
+        long pby1 = Math.min(band.y1, (long) (py + 1) << bandPpy);
+        if (pbx1 <= pbx0 || pby1 <= pby0) {
+          blocks[b] = new CodeBlock[0];
+          continue;
+        }
+        int cbx0 = (int) (pbx0 >> cbw);
+        int cby0 = (int) (pby0 >> cbh);
+        int nx = (int) ((pbx1 + (1L << cbw) - 1) >> cbw) - cbx0;
+        int ny = (int) ((pby1 + (1L << cbh) - 1) >> cbh) - cby0;
+        ncbx[b] = nx;
+        blocks[b] = new CodeBlock[nx * ny];
+        for (int j = 0; j < ny; j++) {
+          for (int i = 0; i < nx; i++) {
+            int bx = (cbx0 + i) << cbw;
+            int by = (cby0 + j) << cbh;
+            blocks[b][j * nx + i] = new CodeBlock(Math.max(bx, band.x0), Math.max(by, band.y0),
+                Math.min(bx + (1 << cbw), band.x1), Math.min(by + (1 << cbh), band.y1));
+          }
+        }
+        inclusion[b] = new TagTree(nx, ny);
+        zeroPlanes[b] = new TagTree(nx, ny);
+      }
+    }
+  }
+
+  private static final class CodeBlock {
+    final int x0, y0, x1, y1; // in subband coordinates
+    boolean included;
+    int numbps; // number of coded bit planes
+    int lblock = 3;
+    int npasses; // received so far
+
+    // the one codeword segment is in data[dataStart, dataStart + dataLen)
+    byte[] data;
+    int dataStart, dataLen;
+    boolean ownsData;
+
+    CodeBlock(int x0, int y0, int x1, int y1) {
+      this.x0 = x0;
+      this.y0 = y0;
+      this.x1 = x1;
+      this.y1 = y1;
+    }
+
+    // usually all of a code-block's data is in one packet, so refer to it in place
+    void addData(byte[] buf, int from, int len) {
+      if (data == null) {
+        data = buf;
+        dataStart = from;
+        dataLen = len;
+        return;
+      }
+      if (!ownsData || dataLen + len > data.length) {
+        byte[] copy = new byte[Math.max(2 * (dataLen + len), 64)];
+        System.arraycopy(data, dataStart, copy, 0, dataLen);
+        data = copy;
+        dataStart = 0;
+        ownsData = true;
+      }
+      System.arraycopy(buf, from, data, dataLen, len);
+      dataLen += len;
+    }
+  }
+
+  /** JPEG 2000 part 1, B.10.2. */
+  private static final class TagTree {
+    private final int[] value, low, parent;
+    private final int[] stack = new int[32];
+
+    TagTree(int w, int h) {
+      int n = 0;
+      int lw = w, lh = h;
+      while (true) {
+        n += lw * lh;
+        if (lw * lh == 1)
+          break;
+        lw = (lw + 1) >> 1;
+        lh = (lh + 1) >> 1;
+      }
+      value = new int[n];
+      low = new int[n];
+      parent = new int[n];
+      Arrays.fill(value, Integer.MAX_VALUE);
+
+      int start = 0;
+      lw = w;
+      lh = h;
+      while (lw * lh > 1) {
+        int pw = (lw + 1) >> 1;
+        int pstart = start + lw * lh;
+        for (int j = 0; j < lh; j++)
+          for (int i = 0; i < lw; i++)
+            parent[start + j * lw + i] = pstart + (j >> 1) * pw + (i >> 1);
+        start = pstart;
+        lw = pw;
+        lh = (lh + 1) >> 1;
+      }
+      parent[n - 1] = -1;
+    }
+
+    /** Is the value of the leaf less than threshold? */
+    boolean decode(PacketReader in, int leaf, int threshold) throws IOException {
+      int depth = 0;
+      for (int node = leaf; node >= 0; node = parent[node])
+        stack[depth++] = node;
+      int lowv = 0;
+      for (int k = depth - 1; k >= 0; k--) {
+        int node = stack[k];
+        if (lowv > low[node])
+          low[node] = lowv;
+        else
+          lowv = low[node];
+        while (lowv < threshold && lowv < value[node]) {
+          if (in.bit() != 0)
+            value[node] = lowv;
+          else
+            lowv++;
+        }
+        low[node] = lowv;
+      }
+      return value[leaf] < threshold;
+    }
+
+    int decodeValue(PacketReader in, int leaf) throws IOException {
+      int threshold = 1;
+      while (!decode(in, leaf, threshold))
+        threshold++;
+      return value[leaf];
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////////
+  // tier 2, JPEG 2000 part 1, B.9 - B.10
+
+  private static final class PacketReader {
+    private final byte[] buf;
+    private final int end;
+    private final CodingStyle style;
+    private int pos;
+    private int bits, ct; // packet header bits
+
+    PacketReader(byte[] buf, int start, int end, CodingStyle style) {
+      this.buf = buf;
+      this.pos = start;
+      this.end = (buf == null) ? 0 : end;
+      this.style = style;
+    }
+
+    int bit() throws IOException {
+      if (ct == 0) {
+        if (pos >= end)
+          throw new EOFException();
+        boolean stuffed = (bits == 0xff);
+        bits = buf[pos++] & 0xff;
+        ct = stuffed ? 7 : 8;
+      }
+      ct--;
+      return (bits >> ct) & 1;
+    }
+
+    int bits(int n) throws IOException {
+      int v = 0;
+      for (int i = 0; i < n; i++)
+        v = (v << 1) | bit();
+      return v;
+    }
+
+    private boolean atMarker(int second) {
+      return pos + 1 < end && (buf[pos] & 0xff) == 0xFF && (buf[pos + 1] & 0xff) == second;
+    }
+
+    void read(int layer, Resolution res, Precinct prec) throws IOException {
+      if (pos >= end)
+        throw new EOFException();
+      if (style.sop && atMarker(0x91))
+        pos += 6;
+      bits = 0;
+      ct = 0;
+
+      // header
+      int ncontrib = 0;
+      CodeBlock[] contrib = null;
+      int[] contribLen = null;
+      if (bit() != 0) {
+        int total = 0;
+        for (CodeBlock[] blocks : prec.blocks)
+          total += blocks.length;
+        contrib = new CodeBlock[total];
+        contribLen = new int[total];
+
+        for (int b = 0; b < res.bands.length; b++) {
+          CodeBlock[] blocks = prec.blocks[b];
+          for (int i = 0; i < blocks.length; i++) {
+            CodeBlock cb = blocks[i];
+            boolean first = false;
+            if (!cb.included) {
+              if (!prec.inclusion[b].decode(this, i, layer + 1))
+                continue;
+              first = true;
+            } else if (bit() == 0) {
+              continue;
+            }
+            if (first) {
+              int zero = prec.zeroPlanes[b].decodeValue(this, i);
+              cb.numbps = res.bands[b].mb - zero;
+              if (cb.numbps < 0)
+                throw new IOException("Bad number of zero bit planes");
+              cb.included = true;
+            }
+            int npasses = readNumPasses();
+            while (bit() != 0)
+              cb.lblock++;
+
+            int len = bits(cb.lblock + floorLog2(npasses));
+            if (ncontrib == contrib.length) {
+              contrib = Arrays.copyOf(contrib, 2 * ncontrib);
+              contribLen = Arrays.copyOf(contribLen, 2 * ncontrib);
+            }
+            contrib[ncontrib] = cb;
+            contribLen[ncontrib++] = len;
+            cb.npasses += npasses;
+          }
+        }
+      }
+      // align to a byte, skipping a stuffed byte
+      if (bits == 0xff) {
+        if (pos >= end)
+          throw new EOFException();
+        pos++;
+      }
+      if (style.eph && atMarker(0x92))
+        pos += 2;
+
+      // body
+      for (int i = 0; i < ncontrib; i++) {
+        int len = Math.min(contribLen[i], end - pos);
+        contrib[i].addData(buf, pos, len);
+        pos += len;
+        if (len < contribLen[i])
+          throw new EOFException();
+      }
+    }
+
+    private int readNumPasses() throws IOException {
+      if (bit() == 0)
+        return 1;
+      if (bit() == 0)
+        return 2;
+      int n = bits(2);
+      if (n < 3)
+        return 3 + n;
+      n = bits(5);
+      if (n < 31)
+        return 6 + n;
+      return 37 + bits(7);
+    }
+  }
+
+  private static int floorLog2(int n) {
+    return 31 - Integer.numberOfLeadingZeros(n);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////////
+  // tier 1, JPEG 2000 part 1, annex C and D
+
+  private static final int[] QE = {0x5601, 0x3401, 0x1801, 0x0AC1, 0x0521, 0x0221, 0x5601, 0x5401, 0x4801, 0x3801,
+      0x3001, 0x2401, 0x1C01, 0x1601, 0x5601, 0x5401, 0x5101, 0x4801, 0x3801, 0x3401, 0x3001, 0x2801, 0x2401, 0x2201,
+      0x1C01, 0x1801, 0x1601, 0x1401, 0x1201, 0x1101, 0x0AC1, 0x09C1, 0x08A1, 0x0521, 0x0441, 0x02A1, 0x0221, 0x0141,
+      0x0111, 0x0085, 0x0049, 0x0025, 0x0015, 0x0009, 0x0005, 0x0001, 0x5601};
+  private static final int[] NMPS = {1, 2, 3, 4, 5, 38, 7, 8, 9, 10, 11, 12, 13, 29, 15, 16, 17, 18, 19, 20, 21, 22,
+      23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34, 35, 36, 37, 38, 39, 40, 41, 42, 43, 44, 45, 45, 46};
+  private static final int[] NLPS = {1, 6, 9, 12, 29, 33, 6, 14, 14, 14, 17, 18, 20, 21, 14, 14, 15, 16, 17, 18, 19,
+      19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34, 35, 36, 37, 38, 39, 40, 41, 42, 43, 46};
+  private static final boolean[] SWITCH = new boolean[47];
+  static {
+    SWITCH[0] = SWITCH[6] = SWITCH[14] = true;
+  }
+
+  // contexts
+  private static final int SC_CTX = 9, MR_CTX = 14, AGG_CTX = 17, UNI_CTX = 18, NUM_CTX = 19;
+
+  // zero coding context for each subband orientation, indexed by 15 * h + 5 * v + d, Table D.1
+  private static final byte[][] ZC_CTX = new byte[4][45];
+  static {
+    for (int o = 0; o < 4; o++)
+      for (int h = 0; h <= 2; h++)
+        for (int v = 0; v <= 2; v++)
+          for (int d = 0; d <= 4; d++)
+            ZC_CTX[o][15 * h + 5 * v + d] = (byte) zeroCodingContext(o, h, v, d);
+  }
+
+  private static int zeroCodingContext(int orientation, int h, int v, int d) {
+    if (orientation == 1) { // HL: swap h and v
+      int t = h;
+      h = v;
+      v = t;
+    }
+    if (orientation == 3) { // HH
+      int hv = h + v;
+      if (d >= 3)
+        return 8;
+      if (d == 2)
+        return hv >= 1 ? 7 : 6;
+      if (d == 1)
+        return hv >= 2 ? 5 : hv == 1 ? 4 : 3;
+      return hv >= 2 ? 2 : hv;
+    }
+    if (h == 2)
+      return 8;
+    if (h == 1)
+      return v >= 1 ? 7 : d >= 1 ? 6 : 5;
+    if (v == 2)
+      return 4;
+    if (v == 1)
+      return 3;
+    return d >= 2 ? 2 : d;
+  }
+
+  // flags
+  private static final int SIG = 1, VISIT = 2, REFINED = 4, NEG = 8;
+
+  /** Decodes code-blocks. The working arrays are kept for the next code-block. */
+  private static final class Tier1 {
+    private int[] flags = new int[0]; // with a border of one
+    private int[] mags = new int[0];
+    private final int[] state = new int[NUM_CTX];
+    private final int[] mps = new int[NUM_CTX];
+
+    private int w, h, fw;
+    private byte[] zc;
+
+    // MQ decoder state
+    private byte[] buf;
+    private int bp, end;
+    private int a, c, ct, b;
+
+    /** Drop the working arrays that are larger than MAX_KEPT_BUFFER, and the reference to the code-block data. */
+    void trimBuffers() {
+      if (flags.length > MAX_KEPT_BUFFER)
+        flags = new int[0];
+      if (mags.length > MAX_KEPT_BUFFER)
+        mags = new int[0];
+      buf = null;
+    }
+
+    void decode(CodeBlock cb, Subband band, int[] coefs) {
+      w = cb.x1 - cb.x0;
+      h = cb.y1 - cb.y0;
+      fw = w + 2;
+      int fsize = fw * (h + 2);
+      if (flags.length < fsize)
+        flags = new int[fsize];
+      else
+        Arrays.fill(flags, 0, fsize, 0);
+      if (mags.length < w * h)
+        mags = new int[w * h];
+      else
+        Arrays.fill(mags, 0, w * h, 0);
+      zc = ZC_CTX[band.orientation];
+      resetContexts();
+      initMq(cb.data, cb.dataStart, cb.dataStart + cb.dataLen);
+
+      int npasses = Math.min(cb.npasses, 3 * cb.numbps - 2);
+      for (int pass = 0; pass < npasses; pass++) {
+        int plane = cb.numbps - 1 - (pass + 2) / 3;
+        switch ((pass + 2) % 3) { // passes are cleanup, significance propagation, magnitude refinement, cleanup ...
+          case 0:
+            significancePass(plane);
+            break;
+          case 1:
+            refinementPass(plane);
+            break;
+          default:
+            cleanupPass(plane);
+        }
+      }
+
+      // to the subband, as sign and magnitude
+      int bw = band.width();
+      for (int y = 0; y < h; y++) {
+        int dst = band.offset + (cb.y0 - band.y0 + y) * bw + (cb.x0 - band.x0);
+        int f = (y + 1) * fw + 1;
+        for (int x = 0; x < w; x++) {
+          int m = mags[y * w + x];
+          coefs[dst + x] = (flags[f + x] & NEG) != 0 ? -m : m;
+        }
+      }
+    }
+
+    private void resetContexts() {
+      Arrays.fill(state, 0);
+      Arrays.fill(mps, 0);
+      state[UNI_CTX] = 46;
+      state[AGG_CTX] = 3;
+      state[0] = 4;
+    }
+
+    // significance of the neighbours, as an index into zc
+    private int neighbours(int f) {
+      int[] fl = flags;
+      int hs = (fl[f - 1] & SIG) + (fl[f + 1] & SIG);
+      int vs = (fl[f - fw] & SIG) + (fl[f + fw] & SIG);
+      int ds = (fl[f - fw - 1] & SIG) + (fl[f - fw + 1] & SIG) + (fl[f + fw - 1] & SIG) + (fl[f + fw + 1] & SIG);
+      return 15 * hs + 5 * vs + ds;
+    }
+
+    // Table D.3
+    private int decodeSign(int f) {
+      int[] fl = flags;
+      int hc = contribution(fl[f - 1]) + contribution(fl[f + 1]);
+      int vc = contribution(fl[f - fw]) + contribution(fl[f + fw]);
+      hc = Math.max(-1, Math.min(1, hc));
+      vc = Math.max(-1, Math.min(1, vc));
+      int ctx, xor;
+      if (hc == 0) {
+        ctx = (vc == 0) ? SC_CTX : SC_CTX + 1;
+        xor = (vc < 0) ? 1 : 0;
+      } else {
+        ctx = SC_CTX + 3 + hc * vc;
+        xor = (hc < 0) ? 1 : 0;
+      }
+      return mqDecode(ctx) ^ xor;
+    }
+
+    private static int contribution(int flag) {
+      if ((flag & SIG) == 0)
+        return 0;
+      return (flag & NEG) != 0 ? -1 : 1;
+    }
+
+    private void setSignificant(int f, int i, int sign, int plane) {
+      flags[f] |= SIG | (sign != 0 ? NEG : 0);
+      mags[i] = (1 << plane) | ((1 << plane) >> 1);
+    }
+
+    private void significancePass(int plane) {
+      for (int y0 = 0; y0 < h; y0 += 4) {
+        int ymax = Math.min(y0 + 4, h);
+        for (int x = 0; x < w; x++) {
+          for (int y = y0; y < ymax; y++) {
+            int f = (y + 1) * fw + x + 1;
+            if ((flags[f] & SIG) != 0)
+              continue;
+            int n = neighbours(f);
+            if (n == 0)
+              continue;
+            flags[f] |= VISIT;
+            if (mqDecode(zc[n]) != 0)
+              setSignificant(f, y * w + x, decodeSign(f), plane);
+          }
+        }
+      }
+    }
+
+    private void refinementPass(int plane) {
+      int one = 1 << plane;
+      int half = one >> 1;
+      for (int y0 = 0; y0 < h; y0 += 4) {
+        int ymax = Math.min(y0 + 4, h);
+        for (int x = 0; x < w; x++) {
+          for (int y = y0; y < ymax; y++) {
+            int f = (y + 1) * fw + x + 1;
+            int flag = flags[f];
+            if ((flag & (SIG | VISIT)) != SIG)
+              continue;
+            int ctx;
+            if ((flag & REFINED) != 0)
+              ctx = MR_CTX + 2;
+            else
+              ctx = (neighbours(f) != 0) ? MR_CTX + 1 : MR_CTX;
+            int i = y * w + x;
+            mags[i] = (mags[i] & ~one) | (mqDecode(ctx) != 0 ? one : 0) | half;
+            flags[f] = flag | REFINED;
+          }
+        }
+      }
+    }
+
+    private void cleanupPass(int plane) {
+      for (int y0 = 0; y0 < h; y0 += 4) {
+        int ymax = Math.min(y0 + 4, h);
+        for (int x = 0; x < w; x++) {
+          int f0 = (y0 + 1) * fw + x + 1;
+          int ystart = y0;
+          if (ymax - y0 == 4 && runLength(f0)) {
+            if (mqDecode(AGG_CTX) == 0)
+              continue;
+            int r = (mqDecode(UNI_CTX) << 1) | mqDecode(UNI_CTX);
+            int f = f0 + r * fw;
+            setSignificant(f, (y0 + r) * w + x, decodeSign(f), plane);
+            ystart = y0 + r + 1;
+          }
+          for (int y = ystart; y < ymax; y++) {
+            int f = (y + 1) * fw + x + 1;
+            if ((flags[f] & (SIG | VISIT)) == 0 && mqDecode(zc[neighbours(f)]) != 0)
+              setSignificant(f, y * w + x, decodeSign(f), plane);
+            flags[f] &= ~VISIT;
+          }
+        }
+      }
+    }
+
+    // can the column of 4 starting at f0 be run length coded?
+    private boolean runLength(int f0) {
+      for (int k = 0; k < 4; k++) {
+        int f = f0 + k * fw;
+        if ((flags[f] & (SIG | VISIT)) != 0 || neighbours(f) != 0)
+          return false;
+      }
+      return true;
+    }
+
+    // the MQ decoder, JPEG 2000 part 1, C.3
+
+    private int byteAt(int p) {
+      return p < end ? buf[p] & 0xff : 0xff;
+    }
+
+    private void initMq(byte[] data, int start, int stop) {
+      buf = data;
+      bp = start;
+      end = stop;
+      b = byteAt(bp);
+      c = b << 16;
+      byteIn();
+      c <<= 7;
+      ct -= 7;
+      a = 0x8000;
+    }
+
+    private void byteIn() {
+      if (b == 0xff) {
+        int b1 = byteAt(bp + 1);
+        if (b1 > 0x8f) {
+          c += 0xff00;
+          ct = 8;
+        } else {
+          bp++;
+          b = b1;
+          c += b << 9;
+          ct = 7;
+        }
+      } else {
+        bp++;
+        b = byteAt(bp);
+        c += b << 8;
+        ct = 8;
+      }
+    }
+
+    private int mqDecode(int cx) {
+      int s = state[cx];
+      int qe = QE[s];
+      int d;
+      a -= qe;
+      if ((c >>> 16) < qe) {
+        // LPS exchange
+        if (a < qe) {
+          d = mps[cx];
+          state[cx] = NMPS[s];
+        } else {
+          d = 1 - mps[cx];
+          if (SWITCH[s])
+            mps[cx] = d;
+          state[cx] = NLPS[s];
+        }
+        a = qe;
+      } else {
+        c -= qe << 16;
+        if ((a & 0x8000) != 0)
+          return mps[cx];
+        // MPS exchange
+        if (a < qe) {
+          d = 1 - mps[cx];
+          if (SWITCH[s])
+            mps[cx] = d;
+          state[cx] = NLPS[s];
+        } else {
+          d = mps[cx];
+          state[cx] = NMPS[s];
+        }
+      }
+      do {
+        if (ct == 0)
+          byteIn();
+        a <<= 1;
+        c <<= 1;
+        ct--;
+      } while ((a & 0x8000) == 0);
+      return d;
+    }
+  }
+}
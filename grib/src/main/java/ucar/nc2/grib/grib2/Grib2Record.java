@@ -215,6 +215,19 @@ public class Grib2Record {
 
   // isolate dependencies here - in case we have a "minimal I/O" mode where not all fields are available
   public float[] readData(RandomAccessFile raf) throws IOException {
+    return readData(raf, null);
+  }
+
+  /**
+   * Read data array, decoding into the given buffer if it is big enough, to avoid allocating an array per record.
+   * Thin (quasi-regular) grids are expanded into a new array.
+   *
+   * @param raf from this RandomAccessFile
+   * @param buffer use this if non-null and length >= the number of points
+   * @return data as float[] array: the buffer if it was used, in which case only the first npoints are set
+   * @throws IOException on read error
+   */
+  public float[] readData(RandomAccessFile raf, @Nullable float[] buffer) throws IOException {
     Grib2Gds gds = getGDS();
 
     Grib2DataReader reader = new Grib2DataReader(drss.getDataTemplate(), gdss.getNumberPoints(), drss.getDataPoints(),
@@ -222,7 +235,7 @@ public class Grib2Record {
 
     Grib2Drs gdrs = drss.getDrs(raf);
 
-    float[] data = reader.getData(raf, bms, gdrs);
+    float[] data = reader.getData(raf, bms, gdrs, buffer);
 
     if (gds.isThin())
       data = QuasiRegular.convertQuasiGrid(data, gds.getNptsInLine(), gds.getNxRaw(), gds.getNyRaw(),
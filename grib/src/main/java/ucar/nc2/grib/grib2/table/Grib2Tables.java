@@ -26,6 +26,7 @@ import ucar.nc2.time.CalendarPeriod;
 import ucar.nc2.internal.wmo.CommonCodeTable;
 import javax.annotation.concurrent.Immutable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Grib 2 Tables - allows local overrides and augmentation of WMO tables.
@@ -40,7 +41,7 @@ import java.util.*;
 @Immutable
 public class Grib2Tables implements ucar.nc2.grib.GribTables, TimeUnitConverter {
   private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(Grib2Tables.class);
-  private static Map<Grib2TablesId, Grib2Tables> tables = new HashMap<>();
+  private static final Map<Grib2TablesId, Grib2Tables> tables = new ConcurrentHashMap<>();
   private static Grib2Tables wmoStandardTable;
 
   public static Grib2Tables factory(Grib2Record gr) {
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.MAMath;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+/** Test the process wide cache of decoded GRIB fields. */
+public class TestGribDataCache {
+  private static final String filename = "../grib/src/test/data/ds.snow.grib2";
+
+  @After
+  public void cleanup() {
+    GribDataCache.setDataCache(0, false);
+    GribDataReader.resetDecodeExecutor();
+  }
+
+  // the data of the variables with a time dimension, which are read from the GRIB records
+  private static List<Array> readAll() throws IOException {
+    return readAll(filename);
+  }
+
+  private static List<Array> readAll(String path) throws IOException {
+    List<Array> result = new ArrayList<>();
+    try (NetcdfFile ncfile = NetcdfFiles.open(path)) {
+      for (Variable v : ncfile.getVariables()) {
+        if (v.getRank() > 2)
+          result.add(v.read());
+      }
+    }
+    assertThat(result).isNotEmpty();
+    return result;
+  }
+
+  private static void checkSame(List<Array> want, List<Array> got) {
+    assertThat(got).hasSize(want.size());
+    for (int i = 0; i < want.size(); i++)
+      assertThat(MAMath.nearlyEquals(want.get(i), got.get(i))).isTrue();
+  }
+
+  private void testCache(boolean offHeap) throws IOException {
+    GribDataCache.setDataCache(0, false);
+    assertThat(GribDataCache.getDataCache()).isNull();
+    List<Array> want = readAll();
+
+    GribDataCache.setDataCache(100 * 1000 * 1000, offHeap);
+    GribDataCache cache = GribDataCache.getDataCache();
+    assertThat(cache).isNotNull();
+    assertThat(cache.isOffHeap()).isEqualTo(offHeap);
+
+    checkSame(want, readAll());
+    long misses = cache.getMisses();
+    assertThat(misses).isGreaterThan(0);
+    assertThat(cache.getHits()).isEqualTo(0);
+    assertThat(cache.getWeight()).isGreaterThan(0);
+
+    // a second dataset on the same file reads from the cache
+    checkSame(want, readAll());
+    assertThat(cache.getMisses()).isEqualTo(misses);
+    assertThat(cache.getHits()).isEqualTo(misses);
+    assertThat(cache.getHitRate()).isWithin(1.0e-9).of(0.5);
+
+    cache.invalidate("nosuchfile");
+    assertThat(cache.getFieldCount()).isGreaterThan(0);
+    cache.clear();
+    assertThat(cache.getFieldCount()).isEqualTo(0);
+    assertThat(cache.getWeight()).isEqualTo(0);
+  }
+
+  @Test
+  public void testOnHeap() throws IOException {
+    GribDataReader.setDecodeExecutor(null, 1, 1);
+    testCache(false);
+  }
+
+  @Test
+  public void testOffHeap() throws IOException {
+    GribDataReader.setDecodeExecutor(null, 1, 1);
+    testCache(true);
+  }
+
+  @Test
+  public void testParallelDecode() throws IOException {
+    ExecutorService exec = Executors.newFixedThreadPool(3);
+    try {
+      GribDataReader.setDecodeExecutor(exec, 4, 1);
+      testCache(false);
+    } finally {
+      exec.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    // 24 fields of one point
+    String points = "../grib/src/test/data/single_point_gds.grib1";
+    GribDataCache.setDataCache(0, false);
+    List<Array> want = readAll(points);
+
+    // room for two fields, each much more than a quarter of maxBytes
+    GribDataCache.setDataCache(2 * 4, false);
+    GribDataCache cache = GribDataCache.getDataCache();
+    checkSame(want, readAll(points));
+    assertThat(cache.getEvictions()).isGreaterThan(0);
+    assertThat(cache.getWeight()).isAtMost(cache.getMaxBytes());
+    assertThat(cache.getFieldCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testLargeField() {
+    // big enough that Guava would split it between segments
+    GribDataCache.setDataCache(100 * 1000, false);
+    GribDataCache cache = GribDataCache.getDataCache();
+    float[] field = new float[10 * 1000]; // 40% of maxBytes
+
+    cache.put("file", new GribCollectionImmutable.Record(0, 0, 0, 100), field);
+    assertThat(cache.get("file", new GribCollectionImmutable.Record(0, 0, 0, 100))).isNotNull();
+    cache.put("file", new GribCollectionImmutable.Record(0, 1000, 0, 100), field);
+    cache.put("file", new GribCollectionImmutable.Record(0, 2000, 0, 100), field);
+    assertThat(cache.getFieldCount()).isEqualTo(2);
+    assertThat(cache.getEvictions()).isEqualTo(1);
+    assertThat(cache.getWeight()).isAtMost(cache.getMaxBytes());
+  }
+}
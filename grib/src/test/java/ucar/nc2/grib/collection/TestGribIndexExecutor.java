@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thredds.featurecollection.FeatureCollectionConfig;
+import thredds.featurecollection.FeatureCollectionType;
+import thredds.inventory.CollectionUpdateType;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+/** Test building GRIB collection indexes in parallel. */
+public class TestGribIndexExecutor {
+  private static final Logger logger = LoggerFactory.getLogger(TestGribIndexExecutor.class);
+  private static final String[] files = {"ds.sky.grib2", "ds.snow.grib2", "berkes.grib2", "HLYA10.grib2"};
+
+  @ClassRule
+  public static final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static ExecutorService exec;
+
+  @BeforeClass
+  public static void setup() {
+    exec = Executors.newFixedThreadPool(3);
+  }
+
+  @AfterClass
+  public static void cleanup() {
+    GribCdmIndex.setIndexExecutor(null, 1);
+    exec.shutdownNow();
+  }
+
+  @Test
+  public void testMapKeepsOrder() throws IOException {
+    GribIndexExecutor.setIndexExecutor(exec, 4);
+    List<Integer> items = new ArrayList<>();
+    for (int i = 0; i < 100; i++)
+      items.add(i);
+
+    // nested calls run on the same pool
+    List<Integer> result = GribIndexExecutor.map(items, i -> {
+      List<Integer> inner = GribIndexExecutor.map(Collections.nCopies(10, i), j -> j + 1);
+      return inner.stream().mapToInt(Integer::intValue).sum();
+    });
+    assertThat(result).hasSize(100);
+    for (int i = 0; i < 100; i++)
+      assertThat(result.get(i)).isEqualTo(10 * (i + 1));
+  }
+
+  @Test
+  public void testMapFailure() {
+    GribIndexExecutor.setIndexExecutor(exec, 4);
+    List<Integer> items = new ArrayList<>();
+    for (int i = 0; i < 20; i++)
+      items.add(i);
+    try {
+      GribIndexExecutor.map(items, i -> {
+        if (i == 7)
+          throw new IOException("bad item");
+        return i;
+      });
+      fail();
+    } catch (IOException e) {
+      assertThat(e.getMessage()).isEqualTo("bad item");
+    }
+  }
+
+  private List<String> makeCollection(String collectionName) throws IOException {
+    File dir = tempFolder.newFolder(collectionName);
+    for (String filename : files)
+      Files.copy(new File("../grib/src/test/data", filename).toPath(), new File(dir, filename).toPath());
+
+    FeatureCollectionConfig config = new FeatureCollectionConfig(collectionName, collectionName,
+        FeatureCollectionType.GRIB2, dir.getPath() + "/.*grib2$", null, null, null, "none", null);
+    assertThat(GribCdmIndex.updateGribCollection(config, CollectionUpdateType.always, logger)).isTrue();
+
+    for (String filename : files)
+      assertThat(new File(dir, filename + ".gbx9").exists()).isTrue();
+
+    List<String> result = new ArrayList<>();
+    try (NetcdfFile ncfile = NetcdfFiles.open(new File(dir, collectionName + GribCdmIndex.NCX_SUFFIX).getPath())) {
+      for (Variable v : ncfile.getVariables())
+        result.add(v.getFullName());
+    }
+    return result;
+  }
+
+  @Test
+  public void testParallelIndexing() throws IOException {
+    GribCdmIndex.setIndexExecutor(null, 1);
+    List<String> serial = makeCollection("serial");
+    assertThat(serial).isNotEmpty();
+
+    GribCdmIndex.setIndexExecutor(exec, 4);
+    List<String> parallel = makeCollection("parallel");
+    assertThat(parallel).containsExactlyElementsIn(serial);
+  }
+}
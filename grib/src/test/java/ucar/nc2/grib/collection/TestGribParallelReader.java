@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import ucar.ma2.DataType;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+/** Compare reading GRIB data records serially and in parallel. */
+@RunWith(Parameterized.class)
+public class TestGribParallelReader {
+
+  @ClassRule
+  public static final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static ExecutorService exec;
+
+  @BeforeClass
+  public static void setup() {
+    exec = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterClass
+  public static void cleanup() {
+    // later tests use the default pool
+    GribDataReader.resetDecodeExecutor();
+    exec.shutdownNow();
+  }
+
+  @Parameterized.Parameters(name = "{0}")
+  public static Collection<Object[]> getTestParameters() {
+    List<Object[]> result = new ArrayList<>();
+    result.add(new Object[] {"cosmo-eu.grib2"});
+    result.add(new Object[] {"thinGrid.grib2"});
+    result.add(new Object[] {"Lannion.pds31.grib2"});
+    result.add(new Object[] {"rotatedlatlon.grib1"});
+    result.add(new Object[] {"ECMWF.grib1"});
+    return result;
+  }
+
+  private final String filename;
+
+  public TestGribParallelReader(String filename) {
+    this.filename = filename;
+  }
+
+  private interface Reader {
+    float[] read(Variable v) throws IOException;
+  }
+
+  private static float[] readMa2(Variable v) throws IOException {
+    return (float[]) v.read().get1DJavaArray(DataType.FLOAT);
+  }
+
+  private static float[] readArray(Variable v) throws IOException {
+    ucar.array.Array<?> array = v.readArray();
+    float[] result = new float[(int) array.length()];
+    Iterator<?> iter = array.iterator();
+    for (int i = 0; i < result.length; i++)
+      result[i] = ((Number) iter.next()).floatValue();
+    return result;
+  }
+
+  private List<float[]> readAll(File file, Reader reader) throws IOException {
+    List<float[]> result = new ArrayList<>();
+    try (NetcdfFile ncfile = NetcdfFiles.open(file.getPath())) {
+      for (Variable v : ncfile.getVariables()) {
+        if (v.getDataType() == DataType.FLOAT && v.getRank() > 2)
+          result.add(reader.read(v));
+      }
+    }
+    return result;
+  }
+
+  private void compare(Reader reader) throws IOException {
+    // copy, so that the index files are not written into the test data directory
+    File file = new File(tempFolder.getRoot(), filename);
+    if (!file.exists())
+      Files.copy(new File("../grib/src/test/data", filename).toPath(), file.toPath());
+
+    GribDataReader.setDecodeExecutor(null, 1, 1);
+    List<float[]> serial = readAll(file, reader);
+    assertThat(serial).isNotEmpty();
+
+    GribDataReader.setDecodeExecutor(exec, 3, 1);
+    List<float[]> parallel = readAll(file, reader);
+    assertThat(parallel).hasSize(serial.size());
+    for (int i = 0; i < serial.size(); i++)
+      assertWithMessage("variable %s", i).that(Arrays.equals(serial.get(i), parallel.get(i))).isTrue();
+  }
+
+  @Test
+  public void testDataReader() throws IOException {
+    compare(TestGribParallelReader::readMa2);
+  }
+
+  @Test
+  public void testArrayReader() throws IOException {
+    compare(TestGribParallelReader::readArray);
+  }
+}
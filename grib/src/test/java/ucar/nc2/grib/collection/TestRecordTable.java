@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.List;
+import org.junit.Test;
+import ucar.nc2.grib.coord.SparseArray;
+
+/** Test RecordTable reads the SparseArray message written by the GribCollectionWriters. */
+public class TestRecordTable {
+
+  private static byte[] makeSparseArray(int[] shape, int[] track, int nrecords) {
+    GribCollectionProto.SparseArray.Builder b = GribCollectionProto.SparseArray.newBuilder();
+    for (int size : shape)
+      b.addSize(size);
+    for (int t : track)
+      b.addTrack(t);
+    for (int i = 0; i < nrecords; i++) {
+      GribCollectionProto.Record.Builder br = GribCollectionProto.Record.newBuilder();
+      br.setFileno(i % 3);
+      br.setStartPos(5_000_000_000L + 1000L * i);
+      if (i % 2 == 0)
+        br.setBmsOffset(100 + i);
+      br.setDrsOffset(50 + i);
+      b.addRecords(br);
+    }
+    b.setNdups(1);
+    return b.build().toByteArray();
+  }
+
+  private static void checkRecord(GribCollectionImmutable.Record record, int i) {
+    assertThat(record.fileno).isEqualTo(i % 3);
+    assertThat(record.pos).isEqualTo(5_000_000_000L + 1000L * i);
+    assertThat(record.bmsOffset).isEqualTo(i % 2 == 0 ? 100 + i : 0);
+    assertThat(record.drsOffset).isEqualTo(50 + i);
+  }
+
+  @Test
+  public void testRead() throws IOException {
+    int[] shape = {2, 3, 4};
+    int[] track = new int[24];
+    int nrecords = 0;
+    for (int i = 0; i < track.length; i++) {
+      if (i % 5 != 0)
+        track[i] = ++nrecords;
+    }
+
+    // hint too small, right, and too big
+    for (int hint : new int[] {0, nrecords, 100}) {
+      RecordTable table = RecordTable.read(makeSparseArray(shape, track, nrecords), hint);
+      assertThat(table.getShape()).isEqualTo(shape);
+      assertThat(table.getTotalSize()).isEqualTo(24);
+      assertThat(table.getNRecords()).isEqualTo(nrecords);
+      assertThat(table.countNotMissing()).isEqualTo(nrecords);
+      assertThat(table.getNdups()).isEqualTo(1);
+
+      for (int i = 0; i < track.length; i++) {
+        GribCollectionImmutable.Record record = table.getRecord(i);
+        if (track[i] == 0)
+          assertThat(record).isNull();
+        else
+          checkRecord(record, track[i] - 1);
+      }
+      checkRecord(table.getRecord(new int[] {1, 2, 3}), track[23] - 1);
+      assertThat(table.getRecord(new int[] {0, 1, 1})).isNull(); // index 5
+    }
+  }
+
+  @Test
+  public void testSparseArray() throws IOException {
+    int[] shape = {3};
+    int[] track = {2, 0, 1};
+    RecordTable table = RecordTable.read(makeSparseArray(shape, track, 2), 2);
+    SparseArray<GribCollectionImmutable.Record> sa = table.toSparseArray();
+    assertThat(sa.getShape()).isEqualTo(shape);
+    assertThat(sa.getTrack()).isEqualTo(track);
+    assertThat(sa.getNdups()).isEqualTo(1);
+    List<GribCollectionImmutable.Record> content = sa.getContent();
+    assertThat(content).hasSize(2);
+    checkRecord(content.get(0), 0);
+    checkRecord(content.get(1), 1);
+    checkRecord(sa.getContent(0), 1);
+    assertThat(sa.getContent(1)).isNull();
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+    RecordTable table = RecordTable.read(makeSparseArray(new int[] {2}, new int[] {0, 0}, 0), 0);
+    assertThat(table.getNRecords()).isEqualTo(0);
+    assertThat(table.getRecord(1)).isNull();
+  }
+}
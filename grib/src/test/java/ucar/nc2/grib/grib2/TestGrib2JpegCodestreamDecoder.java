@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.Range;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import ucar.unidata.io.RandomAccessFile;
+
+/** Test the JPEG 2000 decoder for data template 5.40 against jj2000. */
+public class TestGrib2JpegCodestreamDecoder {
+  // every file in the test data with data template 5.40
+  private static final String[] corpus = {"sref.pds2.grib2", "pdsScale.pds1.grib2", "ofs_atl.grib2",
+      "rugley.pds15.grib2", "sref.pds12.grib2", "sref_eta.grib2"};
+
+  private static class Codestream {
+    final String name;
+    final int nbits;
+    final byte[] data;
+
+    Codestream(String name, int nbits, byte[] data) {
+      this.name = name;
+      this.nbits = nbits;
+      this.data = data;
+    }
+  }
+
+  private static List<Codestream> readCorpus() throws IOException {
+    List<Codestream> result = new ArrayList<>();
+    for (String filename : corpus) {
+      try (RandomAccessFile raf = new RandomAccessFile("../grib/src/test/data/" + filename, "r")) {
+        Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+        while (scanner.hasNext()) {
+          Grib2Record gr = scanner.next();
+          if (gr.getDataRepresentationSection().getDataTemplate() != 40)
+            continue;
+          Grib2Drs.Type40 drs = (Grib2Drs.Type40) gr.getDataRepresentationSection().getDrs(raf);
+          Grib2SectionData dataSection = gr.getDataSection();
+          byte[] data = new byte[dataSection.getMsgLength() - 5];
+          raf.seek(dataSection.getStartingPosition() + 5);
+          raf.readFully(data);
+          result.add(new Codestream(filename, drs.numberOfBits, data));
+        }
+      }
+    }
+    assertThat(result.size()).isAtLeast(corpus.length);
+    return result;
+  }
+
+  @Test
+  public void testSameAsJj2000() throws IOException {
+    Grib2JpegCodestreamDecoder decoder = new Grib2JpegCodestreamDecoder();
+    for (Codestream cs : readCorpus()) {
+      Grib2JpegDecoder jj2000 = new Grib2JpegDecoder(cs.nbits, false);
+      jj2000.decode(cs.data);
+
+      assertWithMessage(cs.name).that(decoder.decode(cs.data, cs.nbits)).isTrue();
+      assertWithMessage(cs.name).that(decoder.getGdata()).isEqualTo(jj2000.getGdata());
+      assertWithMessage(cs.name).that(decoder.hasSignedProblem()).isEqualTo(jj2000.hasSignedProblem());
+    }
+  }
+
+  @Test
+  public void testReuseDecoder() throws IOException {
+    List<Codestream> all = readCorpus();
+    List<int[]> first = new ArrayList<>();
+    for (Codestream cs : all) {
+      Grib2JpegCodestreamDecoder decoder = new Grib2JpegCodestreamDecoder();
+      assertThat(decoder.decode(cs.data, cs.nbits)).isTrue();
+      int[] gdata = decoder.getGdata();
+      // unsigned data, in range
+      for (int v : gdata)
+        assertThat(v).isIn(Range.closedOpen(0, 1 << cs.nbits));
+      first.add(gdata);
+    }
+
+    // one decoder, whose working buffers go from larger to smaller images and back
+    Grib2JpegCodestreamDecoder decoder = new Grib2JpegCodestreamDecoder();
+    for (int pass = 0; pass < 2; pass++) {
+      for (int i = 0; i < all.size(); i++) {
+        Codestream cs = all.get(i);
+        assertThat(decoder.decode(cs.data, cs.nbits)).isTrue();
+        assertThat(decoder.getGdata()).isEqualTo(first.get(i));
+        assertThat(decoder.getGdata()).isNotSameInstanceAs(first.get(i));
+        if (pass == 1) {
+          // the next decode must not depend on the buffers that were dropped
+          decoder.trimBuffers();
+          assertThat(decoder.getGdata()).isNull();
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testUnsupported() throws IOException {
+    Grib2JpegCodestreamDecoder decoder = new Grib2JpegCodestreamDecoder();
+    // a JP2 file, not a raw codestream
+    byte[] jp2 = {0, 0, 0, 12, 'j', 'P', ' ', ' ', 0x0d, 0x0a, (byte) 0x87, 0x0a};
+    assertThat(decoder.decode(jp2, 8)).isFalse();
+    assertThat(decoder.getGdata()).isNull();
+
+    // the irreversible 9/7 wavelet, in the last byte of the COD marker segment
+    Codestream cs = readCorpus().get(0);
+    byte[] data = cs.data.clone();
+    int cod = indexOf(data, (byte) 0xff, (byte) 0x52);
+    assertThat(data[cod + 13]).isEqualTo(1);
+    data[cod + 13] = 0;
+    assertThat(decoder.decode(data, cs.nbits)).isFalse();
+
+    // arithmetic coder bypass, in the code-block style
+    data = cs.data.clone();
+    data[cod + 12] = 1;
+    assertThat(decoder.decode(data, cs.nbits)).isFalse();
+  }
+
+  @Test
+  public void testTruncated() throws IOException {
+    Grib2JpegCodestreamDecoder decoder = new Grib2JpegCodestreamDecoder();
+    Codestream cs = readCorpus().get(0);
+    try {
+      decoder.decode(Arrays.copyOf(cs.data, 30), cs.nbits);
+      fail();
+    } catch (IOException e) {
+      // expected: the main header is incomplete
+    }
+
+    // missing packets are decoded as zero
+    assertThat(decoder.decode(Arrays.copyOf(cs.data, cs.data.length / 2), cs.nbits)).isTrue();
+    assertThat(decoder.getGdata()).hasLength(185 * 129);
+  }
+
+  private static int indexOf(byte[] data, byte b0, byte b1) {
+    for (int i = 0; i + 1 < data.length; i++) {
+      if (data[i] == b0 && data[i + 1] == b1)
+        return i;
+    }
+    return -1;
+  }
+}
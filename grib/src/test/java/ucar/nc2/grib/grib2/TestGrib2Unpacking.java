@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import ucar.nc2.grib.GribBitUnpacker;
+import ucar.nc2.iosp.BitReader;
+import ucar.unidata.io.RandomAccessFile;
+
+/** Test the unpacking used by Grib2DataReader for simple and complex packing. */
+public class TestGrib2Unpacking {
+
+  @Test
+  public void testUnpackerMatchesBitReader() throws IOException {
+    Random random = new Random(42);
+    byte[] packed = new byte[1000];
+    random.nextBytes(packed);
+
+    for (int nb = 0; nb <= 32; nb++) {
+      for (int skip : new int[] {0, 3, 8}) {
+        int n = (8 * packed.length - skip) / Math.max(nb, 1);
+        if (nb == 0)
+          n = 100;
+
+        BitReader reader = new BitReader(packed);
+        reader.bits2UInt(skip);
+        int[] want = new int[n];
+        for (int i = 0; i < n; i++)
+          want[i] = (int) reader.bits2UInt(nb);
+
+        // all at once, into ints
+        GribBitUnpacker unpacker = new GribBitUnpacker(packed);
+        unpacker.bits2UInt(skip);
+        int[] ints = new int[n];
+        unpacker.unpack(nb, n, ints);
+        assertThat(ints).isEqualTo(want);
+        assertThat(unpacker.getBitPos()).isEqualTo(skip + (long) n * nb);
+
+        // in groups of 7, into floats, with an offset
+        unpacker = new GribBitUnpacker(packed);
+        unpacker.bits2UInt(skip);
+        float[] floats = new float[n];
+        for (int start = 0; start < n; start += 7)
+          unpacker.unpack(nb, Math.min(7, n - start), 11, floats, start);
+        for (int i = 0; i < n; i++) {
+          long value = (nb == 32) ? (want[i] & 0xffffffffL) : want[i];
+          assertThat(floats[i]).isEqualTo((float) (value + 11));
+        }
+
+        // one at a time
+        unpacker = new GribBitUnpacker(packed);
+        unpacker.bits2UInt(skip);
+        for (int i = 0; i < n; i++)
+          assertThat(unpacker.bits2UInt(nb)).isEqualTo(want[i]);
+      }
+    }
+  }
+
+  @Test
+  public void testUnpackerAlignment() {
+    byte[] packed = {(byte) 0xAB, (byte) 0xCD, (byte) 0xEF, 0x12};
+    GribBitUnpacker unpacker = new GribBitUnpacker(packed);
+    assertThat(unpacker.bits2UInt(4)).isEqualTo(0xA);
+    unpacker.incrByte();
+    assertThat(unpacker.getBitPos()).isEqualTo(8);
+    unpacker.incrByte(); // already at the start of a byte
+    assertThat(unpacker.getBitPos()).isEqualTo(8);
+
+    float[] floats = new float[3];
+    unpacker.unpack(8, 3, 0, floats, 0);
+    assertThat(floats).isEqualTo(new float[] {0xCD, 0xEF, 0x12});
+
+    // past the end reads zeros
+    assertThat(unpacker.bits2UInt(16)).isEqualTo(0);
+  }
+
+  // the float arithmetic the int version has to match
+  private static void undifference2Float(float[] data, int from, int npts, int minsd) {
+    for (int i = from; i < npts; i++) {
+      data[i] += minsd;
+      data[i] = data[i] + (2 * data[i - 1]) - data[i - 2];
+    }
+  }
+
+  @Test
+  public void testUndifference() {
+    Random random = new Random(7);
+    for (int first : new int[] {1000, (1 << 24) - 10, -(1 << 24) + 10, 1 << 25}) {
+      float[] g = new float[5000];
+      g[0] = first;
+      g[1] = first + 3;
+      for (int i = 2; i < g.length; i++)
+        g[i] = random.nextInt(40);
+      int minsd = -20;
+
+      float[] want = g.clone();
+      undifference2Float(want, 2, want.length, minsd);
+
+      float[] got = g.clone();
+      int start = Grib2DataReader.undifference2(got, got.length, minsd);
+      undifference2Float(got, start, got.length, minsd); // carry on in float, as Grib2DataReader does
+      assertThat(got).isEqualTo(want);
+      if (first == 1000)
+        assertThat(start).isEqualTo(got.length);
+      if (first == 1 << 25)
+        assertThat(start).isEqualTo(2);
+    }
+  }
+
+  @Test
+  public void testReadIntoBuffer() throws IOException {
+    // simple packing with a bitmap, complex packing, complex packing with spatial differencing
+    for (String filename : new String[] {"Eumetsat.VerticalPerspective.grib2", "ds.snow.grib2", "ds.sky.grib2"}) {
+      try (RandomAccessFile raf = new RandomAccessFile("../grib/src/test/data/" + filename, "r")) {
+        Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+        float[] buffer = null;
+        while (scanner.hasNext()) {
+          Grib2Record gr = scanner.next();
+          float[] want = gr.readData(raf);
+          if (buffer == null) {
+            buffer = new float[want.length + 10];
+            Arrays.fill(buffer, 99.0f); // not zeroed
+          }
+          float[] got = gr.readData(raf, buffer);
+          assertThat(got).isSameInstanceAs(buffer);
+          assertThat(Arrays.copyOf(got, want.length)).isEqualTo(want);
+          assertThat(gr.readData(raf, new float[want.length - 1])).isEqualTo(want); // too small, not used
+        }
+      }
+    }
+  }
+}